@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.bulk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.codebrewer.dump1090processor.basestation.service.MessageParsingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the rate at which lines of logged messages are read and parsed by an import, using one
+ * thread or one per available processor and a writer that discards the messages, from a plain
+ * file and from a gzip-compressed file.
+ *
+ * <p>Each operation is one line, so the reported throughput is in lines per second. The rate at
+ * which messages can be saved to a database is measured by {@code MessageSchemaBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SbsLogImporterBenchmark {
+  private static final int LINE_COUNT = 1_000_000;
+
+  @Param({ "1", "0" })
+  public int parallelism;
+
+  private Path plainFile;
+  private Path compressedFile;
+  private SbsLogImporter importer;
+
+  private static void writeLines(Writer writer) throws IOException {
+    for (int i = 0; i < LINE_COUNT; i++) {
+      final int second = i / 10;
+
+      writer.write(
+          String.format(
+              Locale.ROOT,
+              "MSG,3,1,1,%06X,1,2021/01/30,%02d:%02d:%02d.%03d,2021/01/30,%02d:%02d:%02d.%03d,,"
+                  + "%d,,,%.5f,%.5f,,,0,0,0,0\r\n",
+              0x400000 + i % 500,
+              second / 3600 % 24,
+              second / 60 % 60,
+              second % 60,
+              i % 1000,
+              second / 3600 % 24,
+              second / 60 % 60,
+              second % 60,
+              i % 1000,
+              1000 + i % 40_000,
+              50.0 + (i % 1000) / 500.0,
+              -1.0 + (i % 777) / 388.5));
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    plainFile = Files.createTempFile("sbs-import-benchmark", ".txt");
+    compressedFile = Files.createTempFile("sbs-import-benchmark", ".txt.gz");
+
+    try (Writer writer = Files.newBufferedWriter(plainFile, StandardCharsets.US_ASCII)) {
+      writeLines(writer);
+    }
+
+    try (Writer writer =
+             new BufferedWriter(
+                 new OutputStreamWriter(
+                     new GZIPOutputStream(Files.newOutputStream(compressedFile)),
+                     StandardCharsets.US_ASCII))) {
+      writeLines(writer);
+    }
+
+    importer =
+        new SbsLogImporter(
+            new MessageParsingService()::parseCsvMessageText,
+            batch -> { },
+            parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+            1,
+            5000);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.delete(plainFile);
+    Files.delete(compressedFile);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINE_COUNT)
+  public long importPlainFile() throws IOException {
+    return importer.importFiles(Collections.singletonList(plainFile));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINE_COUNT)
+  public long importCompressedFile() throws IOException {
+    return importer.importFiles(Collections.singletonList(compressedFile));
+  }
+}
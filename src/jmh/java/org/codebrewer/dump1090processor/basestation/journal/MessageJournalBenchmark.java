@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost to the ingest path of journalling a message: encoding it and appending it to
+ * a journal that is forced to the disk every 10ms by another thread, as the journal service does.
+ *
+ * <p>For comparison, {@code MessageSchemaBenchmark.insertMessage} measures saving a message
+ * directly to a database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageJournalBenchmark {
+  private static final long COMMIT_INTERVAL_MILLIS = 10L;
+
+  private final BaseStationMessage message =
+      new TransmissionMessage.Builder("4840D6", Instant.parse("2021-01-30T12:00:00Z"))
+          .transmissionType(TransmissionType.AIRBORNE_POSITION)
+          .altitude(35000.0f)
+          .position(new Point<>(new G2D(-0.125, 51.5), CoordinateReferenceSystems.WGS84))
+          .alert(false)
+          .emergency(false)
+          .identActive(false)
+          .onGround(false)
+          .build();
+
+  private Path directory;
+  private MessageJournal journal;
+  private Thread committerThread;
+  private volatile boolean running;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("journal-benchmark");
+    journal = MessageJournal.open(directory, 64 << 20);
+    running = true;
+    committerThread =
+        new Thread(
+            () -> {
+              while (running) {
+                try {
+                  Thread.sleep(COMMIT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                  return;
+                }
+
+                journal.force();
+              }
+            });
+    committerThread.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException, InterruptedException {
+    running = false;
+    committerThread.join();
+    journal.close();
+
+    try (Stream<Path> paths = Files.walk(directory)) {
+      final List<Path> sortedPaths =
+          paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+
+      for (Path path : sortedPaths) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public byte[] encodeMessage() {
+    return MessageCodec.encode(message);
+  }
+
+  @Benchmark
+  public long appendMessage() throws IOException {
+    return journal.append(MessageCodec.encode(message));
+  }
+}
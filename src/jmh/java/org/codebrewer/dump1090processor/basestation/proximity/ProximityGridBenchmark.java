@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.proximity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of checking one position update for aircraft losing separation when many
+ * aircraft are being tracked, comparing a proximity grid whose cells are sized for the look-ahead
+ * time with one of a single cell, which checks the updated aircraft against every other.
+ *
+ * <p>The aircraft are spread at random over an area 400 nautical miles square, about the coverage
+ * of a well-sited receiver, at random altitudes and velocities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProximityGridBenchmark {
+  private static final long NOW = 1_612_008_000_000L;
+
+  @Param("5000")
+  private int aircraftCount;
+
+  @Param({ "grid", "every-pair" })
+  private String cells;
+
+  private final List<ProximityEvent> events = new ArrayList<>();
+  private ProximityGrid grid;
+  private double[] latitudes;
+  private double[] longitudes;
+  private float[] altitudes;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(1L);
+
+    grid =
+        "every-pair".equals(cells)
+            ? new ProximityGrid(3.0, 1000.0, 60L, 15L, 1_000_000.0)
+            : new ProximityGrid(3.0, 1000.0, 60L, 1000.0, 15L);
+    latitudes = new double[aircraftCount];
+    longitudes = new double[aircraftCount];
+    altitudes = new float[aircraftCount];
+
+    for (int i = 0; i < aircraftCount; i++) {
+      latitudes[i] = 49.0 + random.nextDouble() * 400.0 / 60.0;
+      longitudes[i] = -5.5 + random.nextDouble() * 400.0 / 60.0 / 0.6;
+      altitudes[i] = 1000.0f + random.nextInt(400) * 100.0f;
+      grid.updateVelocity(
+          0x400000 + i,
+          100.0f + random.nextFloat() * 400.0f,
+          random.nextFloat() * 360.0f,
+          (random.nextFloat() - 0.5f) * 4000.0f);
+      grid.updatePosition(
+          0x400000 + i, NOW, latitudes[i], longitudes[i], altitudes[i], events);
+    }
+  }
+
+  @Benchmark
+  public int updatePosition() {
+    events.clear();
+
+    final int checked =
+        grid.updatePosition(
+            0x400000 + next, NOW, latitudes[next], longitudes[next], altitudes[next], events);
+
+    next = next + 1 == aircraftCount ? 0 : next + 1;
+
+    return checked + events.size();
+  }
+}
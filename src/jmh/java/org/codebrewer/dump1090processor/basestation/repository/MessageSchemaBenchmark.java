@@ -0,0 +1,382 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Compares the single-table schema mapped by the entity classes with the per-type schema written
+ * by {@link PerTypeMessageRepository}: the time to insert a message, and to run two typical
+ * queries for one aircraft over an hour.
+ *
+ * <p>Each schema is held in a file-based H2 database loaded with a day of synthetic messages in
+ * roughly the proportions seen from a real receiver. The size of the database file after loading
+ * and the time taken to load it in batches are printed during setup, since JMH cannot report them.
+ *
+ * <p>The single-table inserts mirror those made by Hibernate, with the columns and indexes it
+ * creates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageSchemaBenchmark {
+  private static final long START_MILLIS = 1611964800000L;
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final int AIRCRAFT_COUNT = 500;
+  private static final String SINGLE_TABLE = "single-table";
+  private static final String SINGLE_TABLE_INSERT =
+      "insert into base_station_message (icao_address, timestamp, call_sign, status_message_type,"
+      + " alert, altitude, emergency, ground_speed, ident_active, on_ground, position, squawk,"
+      + " track, transmission_type, vertical_rate, message_type, id)"
+      + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, cast(? as geometry), ?, ?, ?, ?, ?, ?)";
+
+  @Param({SINGLE_TABLE, "per-type"})
+  private String schema;
+
+  @Param("200000")
+  private int messageCount;
+
+  private Path directory;
+  private Connection connection;
+  private JdbcTemplate jdbcTemplate;
+  private PerTypeMessageRepository perTypeMessageRepository;
+  private PreparedStatement trackQuery;
+  private PreparedStatement aircraftQuery;
+  private Random random;
+  private long nextId;
+
+  private static MessageRecord messageRecord(long id, long timestampMillis, Random random) {
+    final int percentile = random.nextInt(100);
+    final String icaoAddress = String.format("%06X", 0x400000 + random.nextInt(AIRCRAFT_COUNT));
+    final Instant timestamp = Instant.ofEpochMilli(timestampMillis);
+
+    if (percentile < 1) {
+      return new MessageRecord.Builder(id, MessageType.ID, icaoAddress, timestamp)
+          .callSign("TST" + random.nextInt(1000))
+          .build();
+    }
+
+    if (percentile < 2) {
+      return new MessageRecord.Builder(id, MessageType.STA, icaoAddress, timestamp)
+          .statusMessageType(StatusMessageType.OK)
+          .build();
+    }
+
+    final MessageRecord.Builder builder =
+        new MessageRecord.Builder(id, MessageType.MSG, icaoAddress, timestamp);
+
+    if (percentile < 5) {
+      return builder.transmissionType(TransmissionType.IDENTIFICATION_AND_CATEGORY)
+                    .callSign("TST" + random.nextInt(1000))
+                    .build();
+    } else if (percentile < 25) {
+      return builder.transmissionType(TransmissionType.AIRBORNE_POSITION)
+                    .altitude(35000.0f)
+                    .position(49.0 + 7.0 * random.nextDouble(), -6.0 + 8.0 * random.nextDouble())
+                    .alert(false)
+                    .emergency(false)
+                    .identActive(false)
+                    .onGround(false)
+                    .build();
+    } else if (percentile < 50) {
+      return builder.transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+                    .groundSpeed(450.0f)
+                    .track(random.nextFloat() * 360.0f)
+                    .verticalRate((short) 0)
+                    .build();
+    } else if (percentile < 75) {
+      return builder.transmissionType(TransmissionType.SURVEILLANCE_ALTITUDE)
+                    .altitude(35000.0f)
+                    .alert(false)
+                    .identActive(false)
+                    .onGround(false)
+                    .build();
+    } else if (percentile < 80) {
+      return builder.transmissionType(TransmissionType.SURVEILLANCE_ID)
+                    .altitude(35000.0f)
+                    .squawk((short) 1200)
+                    .alert(false)
+                    .emergency(false)
+                    .identActive(false)
+                    .onGround(false)
+                    .build();
+    } else if (percentile < 90) {
+      return builder.transmissionType(TransmissionType.AIR_TO_AIR)
+                    .altitude(35000.0f)
+                    .onGround(false)
+                    .build();
+    }
+
+    return builder.transmissionType(TransmissionType.ALL_CALL_REPLY).onGround(false).build();
+  }
+
+  private static int countRows(PreparedStatement statement) throws SQLException {
+    int count = 0;
+
+    try (ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  private static String perTypeAircraftQuery() {
+    return Stream.of(PerTypeTable.values())
+                 .map(table -> "select icao_address, timestamp from " + table.getTableName()
+                               + " where icao_address = ? and timestamp >= ? and timestamp < ?")
+                 .collect(Collectors.joining(" union all ", "", " order by timestamp"));
+  }
+
+  private static void setTimeRange(PreparedStatement statement, int index, long fromMillis)
+      throws SQLException {
+    statement.setTimestamp(index, new Timestamp(fromMillis));
+    statement.setTimestamp(index + 1, new Timestamp(fromMillis + HOUR_MILLIS));
+  }
+
+  private static void setMicrosTimeRange(PreparedStatement statement, int index, long fromMillis)
+      throws SQLException {
+    statement.setLong(index, fromMillis * 1000L);
+    statement.setLong(index + 1, (fromMillis + HOUR_MILLIS) * 1000L);
+  }
+
+  private String url() {
+    // H2 would otherwise return the cached result of re-executing an unchanged query
+    //
+    return "jdbc:h2:" + directory.resolve("messages").toAbsolutePath()
+           + ";OPTIMIZE_REUSE_RESULTS=0";
+  }
+
+  private static Object[] singleTableValues(MessageRecord messageRecord) {
+    return new Object[] {
+        messageRecord.getIcaoAddress(),
+        Timestamp.from(messageRecord.getTimestamp()),
+        messageRecord.getCallSign(),
+        messageRecord.getStatusMessageType() == null
+        ? null
+        : messageRecord.getStatusMessageType().name(),
+        messageRecord.getAlert(),
+        messageRecord.getAltitude(),
+        messageRecord.getEmergency(),
+        messageRecord.getGroundSpeed(),
+        messageRecord.getIdentActive(),
+        messageRecord.getOnGround(),
+        messageRecord.getLatitude() == null
+        ? null
+        : "SRID=4326;POINT(" + messageRecord.getLongitude() + " " + messageRecord.getLatitude()
+          + ")",
+        messageRecord.getSquawk(),
+        messageRecord.getTrack(),
+        messageRecord.getTransmissionType() == null
+        ? null
+        : messageRecord.getTransmissionType().ordinal(),
+        messageRecord.getVerticalRate(),
+        messageRecord.getMessageType().name(),
+        messageRecord.getId()
+    };
+  }
+
+  private void createSingleTableSchema() throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(
+          "create table base_station_message (message_type varchar(3) not null,"
+          + " id bigint not null primary key, icao_address varchar(6) not null,"
+          + " timestamp timestamp not null, call_sign varchar(8), status_message_type varchar(3),"
+          + " alert boolean, altitude real, emergency boolean, ground_speed real,"
+          + " ident_active boolean, on_ground boolean, position geometry, squawk smallint,"
+          + " track real, transmission_type integer, vertical_rate smallint)");
+      statement.execute(
+          "create index base_station_message_timestamp on base_station_message (timestamp, id)");
+      statement.execute(
+          "create index base_station_message_icao_address_timestamp"
+          + " on base_station_message (icao_address, timestamp, id)");
+      statement.execute(
+          "create index base_station_message_type_timestamp"
+          + " on base_station_message (message_type, transmission_type, timestamp, id)");
+    }
+  }
+
+  private void openConnection() throws SQLException {
+    connection = DriverManager.getConnection(url());
+
+    // Both schemas share the benchmark's connection, as a pool would, and prepare each insert as
+    // it is made, as Hibernate does
+    //
+    jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+
+    if (SINGLE_TABLE.equals(schema)) {
+      trackQuery =
+          connection.prepareStatement(
+              "select icao_address, timestamp, altitude, position from base_station_message"
+              + " where icao_address = ? and timestamp >= ? and timestamp < ?"
+              + " and message_type = 'MSG' and transmission_type = 2 order by timestamp, id");
+      trackQuery.setString(1, "400000");
+      setTimeRange(trackQuery, 2, START_MILLIS);
+      aircraftQuery =
+          connection.prepareStatement(
+              "select icao_address, timestamp from base_station_message"
+              + " where icao_address = ? and timestamp >= ? and timestamp < ?"
+              + " order by timestamp, id");
+      aircraftQuery.setString(1, "400000");
+      setTimeRange(aircraftQuery, 2, START_MILLIS);
+    } else {
+      perTypeMessageRepository = new PerTypeMessageRepository(jdbcTemplate.getDataSource());
+      perTypeMessageRepository.createSchema();
+      trackQuery =
+          connection.prepareStatement(
+              "select icao_address, timestamp, altitude, latitude, longitude"
+              + " from transmission_airborne_position"
+              + " where icao_address = ? and timestamp >= ? and timestamp < ?"
+              + " order by timestamp");
+      trackQuery.setInt(1, 0x400000);
+      setMicrosTimeRange(trackQuery, 2, START_MILLIS);
+      aircraftQuery = connection.prepareStatement(perTypeAircraftQuery());
+
+      for (int i = 0; i < PerTypeTable.values().length; i++) {
+        aircraftQuery.setInt(3 * i + 1, 0x400000);
+        setMicrosTimeRange(aircraftQuery, 3 * i + 2, START_MILLIS);
+      }
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, SQLException {
+    directory = Files.createTempDirectory("schema-benchmark");
+    random = new Random(1090L);
+    connection = DriverManager.getConnection(url());
+
+    if (SINGLE_TABLE.equals(schema)) {
+      createSingleTableSchema();
+    }
+
+    connection.close();
+    openConnection();
+
+    final List<MessageRecord> batch = new ArrayList<>();
+    final long startNanos = System.nanoTime();
+
+    for (nextId = 0; nextId < messageCount; nextId++) {
+      batch.add(messageRecord(nextId, START_MILLIS + DAY_MILLIS * nextId / messageCount, random));
+
+      if (batch.size() == 10000 || nextId == messageCount - 1) {
+        if (SINGLE_TABLE.equals(schema)) {
+          jdbcTemplate.batchUpdate(
+              SINGLE_TABLE_INSERT,
+              batch.stream()
+                   .map(MessageSchemaBenchmark::singleTableValues)
+                   .collect(Collectors.toList()));
+        } else {
+          perTypeMessageRepository.saveAll(batch);
+        }
+
+        batch.clear();
+      }
+    }
+
+    final long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("shutdown compact");
+    }
+
+    System.out.printf(
+        "%n%s: %d messages loaded in batches in %dms, database size %d bytes%n",
+        schema,
+        messageCount,
+        loadMillis,
+        Files.size(directory.resolve("messages.mv.db")));
+    openConnection();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException, SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("shutdown");
+    }
+
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public long insertMessage() throws SQLException {
+    final MessageRecord messageRecord =
+        messageRecord(nextId, START_MILLIS + DAY_MILLIS + nextId, random);
+
+    if (SINGLE_TABLE.equals(schema)) {
+      jdbcTemplate.update(SINGLE_TABLE_INSERT, singleTableValues(messageRecord));
+    } else {
+      perTypeMessageRepository.save(messageRecord);
+    }
+
+    return nextId++;
+  }
+
+  @Benchmark
+  public int aircraftTrackForHour() throws SQLException {
+    return countRows(trackQuery);
+  }
+
+  @Benchmark
+  public int aircraftMessagesForHour() throws SQLException {
+    return countRows(aircraftQuery);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a bounding box and time range query over the positions held in the shared message
+ * table with the same query over the position report table and its spatial index.
+ *
+ * <p>Both tables are created in an in-memory H2 database with the columns and indexes that
+ * Hibernate and {@code data-geodb.sql} create, and filled with a day of synthetic messages of
+ * which one in five carries a position, roughly the proportion seen from a real receiver.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionQueryBenchmark {
+  private static final String ENVELOPE =
+      "SRID=4326;POLYGON((-0.5 51.25, -0.25 51.25, -0.25 51.5, -0.5 51.5, -0.5 51.25))";
+  private static final long START_MILLIS = 1611964800000L;
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  @Param("200000")
+  private int messageCount;
+
+  private Connection connection;
+  private PreparedStatement messageQuery;
+  private PreparedStatement positionQuery;
+
+  private static int countRows(PreparedStatement statement) throws SQLException {
+    int count = 0;
+
+    try (ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    // H2 would otherwise return the cached result of re-executing an unchanged query
+    //
+    connection =
+        DriverManager.getConnection("jdbc:h2:mem:position-benchmark;OPTIMIZE_REUSE_RESULTS=0");
+
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(
+          "create table base_station_message (message_type varchar(3) not null,"
+          + " id bigint not null primary key, icao_address varchar(6) not null,"
+          + " timestamp timestamp not null, call_sign varchar(8), status_message_type varchar(3),"
+          + " alert boolean, altitude double, emergency boolean, ground_speed double,"
+          + " ident_active boolean, on_ground boolean, position geometry, squawk smallint,"
+          + " track double, transmission_type integer, vertical_rate smallint)");
+      statement.execute(
+          "create index base_station_message_timestamp on base_station_message (timestamp, id)");
+      statement.execute(
+          "create table position_report (id bigint not null primary key, altitude double,"
+          + " icao_address integer not null, on_ground boolean, position geometry not null,"
+          + " timestamp bigint not null)");
+      statement.execute(
+          "create index position_report_timestamp on position_report (timestamp, id)");
+      statement.execute(
+          "create spatial index position_report_position on position_report (position)");
+    }
+
+    final Random random = new Random(1090L);
+
+    try (PreparedStatement messageInsert =
+             connection.prepareStatement(
+                 "insert into base_station_message (message_type, id, icao_address, timestamp,"
+                 + " altitude, on_ground, position, transmission_type)"
+                 + " values ('MSG', ?, ?, ?, ?, false, cast(? as geometry), ?)");
+         PreparedStatement positionInsert =
+             connection.prepareStatement(
+                 "insert into position_report (id, altitude, icao_address, on_ground, position,"
+                 + " timestamp) values (?, ?, ?, false, cast(? as geometry), ?)")) {
+      for (int i = 0; i < messageCount; i++) {
+        final long timestampMillis = START_MILLIS + DAY_MILLIS * i / messageCount;
+        final int icaoAddress = 0x400000 + random.nextInt(500);
+        final boolean hasPosition = i % 5 == 0;
+        final String position =
+            String.format(
+                "SRID=4326;POINT(%f %f)", -6.0 + 8.0 * random.nextDouble(),
+                49.0 + 7.0 * random.nextDouble());
+
+        messageInsert.setLong(1, i);
+        messageInsert.setString(2, Integer.toHexString(icaoAddress).toUpperCase());
+        messageInsert.setTimestamp(3, new Timestamp(timestampMillis));
+        messageInsert.setDouble(4, 35000.0);
+        messageInsert.setString(5, hasPosition ? position : null);
+        messageInsert.setInt(6, hasPosition ? 2 : 3);
+        messageInsert.addBatch();
+
+        if (hasPosition) {
+          positionInsert.setLong(1, i);
+          positionInsert.setDouble(2, 35000.0);
+          positionInsert.setInt(3, icaoAddress);
+          positionInsert.setString(4, position);
+          positionInsert.setLong(5, timestampMillis);
+          positionInsert.addBatch();
+        }
+
+        if (i % 10000 == 9999) {
+          messageInsert.executeBatch();
+          positionInsert.executeBatch();
+        }
+      }
+
+      messageInsert.executeBatch();
+      positionInsert.executeBatch();
+    }
+
+    messageQuery =
+        connection.prepareStatement(
+            "select id, icao_address, timestamp, position, altitude, on_ground"
+            + " from base_station_message"
+            + " where position && cast(? as geometry) and timestamp >= ? and timestamp < ?"
+            + " order by timestamp, id limit 1000");
+    messageQuery.setString(1, ENVELOPE);
+    messageQuery.setTimestamp(2, new Timestamp(START_MILLIS));
+    messageQuery.setTimestamp(3, new Timestamp(START_MILLIS + DAY_MILLIS));
+    positionQuery =
+        connection.prepareStatement(
+            "select * from position_report"
+            + " where position && cast(? as geometry) and timestamp >= ? and timestamp < ?"
+            + " order by timestamp, id limit 1000");
+    positionQuery.setString(1, ENVELOPE);
+    positionQuery.setLong(2, START_MILLIS);
+    positionQuery.setLong(3, START_MILLIS + DAY_MILLIS);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("drop all objects");
+    }
+
+    connection.close();
+  }
+
+  @Benchmark
+  public int messageTableBoundingBox() throws SQLException {
+    return countRows(messageQuery);
+  }
+
+  @Benchmark
+  public int positionTableBoundingBox() throws SQLException {
+    return countRows(positionQuery);
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.integration.BaseStationMessageBuffer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.filter.MessageFilter;
+import org.springframework.integration.filter.MethodInvokingSelector;
+import org.springframework.integration.transformer.MessageTransformingHandler;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compares the rate at which lines of the BaseStation feed pass through the integration pipeline
+ * and through the reactive pipeline to the channel of valid messages.
+ *
+ * <p>Both pipelines are fed from lines held in memory, so the cost of reading a socket, which is
+ * the same for both, is excluded. The integration pipeline filters and parses lines on the calling
+ * thread using the same channels and handlers as the integration flow, and then offers messages to
+ * a {@link BaseStationMessageBuffer}; an operation ends once the buffer has drained, and the
+ * messages the buffer dropped or shed are reported by the {@code dropped} counter. The reactive
+ * pipeline reads only as fast as its rails consume, so it drops nothing; it saves batches with a
+ * saver that discards them. Each operation is one line, so the reported throughput is in lines per
+ * second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+  private static final int LINE_COUNT = 100_000;
+  private static final int BUFFER_CAPACITY = 10_000;
+
+  private final byte[][] lines = new byte[LINE_COUNT][];
+  private final AtomicLong dispatchedCount = new AtomicLong();
+  private final MessageChannel countingChannel =
+      (message, timeout) -> {
+        dispatchedCount.incrementAndGet();
+
+        return true;
+      };
+  private final BeanFactory beanFactory = new DefaultListableBeanFactory();
+  private MessageParsingService parsingService;
+  private MessageChannel integrationInput;
+  private BaseStationMessageBuffer buffer;
+
+  /**
+   * The number of rails of the reactive pipeline.
+   */
+  @State(Scope.Thread)
+  public static class Rails {
+    @Param({ "1", "4" })
+    public int rails;
+  }
+
+  /**
+   * Counts the messages dropped by the integration pipeline in each iteration.
+   */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Dropped {
+    public long dropped;
+  }
+
+  // The generated positions and altitudes jump about, so the limits are set high enough that no
+  // message is dropped: the checks still run, but the messages dispatched are unchanged
+  //
+  private static ImplausibleMessageFilteringService implausibleMessageFilteringService() {
+    return new ImplausibleMessageFilteringService(
+        true, 1.0e9, 1.0e9, -1500.0, 70000.0, 1000.0, 60L, 3, 1024);
+  }
+
+  private DirectChannel filter(Object filteringService, MessageChannel outputChannel) {
+    final DirectChannel inputChannel = new DirectChannel();
+    final MethodInvokingSelector selector = new MethodInvokingSelector(filteringService);
+    final MessageFilter filter = new MessageFilter(selector);
+
+    selector.setBeanFactory(beanFactory);
+    filter.setBeanFactory(beanFactory);
+    filter.setOutputChannel(outputChannel);
+    inputChannel.subscribe(filter);
+
+    return inputChannel;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    for (int i = 0; i < LINE_COUNT; i++) {
+      final int second = i / 10;
+
+      lines[i] =
+          String.format(
+              Locale.ROOT,
+              "MSG,3,1,1,%06X,1,2021/01/30,%02d:%02d:%02d.%03d,2021/01/30,%02d:%02d:%02d.%03d,,"
+                  + "%d,,,%.5f,%.5f,,,0,0,0,0",
+              0x400000 + i % 500,
+              second / 3600 % 24,
+              second / 60 % 60,
+              second % 60,
+              i % 1000,
+              second / 3600 % 24,
+              second / 60 % 60,
+              second % 60,
+              i % 1000,
+              1000 + i % 40_000,
+              50.0 + (i % 1000) / 500.0,
+              -1.0 + (i % 777) / 388.5)
+              .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    parsingService = new MessageParsingService();
+    buffer =
+        new BaseStationMessageBuffer(
+            new LoadSheddingService(0.5, 0.75, 0.9, 1000L), countingChannel, BUFFER_CAPACITY);
+
+    final DirectChannel inboundChannel = new DirectChannel();
+
+    inboundChannel.subscribe(message -> buffer.offer((BaseStationMessage) message.getPayload()));
+
+    final DirectChannel transformerChannel = new DirectChannel();
+    final MessageTransformingHandler transformer =
+        new MessageTransformingHandler(new MessagePayloadTransformerService(parsingService));
+
+    transformer.setBeanFactory(beanFactory);
+    transformer.setOutputChannel(
+        filter(
+            new InvalidMessageFilteringService(),
+            filter(implausibleMessageFilteringService(), inboundChannel)));
+    transformerChannel.subscribe(transformer);
+    integrationInput = filter(new EmptyMessageFilteringService(), transformerChannel);
+    buffer.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    buffer.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINE_COUNT)
+  public long integrationPipeline(Dropped dropped) throws InterruptedException {
+    final long dispatchedBefore = dispatchedCount.get();
+
+    for (byte[] line : lines) {
+      integrationInput.send(MessageBuilder.withPayload(line).build());
+    }
+
+    while (buffer.getSize() > 0) {
+      Thread.sleep(1L);
+    }
+
+    // Allow for the message the dispatcher may still be sending
+    //
+    Thread.sleep(1L);
+
+    final long dispatched = dispatchedCount.get() - dispatchedBefore;
+
+    dropped.dropped += LINE_COUNT - dispatched;
+
+    return dispatched;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINE_COUNT)
+  public long reactivePipeline(Rails rails) throws InterruptedException {
+    final ReactivePipelineService service =
+        new ReactivePipelineService(
+            new EmptyMessageFilteringService(),
+            new MessagePayloadTransformerService(parsingService),
+            new InvalidMessageFilteringService(),
+            implausibleMessageFilteringService(),
+            new RedundantMessageSuppressionService(false, 60L),
+            countingChannel,
+            batch -> { },
+            scheduler -> Flux.fromArray(lines).subscribeOn(scheduler),
+            BUFFER_CAPACITY,
+            rails.rails,
+            500,
+            Duration.ofSeconds(1L));
+    final long dispatchedBefore = dispatchedCount.get();
+
+    service.start();
+
+    while (service.getDispatchedCount() < LINE_COUNT) {
+      Thread.sleep(1L);
+    }
+
+    service.stop();
+
+    return dispatchedCount.get() - dispatchedBefore;
+  }
+}
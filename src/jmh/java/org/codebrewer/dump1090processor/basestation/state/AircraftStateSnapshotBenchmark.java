@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.codebrewer.dump1090processor.basestation.service.AircraftStateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of writing a snapshot of aircraft state, and of restoring one into an empty
+ * aircraft state service as happens at startup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AircraftStateSnapshotBenchmark {
+  @Param("10000")
+  private int aircraftCount;
+
+  private Path directory;
+  private Path snapshotPath;
+  private AircraftStateSnapshot snapshot;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final long nowMillis = System.currentTimeMillis();
+    final List<AircraftState> states = new ArrayList<>(aircraftCount);
+
+    for (int i = 0; i < aircraftCount; i++) {
+      states.add(
+          new AircraftState.Builder(0x400000 + i)
+              .callSign(String.format("TST%04d", i))
+              .squawk(1000 + i % 6777)
+              .altitude(1000.0f + i)
+              .groundSpeed(250.0f)
+              .track(i % 360)
+              .verticalRate(0.0f)
+              .position(50.0 + i * 1e-4, -1.0 + i * 1e-4, nowMillis)
+              .lastSeenMillis(nowMillis)
+              .messageCount(i)
+              .build());
+    }
+
+    directory = Files.createTempDirectory("snapshot-benchmark");
+    snapshotPath = directory.resolve("aircraft-state.snapshot");
+    snapshot = new AircraftStateSnapshot(nowMillis, states);
+    snapshot.write(snapshotPath);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(snapshotPath);
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public Path writeSnapshot() throws IOException {
+    snapshot.write(snapshotPath);
+
+    return snapshotPath;
+  }
+
+  @Benchmark
+  public int restoreSnapshot() throws IOException {
+    final AircraftStateService aircraftStateService =
+        new AircraftStateService(new OnHeapAircraftStateStore(), 300L);
+
+    return aircraftStateService.restore(AircraftStateSnapshot.read(snapshotPath).getStates());
+  }
+}
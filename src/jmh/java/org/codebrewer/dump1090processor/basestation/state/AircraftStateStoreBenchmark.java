@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the on-heap and off-heap aircraft state stores holding the state of many aircraft:
+ * the cost of one update as made by the aircraft state service, reading an aircraft's state and
+ * storing a replacement, and of a scan over every aircraft as made by queries and expiry.
+ *
+ * <p>Running with {@code -prof gc} shows the difference in allocation between the stores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AircraftStateStoreBenchmark {
+  @Param("50000")
+  private int aircraftCount;
+
+  @Param({ "on-heap", "off-heap" })
+  private String store;
+
+  private AircraftStateStore aircraftStateStore;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    aircraftStateStore =
+        "off-heap".equals(store)
+            ? new OffHeapAircraftStateStore(aircraftCount)
+            : new OnHeapAircraftStateStore();
+
+    for (int i = 0; i < aircraftCount; i++) {
+      aircraftStateStore.put(
+          new AircraftState.Builder(0x400000 + i)
+              .callSign(String.format("TST%04d", i % 10000))
+              .squawk(1000 + i % 6777)
+              .altitude(1000.0f + i)
+              .groundSpeed(250.0f)
+              .track(i % 360)
+              .verticalRate(0.0f)
+              .position(50.0 + i * 1e-4, -1.0 + i * 1e-4, i)
+              .lastSeenMillis(i)
+              .messageCount(i)
+              .build());
+    }
+  }
+
+  @Benchmark
+  public void update() {
+    final int address = 0x400000 + next;
+    final AircraftState current = aircraftStateStore.get(address);
+
+    aircraftStateStore.put(
+        new AircraftState.Builder(current)
+            .altitude(current.getAltitude() + 25.0f)
+            .lastSeenMillis(current.getLastSeenMillis() + 1L)
+            .messageCount(current.getMessageCount() + 1L)
+            .build());
+    next = next + 1 == aircraftCount ? 0 : next + 1;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void scan(Blackhole blackhole) {
+    aircraftStateStore.forEach(blackhole::consume);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of predicting the positions of many aircraft: copying their states into a
+ * batch, as made once per request for live positions, and predicting the positions of every
+ * aircraft in a batch, as made for each time requested.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionExtrapolatorBenchmark {
+  private static final long NOW = 1_612_008_000_000L;
+
+  @Param("50000")
+  private int aircraftCount;
+
+  private List<AircraftState> states;
+  private PositionExtrapolator extrapolator;
+  private double[] latitudes;
+  private double[] longitudes;
+  private double[] altitudes;
+  private double[] ages;
+  private long timeMillis = NOW;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    states = new ArrayList<>(aircraftCount);
+
+    for (int i = 0; i < aircraftCount; i++) {
+      states.add(
+          new AircraftState.Builder(0x400000 + i)
+              .altitude(1000.0f + i)
+              .groundSpeed(250.0f)
+              .track(i % 360)
+              .verticalRate(i % 2000 - 1000.0f)
+              .position(50.0 + i * 1e-4, -1.0 + i * 1e-4, NOW - i % 10_000)
+              .lastSeenMillis(NOW)
+              .build());
+    }
+
+    extrapolator = new PositionExtrapolator(states);
+    latitudes = new double[aircraftCount];
+    longitudes = new double[aircraftCount];
+    altitudes = new double[aircraftCount];
+    ages = new double[aircraftCount];
+  }
+
+  @Benchmark
+  public PositionExtrapolator batch() {
+    return new PositionExtrapolator(states);
+  }
+
+  @Benchmark
+  public void predict(Blackhole blackhole) {
+    timeMillis = timeMillis == NOW + 10_000L ? NOW : timeMillis + 100L;
+    extrapolator.predict(timeMillis, 10.0, latitudes, longitudes, altitudes, ages);
+    blackhole.consume(latitudes);
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.wire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.JsonMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of writing the live positions of 5,000 aircraft, and a track export of
+ * 10,000 position messages, as JSON using Jackson and in the compact binary wire format.
+ *
+ * <p>Scores are per aircraft or per message. The size of each response, uncompressed and
+ * compressed with gzip, is printed when the benchmark is set up, so the cost and the size can be
+ * read together.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+  private static final int AIRCRAFT_COUNT = 5_000;
+  private static final int TRACK_COUNT = 20;
+  private static final int TRACK_POINT_COUNT = 500;
+  private static final int RECORD_COUNT = TRACK_COUNT * TRACK_POINT_COUNT;
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  // Configured as Spring Boot configures the mapper used for responses
+  //
+  private final ObjectMapper objectMapper =
+      new ObjectMapper()
+          .registerModule(new JavaTimeModule())
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  private final List<PredictedPosition> positions = new ArrayList<>(AIRCRAFT_COUNT);
+  private final List<MessageRecord> records = new ArrayList<>(RECORD_COUNT);
+  private final WireBuffer buffer = new WireBuffer(AIRCRAFT_COUNT * 32);
+  private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(RECORD_COUNT * 256);
+
+  private static String callSign(Random random) {
+    final StringBuilder callSign = new StringBuilder();
+
+    for (int i = 0; i < 3; i++) {
+      callSign.append((char) ('A' + random.nextInt(26)));
+    }
+
+    return callSign.append(random.nextInt(10_000)).toString();
+  }
+
+  private static int gzippedSize(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+      gzipOutputStream.write(bytes);
+    }
+
+    return compressed.size();
+  }
+
+  private static void print(String name, int count, byte[] json, byte[] binary)
+      throws IOException {
+    System.out.printf(
+        "%n%s: JSON %d bytes (%.1f per item, %d gzipped), binary %d bytes (%.1f per item, "
+        + "%d gzipped)%n",
+        name,
+        json.length,
+        json.length / (double) count,
+        gzippedSize(json),
+        binary.length,
+        binary.length / (double) count,
+        gzippedSize(binary));
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final Random random = new Random(1L);
+
+    for (int i = 0; i < AIRCRAFT_COUNT; i++) {
+      final AircraftState state =
+          new AircraftState.Builder(random.nextInt(0x1000000))
+              .callSign(callSign(random))
+              .groundSpeed(random.nextInt(5000) / 10.0f)
+              .track(random.nextInt(3600) / 10.0f)
+              .verticalRate(random.nextInt(65) * 64.0f - 2048.0f)
+              .position(0.0, 0.0, NOW.toEpochMilli() - random.nextInt(10_000))
+              .build();
+
+      positions.add(
+          new PredictedPosition(
+              state,
+              NOW,
+              48.0 + random.nextDouble() * 8.0,
+              -6.0 + random.nextDouble() * 12.0,
+              random.nextInt(45_000),
+              (NOW.toEpochMilli() - state.getPositionMillis()) / 1000.0));
+    }
+
+    final double[] latitudes = new double[TRACK_COUNT];
+    final double[] longitudes = new double[TRACK_COUNT];
+    final float[] altitudes = new float[TRACK_COUNT];
+
+    for (int i = 0; i < TRACK_COUNT; i++) {
+      latitudes[i] = 50.0 + random.nextDouble() * 4.0;
+      longitudes[i] = -3.0 + random.nextDouble() * 6.0;
+      altitudes[i] = 25 * random.nextInt(1600);
+    }
+
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      final int track = i % TRACK_COUNT;
+
+      latitudes[track] += 0.0015 + random.nextDouble() * 0.0002;
+      longitudes[track] -= 0.002 + random.nextDouble() * 0.0002;
+      altitudes[track] += 25 * (random.nextInt(3) - 1);
+      records.add(
+          new MessageRecord.Builder(
+              1_000_000L + i * 7L,
+              MessageType.MSG,
+              String.format("%06X", 0x400000 + track),
+              NOW.plusMillis(i * 50L))
+              .transmissionType(TransmissionType.AIRBORNE_POSITION)
+              .altitude(altitudes[track])
+              .position(latitudes[track], longitudes[track])
+              .alert(false)
+              .emergency(false)
+              .identActive(false)
+              .onGround(false)
+              .build());
+    }
+
+    print(
+        "Positions", AIRCRAFT_COUNT, objectMapper.writeValueAsBytes(positions), binaryPositions());
+    jsonTrack();
+
+    final byte[] jsonTrack = outputStream.toByteArray();
+
+    binaryTrack();
+    print("Track", RECORD_COUNT, jsonTrack, outputStream.toByteArray());
+  }
+
+  private int writeTrack(MessageRecordWriter writer) throws IOException {
+    writer.start();
+
+    for (MessageRecord record : records) {
+      writer.write(record);
+    }
+
+    writer.finish(false);
+
+    return outputStream.size();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(AIRCRAFT_COUNT)
+  public byte[] jsonPositions() throws IOException {
+    return objectMapper.writeValueAsBytes(positions);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(AIRCRAFT_COUNT)
+  public byte[] binaryPositions() {
+    buffer.reset();
+    PositionFrameCodec.encode(NOW, positions, buffer);
+
+    return buffer.toByteArray();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORD_COUNT)
+  public int jsonTrack() throws IOException {
+    outputStream.reset();
+
+    return writeTrack(new JsonMessageRecordWriter(outputStream));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORD_COUNT)
+  public int binaryTrack() throws IOException {
+    outputStream.reset();
+
+    return writeTrack(new BinaryMessageRecordWriter(outputStream));
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of computing the range, bearing and elevation of an aircraft from the receiver
+ * by projection onto the local tangent plane using table-driven trigonometry, and by haversine
+ * formulae using the functions of {@link Math}, for positions as carried by messages.
+ *
+ * <p>The largest differences between the two over the positions used, all within 600 km of the
+ * receiver, are printed when the benchmark is set up, so the cost and the accuracy given up for it
+ * can be read together.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReceiverGeometryBenchmark {
+  private static final int POSITION_COUNT = 4096;
+  private static final double METRES_PER_DEGREE =
+      ReceiverGeometry.EARTH_RADIUS_METRES * Math.PI / 180.0;
+
+  private final ReceiverGeometry geometry = new ReceiverGeometry(52.0, -1.0, 100.0);
+  private final Point<?>[] positions = new Point<?>[POSITION_COUNT];
+  private final double[] altitudes = new double[POSITION_COUNT];
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(1L);
+    double rangeError = 0.0;
+    double bearingError = 0.0;
+    double elevationError = 0.0;
+
+    for (int i = 0; i < POSITION_COUNT; i++) {
+      final double distance = (1.0 + random.nextDouble() * 599.0) * 1000.0;
+      final double direction = random.nextDouble() * 2.0 * Math.PI;
+      final double latitude = 52.0 + Math.cos(direction) * distance / METRES_PER_DEGREE;
+      final double longitude =
+          -1.0 + Math.sin(direction) * distance
+                 / (METRES_PER_DEGREE * Math.cos(Math.toRadians(52.0)));
+
+      positions[i] =
+          new Point<>(new G2D(longitude, latitude), CoordinateReferenceSystems.WGS84);
+      altitudes[i] = random.nextDouble() * 13_000.0;
+
+      final ReceiverRelativePosition fast = geometry.locate(latitude, longitude, altitudes[i]);
+      final ReceiverRelativePosition exact =
+          geometry.locateExactly(latitude, longitude, altitudes[i]);
+      final double bearingDifference = Math.abs(fast.getBearing() - exact.getBearing()) % 360.0;
+
+      rangeError = Math.max(rangeError, Math.abs(fast.getRange() - exact.getRange()));
+      bearingError =
+          Math.max(bearingError, Math.min(bearingDifference, 360.0 - bearingDifference));
+      elevationError =
+          Math.max(elevationError, Math.abs(fast.getElevation() - exact.getElevation()));
+    }
+
+    System.out.printf(
+        "%nLargest differences from haversine: range %.3f m, bearing %.5f deg, "
+        + "elevation %.5f deg%n",
+        rangeError,
+        bearingError,
+        elevationError);
+  }
+
+  private G2D nextPosition() {
+    next = (next + 1) & (POSITION_COUNT - 1);
+
+    return (G2D) positions[next].getPosition();
+  }
+
+  @Benchmark
+  public ReceiverRelativePosition tangentPlane() {
+    final G2D position = nextPosition();
+
+    return geometry.locate(position.getLat(), position.getLon(), altitudes[next]);
+  }
+
+  @Benchmark
+  public ReceiverRelativePosition haversine() {
+    final G2D position = nextPosition();
+
+    return geometry.locateExactly(position.getLat(), position.getLon(), altitudes[next]);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-frame cost of decoding AVR-format text and checking the Mode S CRC, comparing
+ * the table-driven CRC with a bit-at-a-time implementation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModeSFrameBenchmark {
+  private final byte[] longFrameText =
+      "*8D4840D6202CC371C32CE0576098;".getBytes(StandardCharsets.US_ASCII);
+  private final byte[] shortFrameText =
+      "*5D4840D6F8740F;".getBytes(StandardCharsets.US_ASCII);
+  private final byte[] frame = new byte[HexFrameDecoder.MAX_FRAME_LENGTH];
+  private final byte[] longFrame = new byte[HexFrameDecoder.MAX_FRAME_LENGTH];
+
+  {
+    HexFrameDecoder.decode(longFrameText, 0, longFrameText.length, longFrame);
+  }
+
+  // The straightforward shift-and-xor CRC, processing one bit per iteration
+  //
+  private static int bitwiseResidual(byte[] frame, int frameLength) {
+    final int dataBits = (frameLength - 3) * 8;
+    int crc = 0;
+
+    for (int i = 0; i < dataBits; i++) {
+      final int bit = (frame[i >>> 3] >>> (7 - (i & 7))) & 1;
+
+      crc = ((crc << 1) | bit) ^ ((crc & 0x800000) != 0 ? 0xFFF409 : 0);
+    }
+
+    for (int i = 0; i < 24; i++) {
+      crc = (crc << 1) ^ ((crc & 0x800000) != 0 ? 0xFFF409 : 0);
+    }
+
+    final int parity = (frame[frameLength - 3] & 0xFF) << 16
+                       | (frame[frameLength - 2] & 0xFF) << 8
+                       | frame[frameLength - 1] & 0xFF;
+
+    return (crc & 0xFFFFFF) ^ parity;
+  }
+
+  @Benchmark
+  public int decodeLongFrameHex() {
+    return HexFrameDecoder.decode(longFrameText, 0, longFrameText.length, frame);
+  }
+
+  @Benchmark
+  public int decodeShortFrameHex() {
+    return HexFrameDecoder.decode(shortFrameText, 0, shortFrameText.length, frame);
+  }
+
+  @Benchmark
+  public int tableDrivenCrc() {
+    return ModeSCrc.residual(longFrame, 0, longFrame.length);
+  }
+
+  @Benchmark
+  public int bitwiseCrc() {
+    return bitwiseResidual(longFrame, longFrame.length);
+  }
+
+  @Benchmark
+  public int decodeHexAndCheckCrc() {
+    final int length = HexFrameDecoder.decode(longFrameText, 0, longFrameText.length, frame);
+
+    return ModeSCrc.residual(frame, 0, length);
+  }
+}
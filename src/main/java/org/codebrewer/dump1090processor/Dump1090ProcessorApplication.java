@@ -1,5 +1,5 @@
 /*
- * Copyright 2018, 2020 Mark Scott
+ * Copyright 2018, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,13 +18,24 @@ package org.codebrewer.dump1090processor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Application entry point.
+ *
+ * <p>If the {@code startup.exit} property is true, the application exits as soon as it has
+ * started, which is used to record the classes it loads in a class data sharing archive.
  */
 @SpringBootApplication
+@EnableScheduling
 public class Dump1090ProcessorApplication {
   public static void main(String[] args) {
-    SpringApplication.run(Dump1090ProcessorApplication.class, args);
+    final ConfigurableApplicationContext context =
+        SpringApplication.run(Dump1090ProcessorApplication.class, args);
+
+    if (context.getEnvironment().getProperty("startup.exit", Boolean.class, false)) {
+      System.exit(SpringApplication.exit(context));
+    }
   }
 }
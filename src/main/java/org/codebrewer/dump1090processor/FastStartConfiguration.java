@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor;
+
+import java.util.Arrays;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.Lifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Configuration that makes lazy initialization of beans, enabled by the
+ * {@code spring.main.lazy-initialization} property in the {@code fast-start} profile, safe for
+ * this application.
+ *
+ * <p>A lazily-initialized bean is created only when another bean first uses it. That suits web
+ * controllers, query services and much of the auto-configured infrastructure, but beans that do
+ * their work without being asked must still be created at startup: message endpoints, whose
+ * service activators are subscribed when they are created, integration flows, which create the
+ * services reading the feeds, and lifecycle and scheduled beans. Managed resources left lazy are
+ * created when first accessed over JMX.
+ */
+@Configuration(proxyBeanMethods = false)
+public class FastStartConfiguration {
+  /**
+   * Determines whether or not beans of a type must be created at startup.
+   *
+   * @param beanType the type of a bean, or null if unknown
+   *
+   * @return true if beans of the type must be created at startup, otherwise false
+   */
+  static boolean isEager(Class<?> beanType) {
+    if (beanType == null) {
+      return false;
+    }
+
+    return Lifecycle.class.isAssignableFrom(beanType)
+        || SmartInitializingSingleton.class.isAssignableFrom(beanType)
+        || IntegrationFlow.class.isAssignableFrom(beanType)
+        || AnnotatedElementUtils.hasAnnotation(beanType, MessageEndpoint.class)
+        || Arrays.stream(ReflectionUtils.getUniqueDeclaredMethods(beanType))
+                 .anyMatch(method -> AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+  }
+
+  /**
+   * Excludes from lazy initialization the beans that must be created at startup. The method is
+   * static so that the filter is available before any other bean is created.
+   *
+   * @return a filter excluding beans from lazy initialization
+   */
+  @Bean
+  static LazyInitializationExcludeFilter eagerBeanExcludeFilter() {
+    return (beanName, beanDefinition, beanType) -> isEager(beanType);
+  }
+}
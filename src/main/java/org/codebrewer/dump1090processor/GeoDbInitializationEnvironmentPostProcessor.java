@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor;
+
+import java.util.Collections;
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.StringUtils;
+
+/**
+ * Skips the initialization of the GeoDB spatial extension, and of the spatial index that depends on
+ * it, when no messages are persisted.
+ *
+ * <p>Running the {@code InitGeoDB} procedure is one of the slower steps in starting the
+ * application on a small host, and is wasted when nothing is written to the database. When the
+ * {@code geodb.init.when.persisting} property is true, as it is in the {@code fast-start} profile,
+ * and neither messages nor position reports are persisted, no retention job runs, no files are
+ * imported and the instance is not a cluster front-end, the
+ * {@code spring.datasource.initialization-mode} property is defaulted to {@code never}. A value
+ * given for that property explicitly is respected.
+ *
+ * <p>Spatial functions are unavailable in a database that has not been initialized, and enabling
+ * persistence at runtime, through a managed operation, does not initialize it: messages and
+ * positions are saved, but the position reports lack their spatial index and spatial functions
+ * remain unavailable until the application is restarted with persistence enabled. A warning
+ * saying so is logged whenever initialization is skipped.
+ */
+public class GeoDbInitializationEnvironmentPostProcessor implements EnvironmentPostProcessor {
+  static final String INITIALIZATION_MODE_PROPERTY = "spring.datasource.initialization-mode";
+
+  private static final String PROPERTY_SOURCE_NAME = "geoDbInitialization";
+
+  private final Log logger;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param logFactory a factory for logs that are written once logging has been initialized
+   */
+  public GeoDbInitializationEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+    logger = logFactory.getLog(GeoDbInitializationEnvironmentPostProcessor.class);
+  }
+
+  static boolean isPersisting(ConfigurableEnvironment environment) {
+    if ("frontend".equals(environment.getProperty("cluster.role"))) {
+      return false;
+    }
+
+    final boolean persistMessages =
+        environment.getProperty("basestation.feed.persist", Boolean.class, true);
+
+    return persistMessages
+        || environment.getProperty("position.report.persist", Boolean.class, persistMessages)
+        || environment.getProperty("retention.enabled", Boolean.class, false)
+        || StringUtils.hasText(environment.getProperty("bulk.import.files"));
+  }
+
+  @Override
+  public void postProcessEnvironment(
+      ConfigurableEnvironment environment, SpringApplication application) {
+    if (!environment.getProperty("geodb.init.when.persisting", Boolean.class, false)
+        || environment.containsProperty(INITIALIZATION_MODE_PROPERTY)
+        || isPersisting(environment)) {
+      return;
+    }
+
+    logger.info("Skipping GeoDB initialization as nothing is persisted");
+    logger.warn(
+        "Persistence enabled at runtime will not initialize GeoDB; restart with persistence "
+            + "enabled to index position reports");
+    environment.getPropertySources().addLast(
+        new MapPropertySource(
+            PROPERTY_SOURCE_NAME,
+            Collections.singletonMap(INITIALIZATION_MODE_PROPERTY, "never")));
+  }
+}
@@ -0,0 +1,721 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.bulk;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import org.codebrewer.dump1090processor.basestation.domain.Hashing;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Imports BaseStation messages from log files of the text written by <em>Dump1090</em> on port
+ * 30003, parsing the lines of the files in parallel.
+ *
+ * <p>Each plain file is split into chunks of about a fixed size that end at line boundaries, and
+ * each chunk is read and parsed by a task in a fork-join pool. A gzip-compressed file, one whose
+ * name ends with {@code .gz}, cannot be split, so one task decompresses it and forks a task to
+ * parse each block of {@value #BLOCK_LINES} lines. Lines that cannot be parsed are counted and
+ * skipped.
+ *
+ * <p>Parsed messages are partitioned by a hash of their ICAO address, so that every message from
+ * an aircraft is written by the same writer thread, and handed to the writer of their partition
+ * in batches of a fixed size. Only a few batches may wait for each writer, after which parsing
+ * waits for the writer to catch up. The messages of one chunk are written in the order of its
+ * lines, but chunks are parsed, and so written, in no particular order.
+ */
+public class SbsLogImporter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SbsLogImporter.class);
+  private static final int DEFAULT_CHUNK_BYTES = 8 << 20;
+  private static final int MAX_LINE_BYTES = 64 << 10;
+  private static final int BLOCK_LINES = 16_384;
+  private static final int QUEUED_BATCHES = 4;
+  private static final int STREAM_BUFFER_BYTES = 64 << 10;
+  private static final long PROGRESS_INTERVAL_MILLIS = 5_000L;
+
+  // The batch that tells a writer there are no more to come, recognised by identity
+  //
+  private static final List<BaseStationMessage> END_OF_BATCHES = Collections.emptyList();
+
+  /**
+   * A writer of batches of imported messages.
+   *
+   * <p>Each partition has a writer thread of its own, from which the batches of that partition
+   * are written, so a writer must allow batches to be written concurrently.
+   */
+  public interface BatchWriter {
+    /**
+     * Writes a batch of messages.
+     *
+     * @param batch the messages to write, not null or empty
+     *
+     * @throws RuntimeException if the batch could not be written
+     */
+    void write(List<BaseStationMessage> batch);
+  }
+
+  private final Function<String, BaseStationMessage> parser;
+  private final BatchWriter batchWriter;
+  private final int parallelism;
+  private final int partitionCount;
+  private final int batchSize;
+  private final int chunkBytes;
+  private final AtomicLong totalBytes = new AtomicLong();
+  private final AtomicLong readBytes = new AtomicLong();
+  private final AtomicLong lineCount = new AtomicLong();
+  private final AtomicLong invalidCount = new AtomicLong();
+  private final AtomicLong writtenCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private volatile long startMillis;
+  private volatile long endMillis;
+  private Partition[] partitions;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * @param parser a function parsing one line of text as a message, returning null or throwing
+   * an exception if the line is not a valid message
+   * @param batchWriter a writer of batches of parsed messages
+   * @param parallelism the number of threads parsing lines
+   * @param partitionCount the number of partitions, each with its own writer thread
+   * @param batchSize the number of messages in each batch written, except the last of each
+   * partition
+   */
+  public SbsLogImporter(
+      Function<String, BaseStationMessage> parser,
+      BatchWriter batchWriter,
+      int parallelism,
+      int partitionCount,
+      int batchSize) {
+    this(parser, batchWriter, parallelism, partitionCount, batchSize, DEFAULT_CHUNK_BYTES);
+  }
+
+  SbsLogImporter(
+      Function<String, BaseStationMessage> parser,
+      BatchWriter batchWriter,
+      int parallelism,
+      int partitionCount,
+      int batchSize,
+      int chunkBytes) {
+    if (parallelism < 1 || partitionCount < 1 || batchSize < 1 || chunkBytes < 1) {
+      throw new IllegalArgumentException(
+          "Parallelism, partition count, batch size and chunk size must be positive");
+    }
+
+    this.parser = parser;
+    this.batchWriter = batchWriter;
+    this.parallelism = parallelism;
+    this.partitionCount = partitionCount;
+    this.batchSize = batchSize;
+    this.chunkBytes = chunkBytes;
+  }
+
+  /**
+   * Imports the messages in some files, returning once they have all been written.
+   *
+   * <p>The counts of lines read and messages written are reset at the start of each import, and
+   * progress is logged periodically.
+   *
+   * @param files the files to import, not null
+   *
+   * @return the number of messages written
+   *
+   * @throws IOException if a file cannot be read, or the import is interrupted
+   */
+  public synchronized long importFiles(List<Path> files) throws IOException {
+    final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+    resetCounts();
+
+    for (Path file : files) {
+      totalBytes.addAndGet(Files.size(file));
+      addTasks(file, tasks);
+    }
+
+    partitions = new Partition[partitionCount];
+
+    for (int i = 0; i < partitionCount; i++) {
+      partitions[i] = new Partition(i);
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+    try {
+      awaitTasks(pool.submit(() -> ForkJoinTask.invokeAll(tasks)));
+    } finally {
+      pool.shutdownNow();
+
+      try {
+        pool.awaitTermination(1L, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      // Write what has been parsed, unless interrupted, in which case it is abandoned
+      //
+      final boolean interrupted = Thread.currentThread().isInterrupted();
+
+      for (Partition partition : partitions) {
+        if (interrupted) {
+          partition.abandon();
+        } else {
+          partition.finish();
+        }
+      }
+
+      for (Partition partition : partitions) {
+        partition.awaitWriter();
+      }
+
+      partitions = null;
+      endMillis = System.currentTimeMillis();
+    }
+
+    LOGGER.info(
+        "Imported {} messages from {} files in {}ms: {} lines, {} invalid, {} not written,"
+            + " {} lines/s",
+        writtenCount.get(),
+        files.size(),
+        endMillis - startMillis,
+        lineCount.get(),
+        invalidCount.get(),
+        failedCount.get(),
+        getLinesPerSecond());
+
+    return writtenCount.get();
+  }
+
+  public long getTotalBytes() {
+    return totalBytes.get();
+  }
+
+  public long getReadBytes() {
+    return readBytes.get();
+  }
+
+  public long getLineCount() {
+    return lineCount.get();
+  }
+
+  public long getInvalidCount() {
+    return invalidCount.get();
+  }
+
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * Gets the rate at which lines have been read by the current import, or were read by the last.
+   *
+   * @return the number of lines read per second, or zero if there has been no import
+   */
+  public long getLinesPerSecond() {
+    final long start = startMillis;
+
+    if (start == 0L) {
+      return 0L;
+    }
+
+    final long end = endMillis == 0L ? System.currentTimeMillis() : endMillis;
+
+    return lineCount.get() * 1000L / Math.max(1L, end - start);
+  }
+
+  private void resetCounts() {
+    totalBytes.set(0L);
+    readBytes.set(0L);
+    lineCount.set(0L);
+    invalidCount.set(0L);
+    writtenCount.set(0L);
+    failedCount.set(0L);
+    startMillis = System.currentTimeMillis();
+    endMillis = 0L;
+  }
+
+  private void addTasks(Path file, List<ForkJoinTask<?>> tasks) throws IOException {
+    if (file.getFileName().toString().endsWith(".gz")) {
+      tasks.add(new CompressedFileTask(file));
+
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      final ByteBuffer buffer = ByteBuffer.allocate(4096);
+      long start = 0L;
+
+      while (start < size) {
+        final long end = nextLineStart(channel, Math.min(size, start + chunkBytes), size, buffer);
+
+        tasks.add(new ChunkTask(file, start, end));
+        start = end;
+      }
+    }
+  }
+
+  // Gets the position following the first line feed at or after a position, giving up after the
+  // longest expected line so that a file without line feeds is still split into chunks
+  //
+  private static long nextLineStart(
+      FileChannel channel, long position, long size, ByteBuffer buffer) throws IOException {
+    final long limit = Math.min(size, position + MAX_LINE_BYTES);
+
+    while (position < limit) {
+      buffer.clear();
+
+      final int read = channel.read(buffer, position);
+
+      if (read <= 0) {
+        break;
+      }
+
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+
+      position += read;
+    }
+
+    return Math.min(position, limit);
+  }
+
+  private void awaitTasks(ForkJoinTask<?> task) throws IOException {
+    while (true) {
+      try {
+        task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        return;
+      } catch (TimeoutException e) {
+        logProgress();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Import interrupted");
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+
+        if (cause instanceof UncheckedIOException) {
+          throw ((UncheckedIOException) cause).getCause();
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+
+        throw new IllegalStateException("Import failed", cause);
+      }
+    }
+  }
+
+  private void logProgress() {
+    final long total = totalBytes.get();
+
+    LOGGER.info(
+        "Import {}% complete: {} lines, {} invalid, {} messages written, {} lines/s",
+        total == 0L ? 100L : readBytes.get() * 100L / total,
+        lineCount.get(),
+        invalidCount.get(),
+        writtenCount.get(),
+        getLinesPerSecond());
+  }
+
+  private int partitionOf(BaseStationMessage baseStationMessage) {
+    final long hash = Hashing.hashIcaoAddress(baseStationMessage.getIcaoAddress());
+
+    return (int) Long.remainderUnsigned(hash, partitionCount);
+  }
+
+  private void write(List<BaseStationMessage> batch) {
+    try {
+      batchWriter.write(batch);
+      writtenCount.addAndGet(batch.size());
+    } catch (RuntimeException e) {
+      failedCount.addAndGet(batch.size());
+      LOGGER.warn("Failed to write {} imported messages: {}", batch.size(), e.getMessage());
+    }
+  }
+
+  // The messages parsed by one task, gathered by partition and handed to the partitions in
+  // batches, together with counts that are added to the totals whenever a batch is handed over
+  //
+  private final class TaskOutput {
+    private final List<List<BaseStationMessage>> messages = new ArrayList<>(partitionCount);
+    private long lines;
+    private long invalid;
+
+    private TaskOutput() {
+      for (int i = 0; i < partitionCount; i++) {
+        messages.add(new ArrayList<>());
+      }
+    }
+
+    private void parse(String line) {
+      if (line.isEmpty()) {
+        return;
+      }
+
+      lines++;
+
+      BaseStationMessage baseStationMessage;
+
+      try {
+        baseStationMessage = parser.apply(line);
+      } catch (RuntimeException e) {
+        baseStationMessage = null;
+      }
+
+      if (baseStationMessage == null
+          || baseStationMessage == BaseStationMessage.INVALID_MESSAGE) {
+        invalid++;
+
+        return;
+      }
+
+      final int partition = partitionOf(baseStationMessage);
+      final List<BaseStationMessage> partitionMessages = messages.get(partition);
+
+      partitionMessages.add(baseStationMessage);
+
+      if (partitionMessages.size() >= batchSize) {
+        messages.set(partition, new ArrayList<>());
+        addCounts();
+        partitions[partition].add(partitionMessages);
+      }
+    }
+
+    private void complete() {
+      for (int i = 0; i < partitionCount; i++) {
+        if (!messages.get(i).isEmpty()) {
+          partitions[i].add(messages.get(i));
+        }
+      }
+
+      addCounts();
+    }
+
+    private void addCounts() {
+      lineCount.addAndGet(lines);
+      invalidCount.addAndGet(invalid);
+      lines = 0L;
+      invalid = 0L;
+    }
+  }
+
+  // Parses the lines of a chunk of a plain file
+  //
+  private final class ChunkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Path file;
+    private final long start;
+    private final long end;
+
+    private ChunkTask(Path file, long start, long end) {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      final byte[] bytes = new byte[(int) (end - start)];
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, start + buffer.position()) < 0) {
+            throw new EOFException("File truncated during import: " + file);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      readBytes.addAndGet(bytes.length);
+
+      final TaskOutput output = new TaskOutput();
+      int lineStart = 0;
+
+      for (int i = 0; i <= bytes.length; i++) {
+        if (i == bytes.length || bytes[i] == '\n') {
+          int lineEnd = i;
+
+          if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+            lineEnd--;
+          }
+
+          output.parse(
+              new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.US_ASCII));
+          lineStart = i + 1;
+        }
+      }
+
+      output.complete();
+    }
+  }
+
+  // Decompresses a gzip-compressed file, forking a task to parse each block of lines
+  //
+  private final class CompressedFileTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Path file;
+
+    private CompressedFileTask(Path file) {
+      this.file = file;
+    }
+
+    @Override
+    protected void compute() {
+      final Deque<ForkJoinTask<?>> forked = new ArrayDeque<>();
+
+      try (BufferedReader reader =
+               new BufferedReader(
+                   new InputStreamReader(
+                       new GZIPInputStream(
+                           new CountingInputStream(Files.newInputStream(file)),
+                           STREAM_BUFFER_BYTES),
+                       StandardCharsets.US_ASCII),
+                   STREAM_BUFFER_BYTES)) {
+        List<String> block = new ArrayList<>(BLOCK_LINES);
+
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+          block.add(line);
+
+          if (block.size() == BLOCK_LINES) {
+            forked.addLast(new BlockTask(block).fork());
+            block = new ArrayList<>(BLOCK_LINES);
+
+            // Bound the number of blocks held in memory by helping to parse the oldest before
+            // reading any more
+            //
+            while (forked.size() > 2 * parallelism) {
+              forked.removeFirst().join();
+            }
+          }
+        }
+
+        new BlockTask(block).compute();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        for (ForkJoinTask<?> task : forked) {
+          task.join();
+        }
+      }
+    }
+  }
+
+  // Parses a block of lines read from a compressed file
+  //
+  private final class BlockTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<String> lines;
+
+    private BlockTask(List<String> lines) {
+      this.lines = lines;
+    }
+
+    @Override
+    protected void compute() {
+      final TaskOutput output = new TaskOutput();
+
+      for (String line : lines) {
+        output.parse(line);
+      }
+
+      output.complete();
+    }
+  }
+
+  // Counts the compressed bytes read from a file
+  //
+  private final class CountingInputStream extends FilterInputStream {
+    private CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int b = super.read();
+
+      if (b >= 0) {
+        readBytes.incrementAndGet();
+      }
+
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      final int read = super.read(b, off, len);
+
+      if (read > 0) {
+        readBytes.addAndGet(read);
+      }
+
+      return read;
+    }
+  }
+
+  // The messages of one partition waiting to be batched, and the batches waiting for the
+  // partition's writer thread
+  //
+  private final class Partition {
+    private final BlockingQueue<List<BaseStationMessage>> batches =
+        new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    private final Thread writerThread;
+    private List<BaseStationMessage> pending = new ArrayList<>();
+
+    private Partition(int index) {
+      writerThread = new Thread(this::writeBatches, "bulk-import-writer-" + index);
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+
+    private void add(List<BaseStationMessage> messages) {
+      final List<List<BaseStationMessage>> fullBatches = new ArrayList<>(1);
+
+      synchronized (this) {
+        if (pending.isEmpty() && messages.size() == batchSize) {
+          fullBatches.add(messages);
+        } else {
+          for (BaseStationMessage baseStationMessage : messages) {
+            pending.add(baseStationMessage);
+
+            if (pending.size() == batchSize) {
+              fullBatches.add(pending);
+              pending = new ArrayList<>(batchSize);
+            }
+          }
+        }
+      }
+
+      for (List<BaseStationMessage> batch : fullBatches) {
+        enqueue(batch);
+      }
+    }
+
+    private void finish() {
+      final List<BaseStationMessage> batch;
+
+      synchronized (this) {
+        batch = pending;
+        pending = new ArrayList<>();
+      }
+
+      if (!batch.isEmpty()) {
+        enqueue(batch);
+      }
+
+      enqueue(END_OF_BATCHES);
+    }
+
+    // Waits for room in the queue of batches, letting the pool start another thread in place of
+    // a blocked parsing thread
+    //
+    private void enqueue(List<BaseStationMessage> batch) {
+      try {
+        ForkJoinPool.managedBlock(
+            new ForkJoinPool.ManagedBlocker() {
+              private boolean queued;
+
+              @Override
+              public boolean block() throws InterruptedException {
+                if (!queued) {
+                  batches.put(batch);
+                  queued = true;
+                }
+
+                return true;
+              }
+
+              @Override
+              public boolean isReleasable() {
+                if (!queued) {
+                  queued = batches.offer(batch);
+                }
+
+                return queued;
+              }
+            });
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException("Import interrupted");
+      }
+    }
+
+    private void writeBatches() {
+      try {
+        for (List<BaseStationMessage> batch = batches.take();
+             batch != END_OF_BATCHES;
+             batch = batches.take()) {
+          write(batch);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void abandon() {
+      writerThread.interrupt();
+    }
+
+    private void awaitWriter() {
+      try {
+        writerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
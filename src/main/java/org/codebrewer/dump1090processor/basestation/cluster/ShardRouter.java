@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.cluster;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+import org.codebrewer.dump1090processor.basestation.domain.Hashing;
+
+/**
+ * Assigns aircraft to the workers of a cluster by the hash of their ICAO address, so that every
+ * representation of an address, in either case, is assigned to the same worker.
+ *
+ * <p>Assignment uses rendezvous (highest random weight) hashing: each aircraft is assigned to the
+ * available worker for which a hash of the ICAO address and the worker's identity is largest. Every
+ * message from an aircraft therefore reaches the same worker while the set of available workers is
+ * unchanged. When a worker becomes unavailable only the aircraft assigned to it are reassigned,
+ * spread evenly over the remaining workers, and they return to it once it is available again.
+ */
+public final class ShardRouter {
+  private final long[] workerSeeds;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param workerIds the identities of the workers, in a fixed order, not null or empty
+   */
+  public ShardRouter(List<String> workerIds) {
+    if (workerIds.isEmpty()) {
+      throw new IllegalArgumentException("At least one worker is required");
+    }
+
+    workerSeeds = new long[workerIds.size()];
+
+    for (int i = 0; i < workerSeeds.length; i++) {
+      workerSeeds[i] = Hashing.mix(workerIds.get(i).hashCode());
+    }
+  }
+
+  /**
+   * Gets the number of workers known to this router.
+   *
+   * @return the number of workers known to this router
+   */
+  public int getWorkerCount() {
+    return workerSeeds.length;
+  }
+
+  /**
+   * Gets the worker to which an aircraft is assigned.
+   *
+   * @param icaoAddress the ICAO address of the aircraft, not null
+   * @param available a predicate testing whether or not the worker at an index is available
+   *
+   * @return the index of the worker to which the aircraft is assigned, or -1 if no worker is
+   * available
+   */
+  public int route(String icaoAddress, IntPredicate available) {
+    final long addressHash = Hashing.hashIcaoAddress(icaoAddress);
+    int selected = -1;
+    long selectedWeight = 0L;
+
+    for (int i = 0; i < workerSeeds.length; i++) {
+      if (available.test(i)) {
+        final long weight = Hashing.mix(addressHash ^ workerSeeds[i]);
+
+        if (selected < 0 || Long.compareUnsigned(weight, selectedWeight) > 0) {
+          selected = i;
+          selectedWeight = weight;
+        }
+      }
+    }
+
+    return selected;
+  }
+}
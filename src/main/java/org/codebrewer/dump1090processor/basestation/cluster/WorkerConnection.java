@@ -0,0 +1,358 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.cluster;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.journal.MessageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent TCP connection from a front-end instance to one worker instance of a cluster.
+ *
+ * <p>Messages offered to the connection are queued, without blocking, and written by a dedicated
+ * sender thread. Each message is written as a frame comprising a four byte, big-endian length
+ * followed by the message as encoded by {@link MessageCodec}; the sender writes every message
+ * queued at the time in one batch before flushing. The sender thread connects to the worker and,
+ * whenever the connection is lost, reconnects at a fixed interval until stopped. The
+ * {@link Listener} is told whenever the connection is established or lost, and is handed the
+ * messages that were queued but not written when it was lost.
+ */
+public class WorkerConnection {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorkerConnection.class);
+  private static final long POLL_MILLIS = 100L;
+  private static final int BATCH_SIZE = 256;
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  /**
+   * A listener for changes to the state of a worker connection.
+   *
+   * <p>Listeners are called on the sender thread of the connection.
+   */
+  public interface Listener {
+    /**
+     * Called when a connection to the worker has been established.
+     *
+     * @param connection the connection
+     */
+    void onConnected(WorkerConnection connection);
+
+    /**
+     * Called when the connection to the worker has been lost.
+     *
+     * @param connection the connection
+     * @param unsent the messages that were queued but not written, in the order they were offered
+     */
+    void onDisconnected(WorkerConnection connection, List<BaseStationMessage> unsent);
+  }
+
+  private final String host;
+  private final int port;
+  private final int connectTimeoutMillis;
+  private final long reconnectIntervalMillis;
+  private final Listener listener;
+  private final BlockingQueue<BaseStationMessage> queue;
+  private final Object idleMonitor = new Object();
+  private final Object queueLock = new Object();
+  private final AtomicLong sentCount = new AtomicLong();
+  private final AtomicLong overflowCount = new AtomicLong();
+  private final AtomicLong lostCount = new AtomicLong();
+  private final AtomicLong disconnectCount = new AtomicLong();
+  private volatile boolean connected;
+  private volatile boolean running;
+  private boolean connectFailureLogged;
+  private Socket socket;
+  private DataOutputStream output;
+  private Thread senderThread;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param address the address of the worker, as {@code host:port}
+   * @param queueCapacity the maximum number of messages queued for the worker
+   * @param connectTimeoutMillis the time allowed for a connection to be established
+   * @param reconnectIntervalMillis the interval between attempts to connect to the worker
+   * @param listener a listener for changes to the state of the connection
+   *
+   * @throws IllegalArgumentException if the address is not of the form {@code host:port}
+   */
+  public WorkerConnection(
+      String address,
+      int queueCapacity,
+      int connectTimeoutMillis,
+      long reconnectIntervalMillis,
+      Listener listener) {
+    final int separator = address.lastIndexOf(':');
+
+    if (separator <= 0) {
+      throw new IllegalArgumentException("Worker address must be host:port: " + address);
+    }
+
+    try {
+      this.port = Integer.parseInt(address.substring(separator + 1));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Worker address must be host:port: " + address, e);
+    }
+
+    this.host = address.substring(0, separator);
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.reconnectIntervalMillis = reconnectIntervalMillis;
+    this.listener = listener;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  /**
+   * Gets the address of the worker, as {@code host:port}.
+   *
+   * @return the address of the worker
+   */
+  public String getAddress() {
+    return host + ':' + port;
+  }
+
+  /**
+   * Offers a message for sending to the worker, returning immediately.
+   *
+   * @param baseStationMessage the message to send
+   *
+   * @return true if the message was queued, or false if the worker is not connected or too many
+   * messages are already queued for it
+   */
+  public boolean offer(BaseStationMessage baseStationMessage) {
+    // The check and the enqueue are made under the lock that disconnect() holds while clearing
+    // the flag and draining the queue, so a message is either handed back as unsent or not queued
+    //
+    synchronized (queueLock) {
+      if (!connected) {
+        return false;
+      }
+
+      if (!queue.offer(baseStationMessage)) {
+        overflowCount.incrementAndGet();
+
+        return false;
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Starts the sender thread, which connects to the worker.
+   */
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    senderThread = new Thread(this::send, "cluster-worker-" + getAddress());
+    senderThread.setDaemon(true);
+    senderThread.start();
+  }
+
+  /**
+   * Stops the sender thread once any messages already queued have been written, and disconnects
+   * from the worker.
+   */
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+
+    synchronized (idleMonitor) {
+      running = false;
+      idleMonitor.notifyAll();
+    }
+
+    try {
+      senderThread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    senderThread = null;
+  }
+
+  public boolean isConnected() {
+    return connected;
+  }
+
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  public long getSentCount() {
+    return sentCount.get();
+  }
+
+  public long getOverflowCount() {
+    return overflowCount.get();
+  }
+
+  public long getLostCount() {
+    return lostCount.get();
+  }
+
+  public long getDisconnectCount() {
+    return disconnectCount.get();
+  }
+
+  private void send() {
+    final List<BaseStationMessage> batch = new ArrayList<>(BATCH_SIZE);
+
+    while (running || (connected && !queue.isEmpty())) {
+      if (!connected) {
+        if (!connect()) {
+          idle(reconnectIntervalMillis);
+        }
+
+        continue;
+      }
+
+      final BaseStationMessage first;
+
+      try {
+        first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+
+      if (first != null) {
+        batch.add(first);
+        queue.drainTo(batch, BATCH_SIZE - 1);
+
+        try {
+          write(batch);
+          sentCount.addAndGet(batch.size());
+        } catch (IOException e) {
+          lostCount.addAndGet(batch.size());
+          disconnect(e);
+        }
+
+        batch.clear();
+      }
+    }
+
+    if (connected) {
+      final List<BaseStationMessage> unsent = new ArrayList<>();
+
+      synchronized (queueLock) {
+        connected = false;
+        queue.drainTo(unsent);
+      }
+
+      lostCount.addAndGet(unsent.size());
+      closeSocket();
+    }
+  }
+
+  private boolean connect() {
+    final Socket newSocket = new Socket();
+
+    try {
+      newSocket.setTcpNoDelay(true);
+      newSocket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+      socket = newSocket;
+      output = new DataOutputStream(
+          new BufferedOutputStream(newSocket.getOutputStream(), BUFFER_BYTES));
+    } catch (IOException e) {
+      closeQuietly(newSocket);
+
+      if (!connectFailureLogged) {
+        connectFailureLogged = true;
+        LOGGER.warn("Failed to connect to worker {}: {}", getAddress(), e.getMessage());
+      }
+
+      return false;
+    }
+
+    connectFailureLogged = false;
+    connected = true;
+    LOGGER.info("Connected to worker {}", getAddress());
+    listener.onConnected(this);
+
+    return true;
+  }
+
+  private void write(List<BaseStationMessage> batch) throws IOException {
+    for (BaseStationMessage baseStationMessage : batch) {
+      final byte[] payload = MessageCodec.encode(baseStationMessage);
+
+      output.writeInt(payload.length);
+      output.write(payload);
+    }
+
+    output.flush();
+  }
+
+  private void disconnect(IOException e) {
+    final List<BaseStationMessage> unsent = new ArrayList<>(queue.size());
+
+    synchronized (queueLock) {
+      connected = false;
+      queue.drainTo(unsent);
+    }
+
+    closeSocket();
+    disconnectCount.incrementAndGet();
+    LOGGER.warn(
+        "Lost connection to worker {}, {} queued messages to reassign: {}",
+        getAddress(),
+        unsent.size(),
+        e.getMessage());
+    listener.onDisconnected(this, unsent);
+  }
+
+  private void closeSocket() {
+    closeQuietly(socket);
+    socket = null;
+    output = null;
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Nothing more can be done
+    }
+  }
+
+  private void idle(long millis) {
+    synchronized (idleMonitor) {
+      if (running) {
+        try {
+          idleMonitor.wait(millis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2018, 2019, 2020 Mark Scott
+ * Copyright 2018, 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -54,6 +54,34 @@ public class DomainUtils {
     return validatedCallSign;
   }
 
+  /**
+   * Parses the 6 digit hexadecimal representation of a 24 bit ICAO address.
+   *
+   * @param icaoAddress the hexadecimal representation of an ICAO address, null returns -1
+   *
+   * @return the ICAO address as an integer in the range 0 to 0xFFFFFF, or -1 if the given value is
+   * not a valid representation
+   */
+  public static int parseIcaoAddress(String icaoAddress) {
+    if (icaoAddress == null || icaoAddress.isEmpty() || icaoAddress.length() > 6) {
+      return -1;
+    }
+
+    int address = 0;
+
+    for (int i = 0; i < icaoAddress.length(); i++) {
+      final int digit = Character.digit(icaoAddress.charAt(i), 16);
+
+      if (digit < 0) {
+        return -1;
+      }
+
+      address = address << 4 | digit;
+    }
+
+    return address;
+  }
+
   /**
    * Indicates whether or not a message of the given type is expected to be seen in the feed of
    * BaseStation messages generated by the {@code dump1090} application.
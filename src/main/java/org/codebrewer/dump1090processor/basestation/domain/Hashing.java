@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.domain;
+
+import java.util.Locale;
+
+/**
+ * Hash functions shared by the components that sketch, partition or index aircraft.
+ */
+public final class Hashing {
+  private Hashing() {
+    // Prevent instantiation
+  }
+
+  /**
+   * Mixes the bits of a value to produce a well-distributed 64 bit hash, using the finalization
+   * step of MurmurHash3.
+   *
+   * @param value a value
+   *
+   * @return a hash of the value
+   */
+  public static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+
+    return value;
+  }
+
+  /**
+   * Hashes the hexadecimal representation of an ICAO address, so that every representation of the
+   * same address, in either case, has the same hash.
+   *
+   * @param icaoAddress the hexadecimal representation of an ICAO address, not null
+   *
+   * @return a hash of the parsed address, or of the upper-case text if it cannot be parsed
+   */
+  public static long hashIcaoAddress(String icaoAddress) {
+    final int address = DomainUtils.parseIcaoAddress(icaoAddress);
+
+    return mix(address < 0 ? icaoAddress.toUpperCase(Locale.ROOT).hashCode() : address);
+  }
+}
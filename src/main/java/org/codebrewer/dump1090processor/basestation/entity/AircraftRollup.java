@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.entity;
+
+import java.time.Instant;
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+
+/**
+ * An entity summarizing the BaseStation messages received from one aircraft over one period,
+ * retained after the messages themselves have been purged.
+ *
+ * <p>Averages are maintained incrementally, so messages for a period can be added in any number of
+ * batches.
+ */
+@Entity
+@Table(
+    indexes = @Index(
+        name = "aircraft_rollup_icao_address_period_start",
+        columnList = "icaoAddress, periodStart",
+        unique = true))
+public class AircraftRollup {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE)
+  private long id;
+  @Column(length = 6, nullable = false)
+  private String icaoAddress;
+  @Column(nullable = false)
+  private Instant periodStart;
+  private long messageCount;
+  private long altitudeCount;
+  private Float averageAltitude;
+  private long groundSpeedCount;
+  private Float averageGroundSpeed;
+  private long positionCount;
+  private Point<G2D> averagePosition;
+
+  @SuppressWarnings("unused")
+  AircraftRollup() {
+    // No-arg constructor required by Hibernate
+  }
+
+  /**
+   * Creates an empty roll-up for an aircraft and period.
+   *
+   * @param icaoAddress the 24 bit address assigned by the ICAO to an aircraft transponder,
+   * represented as a 6 digit hexadecimal number, not null
+   * @param periodStart the start of the period summarized, not null
+   */
+  public AircraftRollup(String icaoAddress, Instant periodStart) {
+    this.icaoAddress = Objects.requireNonNull(icaoAddress, "ICAO address is required");
+    this.periodStart = Objects.requireNonNull(periodStart, "Period start is required");
+  }
+
+  private static double runningMean(Float mean, long count, double value) {
+    return mean == null ? value : mean + (value - mean) / count;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  public Instant getPeriodStart() {
+    return periodStart;
+  }
+
+  public long getMessageCount() {
+    return messageCount;
+  }
+
+  public long getAltitudeCount() {
+    return altitudeCount;
+  }
+
+  public Float getAverageAltitude() {
+    return averageAltitude;
+  }
+
+  public long getGroundSpeedCount() {
+    return groundSpeedCount;
+  }
+
+  public Float getAverageGroundSpeed() {
+    return averageGroundSpeed;
+  }
+
+  public long getPositionCount() {
+    return positionCount;
+  }
+
+  public Point<G2D> getAveragePosition() {
+    return averagePosition;
+  }
+
+  /**
+   * Adds a message to this roll-up.
+   *
+   * <p>Every message contributes to the message count; transmission messages also contribute any
+   * altitude, ground speed and position they report to the corresponding averages.
+   *
+   * @param baseStationMessage a message from this roll-up's aircraft and period, not null
+   */
+  public void add(BaseStationMessage baseStationMessage) {
+    messageCount++;
+
+    if (!(baseStationMessage instanceof TransmissionMessage)) {
+      return;
+    }
+
+    final TransmissionMessage transmissionMessage = (TransmissionMessage) baseStationMessage;
+
+    if (transmissionMessage.getAltitude() != null) {
+      altitudeCount++;
+      averageAltitude =
+          (float) runningMean(averageAltitude, altitudeCount, transmissionMessage.getAltitude());
+    }
+
+    if (transmissionMessage.getGroundSpeed() != null) {
+      groundSpeedCount++;
+      averageGroundSpeed =
+          (float) runningMean(
+              averageGroundSpeed, groundSpeedCount, transmissionMessage.getGroundSpeed());
+    }
+
+    final Point<G2D> position = transmissionMessage.getPosition();
+
+    if (position != null) {
+      positionCount++;
+
+      if (averagePosition == null) {
+        averagePosition = position;
+      } else {
+        final G2D mean = averagePosition.getPosition();
+        final G2D value = position.getPosition();
+
+        averagePosition =
+            new Point<>(
+                new G2D(
+                    mean.getLon() + (value.getLon() - mean.getLon()) / positionCount,
+                    mean.getLat() + (value.getLat() - mean.getLat()) / positionCount),
+                position.getCoordinateReferenceSystem());
+      }
+    }
+  }
+}
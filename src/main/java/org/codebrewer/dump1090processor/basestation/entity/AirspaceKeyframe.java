@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.entity;
+
+import java.time.Instant;
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+
+/**
+ * An entity holding the state of every aircraft alive at one instant, from which the state at any
+ * later instant can be rebuilt by replaying only the messages received since.
+ *
+ * <p>The states are held as a compressed aircraft state snapshot, which is opaque to SQL.
+ */
+@Entity
+public class AirspaceKeyframe {
+  @Id
+  private Instant timestamp;
+  private int aircraftCount;
+  @Lob
+  @Column(nullable = false)
+  private byte[] states;
+
+  @SuppressWarnings("unused")
+  AirspaceKeyframe() {
+    // No-arg constructor required by Hibernate
+  }
+
+  /**
+   * Creates a keyframe.
+   *
+   * @param timestamp the instant at which the states were captured, not null
+   * @param aircraftCount the number of aircraft whose states were captured
+   * @param states the compressed snapshot of the captured states, not null
+   */
+  public AirspaceKeyframe(Instant timestamp, int aircraftCount, byte[] states) {
+    this.timestamp = Objects.requireNonNull(timestamp, "Timestamp is required");
+    this.aircraftCount = aircraftCount;
+    this.states = Objects.requireNonNull(states, "States are required");
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public int getAircraftCount() {
+    return aircraftCount;
+  }
+
+  public byte[] getStates() {
+    return states;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2018, 2019, 2020 Mark Scott
+ * Copyright 2018, 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,14 +24,29 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Inheritance;
+import javax.persistence.Table;
 
 /**
  * Abstract base class for BaseStation message entities.
+ *
+ * <p>The indexes on the table support queries ordered by timestamp and identifier, optionally
+ * restricted to a single aircraft or to particular message types.
  */
 @Entity
 @Inheritance
 @DiscriminatorColumn(length = 3, name = "message_type")
+@Table(
+    indexes = {
+        @Index(name = "base_station_message_timestamp", columnList = "timestamp, id"),
+        @Index(
+            name = "base_station_message_icao_address_timestamp",
+            columnList = "icaoAddress, timestamp, id"),
+        @Index(
+            name = "base_station_message_type_timestamp",
+            columnList = "message_type, transmissionType, timestamp, id")
+    })
 public abstract class BaseStationMessage {
   /**
    * An instance used when the raw data received for a message cannot be parsed into a valid
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.entity;
+
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * An entity recording the offset up to which the records of a journal have been applied to the
+ * database.
+ *
+ * <p>The checkpoint is updated in the same transaction as the records it covers, so after a
+ * failure the journal is replayed from exactly the first record not applied.
+ */
+@Entity
+public class JournalCheckpoint {
+  @Id
+  @Column(length = 32)
+  private String name;
+  private long appliedOffset;
+
+  @SuppressWarnings("unused")
+  JournalCheckpoint() {
+    // No-arg constructor required by Hibernate
+  }
+
+  /**
+   * Creates a checkpoint for a journal.
+   *
+   * @param name the name of the journal, not null
+   * @param appliedOffset the offset up to which the journal's records have been applied
+   */
+  public JournalCheckpoint(String name, long appliedOffset) {
+    this.name = Objects.requireNonNull(name, "Name is required");
+    this.appliedOffset = appliedOffset;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getAppliedOffset() {
+    return appliedOffset;
+  }
+
+  public void setAppliedOffset(long appliedOffset) {
+    this.appliedOffset = appliedOffset;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.entity;
+
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * An entity recording the identifier of the last message copied by a migration between schemas.
+ *
+ * <p>The progress is updated in the same transaction as the messages it covers, so a later
+ * migration copies exactly the messages with greater identifiers.
+ */
+@Entity
+public class MigrationProgress {
+  @Id
+  @Column(length = 32)
+  private String name;
+  private long lastMigratedId;
+
+  @SuppressWarnings("unused")
+  MigrationProgress() {
+    // No-arg constructor required by Hibernate
+  }
+
+  /**
+   * Records the progress of a migration.
+   *
+   * @param name the name of the migration, not null
+   * @param lastMigratedId the identifier of the last message copied
+   */
+  public MigrationProgress(String name, long lastMigratedId) {
+    this.name = Objects.requireNonNull(name, "Name is required");
+    this.lastMigratedId = lastMigratedId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getLastMigratedId() {
+    return lastMigratedId;
+  }
+}
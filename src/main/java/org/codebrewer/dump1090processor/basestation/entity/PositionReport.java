@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.entity;
+
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+
+/**
+ * An entity recording a single reported aircraft position.
+ *
+ * <p>Position reports are a narrow copy of the transmission messages that carry a position, kept
+ * in a table of their own so that spatial queries need not read the many messages without one.
+ * The ICAO address is held as an integer and the timestamp as milliseconds since the epoch to keep
+ * rows small. Rows are only ever appended.
+ *
+ * <p>In addition to the indexes declared here, the {@code position} column has a spatial index
+ * created by {@code data-geodb.sql}, since JPA has no way to declare one.
+ */
+@Entity
+@Table(
+    indexes = {
+        @Index(name = "position_report_timestamp", columnList = "timestamp, id"),
+        @Index(
+            name = "position_report_icao_address_timestamp",
+            columnList = "icaoAddress, timestamp, id")
+    })
+public class PositionReport {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE)
+  private long id;
+  private int icaoAddress;
+  private long timestamp;
+  @Column(nullable = false)
+  private Point<G2D> position;
+  private Float altitude;
+  private Boolean onGround;
+
+  @SuppressWarnings("unused")
+  PositionReport() {
+    // No-arg constructor required by Hibernate
+  }
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * @param icaoAddress the 24 bit address assigned by the ICAO to the aircraft's transponder
+   * @param timestamp the time at which the position was received, in milliseconds since the epoch
+   * @param position the reported position, not null
+   * @param altitude the reported altitude, in feet, or null if not reported
+   * @param onGround whether or not the aircraft reported being on the ground, or null if not
+   * reported
+   */
+  public PositionReport(
+      int icaoAddress, long timestamp, Point<G2D> position, Float altitude, Boolean onGround) {
+    this.icaoAddress = icaoAddress;
+    this.timestamp = timestamp;
+    this.position = Objects.requireNonNull(position, "Position is required");
+    this.altitude = altitude;
+    this.onGround = onGround;
+  }
+
+  /**
+   * Creates a position report from a transmission message, if the message carries a position.
+   *
+   * @param transmissionMessage a transmission message, not null
+   *
+   * @return a position report, or null if the message has no position or an invalid ICAO address
+   */
+  public static PositionReport fromMessage(TransmissionMessage transmissionMessage) {
+    final int icaoAddress = DomainUtils.parseIcaoAddress(transmissionMessage.getIcaoAddress());
+
+    if (transmissionMessage.getPosition() == null || icaoAddress < 0) {
+      return null;
+    }
+
+    return new PositionReport(
+        icaoAddress,
+        transmissionMessage.getTimestamp().toEpochMilli(),
+        transmissionMessage.getPosition(),
+        transmissionMessage.getAltitude(),
+        transmissionMessage.getOnGround());
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public int getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public Point<G2D> getPosition() {
+    return position;
+  }
+
+  public Float getAltitude() {
+    return altitude;
+  }
+
+  public Boolean getOnGround() {
+    return onGround;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.history;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+
+/**
+ * An immutable picture of the airspace at one instant: the position of every aircraft whose
+ * position was known at the time.
+ */
+public final class AirspaceFrame {
+  private final Instant timestamp;
+  private final List<PredictedPosition> aircraft;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param timestamp the instant pictured, not null
+   * @param aircraft the position of each aircraft at the instant, not null
+   */
+  public AirspaceFrame(Instant timestamp, List<PredictedPosition> aircraft) {
+    this.timestamp = timestamp;
+    this.aircraft = Collections.unmodifiableList(aircraft);
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public List<PredictedPosition> getAircraft() {
+    return aircraft;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.history;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+
+/**
+ * Rebuilds the state of every aircraft from persisted messages, replayed in order of timestamp.
+ *
+ * <p>Messages are applied as the live aircraft state service applies them, so that a replay
+ * reproduces the state that was held at the time. An aircraft not heard for longer than a
+ * time-to-live is forgotten: the next message from it starts a new state, and it is omitted from
+ * the aircraft alive at any later time. This makes the state at a given time depend only on the
+ * messages received within the time-to-live before it, so a replay started from a keyframe
+ * produces exactly the same state as one started from the earliest message.
+ *
+ * <p>The range, bearing and elevation of an aircraft from the receiver are not persisted, and are
+ * always unknown in a replayed state.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class AirspaceReplay {
+  private final long ttlMillis;
+  private final Map<Integer, AircraftState> states = new HashMap<>();
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param ttlMillis the time, in milliseconds, after which an aircraft that has not been heard is
+   * forgotten
+   */
+  public AirspaceReplay(long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * Replaces the state of every aircraft with the states captured in a keyframe.
+   *
+   * @param keyframeStates the states of the aircraft alive at the time of the keyframe, not null
+   */
+  public void restore(Collection<AircraftState> keyframeStates) {
+    states.clear();
+
+    for (AircraftState state : keyframeStates) {
+      states.put(state.getAddress(), state);
+    }
+  }
+
+  /**
+   * Applies a persisted message to the state of the aircraft that sent it.
+   *
+   * @param messageRecord a persisted message, not null, no older than any message already applied
+   */
+  public void apply(MessageRecord messageRecord) {
+    final int address = DomainUtils.parseIcaoAddress(messageRecord.getIcaoAddress());
+
+    if (address < 0) {
+      return;
+    }
+
+    final long timestampMillis = messageRecord.getTimestamp().toEpochMilli();
+    final AircraftState current = states.get(address);
+    final AircraftState.Builder builder;
+
+    if (current != null && current.getLastSeenMillis() >= timestampMillis - ttlMillis) {
+      builder =
+          new AircraftState.Builder(current)
+              .lastSeenMillis(Math.max(timestampMillis, current.getLastSeenMillis()))
+              .messageCount(current.getMessageCount() + 1);
+    } else {
+      builder = new AircraftState.Builder(address).lastSeenMillis(timestampMillis).messageCount(1L);
+    }
+
+    if (messageRecord.getCallSign() != null && !messageRecord.getCallSign().isEmpty()) {
+      builder.callSign(messageRecord.getCallSign());
+    }
+
+    if (messageRecord.getMessageType() == MessageType.MSG) {
+      applyTransmission(builder, messageRecord, timestampMillis);
+    }
+
+    states.put(address, builder.build());
+  }
+
+  /**
+   * Gets the state of every aircraft alive at a given time.
+   *
+   * <p>The time should be no earlier than the last message applied.
+   *
+   * @param timeMillis the time, in milliseconds since the epoch
+   *
+   * @return the state of every aircraft heard within the time-to-live before the given time
+   */
+  public List<AircraftState> getStates(long timeMillis) {
+    final long oldestMillis = timeMillis - ttlMillis;
+    final List<AircraftState> alive = new ArrayList<>(states.size());
+
+    for (AircraftState state : states.values()) {
+      if (state.getLastSeenMillis() >= oldestMillis) {
+        alive.add(state);
+      }
+    }
+
+    return alive;
+  }
+
+  /**
+   * Forgets every aircraft not alive at a given time, bounding the memory used by long replays.
+   *
+   * @param timeMillis the time, in milliseconds since the epoch
+   */
+  public void expire(long timeMillis) {
+    final long oldestMillis = timeMillis - ttlMillis;
+
+    states.values().removeIf(state -> state.getLastSeenMillis() < oldestMillis);
+  }
+
+  private static void applyTransmission(
+      AircraftState.Builder builder, MessageRecord messageRecord, long timestampMillis) {
+    if (messageRecord.getAltitude() != null) {
+      builder.altitude(messageRecord.getAltitude());
+    }
+
+    if (messageRecord.getGroundSpeed() != null) {
+      builder.groundSpeed(messageRecord.getGroundSpeed());
+    }
+
+    if (messageRecord.getTrack() != null) {
+      builder.track(messageRecord.getTrack());
+    }
+
+    if (messageRecord.getVerticalRate() != null) {
+      builder.verticalRate(messageRecord.getVerticalRate());
+    }
+
+    if (messageRecord.getSquawk() != null) {
+      builder.squawk(messageRecord.getSquawk());
+    }
+
+    if (messageRecord.getLatitude() != null && messageRecord.getLongitude() != null) {
+      builder.position(messageRecord.getLatitude(), messageRecord.getLongitude(), timestampMillis)
+             .receiverRelativePosition(Float.NaN, Float.NaN, Float.NaN);
+    }
+
+    if (messageRecord.getOnGround() != null) {
+      builder.onGround(messageRecord.getOnGround());
+    }
+
+    if (messageRecord.getEmergency() != null) {
+      builder.emergency(messageRecord.getEmergency());
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+import static org.codebrewer.dump1090processor.basestation.service.ReceiverRelativePositionService.RECEIVER_RELATIVE_POSITION_HEADER;
+
+import org.codebrewer.dump1090processor.basestation.cluster.ConditionalOnShardProcessing;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.service.AircraftStateService;
+import org.codebrewer.dump1090processor.geo.ReceiverRelativePosition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+
+/**
+ * An endpoint that applies every valid BaseStation message to the state of the aircraft that
+ * sent it.
+ */
+@MessageEndpoint
+@ConditionalOnShardProcessing
+public class AircraftStateEndpoint {
+  private final AircraftStateService aircraftStateService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param aircraftStateService a service maintaining aircraft state
+   */
+  @Autowired
+  public AircraftStateEndpoint(AircraftStateService aircraftStateService) {
+    this.aircraftStateService = aircraftStateService;
+  }
+
+  /**
+   * Handles incoming BaseStation message payloads.
+   *
+   * <p>Messages are received from the channel named by
+   * {@link BaseStationIntegrationConfiguration#BASE_STATION_MESSAGE_CHANNEL_NAME
+   * BASE_STATION_MESSAGE_CHANNEL_NAME}.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   * @param receiverRelativePosition the position relative to the receiver of the aircraft that
+   * sent the message, or null if unknown
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = BASE_STATION_MESSAGE_CHANNEL_NAME)
+  public void consume(
+      @Payload BaseStationMessage baseStationMessage,
+      @Header(name = RECEIVER_RELATIVE_POSITION_HEADER, required = false)
+          ReceiverRelativePosition receiverRelativePosition) {
+    aircraftStateService.update(baseStationMessage, receiverRelativePosition);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.INBOUND_MESSAGE_CHANNEL_NAME;
+
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.service.AvrMessagePayloadTransformerService;
+import org.codebrewer.dump1090processor.basestation.service.AvrMessageProducerService;
+import org.codebrewer.dump1090processor.basestation.service.EmptyMessageFilteringService;
+import org.codebrewer.dump1090processor.basestation.service.ImplausibleMessageFilteringService;
+import org.codebrewer.dump1090processor.basestation.service.InvalidMessageFilteringService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.IntegrationFlows;
+
+/**
+ * A configuration for an integration flow that connects to the raw (AVR format) Mode S frame feed
+ * available on some host.
+ *
+ * <p>Incoming frames are decoded into {@link BaseStationMessage} entities and placed on the same
+ * inbound message channel as those parsed from the BaseStation message feed, so they are handled
+ * identically from that point on.
+ */
+@Configuration
+public class AvrIntegrationConfiguration {
+  private final AvrMessageProducerService avrMessageProducerService;
+  private final EmptyMessageFilteringService emptyMessageFilteringService;
+  private final AvrMessagePayloadTransformerService avrMessagePayloadTransformerService;
+  private final InvalidMessageFilteringService invalidMessageFilteringService;
+  private final ImplausibleMessageFilteringService implausibleMessageFilteringService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param avrMessageProducerService a service for producing the raw frame feed
+   * @param emptyMessageFilteringService a service for removing empty messages from the feed
+   * @param avrMessagePayloadTransformerService a service for transforming incoming raw frames
+   * into {@code BaseStationMessage} objects
+   * @param invalidMessageFilteringService a service for removing invalid messages from the feed
+   * @param implausibleMessageFilteringService a service for removing messages implying impossible
+   * aircraft movement from the feed
+   */
+  @Autowired
+  public AvrIntegrationConfiguration(
+      AvrMessageProducerService avrMessageProducerService,
+      EmptyMessageFilteringService emptyMessageFilteringService,
+      AvrMessagePayloadTransformerService avrMessagePayloadTransformerService,
+      InvalidMessageFilteringService invalidMessageFilteringService,
+      ImplausibleMessageFilteringService implausibleMessageFilteringService) {
+    this.avrMessageProducerService = avrMessageProducerService;
+    this.emptyMessageFilteringService = emptyMessageFilteringService;
+    this.avrMessagePayloadTransformerService = avrMessagePayloadTransformerService;
+    this.invalidMessageFilteringService = invalidMessageFilteringService;
+    this.implausibleMessageFilteringService = implausibleMessageFilteringService;
+  }
+
+  @Bean
+  public IntegrationFlow avrTcpMessageClient() {
+    return IntegrationFlows.from(avrMessageProducerService.tcpMessageClient())
+                           .filter(emptyMessageFilteringService)
+                           .transform(avrMessagePayloadTransformerService)
+                           .filter(invalidMessageFilteringService)
+                           .filter(implausibleMessageFilteringService)
+                           .channel(INBOUND_MESSAGE_CHANNEL_NAME)
+                           .get();
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2018, 2019, 2020 Mark Scott
+ * Copyright 2018, 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,30 +18,42 @@ package org.codebrewer.dump1090processor.basestation.integration;
 
 import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
 import org.codebrewer.dump1090processor.basestation.service.EmptyMessageFilteringService;
+import org.codebrewer.dump1090processor.basestation.service.ImplausibleMessageFilteringService;
 import org.codebrewer.dump1090processor.basestation.service.InvalidMessageFilteringService;
 import org.codebrewer.dump1090processor.basestation.service.MessagePayloadTransformerService;
 import org.codebrewer.dump1090processor.basestation.service.MessageProducerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.IntegrationFlows;
+import org.springframework.messaging.MessageChannel;
 
 /**
  * A configuration for an integration flow that connects to the BaseStation message feed available
  * on some host.
  *
  * <p>Incoming messages are transformed into {@link BaseStationMessage} entities and placed on the
- * message channel named by {@link #BASE_STATION_MESSAGE_CHANNEL_NAME}.
+ * message channel named by {@link #INBOUND_MESSAGE_CHANNEL_NAME}. From there they pass through the
+ * {@link BaseStationMessageBuffer} to the channel named by
+ * {@link #BASE_STATION_MESSAGE_CHANNEL_NAME}, which delivers each message to every endpoint
+ * subscribed to it.
+ *
+ * <p>When the reactive pipeline is selected, the channels remain but the BaseStation feed is read
+ * by the {@code ReactivePipelineService} instead of by the integration flow.
  */
 @Configuration
 public class BaseStationIntegrationConfiguration {
-  static final String BASE_STATION_MESSAGE_CHANNEL_NAME = "baseStationMessageChannel";
+  public static final String BASE_STATION_MESSAGE_CHANNEL_NAME = "baseStationMessageChannel";
+  public static final String INBOUND_MESSAGE_CHANNEL_NAME = "inboundBaseStationMessageChannel";
 
   private final MessageProducerService messageProducerService;
   private final EmptyMessageFilteringService emptyMessageFilteringService;
   private final MessagePayloadTransformerService messagePayloadTransformerService;
   private final InvalidMessageFilteringService invalidMessageFilteringService;
+  private final ImplausibleMessageFilteringService implausibleMessageFilteringService;
 
   /**
    * Sole constructor for this class.
@@ -55,26 +67,57 @@ public class BaseStationIntegrationConfiguration {
    * into {@code BaseStationMessage} objects
    * @param invalidMessageFilteringService a service for removing invalid messages from the message
    * feed
+   * @param implausibleMessageFilteringService a service for removing messages implying impossible
+   * aircraft movement from the message feed
    */
   @Autowired
   public BaseStationIntegrationConfiguration(
       MessageProducerService messageProducerService,
       EmptyMessageFilteringService emptyMessageFilteringService,
       MessagePayloadTransformerService messagePayloadTransformerService,
-      InvalidMessageFilteringService invalidMessageFilteringService) {
+      InvalidMessageFilteringService invalidMessageFilteringService,
+      ImplausibleMessageFilteringService implausibleMessageFilteringService) {
     this.messageProducerService = messageProducerService;
     this.messagePayloadTransformerService = messagePayloadTransformerService;
     this.emptyMessageFilteringService = emptyMessageFilteringService;
     this.invalidMessageFilteringService = invalidMessageFilteringService;
+    this.implausibleMessageFilteringService = implausibleMessageFilteringService;
+  }
+
+  /**
+   * Creates the channel to which valid BaseStation messages are dispatched from the buffer.
+   *
+   * <p>The channel publishes each message to all of its subscribers, so that endpoints such as
+   * {@link BaseStationMessageEndpoint} and {@link MessageStatisticsEndpoint} each see every
+   * message.
+   *
+   * @return a publish-subscribe channel
+   */
+  @Bean(name = BASE_STATION_MESSAGE_CHANNEL_NAME)
+  public MessageChannel baseStationMessageChannel() {
+    return new PublishSubscribeChannel();
+  }
+
+  /**
+   * Creates the channel on which valid messages from every feed are placed, on the thread reading
+   * the feed.
+   *
+   * @return a direct channel
+   */
+  @Bean(name = INBOUND_MESSAGE_CHANNEL_NAME)
+  public MessageChannel inboundMessageChannel() {
+    return new DirectChannel();
   }
 
   @Bean
+  @ConditionalOnIntegrationPipeline
   public IntegrationFlow tcpMessageClient() {
     return IntegrationFlows.from(messageProducerService.tcpMessageClient())
                            .filter(emptyMessageFilteringService)
                            .transform(messagePayloadTransformerService)
                            .filter(invalidMessageFilteringService)
-                           .channel(BASE_STATION_MESSAGE_CHANNEL_NAME)
+                           .filter(implausibleMessageFilteringService)
+                           .channel(INBOUND_MESSAGE_CHANNEL_NAME)
                            .get();
   }
 }
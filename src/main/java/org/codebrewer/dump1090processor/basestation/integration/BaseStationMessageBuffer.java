@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.INBOUND_MESSAGE_CHANNEL_NAME;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.QueueHandOffEvent;
+import org.codebrewer.dump1090processor.basestation.service.LoadSheddingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * A bounded buffer between the threads reading the message feeds and the endpoints consuming valid
+ * messages.
+ *
+ * <p>Messages arriving on the channel named by
+ * {@link BaseStationIntegrationConfiguration#INBOUND_MESSAGE_CHANNEL_NAME
+ * INBOUND_MESSAGE_CHANNEL_NAME} are offered to the buffer without ever blocking, so a slow consumer
+ * cannot stall the reading of a feed. The {@link LoadSheddingService} decides which messages to
+ * shed as the buffer fills, and any message arriving when the buffer is full is dropped. A single
+ * dispatcher thread sends buffered messages, in order, to the channel named by
+ * {@link BaseStationIntegrationConfiguration#BASE_STATION_MESSAGE_CHANNEL_NAME
+ * BASE_STATION_MESSAGE_CHANNEL_NAME}.
+ */
+@MessageEndpoint
+@ConditionalOnIntegrationPipeline
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=BaseStationMessageBuffer",
+    description = "A bounded buffer between the message feeds and the message consumers")
+public class BaseStationMessageBuffer implements SmartLifecycle {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BaseStationMessageBuffer.class);
+
+  // Start before, and stop after, the message producers that feed the buffer
+  //
+  private static final int PHASE = Integer.MIN_VALUE / 2;
+  private static final long POLL_MILLIS = 100L;
+
+  private final LoadSheddingService loadSheddingService;
+  private final MessageChannel outputChannel;
+  private final int capacity;
+  private final BlockingQueue<BaseStationMessage> queue;
+  private final AtomicLong overflowCount = new AtomicLong();
+  private final AtomicLong dispatchedCount = new AtomicLong();
+  private final AtomicLong dispatchFailureCount = new AtomicLong();
+  private volatile int highWaterMark;
+  private volatile boolean running;
+  private Thread dispatcherThread;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The capacity of the buffer can be specified using the {@code pipeline.buffer.capacity}
+   * property and defaults to 10000 if undefined.
+   *
+   * @param loadSheddingService a service deciding which messages to shed as the buffer fills
+   * @param outputChannel the channel to which buffered messages are sent
+   * @param capacity the maximum number of messages held in the buffer
+   */
+  @Autowired
+  public BaseStationMessageBuffer(
+      LoadSheddingService loadSheddingService,
+      @Qualifier(BASE_STATION_MESSAGE_CHANNEL_NAME) MessageChannel outputChannel,
+      @Value("${pipeline.buffer.capacity:10000}") int capacity) {
+    LOGGER.info("BaseStationMessageBuffer: capacity {}", capacity);
+    this.loadSheddingService = loadSheddingService;
+    this.outputChannel = outputChannel;
+    this.capacity = capacity;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Offers an incoming message to the buffer, returning immediately.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = INBOUND_MESSAGE_CHANNEL_NAME)
+  public void offer(@Payload BaseStationMessage baseStationMessage) {
+    final int size = queue.size();
+
+    if (!loadSheddingService.accept(baseStationMessage, size, capacity)) {
+      return;
+    }
+
+    if (!queue.offer(baseStationMessage)) {
+      overflowCount.incrementAndGet();
+
+      return;
+    }
+
+    if (size >= highWaterMark) {
+      highWaterMark = size + 1;
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    dispatcherThread = new Thread(this::dispatch, "message-buffer-dispatcher");
+    dispatcherThread.setDaemon(true);
+    dispatcherThread.start();
+  }
+
+  /**
+   * Stops dispatching once the messages already in the buffer have been dispatched.
+   */
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+
+    try {
+      dispatcherThread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    dispatcherThread = null;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  @ManagedAttribute(description = "The capacity of the buffer")
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @ManagedAttribute(description = "The number of messages currently in the buffer")
+  public int getSize() {
+    return queue.size();
+  }
+
+  @ManagedAttribute(description = "The largest number of messages held in the buffer")
+  public int getHighWaterMark() {
+    return highWaterMark;
+  }
+
+  @ManagedAttribute(description = "The number of messages dropped because the buffer was full")
+  public long getOverflowCount() {
+    return overflowCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages dispatched to consumers")
+  public long getDispatchedCount() {
+    return dispatchedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages that a consumer failed to handle")
+  public long getDispatchFailureCount() {
+    return dispatchFailureCount.get();
+  }
+
+  private void dispatch() {
+    while (running || !queue.isEmpty()) {
+      final BaseStationMessage baseStationMessage;
+
+      try {
+        baseStationMessage = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+
+        return;
+      }
+
+      if (baseStationMessage != null) {
+        final QueueHandOffEvent handOffEvent = new QueueHandOffEvent();
+
+        handOffEvent.begin();
+
+        try {
+          outputChannel.send(MessageBuilder.withPayload(baseStationMessage).build());
+          dispatchedCount.incrementAndGet();
+        } catch (RuntimeException e) {
+          dispatchFailureCount.incrementAndGet();
+          LOGGER.error(
+              "Failed to dispatch message: {}: {}", e.getClass().getSimpleName(), e.getMessage());
+        }
+
+        handOffEvent.complete(
+            "BaseStationMessageBuffer", baseStationMessage.getIcaoAddress(), queue.size());
+      }
+    }
+  }
+}
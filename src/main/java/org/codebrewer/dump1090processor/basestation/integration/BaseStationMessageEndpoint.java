@@ -1,5 +1,5 @@
 /*
- * Copyright 2018, 2019, 2020 Mark Scott
+ * Copyright 2018, 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,12 +18,17 @@ package org.codebrewer.dump1090processor.basestation.integration;
 
 import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
 
+import org.codebrewer.dump1090processor.basestation.cluster.ConditionalOnShardProcessing;
 import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
 import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.service.DeferredPersistenceService;
+import org.codebrewer.dump1090processor.basestation.service.MessageJournalService;
+import org.codebrewer.dump1090processor.basestation.service.RedundantMessageSuppressionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.integration.annotation.MessageEndpoint;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.jmx.export.annotation.ManagedOperation;
@@ -34,9 +39,23 @@ import org.springframework.messaging.handler.annotation.Payload;
  * An endpoint for consuming BaseStation messages.
  *
  * <p>By default, valid consumed messages are persisted to the BaseStation repository. A managed
- * operation is provided to give runtime control over persistence.
+ * operation is provided to give runtime control over persistence. When the
+ * {@link MessageJournalService} is running, messages are appended to its journal and saved to the
+ * repository asynchronously; messages that cannot be journalled are saved directly, through the
+ * {@link DeferredPersistenceService} so that messages arriving before the database is ready are
+ * held rather than blocking the dispatching thread. Messages that the
+ * {@link RedundantMessageSuppressionService} finds carry no new information are not persisted.
+ *
+ * <p>This endpoint is replaced by {@link PerTypeMessageEndpoint} when the
+ * {@code message.store.schema} property is set to {@code per-type}.
  */
 @MessageEndpoint
+@ConditionalOnIntegrationPipeline
+@ConditionalOnShardProcessing
+@ConditionalOnProperty(
+    name = "message.store.schema",
+    havingValue = "single-table",
+    matchIfMissing = true)
 @ManagedResource(
     objectName = "org.codebrewer.dump1090processor:type=Control,name=BaseStationMessageEndpoint",
     description = "An endpoint for handling BaseStation messages")
@@ -44,6 +63,9 @@ public class BaseStationMessageEndpoint {
   private static final Logger LOGGER = LoggerFactory.getLogger(BaseStationMessageEndpoint.class);
 
   private final BaseStationMessageRepository repository;
+  private final MessageJournalService journalService;
+  private final DeferredPersistenceService deferredPersistenceService;
+  private final RedundantMessageSuppressionService redundantMessageSuppressionService;
   private volatile boolean persistMessages;
 
   /**
@@ -53,14 +75,24 @@ public class BaseStationMessageEndpoint {
    * {@code basestation.feed.persist} property. Messages are persisted if the property is undefined.
    *
    * @param repository a repository to which BaseStation message entities can be persisted
+   * @param journalService a service journalling messages before they are persisted
+   * @param deferredPersistenceService a service holding saves until the database is ready
+   * @param redundantMessageSuppressionService a service deciding which messages carry new
+   * information
    * @param persistMessages whether or not BaseStation message entities should be persisted
    */
   @Autowired
   public BaseStationMessageEndpoint(
       BaseStationMessageRepository repository,
+      MessageJournalService journalService,
+      DeferredPersistenceService deferredPersistenceService,
+      RedundantMessageSuppressionService redundantMessageSuppressionService,
       @Value("${basestation.feed.persist:true}") boolean persistMessages) {
     LOGGER.info("BaseStation message persistence: {}", persistMessages);
     this.repository = repository;
+    this.journalService = journalService;
+    this.deferredPersistenceService = deferredPersistenceService;
+    this.redundantMessageSuppressionService = redundantMessageSuppressionService;
     this.persistMessages = persistMessages;
   }
 
@@ -76,8 +108,10 @@ public class BaseStationMessageEndpoint {
   @SuppressWarnings("UnresolvedMessageChannel")
   @ServiceActivator(inputChannel = BASE_STATION_MESSAGE_CHANNEL_NAME)
   public void consume(@Payload BaseStationMessage baseStationMessage) {
-    if (persistMessages) {
-      repository.save(baseStationMessage);
+    if (persistMessages
+        && redundantMessageSuppressionService.shouldPersist(baseStationMessage)
+        && !journalService.append(baseStationMessage)) {
+      deferredPersistenceService.execute(() -> repository.save(baseStationMessage));
     }
   }
 
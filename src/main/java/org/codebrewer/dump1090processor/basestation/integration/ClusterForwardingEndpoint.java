@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.service.ClusterForwardingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.handler.annotation.Payload;
+
+/**
+ * An endpoint that forwards every valid BaseStation message received by a front-end instance to
+ * the worker instance handling the aircraft that sent it.
+ *
+ * <p>This endpoint exists only when the {@code cluster.role} property is set to {@code frontend},
+ * in which case it replaces the endpoints that maintain aircraft state and persist messages.
+ */
+@MessageEndpoint
+@ConditionalOnProperty(name = "cluster.role", havingValue = "frontend")
+public class ClusterForwardingEndpoint {
+  private final ClusterForwardingService clusterForwardingService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param clusterForwardingService a service forwarding messages to the workers of a cluster
+   */
+  @Autowired
+  public ClusterForwardingEndpoint(ClusterForwardingService clusterForwardingService) {
+    this.clusterForwardingService = clusterForwardingService;
+  }
+
+  /**
+   * Handles incoming BaseStation message payloads.
+   *
+   * <p>Messages are received from the channel named by
+   * {@link BaseStationIntegrationConfiguration#BASE_STATION_MESSAGE_CHANNEL_NAME
+   * BASE_STATION_MESSAGE_CHANNEL_NAME}.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = BASE_STATION_MESSAGE_CHANNEL_NAME)
+  public void consume(@Payload BaseStationMessage baseStationMessage) {
+    clusterForwardingService.forward(baseStationMessage);
+  }
+}
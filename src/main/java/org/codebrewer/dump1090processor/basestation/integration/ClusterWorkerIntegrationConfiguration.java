@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.INBOUND_MESSAGE_CHANNEL_NAME;
+
+import org.codebrewer.dump1090processor.basestation.service.ClusterWorkerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.IntegrationFlows;
+
+/**
+ * A configuration for an integration flow that receives the messages forwarded to a worker
+ * instance by the front-end instance of a cluster.
+ *
+ * <p>Forwarded messages are decoded and placed on the same inbound message channel as those from
+ * the message feeds, so a worker handles them exactly as a standalone instance would. Messages that
+ * cannot be decoded are discarded.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cluster.role", havingValue = "worker")
+public class ClusterWorkerIntegrationConfiguration {
+  private final ClusterWorkerService clusterWorkerService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param clusterWorkerService a service receiving messages forwarded by the front-end
+   */
+  @Autowired
+  public ClusterWorkerIntegrationConfiguration(ClusterWorkerService clusterWorkerService) {
+    this.clusterWorkerService = clusterWorkerService;
+  }
+
+  @Bean
+  public IntegrationFlow tcpClusterWorkerServer() {
+    return IntegrationFlows.from(clusterWorkerService.tcpMessageServer())
+                           .handle(
+                               byte[].class,
+                               (payload, headers) -> clusterWorkerService.decode(payload))
+                           .channel(INBOUND_MESSAGE_CHANNEL_NAME)
+                           .get();
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.cluster.ConditionalOnShardProcessing;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.codebrewer.dump1090processor.basestation.service.RedundantMessageSuppressionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.handler.annotation.Payload;
+
+/**
+ * An endpoint for consuming BaseStation messages when the per-type schema is selected by setting
+ * the {@code message.store.schema} property to {@code per-type}.
+ *
+ * <p>In place of {@link BaseStationMessageEndpoint}, valid consumed messages are persisted to the
+ * {@link PerTypeMessageRepository}, unless the {@link RedundantMessageSuppressionService} finds
+ * they carry no new information. A managed operation is provided to give runtime control over
+ * persistence.
+ */
+@MessageEndpoint
+@ConditionalOnIntegrationPipeline
+@ConditionalOnShardProcessing
+@ConditionalOnProperty(name = "message.store.schema", havingValue = "per-type")
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=PerTypeMessageEndpoint",
+    description = "An endpoint persisting BaseStation messages to the per-type schema")
+public class PerTypeMessageEndpoint {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PerTypeMessageEndpoint.class);
+
+  private final PerTypeMessageRepository repository;
+  private final RedundantMessageSuppressionService redundantMessageSuppressionService;
+  private final AtomicLong persistedCount = new AtomicLong();
+  private volatile boolean persistMessages;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>Whether or not BaseStation messages are persisted can be specified using the
+   * {@code basestation.feed.persist} property. Messages are persisted if the property is undefined.
+   *
+   * @param repository a repository to which BaseStation messages can be persisted
+   * @param redundantMessageSuppressionService a service deciding which messages carry new
+   * information
+   * @param persistMessages whether or not BaseStation messages should be persisted
+   */
+  @Autowired
+  public PerTypeMessageEndpoint(
+      PerTypeMessageRepository repository,
+      RedundantMessageSuppressionService redundantMessageSuppressionService,
+      @Value("${basestation.feed.persist:true}") boolean persistMessages) {
+    LOGGER.info("Per-type BaseStation message persistence: {}", persistMessages);
+    this.repository = repository;
+    this.redundantMessageSuppressionService = redundantMessageSuppressionService;
+    this.persistMessages = persistMessages;
+  }
+
+  /**
+   * Handles incoming BaseStation message payloads.
+   *
+   * <p>Messages are received from the channel named by
+   * {@link BaseStationIntegrationConfiguration#BASE_STATION_MESSAGE_CHANNEL_NAME
+   * BASE_STATION_MESSAGE_CHANNEL_NAME}.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = BASE_STATION_MESSAGE_CHANNEL_NAME)
+  public void consume(@Payload BaseStationMessage baseStationMessage) {
+    if (persistMessages
+        && redundantMessageSuppressionService.shouldPersist(baseStationMessage)
+        && repository.save(MessageRecord.fromMessage(baseStationMessage))) {
+      persistedCount.incrementAndGet();
+    }
+  }
+
+  @ManagedAttribute(description = "The number of BaseStation messages persisted")
+  public long getPersistedCount() {
+    return persistedCount.get();
+  }
+
+  /**
+   * Indicates whether or not BaseStation messages received by this endpoint are persisted to the
+   * application's database.
+   *
+   * @return true if received messages are persisted to the database, otherwise false
+   */
+  @ManagedOperation(
+      description = "Whether or not BaseStation messages are saved to persistent storage")
+  public boolean isPersistMessages() {
+    return persistMessages;
+  }
+
+  /**
+   * Controls whether or not BaseStation messages received by this endpoint are persisted to the
+   * application's database.
+   *
+   * @param persistMessages true if messages should be persisted to the database, false if not
+   */
+  @ManagedOperation(
+      description = "Control whether or not BaseStation messages are saved to persistent storage")
+  public void setPersistMessages(boolean persistMessages) {
+    LOGGER.info("Persist messages: {}", persistMessages);
+    this.persistMessages = persistMessages;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.cluster.ConditionalOnShardProcessing;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.PositionReport;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.repository.PositionReportRepository;
+import org.codebrewer.dump1090processor.basestation.service.DeferredPersistenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.handler.annotation.Payload;
+
+/**
+ * An endpoint that persists a {@link PositionReport} for every valid transmission message carrying
+ * a position.
+ *
+ * <p>Reports are saved through the {@link DeferredPersistenceService}, so reports made before the
+ * database is ready are held rather than blocking the dispatching thread. A managed operation is
+ * provided to give runtime control over persistence.
+ */
+@MessageEndpoint
+@ConditionalOnShardProcessing
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=PositionReportEndpoint",
+    description = "An endpoint persisting aircraft position reports")
+public class PositionReportEndpoint {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PositionReportEndpoint.class);
+
+  private final PositionReportRepository repository;
+  private final DeferredPersistenceService deferredPersistenceService;
+  private final AtomicLong persistedCount = new AtomicLong();
+  private volatile boolean persistPositions;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>Whether or not position reports are persisted can be specified using the
+   * {@code position.report.persist} property, which defaults to the value of the
+   * {@code basestation.feed.persist} property.
+   *
+   * @param repository a repository to which position reports can be persisted
+   * @param deferredPersistenceService a service holding saves until the database is ready
+   * @param persistPositions whether or not position reports should be persisted
+   */
+  @Autowired
+  public PositionReportEndpoint(
+      PositionReportRepository repository,
+      DeferredPersistenceService deferredPersistenceService,
+      @Value("${position.report.persist:${basestation.feed.persist:true}}")
+          boolean persistPositions) {
+    LOGGER.info("Position report persistence: {}", persistPositions);
+    this.repository = repository;
+    this.deferredPersistenceService = deferredPersistenceService;
+    this.persistPositions = persistPositions;
+  }
+
+  /**
+   * Handles incoming BaseStation message payloads.
+   *
+   * <p>Messages are received from the channel named by
+   * {@link BaseStationIntegrationConfiguration#BASE_STATION_MESSAGE_CHANNEL_NAME
+   * BASE_STATION_MESSAGE_CHANNEL_NAME}.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = BASE_STATION_MESSAGE_CHANNEL_NAME)
+  public void consume(@Payload BaseStationMessage baseStationMessage) {
+    if (persistPositions && baseStationMessage instanceof TransmissionMessage) {
+      final PositionReport positionReport =
+          PositionReport.fromMessage((TransmissionMessage) baseStationMessage);
+
+      if (positionReport != null) {
+        deferredPersistenceService.execute(
+            () -> {
+              repository.save(positionReport);
+              persistedCount.incrementAndGet();
+            });
+      }
+    }
+  }
+
+  @ManagedAttribute(description = "The number of position reports persisted")
+  public long getPersistedCount() {
+    return persistedCount.get();
+  }
+
+  /**
+   * Indicates whether or not position reports are persisted to the application's database.
+   *
+   * @return true if position reports are persisted to the database, otherwise false
+   */
+  @ManagedOperation(description = "Whether or not position reports are saved to persistent storage")
+  public boolean isPersistPositions() {
+    return persistPositions;
+  }
+
+  /**
+   * Controls whether or not position reports are persisted to the application's database.
+   *
+   * @param persistPositions true if position reports should be persisted, false if not
+   */
+  @ManagedOperation(
+      description = "Control whether or not position reports are saved to persistent storage")
+  public void setPersistPositions(boolean persistPositions) {
+    LOGGER.info("Persist position reports: {}", persistPositions);
+    this.persistPositions = persistPositions;
+  }
+}
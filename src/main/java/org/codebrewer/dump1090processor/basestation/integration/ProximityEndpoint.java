@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+
+import org.codebrewer.dump1090processor.basestation.cluster.ConditionalOnShardProcessing;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.service.ProximityDetectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.handler.annotation.Payload;
+
+/**
+ * An endpoint that checks the positions reported by every valid BaseStation message for aircraft
+ * losing separation.
+ */
+@MessageEndpoint
+@ConditionalOnShardProcessing
+public class ProximityEndpoint {
+  private final ProximityDetectionService proximityDetectionService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param proximityDetectionService a service detecting aircraft losing separation
+   */
+  @Autowired
+  public ProximityEndpoint(ProximityDetectionService proximityDetectionService) {
+    this.proximityDetectionService = proximityDetectionService;
+  }
+
+  /**
+   * Handles incoming BaseStation message payloads.
+   *
+   * <p>Messages are received from the channel named by
+   * {@link BaseStationIntegrationConfiguration#BASE_STATION_MESSAGE_CHANNEL_NAME
+   * BASE_STATION_MESSAGE_CHANNEL_NAME}.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = BASE_STATION_MESSAGE_CHANNEL_NAME)
+  public void consume(@Payload BaseStationMessage baseStationMessage) {
+    proximityDetectionService.update(baseStationMessage);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.INBOUND_MESSAGE_CHANNEL_NAME;
+
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.service.ReactivePipelineService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.handler.annotation.Payload;
+
+/**
+ * An endpoint passing the valid messages of the other feeds to the {@link ReactivePipelineService}
+ * when the reactive pipeline is selected, in place of the {@link BaseStationMessageBuffer}.
+ */
+@MessageEndpoint
+@ConditionalOnProperty(name = "pipeline.mode", havingValue = "reactive")
+public class ReactivePipelineEndpoint {
+  private final ReactivePipelineService reactivePipelineService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param reactivePipelineService the reactive pipeline to which messages are passed
+   */
+  @Autowired
+  public ReactivePipelineEndpoint(ReactivePipelineService reactivePipelineService) {
+    this.reactivePipelineService = reactivePipelineService;
+  }
+
+  /**
+   * Offers an incoming message to the reactive pipeline, returning immediately.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = INBOUND_MESSAGE_CHANNEL_NAME)
+  public void offer(@Payload BaseStationMessage baseStationMessage) {
+    reactivePipelineService.accept(baseStationMessage);
+  }
+}
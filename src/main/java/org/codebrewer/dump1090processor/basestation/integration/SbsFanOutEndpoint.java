@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.service.SbsFanOutService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.handler.annotation.Payload;
+
+/**
+ * An endpoint that re-serves every valid BaseStation message, from every feed, to the clients of
+ * an SBS-1 server.
+ *
+ * <p>This endpoint exists only when the {@code sbs.server.enabled} property is set to true.
+ */
+@MessageEndpoint
+@ConditionalOnProperty(name = "sbs.server.enabled", havingValue = "true")
+public class SbsFanOutEndpoint {
+  private final SbsFanOutService sbsFanOutService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param sbsFanOutService a service re-serving messages to SBS-1 clients
+   */
+  @Autowired
+  public SbsFanOutEndpoint(SbsFanOutService sbsFanOutService) {
+    this.sbsFanOutService = sbsFanOutService;
+  }
+
+  /**
+   * Handles incoming BaseStation message payloads.
+   *
+   * <p>Messages are received from the channel named by
+   * {@link BaseStationIntegrationConfiguration#BASE_STATION_MESSAGE_CHANNEL_NAME
+   * BASE_STATION_MESSAGE_CHANNEL_NAME}.
+   *
+   * @param baseStationMessage an incoming BaseStation message
+   */
+  @SuppressWarnings("UnresolvedMessageChannel")
+  @ServiceActivator(inputChannel = BASE_STATION_MESSAGE_CHANNEL_NAME)
+  public void consume(@Payload BaseStationMessage baseStationMessage) {
+    sbsFanOutService.publish(baseStationMessage);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event timing the saving of a batch of messages to the database.
+ *
+ * <p>By default only batches taking longer than 50 milliseconds to save are recorded.
+ */
+@Name(PipelineEvents.NAME_PREFIX + "BatchFlush")
+@Label("Batch Flush")
+@Description("The saving of a batch of messages to the database")
+@Category(PipelineEvents.CATEGORY)
+@Threshold("50 ms")
+@StackTrace(false)
+public class BatchFlushEvent extends Event {
+  @Label("Source")
+  @Description("The component saving the batch")
+  private String source;
+
+  @Label("Message Count")
+  private int messageCount;
+
+  @Label("Succeeded")
+  private boolean succeeded;
+
+  /**
+   * Ends the timing of a save and commits the event, if it is enabled and the save took longer
+   * than the event's threshold.
+   *
+   * @param source the name of the component saving the batch
+   * @param messageCount the number of messages in the batch
+   * @param succeeded whether or not the batch was saved
+   */
+  public void complete(String source, int messageCount, boolean succeeded) {
+    end();
+
+    if (shouldCommit()) {
+      this.source = source;
+      this.messageCount = messageCount;
+      this.succeeded = succeeded;
+      commit();
+    }
+  }
+}
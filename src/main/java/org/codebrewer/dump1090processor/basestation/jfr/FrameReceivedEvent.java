@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event marking the receipt of a line of text from a feed.
+ *
+ * <p>Every line received is recorded, so the event is disabled unless a recording enables it
+ * explicitly.
+ */
+@Name(PipelineEvents.NAME_PREFIX + "FrameReceived")
+@Label("Frame Received")
+@Description("A line of text received from a feed")
+@Category(PipelineEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class FrameReceivedEvent extends Event {
+  private static final EventType EVENT_TYPE = EventType.getEventType(FrameReceivedEvent.class);
+
+  @Label("Feed")
+  private String feed;
+
+  @Label("Length")
+  @Description("The number of bytes received, excluding the line terminator")
+  private int length;
+
+  /**
+   * Records the receipt of a line of text, if the event is enabled.
+   *
+   * @param feed the name of the feed
+   * @param length the number of bytes received
+   */
+  public static void record(String feed, int length) {
+    if (EVENT_TYPE.isEnabled()) {
+      final FrameReceivedEvent event = new FrameReceivedEvent();
+
+      event.feed = feed;
+      event.length = length;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event marking a message dropped by a filter.
+ *
+ * <p>Only rejections are recorded: every message not rejected by a filter was accepted by it, and
+ * recording acceptances would add an event for each message to every filter.
+ */
+@Name(PipelineEvents.NAME_PREFIX + "MessageFilter")
+@Label("Message Filtered")
+@Description("A message dropped by a filter")
+@Category(PipelineEvents.CATEGORY)
+@StackTrace(false)
+public class MessageFilterEvent extends Event {
+  private static final EventType EVENT_TYPE = EventType.getEventType(MessageFilterEvent.class);
+
+  @Label("Filter")
+  private String filter;
+
+  @Label("Reason")
+  private String reason;
+
+  @Label("ICAO Address")
+  @Description("The address of the aircraft that sent the message, if known")
+  private String icaoAddress;
+
+  /**
+   * Records the rejection of a message, if the event is enabled.
+   *
+   * @param filter the name of the filter rejecting the message
+   * @param reason the reason for the rejection
+   * @param icaoAddress the address of the aircraft that sent the message, or null if unknown
+   */
+  public static void record(String filter, String reason, String icaoAddress) {
+    if (EVENT_TYPE.isEnabled()) {
+      final MessageFilterEvent event = new MessageFilterEvent();
+
+      event.filter = filter;
+      event.reason = reason;
+      event.icaoAddress = icaoAddress;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.jfr;
+
+import java.util.Objects;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.NewAircraftMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+
+/**
+ * A Flight Recorder event timing the parsing of a line of text from a feed as a message.
+ *
+ * <p>Parsing a line normally takes a few microseconds, so by default only parses taking longer
+ * than a millisecond are recorded.
+ */
+@Name(PipelineEvents.NAME_PREFIX + "MessageParse")
+@Label("Message Parse")
+@Description("The parsing of a line of text from a feed as a message")
+@Category(PipelineEvents.CATEGORY)
+@Threshold("1 ms")
+@StackTrace(false)
+public class MessageParseEvent extends Event {
+  @Label("Feed")
+  private String feed;
+
+  @Label("Message Type")
+  @Description("The type of the message parsed, or null if the line was not a valid message")
+  private String messageType;
+
+  @Label("Outcome")
+  private String outcome;
+
+  private static MessageType messageTypeOf(BaseStationMessage baseStationMessage) {
+    if (baseStationMessage instanceof TransmissionMessage) {
+      return MessageType.MSG;
+    } else if (baseStationMessage instanceof IdMessage) {
+      return MessageType.ID;
+    } else if (baseStationMessage instanceof StatusMessage) {
+      return MessageType.STA;
+    } else if (baseStationMessage instanceof NewAircraftMessage) {
+      return MessageType.AIR;
+    }
+
+    return null;
+  }
+
+  /**
+   * Ends the timing of a parse and commits the event, if it is enabled and the parse took longer
+   * than the event's threshold.
+   *
+   * @param feed the name of the feed from which the line was read
+   * @param baseStationMessage the message parsed, or the invalid message if the line could not be
+   * parsed
+   */
+  public void complete(String feed, BaseStationMessage baseStationMessage) {
+    end();
+
+    if (shouldCommit()) {
+      final MessageType type = messageTypeOf(baseStationMessage);
+
+      this.feed = feed;
+      this.messageType = type == null ? null : type.name();
+      this.outcome =
+          Objects.equals(baseStationMessage, BaseStationMessage.INVALID_MESSAGE)
+              ? "invalid"
+              : "valid";
+      commit();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.jfr;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jdk.jfr.Event;
+
+/**
+ * Constants shared by the Flight Recorder events describing the message pipeline.
+ *
+ * <p>Unless a recording that enables them is running, the events cost little more than a check of
+ * a flag. The frequent ones are either disabled by default or recorded only when they take longer
+ * than a threshold, so a recording of them can be left running on a busy receiver.
+ */
+public final class PipelineEvents {
+  /**
+   * The category under which the events are shown.
+   */
+  public static final String CATEGORY = "dump1090-processor";
+
+  /**
+   * The prefix of the name of each event.
+   */
+  public static final String NAME_PREFIX = "org.codebrewer.dump1090processor.";
+
+  /**
+   * The name of the BaseStation feed.
+   */
+  public static final String BASE_STATION_FEED = "BaseStation";
+
+  /**
+   * The name of the AVR feed.
+   */
+  public static final String AVR_FEED = "AVR";
+
+  /**
+   * The event classes enabled by default, which excludes {@link FrameReceivedEvent}.
+   */
+  public static final List<Class<? extends Event>> DEFAULT_EVENTS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              MessageParseEvent.class,
+              MessageFilterEvent.class,
+              QueueHandOffEvent.class,
+              BatchFlushEvent.class));
+
+  private PipelineEvents() {
+    // Utility class
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event timing the hand-off of a message taken from a queue to the consumers of
+ * valid messages.
+ *
+ * <p>A slow consumer holds up every message behind it in the queue, so hand-offs taking longer
+ * than the threshold, by default ten milliseconds, show where a stall began.
+ */
+@Name(PipelineEvents.NAME_PREFIX + "QueueHandOff")
+@Label("Queue Hand-Off")
+@Description("The hand-off of a queued message to the consumers of valid messages")
+@Category(PipelineEvents.CATEGORY)
+@Threshold("10 ms")
+@StackTrace(false)
+public class QueueHandOffEvent extends Event {
+  @Label("Queue")
+  private String queue;
+
+  @Label("ICAO Address")
+  private String icaoAddress;
+
+  @Label("Backlog")
+  @Description("The number of messages left in the queue, or -1 if unknown")
+  private int backlog;
+
+  /**
+   * Ends the timing of a hand-off and commits the event, if it is enabled and the hand-off took
+   * longer than the event's threshold.
+   *
+   * @param queue the name of the queue from which the message was taken
+   * @param icaoAddress the address of the aircraft that sent the message
+   * @param backlog the number of messages left in the queue, or -1 if unknown
+   */
+  public void complete(String queue, String icaoAddress, int backlog) {
+    end();
+
+    if (shouldCommit()) {
+      this.queue = queue;
+      this.icaoAddress = icaoAddress;
+      this.backlog = backlog;
+      commit();
+    }
+  }
+}
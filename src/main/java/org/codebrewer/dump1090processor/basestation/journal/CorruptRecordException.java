@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.journal;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a durable journal record fails its checksum.
+ *
+ * <p>The exception records where the corrupt record starts and the offset at which reading can
+ * resume past it, so that a reader can skip the record rather than stop at it.
+ */
+public class CorruptRecordException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final long offset;
+  private final long nextOffset;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param offset the offset of the corrupt record
+   * @param nextOffset the offset at which reading can resume past the corrupt record
+   */
+  public CorruptRecordException(long offset, long nextOffset) {
+    super("Journal record checksum mismatch at offset " + offset);
+    this.offset = offset;
+    this.nextOffset = nextOffset;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public long getNextOffset() {
+    return nextOffset;
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.journal;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.NewAircraftMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CrsRegistry;
+import org.geolatte.geom.crs.Geographic2DCoordinateReferenceSystem;
+
+/**
+ * Encodes BaseStation messages as compact binary payloads for the {@link MessageJournal}, and
+ * decodes them again.
+ *
+ * <p>A payload starts with a format version, a message type code, the ICAO address and the
+ * timestamp. Transmission messages follow this with a bit set recording which of their optional
+ * fields are present, then the values of those fields only. All values are big-endian. The
+ * identifier of a message is not encoded, since a message is journalled before it is persisted.
+ */
+public final class MessageCodec {
+  private static final byte VERSION = 1;
+  private static final byte NEW_AIRCRAFT = 'A';
+  private static final byte ID = 'I';
+  private static final byte STATUS = 'S';
+  private static final byte TRANSMISSION = 'M';
+  private static final byte NULL_STRING = -1;
+  private static final int MAX_PAYLOAD_BYTES = 128;
+  private static final int TRANSMISSION_TYPE = 1;
+  private static final int CALL_SIGN = 1 << 1;
+  private static final int ALTITUDE = 1 << 2;
+  private static final int GROUND_SPEED = 1 << 3;
+  private static final int TRACK = 1 << 4;
+  private static final int POSITION = 1 << 5;
+  private static final int VERTICAL_RATE = 1 << 6;
+  private static final int SQUAWK = 1 << 7;
+  private static final int ALERT = 1 << 8;
+  private static final int EMERGENCY = 1 << 9;
+  private static final int IDENT_ACTIVE = 1 << 10;
+  private static final int ON_GROUND = 1 << 11;
+  private static final int ALERT_VALUE = 1 << 12;
+  private static final int EMERGENCY_VALUE = 1 << 13;
+  private static final int IDENT_ACTIVE_VALUE = 1 << 14;
+  private static final int ON_GROUND_VALUE = 1 << 15;
+  private static final Geographic2DCoordinateReferenceSystem COORDINATE_REFERENCE_SYSTEM =
+      CrsRegistry.getGeographicCoordinateReferenceSystemForEPSG(4326);
+
+  private MessageCodec() {
+    // Prevent instantiation
+  }
+
+  /**
+   * Encodes a message.
+   *
+   * @param baseStationMessage the message to encode, not null
+   *
+   * @return the encoded message
+   *
+   * @throws IllegalArgumentException if the message is not of a type that is persisted
+   */
+  public static byte[] encode(BaseStationMessage baseStationMessage) {
+    final ByteBuffer buffer = ByteBuffer.allocate(MAX_PAYLOAD_BYTES);
+    final byte type;
+
+    if (baseStationMessage instanceof TransmissionMessage) {
+      type = TRANSMISSION;
+    } else if (baseStationMessage instanceof IdMessage) {
+      type = ID;
+    } else if (baseStationMessage instanceof StatusMessage) {
+      type = STATUS;
+    } else if (baseStationMessage instanceof NewAircraftMessage) {
+      type = NEW_AIRCRAFT;
+    } else {
+      throw new IllegalArgumentException("Unsupported message: " + baseStationMessage);
+    }
+
+    buffer.put(VERSION).put(type);
+    putString(buffer, baseStationMessage.getIcaoAddress());
+    buffer.putLong(baseStationMessage.getTimestamp().getEpochSecond())
+          .putInt(baseStationMessage.getTimestamp().getNano());
+
+    if (type == ID) {
+      putString(buffer, ((IdMessage) baseStationMessage).getCallSign());
+    } else if (type == STATUS) {
+      final StatusMessageType statusMessageType =
+          ((StatusMessage) baseStationMessage).getStatusMessageType();
+
+      buffer.put(statusMessageType == null ? -1 : (byte) statusMessageType.ordinal());
+    } else if (type == TRANSMISSION) {
+      putTransmissionFields(buffer, (TransmissionMessage) baseStationMessage);
+    }
+
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  private static void putTransmissionFields(ByteBuffer buffer, TransmissionMessage message) {
+    int fields = 0;
+
+    fields |= message.getTransmissionType() == null ? 0 : TRANSMISSION_TYPE;
+    fields |= message.getCallSign() == null ? 0 : CALL_SIGN;
+    fields |= message.getAltitude() == null ? 0 : ALTITUDE;
+    fields |= message.getGroundSpeed() == null ? 0 : GROUND_SPEED;
+    fields |= message.getTrack() == null ? 0 : TRACK;
+    fields |= message.getPosition() == null ? 0 : POSITION;
+    fields |= message.getVerticalRate() == null ? 0 : VERTICAL_RATE;
+    fields |= message.getSquawk() == null ? 0 : SQUAWK;
+    fields |= flag(message.getAlert(), ALERT, ALERT_VALUE);
+    fields |= flag(message.getEmergency(), EMERGENCY, EMERGENCY_VALUE);
+    fields |= flag(message.getIdentActive(), IDENT_ACTIVE, IDENT_ACTIVE_VALUE);
+    fields |= flag(message.getOnGround(), ON_GROUND, ON_GROUND_VALUE);
+    buffer.putShort((short) fields);
+
+    if ((fields & TRANSMISSION_TYPE) != 0) {
+      buffer.put((byte) message.getTransmissionType().ordinal());
+    }
+
+    if ((fields & CALL_SIGN) != 0) {
+      putString(buffer, message.getCallSign());
+    }
+
+    if ((fields & ALTITUDE) != 0) {
+      buffer.putFloat(message.getAltitude());
+    }
+
+    if ((fields & GROUND_SPEED) != 0) {
+      buffer.putFloat(message.getGroundSpeed());
+    }
+
+    if ((fields & TRACK) != 0) {
+      buffer.putFloat(message.getTrack());
+    }
+
+    if ((fields & POSITION) != 0) {
+      buffer.putDouble(message.getPosition().getPosition().getLon())
+            .putDouble(message.getPosition().getPosition().getLat());
+    }
+
+    if ((fields & VERTICAL_RATE) != 0) {
+      buffer.putShort(message.getVerticalRate());
+    }
+
+    if ((fields & SQUAWK) != 0) {
+      buffer.putShort(message.getSquawk());
+    }
+  }
+
+  private static int flag(Boolean value, int presentBit, int valueBit) {
+    if (value == null) {
+      return 0;
+    }
+
+    return value ? presentBit | valueBit : presentBit;
+  }
+
+  private static Boolean flag(int fields, int presentBit, int valueBit) {
+    return (fields & presentBit) == 0 ? null : (fields & valueBit) != 0;
+  }
+
+  private static void putString(ByteBuffer buffer, String value) {
+    if (value == null) {
+      buffer.put(NULL_STRING);
+    } else {
+      final byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+
+      if (bytes.length > Byte.MAX_VALUE) {
+        throw new IllegalArgumentException("String is too long to encode: " + value);
+      }
+
+      buffer.put((byte) bytes.length).put(bytes);
+    }
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    final byte length = buffer.get();
+
+    if (length == NULL_STRING) {
+      return null;
+    }
+
+    final byte[] bytes = new byte[length];
+
+    buffer.get(bytes);
+
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Decodes a message.
+   *
+   * @param payload a message encoded by {@link #encode(BaseStationMessage)}, not null
+   *
+   * @return the decoded message, not yet persisted
+   *
+   * @throws IllegalArgumentException if the payload does not hold an encoded message
+   */
+  public static BaseStationMessage decode(byte[] payload) {
+    final ByteBuffer buffer = ByteBuffer.wrap(payload);
+
+    try {
+      if (buffer.get() != VERSION) {
+        throw new IllegalArgumentException("Unsupported message encoding version");
+      }
+
+      final byte type = buffer.get();
+      final String icaoAddress = getString(buffer);
+      final Instant timestamp = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+
+      switch (type) {
+        case NEW_AIRCRAFT:
+          return new NewAircraftMessage.Builder(icaoAddress, timestamp).build();
+        case ID:
+          return new IdMessage.Builder(icaoAddress, timestamp).callSign(getString(buffer)).build();
+        case STATUS:
+          return getStatusMessage(buffer, icaoAddress, timestamp);
+        case TRANSMISSION:
+          return getTransmissionMessage(buffer, icaoAddress, timestamp);
+        default:
+          throw new IllegalArgumentException("Unsupported message type code: " + type);
+      }
+    } catch (BufferUnderflowException
+             | ArrayIndexOutOfBoundsException
+             | NegativeArraySizeException e) {
+      throw new IllegalArgumentException("Malformed encoded message", e);
+    }
+  }
+
+  private static BaseStationMessage getStatusMessage(
+      ByteBuffer buffer, String icaoAddress, Instant timestamp) {
+    final byte status = buffer.get();
+
+    return new StatusMessage.Builder(icaoAddress, timestamp)
+        .statusMessageType(status < 0 ? null : StatusMessageType.values()[status])
+        .build();
+  }
+
+  private static BaseStationMessage getTransmissionMessage(
+      ByteBuffer buffer, String icaoAddress, Instant timestamp) {
+    final int fields = buffer.getShort() & 0xFFFF;
+    final TransmissionMessage.Builder builder =
+        new TransmissionMessage.Builder(icaoAddress, timestamp);
+
+    if ((fields & TRANSMISSION_TYPE) != 0) {
+      builder.transmissionType(TransmissionType.values()[buffer.get()]);
+    }
+
+    final String callSign = (fields & CALL_SIGN) == 0 ? null : getString(buffer);
+
+    if ((fields & ALTITUDE) != 0) {
+      builder.altitude(buffer.getFloat());
+    }
+
+    if ((fields & GROUND_SPEED) != 0) {
+      builder.groundSpeed(buffer.getFloat());
+    }
+
+    if ((fields & TRACK) != 0) {
+      builder.track(buffer.getFloat());
+    }
+
+    if ((fields & POSITION) != 0) {
+      builder.position(
+          new Point<>(
+              new G2D(buffer.getDouble(), buffer.getDouble()), COORDINATE_REFERENCE_SYSTEM));
+    }
+
+    if ((fields & VERTICAL_RATE) != 0) {
+      builder.verticalRate(buffer.getShort());
+    }
+
+    if ((fields & SQUAWK) != 0) {
+      builder.squawk(buffer.getShort());
+    }
+
+    return builder.alert(flag(fields, ALERT, ALERT_VALUE))
+                  .emergency(flag(fields, EMERGENCY, EMERGENCY_VALUE))
+                  .identActive(flag(fields, IDENT_ACTIVE, IDENT_ACTIVE_VALUE))
+                  .onGround(flag(fields, ON_GROUND, ON_GROUND_VALUE))
+                  .callSign(callSign)
+                  .build();
+  }
+}
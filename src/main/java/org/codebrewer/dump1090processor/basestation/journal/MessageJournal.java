@@ -0,0 +1,458 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durable, append-only journal of records held in a directory of memory-mapped segment files.
+ *
+ * <p>Each record is identified by its offset, a position in a single logical sequence of bytes
+ * that spans every segment. A segment file is named for the offset of its first record and holds
+ * records until the next would not fit, when a new segment is started. Each record is a length, a
+ * CRC-32 checksum of the payload and the payload itself; all values are big-endian, and a zero
+ * length marks the end of the records in a segment.
+ *
+ * <p>Appending copies a record into the mapped segment, so it survives the failure of the process
+ * as soon as the append returns, but not the failure of the operating system until the journal is
+ * {@link #force() forced}. Forcing is expected to happen periodically rather than after every
+ * append, so that one write to the disk commits every record appended since the last: a group
+ * commit. Only records that have been forced are visible to {@link #read(long, int, Consumer)
+ * readers}, so nothing derived from the journal can get ahead of what it would recover.
+ *
+ * <p>When a journal is opened, the last segment is scanned to find the end of its records. A
+ * record torn by a failure, and anything following it, is discarded. A durable record found to be
+ * corrupt when it is read is reported by a {@link CorruptRecordException}, from which the reader
+ * can resume past it.
+ *
+ * <p>Instances are thread-safe. Appends are serialized, and a single reader can read, and delete
+ * segments already read, concurrently with appends and forcing.
+ */
+public class MessageJournal implements Closeable {
+  /**
+   * The number of bytes preceding the payload of each record.
+   */
+  public static final int RECORD_HEADER_BYTES = 4 + 4;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageJournal.class);
+  private static final String SEGMENT_SUFFIX = ".journal";
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  private final CRC32 appendChecksum = new CRC32();
+  private final CRC32 readChecksum = new CRC32();
+  private final AtomicLong forceCount = new AtomicLong();
+  private final Object forceLock = new Object();
+  private Segment head;
+  private ByteBuffer headWriter;
+  private volatile long writeOffset;
+  private volatile long durableOffset;
+  private volatile boolean closed;
+
+  private MessageJournal(Path directory, int segmentBytes) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+  }
+
+  /**
+   * Opens the journal held in a directory, creating the directory and an empty journal if
+   * necessary.
+   *
+   * @param directory the directory holding the journal's segment files, not null
+   * @param segmentBytes the size of each new segment file, in bytes
+   *
+   * @return the journal, positioned to append after the last intact record
+   *
+   * @throws IOException if the journal cannot be opened
+   */
+  public static MessageJournal open(Path directory, int segmentBytes) throws IOException {
+    if (segmentBytes <= RECORD_HEADER_BYTES) {
+      throw new IllegalArgumentException("Segment size is too small: " + segmentBytes);
+    }
+
+    final MessageJournal journal = new MessageJournal(directory, segmentBytes);
+
+    Files.createDirectories(directory);
+    journal.openSegments();
+
+    return journal;
+  }
+
+  private static String segmentFileName(long baseOffset) {
+    return String.format("%020d%s", baseOffset, SEGMENT_SUFFIX);
+  }
+
+  private static MappedByteBuffer map(Path path, int size) throws IOException {
+    try (FileChannel channel =
+             FileChannel.open(
+                 path,
+                 StandardOpenOption.CREATE,
+                 StandardOpenOption.READ,
+                 StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static int checksum(CRC32 crc32, ByteBuffer buffer, int position, int length) {
+    final ByteBuffer payload = buffer.duplicate();
+
+    payload.limit(position + length).position(position);
+    crc32.reset();
+    crc32.update(payload);
+
+    return (int) crc32.getValue();
+  }
+
+  private void openSegments() throws IOException {
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path path : paths) {
+        final String fileName = path.getFileName().toString();
+        final long baseOffset;
+
+        try {
+          baseOffset =
+              Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+          LOGGER.warn("Ignoring unexpected file in journal directory: {}", path);
+          continue;
+        }
+
+        final long size = Files.size(path);
+
+        if (size <= RECORD_HEADER_BYTES || size > Integer.MAX_VALUE) {
+          throw new IOException("Journal segment has an unexpected size: " + path);
+        }
+
+        segments.put(baseOffset, new Segment(baseOffset, path, map(path, (int) size)));
+      }
+    }
+
+    if (segments.isEmpty()) {
+      addSegment(0L);
+    } else {
+      head = segments.lastEntry().getValue();
+      headWriter = head.buffer.duplicate();
+    }
+
+    writeOffset = head.baseOffset + recoverEndPosition(head);
+    durableOffset = writeOffset;
+  }
+
+  private int recoverEndPosition(Segment segment) {
+    final MappedByteBuffer buffer = segment.buffer;
+    int position = 0;
+
+    while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+      final int length = buffer.getInt(position);
+
+      if (length == 0) {
+        return position;
+      }
+
+      if (length < 0
+          || length > buffer.capacity() - position - RECORD_HEADER_BYTES
+          || checksum(appendChecksum, buffer, position + RECORD_HEADER_BYTES, length)
+             != buffer.getInt(position + 4)) {
+        LOGGER.warn(
+            "Discarding torn journal record at offset {} in {}",
+            segment.baseOffset + position,
+            segment.path);
+
+        for (int i = position; i < buffer.capacity(); i++) {
+          buffer.put(i, (byte) 0);
+        }
+
+        buffer.force();
+
+        return position;
+      }
+
+      position += RECORD_HEADER_BYTES + length;
+    }
+
+    return position;
+  }
+
+  private void addSegment(long baseOffset) throws IOException {
+    final Path path = directory.resolve(segmentFileName(baseOffset));
+    final Segment segment = new Segment(baseOffset, path, map(path, segmentBytes));
+
+    segments.put(baseOffset, segment);
+    head = segment;
+    headWriter = segment.buffer.duplicate();
+  }
+
+  /**
+   * Appends a record to the journal.
+   *
+   * @param payload the payload of the record, not null
+   *
+   * @return the offset following the appended record
+   *
+   * @throws IOException if a new segment is needed but cannot be created
+   * @throws IllegalArgumentException if the record is too large to fit in a segment
+   */
+  public synchronized long append(byte[] payload) throws IOException {
+    if (closed) {
+      throw new IOException("Journal is closed");
+    }
+
+    final int recordBytes = RECORD_HEADER_BYTES + payload.length;
+
+    if (payload.length == 0 || recordBytes > segmentBytes) {
+      throw new IllegalArgumentException("Unsupported record size: " + payload.length);
+    }
+
+    int position = (int) (writeOffset - head.baseOffset);
+
+    if (position + recordBytes > head.buffer.capacity()) {
+      addSegment(writeOffset);
+      position = 0;
+    }
+
+    appendChecksum.reset();
+    appendChecksum.update(payload, 0, payload.length);
+    headWriter.position(position + RECORD_HEADER_BYTES);
+    headWriter.put(payload);
+    headWriter.putInt(position + 4, (int) appendChecksum.getValue());
+
+    // The length is written last, so a reader of a torn record finds either no length or a
+    // checksum mismatch
+    //
+    headWriter.putInt(position, payload.length);
+    writeOffset = head.baseOffset + position + recordBytes;
+
+    return writeOffset;
+  }
+
+  /**
+   * Forces every record appended so far to the disk, making it visible to readers.
+   *
+   * @return the offset up to which records are now durable
+   */
+  public long force() {
+    synchronized (forceLock) {
+      final long target = writeOffset;
+
+      if (target > durableOffset) {
+        final Map.Entry<Long, Segment> first = segments.floorEntry(durableOffset);
+
+        for (Segment segment : segments.tailMap(first.getKey(), true).values()) {
+          if (segment.baseOffset < target) {
+            segment.buffer.force();
+          }
+        }
+
+        durableOffset = target;
+        forceCount.incrementAndGet();
+      }
+
+      return target;
+    }
+  }
+
+  /**
+   * Reads durable records from the journal.
+   *
+   * @param offset the offset of the first record to read, typically the value returned by a
+   * previous read
+   * @param maxRecords the maximum number of records to read
+   * @param consumer a consumer of each record's payload, not null
+   *
+   * @return the offset following the last record read, equal to the given offset if none was
+   *
+   * @throws CorruptRecordException if a record fails its checksum, after the records preceding it
+   * have been consumed
+   * @throws IllegalArgumentException if the offset precedes the first segment of the journal
+   */
+  public long read(long offset, int maxRecords, Consumer<byte[]> consumer) throws IOException {
+    final long end = durableOffset;
+    long next = offset;
+    int count = 0;
+
+    while (count < maxRecords && next < end) {
+      final Map.Entry<Long, Segment> entry = segments.floorEntry(next);
+
+      if (entry == null) {
+        throw new IllegalArgumentException("Offset precedes the journal: " + offset);
+      }
+
+      final Segment segment = entry.getValue();
+      final int position = (int) (next - segment.baseOffset);
+      final int length =
+          position + RECORD_HEADER_BYTES <= segment.buffer.capacity()
+          ? segment.buffer.getInt(position)
+          : 0;
+
+      if (length == 0) {
+        final Long nextBaseOffset = segments.higherKey(segment.baseOffset);
+
+        if (nextBaseOffset == null) {
+          break;
+        }
+
+        next = nextBaseOffset;
+        continue;
+      }
+
+      if (length < 0
+          || length > segment.buffer.capacity() - position - RECORD_HEADER_BYTES
+          || checksum(readChecksum, segment.buffer, position + RECORD_HEADER_BYTES, length)
+             != segment.buffer.getInt(position + 4)) {
+        throw new CorruptRecordException(next, resumeOffset(segment, position, length, end));
+      }
+
+      final byte[] payload = new byte[length];
+      final ByteBuffer reader = segment.buffer.duplicate();
+
+      reader.position(position + RECORD_HEADER_BYTES);
+      reader.get(payload);
+      consumer.accept(payload);
+      next += RECORD_HEADER_BYTES + length;
+      count++;
+    }
+
+    return next;
+  }
+
+  // A corrupt record with a plausible length is skipped by its length. Otherwise the records that
+  // follow it cannot be found, and the rest of its segment is skipped
+  //
+  private long resumeOffset(Segment segment, int position, int length, long end) {
+    if (length > 0 && length <= segment.buffer.capacity() - position - RECORD_HEADER_BYTES) {
+      return Math.min(end, segment.baseOffset + position + RECORD_HEADER_BYTES + length);
+    }
+
+    final Long nextBaseOffset = segments.higherKey(segment.baseOffset);
+
+    return nextBaseOffset == null ? end : Math.min(end, nextBaseOffset);
+  }
+
+  /**
+   * Deletes the segment files holding only records before an offset, typically the offset up to
+   * which records have been read and applied. The segment being appended to is never deleted.
+   *
+   * @param offset an offset before which records are no longer required
+   *
+   * @return the number of segment files deleted
+   *
+   * @throws IOException if a segment file cannot be deleted
+   */
+  public int deleteBefore(long offset) throws IOException {
+    int count = 0;
+
+    for (Map.Entry<Long, Segment> entry : segments.headMap(offset, true).entrySet()) {
+      final Long nextBaseOffset = segments.higherKey(entry.getKey());
+
+      if (nextBaseOffset == null || nextBaseOffset > offset) {
+        break;
+      }
+
+      segments.remove(entry.getKey());
+      Files.deleteIfExists(entry.getValue().path);
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the offset of the first record held by the journal.
+   *
+   * @return the offset of the first record held by the journal
+   */
+  public long getStartOffset() {
+    return segments.firstKey();
+  }
+
+  /**
+   * Gets the offset following the last record appended.
+   *
+   * @return the offset following the last record appended
+   */
+  public long getWriteOffset() {
+    return writeOffset;
+  }
+
+  /**
+   * Gets the offset following the last record forced to the disk.
+   *
+   * @return the offset following the last durable record
+   */
+  public long getDurableOffset() {
+    return durableOffset;
+  }
+
+  /**
+   * Gets the number of times that appended records have been forced to the disk.
+   *
+   * @return the number of times that appended records have been forced to the disk
+   */
+  public long getForceCount() {
+    return forceCount.get();
+  }
+
+  /**
+   * Gets the number of segment files held by the journal.
+   *
+   * @return the number of segment files held by the journal
+   */
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Forces any records not yet durable to the disk and closes the journal to further appends.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+
+    force();
+  }
+
+  private static final class Segment {
+    private final long baseOffset;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+
+    private Segment(long baseOffset, Path path, MappedByteBuffer buffer) {
+      this.baseOffset = baseOffset;
+      this.path = path;
+      this.buffer = buffer;
+    }
+  }
+}
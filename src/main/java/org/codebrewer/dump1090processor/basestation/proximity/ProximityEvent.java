@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.proximity;
+
+import java.time.Instant;
+
+/**
+ * An immutable record of two aircraft found to be, or predicted to be, closer to each other than
+ * the configured lateral and vertical separation.
+ */
+public final class ProximityEvent {
+  private final String icaoAddress;
+  private final String otherIcaoAddress;
+  private final Instant timestamp;
+  private final float secondsToConflict;
+  private final float lateralSeparation;
+  private final float verticalSeparation;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param icaoAddress the ICAO address of the aircraft whose position update raised the event
+   * @param otherIcaoAddress the ICAO address of the other aircraft
+   * @param timestamp the time of the position update that raised the event
+   * @param secondsToConflict the time, in seconds, until separation is lost, or zero if it has
+   * already been lost
+   * @param lateralSeparation the lateral separation of the aircraft at the time of the event, in
+   * nautical miles
+   * @param verticalSeparation the vertical separation of the aircraft at the time of the event, in
+   * feet
+   */
+  public ProximityEvent(
+      String icaoAddress,
+      String otherIcaoAddress,
+      Instant timestamp,
+      float secondsToConflict,
+      float lateralSeparation,
+      float verticalSeparation) {
+    this.icaoAddress = icaoAddress;
+    this.otherIcaoAddress = otherIcaoAddress;
+    this.timestamp = timestamp;
+    this.secondsToConflict = secondsToConflict;
+    this.lateralSeparation = lateralSeparation;
+    this.verticalSeparation = verticalSeparation;
+  }
+
+  public String getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  public String getOtherIcaoAddress() {
+    return otherIcaoAddress;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public float getSecondsToConflict() {
+    return secondsToConflict;
+  }
+
+  public float getLateralSeparation() {
+    return lateralSeparation;
+  }
+
+  public float getVerticalSeparation() {
+    return verticalSeparation;
+  }
+
+  /**
+   * Indicates whether separation has already been lost, rather than being predicted to be lost.
+   *
+   * @return true if separation has already been lost, otherwise false
+   */
+  public boolean isLossOfSeparation() {
+    return secondsToConflict == 0.0f;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s/%s at %s: %s, %.2fnm, %.0fft",
+        icaoAddress,
+        otherIcaoAddress,
+        timestamp,
+        isLossOfSeparation()
+            ? "loss of separation"
+            : String.format("conflict in %.0fs", secondsToConflict),
+        lateralSeparation,
+        verticalSeparation);
+  }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.proximity;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.codebrewer.dump1090processor.geo.FastTrig;
+import org.codebrewer.dump1090processor.geo.GeoCoordinates;
+
+/**
+ * A uniform grid of the latest positions and velocities of aircraft, used to find pairs of
+ * aircraft that are, or are about to be, closer to each other than a lateral and a vertical
+ * separation.
+ *
+ * <p>Checking every pair of aircraft on every position update would take time proportional to the
+ * square of the number of aircraft. Instead, each cell of the grid is larger than the distance
+ * within which two aircraft could lose separation during the look-ahead time, so an aircraft
+ * whose position is updated is checked only against the aircraft in its own and the neighbouring
+ * cells. Cells are a fixed height in latitude, each row of latitude holds as many cells as fit
+ * without any being narrower than that, and rows wrap around at the antimeridian.
+ *
+ * <p>The other aircraft of each pair is dead-reckoned to the time of the update, and the pair
+ * then projected forward using the ground speeds, tracks and vertical rates of both aircraft to
+ * find the earliest time within the look-ahead time at which both separations are lost. Over the
+ * distances involved a flat-Earth approximation at the mean latitude of the pair is accurate
+ * enough. Positions and altitudes older than a maximum age are not used.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class ProximityGrid {
+  private static final double NAUTICAL_MILES_PER_DEGREE = 60.0;
+  private static final double SECONDS_PER_HOUR = 3600.0;
+  private static final double SECONDS_PER_MINUTE = 60.0;
+  private static final double MILLIS_PER_SECOND = 1000.0;
+
+  // Keeps the cells of the rows nearest the poles a finite width
+  //
+  private static final double MIN_COSINE = 0.01;
+
+  private final double lateralSeparation;
+  private final double verticalSeparation;
+  private final double lookAheadSeconds;
+  private final long maxAgeMillis;
+  private final double cellSize;
+  private final double rowHeight;
+  private final int[] columnCounts;
+  private final Map<Integer, Track> tracks = new HashMap<>();
+  private final Map<Long, Cell> cells = new HashMap<>();
+  private long newestMillis = Long.MIN_VALUE;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * @param lateralSeparation the lateral separation, in nautical miles
+   * @param verticalSeparation the vertical separation, in feet
+   * @param lookAheadSeconds the time, in seconds, over which aircraft are projected forward
+   * @param maxClosingSpeed the greatest speed at which two aircraft are expected to close on each
+   * other, in knots
+   * @param maxAgeSeconds the age, in seconds, beyond which a position or altitude is not used
+   *
+   * @throws IllegalArgumentException if either separation or the closing speed is not positive,
+   * or either time is negative
+   */
+  public ProximityGrid(
+      double lateralSeparation,
+      double verticalSeparation,
+      long lookAheadSeconds,
+      double maxClosingSpeed,
+      long maxAgeSeconds) {
+    this(
+        lateralSeparation,
+        verticalSeparation,
+        lookAheadSeconds,
+        maxAgeSeconds,
+        lateralSeparation
+        + maxClosingSpeed * (lookAheadSeconds + maxAgeSeconds) / SECONDS_PER_HOUR);
+
+    if (!(maxClosingSpeed > 0.0)) {
+      throw new IllegalArgumentException("Closing speed must be positive: " + maxClosingSpeed);
+    }
+  }
+
+  // Allows the cell size to be chosen, so that a grid of a single cell, which checks every pair
+  // of aircraft, can be compared with a grid of the size required
+  //
+  ProximityGrid(
+      double lateralSeparation,
+      double verticalSeparation,
+      long lookAheadSeconds,
+      long maxAgeSeconds,
+      double cellSize) {
+    if (!(lateralSeparation > 0.0 && verticalSeparation > 0.0)) {
+      throw new IllegalArgumentException(
+          "Separations must be positive: " + lateralSeparation + ", " + verticalSeparation);
+    }
+
+    if (lookAheadSeconds < 0L || maxAgeSeconds < 0L) {
+      throw new IllegalArgumentException(
+          "Times must not be negative: " + lookAheadSeconds + ", " + maxAgeSeconds);
+    }
+
+    this.lateralSeparation = lateralSeparation;
+    this.verticalSeparation = verticalSeparation;
+    this.lookAheadSeconds = lookAheadSeconds;
+    this.maxAgeMillis = TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+    this.cellSize = cellSize;
+    rowHeight = cellSize / NAUTICAL_MILES_PER_DEGREE;
+    columnCounts = new int[Math.max(1, (int) Math.ceil(180.0 / rowHeight))];
+
+    for (int row = 0; row < columnCounts.length; row++) {
+      final double south = -90.0 + row * rowHeight;
+      final double poleward =
+          Math.min(90.0, Math.max(Math.abs(south), Math.abs(south + rowHeight)));
+      final double cosine = Math.max(MIN_COSINE, Math.cos(Math.toRadians(poleward)));
+
+      columnCounts[row] =
+          Math.max(1, (int) (360.0 * NAUTICAL_MILES_PER_DEGREE * cosine / cellSize));
+    }
+  }
+
+  private static long cellKey(int row, int column) {
+    return (long) row << 32 | column;
+  }
+
+  private static int column(double longitude, int columnCount) {
+    return Math.min(
+        columnCount - 1, Math.max(0, (int) ((longitude + 180.0) / 360.0 * columnCount)));
+  }
+
+  /**
+   * Updates the velocity of an aircraft.
+   *
+   * @param address the aircraft's 24 bit ICAO address
+   * @param groundSpeed the aircraft's ground speed, in knots, or NaN if unchanged
+   * @param track the aircraft's track, in degrees clockwise from true north, or NaN if unchanged
+   * @param verticalRate the aircraft's vertical rate, in feet per minute, or NaN if unchanged
+   */
+  public void updateVelocity(int address, float groundSpeed, float track, float verticalRate) {
+    final Track subject = track(address);
+
+    if (!Float.isNaN(groundSpeed)) {
+      subject.groundSpeed = groundSpeed;
+    }
+
+    if (!Float.isNaN(track)) {
+      subject.track = track;
+    }
+
+    if (!Float.isNaN(groundSpeed) || !Float.isNaN(track)) {
+      final double speed =
+          Float.isNaN(subject.groundSpeed) ? 0.0 : subject.groundSpeed / SECONDS_PER_HOUR;
+      final double radians = Float.isNaN(subject.track) ? 0.0 : Math.toRadians(subject.track);
+
+      subject.eastSpeed = speed * FastTrig.sin(radians);
+      subject.northSpeed = speed * FastTrig.cos(radians);
+    }
+
+    if (!Float.isNaN(verticalRate)) {
+      subject.climbSpeed = verticalRate / SECONDS_PER_MINUTE;
+    }
+  }
+
+  /**
+   * Updates the altitude of an aircraft.
+   *
+   * @param address the aircraft's 24 bit ICAO address
+   * @param timeMillis the time of the altitude, in milliseconds since the epoch
+   * @param altitude the aircraft's altitude, in feet
+   */
+  public void updateAltitude(int address, long timeMillis, float altitude) {
+    final Track subject = track(address);
+
+    subject.altitude = altitude;
+    subject.altitudeMillis = timeMillis;
+    subject.lastMillis = Math.max(subject.lastMillis, timeMillis);
+    newestMillis = Math.max(newestMillis, timeMillis);
+  }
+
+  /**
+   * Updates the position, and optionally the altitude, of an aircraft and checks it against the
+   * aircraft in the neighbouring cells.
+   *
+   * <p>Each aircraft with which the updated aircraft has lost or is predicted to lose separation
+   * is reported by adding an event to a list. An aircraft of unknown altitude is not checked.
+   *
+   * @param address the aircraft's 24 bit ICAO address
+   * @param timeMillis the time of the position, in milliseconds since the epoch
+   * @param latitude the aircraft's latitude, in degrees
+   * @param longitude the aircraft's longitude, in degrees
+   * @param altitude the aircraft's altitude, in feet, or NaN if unchanged
+   * @param events a list to which events are added, not null
+   *
+   * @return the number of other aircraft checked
+   */
+  public int updatePosition(
+      int address,
+      long timeMillis,
+      double latitude,
+      double longitude,
+      float altitude,
+      List<ProximityEvent> events) {
+    final Track subject = track(address);
+
+    if (!Float.isNaN(altitude)) {
+      subject.altitude = altitude;
+      subject.altitudeMillis = timeMillis;
+    }
+
+    subject.latitude = latitude;
+    subject.longitude = longitude;
+    subject.positionMillis = timeMillis;
+    subject.lastMillis = Math.max(subject.lastMillis, timeMillis);
+    newestMillis = Math.max(newestMillis, timeMillis);
+
+    final int row =
+        Math.min(columnCounts.length - 1, Math.max(0, (int) ((latitude + 90.0) / rowHeight)));
+    final int columnCount = columnCounts[row];
+
+    move(subject, cellKey(row, column(longitude, columnCount)));
+
+    if (Float.isNaN(subject.altitude)) {
+      return 0;
+    }
+
+    int checked = 0;
+
+    for (int neighbourRow = row - 1; neighbourRow <= row + 1; neighbourRow++) {
+      if (neighbourRow < 0 || neighbourRow >= columnCounts.length) {
+        continue;
+      }
+
+      // Every cell in a row is at least as wide as the distance being searched, so only the cell
+      // holding the aircraft's longitude and those either side of it need to be checked
+      //
+      final int neighbourColumnCount = columnCounts[neighbourRow];
+      final int column = column(longitude, neighbourColumnCount);
+      final int first = neighbourColumnCount < 3 ? 0 : column - 1;
+      final int last = neighbourColumnCount < 3 ? neighbourColumnCount - 1 : column + 1;
+
+      for (int neighbourColumn = first; neighbourColumn <= last; neighbourColumn++) {
+        final Cell cell =
+            cells.get(
+                cellKey(neighbourRow, Math.floorMod(neighbourColumn, neighbourColumnCount)));
+
+        if (cell == null) {
+          continue;
+        }
+
+        for (int i = 0; i < cell.size; i++) {
+          final Track other = cell.tracks[i];
+
+          if (other != subject) {
+            checked++;
+            check(subject, other, events);
+          }
+        }
+      }
+    }
+
+    return checked;
+  }
+
+  /**
+   * Stops tracking an aircraft, such as one that has landed.
+   *
+   * @param address the aircraft's 24 bit ICAO address
+   *
+   * @return true if the aircraft was being tracked, otherwise false
+   */
+  public boolean remove(int address) {
+    final Track subject = tracks.remove(address);
+
+    if (subject == null) {
+      return false;
+    }
+
+    detach(subject);
+
+    return true;
+  }
+
+  /**
+   * Stops tracking aircraft not updated within the maximum age of the newest update.
+   *
+   * @return the number of aircraft no longer tracked
+   */
+  public int expire() {
+    if (newestMillis == Long.MIN_VALUE) {
+      return 0;
+    }
+
+    final long oldestMillis = newestMillis - maxAgeMillis;
+    final Iterator<Track> iterator = tracks.values().iterator();
+    int expired = 0;
+
+    while (iterator.hasNext()) {
+      final Track subject = iterator.next();
+
+      if (subject.lastMillis < oldestMillis) {
+        iterator.remove();
+        detach(subject);
+        expired++;
+      }
+    }
+
+    return expired;
+  }
+
+  /**
+   * Gets the number of aircraft being tracked.
+   *
+   * @return the number of aircraft being tracked
+   */
+  public int size() {
+    return tracks.size();
+  }
+
+  /**
+   * Gets the number of cells holding at least one aircraft.
+   *
+   * @return the number of cells holding at least one aircraft
+   */
+  public int getOccupiedCellCount() {
+    return cells.size();
+  }
+
+  /**
+   * Gets the height of each cell, and the least width.
+   *
+   * @return the size of each cell, in nautical miles
+   */
+  public double getCellSize() {
+    return cellSize;
+  }
+
+  private Track track(int address) {
+    return tracks.computeIfAbsent(address, Track::new);
+  }
+
+  private void move(Track subject, long key) {
+    if (subject.cell != null && subject.cell.key == key) {
+      return;
+    }
+
+    detach(subject);
+    cells.computeIfAbsent(key, Cell::new).add(subject);
+  }
+
+  private void detach(Track subject) {
+    final Cell cell = subject.cell;
+
+    if (cell != null) {
+      cell.remove(subject);
+
+      if (cell.size == 0) {
+        cells.remove(cell.key);
+      }
+    }
+  }
+
+  private void check(Track subject, Track other, List<ProximityEvent> events) {
+    final long timeMillis = subject.positionMillis;
+
+    if (Float.isNaN(other.altitude)
+        || Math.abs(timeMillis - other.positionMillis) > maxAgeMillis
+        || Math.abs(timeMillis - other.altitudeMillis) > maxAgeMillis
+        || Math.abs(timeMillis - subject.altitudeMillis) > maxAgeMillis) {
+      return;
+    }
+
+    // The position of the other aircraft relative to the subject, in nautical miles east and
+    // north, and its altitude relative to the subject, in feet, at the time of the update
+    //
+    final double otherSeconds = (timeMillis - other.positionMillis) / MILLIS_PER_SECOND;
+    final double east =
+        GeoCoordinates.longitudeDifference(other.longitude, subject.longitude)
+        * NAUTICAL_MILES_PER_DEGREE
+        * FastTrig.cos(Math.toRadians((subject.latitude + other.latitude) / 2.0))
+        + other.eastSpeed * otherSeconds;
+    final double north =
+        (other.latitude - subject.latitude) * NAUTICAL_MILES_PER_DEGREE
+        + other.northSpeed * otherSeconds;
+    final double above =
+        other.altitude
+        + other.climbSpeed * (timeMillis - other.altitudeMillis) / MILLIS_PER_SECOND
+        - subject.altitude
+        - subject.climbSpeed * (timeMillis - subject.altitudeMillis) / MILLIS_PER_SECOND;
+    final double eastSpeed = other.eastSpeed - subject.eastSpeed;
+    final double northSpeed = other.northSpeed - subject.northSpeed;
+    final double climbSpeed = other.climbSpeed - subject.climbSpeed;
+
+    // Lateral separation is lost while the squared distance between the aircraft, a quadratic
+    // function of time, is less than the square of the lateral separation
+    //
+    final double a = eastSpeed * eastSpeed + northSpeed * northSpeed;
+    final double b = 2.0 * (east * eastSpeed + north * northSpeed);
+    final double c = east * east + north * north - lateralSeparation * lateralSeparation;
+    double start;
+    double end;
+
+    if (a == 0.0) {
+      if (c >= 0.0) {
+        return;
+      }
+
+      start = 0.0;
+      end = lookAheadSeconds;
+    } else {
+      final double discriminant = b * b - 4.0 * a * c;
+
+      if (discriminant <= 0.0) {
+        return;
+      }
+
+      final double root = Math.sqrt(discriminant);
+
+      start = (-b - root) / (2.0 * a);
+      end = (-b + root) / (2.0 * a);
+    }
+
+    // Vertical separation is lost while the difference in altitude, a linear function of time, is
+    // less than the vertical separation
+    //
+    if (climbSpeed == 0.0) {
+      if (Math.abs(above) >= verticalSeparation) {
+        return;
+      }
+    } else {
+      final double first = (-verticalSeparation - above) / climbSpeed;
+      final double second = (verticalSeparation - above) / climbSpeed;
+
+      start = Math.max(start, Math.min(first, second));
+      end = Math.min(end, Math.max(first, second));
+    }
+
+    start = Math.max(start, 0.0);
+    end = Math.min(end, lookAheadSeconds);
+
+    if (start > end) {
+      return;
+    }
+
+    events.add(
+        new ProximityEvent(
+            subject.icaoAddress,
+            other.icaoAddress,
+            Instant.ofEpochMilli(timeMillis),
+            (float) start,
+            (float) Math.sqrt(east * east + north * north),
+            (float) Math.abs(above)));
+  }
+
+  private static final class Track {
+    private final String icaoAddress;
+    private double latitude;
+    private double longitude;
+    private long positionMillis;
+    private float altitude = Float.NaN;
+    private long altitudeMillis;
+    private float groundSpeed = Float.NaN;
+    private float track = Float.NaN;
+    private double eastSpeed;
+    private double northSpeed;
+    private double climbSpeed;
+    private long lastMillis = Long.MIN_VALUE;
+    private Cell cell;
+    private int index;
+
+    private Track(int address) {
+      icaoAddress = String.format("%06X", address);
+    }
+  }
+
+  private static final class Cell {
+    private final long key;
+    private Track[] tracks = new Track[4];
+    private int size;
+
+    private Cell(long key) {
+      this.key = key;
+    }
+
+    private void add(Track track) {
+      if (size == tracks.length) {
+        tracks = Arrays.copyOf(tracks, size * 2);
+      }
+
+      track.cell = this;
+      track.index = size;
+      tracks[size++] = track;
+    }
+
+    // Moves the last track into the place of the one removed, so removal takes constant time
+    //
+    private void remove(Track track) {
+      final Track last = tracks[--size];
+
+      tracks[track.index] = last;
+      last.index = track.index;
+      tracks[size] = null;
+      track.cell = null;
+    }
+  }
+}
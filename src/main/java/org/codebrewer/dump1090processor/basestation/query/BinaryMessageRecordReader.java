@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.ADDRESS_TEXT;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.ALERT;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.ALERT_VALUE;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.ALTITUDE;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.ALTITUDE_INDEX;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.CALL_SIGN;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.EMERGENCY;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.EMERGENCY_VALUE;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.END;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.GROUND_SPEED;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.IDENT_ACTIVE;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.IDENT_ACTIVE_VALUE;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.LATITUDE_INDEX;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.LONGITUDE_INDEX;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.NANOS;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.NEW_AIRCRAFT;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.ON_GROUND;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.ON_GROUND_VALUE;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.POSITION;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.SQUAWK;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.TRACK;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.VERSION;
+import static org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter.VERTICAL_RATE;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.wire.WireFormat;
+import org.codebrewer.dump1090processor.basestation.wire.WireReader;
+
+/**
+ * Reads message records written by a {@link BinaryMessageRecordWriter}.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class BinaryMessageRecordReader {
+  private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+  private static final TransmissionType[] TRANSMISSION_TYPES = TransmissionType.values();
+  private static final StatusMessageType[] STATUS_MESSAGE_TYPES = StatusMessageType.values();
+
+  private final WireReader reader;
+  private final Map<String, long[]> aircraft = new HashMap<>();
+  private long previousId;
+  private long previousMillis;
+  private String previousIcaoAddress;
+  private boolean finished;
+  private boolean truncated;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param bytes the bytes written by a {@link BinaryMessageRecordWriter}, not null
+   *
+   * @throws IllegalArgumentException if the bytes are not of a supported version
+   */
+  public BinaryMessageRecordReader(byte[] bytes) {
+    reader = new WireReader(bytes);
+
+    final int version = reader.getByte();
+
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported record stream version: " + version);
+    }
+  }
+
+  private static Boolean flag(int fields, int present, int set) {
+    return (fields & present) == 0 ? null : (fields & set) != 0;
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return the next record, or null if all records have been read
+   *
+   * @throws IllegalArgumentException if the bytes are truncated or malformed
+   */
+  public MessageRecord read() {
+    if (finished) {
+      return null;
+    }
+
+    if (reader.getByte() == END) {
+      truncated = reader.getByte() != 0;
+      finished = true;
+
+      return null;
+    }
+
+    final int fields = (int) reader.getVarLong();
+    final int type = reader.getByte();
+    final int subtype = type >>> 3;
+
+    if ((type & 0x7) >= MESSAGE_TYPES.length
+        || subtype > Math.max(TRANSMISSION_TYPES.length, STATUS_MESSAGE_TYPES.length)) {
+      throw new IllegalArgumentException("Invalid record type: " + type);
+    }
+
+    final MessageType messageType = MESSAGE_TYPES[type & 0x7];
+    final long id = previousId + reader.getSignedVarLong();
+    final long millis = previousMillis + reader.getSignedVarLong();
+    final long nanos = (fields & NANOS) == 0 ? 0L : reader.getVarLong();
+
+    previousId = id;
+    previousMillis = millis;
+
+    if ((fields & NEW_AIRCRAFT) != 0) {
+      if ((fields & ADDRESS_TEXT) != 0) {
+        previousIcaoAddress = reader.getString();
+      } else {
+        previousIcaoAddress =
+            WireFormat.formatAddress(
+                reader.getByte() << 16 | reader.getByte() << 8 | reader.getByte());
+      }
+    }
+
+    final long[] last = aircraft.computeIfAbsent(previousIcaoAddress, key -> new long[3]);
+    final MessageRecord.Builder builder =
+        new MessageRecord.Builder(
+            id,
+            messageType,
+            previousIcaoAddress,
+            Instant.ofEpochMilli(millis).plusNanos(nanos))
+            .alert(flag(fields, ALERT, ALERT_VALUE))
+            .emergency(flag(fields, EMERGENCY, EMERGENCY_VALUE))
+            .identActive(flag(fields, IDENT_ACTIVE, IDENT_ACTIVE_VALUE))
+            .onGround(flag(fields, ON_GROUND, ON_GROUND_VALUE));
+
+    if (subtype > 0 && messageType == MessageType.MSG) {
+      builder.transmissionType(TRANSMISSION_TYPES[subtype - 1]);
+    } else if (subtype > 0 && subtype <= STATUS_MESSAGE_TYPES.length) {
+      builder.statusMessageType(STATUS_MESSAGE_TYPES[subtype - 1]);
+    }
+
+    if ((fields & CALL_SIGN) != 0) {
+      builder.callSign(reader.getString());
+    }
+
+    if ((fields & ALTITUDE) != 0) {
+      last[ALTITUDE_INDEX] += reader.getSignedVarLong();
+      builder.altitude((float) last[ALTITUDE_INDEX]);
+    }
+
+    if ((fields & GROUND_SPEED) != 0) {
+      builder.groundSpeed(
+          (float) WireFormat.dequantise(reader.getSignedVarLong(), WireFormat.SPEED_SCALE));
+    }
+
+    if ((fields & TRACK) != 0) {
+      builder.track(
+          (float) WireFormat.dequantise(reader.getSignedVarLong(), WireFormat.SPEED_SCALE));
+    }
+
+    if ((fields & POSITION) != 0) {
+      last[LATITUDE_INDEX] += reader.getSignedVarLong();
+      last[LONGITUDE_INDEX] += reader.getSignedVarLong();
+      builder.position(
+          WireFormat.dequantise(last[LATITUDE_INDEX], WireFormat.COORDINATE_SCALE),
+          WireFormat.dequantise(last[LONGITUDE_INDEX], WireFormat.COORDINATE_SCALE));
+    }
+
+    if ((fields & VERTICAL_RATE) != 0) {
+      builder.verticalRate((short) reader.getSignedVarLong());
+    }
+
+    if ((fields & SQUAWK) != 0) {
+      builder.squawk((short) reader.getSignedVarLong());
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Indicates whether more records matched the query than were written, once all records have
+   * been read.
+   *
+   * @return true if all records have been read and the result was truncated by the query's limit
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.codebrewer.dump1090processor.basestation.wire.WireBuffer;
+import org.codebrewer.dump1090processor.basestation.wire.WireFormat;
+
+/**
+ * Writes message records in the compact binary wire format, for reading by a
+ * {@link BinaryMessageRecordReader}.
+ *
+ * <p>The stream starts with a format version. Each record then starts with a tag byte and a bit
+ * set recording which of its optional fields are present. Its identifier and timestamp are written
+ * as the differences from those of the previous record, and its ICAO address only if it differs
+ * from that of the previous record. Its altitude and position are written as the differences from
+ * the last altitude and position of the same aircraft, so that a track of consecutive positions
+ * takes a few bytes per point. The stream ends with a tag byte followed by whether the result was
+ * truncated.
+ *
+ * <p>Values are quantised as described by {@link WireFormat}; timestamps, identifiers and all
+ * other values are written exactly.
+ */
+public class BinaryMessageRecordWriter implements MessageRecordWriter {
+  static final int VERSION = 1;
+  static final int RECORD = 1;
+  static final int END = 0;
+  static final int NEW_AIRCRAFT = 1;
+  static final int ADDRESS_TEXT = 1 << 1;
+  static final int NANOS = 1 << 2;
+  static final int CALL_SIGN = 1 << 3;
+  static final int ALTITUDE = 1 << 4;
+  static final int GROUND_SPEED = 1 << 5;
+  static final int TRACK = 1 << 6;
+  static final int POSITION = 1 << 7;
+  static final int VERTICAL_RATE = 1 << 8;
+  static final int SQUAWK = 1 << 9;
+  static final int ALERT = 1 << 10;
+  static final int EMERGENCY = 1 << 11;
+  static final int IDENT_ACTIVE = 1 << 12;
+  static final int ON_GROUND = 1 << 13;
+  static final int ALERT_VALUE = 1 << 14;
+  static final int EMERGENCY_VALUE = 1 << 15;
+  static final int IDENT_ACTIVE_VALUE = 1 << 16;
+  static final int ON_GROUND_VALUE = 1 << 17;
+  static final int ALTITUDE_INDEX = 0;
+  static final int LATITUDE_INDEX = 1;
+  static final int LONGITUDE_INDEX = 2;
+  private static final int FLUSH_BYTES = 8192;
+
+  private final OutputStream outputStream;
+  private final WireBuffer buffer = new WireBuffer(FLUSH_BYTES + 256);
+  private final Map<String, long[]> aircraft = new HashMap<>();
+  private long previousId;
+  private long previousMillis;
+  private String previousIcaoAddress;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param outputStream the stream to which records are written, not null
+   */
+  public BinaryMessageRecordWriter(OutputStream outputStream) {
+    this.outputStream = outputStream;
+  }
+
+  private static int flag(Boolean value, int present, int set) {
+    if (value == null) {
+      return 0;
+    }
+
+    return value ? present | set : present;
+  }
+
+  // The type of a record is its message type in the low three bits and, above them, one more
+  // than the ordinal of its transmission or status type, or zero if it has neither
+  //
+  static int type(MessageRecord messageRecord) {
+    final int subtype;
+
+    if (messageRecord.getTransmissionType() != null) {
+      subtype = messageRecord.getTransmissionType().ordinal() + 1;
+    } else if (messageRecord.getStatusMessageType() != null) {
+      subtype = messageRecord.getStatusMessageType().ordinal() + 1;
+    } else {
+      subtype = 0;
+    }
+
+    return subtype << 3 | messageRecord.getMessageType().ordinal();
+  }
+
+  @Override
+  public void start() throws IOException {
+    buffer.putByte(VERSION);
+  }
+
+  @Override
+  public void write(MessageRecord messageRecord) throws IOException {
+    final String icaoAddress = messageRecord.getIcaoAddress();
+    final long millis = messageRecord.getTimestamp().toEpochMilli();
+    final int nanos = messageRecord.getTimestamp().getNano() % 1_000_000;
+    final int address = WireFormat.parseAddress(icaoAddress);
+    final long[] last = aircraft.computeIfAbsent(icaoAddress, key -> new long[3]);
+    int fields = 0;
+
+    fields |= icaoAddress.equals(previousIcaoAddress) ? 0 : NEW_AIRCRAFT;
+    fields |= address < 0 ? ADDRESS_TEXT : 0;
+    fields |= nanos == 0 ? 0 : NANOS;
+    fields |= messageRecord.getCallSign() == null ? 0 : CALL_SIGN;
+    fields |= messageRecord.getAltitude() == null ? 0 : ALTITUDE;
+    fields |= messageRecord.getGroundSpeed() == null ? 0 : GROUND_SPEED;
+    fields |= messageRecord.getTrack() == null ? 0 : TRACK;
+    fields |= messageRecord.getLatitude() == null ? 0 : POSITION;
+    fields |= messageRecord.getVerticalRate() == null ? 0 : VERTICAL_RATE;
+    fields |= messageRecord.getSquawk() == null ? 0 : SQUAWK;
+    fields |= flag(messageRecord.getAlert(), ALERT, ALERT_VALUE);
+    fields |= flag(messageRecord.getEmergency(), EMERGENCY, EMERGENCY_VALUE);
+    fields |= flag(messageRecord.getIdentActive(), IDENT_ACTIVE, IDENT_ACTIVE_VALUE);
+    fields |= flag(messageRecord.getOnGround(), ON_GROUND, ON_GROUND_VALUE);
+    buffer.putByte(RECORD)
+          .putVarLong(fields)
+          .putByte(type(messageRecord))
+          .putSignedVarLong(messageRecord.getId() - previousId)
+          .putSignedVarLong(millis - previousMillis);
+    previousId = messageRecord.getId();
+    previousMillis = millis;
+    previousIcaoAddress = icaoAddress;
+
+    if ((fields & NANOS) != 0) {
+      buffer.putVarLong(nanos);
+    }
+
+    if ((fields & NEW_AIRCRAFT) != 0) {
+      if (address < 0) {
+        buffer.putString(icaoAddress);
+      } else {
+        buffer.putByte(address >>> 16).putByte(address >>> 8).putByte(address);
+      }
+    }
+
+    if ((fields & CALL_SIGN) != 0) {
+      buffer.putString(messageRecord.getCallSign());
+    }
+
+    if ((fields & ALTITUDE) != 0) {
+      final long altitude = Math.round(messageRecord.getAltitude());
+
+      buffer.putSignedVarLong(altitude - last[ALTITUDE_INDEX]);
+      last[ALTITUDE_INDEX] = altitude;
+    }
+
+    if ((fields & GROUND_SPEED) != 0) {
+      buffer.putSignedVarLong(
+          WireFormat.quantise(messageRecord.getGroundSpeed(), WireFormat.SPEED_SCALE));
+    }
+
+    if ((fields & TRACK) != 0) {
+      buffer.putSignedVarLong(
+          WireFormat.quantise(messageRecord.getTrack(), WireFormat.SPEED_SCALE));
+    }
+
+    if ((fields & POSITION) != 0) {
+      final long latitude =
+          WireFormat.quantise(messageRecord.getLatitude(), WireFormat.COORDINATE_SCALE);
+      final long longitude =
+          WireFormat.quantise(messageRecord.getLongitude(), WireFormat.COORDINATE_SCALE);
+
+      buffer.putSignedVarLong(latitude - last[LATITUDE_INDEX])
+            .putSignedVarLong(longitude - last[LONGITUDE_INDEX]);
+      last[LATITUDE_INDEX] = latitude;
+      last[LONGITUDE_INDEX] = longitude;
+    }
+
+    if ((fields & VERTICAL_RATE) != 0) {
+      buffer.putSignedVarLong(messageRecord.getVerticalRate());
+    }
+
+    if ((fields & SQUAWK) != 0) {
+      buffer.putSignedVarLong(messageRecord.getSquawk());
+    }
+
+    if (buffer.size() >= FLUSH_BYTES) {
+      buffer.writeTo(outputStream);
+      buffer.reset();
+    }
+  }
+
+  @Override
+  public void finish(boolean truncated) throws IOException {
+    buffer.putByte(END).putByte(truncated ? 1 : 0);
+    buffer.writeTo(outputStream);
+    buffer.reset();
+    outputStream.flush();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+/**
+ * An immutable rectangle of longitude and latitude, used to select messages by position.
+ *
+ * <p>Boxes crossing the antimeridian are not supported.
+ */
+public final class BoundingBox {
+  private final double minLongitude;
+  private final double minLatitude;
+  private final double maxLongitude;
+  private final double maxLatitude;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param minLongitude the western edge of the box, in degrees
+   * @param minLatitude the southern edge of the box, in degrees
+   * @param maxLongitude the eastern edge of the box, in degrees
+   * @param maxLatitude the northern edge of the box, in degrees
+   *
+   * @throws IllegalArgumentException if the edges are out of range or not in ascending order
+   */
+  public BoundingBox(
+      double minLongitude, double minLatitude, double maxLongitude, double maxLatitude) {
+    if (!(-180.0 <= minLongitude
+          && minLongitude <= maxLongitude
+          && maxLongitude <= 180.0
+          && -90.0 <= minLatitude
+          && minLatitude <= maxLatitude
+          && maxLatitude <= 90.0)) {
+      throw new IllegalArgumentException("Invalid bounding box");
+    }
+
+    this.minLongitude = minLongitude;
+    this.minLatitude = minLatitude;
+    this.maxLongitude = maxLongitude;
+    this.maxLatitude = maxLatitude;
+  }
+
+  /**
+   * Parses a bounding box from its comma-separated representation.
+   *
+   * @param value the edges of the box in the order west, south, east, north, not null
+   *
+   * @return the bounding box
+   *
+   * @throws IllegalArgumentException if the value does not represent a valid bounding box
+   */
+  public static BoundingBox parse(String value) {
+    final String[] tokens = value.split(",");
+
+    if (tokens.length != 4) {
+      throw new IllegalArgumentException("A bounding box has four comma-separated values");
+    }
+
+    try {
+      return new BoundingBox(
+          Double.parseDouble(tokens[0].trim()),
+          Double.parseDouble(tokens[1].trim()),
+          Double.parseDouble(tokens[2].trim()),
+          Double.parseDouble(tokens[3].trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid bounding box: " + value, e);
+    }
+  }
+
+  public double getMinLongitude() {
+    return minLongitude;
+  }
+
+  public double getMinLatitude() {
+    return minLatitude;
+  }
+
+  public double getMaxLongitude() {
+    return maxLongitude;
+  }
+
+  public double getMaxLatitude() {
+    return maxLatitude;
+  }
+
+  /**
+   * Determines whether or not a position lies within, or on the edge of, this box.
+   *
+   * @param longitude the longitude of the position, in degrees
+   * @param latitude the latitude of the position, in degrees
+   *
+   * @return true if the position lies within this box, otherwise false
+   */
+  public boolean contains(double longitude, double latitude) {
+    return minLongitude <= longitude
+           && longitude <= maxLongitude
+           && minLatitude <= latitude
+           && latitude <= maxLatitude;
+  }
+
+  @Override
+  public String toString() {
+    return minLongitude + "," + minLatitude + "," + maxLongitude + "," + maxLatitude;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes message records as comma-separated values, following RFC 4180.
+ *
+ * <p>The first line is a header naming the columns. Null properties are written as empty values.
+ * A query is resumed by taking the {@code timestamp} and {@code id} of the last record as the
+ * {@code afterTimestamp} and {@code afterId} values.
+ */
+public class CsvMessageRecordWriter implements MessageRecordWriter {
+  static final String HEADER =
+      "id,messageType,icaoAddress,timestamp,callSign,transmissionType,statusMessageType,altitude,"
+      + "groundSpeed,track,latitude,longitude,verticalRate,squawk,alert,emergency,identActive,"
+      + "onGround";
+
+  private final Writer writer;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param outputStream the stream to which records are written, not null
+   */
+  public CsvMessageRecordWriter(OutputStream outputStream) {
+    writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+  }
+
+  private static String quote(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+      return value;
+    }
+
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  @Override
+  public void start() throws IOException {
+    writer.write(HEADER);
+    writer.write("\r\n");
+  }
+
+  @Override
+  public void write(MessageRecord messageRecord) throws IOException {
+    writer.write(Long.toString(messageRecord.getId()));
+    writeValue(messageRecord.getMessageType());
+    writeValue(messageRecord.getIcaoAddress());
+    writeValue(messageRecord.getTimestamp());
+    writeValue(messageRecord.getCallSign());
+    writeValue(messageRecord.getTransmissionType());
+    writeValue(messageRecord.getStatusMessageType());
+    writeValue(messageRecord.getAltitude());
+    writeValue(messageRecord.getGroundSpeed());
+    writeValue(messageRecord.getTrack());
+    writeValue(messageRecord.getLatitude());
+    writeValue(messageRecord.getLongitude());
+    writeValue(messageRecord.getVerticalRate());
+    writeValue(messageRecord.getSquawk());
+    writeValue(messageRecord.getAlert());
+    writeValue(messageRecord.getEmergency());
+    writeValue(messageRecord.getIdentActive());
+    writeValue(messageRecord.getOnGround());
+    writer.write("\r\n");
+  }
+
+  @Override
+  public void finish(boolean truncated) throws IOException {
+    writer.flush();
+  }
+
+  private void writeValue(Object value) throws IOException {
+    writer.write(',');
+
+    if (value != null) {
+      writer.write(quote(value.toString()));
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes message records as a JSON document.
+ *
+ * <p>The document is an object whose {@code messages} property is an array of records, each with
+ * only its non-null properties, and whose {@code next} property holds the {@code afterTimestamp}
+ * and {@code afterId} values that resume the query, or is null if no more records matched.
+ */
+public class JsonMessageRecordWriter implements MessageRecordWriter {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final JsonGenerator generator;
+  private MessageRecord lastRecord;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param outputStream the stream to which records are written, not null
+   *
+   * @throws IOException if the JSON generator cannot be created
+   */
+  public JsonMessageRecordWriter(OutputStream outputStream) throws IOException {
+    generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  @Override
+  public void start() throws IOException {
+    generator.writeStartObject();
+    generator.writeArrayFieldStart("messages");
+  }
+
+  @Override
+  public void write(MessageRecord messageRecord) throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("id", messageRecord.getId());
+    generator.writeStringField("messageType", messageRecord.getMessageType().name());
+    generator.writeStringField("icaoAddress", messageRecord.getIcaoAddress());
+    generator.writeStringField("timestamp", messageRecord.getTimestamp().toString());
+    writeField("callSign", messageRecord.getCallSign());
+    writeField("transmissionType", messageRecord.getTransmissionType());
+    writeField("statusMessageType", messageRecord.getStatusMessageType());
+    writeField("altitude", messageRecord.getAltitude());
+    writeField("groundSpeed", messageRecord.getGroundSpeed());
+    writeField("track", messageRecord.getTrack());
+    writeField("latitude", messageRecord.getLatitude());
+    writeField("longitude", messageRecord.getLongitude());
+    writeField("verticalRate", messageRecord.getVerticalRate());
+    writeField("squawk", messageRecord.getSquawk());
+    writeField("alert", messageRecord.getAlert());
+    writeField("emergency", messageRecord.getEmergency());
+    writeField("identActive", messageRecord.getIdentActive());
+    writeField("onGround", messageRecord.getOnGround());
+    generator.writeEndObject();
+    lastRecord = messageRecord;
+  }
+
+  @Override
+  public void finish(boolean truncated) throws IOException {
+    generator.writeEndArray();
+
+    if (truncated && lastRecord != null) {
+      generator.writeObjectFieldStart("next");
+      generator.writeStringField("afterTimestamp", lastRecord.getTimestamp().toString());
+      generator.writeNumberField("afterId", lastRecord.getId());
+      generator.writeEndObject();
+    } else {
+      generator.writeNullField("next");
+    }
+
+    generator.writeEndObject();
+    generator.close();
+  }
+
+  private void writeField(String name, Object value) throws IOException {
+    if (value == null) {
+      return;
+    }
+
+    if (value instanceof Boolean) {
+      generator.writeBooleanField(name, (Boolean) value);
+    } else if (value instanceof Double) {
+      generator.writeNumberField(name, (Double) value);
+    } else if (value instanceof Float) {
+      generator.writeNumberField(name, (Float) value);
+    } else if (value instanceof Short) {
+      generator.writeNumberField(name, (Short) value);
+    } else {
+      generator.writeStringField(name, value.toString());
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+
+/**
+ * Immutable criteria selecting persisted BaseStation messages.
+ *
+ * <p>Matching messages are always returned in order of timestamp and then identifier, so a query
+ * can be resumed after the last message returned by giving its timestamp and identifier to
+ * {@link Builder#after(Instant, long)}. Resuming this way costs the same however many messages
+ * have already been returned, unlike paging by offset.
+ */
+public final class MessageQuery {
+  /**
+   * The value of {@link #getLimit()} when the number of messages returned is unbounded.
+   */
+  public static final int NO_LIMIT = 0;
+
+  private final String icaoAddress;
+  private final Instant from;
+  private final Instant to;
+  private final Set<MessageType> messageTypes;
+  private final Set<TransmissionType> transmissionTypes;
+  private final BoundingBox boundingBox;
+  private final Instant afterTimestamp;
+  private final long afterId;
+  private final int limit;
+
+  private MessageQuery(Builder builder) {
+    icaoAddress = builder.icaoAddress;
+    from = builder.from;
+    to = builder.to;
+    messageTypes = Collections.unmodifiableSet(builder.messageTypes);
+    transmissionTypes = Collections.unmodifiableSet(builder.transmissionTypes);
+    boundingBox = builder.boundingBox;
+    afterTimestamp = builder.afterTimestamp;
+    afterId = builder.afterId;
+    limit = builder.limit;
+  }
+
+  /**
+   * Gets the ICAO address of the aircraft whose messages are selected.
+   *
+   * @return the upper-case ICAO address, or null if messages from all aircraft are selected
+   */
+  public String getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  /**
+   * Gets the inclusive lower bound of the timestamps of selected messages.
+   *
+   * @return the lower bound, or null if unbounded
+   */
+  public Instant getFrom() {
+    return from;
+  }
+
+  /**
+   * Gets the exclusive upper bound of the timestamps of selected messages.
+   *
+   * @return the upper bound, or null if unbounded
+   */
+  public Instant getTo() {
+    return to;
+  }
+
+  /**
+   * Gets the types of message selected.
+   *
+   * @return the types of message selected, empty if messages of all types are selected
+   */
+  public Set<MessageType> getMessageTypes() {
+    return messageTypes;
+  }
+
+  /**
+   * Gets the types of transmission message selected.
+   *
+   * <p>When not empty, only transmission messages are selected.
+   *
+   * @return the types of transmission message selected, empty if not restricted
+   */
+  public Set<TransmissionType> getTransmissionTypes() {
+    return transmissionTypes;
+  }
+
+  /**
+   * Gets the area within which the positions of selected messages lie.
+   *
+   * <p>When not null, only messages having a position are selected.
+   *
+   * @return the area, or null if messages are not selected by position
+   */
+  public BoundingBox getBoundingBox() {
+    return boundingBox;
+  }
+
+  /**
+   * Gets the timestamp of the message after which selected messages follow.
+   *
+   * @return the timestamp of the message after which selected messages follow, or null if
+   * selection starts with the first matching message
+   */
+  public Instant getAfterTimestamp() {
+    return afterTimestamp;
+  }
+
+  /**
+   * Gets the identifier of the message after which selected messages follow, meaningful only when
+   * {@link #getAfterTimestamp()} is not null.
+   *
+   * @return the identifier of the message after which selected messages follow
+   */
+  public long getAfterId() {
+    return afterId;
+  }
+
+  /**
+   * Gets the maximum number of messages selected.
+   *
+   * @return the maximum number of messages selected, or {@link #NO_LIMIT}
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * A builder for {@code MessageQuery} instances.
+   */
+  public static class Builder {
+    private final Set<MessageType> messageTypes = EnumSet.noneOf(MessageType.class);
+    private final Set<TransmissionType> transmissionTypes = EnumSet.noneOf(TransmissionType.class);
+    private String icaoAddress;
+    private Instant from;
+    private Instant to;
+    private BoundingBox boundingBox;
+    private Instant afterTimestamp;
+    private long afterId;
+    private int limit = NO_LIMIT;
+
+    /**
+     * Selects messages from a single aircraft.
+     *
+     * @param icaoAddress the 6 digit hexadecimal ICAO address of the aircraft, or null to select
+     * messages from all aircraft
+     *
+     * @return this builder
+     *
+     * @throws IllegalArgumentException if the address is not valid
+     */
+    public Builder icaoAddress(String icaoAddress) {
+      if (icaoAddress != null
+          && (icaoAddress.length() != 6 || DomainUtils.parseIcaoAddress(icaoAddress) < 0)) {
+        throw new IllegalArgumentException("Invalid ICAO address: " + icaoAddress);
+      }
+
+      this.icaoAddress = icaoAddress == null ? null : icaoAddress.toUpperCase();
+
+      return this;
+    }
+
+    public Builder from(Instant from) {
+      this.from = from;
+
+      return this;
+    }
+
+    public Builder to(Instant to) {
+      this.to = to;
+
+      return this;
+    }
+
+    public Builder messageTypes(Collection<MessageType> messageTypes) {
+      this.messageTypes.clear();
+
+      if (messageTypes != null) {
+        this.messageTypes.addAll(messageTypes);
+      }
+
+      return this;
+    }
+
+    public Builder transmissionTypes(Collection<TransmissionType> transmissionTypes) {
+      this.transmissionTypes.clear();
+
+      if (transmissionTypes != null) {
+        this.transmissionTypes.addAll(transmissionTypes);
+      }
+
+      return this;
+    }
+
+    public Builder boundingBox(BoundingBox boundingBox) {
+      this.boundingBox = boundingBox;
+
+      return this;
+    }
+
+    /**
+     * Resumes selection after a message previously returned.
+     *
+     * @param afterTimestamp the timestamp of the message, or null to start with the first
+     * matching message
+     * @param afterId the identifier of the message
+     *
+     * @return this builder
+     */
+    public Builder after(Instant afterTimestamp, long afterId) {
+      this.afterTimestamp = afterTimestamp;
+      this.afterId = afterId;
+
+      return this;
+    }
+
+    /**
+     * Limits the number of messages selected.
+     *
+     * @param limit the maximum number of messages selected, or {@link #NO_LIMIT}
+     *
+     * @return this builder
+     *
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public Builder limit(int limit) {
+      if (limit < 0) {
+        throw new IllegalArgumentException("Limit must not be negative");
+      }
+
+      this.limit = limit;
+
+      return this;
+    }
+
+    /**
+     * Builds a query from the criteria given to this builder.
+     *
+     * @return a query
+     *
+     * @throws IllegalArgumentException if the time range is empty
+     */
+    public MessageQuery build() {
+      if (from != null && to != null && !from.isBefore(to)) {
+        throw new IllegalArgumentException("The start of the time range must precede its end");
+      }
+
+      return new MessageQuery(this);
+    }
+  }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import java.time.Instant;
+import java.util.Objects;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.CallSignMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.NewAircraftMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+
+/**
+ * An immutable, flattened view of a persisted BaseStation message, as returned by a
+ * {@link MessageQuery}.
+ *
+ * <p>Unlike the entity classes, a record is not managed by a persistence context, so any number of
+ * records can be streamed without retaining them. Properties that do not apply to a message's type,
+ * or that were not present in the message, are null.
+ */
+public final class MessageRecord {
+  private final long id;
+  private final MessageType messageType;
+  private final String icaoAddress;
+  private final Instant timestamp;
+  private final String callSign;
+  private final TransmissionType transmissionType;
+  private final StatusMessageType statusMessageType;
+  private final Float altitude;
+  private final Float groundSpeed;
+  private final Float track;
+  private final Double latitude;
+  private final Double longitude;
+  private final Short verticalRate;
+  private final Short squawk;
+  private final Boolean alert;
+  private final Boolean emergency;
+  private final Boolean identActive;
+  private final Boolean onGround;
+
+  private MessageRecord(Builder builder) {
+    id = builder.id;
+    messageType = builder.messageType;
+    icaoAddress = builder.icaoAddress;
+    timestamp = builder.timestamp;
+    callSign = builder.callSign;
+    transmissionType = builder.transmissionType;
+    statusMessageType = builder.statusMessageType;
+    altitude = builder.altitude;
+    groundSpeed = builder.groundSpeed;
+    track = builder.track;
+    latitude = builder.latitude;
+    longitude = builder.longitude;
+    verticalRate = builder.verticalRate;
+    squawk = builder.squawk;
+    alert = builder.alert;
+    emergency = builder.emergency;
+    identActive = builder.identActive;
+    onGround = builder.onGround;
+  }
+
+  /**
+   * Creates a record from a message entity.
+   *
+   * @param baseStationMessage a valid message, not null
+   *
+   * @return a record holding the message's properties, with the message's identifier
+   *
+   * @throws IllegalArgumentException if the message is not of a type that is persisted
+   */
+  public static MessageRecord fromMessage(BaseStationMessage baseStationMessage) {
+    final MessageType messageType;
+
+    if (baseStationMessage instanceof TransmissionMessage) {
+      messageType = MessageType.MSG;
+    } else if (baseStationMessage instanceof IdMessage) {
+      messageType = MessageType.ID;
+    } else if (baseStationMessage instanceof StatusMessage) {
+      messageType = MessageType.STA;
+    } else if (baseStationMessage instanceof NewAircraftMessage) {
+      messageType = MessageType.AIR;
+    } else {
+      throw new IllegalArgumentException("Unsupported message: " + baseStationMessage);
+    }
+
+    final Builder builder =
+        new Builder(
+            baseStationMessage.getId(),
+            messageType,
+            baseStationMessage.getIcaoAddress(),
+            baseStationMessage.getTimestamp());
+
+    if (baseStationMessage instanceof CallSignMessage) {
+      builder.callSign(((CallSignMessage) baseStationMessage).getCallSign());
+    }
+
+    if (baseStationMessage instanceof StatusMessage) {
+      builder.statusMessageType(((StatusMessage) baseStationMessage).getStatusMessageType());
+    }
+
+    if (baseStationMessage instanceof TransmissionMessage) {
+      final TransmissionMessage transmissionMessage = (TransmissionMessage) baseStationMessage;
+
+      builder.transmissionType(transmissionMessage.getTransmissionType())
+             .altitude(transmissionMessage.getAltitude())
+             .groundSpeed(transmissionMessage.getGroundSpeed())
+             .track(transmissionMessage.getTrack())
+             .verticalRate(transmissionMessage.getVerticalRate())
+             .squawk(transmissionMessage.getSquawk())
+             .alert(transmissionMessage.getAlert())
+             .emergency(transmissionMessage.getEmergency())
+             .identActive(transmissionMessage.getIdentActive())
+             .onGround(transmissionMessage.getOnGround());
+
+      if (transmissionMessage.getPosition() != null) {
+        builder.position(
+            transmissionMessage.getPosition().getPosition().getLat(),
+            transmissionMessage.getPosition().getPosition().getLon());
+      }
+    }
+
+    return builder.build();
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public MessageType getMessageType() {
+    return messageType;
+  }
+
+  public String getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public String getCallSign() {
+    return callSign;
+  }
+
+  public TransmissionType getTransmissionType() {
+    return transmissionType;
+  }
+
+  public StatusMessageType getStatusMessageType() {
+    return statusMessageType;
+  }
+
+  public Float getAltitude() {
+    return altitude;
+  }
+
+  public Float getGroundSpeed() {
+    return groundSpeed;
+  }
+
+  public Float getTrack() {
+    return track;
+  }
+
+  public Double getLatitude() {
+    return latitude;
+  }
+
+  public Double getLongitude() {
+    return longitude;
+  }
+
+  public Short getVerticalRate() {
+    return verticalRate;
+  }
+
+  public Short getSquawk() {
+    return squawk;
+  }
+
+  public Boolean getAlert() {
+    return alert;
+  }
+
+  public Boolean getEmergency() {
+    return emergency;
+  }
+
+  public Boolean getIdentActive() {
+    return identActive;
+  }
+
+  public Boolean getOnGround() {
+    return onGround;
+  }
+
+  /**
+   * A builder for {@code MessageRecord} instances.
+   */
+  public static class Builder {
+    private final long id;
+    private final MessageType messageType;
+    private final String icaoAddress;
+    private final Instant timestamp;
+    private String callSign;
+    private TransmissionType transmissionType;
+    private StatusMessageType statusMessageType;
+    private Float altitude;
+    private Float groundSpeed;
+    private Float track;
+    private Double latitude;
+    private Double longitude;
+    private Short verticalRate;
+    private Short squawk;
+    private Boolean alert;
+    private Boolean emergency;
+    private Boolean identActive;
+    private Boolean onGround;
+
+    /**
+     * Sole constructor for this class, with parameters for properties common to all message
+     * types.
+     *
+     * @param id the identifier of the persisted message
+     * @param messageType the type of the message, not null
+     * @param icaoAddress the 6 digit hexadecimal ICAO address of the aircraft, not null
+     * @param timestamp the instant at which the message was received, not null
+     */
+    public Builder(long id, MessageType messageType, String icaoAddress, Instant timestamp) {
+      this.id = id;
+      this.messageType = Objects.requireNonNull(messageType, "Message type is required");
+      this.icaoAddress = Objects.requireNonNull(icaoAddress, "ICAO address is required");
+      this.timestamp = Objects.requireNonNull(timestamp, "Timestamp is required");
+    }
+
+    public Builder callSign(String callSign) {
+      this.callSign = callSign;
+
+      return this;
+    }
+
+    public Builder transmissionType(TransmissionType transmissionType) {
+      this.transmissionType = transmissionType;
+
+      return this;
+    }
+
+    public Builder statusMessageType(StatusMessageType statusMessageType) {
+      this.statusMessageType = statusMessageType;
+
+      return this;
+    }
+
+    public Builder altitude(Float altitude) {
+      this.altitude = altitude;
+
+      return this;
+    }
+
+    public Builder groundSpeed(Float groundSpeed) {
+      this.groundSpeed = groundSpeed;
+
+      return this;
+    }
+
+    public Builder track(Float track) {
+      this.track = track;
+
+      return this;
+    }
+
+    public Builder position(Double latitude, Double longitude) {
+      this.latitude = latitude;
+      this.longitude = longitude;
+
+      return this;
+    }
+
+    public Builder verticalRate(Short verticalRate) {
+      this.verticalRate = verticalRate;
+
+      return this;
+    }
+
+    public Builder squawk(Short squawk) {
+      this.squawk = squawk;
+
+      return this;
+    }
+
+    public Builder alert(Boolean alert) {
+      this.alert = alert;
+
+      return this;
+    }
+
+    public Builder emergency(Boolean emergency) {
+      this.emergency = emergency;
+
+      return this;
+    }
+
+    public Builder identActive(Boolean identActive) {
+      this.identActive = identActive;
+
+      return this;
+    }
+
+    public Builder onGround(Boolean onGround) {
+      this.onGround = onGround;
+
+      return this;
+    }
+
+    public MessageRecord build() {
+      return new MessageRecord(this);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import java.io.IOException;
+
+/**
+ * Interface to classes that write a stream of {@link MessageRecord}s in some format, one record at
+ * a time, so that the number of records written is not limited by available memory.
+ *
+ * <p>Calls are made in the order {@link #start()}, {@link #write(MessageRecord)} once per record,
+ * then {@link #finish(boolean)}. Implementations flush but do not close their underlying stream.
+ */
+public interface MessageRecordWriter {
+  /**
+   * Writes anything that precedes the records.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  void start() throws IOException;
+
+  /**
+   * Writes a record.
+   *
+   * @param messageRecord the record to write, not null
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  void write(MessageRecord messageRecord) throws IOException;
+
+  /**
+   * Writes anything that follows the records and flushes the underlying stream.
+   *
+   * @param truncated true if more records matched the query than were written because of its limit
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  void finish(boolean truncated) throws IOException;
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.reactive;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.retry.Retry;
+
+/**
+ * Creates fluxes of the lines of text sent by a TCP server, such as the BaseStation feed served by
+ * <em>Dump1090</em> on port 30003.
+ *
+ * <p>A line is read from the socket only when a subscriber has requested one, so a subscriber that
+ * stops requesting stops the reading and, once the socket buffers have filled, lets TCP flow
+ * control hold back the server.
+ */
+public final class TcpLineFlux {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TcpLineFlux.class);
+
+  // The same limit as the serializer used by the TCP adapter of the integration pipeline
+  //
+  static final int MAX_LINE_LENGTH = 2048;
+
+  private TcpLineFlux() {
+  }
+
+  /**
+   * Creates a flux of the lines sent by a TCP server, without their line terminators.
+   *
+   * <p>The flux connects when subscribed and, whenever the connection fails or is closed by the
+   * server, reconnects after the given interval, so it never completes or fails of its own accord.
+   * Cancelling the subscription closes the connection. Connecting and reading block, so they are
+   * done on a scheduler whose threads may block.
+   *
+   * @param host the name or address of the server
+   * @param port the port on which the server listens
+   * @param connectTimeout the time allowed to establish a connection
+   * @param reconnectInterval the time to wait before reconnecting
+   * @param scheduler the scheduler on which to connect and read
+   *
+   * @return a flux of the lines sent by the server
+   */
+  public static Flux<byte[]> connect(
+      String host,
+      int port,
+      Duration connectTimeout,
+      Duration reconnectInterval,
+      Scheduler scheduler) {
+    final AtomicBoolean connected = new AtomicBoolean(true);
+
+    return Flux.using(
+            () -> open(host, port, connectTimeout, connected),
+            TcpLineFlux::lines,
+            TcpLineFlux::close)
+        .subscribeOn(scheduler)
+        .retryWhen(
+            Retry.fixedDelay(Long.MAX_VALUE, reconnectInterval)
+                .scheduler(scheduler)
+                .doBeforeRetry(
+                    signal -> {
+                      // Report each lost connection once, not every failed reconnection
+                      //
+                      if (connected.getAndSet(false)) {
+                        LOGGER.warn(
+                            "Lost connection to {}:{}: {}",
+                            host,
+                            port,
+                            signal.failure().getMessage());
+                      }
+                    }))
+        .repeatWhen(completions -> completions.delayElements(reconnectInterval, scheduler));
+  }
+
+  /**
+   * Creates a flux of the lines read from a connected socket, without their line terminators,
+   * that completes when the server closes the connection or the socket is closed.
+   *
+   * @param socket a connected socket
+   *
+   * @return a flux of the lines read from the socket
+   */
+  public static Flux<byte[]> lines(Socket socket) {
+    final InputStream input;
+
+    try {
+      input = new BufferedInputStream(socket.getInputStream());
+    } catch (IOException e) {
+      return Flux.error(e);
+    }
+
+    return Flux.generate(
+        () -> new byte[MAX_LINE_LENGTH],
+        (buffer, sink) -> {
+          try {
+            final byte[] line = readLine(input, buffer);
+
+            if (line == null) {
+              sink.complete();
+            } else {
+              sink.next(line);
+            }
+          } catch (IOException e) {
+            // A socket closed by a cancelled subscription ends the flux quietly
+            //
+            if (socket.isClosed()) {
+              sink.complete();
+            } else {
+              sink.error(e);
+            }
+          }
+
+          return buffer;
+        });
+  }
+
+  private static Socket open(
+      String host, int port, Duration connectTimeout, AtomicBoolean connected)
+      throws IOException {
+    final Socket socket = new Socket();
+
+    try {
+      socket.connect(new InetSocketAddress(host, port), (int) connectTimeout.toMillis());
+    } catch (IOException e) {
+      close(socket);
+
+      throw e;
+    }
+
+    if (!connected.getAndSet(true)) {
+      LOGGER.info("Reconnected to {}:{}", host, port);
+    }
+
+    return socket;
+  }
+
+  private static void close(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      LOGGER.debug("Failed to close socket: {}", e.getMessage());
+    }
+  }
+
+  // Returns the next line without its LF or CRLF terminator, or null at the end of the stream;
+  // an unterminated last line is discarded
+  //
+  static byte[] readLine(InputStream input, byte[] buffer) throws IOException {
+    int length = 0;
+    int b;
+
+    while ((b = input.read()) != '\n') {
+      if (b < 0) {
+        return null;
+      }
+
+      if (length == MAX_LINE_LENGTH) {
+        throw new IOException("Line exceeds " + MAX_LINE_LENGTH + " bytes");
+      }
+
+      buffer[length++] = (byte) b;
+    }
+
+    if (length > 0 && buffer[length - 1] == '\r') {
+      length--;
+    }
+
+    return Arrays.copyOf(buffer, length);
+  }
+}
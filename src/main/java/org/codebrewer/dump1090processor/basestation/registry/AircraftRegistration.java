@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.registry;
+
+/**
+ * The registration details of an aircraft, identified by its ICAO address.
+ *
+ * <p>Any detail other than the address may be unknown, and is then null. Instances are immutable.
+ */
+public final class AircraftRegistration {
+  private final String icaoAddress;
+  private final String registration;
+  private final String typeCode;
+  private final String operator;
+  private final String country;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param icaoAddress the ICAO address of the aircraft, as 6 upper-case hexadecimal digits
+   * @param registration the registration mark of the aircraft, or null if unknown
+   * @param typeCode the ICAO type designator of the aircraft, or null if unknown
+   * @param operator the name of the operator of the aircraft, or null if unknown
+   * @param country the name of the country to which the ICAO address is allocated, or null if
+   * unknown
+   */
+  public AircraftRegistration(
+      String icaoAddress, String registration, String typeCode, String operator, String country) {
+    this.icaoAddress = icaoAddress;
+    this.registration = registration;
+    this.typeCode = typeCode;
+    this.operator = operator;
+    this.country = country;
+  }
+
+  public String getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  public String getRegistration() {
+    return registration;
+  }
+
+  public String getTypeCode() {
+    return typeCode;
+  }
+
+  public String getOperator() {
+    return operator;
+  }
+
+  public String getCountry() {
+    return country;
+  }
+
+  @Override
+  public String toString() {
+    return "AircraftRegistration{"
+           + "icaoAddress='" + icaoAddress + '\''
+           + ", registration='" + registration + '\''
+           + ", typeCode='" + typeCode + '\''
+           + ", operator='" + operator + '\''
+           + ", country='" + country + '\''
+           + '}';
+  }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.registry;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+
+/**
+ * A read-only registry of aircraft registration details, held in a memory-mapped file of
+ * fixed-width records sorted by ICAO address.
+ *
+ * <p>The file is compiled from a CSV file, such as the aircraft database published by the OpenSky
+ * Network, whose header row names its columns. The {@value #ADDRESS_COLUMN},
+ * {@value #REGISTRATION_COLUMN}, {@value #TYPE_CODE_COLUMN} and {@value #OPERATOR_COLUMN} columns
+ * are read, in any order and whatever other columns there are. Rows without a valid address are
+ * skipped; where an address appears more than once, the last row wins.
+ *
+ * <p>The compiled file is a header of four big-endian integers, a magic number, the format version,
+ * the number of records and the size of each record, followed by the records in order of address.
+ * Each record is the address as an integer and the registration, type code and operator as UTF-8
+ * text, truncated or padded with zero bytes to fixed widths. A lookup is a binary search of the
+ * mapped records, so the registry occupies no heap for the records it holds, and only the record
+ * found is decoded.
+ *
+ * <p>The mapping is released when the registry is no longer reachable. Instances are
+ * thread-safe.
+ */
+public final class AircraftRegistry {
+  /**
+   * The name of the column holding the ICAO address, as hexadecimal digits.
+   */
+  public static final String ADDRESS_COLUMN = "icao24";
+
+  /**
+   * The name of the column holding the registration mark.
+   */
+  public static final String REGISTRATION_COLUMN = "registration";
+
+  /**
+   * The name of the column holding the ICAO type designator.
+   */
+  public static final String TYPE_CODE_COLUMN = "typecode";
+
+  /**
+   * The name of the column holding the name of the operator.
+   */
+  public static final String OPERATOR_COLUMN = "operator";
+
+  private static final int MAGIC = 0x44315247;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 4 * 4;
+  private static final int REGISTRATION_BYTES = 12;
+  private static final int TYPE_CODE_BYTES = 4;
+  private static final int OPERATOR_BYTES = 48;
+  private static final int RECORD_BYTES =
+      4 + REGISTRATION_BYTES + TYPE_CODE_BYTES + OPERATOR_BYTES;
+
+  private final MappedByteBuffer buffer;
+  private final int recordCount;
+
+  private AircraftRegistry(MappedByteBuffer buffer, int recordCount) {
+    this.buffer = buffer;
+    this.recordCount = recordCount;
+  }
+
+  /**
+   * Compiles a CSV file of aircraft registration details into a registry file, replacing any
+   * existing file only once the new one is complete.
+   *
+   * @param source the CSV file, not null
+   * @param target the registry file, not null
+   *
+   * @return the number of records written
+   *
+   * @throws IOException if the CSV file cannot be read, lacks a required column, or the registry
+   * file cannot be written
+   */
+  public static int compile(Path source, Path target) throws IOException {
+    final List<Entry> entries = new ArrayList<>();
+
+    try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+      final String header = reader.readLine();
+
+      if (header == null) {
+        throw new IOException("Registry source is empty: " + source);
+      }
+
+      final List<String> columns = parseLine(header.replace("\uFEFF", ""));
+      final int addressColumn = columnOf(columns, ADDRESS_COLUMN);
+      final int registrationColumn = columnOf(columns, REGISTRATION_COLUMN);
+      final int typeCodeColumn = columnOf(columns, TYPE_CODE_COLUMN);
+      final int operatorColumn = columnOf(columns, OPERATOR_COLUMN);
+      String line;
+
+      while ((line = reader.readLine()) != null) {
+        final List<String> fields = parseLine(line);
+        final int address =
+            addressColumn < fields.size()
+                ? DomainUtils.parseIcaoAddress(fields.get(addressColumn).trim())
+                : -1;
+
+        if (address >= 0) {
+          entries.add(
+              new Entry(
+                  address,
+                  field(fields, registrationColumn),
+                  field(fields, typeCodeColumn),
+                  field(fields, operatorColumn)));
+        }
+      }
+    }
+
+    // The sort is stable, so the rows for each address stay in order and the last is kept
+    //
+    entries.sort(Comparator.comparingInt(entry -> entry.address));
+
+    final List<Entry> records = new ArrayList<>(entries.size());
+
+    for (int i = 0; i < entries.size(); i++) {
+      if (i + 1 == entries.size() || entries.get(i + 1).address != entries.get(i).address) {
+        records.add(entries.get(i));
+      }
+    }
+
+    final Path parent = target.toAbsolutePath().getParent();
+
+    Files.createDirectories(parent);
+
+    final Path temporary = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+
+    try {
+      try (DataOutputStream output =
+               new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(records.size());
+        output.writeInt(RECORD_BYTES);
+
+        for (Entry record : records) {
+          output.writeInt(record.address);
+          writeText(output, record.registration, REGISTRATION_BYTES);
+          writeText(output, record.typeCode, TYPE_CODE_BYTES);
+          writeText(output, record.operator, OPERATOR_BYTES);
+        }
+      }
+
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+
+    return records.size();
+  }
+
+  /**
+   * Opens a compiled registry file.
+   *
+   * @param path the registry file, not null
+   *
+   * @return the registry held in the file
+   *
+   * @throws IOException if the file cannot be read or is not a registry file
+   */
+  public static AircraftRegistry open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long size = channel.size();
+
+      if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+        throw new IOException("Not a registry file: " + path);
+      }
+
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      final int recordCount = buffer.getInt(8);
+
+      if (buffer.getInt(0) != MAGIC
+          || buffer.getInt(4) != VERSION
+          || buffer.getInt(12) != RECORD_BYTES
+          || recordCount < 0
+          || size != HEADER_BYTES + (long) recordCount * RECORD_BYTES) {
+        throw new IOException("Not a registry file, or of an unsupported version: " + path);
+      }
+
+      return new AircraftRegistry(buffer, recordCount);
+    }
+  }
+
+  // Parses one line of CSV, in which fields may be enclosed in double quotes and a double quote
+  // within such a field is written twice
+  //
+  static List<String> parseLine(String line) {
+    final List<String> fields = new ArrayList<>();
+    final StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+
+    for (int i = 0; i < line.length(); i++) {
+      final char c = line.charAt(i);
+
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append(c);
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+
+    fields.add(field.toString());
+
+    return fields;
+  }
+
+  private static int columnOf(List<String> columns, String name) throws IOException {
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).trim().toLowerCase(Locale.ROOT).equals(name)) {
+        return i;
+      }
+    }
+
+    throw new IOException("Registry source has no '" + name + "' column");
+  }
+
+  private static String field(List<String> fields, int column) {
+    return column < fields.size() ? fields.get(column).trim() : "";
+  }
+
+  // Writes text truncated to whole characters within the width, padded with zero bytes
+  //
+  private static void writeText(DataOutputStream output, String text, int width)
+      throws IOException {
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    int length = Math.min(bytes.length, width);
+
+    while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+      length--;
+    }
+
+    output.write(bytes, 0, length);
+
+    for (int i = length; i < width; i++) {
+      output.write(0);
+    }
+  }
+
+  /**
+   * Finds the registration details of an aircraft.
+   *
+   * @param address the ICAO address of the aircraft, in the range 0 to 0xFFFFFF
+   *
+   * @return the registration details of the aircraft, including the country to which its address
+   * is allocated, or null if the registry holds no record of the address
+   */
+  public AircraftRegistration find(int address) {
+    final int index = indexOf(address);
+
+    if (index < 0) {
+      return null;
+    }
+
+    final int position = HEADER_BYTES + index * RECORD_BYTES + 4;
+
+    return new AircraftRegistration(
+        String.format("%06X", address),
+        readText(position, REGISTRATION_BYTES),
+        readText(position + REGISTRATION_BYTES, TYPE_CODE_BYTES),
+        readText(position + REGISTRATION_BYTES + TYPE_CODE_BYTES, OPERATOR_BYTES),
+        IcaoAllocations.countryOf(address));
+  }
+
+  /**
+   * Indicates whether or not the registry holds a record of an address, without decoding it.
+   *
+   * @param address the ICAO address of an aircraft
+   *
+   * @return true if the registry holds a record of the address, otherwise false
+   */
+  public boolean contains(int address) {
+    return indexOf(address) >= 0;
+  }
+
+  private int indexOf(int address) {
+    int low = 0;
+    int high = recordCount - 1;
+
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int middleAddress = buffer.getInt(HEADER_BYTES + middle * RECORD_BYTES);
+
+      if (middleAddress < address) {
+        low = middle + 1;
+      } else if (middleAddress > address) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -1;
+  }
+
+  // Reads text by absolute position, so concurrent readers need not share a buffer position
+  //
+  private String readText(int position, int width) {
+    int length = 0;
+
+    while (length < width && buffer.get(position + length) != 0) {
+      length++;
+    }
+
+    if (length == 0) {
+      return null;
+    }
+
+    final byte[] bytes = new byte[length];
+
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(position + i);
+    }
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the number of records held.
+   *
+   * @return the number of records held
+   */
+  public int size() {
+    return recordCount;
+  }
+
+  private static final class Entry {
+    private final int address;
+    private final String registration;
+    private final String typeCode;
+    private final String operator;
+
+    private Entry(int address, String registration, String typeCode, String operator) {
+      this.address = address;
+      this.registration = registration;
+      this.typeCode = typeCode;
+      this.operator = operator;
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The blocks of 24 bit ICAO addresses allocated to each country, from the allocation table of
+ * ICAO Annex 10, Volume III.
+ *
+ * <p>The blocks are held in order of their first address, so the country of an address is found by
+ * a binary search. Where a block is carved out of a larger one, the larger is split around it.
+ */
+public final class IcaoAllocations {
+  private static final int[] FIRST_ADDRESSES;
+  private static final int[] LAST_ADDRESSES;
+  private static final String[] COUNTRIES;
+
+  static {
+    final List<Object[]> blocks = new ArrayList<>();
+
+    block(blocks, 0x004000, 0x0043FF, "Zimbabwe");
+    block(blocks, 0x006000, 0x006FFF, "Mozambique");
+    block(blocks, 0x008000, 0x00FFFF, "South Africa");
+    block(blocks, 0x010000, 0x017FFF, "Egypt");
+    block(blocks, 0x018000, 0x01FFFF, "Libya");
+    block(blocks, 0x020000, 0x027FFF, "Morocco");
+    block(blocks, 0x028000, 0x02FFFF, "Tunisia");
+    block(blocks, 0x030000, 0x0303FF, "Botswana");
+    block(blocks, 0x032000, 0x032FFF, "Burundi");
+    block(blocks, 0x034000, 0x034FFF, "Cameroon");
+    block(blocks, 0x035000, 0x0353FF, "Comoros");
+    block(blocks, 0x036000, 0x036FFF, "Congo");
+    block(blocks, 0x038000, 0x038FFF, "Cote d'Ivoire");
+    block(blocks, 0x03E000, 0x03EFFF, "Gabon");
+    block(blocks, 0x040000, 0x040FFF, "Ethiopia");
+    block(blocks, 0x042000, 0x042FFF, "Equatorial Guinea");
+    block(blocks, 0x044000, 0x044FFF, "Ghana");
+    block(blocks, 0x046000, 0x046FFF, "Guinea");
+    block(blocks, 0x048000, 0x0483FF, "Guinea-Bissau");
+    block(blocks, 0x04A000, 0x04A3FF, "Lesotho");
+    block(blocks, 0x04C000, 0x04CFFF, "Kenya");
+    block(blocks, 0x050000, 0x050FFF, "Liberia");
+    block(blocks, 0x054000, 0x054FFF, "Madagascar");
+    block(blocks, 0x058000, 0x058FFF, "Malawi");
+    block(blocks, 0x05A000, 0x05A3FF, "Maldives");
+    block(blocks, 0x05C000, 0x05CFFF, "Mali");
+    block(blocks, 0x05E000, 0x05E3FF, "Mauritania");
+    block(blocks, 0x060000, 0x0603FF, "Mauritius");
+    block(blocks, 0x062000, 0x062FFF, "Niger");
+    block(blocks, 0x064000, 0x064FFF, "Nigeria");
+    block(blocks, 0x068000, 0x068FFF, "Uganda");
+    block(blocks, 0x06A000, 0x06A3FF, "Qatar");
+    block(blocks, 0x06C000, 0x06CFFF, "Central African Republic");
+    block(blocks, 0x06E000, 0x06EFFF, "Rwanda");
+    block(blocks, 0x070000, 0x070FFF, "Senegal");
+    block(blocks, 0x074000, 0x0743FF, "Seychelles");
+    block(blocks, 0x076000, 0x0763FF, "Sierra Leone");
+    block(blocks, 0x078000, 0x078FFF, "Somalia");
+    block(blocks, 0x07A000, 0x07A3FF, "Eswatini");
+    block(blocks, 0x07C000, 0x07CFFF, "Sudan");
+    block(blocks, 0x080000, 0x080FFF, "Tanzania");
+    block(blocks, 0x084000, 0x084FFF, "Chad");
+    block(blocks, 0x088000, 0x088FFF, "Togo");
+    block(blocks, 0x08A000, 0x08AFFF, "Zambia");
+    block(blocks, 0x08C000, 0x08CFFF, "Democratic Republic of the Congo");
+    block(blocks, 0x090000, 0x090FFF, "Angola");
+    block(blocks, 0x094000, 0x0943FF, "Benin");
+    block(blocks, 0x096000, 0x0963FF, "Cape Verde");
+    block(blocks, 0x098000, 0x0983FF, "Djibouti");
+    block(blocks, 0x09A000, 0x09AFFF, "Gambia");
+    block(blocks, 0x09C000, 0x09CFFF, "Burkina Faso");
+    block(blocks, 0x09E000, 0x09E3FF, "Sao Tome and Principe");
+    block(blocks, 0x0A0000, 0x0A7FFF, "Algeria");
+    block(blocks, 0x0A8000, 0x0A8FFF, "Bahamas");
+    block(blocks, 0x0AA000, 0x0AA3FF, "Barbados");
+    block(blocks, 0x0AB000, 0x0AB3FF, "Belize");
+    block(blocks, 0x0AC000, 0x0ACFFF, "Colombia");
+    block(blocks, 0x0AE000, 0x0AEFFF, "Costa Rica");
+    block(blocks, 0x0B0000, 0x0B0FFF, "Cuba");
+    block(blocks, 0x0B2000, 0x0B2FFF, "El Salvador");
+    block(blocks, 0x0B4000, 0x0B4FFF, "Guatemala");
+    block(blocks, 0x0B6000, 0x0B6FFF, "Guyana");
+    block(blocks, 0x0B8000, 0x0B8FFF, "Haiti");
+    block(blocks, 0x0BA000, 0x0BAFFF, "Honduras");
+    block(blocks, 0x0BC000, 0x0BC3FF, "Saint Vincent and the Grenadines");
+    block(blocks, 0x0BE000, 0x0BEFFF, "Jamaica");
+    block(blocks, 0x0C0000, 0x0C0FFF, "Nicaragua");
+    block(blocks, 0x0C2000, 0x0C2FFF, "Panama");
+    block(blocks, 0x0C4000, 0x0C4FFF, "Dominican Republic");
+    block(blocks, 0x0C6000, 0x0C6FFF, "Trinidad and Tobago");
+    block(blocks, 0x0C8000, 0x0C8FFF, "Suriname");
+    block(blocks, 0x0CA000, 0x0CA3FF, "Antigua and Barbuda");
+    block(blocks, 0x0CC000, 0x0CC3FF, "Grenada");
+    block(blocks, 0x0D0000, 0x0D7FFF, "Mexico");
+    block(blocks, 0x0D8000, 0x0DFFFF, "Venezuela");
+    block(blocks, 0x100000, 0x1FFFFF, "Russia");
+    block(blocks, 0x201000, 0x2013FF, "Namibia");
+    block(blocks, 0x202000, 0x2023FF, "Eritrea");
+    block(blocks, 0x300000, 0x33FFFF, "Italy");
+    block(blocks, 0x340000, 0x37FFFF, "Spain");
+    block(blocks, 0x380000, 0x3BFFFF, "France");
+    block(blocks, 0x3C0000, 0x3FFFFF, "Germany");
+    block(blocks, 0x400000, 0x43FFFF, "United Kingdom");
+    block(blocks, 0x440000, 0x447FFF, "Austria");
+    block(blocks, 0x448000, 0x44FFFF, "Belgium");
+    block(blocks, 0x450000, 0x457FFF, "Bulgaria");
+    block(blocks, 0x458000, 0x45FFFF, "Denmark");
+    block(blocks, 0x460000, 0x467FFF, "Finland");
+    block(blocks, 0x468000, 0x46FFFF, "Greece");
+    block(blocks, 0x470000, 0x477FFF, "Hungary");
+    block(blocks, 0x478000, 0x47FFFF, "Norway");
+    block(blocks, 0x480000, 0x487FFF, "Netherlands");
+    block(blocks, 0x488000, 0x48FFFF, "Poland");
+    block(blocks, 0x490000, 0x497FFF, "Portugal");
+    block(blocks, 0x498000, 0x49FFFF, "Czechia");
+    block(blocks, 0x4A0000, 0x4A7FFF, "Romania");
+    block(blocks, 0x4A8000, 0x4AFFFF, "Sweden");
+    block(blocks, 0x4B0000, 0x4B7FFF, "Switzerland");
+    block(blocks, 0x4B8000, 0x4BFFFF, "Turkey");
+    block(blocks, 0x4C0000, 0x4C7FFF, "Serbia");
+    block(blocks, 0x4C8000, 0x4C83FF, "Cyprus");
+    block(blocks, 0x4CA000, 0x4CAFFF, "Ireland");
+    block(blocks, 0x4CC000, 0x4CCFFF, "Iceland");
+    block(blocks, 0x4D0000, 0x4D03FF, "Luxembourg");
+    block(blocks, 0x4D2000, 0x4D2FFF, "Malta");
+    block(blocks, 0x4D4000, 0x4D43FF, "Monaco");
+    block(blocks, 0x500000, 0x5003FF, "San Marino");
+    block(blocks, 0x501000, 0x5013FF, "Albania");
+    block(blocks, 0x501C00, 0x501FFF, "Croatia");
+    block(blocks, 0x502C00, 0x502FFF, "Latvia");
+    block(blocks, 0x503C00, 0x503FFF, "Lithuania");
+    block(blocks, 0x504C00, 0x504FFF, "Moldova");
+    block(blocks, 0x505C00, 0x505FFF, "Slovakia");
+    block(blocks, 0x506C00, 0x506FFF, "Slovenia");
+    block(blocks, 0x507C00, 0x507FFF, "Uzbekistan");
+    block(blocks, 0x508000, 0x50FFFF, "Ukraine");
+    block(blocks, 0x510000, 0x5103FF, "Belarus");
+    block(blocks, 0x511000, 0x5113FF, "Estonia");
+    block(blocks, 0x512000, 0x5123FF, "North Macedonia");
+    block(blocks, 0x513000, 0x5133FF, "Bosnia and Herzegovina");
+    block(blocks, 0x514000, 0x5143FF, "Georgia");
+    block(blocks, 0x515000, 0x5153FF, "Tajikistan");
+    block(blocks, 0x516000, 0x5163FF, "Montenegro");
+    block(blocks, 0x600000, 0x6003FF, "Armenia");
+    block(blocks, 0x600800, 0x600BFF, "Azerbaijan");
+    block(blocks, 0x601000, 0x6013FF, "Kyrgyzstan");
+    block(blocks, 0x601800, 0x601BFF, "Turkmenistan");
+    block(blocks, 0x680000, 0x6803FF, "Bhutan");
+    block(blocks, 0x681000, 0x6813FF, "Micronesia");
+    block(blocks, 0x682000, 0x6823FF, "Mongolia");
+    block(blocks, 0x683000, 0x6833FF, "Kazakhstan");
+    block(blocks, 0x684000, 0x6843FF, "Palau");
+    block(blocks, 0x700000, 0x700FFF, "Afghanistan");
+    block(blocks, 0x702000, 0x702FFF, "Bangladesh");
+    block(blocks, 0x704000, 0x704FFF, "Myanmar");
+    block(blocks, 0x706000, 0x706FFF, "Kuwait");
+    block(blocks, 0x708000, 0x708FFF, "Laos");
+    block(blocks, 0x70A000, 0x70AFFF, "Nepal");
+    block(blocks, 0x70C000, 0x70C3FF, "Oman");
+    block(blocks, 0x70E000, 0x70EFFF, "Cambodia");
+    block(blocks, 0x710000, 0x717FFF, "Saudi Arabia");
+    block(blocks, 0x718000, 0x71FFFF, "South Korea");
+    block(blocks, 0x720000, 0x727FFF, "North Korea");
+    block(blocks, 0x728000, 0x72FFFF, "Iraq");
+    block(blocks, 0x730000, 0x737FFF, "Iran");
+    block(blocks, 0x738000, 0x73FFFF, "Israel");
+    block(blocks, 0x740000, 0x747FFF, "Jordan");
+    block(blocks, 0x748000, 0x74FFFF, "Lebanon");
+    block(blocks, 0x750000, 0x757FFF, "Malaysia");
+    block(blocks, 0x758000, 0x75FFFF, "Philippines");
+    block(blocks, 0x760000, 0x767FFF, "Pakistan");
+    block(blocks, 0x768000, 0x76FFFF, "Singapore");
+    block(blocks, 0x770000, 0x777FFF, "Sri Lanka");
+    block(blocks, 0x778000, 0x77FFFF, "Syria");
+    block(blocks, 0x780000, 0x788FFF, "China");
+    block(blocks, 0x789000, 0x789FFF, "Hong Kong");
+    block(blocks, 0x78A000, 0x7BFFFF, "China");
+    block(blocks, 0x7C0000, 0x7FFFFF, "Australia");
+    block(blocks, 0x800000, 0x83FFFF, "India");
+    block(blocks, 0x840000, 0x87FFFF, "Japan");
+    block(blocks, 0x880000, 0x887FFF, "Thailand");
+    block(blocks, 0x888000, 0x88FFFF, "Viet Nam");
+    block(blocks, 0x890000, 0x890FFF, "Yemen");
+    block(blocks, 0x894000, 0x894FFF, "Bahrain");
+    block(blocks, 0x895000, 0x8953FF, "Brunei");
+    block(blocks, 0x896000, 0x896FFF, "United Arab Emirates");
+    block(blocks, 0x897000, 0x8973FF, "Solomon Islands");
+    block(blocks, 0x898000, 0x898FFF, "Papua New Guinea");
+    block(blocks, 0x899000, 0x8993FF, "Taiwan");
+    block(blocks, 0x8A0000, 0x8A7FFF, "Indonesia");
+    block(blocks, 0x900000, 0x9003FF, "Marshall Islands");
+    block(blocks, 0x901000, 0x9013FF, "Cook Islands");
+    block(blocks, 0x902000, 0x9023FF, "Samoa");
+    block(blocks, 0xA00000, 0xAFFFFF, "United States");
+    block(blocks, 0xC00000, 0xC3FFFF, "Canada");
+    block(blocks, 0xC80000, 0xC87FFF, "New Zealand");
+    block(blocks, 0xC88000, 0xC88FFF, "Fiji");
+    block(blocks, 0xC8A000, 0xC8A3FF, "Nauru");
+    block(blocks, 0xC8C000, 0xC8C3FF, "Saint Lucia");
+    block(blocks, 0xC8D000, 0xC8D3FF, "Tonga");
+    block(blocks, 0xC8E000, 0xC8E3FF, "Kiribati");
+    block(blocks, 0xC90000, 0xC903FF, "Vanuatu");
+    block(blocks, 0xE00000, 0xE3FFFF, "Argentina");
+    block(blocks, 0xE40000, 0xE7FFFF, "Brazil");
+    block(blocks, 0xE80000, 0xE80FFF, "Chile");
+    block(blocks, 0xE84000, 0xE84FFF, "Ecuador");
+    block(blocks, 0xE88000, 0xE88FFF, "Paraguay");
+    block(blocks, 0xE8C000, 0xE8CFFF, "Peru");
+    block(blocks, 0xE90000, 0xE90FFF, "Uruguay");
+    block(blocks, 0xE94000, 0xE94FFF, "Bolivia");
+
+    FIRST_ADDRESSES = new int[blocks.size()];
+    LAST_ADDRESSES = new int[blocks.size()];
+    COUNTRIES = new String[blocks.size()];
+
+    for (int i = 0; i < blocks.size(); i++) {
+      FIRST_ADDRESSES[i] = (Integer) blocks.get(i)[0];
+      LAST_ADDRESSES[i] = (Integer) blocks.get(i)[1];
+      COUNTRIES[i] = (String) blocks.get(i)[2];
+    }
+  }
+
+  private IcaoAllocations() {
+    // Utility class
+  }
+
+  private static void block(
+      List<Object[]> blocks, int firstAddress, int lastAddress, String country) {
+    blocks.add(new Object[] { firstAddress, lastAddress, country });
+  }
+
+  /**
+   * Gets the name of the country to which an ICAO address is allocated.
+   *
+   * @param address an ICAO address in the range 0 to 0xFFFFFF
+   *
+   * @return the name of the country to which the address is allocated, or null if the address is
+   * not in an allocated block
+   */
+  public static String countryOf(int address) {
+    final int index = Arrays.binarySearch(FIRST_ADDRESSES, address);
+
+    // A negative index encodes the insertion point, after the block that would hold the address
+    //
+    final int block = index >= 0 ? index : -index - 2;
+
+    return block >= 0 && address <= LAST_ADDRESSES[block] ? COUNTRIES[block] : null;
+  }
+
+  /**
+   * Gets the number of allocated blocks.
+   *
+   * @return the number of allocated blocks
+   */
+  static int getBlockCount() {
+    return FIRST_ADDRESSES.length;
+  }
+
+  static int getFirstAddress(int block) {
+    return FIRST_ADDRESSES[block];
+  }
+
+  static int getLastAddress(int block) {
+    return LAST_ADDRESSES[block];
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import org.codebrewer.dump1090processor.basestation.entity.AircraftRollup;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Interface to a repository for the {@link AircraftRollup} entity class.
+ */
+public interface AircraftRollupRepository extends CrudRepository<AircraftRollup, Long> {
+  /**
+   * Finds the roll-up for an aircraft and period.
+   *
+   * @param icaoAddress the aircraft's ICAO address
+   * @param periodStart the start of the period
+   *
+   * @return the roll-up for the aircraft and period, if one exists
+   */
+  Optional<AircraftRollup> findByIcaoAddressAndPeriodStart(String icaoAddress, Instant periodStart);
+}
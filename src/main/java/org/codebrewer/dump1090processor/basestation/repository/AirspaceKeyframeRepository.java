@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import org.codebrewer.dump1090processor.basestation.entity.AirspaceKeyframe;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Interface to a repository for the {@link AirspaceKeyframe} entity class.
+ */
+public interface AirspaceKeyframeRepository extends CrudRepository<AirspaceKeyframe, Instant> {
+  /**
+   * Finds the latest keyframe captured at or before an instant.
+   *
+   * @param timestamp the instant
+   *
+   * @return the latest keyframe captured at or before the instant, if one exists
+   */
+  Optional<AirspaceKeyframe> findFirstByTimestampLessThanEqualOrderByTimestampDesc(
+      Instant timestamp);
+
+  /**
+   * Finds the latest keyframe.
+   *
+   * @return the latest keyframe, if one exists
+   */
+  Optional<AirspaceKeyframe> findFirstByOrderByTimestampDesc();
+}
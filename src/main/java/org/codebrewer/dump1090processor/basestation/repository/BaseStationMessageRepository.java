@@ -1,5 +1,5 @@
 /*
- * Copyright 2018, 2020 Mark Scott
+ * Copyright 2018, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,42 @@
 
 package org.codebrewer.dump1090processor.basestation.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Interface to a repository for the {@link BaseStationMessage} entity class.
+ *
+ * <p>Large result sets should be read using {@link #streamMessages}, which does not load
+ * entities into the persistence context.
  */
-public interface BaseStationMessageRepository extends CrudRepository<BaseStationMessage, Long> {
+public interface BaseStationMessageRepository
+    extends CrudRepository<BaseStationMessage, Long>, MessageQueryRepository {
+  /**
+   * Finds messages received before a given instant.
+   *
+   * @param cutoff the instant before which messages were received
+   * @param pageable the page of messages to find, typically the first page of a bounded size
+   *
+   * @return the page of messages received before the cutoff
+   */
+  List<BaseStationMessage> findByTimestampBefore(Instant cutoff, Pageable pageable);
+
+  /**
+   * Deletes messages with the given identifiers in a single statement, without loading them.
+   *
+   * @param ids the identifiers of the messages to delete, not null
+   *
+   * @return the number of messages deleted
+   */
+  @Modifying
+  @Query("delete from BaseStationMessage m where m.id in :ids")
+  int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import org.codebrewer.dump1090processor.basestation.entity.JournalCheckpoint;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Interface to a repository for the {@link JournalCheckpoint} entity class.
+ */
+public interface JournalCheckpointRepository extends CrudRepository<JournalCheckpoint, String> {
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.util.function.Consumer;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+
+/**
+ * Interface to a repository fragment that streams persisted BaseStation messages matching a
+ * {@link MessageQuery}, without loading them all into memory.
+ */
+public interface MessageQueryRepository {
+  /**
+   * Streams the messages matching a query, in order of timestamp and then identifier, to a
+   * consumer.
+   *
+   * <p>Messages are read from a database cursor and passed to the consumer one at a time, so memory
+   * use does not depend on the number of messages. The caller is expected to provide a
+   * transaction, which some databases require before they will use a cursor.
+   *
+   * @param query the criteria selecting messages, not null
+   * @param consumer the consumer to which matching messages are passed, not null
+   *
+   * @return true if more messages matched the query than were passed to the consumer because of the
+   * query's limit, otherwise false
+   */
+  boolean streamMessages(MessageQuery query, Consumer<MessageRecord> consumer);
+
+  /**
+   * Streams the messages with identifiers greater than a given identifier, in order of
+   * identifier, to a consumer.
+   *
+   * <p>Identifiers are allocated in increasing order as messages are saved, so, unlike resuming a
+   * {@link MessageQuery} by timestamp, resuming by identifier also selects messages saved since
+   * with earlier timestamps. As for {@link #streamMessages(MessageQuery, Consumer)}, the caller is
+   * expected to provide a transaction.
+   *
+   * @param afterId the identifier after which messages are selected
+   * @param limit the maximum number of messages passed to the consumer, positive
+   * @param consumer the consumer to which selected messages are passed, not null
+   *
+   * @return true if more messages followed those passed to the consumer, otherwise false
+   */
+  boolean streamMessagesAfterId(long afterId, int limit, Consumer<MessageRecord> consumer);
+}
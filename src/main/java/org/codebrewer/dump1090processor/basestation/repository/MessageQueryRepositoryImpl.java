@@ -0,0 +1,308 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.query.BoundingBox;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.geolatte.geom.Geometry;
+import org.geolatte.geom.Position;
+import org.hibernate.spatial.dialect.h2geodb.GeoDbWkb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The JDBC implementation of the {@link MessageQueryRepository} fragment.
+ *
+ * <p>Queries are ordered by timestamp and identifier, and resumed using a keyset condition on the
+ * same columns, so that they are served by the composite indexes declared on the
+ * {@code base_station_message} table. Rows are fetched from the cursor in batches of a fixed size.
+ *
+ * <p>Positions are stored in a form that is opaque to SQL without the GeoDB functions, so bounding
+ * box criteria are applied to each row as it is read. Such queries should also be narrowed by
+ * aircraft or time range where possible.
+ */
+public class MessageQueryRepositoryImpl implements MessageQueryRepository {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageQueryRepositoryImpl.class);
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+  private static final String SELECT =
+      "select id, message_type, icao_address, timestamp, call_sign, transmission_type,"
+      + " status_message_type, altitude, ground_speed, track, position, vertical_rate, squawk,"
+      + " alert, emergency, ident_active, on_ground from base_station_message";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The number of rows fetched from the database at a time can be specified using the
+   * {@code query.fetch.size} property.
+   *
+   * @param dataSource the data source holding persisted messages
+   * @param fetchSize the number of rows fetched from the database at a time
+   */
+  @Autowired
+  public MessageQueryRepositoryImpl(
+      DataSource dataSource, @Value("${query.fetch.size:500}") int fetchSize) {
+    if (fetchSize < 1) {
+      throw new IllegalArgumentException("Fetch size must be positive");
+    }
+
+    LOGGER.info("MessageQueryRepository: fetch size {}", fetchSize);
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.setFetchSize(fetchSize);
+  }
+
+  /**
+   * Builds the SQL statement for a query, collecting the values of its parameters.
+   *
+   * @param query the criteria selecting messages
+   * @param parameters the list to which parameter values are appended, in order
+   *
+   * @return the SQL statement
+   */
+  static String buildSql(MessageQuery query, List<Object> parameters) {
+    final List<String> conditions = new ArrayList<>();
+
+    if (query.getIcaoAddress() != null) {
+      conditions.add("icao_address = ?");
+      parameters.add(query.getIcaoAddress());
+    }
+
+    if (query.getFrom() != null) {
+      conditions.add("timestamp >= ?");
+      parameters.add(query.getFrom());
+    }
+
+    if (query.getTo() != null) {
+      conditions.add("timestamp < ?");
+      parameters.add(query.getTo());
+    }
+
+    if (!query.getMessageTypes().isEmpty()) {
+      conditions.add("message_type in (" + placeholders(query.getMessageTypes()) + ")");
+
+      for (MessageType messageType : query.getMessageTypes()) {
+        parameters.add(messageType.name());
+      }
+    }
+
+    if (!query.getTransmissionTypes().isEmpty()) {
+      conditions.add("transmission_type in (" + placeholders(query.getTransmissionTypes()) + ")");
+
+      for (TransmissionType transmissionType : query.getTransmissionTypes()) {
+        parameters.add(transmissionType.ordinal());
+      }
+    }
+
+    if (query.getBoundingBox() != null) {
+      conditions.add("position is not null");
+    }
+
+    if (query.getAfterTimestamp() != null) {
+      conditions.add("(timestamp > ? or (timestamp = ? and id > ?))");
+      parameters.add(query.getAfterTimestamp());
+      parameters.add(query.getAfterTimestamp());
+      parameters.add(query.getAfterId());
+    }
+
+    final StringBuilder sql = new StringBuilder(SELECT);
+
+    if (!conditions.isEmpty()) {
+      sql.append(" where ").append(String.join(" and ", conditions));
+    }
+
+    sql.append(" order by timestamp, id");
+
+    // Without a bounding box every row read is returned, so the database can stop after one more
+    // row than the limit; with one, rows are filtered as they are read and the limit is applied
+    // by the caller
+    //
+    if (query.getLimit() != MessageQuery.NO_LIMIT && query.getBoundingBox() == null) {
+      sql.append(" limit ?");
+      parameters.add(query.getLimit() + 1);
+    }
+
+    return sql.toString();
+  }
+
+  /**
+   * Builds the SQL statement selecting messages after an identifier, in order of identifier,
+   * collecting the values of its parameters.
+   *
+   * @param afterId the identifier after which messages are selected
+   * @param limit the maximum number of messages to be returned
+   * @param parameters the list to which parameter values are appended, in order
+   *
+   * @return the SQL statement
+   */
+  static String buildSqlAfterId(long afterId, int limit, List<Object> parameters) {
+    parameters.add(afterId);
+    parameters.add(limit + 1);
+
+    return SELECT + " where id > ? order by id limit ?";
+  }
+
+  private static String placeholders(Collection<?> values) {
+    final StringBuilder placeholders = new StringBuilder();
+
+    for (int i = 0; i < values.size(); i++) {
+      placeholders.append(i == 0 ? "?" : ", ?");
+    }
+
+    return placeholders.toString();
+  }
+
+  private static <T> T getNullable(ResultSet resultSet, String column, Class<T> type)
+      throws SQLException {
+    final T value = resultSet.getObject(column, type);
+
+    return resultSet.wasNull() ? null : value;
+  }
+
+  private static MessageRecord mapRecord(
+      ResultSet resultSet, BoundingBox boundingBox, Calendar calendar) throws SQLException {
+    final Object positionValue = resultSet.getObject("position");
+    Double latitude = null;
+    Double longitude = null;
+
+    if (positionValue != null) {
+      final Geometry<?> geometry = GeoDbWkb.from(positionValue);
+
+      if (geometry != null && !geometry.isEmpty()) {
+        final Position position = geometry.getPositionN(0);
+
+        longitude = position.getCoordinate(0);
+        latitude = position.getCoordinate(1);
+      }
+    }
+
+    if (boundingBox != null
+        && (latitude == null || !boundingBox.contains(longitude, latitude))) {
+      return null;
+    }
+
+    final Integer transmissionType = getNullable(resultSet, "transmission_type", Integer.class);
+    final String statusMessageType = resultSet.getString("status_message_type");
+
+    return new MessageRecord.Builder(
+        resultSet.getLong("id"),
+        MessageType.valueOf(resultSet.getString("message_type")),
+        resultSet.getString("icao_address"),
+        resultSet.getTimestamp("timestamp", calendar).toInstant())
+        .callSign(resultSet.getString("call_sign"))
+        .transmissionType(
+            transmissionType == null ? null : TransmissionType.values()[transmissionType])
+        .statusMessageType(
+            statusMessageType == null ? null : StatusMessageType.valueOf(statusMessageType))
+        .altitude(getNullable(resultSet, "altitude", Float.class))
+        .groundSpeed(getNullable(resultSet, "ground_speed", Float.class))
+        .track(getNullable(resultSet, "track", Float.class))
+        .position(latitude, longitude)
+        .verticalRate(getNullable(resultSet, "vertical_rate", Short.class))
+        .squawk(getNullable(resultSet, "squawk", Short.class))
+        .alert(getNullable(resultSet, "alert", Boolean.class))
+        .emergency(getNullable(resultSet, "emergency", Boolean.class))
+        .identActive(getNullable(resultSet, "ident_active", Boolean.class))
+        .onGround(getNullable(resultSet, "on_ground", Boolean.class))
+        .build();
+  }
+
+  @Override
+  public boolean streamMessages(MessageQuery query, Consumer<MessageRecord> consumer) {
+    final List<Object> parameters = new ArrayList<>();
+    final String sql = buildSql(query, parameters);
+
+    return stream(sql, parameters, query.getBoundingBox(), query.getLimit(), consumer);
+  }
+
+  @Override
+  public boolean streamMessagesAfterId(long afterId, int limit, Consumer<MessageRecord> consumer) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Limit must be positive");
+    }
+
+    final List<Object> parameters = new ArrayList<>();
+    final String sql = buildSqlAfterId(afterId, limit, parameters);
+
+    return stream(sql, parameters, null, limit, consumer);
+  }
+
+  private boolean stream(
+      String sql,
+      List<Object> parameters,
+      BoundingBox boundingBox,
+      int limit,
+      Consumer<MessageRecord> consumer) {
+    final Calendar calendar = Calendar.getInstance(UTC);
+    final Boolean truncated =
+        jdbcTemplate.query(
+            connection -> {
+              final PreparedStatement statement = connection.prepareStatement(sql);
+
+              for (int i = 0; i < parameters.size(); i++) {
+                final Object parameter = parameters.get(i);
+
+                if (parameter instanceof Instant) {
+                  statement.setTimestamp(i + 1, Timestamp.from((Instant) parameter), calendar);
+                } else {
+                  statement.setObject(i + 1, parameter);
+                }
+              }
+
+              return statement;
+            },
+            (ResultSet resultSet) -> {
+              int count = 0;
+
+              while (resultSet.next()) {
+                final MessageRecord messageRecord = mapRecord(resultSet, boundingBox, calendar);
+
+                if (messageRecord != null) {
+                  if (count == limit && limit != MessageQuery.NO_LIMIT) {
+                    return true;
+                  }
+
+                  consumer.accept(messageRecord);
+                  count++;
+                }
+              }
+
+              return false;
+            });
+
+    return Boolean.TRUE.equals(truncated);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.time.Instant;
+import java.util.function.Function;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+
+/**
+ * The columns that may appear in the tables of the per-type message schema, with their compact SQL
+ * types and the message record properties they hold.
+ */
+enum PerTypeColumn {
+  ICAO_ADDRESS(
+      "icao_address", "int not null", r -> DomainUtils.parseIcaoAddress(r.getIcaoAddress())),
+  TIMESTAMP("timestamp", "bigint not null", r -> epochMicros(r.getTimestamp())),
+  CALL_SIGN("call_sign", "varchar(8)", MessageRecord::getCallSign),
+  STATUS_MESSAGE_TYPE(
+      "status_message_type",
+      "varchar(3)",
+      r -> r.getStatusMessageType() == null ? null : r.getStatusMessageType().name()),
+  ALTITUDE("altitude", "real", MessageRecord::getAltitude),
+  GROUND_SPEED("ground_speed", "real", MessageRecord::getGroundSpeed),
+  TRACK("track", "real", MessageRecord::getTrack),
+  LATITUDE("latitude", "double", MessageRecord::getLatitude),
+  LONGITUDE("longitude", "double", MessageRecord::getLongitude),
+  VERTICAL_RATE("vertical_rate", "smallint", MessageRecord::getVerticalRate),
+  SQUAWK("squawk", "smallint", MessageRecord::getSquawk),
+  ALERT("alert", "boolean", MessageRecord::getAlert),
+  EMERGENCY("emergency", "boolean", MessageRecord::getEmergency),
+  IDENT_ACTIVE("ident_active", "boolean", MessageRecord::getIdentActive),
+  ON_GROUND("on_ground", "boolean", MessageRecord::getOnGround);
+
+  private final String columnName;
+  private final String definition;
+  private final Function<MessageRecord, Object> extractor;
+
+  PerTypeColumn(String columnName, String definition, Function<MessageRecord, Object> extractor) {
+    this.columnName = columnName;
+    this.definition = definition;
+    this.extractor = extractor;
+  }
+
+  /**
+   * Converts an instant to the number of microseconds since the epoch, the resolution at which
+   * timestamps are stored in the per-type schema.
+   *
+   * @param instant an instant, not null
+   *
+   * @return the number of microseconds since the epoch
+   */
+  static long epochMicros(Instant instant) {
+    return Math.addExact(
+        Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+  }
+
+  String getColumnName() {
+    return columnName;
+  }
+
+  String getDefinition() {
+    return definition;
+  }
+
+  Object valueOf(MessageRecord messageRecord) {
+    return extractor.apply(messageRecord);
+  }
+}
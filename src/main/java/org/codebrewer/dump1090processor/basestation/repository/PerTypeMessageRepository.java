@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * A repository storing BaseStation messages in the per-type schema, an alternative to the single
+ * {@code base_station_message} table used by the entity classes.
+ *
+ * <p>Each type of message, and each type of transmission message, has a table of its own holding
+ * only the columns that type can populate. ICAO addresses are held as integers and timestamps as
+ * microseconds since the epoch. Rows are therefore much narrower than in the single table, where
+ * every row carries every column, and inserts touch fewer and smaller indexes.
+ *
+ * <p>The tables are created on first use.
+ */
+@Repository
+public class PerTypeMessageRepository {
+  private final JdbcTemplate jdbcTemplate;
+  private volatile boolean schemaCreated;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param dataSource the data source holding persisted messages
+   */
+  @Autowired
+  public PerTypeMessageRepository(DataSource dataSource) {
+    jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  /**
+   * Creates the tables and indexes of the per-type schema, if they do not already exist.
+   */
+  public void createSchema() {
+    if (schemaCreated) {
+      return;
+    }
+
+    synchronized (this) {
+      if (!schemaCreated) {
+        for (PerTypeTable table : PerTypeTable.values()) {
+          for (String statement : table.getCreateStatements()) {
+            jdbcTemplate.execute(statement);
+          }
+        }
+
+        schemaCreated = true;
+      }
+    }
+  }
+
+  /**
+   * Saves a message.
+   *
+   * @param messageRecord the message to save, not null
+   *
+   * @return true if the message was saved, false if its type is not stored
+   */
+  public boolean save(MessageRecord messageRecord) {
+    final PerTypeTable table = PerTypeTable.forRecord(messageRecord);
+
+    if (table == null) {
+      return false;
+    }
+
+    createSchema();
+    jdbcTemplate.update(table.getInsertStatement(), table.getValues(messageRecord));
+
+    return true;
+  }
+
+  /**
+   * Saves messages using one batched statement per table.
+   *
+   * @param messageRecords the messages to save, not null
+   *
+   * @return the number of messages saved, excluding those whose type is not stored
+   */
+  public int saveAll(Collection<MessageRecord> messageRecords) {
+    final Map<PerTypeTable, List<Object[]>> batches = new EnumMap<>(PerTypeTable.class);
+    int count = 0;
+
+    for (MessageRecord messageRecord : messageRecords) {
+      final PerTypeTable table = PerTypeTable.forRecord(messageRecord);
+
+      if (table != null) {
+        batches.computeIfAbsent(table, t -> new ArrayList<>()).add(table.getValues(messageRecord));
+        count++;
+      }
+    }
+
+    if (!batches.isEmpty()) {
+      createSchema();
+      batches.forEach(
+          (table, values) -> jdbcTemplate.batchUpdate(table.getInsertStatement(), values));
+    }
+
+    return count;
+  }
+
+  /**
+   * Deletes a chunk of the messages received before a cutoff from the tables of the per-type
+   * schema.
+   *
+   * <p>The tables have no identifier by which to select the oldest messages, so any messages
+   * older than the cutoff are deleted, up to the limit; repeating the deletion until fewer than
+   * the limit are deleted removes them all.
+   *
+   * @param cutoff the instant before which messages are deleted, not null
+   * @param limit the maximum number of messages deleted, positive
+   *
+   * @return the number of messages deleted
+   */
+  public int deleteBefore(Instant cutoff, int limit) {
+    createSchema();
+
+    final long cutoffMicros = PerTypeColumn.epochMicros(cutoff);
+    int deleted = 0;
+
+    for (PerTypeTable table : PerTypeTable.values()) {
+      if (deleted == limit) {
+        break;
+      }
+
+      deleted +=
+          jdbcTemplate.update(
+              "delete from " + table.getTableName() + " where timestamp < ? limit ?",
+              cutoffMicros,
+              limit - deleted);
+    }
+
+    return deleted;
+  }
+
+  /**
+   * Counts the messages held in all tables of the per-type schema.
+   *
+   * @return the number of messages held
+   */
+  public long count() {
+    createSchema();
+
+    long count = 0;
+
+    for (PerTypeTable table : PerTypeTable.values()) {
+      final Long tableCount =
+          jdbcTemplate.queryForObject("select count(*) from " + table.getTableName(), Long.class);
+
+      count += tableCount == null ? 0 : tableCount;
+    }
+
+    return count;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.ALERT;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.ALTITUDE;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.CALL_SIGN;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.EMERGENCY;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.GROUND_SPEED;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.ICAO_ADDRESS;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.IDENT_ACTIVE;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.LATITUDE;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.LONGITUDE;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.ON_GROUND;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.SQUAWK;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.STATUS_MESSAGE_TYPE;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.TIMESTAMP;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.TRACK;
+import static org.codebrewer.dump1090processor.basestation.repository.PerTypeColumn.VERTICAL_RATE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+
+/**
+ * The tables of the per-type message schema.
+ *
+ * <p>There is one table for each message type and, for transmission messages, one for each
+ * transmission type. Each table has only the columns that its type of message can populate, as
+ * described at http://woodair.net/sbs/Article/Barebones42_Socket_Data.htm, and no surrogate key.
+ */
+enum PerTypeTable {
+  NEW_AIRCRAFT("new_aircraft_message"),
+  ID("id_message", CALL_SIGN),
+  STATUS("status_message", STATUS_MESSAGE_TYPE),
+  IDENTIFICATION_AND_CATEGORY("transmission_identification_and_category", CALL_SIGN),
+  SURFACE_POSITION(
+      "transmission_surface_position",
+      ALTITUDE,
+      GROUND_SPEED,
+      TRACK,
+      LATITUDE,
+      LONGITUDE,
+      ON_GROUND),
+  AIRBORNE_POSITION(
+      "transmission_airborne_position",
+      ALTITUDE,
+      LATITUDE,
+      LONGITUDE,
+      ALERT,
+      EMERGENCY,
+      IDENT_ACTIVE,
+      ON_GROUND),
+  AIRBORNE_VELOCITY("transmission_airborne_velocity", GROUND_SPEED, TRACK, VERTICAL_RATE),
+  SURVEILLANCE_ALTITUDE(
+      "transmission_surveillance_altitude", ALTITUDE, ALERT, IDENT_ACTIVE, ON_GROUND),
+  SURVEILLANCE_ID(
+      "transmission_surveillance_id", ALTITUDE, SQUAWK, ALERT, EMERGENCY, IDENT_ACTIVE, ON_GROUND),
+  AIR_TO_AIR("transmission_air_to_air", ALTITUDE, ON_GROUND),
+  ALL_CALL_REPLY("transmission_all_call_reply", ON_GROUND);
+
+  private final String tableName;
+  private final List<PerTypeColumn> columns;
+  private final String insertStatement;
+
+  PerTypeTable(String tableName, PerTypeColumn... columns) {
+    final List<PerTypeColumn> allColumns = new ArrayList<>();
+
+    allColumns.add(ICAO_ADDRESS);
+    allColumns.add(TIMESTAMP);
+    allColumns.addAll(Arrays.asList(columns));
+    this.tableName = tableName;
+    this.columns = Collections.unmodifiableList(allColumns);
+    insertStatement =
+        "insert into " + tableName + " ("
+        + allColumns.stream().map(PerTypeColumn::getColumnName).collect(Collectors.joining(", "))
+        + ") values ("
+        + allColumns.stream().map(column -> "?").collect(Collectors.joining(", "))
+        + ")";
+  }
+
+  /**
+   * Gets the table holding a message record.
+   *
+   * @param messageRecord a message record, not null
+   *
+   * @return the table holding the record, or null if the record's type of message is not stored
+   */
+  static PerTypeTable forRecord(MessageRecord messageRecord) {
+    switch (messageRecord.getMessageType()) {
+      case AIR:
+        return NEW_AIRCRAFT;
+      case ID:
+        return ID;
+      case STA:
+        return STATUS;
+      case MSG:
+        return messageRecord.getTransmissionType() == null
+               ? null
+               : valueOf(messageRecord.getTransmissionType().name());
+      default:
+        return null;
+    }
+  }
+
+  String getTableName() {
+    return tableName;
+  }
+
+  List<PerTypeColumn> getColumns() {
+    return columns;
+  }
+
+  List<String> getCreateStatements() {
+    return Arrays.asList(
+        "create table if not exists " + tableName + " ("
+        + columns.stream()
+                 .map(column -> column.getColumnName() + " " + column.getDefinition())
+                 .collect(Collectors.joining(", "))
+        + ")",
+        "create index if not exists " + tableName + "_timestamp on " + tableName + " (timestamp)",
+        "create index if not exists " + tableName + "_icao_address_timestamp on " + tableName
+        + " (icao_address, timestamp)");
+  }
+
+  String getInsertStatement() {
+    return insertStatement;
+  }
+
+  Object[] getValues(MessageRecord messageRecord) {
+    final Object[] values = new Object[columns.size()];
+
+    for (int i = 0; i < values.length; i++) {
+      values[i] = columns.get(i).valueOf(messageRecord);
+    }
+
+    return values;
+  }
+}
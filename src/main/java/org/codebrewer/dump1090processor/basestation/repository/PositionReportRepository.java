@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import java.time.Instant;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.entity.PositionReport;
+import org.codebrewer.dump1090processor.basestation.query.BoundingBox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Interface to a repository for the {@link PositionReport} entity class.
+ *
+ * <p>Results are ordered by timestamp and then identifier.
+ */
+public interface PositionReportRepository extends CrudRepository<PositionReport, Long> {
+  /**
+   * Finds position reports within an envelope and time range.
+   *
+   * <p>The {@code &&} operator compares bounding boxes, so it is served by the spatial index on the
+   * {@code position} column and, for points, is exact.
+   *
+   * @param envelope the envelope as EWKT
+   * @param fromMillis the inclusive start of the time range, in milliseconds since the epoch
+   * @param toMillis the exclusive end of the time range, in milliseconds since the epoch
+   * @param limit the maximum number of reports found
+   *
+   * @return the reports found
+   *
+   * @see #findWithinBoundingBox(BoundingBox, Instant, Instant, int)
+   */
+  @Query(
+      value = "select * from position_report"
+              + " where position && cast(:envelope as geometry)"
+              + " and timestamp >= :fromMillis and timestamp < :toMillis"
+              + " order by timestamp, id limit :limit",
+      nativeQuery = true)
+  List<PositionReport> findWithinEnvelope(
+      @Param("envelope") String envelope,
+      @Param("fromMillis") long fromMillis,
+      @Param("toMillis") long toMillis,
+      @Param("limit") int limit);
+
+  /**
+   * Finds position reports within a bounding box and time range.
+   *
+   * @param boundingBox the area within which reported positions lie, not null
+   * @param from the inclusive start of the time range, not null
+   * @param to the exclusive end of the time range, not null
+   * @param limit the maximum number of reports found
+   *
+   * @return the reports found
+   */
+  default List<PositionReport> findWithinBoundingBox(
+      BoundingBox boundingBox, Instant from, Instant to, int limit) {
+    final String envelope =
+        String.format(
+            "SRID=4326;POLYGON((%1$s %2$s, %3$s %2$s, %3$s %4$s, %1$s %4$s, %1$s %2$s))",
+            boundingBox.getMinLongitude(),
+            boundingBox.getMinLatitude(),
+            boundingBox.getMaxLongitude(),
+            boundingBox.getMaxLatitude());
+
+    return findWithinEnvelope(envelope, from.toEpochMilli(), to.toEpochMilli(), limit);
+  }
+
+  /**
+   * Finds the position reports from one aircraft within a time range.
+   *
+   * @param icaoAddress the 24 bit ICAO address of the aircraft
+   * @param fromMillis the inclusive start of the time range, in milliseconds since the epoch
+   * @param toMillis the exclusive end of the time range, in milliseconds since the epoch
+   * @param pageable the page of reports to find, typically the first page of a bounded size
+   *
+   * @return the reports found
+   */
+  @Query(
+      "select p from PositionReport p"
+      + " where p.icaoAddress = :icaoAddress"
+      + " and p.timestamp >= :fromMillis and p.timestamp < :toMillis"
+      + " order by p.timestamp, p.id")
+  List<PositionReport> findTrack(
+      @Param("icaoAddress") int icaoAddress,
+      @Param("fromMillis") long fromMillis,
+      @Param("toMillis") long toMillis,
+      Pageable pageable);
+
+  /**
+   * Deletes the oldest position reports received before a cutoff.
+   *
+   * @param cutoffMillis the exclusive end of the time range deleted, in milliseconds since the
+   * epoch
+   * @param limit the maximum number of reports deleted
+   *
+   * @return the number of reports deleted
+   */
+  @Modifying
+  @Query(
+      value = "delete from position_report where id in"
+              + " (select id from position_report where timestamp < :cutoffMillis"
+              + " order by timestamp, id limit :limit)",
+      nativeQuery = true)
+  int deleteOldest(@Param("cutoffMillis") long cutoffMillis, @Param("limit") int limit);
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.sbs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A TCP server that writes every published line to every connected client.
+ *
+ * <p>A single I/O thread serves all clients using non-blocking channels. Published lines are held
+ * once, in a ring shared by every client, and each client only records the position in the ring
+ * of the next line it is to be written. Pending lines are written to a client by gathering writes
+ * of up to {@value #MAX_GATHER} lines, straight from the shared buffers, so the cost of each line
+ * to each client is little more than the bytes copied to its socket.
+ *
+ * <p>The size of the ring bounds how far a client may fall behind: a client that has yet to be
+ * written a line that would be overwritten is disconnected, so a slow reader never delays the
+ * others or holds more than the ring's memory. Clients are written lines published after they
+ * connect, and anything they send is discarded.
+ */
+public class SbsFanOutServer implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SbsFanOutServer.class);
+  private static final int MAX_GATHER = 64;
+  private static final long SELECT_MILLIS = 1000L;
+
+  private final int port;
+  private final ByteBuffer[] ring;
+  private final int mask;
+  private final BlockingQueue<ByteBuffer> inbox;
+  private final AtomicBoolean wakeupPending = new AtomicBoolean();
+  private final List<Client> clients = new ArrayList<>();
+  private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+  private final ByteBuffer discard = ByteBuffer.allocate(1024);
+  private final AtomicLong publishedCount = new AtomicLong();
+  private final AtomicLong overflowCount = new AtomicLong();
+  private final AtomicLong acceptedCount = new AtomicLong();
+  private final AtomicLong slowClientCount = new AtomicLong();
+  private final AtomicLong writtenBytes = new AtomicLong();
+  private volatile int clientCount;
+  private volatile boolean running;
+  private long head;
+  private Selector selector;
+  private ServerSocketChannel serverChannel;
+  private Thread ioThread;
+
+  // A connected client and the sequence number of the next line it is to be written, together
+  // with how much of that line has been written already
+  //
+  private static final class Client {
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private long next;
+    private int offset;
+    private boolean blocked;
+
+    private Client(SocketChannel channel, SelectionKey key, long next) {
+      this.channel = channel;
+      this.key = key;
+      this.next = next;
+    }
+  }
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param port the port on which to accept clients, or 0 for any free port
+   * @param backlog the maximum number of lines a client may fall behind before being
+   * disconnected, rounded up to a power of two
+   */
+  public SbsFanOutServer(int port, int backlog) {
+    if (backlog < 1 || backlog > 1 << 24) {
+      throw new IllegalArgumentException("Backlog must be between 1 and 2^24: " + backlog);
+    }
+
+    final int capacity = Integer.highestOneBit(Math.max(2, backlog) * 2 - 1);
+
+    this.port = port;
+    this.ring = new ByteBuffer[capacity];
+    this.mask = capacity - 1;
+    this.inbox = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Binds the server socket and starts the I/O thread.
+   *
+   * @throws IOException if the server socket cannot be bound
+   */
+  public synchronized void start() throws IOException {
+    if (running) {
+      return;
+    }
+
+    selector = Selector.open();
+
+    try {
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      serverChannel.bind(new InetSocketAddress(port));
+      serverChannel.configureBlocking(false);
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      closeQuietly(serverChannel);
+      closeQuietly(selector);
+      throw e;
+    }
+
+    running = true;
+    ioThread = new Thread(this::serve, "sbs-fan-out");
+    ioThread.setDaemon(true);
+    ioThread.start();
+    LOGGER.info("Serving SBS-1 messages on port {}", getPort());
+  }
+
+  /**
+   * Publishes a line to every connected client, returning immediately.
+   *
+   * @param line the bytes of the line, which must not be modified afterwards
+   *
+   * @return true if the line was accepted for writing, or false if the server is not running or
+   * the I/O thread has fallen too far behind
+   */
+  public boolean publish(byte[] line) {
+    if (!running) {
+      return false;
+    }
+
+    if (!inbox.offer(ByteBuffer.wrap(line))) {
+      overflowCount.incrementAndGet();
+
+      return false;
+    }
+
+    publishedCount.incrementAndGet();
+
+    // Wake the I/O thread at most once for each time it looks for new lines
+    //
+    if (wakeupPending.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+
+    return true;
+  }
+
+  /**
+   * Disconnects every client and closes the server socket.
+   */
+  @Override
+  public synchronized void close() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+    selector.wakeup();
+
+    try {
+      ioThread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    ioThread = null;
+  }
+
+  /**
+   * Gets the port on which clients are accepted.
+   *
+   * @return the local port of the server socket if it is bound, otherwise the configured port
+   */
+  public int getPort() {
+    final ServerSocketChannel channel = serverChannel;
+
+    if (channel != null && channel.socket().isBound()) {
+      return channel.socket().getLocalPort();
+    }
+
+    return port;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public int getClientCount() {
+    return clientCount;
+  }
+
+  public long getPublishedCount() {
+    return publishedCount.get();
+  }
+
+  public long getOverflowCount() {
+    return overflowCount.get();
+  }
+
+  public long getAcceptedCount() {
+    return acceptedCount.get();
+  }
+
+  public long getSlowClientCount() {
+    return slowClientCount.get();
+  }
+
+  public long getWrittenBytes() {
+    return writtenBytes.get();
+  }
+
+  private void serve() {
+    final List<ByteBuffer> lines = new ArrayList<>(ring.length);
+
+    try {
+      while (running) {
+        // Clear the flag before taking new lines, so that a line published after they have been
+        // taken always wakes the following select
+        //
+        wakeupPending.set(false);
+        inbox.drainTo(lines);
+
+        if (!lines.isEmpty()) {
+          for (ByteBuffer line : lines) {
+            ring[(int) (head++ & mask)] = line;
+          }
+
+          lines.clear();
+          disconnectSlowClients();
+        }
+
+        writeClients();
+        selector.select(SELECT_MILLIS);
+        handleSelectedKeys();
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.error(
+          "SBS-1 fan-out server failed: {}: {}", e.getClass().getSimpleName(), e.getMessage());
+      running = false;
+    } finally {
+      for (Client client : clients) {
+        closeQuietly(client.channel);
+      }
+
+      clients.clear();
+      clientCount = 0;
+      closeQuietly(serverChannel);
+      closeQuietly(selector);
+    }
+  }
+
+  private void disconnectSlowClients() {
+    for (Iterator<Client> iterator = clients.iterator(); iterator.hasNext(); ) {
+      final Client client = iterator.next();
+
+      if (head - client.next > ring.length) {
+        slowClientCount.incrementAndGet();
+        LOGGER.warn("Disconnecting slow SBS-1 client {}", remoteAddress(client));
+        iterator.remove();
+        disconnect(client);
+      }
+    }
+  }
+
+  private void writeClients() {
+    for (Iterator<Client> iterator = clients.iterator(); iterator.hasNext(); ) {
+      final Client client = iterator.next();
+
+      if (!client.blocked && client.next < head) {
+        try {
+          write(client);
+        } catch (IOException e) {
+          LOGGER.info("SBS-1 client {} disconnected: {}", remoteAddress(client), e.getMessage());
+          iterator.remove();
+          disconnect(client);
+        }
+      }
+    }
+  }
+
+  // Writes pending lines to a client until they have all been written or its socket buffer is
+  // full, in which case the client is marked as blocked until its channel is writable again
+  //
+  private void write(Client client) throws IOException {
+    while (client.next < head) {
+      final int count = (int) Math.min(head - client.next, MAX_GATHER);
+
+      for (int i = 0; i < count; i++) {
+        final ByteBuffer line = ring[(int) ((client.next + i) & mask)];
+
+        line.position(i == 0 ? client.offset : 0);
+        gather[i] = line;
+      }
+
+      writtenBytes.addAndGet(client.channel.write(gather, 0, count));
+
+      int written = 0;
+
+      while (written < count && !gather[written].hasRemaining()) {
+        written++;
+      }
+
+      client.next += written;
+      client.offset = written < count ? gather[written].position() : 0;
+
+      if (written < count) {
+        client.blocked = true;
+        client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+        return;
+      }
+    }
+  }
+
+  private void handleSelectedKeys() throws IOException {
+    for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+         iterator.hasNext(); ) {
+      final SelectionKey key = iterator.next();
+
+      iterator.remove();
+
+      if (!key.isValid()) {
+        continue;
+      }
+
+      if (key.isAcceptable()) {
+        accept();
+      } else {
+        final Client client = (Client) key.attachment();
+
+        if (key.isReadable() && !read(client)) {
+          clients.remove(client);
+          disconnect(client);
+        } else if (key.isValid() && key.isWritable()) {
+          client.blocked = false;
+          key.interestOps(SelectionKey.OP_READ);
+        }
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    final SocketChannel channel = serverChannel.accept();
+
+    if (channel == null) {
+      return;
+    }
+
+    try {
+      channel.configureBlocking(false);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+      final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+      final Client client = new Client(channel, key, head);
+
+      key.attach(client);
+      clients.add(client);
+      clientCount = clients.size();
+      acceptedCount.incrementAndGet();
+      LOGGER.info("SBS-1 client {} connected", remoteAddress(client));
+    } catch (IOException e) {
+      closeQuietly(channel);
+      LOGGER.warn("Failed to accept SBS-1 client: {}", e.getMessage());
+    }
+  }
+
+  // Discards anything a client sends, returning false if it has closed its connection
+  //
+  private boolean read(Client client) {
+    try {
+      int read;
+
+      do {
+        discard.clear();
+        read = client.channel.read(discard);
+      } while (read > 0);
+
+      if (read < 0) {
+        LOGGER.info("SBS-1 client {} disconnected", remoteAddress(client));
+
+        return false;
+      }
+
+      return true;
+    } catch (IOException e) {
+      LOGGER.info("SBS-1 client {} disconnected: {}", remoteAddress(client), e.getMessage());
+
+      return false;
+    }
+  }
+
+  private void disconnect(Client client) {
+    client.key.cancel();
+    closeQuietly(client.channel);
+    clientCount = clients.size();
+  }
+
+  private static Object remoteAddress(Client client) {
+    try {
+      return client.channel.getRemoteAddress();
+    } catch (IOException e) {
+      return "(unknown)";
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // Nothing more can be done
+      }
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.sbs;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+
+/**
+ * Formats message records as lines of text in the "SBS-1 BaseStation" format, as written by
+ * <em>Dump1090</em> on port 30003.
+ *
+ * <p>Timestamps are written in the local time of a given time zone, which should be that in which
+ * clients expect to read them, and both the generated and logged timestamps of a line are those of
+ * the message. Session, aircraft and flight identifiers are written as 1, as <em>Dump1090</em>
+ * does. Boolean flags are written as -1 for true and 0 for false, and null properties as empty
+ * values. Each line ends with a carriage return and line feed.
+ */
+public final class SbsMessageFormatter {
+  private static final int COORDINATE_SCALE = 100_000;
+
+  private final ZoneId zoneId;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param zoneId the time zone in which timestamps are written, not null
+   */
+  public SbsMessageFormatter(ZoneId zoneId) {
+    this.zoneId = zoneId;
+  }
+
+  private static void appendPadded(StringBuilder builder, int value, int width) {
+    for (int limit = 10; width > 1; width--, limit *= 10) {
+      if (value < limit) {
+        builder.append('0');
+      }
+    }
+
+    builder.append(value);
+  }
+
+  private static void appendNumber(StringBuilder builder, Float value) {
+    builder.append(',');
+
+    if (value != null) {
+      final float floatValue = value;
+
+      if (floatValue == Math.rint(floatValue) && Math.abs(floatValue) < Integer.MAX_VALUE) {
+        builder.append((int) floatValue);
+      } else {
+        builder.append(floatValue);
+      }
+    }
+  }
+
+  private static void appendCoordinate(StringBuilder builder, Double value) {
+    builder.append(',');
+
+    if (value != null) {
+      final long scaled = Math.round(value * COORDINATE_SCALE);
+      final long magnitude = Math.abs(scaled);
+
+      if (scaled < 0) {
+        builder.append('-');
+      }
+
+      builder.append(magnitude / COORDINATE_SCALE).append('.');
+      appendPadded(builder, (int) (magnitude % COORDINATE_SCALE), 5);
+    }
+  }
+
+  private static void appendFlag(StringBuilder builder, Boolean value) {
+    builder.append(',');
+
+    if (value != null) {
+      builder.append(value ? "-1" : "0");
+    }
+  }
+
+  private static void appendValue(StringBuilder builder, Object value) {
+    builder.append(',');
+
+    if (value != null) {
+      builder.append(value);
+    }
+  }
+
+  /**
+   * Formats a message record.
+   *
+   * @param messageRecord the record to format, not null
+   *
+   * @return the formatted line, as ASCII bytes
+   */
+  public byte[] format(MessageRecord messageRecord) {
+    final StringBuilder builder = new StringBuilder(160);
+    final MessageType messageType = messageRecord.getMessageType();
+
+    builder.append(messageType.name()).append(',');
+
+    if (messageRecord.getTransmissionType() != null) {
+      builder.append(messageRecord.getTransmissionType().ordinal() + 1);
+    }
+
+    builder.append(",1,1,").append(messageRecord.getIcaoAddress()).append(",1,");
+
+    final int timestampStart = builder.length();
+
+    appendTimestamp(builder, messageRecord.getTimestamp());
+
+    final String timestamp = builder.substring(timestampStart);
+
+    builder.append(',').append(timestamp);
+
+    switch (messageType) {
+      case ID:
+        appendValue(builder, messageRecord.getCallSign());
+        break;
+      case STA:
+        appendValue(builder, messageRecord.getStatusMessageType());
+        break;
+      case MSG:
+        appendValue(builder, messageRecord.getCallSign());
+        appendNumber(builder, messageRecord.getAltitude());
+        appendNumber(builder, messageRecord.getGroundSpeed());
+        appendNumber(builder, messageRecord.getTrack());
+        appendCoordinate(builder, messageRecord.getLatitude());
+        appendCoordinate(builder, messageRecord.getLongitude());
+        appendValue(builder, messageRecord.getVerticalRate());
+        builder.append(',');
+
+        if (messageRecord.getSquawk() != null) {
+          appendPadded(builder, messageRecord.getSquawk(), 4);
+        }
+
+        appendFlag(builder, messageRecord.getAlert());
+        appendFlag(builder, messageRecord.getEmergency());
+        appendFlag(builder, messageRecord.getIdentActive());
+        appendFlag(builder, messageRecord.getOnGround());
+        break;
+      default:
+        break;
+    }
+
+    return builder.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  // Appends the date and time as 'yyyy/MM/dd,HH:mm:ss.SSS'
+  //
+  private void appendTimestamp(StringBuilder builder, Instant timestamp) {
+    final LocalDateTime dateTime = LocalDateTime.ofInstant(timestamp, zoneId);
+
+    appendPadded(builder, dateTime.getYear(), 4);
+    builder.append('/');
+    appendPadded(builder, dateTime.getMonthValue(), 2);
+    builder.append('/');
+    appendPadded(builder, dateTime.getDayOfMonth(), 2);
+    builder.append(',');
+    appendPadded(builder, dateTime.getHour(), 2);
+    builder.append(':');
+    appendPadded(builder, dateTime.getMinute(), 2);
+    builder.append(':');
+    appendPadded(builder, dateTime.getSecond(), 2);
+    builder.append('.');
+    appendPadded(builder, dateTime.getNano() / 1_000_000, 3);
+  }
+}
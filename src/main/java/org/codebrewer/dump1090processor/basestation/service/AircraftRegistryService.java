@@ -0,0 +1,258 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.registry.AircraftRegistration;
+import org.codebrewer.dump1090processor.basestation.registry.AircraftRegistry;
+import org.codebrewer.dump1090processor.basestation.registry.IcaoAllocations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that enriches ICAO addresses with the registration, type, operator and country of the
+ * aircraft to which they are assigned.
+ *
+ * <p>Registration details are read from an {@link AircraftRegistry}, compiled from a local CSV file
+ * when the registry file is missing or older than the CSV file, and memory-mapped, so the hundreds
+ * of thousands of records in a typical database occupy no heap. The country is taken from the
+ * block of addresses to which an address belongs, so it is known even for aircraft missing from
+ * the registry. The details of recently looked-up aircraft are held, already decoded, in a small
+ * cache from which the least recently used are evicted.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=AircraftRegistryService",
+    description = "Enriches ICAO addresses with aircraft registration details")
+public class AircraftRegistryService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AircraftRegistryService.class);
+
+  private final Path sourcePath;
+  private final Path registryPath;
+  private final int cacheSize;
+  private final Map<Integer, AircraftRegistration> cache;
+  private final AtomicLong lookupCount = new AtomicLong();
+  private final AtomicLong cacheHitCount = new AtomicLong();
+  private final AtomicLong registeredCount = new AtomicLong();
+  private volatile AircraftRegistry registry;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>The CSV file from which the registry is compiled can be specified using the
+   * {@code registry.source} property; if undefined, an existing registry file is used as it is.
+   * The registry file can be specified using the {@code registry.file} property and defaults to
+   * {@code aircraft-registry.bin} if undefined. The number of decoded records cached can be
+   * specified using the {@code registry.cache.size} property and defaults to 4096 if undefined.
+   *
+   * @param source the name of the CSV file, or an empty string if none
+   * @param registryFile the name of the registry file
+   * @param cacheSize the largest number of decoded records cached
+   */
+  @Autowired
+  public AircraftRegistryService(
+      @Value("${registry.source:}") String source,
+      @Value("${registry.file:aircraft-registry.bin}") String registryFile,
+      @Value("${registry.cache.size:4096}") int cacheSize) {
+    this(source.isEmpty() ? null : Paths.get(source), Paths.get(registryFile), cacheSize);
+  }
+
+  AircraftRegistryService(Path sourcePath, Path registryPath, int cacheSize) {
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("Cache size must not be negative: " + cacheSize);
+    }
+
+    LOGGER.info(
+        "AircraftRegistryService: source: {}, file: {}, cache size: {}",
+        sourcePath,
+        registryPath.toAbsolutePath(),
+        cacheSize);
+    this.sourcePath = sourcePath;
+    this.registryPath = registryPath;
+    this.cacheSize = cacheSize;
+    this.cache =
+        new LinkedHashMap<Integer, AircraftRegistration>(256, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, AircraftRegistration> eldest) {
+            return size() > cacheSize;
+          }
+        };
+  }
+
+  /**
+   * Compiles the registry file if it is missing or older than the CSV file, and opens it.
+   *
+   * <p>A registry that cannot be compiled or opened is logged and otherwise ignored; only the
+   * countries of addresses are then known.
+   */
+  @PostConstruct
+  public void openRegistry() {
+    try {
+      if (sourcePath != null
+          && (!Files.exists(registryPath)
+              || Files.getLastModifiedTime(registryPath)
+                      .compareTo(Files.getLastModifiedTime(sourcePath)) < 0)) {
+        final long startNanos = System.nanoTime();
+        final int records = AircraftRegistry.compile(sourcePath, registryPath);
+
+        LOGGER.info(
+            "Compiled {} aircraft registrations from {} in {}ms",
+            records,
+            sourcePath,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      }
+
+      if (Files.exists(registryPath)) {
+        registry = AircraftRegistry.open(registryPath);
+        LOGGER.info("Opened {} aircraft registrations", registry.size());
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Failed to load aircraft registry: {}", e.getMessage());
+    }
+
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * Looks up the registration details of an aircraft.
+   *
+   * @param icaoAddress the ICAO address of the aircraft, as up to 6 hexadecimal digits
+   *
+   * @return the registration details of the aircraft, or null if nothing is known of it
+   *
+   * @throws IllegalArgumentException if the address is not valid
+   */
+  public AircraftRegistration lookup(String icaoAddress) {
+    final int address = DomainUtils.parseIcaoAddress(icaoAddress);
+
+    if (address < 0) {
+      throw new IllegalArgumentException("Invalid ICAO address: " + icaoAddress);
+    }
+
+    return lookup(address);
+  }
+
+  /**
+   * Looks up the registration details of an aircraft.
+   *
+   * <p>An aircraft missing from the registry but whose address belongs to an allocated block is
+   * known only by its country.
+   *
+   * @param address the ICAO address of the aircraft, in the range 0 to 0xFFFFFF
+   *
+   * @return the registration details of the aircraft, or null if nothing is known of it
+   */
+  public AircraftRegistration lookup(int address) {
+    lookupCount.incrementAndGet();
+
+    synchronized (cache) {
+      final AircraftRegistration cached = cache.get(address);
+
+      if (cached != null) {
+        cacheHitCount.incrementAndGet();
+
+        return cached;
+      }
+    }
+
+    final AircraftRegistry currentRegistry = registry;
+    AircraftRegistration registration =
+        currentRegistry == null ? null : currentRegistry.find(address);
+
+    if (registration != null) {
+      registeredCount.incrementAndGet();
+    } else {
+      final String country = IcaoAllocations.countryOf(address);
+
+      if (country == null) {
+        return null;
+      }
+
+      registration =
+          new AircraftRegistration(String.format("%06X", address), null, null, null, country);
+    }
+
+    synchronized (cache) {
+      cache.put(address, registration);
+    }
+
+    return registration;
+  }
+
+  /**
+   * Gets the registration details of an aircraft as text, for use from a JMX console.
+   *
+   * @param icaoAddress the ICAO address of the aircraft, as up to 6 hexadecimal digits
+   *
+   * @return the registration details of the aircraft, or null if nothing is known of it
+   */
+  @ManagedOperation(description = "Look up the registration details of an ICAO address")
+  public String describe(String icaoAddress) {
+    final AircraftRegistration registration = lookup(icaoAddress);
+
+    return registration == null ? null : registration.toString();
+  }
+
+  @ManagedAttribute(description = "Whether or not a registry file is open")
+  public boolean isRegistryOpen() {
+    return registry != null;
+  }
+
+  @ManagedAttribute(description = "The number of records in the registry")
+  public int getRecordCount() {
+    final AircraftRegistry currentRegistry = registry;
+
+    return currentRegistry == null ? 0 : currentRegistry.size();
+  }
+
+  @ManagedAttribute(description = "The largest number of decoded records cached")
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  @ManagedAttribute(description = "The number of lookups")
+  public long getLookupCount() {
+    return lookupCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of lookups answered from the cache")
+  public long getCacheHitCount() {
+    return cacheHitCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of lookups answered from the registry file")
+  public long getRegisteredCount() {
+    return registeredCount.get();
+  }
+}
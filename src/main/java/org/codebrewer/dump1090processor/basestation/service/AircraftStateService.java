@@ -0,0 +1,302 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.CallSignMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+import org.codebrewer.dump1090processor.basestation.state.AircraftStateStore;
+import org.codebrewer.dump1090processor.geo.ReceiverRelativePosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that maintains the latest known state of each aircraft from the stream of valid
+ * messages.
+ *
+ * <p>Updates are serialized but readers are never blocked: each update replaces an aircraft's
+ * immutable state in the underlying {@link AircraftStateStore}. Aircraft that have not been heard
+ * for longer than a time-to-live are periodically removed.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=AircraftStateService",
+    description = "Maintains the latest known state of each aircraft")
+public class AircraftStateService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AircraftStateService.class);
+
+  private final AircraftStateStore store;
+  private final long ttlMillis;
+  private final Clock clock;
+  private final AtomicLong updateCount = new AtomicLong();
+  private final AtomicLong expiredCount = new AtomicLong();
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>The time-to-live for aircraft state can be specified using the
+   * {@code aircraft.state.ttl.seconds} property and defaults to 300 seconds if undefined.
+   *
+   * @param store the store holding aircraft state
+   * @param ttlSeconds the time after which the state of an aircraft that has not been heard is
+   * discarded, in seconds
+   */
+  @Autowired
+  public AircraftStateService(
+      AircraftStateStore store,
+      @Value("${aircraft.state.ttl.seconds:300}") long ttlSeconds) {
+    this(store, ttlSeconds, Clock.systemUTC());
+  }
+
+  AircraftStateService(AircraftStateStore store, long ttlSeconds, Clock clock) {
+    LOGGER.info("AircraftStateService: {}, TTL: {}s", store.getClass().getSimpleName(), ttlSeconds);
+    this.store = store;
+    this.ttlMillis = ttlSeconds * 1000L;
+    this.clock = clock;
+  }
+
+  /**
+   * Applies a valid message to the state of the aircraft that sent it.
+   *
+   * <p>Only properties present in the message are changed; any others retain their last known
+   * values.
+   *
+   * @param baseStationMessage a valid message, not null
+   */
+  public void update(BaseStationMessage baseStationMessage) {
+    update(baseStationMessage, null);
+  }
+
+  /**
+   * Applies a valid message, and the position relative to the receiver of the aircraft that sent
+   * it, to the state of the aircraft.
+   *
+   * <p>Only properties present in the message are changed; any others retain their last known
+   * values. A position carried by the message without a position relative to the receiver makes
+   * the range, bearing and elevation of the aircraft unknown.
+   *
+   * @param baseStationMessage a valid message, not null
+   * @param receiverRelativePosition the position of the aircraft relative to the receiver, derived
+   * from the position carried by the message, or null if unknown
+   */
+  public synchronized void update(
+      BaseStationMessage baseStationMessage, ReceiverRelativePosition receiverRelativePosition) {
+    final int address = DomainUtils.parseIcaoAddress(baseStationMessage.getIcaoAddress());
+
+    if (address < 0) {
+      return;
+    }
+
+    final AircraftState current = store.get(address);
+    final AircraftState.Builder builder =
+        current == null ? new AircraftState.Builder(address) : new AircraftState.Builder(current);
+    final long timestampMillis = baseStationMessage.getTimestamp().toEpochMilli();
+    final long lastSeenMillis = current == null ? 0L : current.getLastSeenMillis();
+    final long messageCount = current == null ? 0L : current.getMessageCount();
+
+    builder.lastSeenMillis(Math.max(timestampMillis, lastSeenMillis))
+           .messageCount(messageCount + 1);
+
+    if (baseStationMessage instanceof CallSignMessage) {
+      final String callSign = ((CallSignMessage) baseStationMessage).getCallSign();
+
+      if (callSign != null && !callSign.isEmpty()) {
+        builder.callSign(callSign);
+      }
+    }
+
+    if (baseStationMessage instanceof TransmissionMessage) {
+      applyTransmission(
+          builder,
+          (TransmissionMessage) baseStationMessage,
+          receiverRelativePosition,
+          timestampMillis);
+    }
+
+    store.put(builder.build());
+    updateCount.incrementAndGet();
+  }
+
+  /**
+   * Merges previously captured aircraft states into the current state, typically at startup.
+   *
+   * <p>States older than the time-to-live are discarded, as are states older than any already held
+   * for the same aircraft.
+   *
+   * @param states the states to merge, not null
+   *
+   * @return the number of states merged
+   */
+  public synchronized int restore(Collection<AircraftState> states) {
+    final long oldestMillis = clock.millis() - ttlMillis;
+    int restored = 0;
+
+    for (AircraftState state : states) {
+      final AircraftState current = store.get(state.getAddress());
+
+      if (state.getLastSeenMillis() >= oldestMillis
+          && (current == null || current.getLastSeenMillis() < state.getLastSeenMillis())) {
+        store.put(state);
+        restored++;
+      }
+    }
+
+    return restored;
+  }
+
+  /**
+   * Gets the state of an aircraft.
+   *
+   * @param address the aircraft's 24 bit ICAO address
+   *
+   * @return the aircraft's state, or null if the aircraft is not being tracked
+   */
+  public AircraftState getAircraft(int address) {
+    return store.get(address);
+  }
+
+  /**
+   * Gets a copy of the state of every aircraft being tracked.
+   *
+   * <p>The copy is taken without blocking updates; each aircraft's state is self-consistent, but
+   * updates made while the copy is taken may or may not be reflected.
+   *
+   * @return the state of every aircraft being tracked
+   */
+  public List<AircraftState> getAllAircraft() {
+    final List<AircraftState> states = new ArrayList<>(store.size());
+
+    store.forEach(states::add);
+
+    return states;
+  }
+
+  /**
+   * Removes the state of aircraft that have not been heard for longer than the time-to-live.
+   */
+  @Scheduled(fixedDelayString = "${aircraft.state.expiry.interval.millis:10000}")
+  public synchronized void expireAircraft() {
+    final long oldestMillis = clock.millis() - ttlMillis;
+    final List<AircraftState> expired = new ArrayList<>();
+
+    store.forEach(
+        state -> {
+          if (state.getLastSeenMillis() < oldestMillis) {
+            expired.add(state);
+          }
+        });
+
+    for (AircraftState state : expired) {
+      if (store.remove(state.getAddress())) {
+        expiredCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of aircraft being tracked.
+   *
+   * @return the number of aircraft being tracked
+   */
+  @ManagedAttribute(description = "The number of aircraft being tracked")
+  public int getAircraftCount() {
+    return store.size();
+  }
+
+  /**
+   * Gets the number of messages applied to aircraft state.
+   *
+   * @return the number of messages applied to aircraft state
+   */
+  @ManagedAttribute(description = "The number of messages applied to aircraft state")
+  public long getUpdateCount() {
+    return updateCount.get();
+  }
+
+  /**
+   * Gets the number of aircraft whose state has been discarded after not being heard.
+   *
+   * @return the number of aircraft whose state has expired
+   */
+  @ManagedAttribute(description = "The number of aircraft whose state has expired")
+  public long getExpiredCount() {
+    return expiredCount.get();
+  }
+
+  private void applyTransmission(
+      AircraftState.Builder builder,
+      TransmissionMessage message,
+      ReceiverRelativePosition receiverRelativePosition,
+      long timestampMillis) {
+    if (message.getAltitude() != null) {
+      builder.altitude(message.getAltitude());
+    }
+
+    if (message.getGroundSpeed() != null) {
+      builder.groundSpeed(message.getGroundSpeed());
+    }
+
+    if (message.getTrack() != null) {
+      builder.track(message.getTrack());
+    }
+
+    if (message.getVerticalRate() != null) {
+      builder.verticalRate(message.getVerticalRate());
+    }
+
+    if (message.getSquawk() != null) {
+      builder.squawk(message.getSquawk());
+    }
+
+    if (message.getPosition() != null) {
+      builder.position(
+          message.getPosition().getPosition().getLat(),
+          message.getPosition().getPosition().getLon(),
+          timestampMillis);
+
+      if (receiverRelativePosition == null) {
+        builder.receiverRelativePosition(Float.NaN, Float.NaN, Float.NaN);
+      } else {
+        builder.receiverRelativePosition(
+            receiverRelativePosition.getRange(),
+            receiverRelativePosition.getBearing(),
+            receiverRelativePosition.getElevation());
+      }
+    }
+
+    if (message.getOnGround() != null) {
+      builder.onGround(message.getOnGround());
+    }
+
+    if (message.getEmergency() != null) {
+      builder.emergency(message.getEmergency());
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.codebrewer.dump1090processor.basestation.state.AircraftStateSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that periodically writes a snapshot of the state of every tracked aircraft to a file,
+ * and restores the state from that file at startup.
+ *
+ * <p>Restoration happens while this bean is initialized, so it completes before the application
+ * context starts any message producer. Snapshots are captured without blocking the message flow and
+ * written on a scheduler thread.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=AircraftStateSnapshotService",
+    description = "A service that saves and restores aircraft state across restarts")
+public class AircraftStateSnapshotService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AircraftStateSnapshotService.class);
+
+  private final AircraftStateService aircraftStateService;
+  private final Path snapshotPath;
+  private final Clock clock;
+  private final AtomicLong snapshotCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private volatile boolean enabled;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>Whether or not snapshots are written and restored can be specified using the
+   * {@code aircraft.state.snapshot.enabled} property, and defaults to false if undefined. The
+   * snapshot file can be specified using the {@code aircraft.state.snapshot.file} property.
+   *
+   * @param aircraftStateService the service maintaining aircraft state
+   * @param enabled whether or not snapshots are written and restored
+   * @param snapshotFile the name of the snapshot file
+   */
+  @Autowired
+  public AircraftStateSnapshotService(
+      AircraftStateService aircraftStateService,
+      @Value("${aircraft.state.snapshot.enabled:false}") boolean enabled,
+      @Value("${aircraft.state.snapshot.file:aircraft-state.snapshot}") String snapshotFile) {
+    this(aircraftStateService, enabled, Paths.get(snapshotFile), Clock.systemUTC());
+  }
+
+  AircraftStateSnapshotService(
+      AircraftStateService aircraftStateService, boolean enabled, Path snapshotPath, Clock clock) {
+    LOGGER.info("Aircraft state snapshots: {}, file: {}", enabled, snapshotPath.toAbsolutePath());
+    this.aircraftStateService = aircraftStateService;
+    this.enabled = enabled;
+    this.snapshotPath = snapshotPath;
+    this.clock = clock;
+  }
+
+  /**
+   * Restores aircraft state from the snapshot file, if enabled and the file exists.
+   *
+   * <p>A missing, unreadable or corrupt snapshot file is logged and otherwise ignored.
+   */
+  @PostConstruct
+  public void restoreSnapshot() {
+    if (!enabled || !Files.exists(snapshotPath)) {
+      return;
+    }
+
+    final long startNanos = System.nanoTime();
+
+    try {
+      final AircraftStateSnapshot snapshot = AircraftStateSnapshot.read(snapshotPath);
+      final int restored = aircraftStateService.restore(snapshot.getStates());
+
+      LOGGER.info(
+          "Restored {} of {} aircraft from snapshot in {}ms",
+          restored,
+          snapshot.getStates().size(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    } catch (IOException e) {
+      failureCount.incrementAndGet();
+      LOGGER.warn("Failed to restore aircraft state snapshot: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Writes a snapshot of the state of every tracked aircraft, if enabled.
+   */
+  @Scheduled(
+      fixedDelayString = "${aircraft.state.snapshot.interval.millis:30000}",
+      initialDelayString = "${aircraft.state.snapshot.interval.millis:30000}")
+  public void scheduledSnapshot() {
+    if (enabled) {
+      writeSnapshot();
+    }
+  }
+
+  /**
+   * Writes a final snapshot when the application shuts down, if enabled.
+   */
+  @PreDestroy
+  public void shutdownSnapshot() {
+    if (enabled) {
+      writeSnapshot();
+    }
+  }
+
+  /**
+   * Writes a snapshot of the state of every tracked aircraft.
+   *
+   * @return true if the snapshot was written, otherwise false
+   */
+  @ManagedOperation(description = "Write a snapshot of the state of every tracked aircraft")
+  public synchronized boolean writeSnapshot() {
+    final AircraftStateSnapshot snapshot =
+        new AircraftStateSnapshot(clock.millis(), aircraftStateService.getAllAircraft());
+
+    try {
+      snapshot.write(snapshotPath);
+      snapshotCount.incrementAndGet();
+
+      return true;
+    } catch (IOException e) {
+      failureCount.incrementAndGet();
+      LOGGER.warn("Failed to write aircraft state snapshot: {}", e.getMessage());
+
+      return false;
+    }
+  }
+
+  @ManagedAttribute(description = "Whether or not aircraft state snapshots are written")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "Control whether or not aircraft state snapshots are written")
+  public void setEnabled(boolean enabled) {
+    LOGGER.info("Aircraft state snapshots: {}", enabled);
+    this.enabled = enabled;
+  }
+
+  /**
+   * Gets the number of snapshots written.
+   *
+   * @return the number of snapshots written
+   */
+  @ManagedAttribute(description = "The number of aircraft state snapshots written")
+  public long getSnapshotCount() {
+    return snapshotCount.get();
+  }
+
+  /**
+   * Gets the number of snapshots that could not be written or restored.
+   *
+   * @return the number of snapshots that could not be written or restored
+   */
+  @ManagedAttribute(description = "The number of snapshots that failed to be written or restored")
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.codebrewer.dump1090processor.basestation.entity.AirspaceKeyframe;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceFrame;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceReplay;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.repository.AirspaceKeyframeRepository;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+import org.codebrewer.dump1090processor.basestation.state.AircraftStateSnapshot;
+import org.codebrewer.dump1090processor.basestation.state.PositionExtrapolator;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A service that reconstructs the state of the airspace at any past instant from persisted
+ * messages, and plays it back as a sequence of frames.
+ *
+ * <p>At a fixed interval a keyframe is captured, holding the state of every aircraft alive at that
+ * instant as a compressed snapshot. Keyframes are built incrementally, each from the one before it
+ * and the messages received between the two, and only once the messages for an interval can be
+ * expected to have been persisted. The state at any other instant is rebuilt from the nearest
+ * keyframe before it and the messages received since, so the cost of a query is bounded by the
+ * keyframe interval rather than by the length of the history. Without a keyframe, every message
+ * before the instant is replayed.
+ *
+ * <p>Each frame gives the positions of aircraft as the live position service would have predicted
+ * them at the time. A frame reflects the messages timestamped before its instant, and is accurate
+ * only while those messages are retained.
+ *
+ * <p>Messages are read from the single {@code base_station_message} table only. Under the
+ * per-type schema no keyframes are captured, and reconstructions and playbacks are refused rather
+ * than answered with an empty airspace.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=AirspaceHistoryService",
+    description = "Reconstructs and plays back the past state of the airspace")
+public class AirspaceHistoryService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AirspaceHistoryService.class);
+  private static final int BUFFER_BYTES = 8192;
+
+  private final BaseStationMessageRepository messageRepository;
+  private final AirspaceKeyframeRepository keyframeRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final boolean perTypeSchema;
+  private final long intervalMillis;
+  private final long lagMillis;
+  private final long ttlMillis;
+  private final double maxExtrapolationSeconds;
+  private final int maxFrames;
+  private final Clock clock;
+  private final AtomicLong keyframeCount = new AtomicLong();
+  private final AtomicLong reconstructionCount = new AtomicLong();
+  private final AtomicLong playbackCount = new AtomicLong();
+  private final AtomicLong frameCount = new AtomicLong();
+  private final AtomicLong replayedMessageCount = new AtomicLong();
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>Whether or not keyframes are captured, the interval between them and the time for which
+   * the capture of each is delayed can be specified using the {@code history.keyframe.enabled},
+   * {@code history.keyframe.interval.minutes} and {@code history.keyframe.lag.seconds}
+   * properties; by default, keyframes are captured only if messages are persisted. The greatest
+   * number of frames in one playback can be specified using the
+   * {@code history.playback.frames.max} property. Keyframes are never captured when messages are
+   * saved to the per-type schema, selected by the {@code message.store.schema} property.
+   *
+   * @param messageRepository the repository of BaseStation messages
+   * @param keyframeRepository the repository of keyframes
+   * @param transactionManager the transaction manager used to delimit each replay
+   * @param enabled whether or not keyframes are captured
+   * @param schema the name of the schema to which messages are saved
+   * @param intervalMinutes the interval between keyframes, in minutes
+   * @param lagSeconds the time, in seconds, after its instant before a keyframe is captured
+   * @param ttlSeconds the time after which an aircraft that has not been heard is forgotten, in
+   * seconds
+   * @param maxExtrapolationSeconds the greatest time, in seconds, by which a position is
+   * extrapolated
+   * @param maxFrames the greatest number of frames in one playback
+   *
+   * @throws IllegalArgumentException if any interval or limit is out of range
+   */
+  @Autowired
+  public AirspaceHistoryService(
+      BaseStationMessageRepository messageRepository,
+      AirspaceKeyframeRepository keyframeRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${history.keyframe.enabled:${basestation.feed.persist:false}}") boolean enabled,
+      @Value("${message.store.schema:single-table}") String schema,
+      @Value("${history.keyframe.interval.minutes:5}") long intervalMinutes,
+      @Value("${history.keyframe.lag.seconds:60}") long lagSeconds,
+      @Value("${aircraft.state.ttl.seconds:300}") long ttlSeconds,
+      @Value("${aircraft.state.extrapolation.max.seconds:10}") double maxExtrapolationSeconds,
+      @Value("${history.playback.frames.max:3600}") int maxFrames) {
+    this(
+        messageRepository,
+        keyframeRepository,
+        transactionManager,
+        enabled,
+        "per-type".equals(schema),
+        intervalMinutes,
+        lagSeconds,
+        ttlSeconds,
+        maxExtrapolationSeconds,
+        maxFrames,
+        Clock.systemUTC());
+  }
+
+  AirspaceHistoryService(
+      BaseStationMessageRepository messageRepository,
+      AirspaceKeyframeRepository keyframeRepository,
+      PlatformTransactionManager transactionManager,
+      boolean enabled,
+      boolean perTypeSchema,
+      long intervalMinutes,
+      long lagSeconds,
+      long ttlSeconds,
+      double maxExtrapolationSeconds,
+      int maxFrames,
+      Clock clock) {
+    if (intervalMinutes < 1 || lagSeconds < 0 || maxFrames < 1) {
+      throw new IllegalArgumentException(
+          "Keyframe interval and frame limit must be positive, and lag must not be negative");
+    }
+
+    if (perTypeSchema) {
+      LOGGER.warn(
+          "Airspace history reads only the single message table, so it is unavailable, and no"
+          + " keyframes are captured, under the per-type schema");
+    }
+
+    LOGGER.info(
+        "AirspaceHistoryService: keyframes {}, interval {}m, lag {}s, max frames {}",
+        enabled && !perTypeSchema,
+        intervalMinutes,
+        lagSeconds,
+        maxFrames);
+    this.messageRepository = messageRepository;
+    this.keyframeRepository = keyframeRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+    this.enabled = enabled && !perTypeSchema;
+    this.perTypeSchema = perTypeSchema;
+    this.intervalMillis = TimeUnit.MINUTES.toMillis(intervalMinutes);
+    this.lagMillis = TimeUnit.SECONDS.toMillis(lagSeconds);
+    this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    this.maxExtrapolationSeconds = maxExtrapolationSeconds;
+    this.maxFrames = maxFrames;
+    this.clock = clock;
+  }
+
+  static byte[] compress(byte[] bytes) {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+
+    try (OutputStream outputStream =
+             new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED))) {
+      outputStream.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return compressed.toByteArray();
+  }
+
+  static byte[] decompress(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream decompressed = new ByteArrayOutputStream(bytes.length * 4);
+    final byte[] buffer = new byte[BUFFER_BYTES];
+
+    try (InputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(bytes))) {
+      int count;
+
+      while ((count = inputStream.read(buffer)) != -1) {
+        decompressed.write(buffer, 0, count);
+      }
+    }
+
+    return decompressed.toByteArray();
+  }
+
+  /**
+   * Captures any keyframes due, if keyframes are enabled.
+   */
+  @Scheduled(fixedDelayString = "${history.keyframe.check.interval.millis:60000}")
+  public void scheduledRun() {
+    if (enabled) {
+      try {
+        buildKeyframes();
+      } catch (IOException e) {
+        LOGGER.warn("Unable to build airspace keyframe", e);
+      }
+    }
+  }
+
+  /**
+   * Captures every keyframe due since the latest one, or since the earliest persisted message if
+   * there are no keyframes.
+   *
+   * <p>Keyframes fall on multiples of the keyframe interval, and one is due once its instant is
+   * further in the past than the keyframe lag.
+   *
+   * @return the number of keyframes captured
+   *
+   * @throws IOException if the latest keyframe cannot be decoded
+   */
+  public synchronized int buildKeyframes() throws IOException {
+    final long dueMillis = clock.millis() - lagMillis;
+    final Optional<AirspaceKeyframe> latest = keyframeRepository.findFirstByOrderByTimestampDesc();
+    final AirspaceReplay replay = new AirspaceReplay(ttlMillis);
+    Instant replayed = null;
+    long boundaryMillis;
+
+    if (latest.isPresent()) {
+      replay.restore(decode(latest.get()));
+      replayed = latest.get().getTimestamp();
+      boundaryMillis = replayed.toEpochMilli() + intervalMillis;
+    } else {
+      final Instant earliest = findEarliestMessageTimestamp();
+
+      if (earliest == null) {
+        return 0;
+      }
+
+      boundaryMillis = Math.floorDiv(earliest.toEpochMilli(), intervalMillis) * intervalMillis
+                       + intervalMillis;
+    }
+
+    int built = 0;
+
+    while (boundaryMillis <= dueMillis) {
+      final Instant boundary = Instant.ofEpochMilli(boundaryMillis);
+
+      replayMessages(replay, replayed, boundary);
+      replay.expire(boundaryMillis);
+
+      final List<AircraftState> states = replay.getStates(boundaryMillis);
+
+      keyframeRepository.save(
+          new AirspaceKeyframe(
+              boundary,
+              states.size(),
+              compress(new AircraftStateSnapshot(boundaryMillis, states).toBytes())));
+      keyframeCount.incrementAndGet();
+      LOGGER.debug("Captured airspace keyframe at {} with {} aircraft", boundary, states.size());
+      replayed = boundary;
+      boundaryMillis += intervalMillis;
+      built++;
+    }
+
+    return built;
+  }
+
+  /**
+   * Reconstructs the positions of aircraft at a past instant.
+   *
+   * @param timestamp the instant, not null
+   *
+   * @return the position of every aircraft alive, and whose position was known, at the instant
+   *
+   * @throws IOException if the nearest keyframe cannot be decoded
+   * @throws UnsupportedOperationException if messages are saved to the per-type schema
+   */
+  public AirspaceFrame getAirspace(Instant timestamp) throws IOException {
+    checkAvailable();
+
+    final AirspaceReplay replay = new AirspaceReplay(ttlMillis);
+
+    replayMessages(replay, restoreKeyframe(replay, timestamp), timestamp);
+    reconstructionCount.incrementAndGet();
+
+    return frame(replay, timestamp);
+  }
+
+  /**
+   * Checks the parameters of a playback, so that they can be rejected before it starts.
+   *
+   * @param from the instant of the first frame, not null
+   * @param to the instant after which no frames are produced, not null
+   * @param step the interval between frames, not null
+   *
+   * @throws IllegalArgumentException if the step is not positive, the playback ends before it
+   * starts, or it would produce too many frames
+   * @throws UnsupportedOperationException if messages are saved to the per-type schema
+   */
+  public void checkPlayback(Instant from, Instant to, Duration step) {
+    checkAvailable();
+
+    if (step.isNegative() || step.isZero()) {
+      throw new IllegalArgumentException("Playback step must be positive: " + step);
+    }
+
+    if (to.isBefore(from)) {
+      throw new IllegalArgumentException("Playback ends before it starts: " + from + ", " + to);
+    }
+
+    if (Duration.between(from, to).toMillis() / step.toMillis() >= maxFrames) {
+      throw new IllegalArgumentException("Playback has more than " + maxFrames + " frames");
+    }
+  }
+
+  /**
+   * Plays back the airspace over a past period, passing a frame for each step to a consumer.
+   *
+   * <p>The state at the start of the period is reconstructed from the nearest keyframe, and each
+   * subsequent frame by replaying only the messages received during the preceding step, each step
+   * in its own short transaction. The consumer may therefore take as long as it likes over each
+   * frame, for example to pace playback, without holding a database cursor open.
+   *
+   * @param from the instant of the first frame, not null
+   * @param to the instant after which no frames are produced, not null
+   * @param step the interval between frames, not null
+   * @param consumer the consumer to which frames are passed, not null
+   *
+   * @throws IOException if the nearest keyframe cannot be decoded
+   * @throws IllegalArgumentException if the playback parameters are invalid
+   * @throws UnsupportedOperationException if messages are saved to the per-type schema
+   */
+  public void playback(Instant from, Instant to, Duration step, Consumer<AirspaceFrame> consumer)
+      throws IOException {
+    checkPlayback(from, to, step);
+
+    final AirspaceReplay replay = new AirspaceReplay(ttlMillis);
+    Instant replayed = restoreKeyframe(replay, from);
+
+    playbackCount.incrementAndGet();
+
+    for (Instant timestamp = from; !timestamp.isAfter(to); timestamp = timestamp.plus(step)) {
+      replayMessages(replay, replayed, timestamp);
+      replay.expire(timestamp.toEpochMilli());
+      consumer.accept(frame(replay, timestamp));
+      frameCount.incrementAndGet();
+      replayed = timestamp;
+    }
+  }
+
+  private void checkAvailable() {
+    if (perTypeSchema) {
+      throw new UnsupportedOperationException(
+          "Airspace history is unavailable under the per-type schema");
+    }
+  }
+
+  private static List<AircraftState> decode(AirspaceKeyframe keyframe) throws IOException {
+    return AircraftStateSnapshot.fromBytes(decompress(keyframe.getStates())).getStates();
+  }
+
+  private AirspaceFrame frame(AirspaceReplay replay, Instant timestamp) {
+    final List<PredictedPosition> positions =
+        new PositionExtrapolator(replay.getStates(timestamp.toEpochMilli()))
+            .predict(timestamp, maxExtrapolationSeconds);
+
+    return new AirspaceFrame(timestamp, positions);
+  }
+
+  private Instant restoreKeyframe(AirspaceReplay replay, Instant timestamp) throws IOException {
+    final Optional<AirspaceKeyframe> keyframe =
+        keyframeRepository.findFirstByTimestampLessThanEqualOrderByTimestampDesc(timestamp);
+
+    if (!keyframe.isPresent()) {
+      return null;
+    }
+
+    replay.restore(decode(keyframe.get()));
+
+    return keyframe.get().getTimestamp();
+  }
+
+  private Instant findEarliestMessageTimestamp() {
+    final Instant[] earliest = new Instant[1];
+
+    transactionTemplate.execute(
+        status ->
+            messageRepository.streamMessages(
+                new MessageQuery.Builder().limit(1).build(),
+                messageRecord -> earliest[0] = messageRecord.getTimestamp()));
+
+    return earliest[0];
+  }
+
+  private void replayMessages(AirspaceReplay replay, Instant from, Instant to) {
+    if (from != null && !from.isBefore(to)) {
+      return;
+    }
+
+    final MessageQuery query = new MessageQuery.Builder().from(from).to(to).build();
+
+    transactionTemplate.execute(
+        status ->
+            messageRepository.streamMessages(
+                query,
+                messageRecord -> {
+                  replay.apply(messageRecord);
+                  replayedMessageCount.incrementAndGet();
+                }));
+  }
+
+  @ManagedAttribute(description = "Whether or not keyframes are captured")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "The number of keyframes captured")
+  public long getKeyframeCount() {
+    return keyframeCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of past instants reconstructed")
+  public long getReconstructionCount() {
+    return reconstructionCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of playbacks started")
+  public long getPlaybackCount() {
+    return playbackCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of playback frames produced")
+  public long getFrameCount() {
+    return frameCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of persisted messages replayed")
+  public long getReplayedMessageCount() {
+    return replayedMessageCount.get();
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage.INVALID_MESSAGE;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.FrameReceivedEvent;
+import org.codebrewer.dump1090processor.basestation.jfr.MessageParseEvent;
+import org.codebrewer.dump1090processor.basestation.jfr.PipelineEvents;
+import org.codebrewer.dump1090processor.modes.HexFrameDecoder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.transformer.AbstractPayloadTransformer;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Transforms the incoming stream of AVR-format raw Mode S frames into BaseStation messages.
+ *
+ * <p>AVR frames carry no usable timestamp, so messages are timestamped on receipt, as dump1090
+ * does when writing BaseStation messages.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=AvrTransformerService",
+    description = "Transforms the incoming stream of raw Mode S frames into BaseStation messages")
+public class AvrMessagePayloadTransformerService
+    extends AbstractPayloadTransformer<Object, BaseStationMessage> {
+  private static final ThreadLocal<byte[]> FRAME_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[HexFrameDecoder.MAX_FRAME_LENGTH]);
+
+  private final ModeSFrameDecodingService frameDecodingService;
+  private final Clock clock;
+  private final AtomicLong malformedFrameCount = new AtomicLong();
+  private final AtomicLong validMessageCount = new AtomicLong();
+
+  @Autowired
+  public AvrMessagePayloadTransformerService(ModeSFrameDecodingService frameDecodingService) {
+    this(frameDecodingService, Clock.systemUTC());
+  }
+
+  AvrMessagePayloadTransformerService(
+      ModeSFrameDecodingService frameDecodingService, Clock clock) {
+    this.frameDecodingService = frameDecodingService;
+    this.clock = clock;
+  }
+
+  @Override
+  protected BaseStationMessage transformPayload(Object payload) {
+    final MessageParseEvent parseEvent = new MessageParseEvent();
+
+    parseEvent.begin();
+
+    final BaseStationMessage baseStationMessage = decode(payload);
+
+    parseEvent.complete(PipelineEvents.AVR_FEED, baseStationMessage);
+
+    return baseStationMessage;
+  }
+
+  private BaseStationMessage decode(Object payload) {
+    if (!(payload instanceof byte[])) {
+      return INVALID_MESSAGE;
+    }
+
+    final byte[] text = (byte[]) payload;
+
+    FrameReceivedEvent.record(PipelineEvents.AVR_FEED, text.length);
+
+    final byte[] frame = FRAME_BUFFER.get();
+    final int frameLength = HexFrameDecoder.decode(text, 0, text.length, frame);
+
+    if (frameLength < 0) {
+      malformedFrameCount.incrementAndGet();
+
+      return INVALID_MESSAGE;
+    }
+
+    final BaseStationMessage baseStationMessage =
+        frameDecodingService.decodeFrame(frame, frameLength, Instant.now(clock));
+
+    if (baseStationMessage == null) {
+      return INVALID_MESSAGE;
+    }
+
+    validMessageCount.incrementAndGet();
+
+    return baseStationMessage;
+  }
+
+  /**
+   * Gets the total number of frames received since application startup that could not be decoded
+   * from their AVR text representation.
+   *
+   * @return the total number of malformed frames received since application startup
+   */
+  @ManagedAttribute(
+      description = "The total number of malformed frames received since application startup")
+  public long getMalformedFrameCount() {
+    return malformedFrameCount.get();
+  }
+
+  /**
+   * Gets the total number of valid messages received since application startup. A valid message is
+   * one that can be successfully decoded to produce a {@code BaseStationMessage} of some type.
+   *
+   * @return the total number of valid messages received since application startup.
+   */
+  @ManagedAttribute(
+      description = "The total number of valid messages received since application startup")
+  public long getValidMessageCount() {
+    return validMessageCount.get();
+  }
+}
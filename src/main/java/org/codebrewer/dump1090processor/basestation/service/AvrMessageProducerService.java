@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+import org.springframework.integration.ip.tcp.connection.TcpNetClientConnectionFactory;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLfSerializer;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that connects to the raw Mode S frame feed, in which dump1090 writes one AVR-format
+ * frame per line.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=AvrMessageProducerService",
+    description = "A service that connects to the raw Mode S frame feed")
+public class AvrMessageProducerService {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(AvrMessageProducerService.class);
+
+  private final TcpReceivingChannelAdapter messageProducer;
+
+  public AvrMessageProducerService(
+      @Value("${dump1090.host:localhost}") String host,
+      @Value("${avr.feed.port:30002}") int port,
+      @Value("${avr.feed.start.auto:false}") boolean autoStart) {
+    LOGGER.info("AvrMessageProducerService: {}:{}, auto-start: {}", host, port, autoStart);
+
+    final TcpNetClientConnectionFactory clientConnectionFactory =
+        new TcpNetClientConnectionFactory(host, port);
+
+    // dump1090 terminates raw frames with a bare line feed rather than CRLF
+    //
+    clientConnectionFactory.setDeserializer(new ByteArrayLfSerializer());
+    clientConnectionFactory.setSingleUse(false);
+    messageProducer = new TcpReceivingChannelAdapter();
+    messageProducer.setClientMode(true);
+    messageProducer.setConnectionFactory(clientConnectionFactory);
+    messageProducer.setAutoStartup(autoStart);
+  }
+
+  public TcpReceivingChannelAdapter tcpMessageClient() {
+    return messageProducer;
+  }
+
+  /**
+   * Gets whether or not the connection to the raw frame feed is currently established.
+   *
+   * @return whether or not the connection to the raw frame feed is currently established.
+   */
+  @ManagedAttribute(
+      description = "Whether or not the connection to the raw frame feed is currently established")
+  public boolean isRunning() {
+    return messageProducer.isRunning();
+  }
+
+  /**
+   * Requests connection to the raw frame feed.
+   *
+   * <p>Has no effect if already started.
+   */
+  @ManagedOperation(description = "Connect to the feed and start reading raw Mode S frames")
+  public void start() {
+    LOGGER.info("'Start' requested for raw frame feed");
+    messageProducer.start();
+  }
+
+  /**
+   * Requests disconnection from the raw frame feed.
+   *
+   * <p>Has no effect if already stopped.
+   */
+  @ManagedOperation(description = "Stop reading raw Mode S frames and disconnect from the feed")
+  public void stop() {
+    LOGGER.info("'Stop' requested for raw frame feed");
+    messageProducer.stop();
+  }
+}
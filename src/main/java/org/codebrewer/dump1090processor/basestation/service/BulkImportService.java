@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codebrewer.dump1090processor.basestation.bulk.SbsLogImporter;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+/**
+ * A service that imports historical BaseStation messages from log files of the text written by
+ * <em>Dump1090</em> on port 30003, plain or gzip-compressed, straight into the database.
+ *
+ * <p>Files are parsed in parallel by a {@link SbsLogImporter}, using the same parsing as the live
+ * feeds, and saved in large batches, each in its own transaction, to the schema selected by the
+ * {@code message.store.schema} property. Imported messages are not seen by any other part of the
+ * application. An import can be started by a managed operation or, once the application has
+ * started, by setting the {@code bulk.import.files} property.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=BulkImportService",
+    description = "A service that imports logged BaseStation messages")
+public class BulkImportService implements ApplicationRunner {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BulkImportService.class);
+
+  private final BaseStationMessageRepository messageRepository;
+  private final PerTypeMessageRepository perTypeMessageRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean perTypeSchema;
+  private final String startupFiles;
+  private final SbsLogImporter importer;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>Files to import once the application has started can be specified, separated by commas,
+   * using the {@code bulk.import.files} property. The number of threads parsing lines can be
+   * specified using the {@code bulk.import.parallelism} property and defaults to the number of
+   * available processors if undefined or zero. The number of threads saving messages can be
+   * specified using the {@code bulk.import.writers} property and defaults to 1 if undefined. The
+   * number of messages saved in each transaction can be specified using the
+   * {@code bulk.import.batch.size} property and defaults to 5000 if undefined.
+   *
+   * @param messageParsingService the service parsing lines of text as messages
+   * @param messageRepository the repository of BaseStation messages in the single table
+   * @param perTypeMessageRepository the repository of BaseStation messages in the per-type schema
+   * @param transactionManager the transaction manager used to delimit each batch
+   * @param schema the name of the schema to which messages are saved
+   * @param startupFiles the files to import once the application has started, if any
+   * @param parallelism the number of threads parsing lines, or zero for one per processor
+   * @param writers the number of threads saving messages
+   * @param batchSize the number of messages saved in each transaction
+   */
+  @Autowired
+  public BulkImportService(
+      MessageParsingService messageParsingService,
+      BaseStationMessageRepository messageRepository,
+      PerTypeMessageRepository perTypeMessageRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${message.store.schema:single-table}") String schema,
+      @Value("${bulk.import.files:}") String startupFiles,
+      @Value("${bulk.import.parallelism:0}") int parallelism,
+      @Value("${bulk.import.writers:1}") int writers,
+      @Value("${bulk.import.batch.size:5000}") int batchSize) {
+    this.messageRepository = messageRepository;
+    this.perTypeMessageRepository = perTypeMessageRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.perTypeSchema = "per-type".equals(schema);
+    this.startupFiles = startupFiles;
+    this.importer =
+        new SbsLogImporter(
+            messageParsingService::parseCsvMessageText,
+            this::save,
+            parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+            writers,
+            batchSize);
+  }
+
+  private static List<Path> resolve(String paths) throws IOException {
+    final List<Path> files = new ArrayList<>();
+
+    for (String name : StringUtils.commaDelimitedListToStringArray(paths)) {
+      final Path path = Paths.get(name.trim());
+
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> children = Files.list(path)) {
+          files.addAll(
+              children.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+        }
+      } else if (Files.isRegularFile(path)) {
+        files.add(path);
+      } else {
+        throw new IllegalArgumentException("No such file or directory: " + path);
+      }
+    }
+
+    return files;
+  }
+
+  private void save(List<BaseStationMessage> batch) {
+    if (perTypeSchema) {
+      final List<MessageRecord> messageRecords =
+          batch.stream().map(MessageRecord::fromMessage).collect(Collectors.toList());
+
+      transactionTemplate.executeWithoutResult(
+          status -> perTypeMessageRepository.saveAll(messageRecords));
+    } else {
+      transactionTemplate.executeWithoutResult(status -> messageRepository.saveAll(batch));
+    }
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws IOException {
+    if (StringUtils.hasText(startupFiles)) {
+      importFiles(startupFiles);
+    }
+  }
+
+  /**
+   * Imports messages from log files, returning once they have all been saved.
+   *
+   * @param paths the paths, separated by commas, of the files to import or of directories whose
+   * files are all imported
+   *
+   * @return the number of messages saved
+   *
+   * @throws IOException if a file cannot be read
+   * @throws IllegalArgumentException if a path names neither a file nor a directory
+   */
+  @ManagedOperation(
+      description = "Import logged messages from comma-separated files or directories")
+  public long importFiles(String paths) throws IOException {
+    final List<Path> files = resolve(paths);
+
+    LOGGER.info(
+        "Importing {} files to the {} schema",
+        files.size(),
+        perTypeSchema ? "per-type" : "single-table");
+
+    return importer.importFiles(files);
+  }
+
+  @ManagedAttribute(description = "The number of bytes in the files of the last import")
+  public long getTotalBytes() {
+    return importer.getTotalBytes();
+  }
+
+  @ManagedAttribute(description = "The number of bytes read by the last import")
+  public long getReadBytes() {
+    return importer.getReadBytes();
+  }
+
+  @ManagedAttribute(description = "The number of lines read by the last import")
+  public long getLineCount() {
+    return importer.getLineCount();
+  }
+
+  @ManagedAttribute(description = "The number of lines that could not be parsed by the last import")
+  public long getInvalidCount() {
+    return importer.getInvalidCount();
+  }
+
+  @ManagedAttribute(description = "The number of messages saved by the last import")
+  public long getSavedCount() {
+    return importer.getWrittenCount();
+  }
+
+  @ManagedAttribute(description = "The number of messages the last import failed to save")
+  public long getFailedCount() {
+    return importer.getFailedCount();
+  }
+
+  @ManagedAttribute(description = "The number of lines read per second by the last import")
+  public long getLinesPerSecond() {
+    return importer.getLinesPerSecond();
+  }
+}
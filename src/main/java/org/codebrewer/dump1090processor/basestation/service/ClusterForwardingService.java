@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.codebrewer.dump1090processor.basestation.cluster.ShardRouter;
+import org.codebrewer.dump1090processor.basestation.cluster.WorkerConnection;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that forwards messages from a front-end instance to the worker instances of a
+ * cluster, each of which runs the state and persistence pipeline for a shard of the aircraft.
+ *
+ * <p>The workers are configured using the {@code cluster.workers} property, as a comma-separated
+ * list of {@code host:port} addresses, and each is reached over a persistent
+ * {@link WorkerConnection}. Every message is forwarded to the connected worker to which the
+ * {@link ShardRouter} assigns its aircraft. When a worker's connection is lost its aircraft are
+ * rebalanced over the remaining workers, starting with the messages that were queued for it, and
+ * they are returned to it once it has reconnected. Messages that arrive while no worker is
+ * connected are dropped.
+ *
+ * <p>This service exists only when the {@code cluster.role} property is set to {@code frontend}.
+ */
+@Service
+@ConditionalOnProperty(name = "cluster.role", havingValue = "frontend")
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=ClusterForwardingService",
+    description = "A service that forwards messages to the workers of a cluster")
+public class ClusterForwardingService implements SmartLifecycle, WorkerConnection.Listener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterForwardingService.class);
+
+  // Start before, and stop after, the message buffer that feeds the workers
+  //
+  private static final int PHASE = Integer.MIN_VALUE / 2 - 1;
+
+  private final List<WorkerConnection> workers;
+  private final ShardRouter router;
+  private final AtomicLong forwardedCount = new AtomicLong();
+  private final AtomicLong reassignedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong rebalanceCount = new AtomicLong();
+  private volatile boolean running;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The maximum number of messages queued for each worker can be specified using the
+   * {@code cluster.forward.queue.capacity} property and defaults to 10000 if undefined. The time
+   * allowed to connect to a worker, and the interval between attempts to reconnect to a worker,
+   * can be specified using the {@code cluster.connect.timeout.millis} and
+   * {@code cluster.reconnect.interval.millis} properties, and both default to 1000 if undefined.
+   *
+   * @param workerAddresses a comma-separated list of worker addresses, as {@code host:port}
+   * @param queueCapacity the maximum number of messages queued for each worker
+   * @param connectTimeoutMillis the time allowed to connect to a worker
+   * @param reconnectIntervalMillis the interval between attempts to reconnect to a worker
+   */
+  @Autowired
+  public ClusterForwardingService(
+      @Value("${cluster.workers}") String workerAddresses,
+      @Value("${cluster.forward.queue.capacity:10000}") int queueCapacity,
+      @Value("${cluster.connect.timeout.millis:1000}") int connectTimeoutMillis,
+      @Value("${cluster.reconnect.interval.millis:1000}") long reconnectIntervalMillis) {
+    final List<String> addresses =
+        Arrays.stream(workerAddresses.split(","))
+              .map(String::trim)
+              .filter(address -> !address.isEmpty())
+              .distinct()
+              .collect(Collectors.toList());
+    final List<WorkerConnection> connections = new ArrayList<>(addresses.size());
+
+    LOGGER.info("ClusterForwardingService: workers {}", addresses);
+    router = new ShardRouter(addresses);
+
+    for (String address : addresses) {
+      connections.add(
+          new WorkerConnection(
+              address, queueCapacity, connectTimeoutMillis, reconnectIntervalMillis, this));
+    }
+
+    workers = Collections.unmodifiableList(connections);
+  }
+
+  /**
+   * Forwards a message to the worker to which its aircraft is currently assigned, returning
+   * immediately.
+   *
+   * @param baseStationMessage the message to forward
+   *
+   * @return true if the message was queued for a worker, otherwise false
+   */
+  public boolean forward(BaseStationMessage baseStationMessage) {
+    if (!route(baseStationMessage)) {
+      return false;
+    }
+
+    forwardedCount.incrementAndGet();
+
+    return true;
+  }
+
+  // Queues a message for the worker to which its aircraft is currently assigned, counting it as
+  // dropped if it cannot be queued
+  //
+  private boolean route(BaseStationMessage baseStationMessage) {
+    final int worker =
+        router.route(baseStationMessage.getIcaoAddress(), i -> workers.get(i).isConnected());
+
+    if (worker < 0 || !workers.get(worker).offer(baseStationMessage)) {
+      droppedCount.incrementAndGet();
+
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public void onConnected(WorkerConnection connection) {
+    rebalanceCount.incrementAndGet();
+    LOGGER.info(
+        "Worker {} joined, {} of {} workers connected",
+        connection.getAddress(),
+        getConnectedWorkerCount(),
+        workers.size());
+  }
+
+  @Override
+  public void onDisconnected(WorkerConnection connection, List<BaseStationMessage> unsent) {
+    rebalanceCount.incrementAndGet();
+    LOGGER.warn(
+        "Worker {} left, {} of {} workers connected",
+        connection.getAddress(),
+        getConnectedWorkerCount(),
+        workers.size());
+
+    for (BaseStationMessage baseStationMessage : unsent) {
+      if (route(baseStationMessage)) {
+        reassignedCount.incrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    workers.forEach(WorkerConnection::start);
+    running = true;
+  }
+
+  /**
+   * Disconnects from every worker once the messages already queued for it have been written.
+   */
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+    workers.forEach(WorkerConnection::stop);
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  @ManagedAttribute(description = "The addresses of the workers and whether they are connected")
+  public String[] getWorkers() {
+    return workers.stream()
+                  .map(worker -> String.format(
+                      "%s %s, queued: %d, sent: %d, lost: %d, overflowed: %d, disconnects: %d",
+                      worker.getAddress(),
+                      worker.isConnected() ? "connected" : "disconnected",
+                      worker.getQueueSize(),
+                      worker.getSentCount(),
+                      worker.getLostCount(),
+                      worker.getOverflowCount(),
+                      worker.getDisconnectCount()))
+                  .toArray(String[]::new);
+  }
+
+  @ManagedAttribute(description = "The number of workers currently connected")
+  public int getConnectedWorkerCount() {
+    return (int) workers.stream().filter(WorkerConnection::isConnected).count();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages queued for a worker, excluding those reassigned")
+  public long getForwardedCount() {
+    return forwardedCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages reassigned after the connection to a worker was lost")
+  public long getReassignedCount() {
+    return reassignedCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages dropped because no worker was connected or had room")
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of times a worker joined or left the cluster")
+  public long getRebalanceCount() {
+    return rebalanceCount.get();
+  }
+}
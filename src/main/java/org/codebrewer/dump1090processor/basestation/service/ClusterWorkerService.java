@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.journal.MessageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+import org.springframework.integration.ip.tcp.connection.TcpNetServerConnectionFactory;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that accepts connections from the front-end instance of a cluster and receives the
+ * messages forwarded to this worker instance.
+ *
+ * <p>Messages are received as frames written by a
+ * {@link org.codebrewer.dump1090processor.basestation.cluster.WorkerConnection WorkerConnection},
+ * and decoded into {@link BaseStationMessage} entities that have already been validated by the
+ * front-end.
+ *
+ * <p>This service exists only when the {@code cluster.role} property is set to {@code worker}.
+ */
+@Service
+@ConditionalOnProperty(name = "cluster.role", havingValue = "worker")
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=ClusterWorkerService",
+    description = "A service that receives messages forwarded by the front-end of a cluster")
+public class ClusterWorkerService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterWorkerService.class);
+  private static final int MAX_FRAME_BYTES = 1024;
+
+  private final TcpReceivingChannelAdapter messageProducer;
+  private final AtomicLong receivedCount = new AtomicLong();
+  private final AtomicLong decodeFailureCount = new AtomicLong();
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The port on which the worker listens can be specified using the {@code cluster.worker.port}
+   * property and defaults to 31003 if undefined.
+   *
+   * @param port the port on which to accept connections from the front-end
+   */
+  @Autowired
+  public ClusterWorkerService(@Value("${cluster.worker.port:31003}") int port) {
+    LOGGER.info("ClusterWorkerService: port {}", port);
+
+    final TcpNetServerConnectionFactory serverConnectionFactory =
+        new TcpNetServerConnectionFactory(port);
+    final ByteArrayLengthHeaderSerializer deserializer = new ByteArrayLengthHeaderSerializer();
+
+    deserializer.setMaxMessageSize(MAX_FRAME_BYTES);
+    serverConnectionFactory.setDeserializer(deserializer);
+    serverConnectionFactory.setSoTcpNoDelay(true);
+    messageProducer = new TcpReceivingChannelAdapter();
+    messageProducer.setConnectionFactory(serverConnectionFactory);
+  }
+
+  public TcpReceivingChannelAdapter tcpMessageServer() {
+    return messageProducer;
+  }
+
+  /**
+   * Decodes a message forwarded by the front-end.
+   *
+   * @param payload the payload of a frame received from the front-end
+   *
+   * @return the decoded message, or null if the payload could not be decoded
+   */
+  public BaseStationMessage decode(byte[] payload) {
+    try {
+      final BaseStationMessage baseStationMessage = MessageCodec.decode(payload);
+
+      receivedCount.incrementAndGet();
+
+      return baseStationMessage;
+    } catch (IllegalArgumentException e) {
+      decodeFailureCount.incrementAndGet();
+      LOGGER.warn("Failed to decode forwarded message: {}", e.getMessage());
+
+      return null;
+    }
+  }
+
+  @ManagedAttribute(description = "Whether or not connections from the front-end are accepted")
+  public boolean isRunning() {
+    return messageProducer.isRunning();
+  }
+
+  @ManagedAttribute(description = "The number of messages received from the front-end")
+  public long getReceivedCount() {
+    return receivedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of forwarded messages that could not be decoded")
+  public long getDecodeFailureCount() {
+    return decodeFailureCount.get();
+  }
+}
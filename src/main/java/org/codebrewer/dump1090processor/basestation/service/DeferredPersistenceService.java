@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that holds saves of entities made before the database is ready, and runs them, in
+ * order, once it is.
+ *
+ * <p>When the JPA entity manager factory is bootstrapped in the background, as it is when the
+ * {@code spring.data.jpa.repositories.bootstrap-mode} property is {@code deferred}, the feeds are
+ * connected before Hibernate has finished starting, and the repositories are initialized only once
+ * the application context has been refreshed. A save made through a repository in that time would
+ * block the thread dispatching messages to every consumer, so endpoints hand their saves to
+ * {@link #execute(Runnable)} instead. Held saves are run once the application has started, by
+ * which time Hibernate and the repositories are ready. At most
+ * {@code persistence.startup.buffer.capacity} saves are held; further saves are counted and
+ * dropped, and a warning is logged the first time this happens.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=DeferredPersistenceService",
+    description = "Holds saves made before the database is ready")
+public class DeferredPersistenceService
+    implements SmartLifecycle, ApplicationListener<ApplicationStartedEvent> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeferredPersistenceService.class);
+
+  // Start before the message buffer dispatching to the endpoints that save messages
+  //
+  private static final int PHASE = Integer.MIN_VALUE / 2 - 1;
+
+  private final int capacity;
+  private final CountDownLatch applicationStarted = new CountDownLatch(1);
+  private final Queue<Runnable> heldSaves = new ArrayDeque<>();
+  private final AtomicLong heldCount = new AtomicLong();
+  private final AtomicLong overflowCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private volatile boolean databaseReady;
+  private volatile long readyUptimeMillis = -1L;
+  private volatile boolean running;
+  private boolean overflowLogged;
+  private Thread releasingThread;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The number of saves held until the database is ready can be specified using the
+   * {@code persistence.startup.buffer.capacity} property, and defaults to 20000 if undefined.
+   *
+   * @param capacity the maximum number of saves held
+   */
+  @Autowired
+  public DeferredPersistenceService(
+      @Value("${persistence.startup.buffer.capacity:20000}") int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative");
+    }
+
+    this.capacity = capacity;
+  }
+
+  /**
+   * Runs a save now, if the database is ready, or holds it until the database is ready.
+   *
+   * <p>A held save that fails is counted and logged, and not retried; a save run now fails as
+   * the save itself does.
+   *
+   * @param save the save to run, not null
+   */
+  public void execute(Runnable save) {
+    if (!databaseReady) {
+      synchronized (heldSaves) {
+        if (!databaseReady) {
+          if (heldSaves.size() < capacity) {
+            heldSaves.add(save);
+            heldCount.incrementAndGet();
+          } else {
+            overflowCount.incrementAndGet();
+
+            if (!overflowLogged) {
+              overflowLogged = true;
+              LOGGER.warn(
+                  "Startup buffer is full: dropping saves until the database is ready, {} held",
+                  capacity);
+            }
+          }
+
+          return;
+        }
+      }
+    }
+
+    save.run();
+  }
+
+  private void runHeld(Runnable save) {
+    try {
+      save.run();
+    } catch (RuntimeException e) {
+      failureCount.incrementAndGet();
+      LOGGER.warn("Failed to save: {}: {}", e.getClass().getSimpleName(), e.getMessage());
+    }
+  }
+
+  private void awaitAndRelease() {
+    try {
+      applicationStarted.await();
+    } catch (InterruptedException e) {
+      return;
+    }
+
+    final long startedUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    long released = 0;
+
+    while (running) {
+      final Runnable save;
+
+      synchronized (heldSaves) {
+        save = heldSaves.poll();
+
+        if (save == null) {
+          databaseReady = true;
+          break;
+        }
+      }
+
+      runHeld(save);
+      released++;
+    }
+
+    if (databaseReady) {
+      readyUptimeMillis = startedUptimeMillis;
+      LOGGER.info(
+          "Database ready {}ms after JVM start, released {} held saves",
+          readyUptimeMillis,
+          released);
+    }
+  }
+
+  /**
+   * Releases held saves once the application has started.
+   *
+   * @param event the event published once the application has started
+   */
+  @Override
+  public void onApplicationEvent(ApplicationStartedEvent event) {
+    applicationStarted.countDown();
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    releasingThread = new Thread(this::awaitAndRelease, "deferred-persistence");
+    releasingThread.setDaemon(true);
+    releasingThread.start();
+  }
+
+  /**
+   * Stops releasing held saves. Saves still held are discarded.
+   */
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+    releasingThread.interrupt();
+
+    try {
+      releasingThread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (heldSaves) {
+      if (!heldSaves.isEmpty()) {
+        LOGGER.warn("Discarding {} saves held until the database was ready", heldSaves.size());
+        heldSaves.clear();
+      }
+    }
+
+    releasingThread = null;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  @ManagedAttribute(description = "Whether or not the database is ready to accept saves")
+  public boolean isDatabaseReady() {
+    return databaseReady;
+  }
+
+  @ManagedAttribute(
+      description = "The time, in milliseconds after the JVM started, at which the database was "
+          + "ready, or -1 if it is not ready")
+  public long getReadyUptimeMillis() {
+    return readyUptimeMillis;
+  }
+
+  @ManagedAttribute(description = "The maximum number of saves held until the database is ready")
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @ManagedAttribute(description = "The number of saves held until the database was ready")
+  public long getHeldCount() {
+    return heldCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of saves dropped because too many were held")
+  public long getOverflowCount() {
+    return overflowCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of held saves that failed")
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2020 Mark Scott
+ * Copyright 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.codebrewer.dump1090processor.basestation.service;
 
 import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.jfr.MessageFilterEvent;
 import org.springframework.integration.annotation.Filter;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
@@ -33,6 +34,7 @@ public class EmptyMessageFilteringService {
   Boolean filterEmptyMessage(byte[] payload) {
     if (payload == null || payload.length == 0) {
       emptyMessageCount.incrementAndGet();
+      MessageFilterEvent.record("EmptyMessageFilteringService", "empty", null);
 
       return false;
     }
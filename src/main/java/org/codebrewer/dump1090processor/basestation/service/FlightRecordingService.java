@@ -0,0 +1,220 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.codebrewer.dump1090processor.basestation.jfr.FrameReceivedEvent;
+import org.codebrewer.dump1090processor.basestation.jfr.PipelineEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that makes time-boxed Flight Recorder recordings of the message pipeline on demand.
+ *
+ * <p>A recording captures the pipeline's own events, described by {@link PipelineEvents}, together
+ * with the JVM events of the {@code default} Flight Recorder configuration, such as garbage
+ * collections and lock contention, so that a stall can be traced from the pipeline to its cause.
+ * When its duration has passed, or it is stopped early, the recording is written to a file in the
+ * directory given by the {@code jfr.recording.directory} property, which defaults to
+ * {@code recordings} if undefined. Only one recording is made at a time.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=FlightRecordingService",
+    description = "Makes Flight Recorder recordings of the message pipeline on demand")
+public class FlightRecordingService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecordingService.class);
+  private static final String CONFIGURATION_NAME = "default";
+  private static final DateTimeFormatter FILE_NAME_FORMATTER =
+      DateTimeFormatter.ofPattern("'dump1090-processor-'yyyyMMdd'T'HHmmss'Z.jfr'")
+                       .withZone(ZoneOffset.UTC);
+
+  private final Path directory;
+  private final long maxDurationSeconds;
+  private final Clock clock;
+  private final AtomicLong recordingCount = new AtomicLong();
+  private Recording recording;
+  private Path recordingFile;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>The longest recording that can be requested can be specified using the
+   * {@code jfr.recording.max.duration.seconds} property and defaults to 3600 if undefined.
+   *
+   * @param directory the directory to which recordings are written
+   * @param maxDurationSeconds the longest recording that can be requested, in seconds
+   */
+  @Autowired
+  public FlightRecordingService(
+      @Value("${jfr.recording.directory:recordings}") String directory,
+      @Value("${jfr.recording.max.duration.seconds:3600}") long maxDurationSeconds) {
+    this(Paths.get(directory), maxDurationSeconds, Clock.systemUTC());
+  }
+
+  FlightRecordingService(Path directory, long maxDurationSeconds, Clock clock) {
+    if (maxDurationSeconds <= 0L) {
+      throw new IllegalArgumentException(
+          "Maximum duration must be positive: " + maxDurationSeconds);
+    }
+
+    LOGGER.info(
+        "FlightRecordingService: directory {}, max duration {}s",
+        directory.toAbsolutePath(),
+        maxDurationSeconds);
+    this.directory = directory;
+    this.maxDurationSeconds = maxDurationSeconds;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts a recording that stops, and is written to a file, once the given duration has passed.
+   *
+   * @param durationSeconds the duration of the recording, in seconds
+   * @param includeFrames whether or not to record the receipt of every line from each feed, which
+   * is disabled by default
+   *
+   * @return the path of the file to which the recording will be written
+   *
+   * @throws IllegalArgumentException if the duration is not positive or exceeds the maximum
+   * @throws IllegalStateException if a recording is already running, or cannot be started
+   */
+  @ManagedOperation(
+      description = "Start a recording of the pipeline, returning the file it will be written to")
+  @ManagedOperationParameters({
+      @ManagedOperationParameter(
+          name = "durationSeconds", description = "The duration of the recording, in seconds"),
+      @ManagedOperationParameter(
+          name = "includeFrames", description = "Whether or not to record every line received")
+  })
+  public synchronized String startRecording(long durationSeconds, boolean includeFrames) {
+    if (durationSeconds <= 0L || durationSeconds > maxDurationSeconds) {
+      throw new IllegalArgumentException(
+          "Duration must be between 1 and " + maxDurationSeconds + " seconds: " + durationSeconds);
+    }
+
+    if (isRecording()) {
+      throw new IllegalStateException("Already recording to " + recordingFile);
+    }
+
+    final Path file = directory.resolve(FILE_NAME_FORMATTER.format(clock.instant()));
+    final Recording newRecording;
+
+    try {
+      Files.createDirectories(directory);
+      newRecording = new Recording(Configuration.getConfiguration(CONFIGURATION_NAME));
+      newRecording.setDestination(file);
+    } catch (IOException | ParseException e) {
+      throw new IllegalStateException("Failed to create recording: " + e.getMessage(), e);
+    }
+
+    for (Class<? extends Event> eventClass : PipelineEvents.DEFAULT_EVENTS) {
+      newRecording.enable(eventClass);
+    }
+
+    if (includeFrames) {
+      newRecording.enable(FrameReceivedEvent.class);
+    }
+
+    newRecording.setName("dump1090-processor");
+    newRecording.setToDisk(true);
+    newRecording.setDuration(Duration.ofSeconds(durationSeconds));
+    close();
+    newRecording.start();
+    recording = newRecording;
+    recordingFile = file;
+    recordingCount.incrementAndGet();
+    LOGGER.info(
+        "Recording pipeline for {}s to {}, frames included: {}",
+        durationSeconds,
+        file.toAbsolutePath(),
+        includeFrames);
+
+    return file.toAbsolutePath().toString();
+  }
+
+  /**
+   * Stops the running recording early and writes it to its file.
+   *
+   * <p>Has no effect if no recording is running.
+   *
+   * @return the path of the file to which the recording was written, or null if none was running
+   */
+  @ManagedOperation(description = "Stop the running recording early and write it to its file")
+  public synchronized String stopRecording() {
+    if (!isRecording()) {
+      return null;
+    }
+
+    LOGGER.info("Stopping recording to {}", recordingFile.toAbsolutePath());
+    recording.stop();
+
+    return recordingFile.toAbsolutePath().toString();
+  }
+
+  @ManagedAttribute(description = "Whether or not a recording is running")
+  public synchronized boolean isRecording() {
+    return recording != null
+           && (recording.getState() == RecordingState.DELAYED
+               || recording.getState() == RecordingState.RUNNING);
+  }
+
+  @ManagedAttribute(description = "The file to which the latest recording is, or was, written")
+  public synchronized String getRecordingFile() {
+    return recordingFile == null ? null : recordingFile.toAbsolutePath().toString();
+  }
+
+  @ManagedAttribute(description = "The number of recordings started since application startup")
+  public long getRecordingCount() {
+    return recordingCount.get();
+  }
+
+  /**
+   * Stops any running recording, writing it to its file, and releases the resources of the latest
+   * recording.
+   */
+  @PreDestroy
+  public synchronized void close() {
+    if (recording != null) {
+      stopRecording();
+      recording.close();
+      recording = null;
+    }
+  }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.MessageFilterEvent;
+import org.codebrewer.dump1090processor.geo.FastTrig;
+import org.codebrewer.dump1090processor.geo.GeoCoordinates;
+import org.codebrewer.dump1090processor.geo.ReceiverGeometry;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.annotation.Filter;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that removes messages whose altitude or position could not have been reported by a
+ * real aircraft, before they are buffered, enriched or saved.
+ *
+ * <p>Corrupt frames that survive parsing, and positions decoded from mismatched pairs of encoded
+ * positions, typically place an aircraft hundreds of kilometres from its last position or tens of
+ * thousands of feet above it. Each altitude and position is checked against fixed bounds and then
+ * against the last accepted altitude and position of the same aircraft: a message implying a
+ * ground speed or climb rate beyond the configured limits is dropped. A fix older than the
+ * configured maximum age is not used for comparison, and after a number of consecutive rejections
+ * the aircraft's fix is replaced by the rejected one, so that an implausible first fix cannot cause
+ * every later message to be dropped.
+ *
+ * <p>The last accepted fixes are held in a fixed-capacity open-addressing table of primitive
+ * arrays, as the {@code CprDecoder} holds encoded positions, so each check takes constant time and
+ * allocates nothing. Messages from aircraft that cannot be tracked because the table is full are
+ * passed unchecked.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=ImplausibleMessageFilteringService",
+    description = "Filters messages implying impossible aircraft movement")
+public class ImplausibleMessageFilteringService {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(ImplausibleMessageFilteringService.class);
+  private static final int EMPTY = -1;
+  private static final long NO_FIX = Long.MIN_VALUE / 2;
+  private static final double METRES_PER_NAUTICAL_MILE = 1852.0;
+  private static final double ALTITUDE_TOLERANCE_FEET = 200.0;
+  private static final String FILTER_NAME = "ImplausibleMessageFilteringService";
+
+  private final boolean enabled;
+  private final double maxSpeedMetresPerMilli;
+  private final double maxClimbRateFeetPerMilli;
+  private final double minAltitude;
+  private final double maxAltitude;
+  private final double positionToleranceMetres;
+  private final long fixMaxAgeMillis;
+  private final int maxConsecutiveRejections;
+  private final int mask;
+  private final int[] addresses;
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final long[] positionTimes;
+  private final float[] altitudes;
+  private final long[] altitudeTimes;
+  private final int[] consecutiveRejections;
+
+  private final double[] coordinates = new double[2];
+  private final AtomicLong checkedMessageCount = new AtomicLong();
+  private final AtomicLong altitudeOutOfRangeCount = new AtomicLong();
+  private final AtomicLong positionOutOfRangeCount = new AtomicLong();
+  private final AtomicLong excessiveSpeedCount = new AtomicLong();
+  private final AtomicLong excessiveClimbRateCount = new AtomicLong();
+  private final AtomicLong fixReplacedCount = new AtomicLong();
+  private final AtomicLong untrackedMessageCount = new AtomicLong();
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param enabled whether or not messages are checked at all
+   * @param maxSpeedKnots the greatest plausible ground speed, in knots
+   * @param maxClimbRateFeetPerMinute the greatest plausible rate of climb or descent, in feet per
+   * minute
+   * @param minAltitude the lowest plausible altitude, in feet
+   * @param maxAltitude the highest plausible altitude, in feet
+   * @param positionToleranceMetres the distance, in metres, by which an aircraft may move beyond
+   * that allowed by its maximum speed, to allow for imprecise positions
+   * @param fixMaxAgeSeconds the age, in seconds, beyond which an aircraft's last fix is not used
+   * @param maxConsecutiveRejections the number of consecutive messages from an aircraft that may be
+   * rejected before its fix is replaced
+   * @param capacity the maximum number of aircraft tracked, rounded up to a power of two
+   *
+   * @throws IllegalArgumentException if any limit is negative, or the altitude range is empty
+   */
+  @Autowired
+  public ImplausibleMessageFilteringService(
+      @Value("${plausibility.enabled:true}") boolean enabled,
+      @Value("${plausibility.max.speed.knots:1200}") double maxSpeedKnots,
+      @Value("${plausibility.max.climb.rate.feet.per.minute:15000}")
+          double maxClimbRateFeetPerMinute,
+      @Value("${plausibility.altitude.min.feet:-1500}") double minAltitude,
+      @Value("${plausibility.altitude.max.feet:70000}") double maxAltitude,
+      @Value("${plausibility.position.tolerance.metres:1000}") double positionToleranceMetres,
+      @Value("${plausibility.fix.max.age.seconds:60}") long fixMaxAgeSeconds,
+      @Value("${plausibility.max.consecutive.rejections:3}") int maxConsecutiveRejections,
+      @Value("${plausibility.capacity:16384}") int capacity) {
+    if (maxSpeedKnots < 0.0
+        || maxClimbRateFeetPerMinute < 0.0
+        || positionToleranceMetres < 0.0
+        || fixMaxAgeSeconds < 0L
+        || maxConsecutiveRejections < 0
+        || capacity < 1) {
+      throw new IllegalArgumentException("Plausibility limits must not be negative");
+    }
+
+    if (!(minAltitude < maxAltitude)) {
+      throw new IllegalArgumentException(
+          "Minimum altitude must be less than maximum altitude: "
+          + minAltitude
+          + ", "
+          + maxAltitude);
+    }
+
+    final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+    LOGGER.info(
+        "ImplausibleMessageFilteringService: enabled {}, max speed {}kn, max climb rate {}ft/min, "
+        + "altitude {}ft to {}ft, tolerance {}m, fix max age {}s, max rejections {}, capacity {}",
+        enabled,
+        maxSpeedKnots,
+        maxClimbRateFeetPerMinute,
+        minAltitude,
+        maxAltitude,
+        positionToleranceMetres,
+        fixMaxAgeSeconds,
+        maxConsecutiveRejections,
+        size);
+    this.enabled = enabled;
+    this.maxSpeedMetresPerMilli =
+        maxSpeedKnots * METRES_PER_NAUTICAL_MILE / TimeUnit.HOURS.toMillis(1L);
+    this.maxClimbRateFeetPerMilli = maxClimbRateFeetPerMinute / TimeUnit.MINUTES.toMillis(1L);
+    this.minAltitude = minAltitude;
+    this.maxAltitude = maxAltitude;
+    this.positionToleranceMetres = positionToleranceMetres;
+    this.fixMaxAgeMillis = TimeUnit.SECONDS.toMillis(fixMaxAgeSeconds);
+    this.maxConsecutiveRejections = maxConsecutiveRejections;
+    mask = size - 1;
+    addresses = new int[size];
+    latitudes = new double[size];
+    longitudes = new double[size];
+    positionTimes = new long[size];
+    altitudes = new float[size];
+    altitudeTimes = new long[size];
+    consecutiveRejections = new int[size];
+    Arrays.fill(addresses, EMPTY);
+  }
+
+  @Filter
+  synchronized Boolean filterImplausibleMessage(BaseStationMessage payload) {
+    if (!enabled || !(payload instanceof TransmissionMessage)) {
+      return true;
+    }
+
+    final TransmissionMessage transmissionMessage = (TransmissionMessage) payload;
+    final Float altitude = transmissionMessage.getAltitude();
+    final Point<G2D> position = transmissionMessage.getPosition();
+    final boolean hasPosition = position != null && !position.isEmpty();
+
+    if (altitude == null && !hasPosition) {
+      return true;
+    }
+
+    checkedMessageCount.incrementAndGet();
+
+    if (altitude != null && !(altitude >= minAltitude && altitude <= maxAltitude)) {
+      altitudeOutOfRangeCount.incrementAndGet();
+      MessageFilterEvent.record(FILTER_NAME, "altitude out of range", payload.getIcaoAddress());
+
+      return false;
+    }
+
+    final double latitude;
+    final double longitude;
+
+    if (hasPosition) {
+      GeoCoordinates.readLongitudeLatitude(position, coordinates);
+      latitude = coordinates[1];
+      longitude = coordinates[0];
+
+      if (!(Math.abs(latitude) <= 90.0 && Math.abs(longitude) <= 180.0)) {
+        positionOutOfRangeCount.incrementAndGet();
+        MessageFilterEvent.record(FILTER_NAME, "position out of range", payload.getIcaoAddress());
+
+        return false;
+      }
+    } else {
+      latitude = Double.NaN;
+      longitude = Double.NaN;
+    }
+
+    final int address = DomainUtils.parseIcaoAddress(payload.getIcaoAddress());
+    final long timeMillis = payload.getTimestamp().toEpochMilli();
+    final int slot = address < 0 ? -1 : findSlot(address, timeMillis);
+
+    if (slot < 0) {
+      untrackedMessageCount.incrementAndGet();
+
+      return true;
+    }
+
+    final AtomicLong rejectionCount;
+    final String rejectionReason;
+
+    if (hasPosition && !isPlausibleMove(slot, latitude, longitude, timeMillis)) {
+      rejectionCount = excessiveSpeedCount;
+      rejectionReason = "excessive speed";
+    } else if (altitude != null && !isPlausibleClimb(slot, altitude, timeMillis)) {
+      rejectionCount = excessiveClimbRateCount;
+      rejectionReason = "excessive climb rate";
+    } else {
+      rejectionCount = null;
+      rejectionReason = null;
+    }
+
+    if (rejectionCount != null) {
+      if (++consecutiveRejections[slot] <= maxConsecutiveRejections) {
+        rejectionCount.incrementAndGet();
+        MessageFilterEvent.record(FILTER_NAME, rejectionReason, payload.getIcaoAddress());
+
+        return false;
+      }
+
+      fixReplacedCount.incrementAndGet();
+    }
+
+    consecutiveRejections[slot] = 0;
+
+    if (hasPosition) {
+      latitudes[slot] = latitude;
+      longitudes[slot] = longitude;
+      positionTimes[slot] = timeMillis;
+    }
+
+    if (altitude != null) {
+      altitudes[slot] = altitude;
+      altitudeTimes[slot] = timeMillis;
+    }
+
+    return true;
+  }
+
+  private boolean isPlausibleMove(int slot, double latitude, double longitude, long timeMillis) {
+    final long elapsedMillis = Math.abs(timeMillis - positionTimes[slot]);
+
+    if (elapsedMillis > fixMaxAgeMillis) {
+      return true;
+    }
+
+    // Over the distances an aircraft can cover between fixes an equirectangular projection at the
+    // mean latitude is accurate enough, and needs neither a square root nor an inverse function
+    //
+    final double lastLatitude = latitudes[slot];
+    final double northing = Math.toRadians(latitude - lastLatitude);
+    final double easting =
+        Math.toRadians(GeoCoordinates.longitudeDifference(longitude, longitudes[slot]))
+        * FastTrig.cos(Math.toRadians((latitude + lastLatitude) / 2.0));
+    final double allowedAngle =
+        (maxSpeedMetresPerMilli * elapsedMillis + positionToleranceMetres)
+        / ReceiverGeometry.EARTH_RADIUS_METRES;
+
+    return northing * northing + easting * easting <= allowedAngle * allowedAngle;
+  }
+
+  private boolean isPlausibleClimb(int slot, float altitude, long timeMillis) {
+    final long elapsedMillis = Math.abs(timeMillis - altitudeTimes[slot]);
+
+    return elapsedMillis > fixMaxAgeMillis
+           || Math.abs(altitude - altitudes[slot])
+              <= maxClimbRateFeetPerMilli * elapsedMillis + ALTITUDE_TOLERANCE_FEET;
+  }
+
+  // Finds the slot holding the fixes for the given address, claiming a free or stale slot if none
+  // does, or returns -1 if the table is full of current fixes for other aircraft
+  //
+  private int findSlot(int address, long timeMillis) {
+    int slot = (address * 0x9E3779B1) >>> 8 & mask;
+    int reusableSlot = -1;
+
+    for (int probe = 0; probe <= mask; probe++, slot = (slot + 1) & mask) {
+      final int slotAddress = addresses[slot];
+
+      if (slotAddress == address) {
+        return slot;
+      }
+
+      if (slotAddress == EMPTY) {
+        return claimSlot(reusableSlot < 0 ? slot : reusableSlot, address);
+      }
+
+      if (reusableSlot < 0 && isStale(slot, timeMillis)) {
+        reusableSlot = slot;
+      }
+    }
+
+    return reusableSlot < 0 ? -1 : claimSlot(reusableSlot, address);
+  }
+
+  private boolean isStale(int slot, long timeMillis) {
+    return timeMillis - Math.max(positionTimes[slot], altitudeTimes[slot]) > fixMaxAgeMillis;
+  }
+
+  private int claimSlot(int slot, int address) {
+    addresses[slot] = address;
+    positionTimes[slot] = NO_FIX;
+    altitudeTimes[slot] = NO_FIX;
+    consecutiveRejections[slot] = 0;
+
+    return slot;
+  }
+
+  @ManagedAttribute(description = "Whether or not messages are checked for plausibility")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages carrying an altitude or a position checked")
+  public long getCheckedMessageCount() {
+    return checkedMessageCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages dropped for an out-of-range altitude")
+  public long getAltitudeOutOfRangeCount() {
+    return altitudeOutOfRangeCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages dropped for an out-of-range position")
+  public long getPositionOutOfRangeCount() {
+    return positionOutOfRangeCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages dropped for implying an excessive ground speed")
+  public long getExcessiveSpeedCount() {
+    return excessiveSpeedCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages dropped for implying an excessive climb rate")
+  public long getExcessiveClimbRateCount() {
+    return excessiveClimbRateCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of aircraft fixes replaced after consecutive rejected messages")
+  public long getFixReplacedCount() {
+    return fixReplacedCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages passed unchecked because their aircraft was untracked")
+  public long getUntrackedMessageCount() {
+    return untrackedMessageCount.get();
+  }
+
+  /**
+   * Gets the total number of messages dropped as implausible since application startup.
+   *
+   * @return the total number of messages dropped as implausible since application startup
+   */
+  @ManagedAttribute(
+      description = "The total number of messages dropped as implausible since application startup")
+  public long getImplausibleMessageCount() {
+    return altitudeOutOfRangeCount.get()
+           + positionOutOfRangeCount.get()
+           + excessiveSpeedCount.get()
+           + excessiveClimbRateCount.get();
+  }
+}
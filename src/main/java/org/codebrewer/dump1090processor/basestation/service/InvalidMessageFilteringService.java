@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2020 Mark Scott
+ * Copyright 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.codebrewer.dump1090processor.basestation.service;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.MessageFilterEvent;
 import org.springframework.integration.annotation.Filter;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
@@ -35,6 +36,7 @@ public class InvalidMessageFilteringService {
   Boolean filterInvalidMessage(BaseStationMessage payload) {
     if (Objects.equals(payload, BaseStationMessage.INVALID_MESSAGE)) {
       invalidMessageCount.incrementAndGet();
+      MessageFilterEvent.record("InvalidMessageFilteringService", "invalid", null);
 
       return false;
     }
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.domain.Hashing;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.MessageFilterEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that decides which messages to shed when the buffer between the message feeds and the
+ * message consumers fills up, so that the feeds can always be read at the rate they arrive.
+ *
+ * <p>Messages are classified by priority:
+ *
+ * <ul>
+ *   <li>essential: status and identification messages, and transmission messages indicating an
+ *   emergency;</li>
+ *   <li>redundant: airborne velocity and surveillance altitude messages, which are frequent and
+ *   largely repeat what is already known about an aircraft;</li>
+ *   <li>normal: everything else.</li>
+ * </ul>
+ *
+ * <p>As the buffer fills past successive watermarks, the shedding level rises: first redundant
+ * messages are sampled to at most one per aircraft per sample interval, then they are dropped
+ * altogether, and finally only essential messages are accepted. A minimum shedding level can also
+ * be set at runtime.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=LoadSheddingService",
+    description = "Sheds lower-priority messages when the message buffer fills")
+public class LoadSheddingService {
+  /**
+   * The shedding level at which every message is accepted.
+   */
+  public static final int LEVEL_NONE = 0;
+
+  /**
+   * The shedding level at which redundant messages are sampled.
+   */
+  public static final int LEVEL_SAMPLE_REDUNDANT = 1;
+
+  /**
+   * The shedding level at which redundant messages are dropped.
+   */
+  public static final int LEVEL_DROP_REDUNDANT = 2;
+
+  /**
+   * The shedding level at which only essential messages are accepted.
+   */
+  public static final int LEVEL_ESSENTIAL_ONLY = 3;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadSheddingService.class);
+  private static final String[] LEVEL_NAMES = {
+      "NONE", "SAMPLE_REDUNDANT", "DROP_REDUNDANT", "ESSENTIAL_ONLY"
+  };
+
+  // The number of slots recording when a redundant message was last accepted for an aircraft and
+  // transmission type; distinct aircraft sharing a slot are sampled together
+  //
+  private static final int SAMPLE_SLOTS = 1 << 14;
+
+  /**
+   * The priority of a message when deciding whether or not to shed it.
+   */
+  enum Priority {
+    ESSENTIAL, NORMAL, REDUNDANT
+  }
+
+  private final double[] watermarks;
+  private final long sampleIntervalMillis;
+  private final long[] lastSampledMillis = new long[SAMPLE_SLOTS];
+  private final AtomicLong acceptedCount = new AtomicLong();
+  private final AtomicLong sampledOutCount = new AtomicLong();
+  private final AtomicLong redundantShedCount = new AtomicLong();
+  private final AtomicLong normalShedCount = new AtomicLong();
+  private volatile int minimumLevel = LEVEL_NONE;
+  private volatile int currentLevel = LEVEL_NONE;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The watermarks are fractions of the buffer capacity and can be specified using the
+   * {@code pipeline.shedding.watermark.sample}, {@code pipeline.shedding.watermark.drop} and
+   * {@code pipeline.shedding.watermark.essential} properties. The sample interval can be specified
+   * using the {@code pipeline.shedding.sample.interval.millis} property.
+   *
+   * @param sampleWatermark the buffer fill fraction at which redundant messages are sampled
+   * @param dropWatermark the buffer fill fraction at which redundant messages are dropped
+   * @param essentialWatermark the buffer fill fraction at which only essential messages are kept
+   * @param sampleIntervalMillis the minimum interval between redundant messages of the same type
+   * accepted for an aircraft while sampling, in milliseconds
+   */
+  @Autowired
+  public LoadSheddingService(
+      @Value("${pipeline.shedding.watermark.sample:0.5}") double sampleWatermark,
+      @Value("${pipeline.shedding.watermark.drop:0.75}") double dropWatermark,
+      @Value("${pipeline.shedding.watermark.essential:0.9}") double essentialWatermark,
+      @Value("${pipeline.shedding.sample.interval.millis:1000}") long sampleIntervalMillis) {
+    if (!(0.0 < sampleWatermark
+          && sampleWatermark <= dropWatermark
+          && dropWatermark <= essentialWatermark
+          && essentialWatermark <= 1.0)) {
+      throw new IllegalArgumentException("Shedding watermarks must be ascending fractions");
+    }
+
+    LOGGER.info(
+        "LoadSheddingService: watermarks {}/{}/{}, sample interval {}ms",
+        sampleWatermark,
+        dropWatermark,
+        essentialWatermark,
+        sampleIntervalMillis);
+    this.watermarks = new double[] {sampleWatermark, dropWatermark, essentialWatermark};
+    this.sampleIntervalMillis = sampleIntervalMillis;
+  }
+
+  static Priority priority(BaseStationMessage baseStationMessage) {
+    if (baseStationMessage instanceof StatusMessage || baseStationMessage instanceof IdMessage) {
+      return Priority.ESSENTIAL;
+    }
+
+    if (baseStationMessage instanceof TransmissionMessage) {
+      final TransmissionMessage transmissionMessage = (TransmissionMessage) baseStationMessage;
+      final TransmissionType transmissionType = transmissionMessage.getTransmissionType();
+
+      if (Boolean.TRUE.equals(transmissionMessage.getEmergency())) {
+        return Priority.ESSENTIAL;
+      }
+
+      if (transmissionType == TransmissionType.AIRBORNE_VELOCITY
+          || transmissionType == TransmissionType.SURVEILLANCE_ALTITUDE) {
+        return Priority.REDUNDANT;
+      }
+    }
+
+    return Priority.NORMAL;
+  }
+
+  /**
+   * Decides whether or not a message should be placed in the buffer.
+   *
+   * <p>This method never blocks for longer than it takes to make the decision.
+   *
+   * @param baseStationMessage a valid message, not null
+   * @param bufferSize the number of messages currently in the buffer
+   * @param bufferCapacity the capacity of the buffer
+   *
+   * @return true if the message should be buffered, false if it should be shed
+   */
+  public synchronized boolean accept(
+      BaseStationMessage baseStationMessage, int bufferSize, int bufferCapacity) {
+    final int level = level(bufferSize, bufferCapacity);
+    final boolean accepted;
+
+    currentLevel = level;
+
+    switch (priority(baseStationMessage)) {
+      case REDUNDANT:
+        accepted = acceptRedundant(baseStationMessage, level);
+        break;
+      case NORMAL:
+        accepted = level < LEVEL_ESSENTIAL_ONLY;
+
+        if (!accepted) {
+          normalShedCount.incrementAndGet();
+        }
+
+        break;
+      default:
+        accepted = true;
+    }
+
+    if (accepted) {
+      acceptedCount.incrementAndGet();
+    } else {
+      MessageFilterEvent.record(
+          "LoadSheddingService", LEVEL_NAMES[level], baseStationMessage.getIcaoAddress());
+    }
+
+    return accepted;
+  }
+
+  /**
+   * Gets the shedding level applied to the most recent message.
+   *
+   * @return the current shedding level, from {@value #LEVEL_NONE} to
+   * {@value #LEVEL_ESSENTIAL_ONLY}
+   */
+  @ManagedAttribute(
+      description = "The current shedding level: 0 none, 1 sample redundant, 2 drop redundant, "
+                    + "3 essential only")
+  public int getCurrentLevel() {
+    return currentLevel;
+  }
+
+  @ManagedAttribute(description = "The name of the current shedding level")
+  public String getCurrentLevelName() {
+    return LEVEL_NAMES[currentLevel];
+  }
+
+  @ManagedAttribute(description = "The minimum shedding level, regardless of buffer fill")
+  public int getMinimumLevel() {
+    return minimumLevel;
+  }
+
+  /**
+   * Sets the minimum shedding level, which applies however empty the buffer is.
+   *
+   * @param minimumLevel the minimum shedding level, from {@value #LEVEL_NONE} to
+   * {@value #LEVEL_ESSENTIAL_ONLY}
+   */
+  @ManagedAttribute(description = "Set the minimum shedding level, regardless of buffer fill")
+  public void setMinimumLevel(int minimumLevel) {
+    if (minimumLevel < LEVEL_NONE || minimumLevel > LEVEL_ESSENTIAL_ONLY) {
+      throw new IllegalArgumentException("Shedding level must be between 0 and 3");
+    }
+
+    LOGGER.info("Minimum shedding level: {}", LEVEL_NAMES[minimumLevel]);
+    this.minimumLevel = minimumLevel;
+  }
+
+  @ManagedAttribute(description = "The number of messages accepted into the buffer")
+  public long getAcceptedCount() {
+    return acceptedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of redundant messages shed by sampling")
+  public long getSampledOutCount() {
+    return sampledOutCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of redundant messages dropped")
+  public long getRedundantShedCount() {
+    return redundantShedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of normal-priority messages dropped")
+  public long getNormalShedCount() {
+    return normalShedCount.get();
+  }
+
+  private int level(int bufferSize, int bufferCapacity) {
+    final double fill = bufferCapacity > 0 ? (double) bufferSize / bufferCapacity : 1.0;
+    int level = LEVEL_NONE;
+
+    while (level < watermarks.length && fill >= watermarks[level]) {
+      level++;
+    }
+
+    return Math.max(level, minimumLevel);
+  }
+
+  private boolean acceptRedundant(BaseStationMessage baseStationMessage, int level) {
+    if (level == LEVEL_NONE) {
+      return true;
+    }
+
+    if (level >= LEVEL_DROP_REDUNDANT) {
+      redundantShedCount.incrementAndGet();
+
+      return false;
+    }
+
+    final TransmissionType transmissionType =
+        ((TransmissionMessage) baseStationMessage).getTransmissionType();
+    final int slot =
+        (int) ((Hashing.hashIcaoAddress(baseStationMessage.getIcaoAddress()) * 31
+                + transmissionType.ordinal())
+               & (SAMPLE_SLOTS - 1));
+    final long timestampMillis = baseStationMessage.getTimestamp().toEpochMilli();
+    final long elapsedMillis = timestampMillis - lastSampledMillis[slot];
+
+    if (elapsedMillis >= 0 && elapsedMillis < sampleIntervalMillis) {
+      sampledOutCount.incrementAndGet();
+
+      return false;
+    }
+
+    lastSampledMillis[slot] = timestampMillis;
+
+    return true;
+  }
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.JournalCheckpoint;
+import org.codebrewer.dump1090processor.basestation.jfr.BatchFlushEvent;
+import org.codebrewer.dump1090processor.basestation.journal.CorruptRecordException;
+import org.codebrewer.dump1090processor.basestation.journal.MessageCodec;
+import org.codebrewer.dump1090processor.basestation.journal.MessageJournal;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.JournalCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A service that decouples the ingest of BaseStation messages from the database by recording each
+ * message in a local {@link MessageJournal} and applying the journal to the database
+ * asynchronously.
+ *
+ * <p>Appending a message costs an encoding and a copy into a memory-mapped file, so ingest is not
+ * held up when the database stalls. A committer thread forces the journal to the disk at a fixed
+ * interval, committing every message appended in the interval with one write. An applier thread
+ * reads forced messages and saves them to the database in large batches. Each batch is saved in
+ * one transaction together with a {@link JournalCheckpoint} recording the offset that follows it,
+ * so after a failure the applier resumes from exactly the first message not saved. Segments of the
+ * journal are deleted once every message they hold has been applied.
+ *
+ * <p>Records that cannot be decoded, or that fail their checksum, are skipped and counted. A batch
+ * that repeatedly fails to be saved marks the applier as stalled and is then saved one message at
+ * a time, so that a message the database will never accept is skipped rather than holding back
+ * every message after it.
+ *
+ * <p>Messages that cannot be journalled are left to the caller to persist directly.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=MessageJournalService",
+    description = "A service journalling BaseStation messages and applying them to the database")
+public class MessageJournalService implements SmartLifecycle {
+  /**
+   * The name of the checkpoint recording the progress of the applier.
+   */
+  public static final String CHECKPOINT_NAME = "base_station_message";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageJournalService.class);
+  private static final int MAX_BATCH_ATTEMPTS = 3;
+
+  // Start before, and stop after, the message buffer feeding the endpoint that appends messages
+  //
+  private static final int PHASE = Integer.MIN_VALUE / 2 - 1;
+
+  private final BaseStationMessageRepository messageRepository;
+  private final JournalCheckpointRepository checkpointRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final Path directory;
+  private final int segmentBytes;
+  private final long commitIntervalMillis;
+  private final int applyBatchSize;
+  private final long applyIntervalMillis;
+  private final AtomicLong appendedCount = new AtomicLong();
+  private final AtomicLong appendFailureCount = new AtomicLong();
+  private final AtomicLong appliedCount = new AtomicLong();
+  private final AtomicLong applyFailureCount = new AtomicLong();
+  private final AtomicLong skippedCount = new AtomicLong();
+  private final AtomicLong rejectedMessageCount = new AtomicLong();
+  private final Object idleMonitor = new Object();
+  private final Object applyLock = new Object();
+  private volatile MessageJournal journal;
+  private volatile long appliedOffset;
+  private volatile int failedAttempts;
+  private volatile boolean running;
+  private Thread committerThread;
+  private Thread applierThread;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>Whether or not messages are journalled can be specified using the {@code journal.enabled}
+   * property, and defaults to false if undefined. The remaining properties, prefixed
+   * {@code journal.}, specify the directory holding the journal, the size of its segment files,
+   * the interval between forces of the journal to the disk, the number of messages saved in each
+   * batch and the interval at which the applier polls the journal when it has caught up.
+   *
+   * @param messageRepository the repository to which journalled messages are applied
+   * @param checkpointRepository the repository holding the applier's checkpoint
+   * @param transactionManager the transaction manager used to delimit each batch
+   * @param enabled whether or not messages are journalled
+   * @param directory the name of the directory holding the journal
+   * @param segmentBytes the size of each segment file, in bytes
+   * @param commitIntervalMillis the interval between forces of the journal, in milliseconds
+   * @param applyBatchSize the maximum number of messages saved in one transaction
+   * @param applyIntervalMillis the interval between polls of the journal, in milliseconds
+   */
+  @Autowired
+  public MessageJournalService(
+      BaseStationMessageRepository messageRepository,
+      JournalCheckpointRepository checkpointRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${journal.enabled:false}") boolean enabled,
+      @Value("${journal.directory:journal}") String directory,
+      @Value("${journal.segment.bytes:67108864}") int segmentBytes,
+      @Value("${journal.commit.interval.millis:10}") long commitIntervalMillis,
+      @Value("${journal.apply.batch.size:1000}") int applyBatchSize,
+      @Value("${journal.apply.interval.millis:100}") long applyIntervalMillis) {
+    if (commitIntervalMillis < 1 || applyBatchSize < 1 || applyIntervalMillis < 1) {
+      throw new IllegalArgumentException("Journal intervals and batch size must be positive");
+    }
+
+    LOGGER.info(
+        "Message journal: {}, directory: {}", enabled, Paths.get(directory).toAbsolutePath());
+    this.messageRepository = messageRepository;
+    this.checkpointRepository = checkpointRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.enabled = enabled;
+    this.directory = Paths.get(directory);
+    this.segmentBytes = segmentBytes;
+    this.commitIntervalMillis = commitIntervalMillis;
+    this.applyBatchSize = applyBatchSize;
+    this.applyIntervalMillis = applyIntervalMillis;
+  }
+
+  private static void join(Thread thread) {
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(30));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Appends a message to the journal, if the journal is running.
+   *
+   * @param baseStationMessage the message to append, not null
+   *
+   * @return true if the message was appended, false if it was not and should be persisted directly
+   */
+  public boolean append(BaseStationMessage baseStationMessage) {
+    final MessageJournal currentJournal = journal;
+
+    if (!running || currentJournal == null) {
+      return false;
+    }
+
+    try {
+      currentJournal.append(MessageCodec.encode(baseStationMessage));
+      appendedCount.incrementAndGet();
+
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      appendFailureCount.incrementAndGet();
+      LOGGER.warn("Failed to journal message: {}", e.getMessage());
+
+      return false;
+    }
+  }
+
+  private long readBatch(long fromOffset, int maxRecords, List<BaseStationMessage> batch)
+      throws IOException {
+    try {
+      return journal.read(
+          fromOffset,
+          maxRecords,
+          payload -> {
+            try {
+              batch.add(MessageCodec.decode(payload));
+            } catch (IllegalArgumentException e) {
+              skippedCount.incrementAndGet();
+              LOGGER.warn("Skipping undecodable journal record: {}", e.getMessage());
+            }
+          });
+    } catch (CorruptRecordException e) {
+      // The records preceding the corrupt one have been read, so the batch ends with them and the
+      // checkpoint saved with it lies past the corrupt record
+      //
+      skippedCount.incrementAndGet();
+      LOGGER.warn("Skipping corrupt journal record: {}", e.getMessage());
+
+      return e.getNextOffset();
+    }
+  }
+
+  private void save(List<BaseStationMessage> batch, long nextOffset) {
+    final BatchFlushEvent flushEvent = new BatchFlushEvent();
+    boolean saved = false;
+
+    flushEvent.begin();
+
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            messageRepository.saveAll(batch);
+            checkpointRepository.save(new JournalCheckpoint(CHECKPOINT_NAME, nextOffset));
+          });
+      saved = true;
+    } finally {
+      flushEvent.complete("MessageJournalService", batch.size(), saved);
+    }
+  }
+
+  private void applied(long nextOffset, int count) {
+    appliedOffset = nextOffset;
+    appliedCount.addAndGet(count);
+    failedAttempts = 0;
+
+    try {
+      journal.deleteBefore(nextOffset);
+    } catch (IOException e) {
+      LOGGER.warn("Failed to delete applied journal segment: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Applies the next batch of durable journalled messages to the database.
+   *
+   * <p>Once a batch has failed {@value #MAX_BATCH_ATTEMPTS} times in succession, it is saved one
+   * message at a time instead. A message the database rejects as invalid, by throwing a
+   * {@link NonTransientDataAccessException} other than one for a failed resource, is skipped once
+   * a message after it has been saved. Any other failure is taken to mean that the database is
+   * unavailable, and ends the pass without moving past the failed message, which is retried.
+   *
+   * @return the number of journal records applied, or zero if there were none or the batch failed
+   */
+  int applyBatch() {
+    synchronized (applyLock) {
+      if (failedAttempts >= MAX_BATCH_ATTEMPTS) {
+        return applySingly();
+      }
+
+      final long fromOffset = appliedOffset;
+      final List<BaseStationMessage> batch = new ArrayList<>();
+      final long nextOffset;
+
+      try {
+        nextOffset = readBatch(fromOffset, applyBatchSize, batch);
+
+        if (nextOffset == fromOffset) {
+          return 0;
+        }
+
+        save(batch, nextOffset);
+      } catch (IOException | RuntimeException e) {
+        failedAttempts++;
+        applyFailureCount.incrementAndGet();
+        LOGGER.warn("Failed to apply journal from offset {}: {}", fromOffset, e.getMessage());
+
+        return 0;
+      }
+
+      applied(nextOffset, batch.size());
+
+      return Math.max(1, batch.size());
+    }
+  }
+
+  // Whether a failed save means the database will never accept the messages saved, rather than
+  // that it could not be reached
+  //
+  private static boolean isRejection(RuntimeException e) {
+    return e instanceof NonTransientDataAccessException
+        && !(e instanceof NonTransientDataAccessResourceException);
+  }
+
+  private int applySingly() {
+    final List<BaseStationMessage> rejected = new ArrayList<>();
+    long offset = appliedOffset;
+    long savedOffset = appliedOffset;
+    int savedCount = 0;
+    int rejectedCount = 0;
+
+    for (int i = 0; i < applyBatchSize; i++) {
+      final List<BaseStationMessage> message = new ArrayList<>(1);
+      final long nextOffset;
+
+      try {
+        nextOffset = readBatch(offset, 1, message);
+      } catch (IOException | RuntimeException e) {
+        break;
+      }
+
+      if (nextOffset == offset) {
+        break;
+      }
+
+      try {
+        save(message, nextOffset);
+        savedOffset = nextOffset;
+        savedCount += message.size();
+        rejectedCount += rejected.size();
+
+        for (BaseStationMessage rejectedMessage : rejected) {
+          LOGGER.warn(
+              "Skipping journalled message from {} at {} rejected by the database",
+              rejectedMessage.getIcaoAddress(),
+              rejectedMessage.getTimestamp());
+        }
+
+        rejected.clear();
+      } catch (RuntimeException e) {
+        if (!isRejection(e)) {
+          break;
+        }
+
+        rejected.addAll(message);
+      }
+
+      offset = nextOffset;
+    }
+
+    if (savedOffset == appliedOffset) {
+      applyFailureCount.incrementAndGet();
+      LOGGER.warn("Failed to apply any journalled message from offset {}", appliedOffset);
+
+      return 0;
+    }
+
+    rejectedMessageCount.addAndGet(rejectedCount);
+    applied(savedOffset, savedCount);
+
+    return Math.max(1, savedCount);
+  }
+
+  private long restoreAppliedOffset() {
+    final long checkpointOffset =
+        checkpointRepository.findById(CHECKPOINT_NAME)
+                            .map(JournalCheckpoint::getAppliedOffset)
+                            .orElse(journal.getStartOffset());
+
+    if (checkpointOffset < journal.getStartOffset()
+        || checkpointOffset > journal.getDurableOffset()) {
+      LOGGER.warn(
+          "Journal checkpoint {} lies outside the journal, applying from offset {}",
+          checkpointOffset,
+          journal.getStartOffset());
+
+      return journal.getStartOffset();
+    }
+
+    return checkpointOffset;
+  }
+
+  private boolean idle(long millis) {
+    synchronized (idleMonitor) {
+      try {
+        if (running) {
+          idleMonitor.wait(millis);
+        }
+
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+
+        return false;
+      }
+    }
+  }
+
+  private void commit() {
+    while (running && idle(commitIntervalMillis)) {
+      journal.force();
+    }
+  }
+
+  private void apply() {
+    while (running) {
+      if (applyBatch() == 0 && !idle(applyIntervalMillis)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Opens the journal, if enabled, and starts applying it from the last checkpoint. If the journal
+   * cannot be opened, the failure is logged and messages are persisted directly.
+   */
+  @Override
+  public synchronized void start() {
+    if (!enabled || running) {
+      return;
+    }
+
+    try {
+      journal = MessageJournal.open(directory, segmentBytes);
+    } catch (IOException e) {
+      LOGGER.error("Failed to open message journal, persisting directly: {}", e.getMessage());
+
+      return;
+    }
+
+    appliedOffset = restoreAppliedOffset();
+    LOGGER.info(
+        "Opened message journal with {} bytes to apply from offset {}",
+        journal.getDurableOffset() - appliedOffset,
+        appliedOffset);
+    running = true;
+    committerThread = new Thread(this::commit, "message-journal-committer");
+    committerThread.setDaemon(true);
+    committerThread.start();
+    applierThread = new Thread(this::apply, "message-journal-applier");
+    applierThread.setDaemon(true);
+    applierThread.start();
+  }
+
+  /**
+   * Stops appending, forces the journal and applies as much of it as the database accepts. Any
+   * messages not applied are applied when the journal is next started.
+   */
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+
+    synchronized (idleMonitor) {
+      running = false;
+      idleMonitor.notifyAll();
+    }
+
+    join(committerThread);
+    join(applierThread);
+    journal.close();
+
+    long drained = 0;
+
+    for (int applied = applyBatch(); applied > 0; applied = applyBatch()) {
+      drained += applied;
+    }
+
+    LOGGER.info(
+        "Closed message journal after applying {} further records, {} bytes remain",
+        drained,
+        journal.getDurableOffset() - appliedOffset);
+    committerThread = null;
+    applierThread = null;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  @ManagedAttribute(description = "Whether or not messages are journalled")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "The number of messages appended to the journal")
+  public long getAppendedCount() {
+    return appendedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages that could not be journalled")
+  public long getAppendFailureCount() {
+    return appendFailureCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of journalled messages saved to the database")
+  public long getAppliedCount() {
+    return appliedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of batches that failed to be saved")
+  public long getApplyFailureCount() {
+    return applyFailureCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of undecodable or corrupt journal records skipped")
+  public long getSkippedCount() {
+    return skippedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of journalled messages rejected by the database")
+  public long getRejectedMessageCount() {
+    return rejectedMessageCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "Whether or not the applier has repeatedly failed to apply the next batch")
+  public boolean isStalled() {
+    return failedAttempts >= MAX_BATCH_ATTEMPTS;
+  }
+
+  @ManagedAttribute(description = "The offset up to which the journal has been applied")
+  public long getAppliedOffset() {
+    return appliedOffset;
+  }
+
+  @ManagedAttribute(description = "The number of journal bytes appended but not yet applied")
+  public long getBacklogBytes() {
+    final MessageJournal currentJournal = journal;
+
+    return currentJournal == null ? 0 : currentJournal.getWriteOffset() - appliedOffset;
+  }
+
+  @ManagedAttribute(description = "The number of times the journal has been forced to disk")
+  public long getForceCount() {
+    final MessageJournal currentJournal = journal;
+
+    return currentJournal == null ? 0 : currentJournal.getForceCount();
+  }
+
+  @ManagedAttribute(description = "The number of segment files held by the journal")
+  public int getSegmentCount() {
+    final MessageJournal currentJournal = journal;
+
+    return currentJournal == null ? 0 : currentJournal.getSegmentCount();
+  }
+}
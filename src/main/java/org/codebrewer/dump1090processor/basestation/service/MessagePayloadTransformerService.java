@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2020 Mark Scott
+ * Copyright 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,9 @@ import static org.codebrewer.dump1090processor.basestation.entity.BaseStationMes
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicLong;
 import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.FrameReceivedEvent;
+import org.codebrewer.dump1090processor.basestation.jfr.MessageParseEvent;
+import org.codebrewer.dump1090processor.basestation.jfr.PipelineEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,6 +51,18 @@ public class MessagePayloadTransformerService
 
   @Override
   protected BaseStationMessage transformPayload(Object payload) {
+    final MessageParseEvent parseEvent = new MessageParseEvent();
+
+    parseEvent.begin();
+
+    final BaseStationMessage baseStationMessage = parse(payload);
+
+    parseEvent.complete(PipelineEvents.BASE_STATION_FEED, baseStationMessage);
+
+    return baseStationMessage;
+  }
+
+  private BaseStationMessage parse(Object payload) {
     if (payload == null) {
       return INVALID_MESSAGE;
     }
@@ -55,6 +70,7 @@ public class MessagePayloadTransformerService
     final String payloadString;
 
     if (payload instanceof byte[]) {
+      FrameReceivedEvent.record(PipelineEvents.BASE_STATION_FEED, ((byte[]) payload).length);
       payloadString = new String((byte[]) payload, StandardCharsets.US_ASCII);
     } else if (payload instanceof char[]) {
       payloadString = new String((char[]) payload);
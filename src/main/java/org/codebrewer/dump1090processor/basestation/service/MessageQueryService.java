@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A service that answers queries over persisted BaseStation messages, writing the matching
+ * messages to a {@link MessageRecordWriter} as they are read from the database.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=MessageQueryService",
+    description = "A service that streams persisted BaseStation messages matching a query")
+public class MessageQueryService {
+  private final BaseStationMessageRepository messageRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final AtomicLong queryCount = new AtomicLong();
+  private final AtomicLong failedQueryCount = new AtomicLong();
+  private final AtomicLong messageCount = new AtomicLong();
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param messageRepository the repository of BaseStation messages
+   * @param transactionManager the transaction manager used to delimit each query
+   */
+  @Autowired
+  public MessageQueryService(
+      BaseStationMessageRepository messageRepository,
+      PlatformTransactionManager transactionManager) {
+    this.messageRepository = messageRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+  }
+
+  /**
+   * Writes the messages matching a query.
+   *
+   * @param query the criteria selecting messages, not null
+   * @param writer the writer to which matching messages are written, not null
+   *
+   * @throws IOException if an I/O error occurs while writing
+   */
+  public void query(MessageQuery query, MessageRecordWriter writer) throws IOException {
+    queryCount.incrementAndGet();
+
+    try {
+      writer.start();
+
+      final Boolean truncated =
+          transactionTemplate.execute(
+              status ->
+                  messageRepository.streamMessages(
+                      query,
+                      messageRecord -> {
+                        try {
+                          writer.write(messageRecord);
+                          messageCount.incrementAndGet();
+                        } catch (IOException e) {
+                          throw new UncheckedIOException(e);
+                        }
+                      }));
+
+      writer.finish(Boolean.TRUE.equals(truncated));
+    } catch (UncheckedIOException e) {
+      failedQueryCount.incrementAndGet();
+      throw e.getCause();
+    } catch (IOException | RuntimeException e) {
+      failedQueryCount.incrementAndGet();
+      throw e;
+    }
+  }
+
+  @ManagedAttribute(description = "The number of queries received")
+  public long getQueryCount() {
+    return queryCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of queries that failed before completion")
+  public long getFailedQueryCount() {
+    return failedQueryCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages written in answer to queries")
+  public long getMessageCount() {
+    return messageCount.get();
+  }
+}
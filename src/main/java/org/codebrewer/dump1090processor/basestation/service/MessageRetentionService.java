@@ -0,0 +1,452 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.AircraftRollup;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.repository.AircraftRollupRepository;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PositionReportRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A service that bounds the size of the message table by rolling up and then purging old messages.
+ *
+ * <p>Messages older than a retention period are summarized into one {@link AircraftRollup} per
+ * aircraft per minute, then deleted, as are position reports older than the same period. The work
+ * is done in chunks of a bounded number of messages and reports, each in its own short
+ * transaction, so that the message writer is never held up for long.
+ *
+ * <p>When messages are persisted to the per-type schema, selected by the
+ * {@code message.store.schema} property, messages older than the retention period are also
+ * deleted from its tables, in chunks of the same size. They are not rolled up.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=MessageRetentionService",
+    description = "A service that rolls up and purges old BaseStation messages")
+public class MessageRetentionService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageRetentionService.class);
+
+  private final BaseStationMessageRepository messageRepository;
+  private final AircraftRollupRepository rollupRepository;
+  private final PositionReportRepository positionReportRepository;
+  private final PerTypeMessageRepository perTypeMessageRepository;
+  private final boolean perTypeSchema;
+  private final TransactionTemplate transactionTemplate;
+  private final long retentionDays;
+  private final int chunkSize;
+  private final Clock clock;
+  private final AtomicLong runCount = new AtomicLong();
+  private final AtomicLong totalMessagesPurged = new AtomicLong();
+  private final AtomicLong totalRollupsWritten = new AtomicLong();
+  private final AtomicLong totalPositionReportsPurged = new AtomicLong();
+  private final AtomicLong totalPerTypeMessagesPurged = new AtomicLong();
+  private volatile boolean enabled;
+  private volatile long lastRunDurationMillis;
+  private volatile long lastRunMessagesPurged;
+  private volatile long lastRunRollupsWritten;
+  private volatile long lastRunPositionReportsPurged;
+  private volatile long lastRunPerTypeMessagesPurged;
+  private volatile long lastRunChunkCount;
+  private volatile long longestChunkMillis;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>Whether or not the scheduled job runs can be specified using the {@code retention.enabled}
+   * property and defaults to false if undefined. The retention period and chunk size can be
+   * specified using the {@code retention.days} and {@code retention.chunk.size} properties.
+   *
+   * @param messageRepository the repository of BaseStation messages
+   * @param rollupRepository the repository of aircraft roll-ups
+   * @param positionReportRepository the repository of position reports
+   * @param perTypeMessageRepository the repository of BaseStation messages in the per-type schema
+   * @param transactionManager the transaction manager used to delimit each chunk of work
+   * @param schema the schema in which messages are persisted
+   * @param enabled whether or not the scheduled job runs
+   * @param retentionDays the number of days for which messages are retained
+   * @param chunkSize the maximum number of messages rolled up and purged, and of position reports
+   * and per-type messages purged, in one transaction
+   */
+  @Autowired
+  public MessageRetentionService(
+      BaseStationMessageRepository messageRepository,
+      AircraftRollupRepository rollupRepository,
+      PositionReportRepository positionReportRepository,
+      PerTypeMessageRepository perTypeMessageRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${message.store.schema:single-table}") String schema,
+      @Value("${retention.enabled:false}") boolean enabled,
+      @Value("${retention.days:7}") long retentionDays,
+      @Value("${retention.chunk.size:1000}") int chunkSize) {
+    this(
+        messageRepository,
+        rollupRepository,
+        positionReportRepository,
+        perTypeMessageRepository,
+        transactionManager,
+        "per-type".equals(schema),
+        enabled,
+        retentionDays,
+        chunkSize,
+        Clock.systemUTC());
+  }
+
+  MessageRetentionService(
+      BaseStationMessageRepository messageRepository,
+      AircraftRollupRepository rollupRepository,
+      PositionReportRepository positionReportRepository,
+      PerTypeMessageRepository perTypeMessageRepository,
+      PlatformTransactionManager transactionManager,
+      boolean perTypeSchema,
+      boolean enabled,
+      long retentionDays,
+      int chunkSize,
+      Clock clock) {
+    if (retentionDays < 1 || chunkSize < 1) {
+      throw new IllegalArgumentException("Retention days and chunk size must be positive");
+    }
+
+    LOGGER.info(
+        "Message retention: {}, days: {}, chunk size: {}, per-type schema: {}",
+        enabled,
+        retentionDays,
+        chunkSize,
+        perTypeSchema);
+    this.messageRepository = messageRepository;
+    this.rollupRepository = rollupRepository;
+    this.positionReportRepository = positionReportRepository;
+    this.perTypeMessageRepository = perTypeMessageRepository;
+    this.perTypeSchema = perTypeSchema;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.enabled = enabled;
+    this.retentionDays = retentionDays;
+    this.chunkSize = chunkSize;
+    this.clock = clock;
+  }
+
+  /**
+   * Runs the retention job if it is enabled.
+   */
+  @Scheduled(cron = "${retention.cron:0 15 * * * *}")
+  public void scheduledRun() {
+    if (enabled) {
+      run();
+    }
+  }
+
+  /**
+   * Rolls up and purges every message, and purges every position report and every message in the
+   * per-type schema, older than the retention period.
+   *
+   * @return the number of messages purged
+   */
+  @ManagedOperation(description = "Roll up and purge messages older than the retention period")
+  public synchronized long run() {
+    final Instant cutoff = clock.instant().minus(retentionDays, ChronoUnit.DAYS);
+    final long startNanos = System.nanoTime();
+    long messagesPurged = 0;
+    long rollupsWritten = 0;
+    long positionReportsPurged = 0;
+    long perTypeMessagesPurged = 0;
+    long chunkCount = 0;
+    long longestChunkNanos = 0;
+    ChunkResult chunkResult;
+
+    do {
+      final long chunkStartNanos = System.nanoTime();
+
+      chunkResult = transactionTemplate.execute(status -> processChunk(cutoff));
+      longestChunkNanos = Math.max(longestChunkNanos, System.nanoTime() - chunkStartNanos);
+      messagesPurged += chunkResult.messagesPurged;
+      rollupsWritten += chunkResult.rollupsWritten;
+      positionReportsPurged += chunkResult.positionReportsPurged;
+      perTypeMessagesPurged += chunkResult.perTypeMessagesPurged;
+      chunkCount++;
+    } while (chunkResult.messagesRead == chunkSize
+             || chunkResult.positionReportsPurged == chunkSize
+             || chunkResult.perTypeMessagesPurged == chunkSize);
+
+    lastRunDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    lastRunMessagesPurged = messagesPurged;
+    lastRunRollupsWritten = rollupsWritten;
+    lastRunPositionReportsPurged = positionReportsPurged;
+    lastRunPerTypeMessagesPurged = perTypeMessagesPurged;
+    lastRunChunkCount = chunkCount;
+    longestChunkMillis = TimeUnit.NANOSECONDS.toMillis(longestChunkNanos);
+    totalMessagesPurged.addAndGet(messagesPurged);
+    totalRollupsWritten.addAndGet(rollupsWritten);
+    totalPositionReportsPurged.addAndGet(positionReportsPurged);
+    totalPerTypeMessagesPurged.addAndGet(perTypeMessagesPurged);
+    runCount.incrementAndGet();
+    LOGGER.info(
+        "Purged {} messages, {} position reports and {} per-type messages before {} in {} chunks,"
+        + " writing {} roll-ups, in {}ms",
+        messagesPurged,
+        positionReportsPurged,
+        perTypeMessagesPurged,
+        cutoff,
+        chunkCount,
+        rollupsWritten,
+        lastRunDurationMillis);
+
+    return messagesPurged;
+  }
+
+  @ManagedAttribute(description = "Whether or not the scheduled retention job runs")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "Control whether or not the scheduled retention job runs")
+  public void setEnabled(boolean enabled) {
+    LOGGER.info("Message retention: {}", enabled);
+    this.enabled = enabled;
+  }
+
+  /**
+   * Gets the number of times the retention job has run.
+   *
+   * @return the number of times the retention job has run
+   */
+  @ManagedAttribute(description = "The number of times the retention job has run")
+  public long getRunCount() {
+    return runCount.get();
+  }
+
+  /**
+   * Gets the duration of the last run of the retention job.
+   *
+   * @return the duration of the last run, in milliseconds
+   */
+  @ManagedAttribute(description = "The duration of the last run of the retention job, in ms")
+  public long getLastRunDurationMillis() {
+    return lastRunDurationMillis;
+  }
+
+  /**
+   * Gets the number of messages purged by the last run of the retention job.
+   *
+   * @return the number of messages purged by the last run
+   */
+  @ManagedAttribute(description = "The number of messages purged by the last run")
+  public long getLastRunMessagesPurged() {
+    return lastRunMessagesPurged;
+  }
+
+  /**
+   * Gets the number of roll-ups created or updated by the last run of the retention job.
+   *
+   * @return the number of roll-ups written by the last run
+   */
+  @ManagedAttribute(description = "The number of roll-ups written by the last run")
+  public long getLastRunRollupsWritten() {
+    return lastRunRollupsWritten;
+  }
+
+  /**
+   * Gets the number of position reports purged by the last run of the retention job.
+   *
+   * @return the number of position reports purged by the last run
+   */
+  @ManagedAttribute(description = "The number of position reports purged by the last run")
+  public long getLastRunPositionReportsPurged() {
+    return lastRunPositionReportsPurged;
+  }
+
+  /**
+   * Gets the number of messages purged from the per-type schema by the last run of the retention
+   * job.
+   *
+   * @return the number of per-type messages purged by the last run
+   */
+  @ManagedAttribute(description = "The number of per-type schema messages purged by the last run")
+  public long getLastRunPerTypeMessagesPurged() {
+    return lastRunPerTypeMessagesPurged;
+  }
+
+  /**
+   * Gets the number of chunks processed by the last run of the retention job.
+   *
+   * @return the number of chunks processed by the last run
+   */
+  @ManagedAttribute(description = "The number of chunks processed by the last run")
+  public long getLastRunChunkCount() {
+    return lastRunChunkCount;
+  }
+
+  /**
+   * Gets the duration of the longest chunk processed by the last run of the retention job, which
+   * bounds the time for which the job held its transaction open.
+   *
+   * @return the duration of the longest chunk in the last run, in milliseconds
+   */
+  @ManagedAttribute(description = "The duration of the longest chunk in the last run, in ms")
+  public long getLongestChunkMillis() {
+    return longestChunkMillis;
+  }
+
+  /**
+   * Gets the number of messages purged by every run of the retention job.
+   *
+   * @return the total number of messages purged
+   */
+  @ManagedAttribute(description = "The total number of messages purged")
+  public long getTotalMessagesPurged() {
+    return totalMessagesPurged.get();
+  }
+
+  /**
+   * Gets the number of roll-ups written by every run of the retention job.
+   *
+   * @return the total number of roll-ups written
+   */
+  @ManagedAttribute(description = "The total number of roll-ups written")
+  public long getTotalRollupsWritten() {
+    return totalRollupsWritten.get();
+  }
+
+  /**
+   * Gets the number of position reports purged by every run of the retention job.
+   *
+   * @return the total number of position reports purged
+   */
+  @ManagedAttribute(description = "The total number of position reports purged")
+  public long getTotalPositionReportsPurged() {
+    return totalPositionReportsPurged.get();
+  }
+
+  /**
+   * Gets the number of messages purged from the per-type schema by every run of the retention job.
+   *
+   * @return the total number of per-type messages purged
+   */
+  @ManagedAttribute(description = "The total number of per-type schema messages purged")
+  public long getTotalPerTypeMessagesPurged() {
+    return totalPerTypeMessagesPurged.get();
+  }
+
+  // Rolls up and deletes the oldest chunk of messages, and deletes the oldest chunk of position
+  // reports and a chunk of per-type messages, received before the cutoff; called within a
+  // transaction
+  //
+  private ChunkResult processChunk(Instant cutoff) {
+    final List<BaseStationMessage> messages =
+        messageRepository.findByTimestampBefore(
+            cutoff, PageRequest.of(0, chunkSize, Sort.by("timestamp")));
+    final Map<RollupKey, AircraftRollup> rollups = new HashMap<>();
+    final List<Long> ids = new ArrayList<>(messages.size());
+
+    for (BaseStationMessage message : messages) {
+      final RollupKey key =
+          new RollupKey(
+              message.getIcaoAddress(), message.getTimestamp().truncatedTo(ChronoUnit.MINUTES));
+
+      rollups.computeIfAbsent(
+          key,
+          k -> rollupRepository.findByIcaoAddressAndPeriodStart(k.icaoAddress, k.periodStart)
+                               .orElseGet(() -> new AircraftRollup(k.icaoAddress, k.periodStart)))
+             .add(message);
+      ids.add(message.getId());
+    }
+
+    rollupRepository.saveAll(rollups.values());
+
+    final int purged = ids.isEmpty() ? 0 : messageRepository.deleteByIds(ids);
+    final int positionReportsPurged =
+        positionReportRepository.deleteOldest(cutoff.toEpochMilli(), chunkSize);
+    final int perTypeMessagesPurged =
+        perTypeSchema ? perTypeMessageRepository.deleteBefore(cutoff, chunkSize) : 0;
+
+    return new ChunkResult(
+        messages.size(), purged, rollups.size(), positionReportsPurged, perTypeMessagesPurged);
+  }
+
+  private static final class RollupKey {
+    private final String icaoAddress;
+    private final Instant periodStart;
+
+    RollupKey(String icaoAddress, Instant periodStart) {
+      this.icaoAddress = icaoAddress;
+      this.periodStart = periodStart;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+
+      if (!(o instanceof RollupKey)) {
+        return false;
+      }
+
+      final RollupKey other = (RollupKey) o;
+
+      return icaoAddress.equals(other.icaoAddress) && periodStart.equals(other.periodStart);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * icaoAddress.hashCode() + periodStart.hashCode();
+    }
+  }
+
+  private static final class ChunkResult {
+    private final int messagesRead;
+    private final int messagesPurged;
+    private final int rollupsWritten;
+    private final int positionReportsPurged;
+    private final int perTypeMessagesPurged;
+
+    ChunkResult(
+        int messagesRead,
+        int messagesPurged,
+        int rollupsWritten,
+        int positionReportsPurged,
+        int perTypeMessagesPurged) {
+      this.messagesRead = messagesRead;
+      this.messagesPurged = messagesPurged;
+      this.rollupsWritten = rollupsWritten;
+      this.positionReportsPurged = positionReportsPurged;
+      this.perTypeMessagesPurged = perTypeMessagesPurged;
+    }
+  }
+}
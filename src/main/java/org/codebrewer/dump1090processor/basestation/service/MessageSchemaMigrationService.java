@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.MigrationProgress;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.MigrationProgressRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A service that copies messages from the single {@code base_station_message} table to the tables
+ * of the per-type schema.
+ *
+ * <p>Messages are copied in order of identifier, in chunks of a bounded size, each in its own
+ * transaction. The identifier of the last message copied is saved, as a {@link MigrationProgress},
+ * in the same transaction as each chunk, so a later migration copies only the messages persisted
+ * since, even after a restart or once the per-type tables hold messages saved after the switch to
+ * the per-type schema. Since identifiers increase as messages are saved, messages saved late with
+ * an earlier timestamp, such as those held until the database was ready, applied from the journal
+ * or imported from old logs, are copied too. The switch can therefore be made after a final, short
+ * migration, and any messages persisted in the single table between that migration and the switch
+ * copied by another. To avoid duplicating messages, a first migration is refused if the per-type
+ * tables already hold messages.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Control,name=MessageSchemaMigrationService",
+    description = "A service that copies BaseStation messages to the per-type schema")
+public class MessageSchemaMigrationService {
+  /**
+   * The name under which the progress of the migration is saved.
+   */
+  public static final String PROGRESS_NAME = "per_type";
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(MessageSchemaMigrationService.class);
+
+  private final BaseStationMessageRepository messageRepository;
+  private final MigrationProgressRepository progressRepository;
+  private final PerTypeMessageRepository perTypeMessageRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final int chunkSize;
+  private final AtomicLong migratedCount = new AtomicLong();
+  private volatile boolean progressRestored;
+  private volatile boolean migrated;
+  private volatile Instant lastMigratedTimestamp;
+  private volatile long lastMigratedId;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The number of messages copied in each transaction can be specified using the
+   * {@code message.store.migration.chunk.size} property.
+   *
+   * @param messageRepository the repository of BaseStation messages in the single table
+   * @param perTypeMessageRepository the repository of BaseStation messages in the per-type schema
+   * @param progressRepository the repository holding the progress of the migration
+   * @param transactionManager the transaction manager used to delimit each chunk of work
+   * @param chunkSize the maximum number of messages copied in one transaction
+   */
+  @Autowired
+  public MessageSchemaMigrationService(
+      BaseStationMessageRepository messageRepository,
+      PerTypeMessageRepository perTypeMessageRepository,
+      MigrationProgressRepository progressRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${message.store.migration.chunk.size:5000}") int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive");
+    }
+
+    this.messageRepository = messageRepository;
+    this.perTypeMessageRepository = perTypeMessageRepository;
+    this.progressRepository = progressRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.chunkSize = chunkSize;
+  }
+
+  private void restoreProgress() {
+    final Optional<MigrationProgress> progress = progressRepository.findById(PROGRESS_NAME);
+
+    if (progress.isPresent()) {
+      migrated = true;
+      lastMigratedId = progress.get().getLastMigratedId();
+      LOGGER.info("Resuming migration after message {}", lastMigratedId);
+    }
+
+    progressRestored = true;
+  }
+
+  /**
+   * Copies the messages persisted since the last migration, or all messages if there has been
+   * none, to the per-type schema.
+   *
+   * @return the number of messages copied
+   *
+   * @throws IllegalStateException if this is the first migration and the per-type tables already
+   * hold messages
+   */
+  @ManagedOperation(description = "Copy new messages from the single table to the per-type schema")
+  public synchronized long migrate() {
+    if (!progressRestored) {
+      restoreProgress();
+    }
+
+    if (!migrated && perTypeMessageRepository.count() > 0) {
+      throw new IllegalStateException("The per-type tables already hold messages");
+    }
+
+    final long startMillis = System.currentTimeMillis();
+    final List<MessageRecord> chunk = new ArrayList<>(chunkSize);
+    long count = 0;
+    boolean more = true;
+
+    while (more) {
+      final long afterId = lastMigratedId;
+
+      chunk.clear();
+      more =
+          Boolean.TRUE.equals(
+              transactionTemplate.execute(
+                  status -> {
+                    final boolean truncated =
+                        messageRepository.streamMessagesAfterId(afterId, chunkSize, chunk::add);
+
+                    perTypeMessageRepository.saveAll(chunk);
+
+                    if (!chunk.isEmpty()) {
+                      progressRepository.save(
+                          new MigrationProgress(
+                              PROGRESS_NAME, chunk.get(chunk.size() - 1).getId()));
+                    }
+
+                    return truncated;
+                  }));
+
+      if (!chunk.isEmpty()) {
+        final MessageRecord last = chunk.get(chunk.size() - 1);
+
+        migrated = true;
+        lastMigratedTimestamp = last.getTimestamp();
+        lastMigratedId = last.getId();
+        count += chunk.size();
+        migratedCount.addAndGet(chunk.size());
+      }
+    }
+
+    LOGGER.info(
+        "Migrated {} messages to the per-type schema in {}ms",
+        count,
+        System.currentTimeMillis() - startMillis);
+
+    return count;
+  }
+
+  @ManagedAttribute(description = "The total number of messages copied to the per-type schema")
+  public long getMigratedCount() {
+    return migratedCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The timestamp of the last message copied since the application started, "
+          + "if any")
+  public String getLastMigratedTimestamp() {
+    final Instant timestamp = lastMigratedTimestamp;
+
+    return timestamp == null ? null : timestamp.toString();
+  }
+
+  @ManagedAttribute(description = "The identifier of the last message copied, if any")
+  public long getLastMigratedId() {
+    return lastMigratedId;
+  }
+}
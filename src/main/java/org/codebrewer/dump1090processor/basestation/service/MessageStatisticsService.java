@@ -0,0 +1,339 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.statistics.AircraftMessageRate;
+import org.codebrewer.dump1090processor.basestation.statistics.HyperLogLog;
+import org.codebrewer.dump1090processor.basestation.statistics.SlidingWindowCounter;
+import org.codebrewer.dump1090processor.basestation.statistics.SlidingWindowDistinctCounter;
+import org.codebrewer.dump1090processor.basestation.statistics.SlidingWindowHistogram;
+import org.codebrewer.dump1090processor.basestation.statistics.WindowStatistics;
+import org.codebrewer.dump1090processor.modes.ModeSFields;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that maintains rolling statistics for the stream of valid messages, without reference
+ * to the database.
+ *
+ * <p>Statistics are available over any window of 1 to {@value #MAX_WINDOW_MINUTES} minutes, at a
+ * granularity of {@value #BUCKET_SECONDS} seconds. Global statistics use a fixed amount of memory;
+ * per-aircraft message rates use a fixed amount of memory per aircraft, and are discarded once an
+ * aircraft has not been heard for {@value #MAX_WINDOW_MINUTES} minutes.
+ *
+ * <p>The time from the start of the JVM to the first valid message is logged and kept, as a
+ * measure of how long the application takes to start processing a feed.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=MessageStatisticsService",
+    description = "Maintains rolling statistics for the stream of valid messages")
+public class MessageStatisticsService {
+  /**
+   * The length, in minutes, of the longest window over which statistics are available.
+   */
+  public static final int MAX_WINDOW_MINUTES = 15;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageStatisticsService.class);
+  private static final int BUCKET_SECONDS = 15;
+  private static final int BUCKET_COUNT = MAX_WINDOW_MINUTES * 60 / BUCKET_SECONDS;
+  private static final long BUCKET_MILLIS = BUCKET_SECONDS * 1000L;
+  private static final long MAX_WINDOW_MILLIS = MAX_WINDOW_MINUTES * 60_000L;
+  private static final int DISTINCT_AIRCRAFT_PRECISION = 10;
+
+  private final Clock clock;
+  private final SlidingWindowCounter messageCounter;
+  private final Map<TransmissionType, SlidingWindowCounter> transmissionTypeCounters =
+      new EnumMap<>(TransmissionType.class);
+  private final SlidingWindowDistinctCounter aircraftCounter;
+  private final SlidingWindowHistogram altitudeHistogram;
+  private final SlidingWindowHistogram groundSpeedHistogram;
+  private final Map<Integer, SlidingWindowCounter> aircraftMessageCounters = new HashMap<>();
+  private long lastExpiryMillis;
+  private volatile long firstMessageUptimeMillis = -1L;
+
+  private static long windowMillis(int windowMinutes) {
+    if (windowMinutes < 1 || windowMinutes > MAX_WINDOW_MINUTES) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Window must be between 1 and %d minutes but was %d",
+              MAX_WINDOW_MINUTES,
+              windowMinutes));
+    }
+
+    return windowMinutes * 60_000L;
+  }
+
+  @Autowired
+  public MessageStatisticsService() {
+    this(Clock.systemUTC());
+  }
+
+  MessageStatisticsService(Clock clock) {
+    final long nowMillis = clock.millis();
+
+    this.clock = clock;
+    messageCounter = new SlidingWindowCounter(BUCKET_COUNT, BUCKET_MILLIS, nowMillis);
+
+    for (TransmissionType transmissionType : TransmissionType.values()) {
+      transmissionTypeCounters.put(
+          transmissionType, new SlidingWindowCounter(BUCKET_COUNT, BUCKET_MILLIS, nowMillis));
+    }
+
+    aircraftCounter =
+        new SlidingWindowDistinctCounter(
+            BUCKET_COUNT, BUCKET_MILLIS, nowMillis, DISTINCT_AIRCRAFT_PRECISION);
+    altitudeHistogram =
+        new SlidingWindowHistogram(BUCKET_COUNT, BUCKET_MILLIS, nowMillis, 0.0, 1000.0, 46);
+    groundSpeedHistogram =
+        new SlidingWindowHistogram(BUCKET_COUNT, BUCKET_MILLIS, nowMillis, 0.0, 25.0, 25);
+    lastExpiryMillis = nowMillis;
+  }
+
+  /**
+   * Records a valid message in the rolling statistics.
+   *
+   * @param baseStationMessage a valid message, not null
+   */
+  public synchronized void record(BaseStationMessage baseStationMessage) {
+    final long nowMillis = clock.millis();
+    final String icaoAddress = baseStationMessage.getIcaoAddress();
+
+    if (firstMessageUptimeMillis < 0L) {
+      firstMessageUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+      LOGGER.info("First valid message received {}ms after JVM start", firstMessageUptimeMillis);
+    }
+
+    messageCounter.increment(nowMillis);
+
+    final int address = DomainUtils.parseIcaoAddress(icaoAddress);
+
+    if (address >= 0) {
+      aircraftCounter.add(HyperLogLog.hash(address), nowMillis);
+      aircraftMessageCounters
+          .computeIfAbsent(
+              address, k -> new SlidingWindowCounter(BUCKET_COUNT, BUCKET_MILLIS, nowMillis))
+          .increment(nowMillis);
+    }
+
+    if (baseStationMessage instanceof TransmissionMessage) {
+      final TransmissionMessage transmissionMessage = (TransmissionMessage) baseStationMessage;
+      final TransmissionType transmissionType = transmissionMessage.getTransmissionType();
+
+      if (transmissionType != null) {
+        transmissionTypeCounters.get(transmissionType).increment(nowMillis);
+      }
+
+      if (transmissionMessage.getAltitude() != null) {
+        altitudeHistogram.record(transmissionMessage.getAltitude(), nowMillis);
+      }
+
+      if (transmissionMessage.getGroundSpeed() != null) {
+        groundSpeedHistogram.record(transmissionMessage.getGroundSpeed(), nowMillis);
+      }
+    }
+
+    expireAircraft(nowMillis);
+  }
+
+  /**
+   * Gets a snapshot of the global statistics over a window.
+   *
+   * @param windowMinutes the length of the window, from 1 to {@value #MAX_WINDOW_MINUTES} minutes
+   *
+   * @return a snapshot of the statistics over the window
+   *
+   * @throws IllegalArgumentException if the window length is out of range
+   */
+  public synchronized WindowStatistics getWindowStatistics(int windowMinutes) {
+    final long windowMillis = windowMillis(windowMinutes);
+    final long nowMillis = clock.millis();
+    final Map<TransmissionType, Double> transmissionTypeRates =
+        new EnumMap<>(TransmissionType.class);
+
+    transmissionTypeCounters.forEach(
+        (type, counter) ->
+            transmissionTypeRates.put(type, counter.ratePerSecond(windowMillis, nowMillis)));
+
+    return new WindowStatistics(
+        windowMinutes,
+        messageCounter.ratePerSecond(windowMillis, nowMillis),
+        aircraftCounter.estimate(windowMillis, nowMillis),
+        transmissionTypeRates,
+        altitudeHistogram.histogram(windowMillis, nowMillis),
+        groundSpeedHistogram.histogram(windowMillis, nowMillis));
+  }
+
+  /**
+   * Gets the aircraft from which messages are being received at the highest rates.
+   *
+   * @param windowMinutes the length of the window, from 1 to {@value #MAX_WINDOW_MINUTES} minutes
+   * @param limit the maximum number of aircraft to return
+   *
+   * @return aircraft and their message rates over the window, in descending order of rate
+   *
+   * @throws IllegalArgumentException if the window length is out of range
+   */
+  public synchronized List<AircraftMessageRate> getAircraftMessageRates(
+      int windowMinutes, int limit) {
+    final long windowMillis = windowMillis(windowMinutes);
+    final long nowMillis = clock.millis();
+    final List<AircraftMessageRate> rates = new ArrayList<>(aircraftMessageCounters.size());
+
+    aircraftMessageCounters.forEach(
+        (address, counter) -> {
+          final double rate = counter.ratePerSecond(windowMillis, nowMillis);
+
+          if (rate > 0) {
+            rates.add(new AircraftMessageRate(ModeSFields.formatAddress(address), rate));
+          }
+        });
+
+    return rates.stream()
+                .sorted(Comparator.comparingDouble(AircraftMessageRate::getMessageRate).reversed())
+                .limit(Math.max(0, limit))
+                .collect(Collectors.toList());
+  }
+
+  /**
+   * Gets the rate at which messages are being received from an aircraft.
+   *
+   * @param icaoAddress the aircraft's ICAO address
+   * @param windowMinutes the length of the window, from 1 to {@value #MAX_WINDOW_MINUTES} minutes
+   *
+   * @return the mean number of messages per second received from the aircraft over the window
+   */
+  @ManagedOperation(
+      description = "The mean message rate for an aircraft over a window of 1 to 15 minutes")
+  public synchronized double getAircraftMessageRate(String icaoAddress, int windowMinutes) {
+    final long windowMillis = windowMillis(windowMinutes);
+    final int address = DomainUtils.parseIcaoAddress(icaoAddress);
+    final SlidingWindowCounter counter =
+        address < 0 ? null : aircraftMessageCounters.get(address);
+
+    return counter == null ? 0.0 : counter.ratePerSecond(windowMillis, clock.millis());
+  }
+
+  /**
+   * Gets the rate at which messages of a given transmission type are being received.
+   *
+   * @param transmissionType the name of a transmission type
+   * @param windowMinutes the length of the window, from 1 to {@value #MAX_WINDOW_MINUTES} minutes
+   *
+   * @return the mean number of messages of the transmission type per second over the window
+   */
+  @ManagedOperation(
+      description = "The mean rate of a transmission type over a window of 1 to 15 minutes")
+  public synchronized double getTransmissionTypeRate(String transmissionType, int windowMinutes) {
+    return transmissionTypeCounters.get(TransmissionType.valueOf(transmissionType))
+                                   .ratePerSecond(windowMillis(windowMinutes), clock.millis());
+  }
+
+  @ManagedAttribute(
+      description = "The time, in milliseconds after the JVM started, at which the first valid "
+          + "message was received, or -1 if none has been")
+  public long getFirstMessageUptimeMillis() {
+    return firstMessageUptimeMillis;
+  }
+
+  @ManagedAttribute(description = "The mean message rate over the last minute")
+  public double getMessageRateOneMinute() {
+    return getMessageRate(1);
+  }
+
+  @ManagedAttribute(description = "The mean message rate over the last 5 minutes")
+  public double getMessageRateFiveMinutes() {
+    return getMessageRate(5);
+  }
+
+  @ManagedAttribute(description = "The mean message rate over the last 15 minutes")
+  public double getMessageRateFifteenMinutes() {
+    return getMessageRate(15);
+  }
+
+  @ManagedAttribute(description = "The estimated number of distinct aircraft in the last minute")
+  public long getDistinctAircraftOneMinute() {
+    return getDistinctAircraft(1);
+  }
+
+  @ManagedAttribute(description = "The estimated number of distinct aircraft in the last 5 minutes")
+  public long getDistinctAircraftFiveMinutes() {
+    return getDistinctAircraft(5);
+  }
+
+  @ManagedAttribute(
+      description = "The estimated number of distinct aircraft in the last 15 minutes")
+  public long getDistinctAircraftFifteenMinutes() {
+    return getDistinctAircraft(15);
+  }
+
+  /**
+   * Gets the number of aircraft for which message rates are currently held.
+   *
+   * @return the number of aircraft for which message rates are currently held
+   */
+  @ManagedAttribute(description = "The number of aircraft for which message rates are held")
+  public synchronized int getTrackedAircraftCount() {
+    return aircraftMessageCounters.size();
+  }
+
+  private synchronized double getMessageRate(int windowMinutes) {
+    return messageCounter.ratePerSecond(windowMillis(windowMinutes), clock.millis());
+  }
+
+  private synchronized long getDistinctAircraft(int windowMinutes) {
+    return aircraftCounter.estimate(windowMillis(windowMinutes), clock.millis());
+  }
+
+  // Discards the message counters of aircraft not heard for the longest window, at most once per
+  // bucket width
+  //
+  private void expireAircraft(long nowMillis) {
+    if (nowMillis - lastExpiryMillis < BUCKET_MILLIS) {
+      return;
+    }
+
+    final Iterator<SlidingWindowCounter> iterator = aircraftMessageCounters.values().iterator();
+
+    while (iterator.hasNext()) {
+      if (nowMillis - iterator.next().getLastUpdateMillis() > MAX_WINDOW_MILLIS) {
+        iterator.remove();
+      }
+    }
+
+    lastExpiryMillis = nowMillis;
+  }
+}
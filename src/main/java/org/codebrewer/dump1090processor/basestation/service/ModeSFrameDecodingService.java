@@ -0,0 +1,379 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.codebrewer.dump1090processor.modes.ModeSFields.NO_ALTITUDE;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.modes.CprDecoder;
+import org.codebrewer.dump1090processor.modes.KnownAddressFilter;
+import org.codebrewer.dump1090processor.modes.ModeSCrc;
+import org.codebrewer.dump1090processor.modes.ModeSFields;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CrsRegistry;
+import org.geolatte.geom.crs.Geographic2DCoordinateReferenceSystem;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that decodes binary Mode S frames into {@link TransmissionMessage} entities, mapping
+ * each supported downlink format onto the BaseStation transmission type that dump1090 would use
+ * when writing the same frame to its BaseStation output.
+ *
+ * <ul>
+ *   <li>DF0/DF16 (short/long air-air surveillance): {@link TransmissionType#AIR_TO_AIR}</li>
+ *   <li>DF4/DF20 (surveillance/Comm-B altitude reply):
+ *   {@link TransmissionType#SURVEILLANCE_ALTITUDE}</li>
+ *   <li>DF5/DF21 (surveillance/Comm-B identity reply):
+ *   {@link TransmissionType#SURVEILLANCE_ID}</li>
+ *   <li>DF11 (all-call reply): {@link TransmissionType#ALL_CALL_REPLY}</li>
+ *   <li>DF17/DF18 (extended squitter): identification, surface position, airborne position and
+ *   airborne velocity messages</li>
+ * </ul>
+ *
+ * <p>Frames whose parity field holds a plain CRC are rejected if the CRC fails. Frames whose parity
+ * field is overlaid with the transponder address are accepted only if that address has recently
+ * been seen in a frame with a plain CRC. Surface positions are not decoded, because that requires
+ * a reference position.
+ *
+ * <p>Decoding is stateful (airborne positions are decoded from pairs of frames) and so is
+ * serialized.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=ModeSFrameDecodingService",
+    description = "Decodes binary Mode S frames into BaseStation messages")
+public class ModeSFrameDecodingService {
+  private static final Geographic2DCoordinateReferenceSystem COORDINATE_REFERENCE_SYSTEM =
+      CrsRegistry.getGeographicCoordinateReferenceSystemForEPSG(4326);
+  private static final int TRACKED_AIRCRAFT_CAPACITY = 8192;
+  private static final long KNOWN_ADDRESS_GENERATION_MILLIS = 60_000L;
+
+  private final CprDecoder cprDecoder = new CprDecoder(TRACKED_AIRCRAFT_CAPACITY);
+  private final KnownAddressFilter knownAddressFilter =
+      new KnownAddressFilter(KNOWN_ADDRESS_GENERATION_MILLIS);
+  private final double[] position = new double[2];
+  private final AtomicLong decodedFrameCount = new AtomicLong();
+  private final AtomicLong crcFailureCount = new AtomicLong();
+  private final AtomicLong unknownAddressCount = new AtomicLong();
+  private final AtomicLong unsupportedFrameCount = new AtomicLong();
+
+  private static Float altitudeOrNull(int altitude) {
+    return altitude == NO_ALTITUDE ? null : (float) altitude;
+  }
+
+  private static Boolean onGroundFromCapability(int capability) {
+    switch (capability) {
+      case 4:
+        return Boolean.TRUE;
+      case 5:
+        return Boolean.FALSE;
+      default:
+        return null;
+    }
+  }
+
+  private static Boolean onGroundFromFlightStatus(int flightStatus) {
+    switch (flightStatus) {
+      case 0:
+      case 2:
+        return Boolean.FALSE;
+      case 1:
+      case 3:
+        return Boolean.TRUE;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isEmergencySquawk(int squawk) {
+    return squawk == 7500 || squawk == 7600 || squawk == 7700;
+  }
+
+  /**
+   * Decodes a Mode S frame.
+   *
+   * @param frame a buffer holding the frame's bytes, not null
+   * @param length the number of bytes in the frame
+   * @param timestamp the instant at which the frame was received, not null
+   *
+   * @return a {@code TransmissionMessage} decoded from the frame, or null if the frame fails its
+   * CRC, has an unexpected length or carries no information that maps onto a BaseStation message
+   */
+  public synchronized BaseStationMessage decodeFrame(byte[] frame, int length, Instant timestamp) {
+    final int downlinkFormat = ModeSFields.downlinkFormat(frame);
+
+    if (length != ModeSFields.frameLength(downlinkFormat)) {
+      unsupportedFrameCount.incrementAndGet();
+
+      return null;
+    }
+
+    final long timeMillis = timestamp.toEpochMilli();
+    final int residual = ModeSCrc.residual(frame, 0, length);
+    final TransmissionMessage message;
+
+    switch (downlinkFormat) {
+      case 0:
+      case 4:
+      case 5:
+      case 16:
+      case 20:
+      case 21:
+        if (!knownAddressFilter.isKnown(residual, timeMillis)) {
+          unknownAddressCount.incrementAndGet();
+
+          return null;
+        }
+
+        message = decodeSurveillanceReply(downlinkFormat, frame, residual, timestamp);
+        break;
+      case 11:
+        // The low 7 bits of the residual may hold an interrogator identifier
+        //
+        if ((residual & ~0x7F) != 0) {
+          crcFailureCount.incrementAndGet();
+
+          return null;
+        }
+
+        knownAddressFilter.markSeen(ModeSFields.announcedAddress(frame), timeMillis);
+        message =
+            new TransmissionMessage.Builder(
+                ModeSFields.formatAddress(ModeSFields.announcedAddress(frame)), timestamp)
+                .transmissionType(TransmissionType.ALL_CALL_REPLY)
+                .onGround(onGroundFromCapability(frame[0] & 0x07))
+                .build();
+        break;
+      case 17:
+      case 18:
+        if (residual != 0) {
+          crcFailureCount.incrementAndGet();
+
+          return null;
+        }
+
+        // DF18 frames with control field values other than 0 (ADS-B) and 6 (ADS-R) either carry
+        // a non-ICAO address or are TIS-B messages
+        //
+        if (downlinkFormat == 18 && (frame[0] & 0x07) != 0 && (frame[0] & 0x07) != 6) {
+          unsupportedFrameCount.incrementAndGet();
+
+          return null;
+        }
+
+        knownAddressFilter.markSeen(ModeSFields.announcedAddress(frame), timeMillis);
+        message = decodeExtendedSquitter(frame, timestamp, timeMillis);
+        break;
+      default:
+        message = null;
+    }
+
+    if (message == null) {
+      unsupportedFrameCount.incrementAndGet();
+    } else {
+      decodedFrameCount.incrementAndGet();
+    }
+
+    return message;
+  }
+
+  private TransmissionMessage decodeSurveillanceReply(
+      int downlinkFormat, byte[] frame, int address, Instant timestamp) {
+    final TransmissionMessage.Builder builder =
+        new TransmissionMessage.Builder(ModeSFields.formatAddress(address), timestamp);
+    final int code13 = (frame[2] & 0x1F) << 8 | frame[3] & 0xFF;
+
+    if (downlinkFormat == 0 || downlinkFormat == 16) {
+      return builder.transmissionType(TransmissionType.AIR_TO_AIR)
+                    .altitude(altitudeOrNull(ModeSFields.decodeAc13Altitude(code13)))
+                    .onGround((frame[0] & 0x04) != 0)
+                    .build();
+    }
+
+    // The flight status field encodes alert, SPI and airborne/on-ground conditions
+    //
+    final int flightStatus = frame[0] & 0x07;
+
+    builder.alert(flightStatus >= 2 && flightStatus <= 4)
+           .identActive(flightStatus == 4 || flightStatus == 5)
+           .onGround(onGroundFromFlightStatus(flightStatus));
+
+    if (downlinkFormat == 4 || downlinkFormat == 20) {
+      return builder.transmissionType(TransmissionType.SURVEILLANCE_ALTITUDE)
+                    .altitude(altitudeOrNull(ModeSFields.decodeAc13Altitude(code13)))
+                    .build();
+    }
+
+    final int squawk = ModeSFields.decodeSquawk(code13);
+
+    return builder.transmissionType(TransmissionType.SURVEILLANCE_ID)
+                  .squawk((short) squawk)
+                  .emergency(isEmergencySquawk(squawk))
+                  .build();
+  }
+
+  private TransmissionMessage decodeExtendedSquitter(
+      byte[] frame, Instant timestamp, long timeMillis) {
+    final int address = ModeSFields.announcedAddress(frame);
+    final int typeCode = (frame[4] & 0xFF) >>> 3;
+    final TransmissionMessage.Builder builder =
+        new TransmissionMessage.Builder(ModeSFields.formatAddress(address), timestamp);
+
+    if (typeCode >= 1 && typeCode <= 4) {
+      builder.transmissionType(TransmissionType.IDENTIFICATION_AND_CATEGORY)
+             .callSign(ModeSFields.decodeCallSign(frame));
+
+      return builder.build();
+    } else if (typeCode >= 5 && typeCode <= 8) {
+      final float groundSpeed =
+          ModeSFields.decodeMovement((frame[4] & 0x07) << 4 | (frame[5] & 0xFF) >>> 4);
+
+      builder.transmissionType(TransmissionType.SURFACE_POSITION)
+             .groundSpeed(groundSpeed < 0 ? null : groundSpeed)
+             .onGround(Boolean.TRUE);
+
+      if ((frame[5] & 0x08) != 0) {
+        builder.track(((frame[5] & 0x07) << 4 | (frame[6] & 0xFF) >>> 4) * 360.0f / 128);
+      }
+
+      return builder.build();
+    } else if (typeCode >= 9 && typeCode <= 18) {
+      final int surveillanceStatus = (frame[4] >>> 1) & 0x03;
+      final int ac12 = (frame[5] & 0xFF) << 4 | (frame[6] & 0xFF) >>> 4;
+      final boolean odd = (frame[6] & 0x04) != 0;
+      final int encodedLatitude =
+          (frame[6] & 0x03) << 15 | (frame[7] & 0xFF) << 7 | (frame[8] & 0xFF) >>> 1;
+      final int encodedLongitude =
+          (frame[8] & 0x01) << 16 | (frame[9] & 0xFF) << 8 | frame[10] & 0xFF;
+
+      builder.transmissionType(TransmissionType.AIRBORNE_POSITION)
+             .altitude(altitudeOrNull(ModeSFields.decodeAc12Altitude(ac12)))
+             .emergency(surveillanceStatus == 1)
+             .alert(surveillanceStatus == 2)
+             .identActive(surveillanceStatus == 3)
+             .onGround(Boolean.FALSE);
+
+      if (cprDecoder.decodeAirborne(
+          address, odd, encodedLatitude, encodedLongitude, timeMillis, position)) {
+        builder.position(
+            new Point<>(new G2D(position[1], position[0]), COORDINATE_REFERENCE_SYSTEM));
+      }
+
+      return builder.build();
+    } else if (typeCode == 19) {
+      return decodeAirborneVelocity(frame, builder);
+    }
+
+    return null;
+  }
+
+  private TransmissionMessage decodeAirborneVelocity(
+      byte[] frame, TransmissionMessage.Builder builder) {
+    final int subtype = frame[4] & 0x07;
+
+    if (subtype < 1 || subtype > 4) {
+      return null;
+    }
+
+    builder.transmissionType(TransmissionType.AIRBORNE_VELOCITY);
+
+    // Subtypes 1 and 2 report ground speed as east-west and north-south components (subtype 2
+    // being for supersonic aircraft); subtypes 3 and 4 report airspeed and heading, which have no
+    // BaseStation equivalent
+    //
+    if (subtype <= 2) {
+      final int eastWest = (frame[5] & 0x03) << 8 | frame[6] & 0xFF;
+      final int northSouth = (frame[7] & 0x7F) << 3 | (frame[8] & 0xFF) >>> 5;
+
+      if (eastWest != 0 && northSouth != 0) {
+        final int multiplier = subtype == 2 ? 4 : 1;
+        final int vx = (eastWest - 1) * multiplier * ((frame[5] & 0x04) != 0 ? -1 : 1);
+        final int vy = (northSouth - 1) * multiplier * ((frame[7] & 0x80) != 0 ? -1 : 1);
+        double track = Math.toDegrees(Math.atan2(vx, vy));
+
+        if (track < 0) {
+          track += 360;
+        }
+
+        builder.groundSpeed((float) Math.sqrt(vx * vx + vy * vy)).track((float) track);
+      }
+    }
+
+    final int verticalRate = (frame[8] & 0x07) << 6 | (frame[9] & 0xFF) >>> 2;
+
+    if (verticalRate != 0) {
+      builder.verticalRate(
+          (short) ((verticalRate - 1) * 64 * ((frame[8] & 0x08) != 0 ? -1 : 1)));
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Gets the total number of frames decoded into BaseStation messages since application startup.
+   *
+   * @return the total number of frames decoded since application startup
+   */
+  @ManagedAttribute(
+      description = "The total number of frames decoded into messages since application startup")
+  public long getDecodedFrameCount() {
+    return decodedFrameCount.get();
+  }
+
+  /**
+   * Gets the total number of frames rejected since application startup because their CRC was
+   * found to be incorrect.
+   *
+   * @return the total number of frames that failed their CRC since application startup
+   */
+  @ManagedAttribute(
+      description = "The total number of frames that failed their CRC since application startup")
+  public long getCrcFailureCount() {
+    return crcFailureCount.get();
+  }
+
+  /**
+   * Gets the total number of frames rejected since application startup because the address
+   * recovered from their parity field had not recently been seen in a frame with a plain CRC.
+   *
+   * @return the total number of frames rejected for having an unknown address
+   */
+  @ManagedAttribute(
+      description = "The total number of frames with an unknown address since application startup")
+  public long getUnknownAddressCount() {
+    return unknownAddressCount.get();
+  }
+
+  /**
+   * Gets the total number of valid frames received since application startup that have a
+   * downlink format or type code not mapped onto a BaseStation message.
+   *
+   * @return the total number of unsupported frames received since application startup
+   */
+  @ManagedAttribute(
+      description = "The total number of unsupported frames received since application startup")
+  public long getUnsupportedFrameCount() {
+    return unsupportedFrameCount.get();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.state.PositionExtrapolator;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that predicts the current, or another recent, position of every aircraft being
+ * tracked, so that clients polling for live positions need not extrapolate them themselves.
+ *
+ * <p>Positions are dead-reckoned from each aircraft's last reported position by a
+ * {@link PositionExtrapolator}, and each prediction carries the age of the position from which it
+ * was made.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=PositionExtrapolationService",
+    description = "Predicts the positions of aircraft between position reports")
+public class PositionExtrapolationService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PositionExtrapolationService.class);
+
+  private final AircraftStateService aircraftStateService;
+  private final double maxSeconds;
+  private final Clock clock;
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong predictionCount = new AtomicLong();
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>The greatest time by which a position is extrapolated can be specified using the
+   * {@code aircraft.state.extrapolation.max.seconds} property and defaults to 10 seconds if
+   * undefined.
+   *
+   * @param aircraftStateService a service maintaining aircraft state
+   * @param maxSeconds the greatest time, in seconds, by which a position is extrapolated
+   *
+   * @throws IllegalArgumentException if the greatest time is negative
+   */
+  @Autowired
+  public PositionExtrapolationService(
+      AircraftStateService aircraftStateService,
+      @Value("${aircraft.state.extrapolation.max.seconds:10}") double maxSeconds) {
+    this(aircraftStateService, maxSeconds, Clock.systemUTC());
+  }
+
+  PositionExtrapolationService(
+      AircraftStateService aircraftStateService, double maxSeconds, Clock clock) {
+    if (!(maxSeconds >= 0.0)) {
+      throw new IllegalArgumentException(
+          "Greatest extrapolation time must not be negative: " + maxSeconds);
+    }
+
+    LOGGER.info("PositionExtrapolationService: max extrapolation {}s", maxSeconds);
+    this.aircraftStateService = aircraftStateService;
+    this.maxSeconds = maxSeconds;
+    this.clock = clock;
+  }
+
+  /**
+   * Predicts the position of every aircraft whose position is known.
+   *
+   * @param timestamp the time for which positions are predicted, or null for the current time
+   *
+   * @return the predicted position of every aircraft whose position is known
+   */
+  public List<PredictedPosition> predict(Instant timestamp) {
+    final Instant time = timestamp == null ? Instant.ofEpochMilli(clock.millis()) : timestamp;
+    final List<PredictedPosition> predictions =
+        new PositionExtrapolator(aircraftStateService.getAllAircraft()).predict(time, maxSeconds);
+
+    requestCount.incrementAndGet();
+    predictionCount.addAndGet(predictions.size());
+
+    return predictions;
+  }
+
+  @ManagedAttribute(description = "The longest time, in seconds, positions are extrapolated")
+  public double getMaxSeconds() {
+    return maxSeconds;
+  }
+
+  @ManagedAttribute(description = "The number of requests for predicted positions")
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of positions predicted")
+  public long getPredictionCount() {
+    return predictionCount.get();
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import org.codebrewer.dump1090processor.basestation.state.PositionSnapshot;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+import org.codebrewer.dump1090processor.basestation.wire.PositionFrameCodec;
+import org.codebrewer.dump1090processor.basestation.wire.WireBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that publishes the predicted positions of every tracked aircraft once per tick, so
+ * that the cost of serialising them is paid once however many clients poll for them.
+ *
+ * <p>On each tick the positions are predicted for the current time and serialised into a
+ * {@link PositionSnapshot}, which replaces the one before it. Since positions are predicted for
+ * the time of each tick, they differ from those of the previous tick whenever any aircraft has a
+ * position, even if no message has been received since. Only when no aircraft has a position, and
+ * none had at the previous tick, is the previous snapshot kept, so that its entity tags remain
+ * current.
+ *
+ * <p>Clients polling for the current positions therefore see them advance once per tick, however
+ * often they poll; clients wanting smoother updates need a shorter interval between ticks.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=PositionSnapshotService",
+    description = "Publishes the serialised positions of every aircraft once per tick")
+public class PositionSnapshotService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PositionSnapshotService.class);
+
+  private final PositionExtrapolationService positionExtrapolationService;
+  private final ObjectMapper objectMapper;
+  private final boolean enabled;
+  private final Clock clock;
+  private final String publisherId;
+  private final WireBuffer buffer = new WireBuffer(8192);
+  private final AtomicLong tickCount = new AtomicLong();
+  private final AtomicLong publishedCount = new AtomicLong();
+  private final AtomicLong unchangedCount = new AtomicLong();
+  private final AtomicLong requestCount = new AtomicLong();
+  private volatile PositionSnapshot snapshot;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>Whether or not snapshots are published can be specified using the
+   * {@code aircraft.snapshot.enabled} property and defaults to true if undefined. The interval
+   * between ticks can be specified using the {@code aircraft.snapshot.interval.millis} property
+   * and defaults to one second if undefined.
+   *
+   * @param positionExtrapolationService a service predicting the positions of aircraft
+   * @param objectMapper the mapper used to write positions as JSON
+   * @param enabled whether or not snapshots are published
+   */
+  @Autowired
+  public PositionSnapshotService(
+      PositionExtrapolationService positionExtrapolationService,
+      ObjectMapper objectMapper,
+      @Value("${aircraft.snapshot.enabled:true}") boolean enabled) {
+    this(positionExtrapolationService, objectMapper, enabled, Clock.systemUTC());
+  }
+
+  PositionSnapshotService(
+      PositionExtrapolationService positionExtrapolationService,
+      ObjectMapper objectMapper,
+      boolean enabled,
+      Clock clock) {
+    LOGGER.info("PositionSnapshotService: enabled {}", enabled);
+    this.positionExtrapolationService = positionExtrapolationService;
+    this.objectMapper = objectMapper;
+    this.enabled = enabled;
+    this.clock = clock;
+
+    // Entity tags must not be reused by a later run of the application, whose sequence numbers
+    // start again from one
+    //
+    this.publisherId = Long.toString(clock.millis(), Character.MAX_RADIX);
+  }
+
+  static byte[] gzip(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+
+    try (OutputStream outputStream = new GZIPOutputStream(compressed)) {
+      outputStream.write(bytes);
+    }
+
+    return compressed.toByteArray();
+  }
+
+  /**
+   * Publishes a snapshot, if snapshots are enabled.
+   */
+  @Scheduled(fixedDelayString = "${aircraft.snapshot.interval.millis:1000}")
+  public void scheduledRun() {
+    if (enabled) {
+      try {
+        publish();
+      } catch (IOException e) {
+        LOGGER.warn("Unable to publish position snapshot", e);
+      }
+    }
+  }
+
+  /**
+   * Predicts the positions of every aircraft for the current time and publishes them as the
+   * current snapshot.
+   *
+   * @return the current snapshot, which is the previous one if neither it nor this tick has any
+   * positions
+   *
+   * @throws IOException if the positions cannot be serialised
+   */
+  public synchronized PositionSnapshot publish() throws IOException {
+    final Instant timestamp = Instant.ofEpochMilli(clock.millis());
+    final List<PredictedPosition> positions = positionExtrapolationService.predict(timestamp);
+    final PositionSnapshot previous = snapshot;
+
+    tickCount.incrementAndGet();
+
+    if (positions.isEmpty() && previous != null && previous.getAircraftCount() == 0) {
+      unchangedCount.incrementAndGet();
+
+      return previous;
+    }
+
+    final byte[] json = objectMapper.writeValueAsBytes(positions);
+
+    buffer.reset();
+    PositionFrameCodec.encode(timestamp, positions, buffer);
+
+    final byte[] binary = buffer.toByteArray();
+
+    snapshot =
+        new PositionSnapshot(
+            publisherId,
+            previous == null ? 1L : previous.getSequence() + 1L,
+            timestamp,
+            positions.size(),
+            json,
+            gzip(json),
+            binary,
+            gzip(binary));
+    publishedCount.incrementAndGet();
+
+    return snapshot;
+  }
+
+  /**
+   * Gets the current snapshot.
+   *
+   * @return the most recently published snapshot, or null if none has been published
+   */
+  public PositionSnapshot getSnapshot() {
+    requestCount.incrementAndGet();
+
+    return snapshot;
+  }
+
+  @ManagedAttribute(description = "Whether or not snapshots are published")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "The number of ticks")
+  public long getTickCount() {
+    return tickCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of snapshots published")
+  public long getPublishedCount() {
+    return publishedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of ticks on which no aircraft had a position")
+  public long getUnchangedCount() {
+    return unchangedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of requests for the current snapshot")
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  @ManagedAttribute(description = "The size of the current snapshot as JSON, in bytes")
+  public long getSnapshotBytes() {
+    final PositionSnapshot current = snapshot;
+
+    return current == null ? 0L : current.getBody(false, false).length;
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.domain.DomainUtils;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.proximity.ProximityEvent;
+import org.codebrewer.dump1090processor.basestation.proximity.ProximityGrid;
+import org.codebrewer.dump1090processor.geo.GeoCoordinates;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that raises events when two airborne aircraft are, or are predicted within a short
+ * look-ahead time to be, closer to each other than a lateral and a vertical separation.
+ *
+ * <p>Positions, altitudes and velocities from transmission messages are held in a
+ * {@link ProximityGrid}, so each position update is checked only against nearby aircraft rather
+ * than every aircraft being tracked. Aircraft reported to be on the ground are not tracked.
+ *
+ * <p>Events are de-duplicated by pair of aircraft: once an event has been raised for a pair, no
+ * further event is raised for it until it has gone unreported for the de-duplication interval,
+ * unless a predicted loss of separation becomes an actual one. Each event raised is logged and the
+ * most recent are retained.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=ProximityDetectionService",
+    description = "Detects aircraft losing or predicted to lose separation")
+public class ProximityDetectionService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProximityDetectionService.class);
+
+  private final boolean enabled;
+  private final long dedupeMillis;
+  private final int retainedEventCount;
+  private final ProximityGrid grid;
+  private final Map<Long, PairState> pairs = new HashMap<>();
+  private final Deque<ProximityEvent> recentEvents = new ArrayDeque<>();
+  private final List<ProximityEvent> detected = new ArrayList<>();
+
+  private final double[] coordinates = new double[2];
+  private final AtomicLong positionUpdateCount = new AtomicLong();
+  private final AtomicLong pairCheckCount = new AtomicLong();
+  private final AtomicLong detectedCount = new AtomicLong();
+  private final AtomicLong raisedCount = new AtomicLong();
+  private final AtomicLong lossOfSeparationCount = new AtomicLong();
+  private final AtomicLong expiredCount = new AtomicLong();
+  private long newestMillis = Long.MIN_VALUE;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param enabled whether or not aircraft are checked at all
+   * @param lateralSeparation the lateral separation, in nautical miles
+   * @param verticalSeparation the vertical separation, in feet
+   * @param lookAheadSeconds the time, in seconds, over which aircraft are projected forward
+   * @param maxClosingSpeed the greatest speed at which two aircraft are expected to close on each
+   * other, in knots
+   * @param maxAgeSeconds the age, in seconds, beyond which a position or altitude is not used
+   * @param dedupeSeconds the time, in seconds, for which further events for the same pair of
+   * aircraft are suppressed
+   * @param retainedEventCount the number of most recent events retained
+   *
+   * @throws IllegalArgumentException if any limit is out of range
+   */
+  @Autowired
+  public ProximityDetectionService(
+      @Value("${proximity.enabled:false}") boolean enabled,
+      @Value("${proximity.lateral.nm:3}") double lateralSeparation,
+      @Value("${proximity.vertical.feet:1000}") double verticalSeparation,
+      @Value("${proximity.lookahead.seconds:60}") long lookAheadSeconds,
+      @Value("${proximity.closing.speed.max.knots:1000}") double maxClosingSpeed,
+      @Value("${proximity.position.max.age.seconds:15}") long maxAgeSeconds,
+      @Value("${proximity.dedupe.seconds:120}") long dedupeSeconds,
+      @Value("${proximity.events.retained:100}") int retainedEventCount) {
+    if (dedupeSeconds < 0L || retainedEventCount < 0) {
+      throw new IllegalArgumentException(
+          "De-duplication interval and retained event count must not be negative");
+    }
+
+    grid =
+        new ProximityGrid(
+            lateralSeparation,
+            verticalSeparation,
+            lookAheadSeconds,
+            maxClosingSpeed,
+            maxAgeSeconds);
+    LOGGER.info(
+        "ProximityDetectionService: enabled {}, separation {}nm/{}ft, look-ahead {}s, "
+        + "cell size {}nm, max age {}s, de-duplication {}s",
+        enabled,
+        lateralSeparation,
+        verticalSeparation,
+        lookAheadSeconds,
+        String.format("%.1f", grid.getCellSize()),
+        maxAgeSeconds,
+        dedupeSeconds);
+    this.enabled = enabled;
+    this.dedupeMillis = TimeUnit.SECONDS.toMillis(dedupeSeconds);
+    this.retainedEventCount = retainedEventCount;
+  }
+
+  private static long pairKey(String icaoAddress, String otherIcaoAddress) {
+    final int address = DomainUtils.parseIcaoAddress(icaoAddress);
+    final int otherAddress = DomainUtils.parseIcaoAddress(otherIcaoAddress);
+
+    return (long) Math.min(address, otherAddress) << 24 | Math.max(address, otherAddress);
+  }
+
+  /**
+   * Applies a message to the aircraft being tracked, checking any position update for aircraft
+   * losing separation.
+   *
+   * @param baseStationMessage a valid message, not null
+   *
+   * @return the events raised, which are de-duplicated, and usually empty
+   */
+  public synchronized List<ProximityEvent> update(BaseStationMessage baseStationMessage) {
+    if (!enabled || !(baseStationMessage instanceof TransmissionMessage)) {
+      return Collections.emptyList();
+    }
+
+    final TransmissionMessage message = (TransmissionMessage) baseStationMessage;
+    final int address = DomainUtils.parseIcaoAddress(message.getIcaoAddress());
+
+    if (address < 0) {
+      return Collections.emptyList();
+    }
+
+    if (Boolean.TRUE.equals(message.getOnGround())) {
+      grid.remove(address);
+
+      return Collections.emptyList();
+    }
+
+    final long timeMillis = message.getTimestamp().toEpochMilli();
+    final Float altitude = message.getAltitude();
+    final Point<G2D> position = message.getPosition();
+
+    newestMillis = Math.max(newestMillis, timeMillis);
+
+    if (message.getGroundSpeed() != null
+        || message.getTrack() != null
+        || message.getVerticalRate() != null) {
+      grid.updateVelocity(
+          address,
+          message.getGroundSpeed() == null ? Float.NaN : message.getGroundSpeed(),
+          message.getTrack() == null ? Float.NaN : message.getTrack(),
+          message.getVerticalRate() == null ? Float.NaN : message.getVerticalRate());
+    }
+
+    if (position == null || position.isEmpty()) {
+      if (altitude != null) {
+        grid.updateAltitude(address, timeMillis, altitude);
+      }
+
+      return Collections.emptyList();
+    }
+
+    GeoCoordinates.readLongitudeLatitude(position, coordinates);
+    detected.clear();
+    positionUpdateCount.incrementAndGet();
+    pairCheckCount.addAndGet(
+        grid.updatePosition(
+            address,
+            timeMillis,
+            coordinates[1],
+            coordinates[0],
+            altitude == null ? Float.NaN : altitude,
+            detected));
+
+    if (detected.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    final List<ProximityEvent> raised = new ArrayList<>();
+
+    for (ProximityEvent event : detected) {
+      detectedCount.incrementAndGet();
+
+      if (shouldRaise(event, timeMillis)) {
+        raise(event);
+        raised.add(event);
+      }
+    }
+
+    return raised;
+  }
+
+  /**
+   * Stops tracking aircraft whose positions are too old to be used, and forgets pairs of aircraft
+   * not reported within the de-duplication interval.
+   */
+  @Scheduled(fixedDelayString = "${proximity.expiry.interval.millis:10000}")
+  public synchronized void expireAircraft() {
+    expiredCount.addAndGet(grid.expire());
+    pairs.values().removeIf(pair -> newestMillis - pair.lastDetectedMillis >= dedupeMillis);
+  }
+
+  /**
+   * Gets the most recently raised events.
+   *
+   * @return the most recently raised events, oldest first
+   */
+  public synchronized List<ProximityEvent> getRecentEvents() {
+    return new ArrayList<>(recentEvents);
+  }
+
+  private boolean shouldRaise(ProximityEvent event, long timeMillis) {
+    final long key = pairKey(event.getIcaoAddress(), event.getOtherIcaoAddress());
+    final PairState pair = pairs.get(key);
+
+    if (pair == null || timeMillis - pair.lastDetectedMillis >= dedupeMillis) {
+      pairs.put(key, new PairState(timeMillis, event.isLossOfSeparation()));
+
+      return true;
+    }
+
+    pair.lastDetectedMillis = Math.max(pair.lastDetectedMillis, timeMillis);
+
+    if (event.isLossOfSeparation() && !pair.lossOfSeparation) {
+      pair.lossOfSeparation = true;
+
+      return true;
+    }
+
+    return false;
+  }
+
+  private void raise(ProximityEvent event) {
+    raisedCount.incrementAndGet();
+
+    if (event.isLossOfSeparation()) {
+      lossOfSeparationCount.incrementAndGet();
+    }
+
+    LOGGER.warn("Proximity alert: {}", event);
+
+    if (retainedEventCount > 0) {
+      if (recentEvents.size() == retainedEventCount) {
+        recentEvents.removeFirst();
+      }
+
+      recentEvents.addLast(event);
+    }
+  }
+
+  @ManagedAttribute(description = "Whether or not aircraft are checked for proximity")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "The number of airborne aircraft being tracked")
+  public synchronized int getAircraftCount() {
+    return grid.size();
+  }
+
+  @ManagedAttribute(description = "The number of grid cells holding at least one aircraft")
+  public synchronized int getOccupiedCellCount() {
+    return grid.getOccupiedCellCount();
+  }
+
+  @ManagedAttribute(description = "The number of position updates checked")
+  public long getPositionUpdateCount() {
+    return positionUpdateCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of pairs of aircraft checked")
+  public long getPairCheckCount() {
+    return pairCheckCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of losses of separation detected or predicted")
+  public long getDetectedCount() {
+    return detectedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of events raised after de-duplication")
+  public long getRaisedCount() {
+    return raisedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of events raised for actual loss of separation")
+  public long getLossOfSeparationCount() {
+    return lossOfSeparationCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of aircraft no longer tracked after going unheard")
+  public long getExpiredCount() {
+    return expiredCount.get();
+  }
+
+  private static final class PairState {
+    private long lastDetectedMillis;
+    private boolean lossOfSeparation;
+
+    private PairState(long lastDetectedMillis, boolean lossOfSeparation) {
+      this.lastDetectedMillis = lastDetectedMillis;
+      this.lossOfSeparation = lossOfSeparation;
+    }
+  }
+}
@@ -0,0 +1,633 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.codebrewer.dump1090processor.basestation.domain.Hashing;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.BatchFlushEvent;
+import org.codebrewer.dump1090processor.basestation.jfr.QueueHandOffEvent;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.reactive.TcpLineFlux;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+/**
+ * A demand-driven alternative to the Spring Integration message pipeline, built with Project
+ * Reactor and selected by setting the {@code pipeline.mode} property to {@code reactive}.
+ *
+ * <p>Lines of the BaseStation feed pass through the same stages as in the integration pipeline:
+ * empty lines are dropped, lines are parsed as messages, and invalid messages and those implying
+ * impossible aircraft movement are dropped. Messages from the other feeds, arriving on the inbound
+ * message channel, are merged with them and each message is routed to one of a fixed number of
+ * rails by its ICAO address, so the messages of an aircraft are handled in order by one rail
+ * thread. Each rail sends its messages to the channel named by
+ * {@code BASE_STATION_MESSAGE_CHANNEL_NAME} and saves them to the database in batches, each in
+ * its own transaction, on threads that may block, leaving out those that the
+ * {@link RedundantMessageSuppressionService} finds carry no new information. When messages are
+ * saved to the single table and the {@link MessageJournalService} is running, they are appended
+ * to its journal instead, as in the integration pipeline, and only those it cannot journal are
+ * saved directly.
+ *
+ * <p>No stage holds more than a bounded number of messages, and the feed is read only as fast as
+ * the rails request messages, so a slow database holds back reading the feed rather than filling
+ * memory or shedding messages. Messages from the other feeds are held in a bounded buffer and are
+ * dropped when it is full.
+ */
+@Service
+@ConditionalOnProperty(name = "pipeline.mode", havingValue = "reactive")
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=ReactivePipelineService",
+    description = "A demand-driven pipeline from the message feeds to the message consumers")
+public class ReactivePipelineService implements SmartLifecycle {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReactivePipelineService.class);
+
+  // Start before, and stop after, the message producers that feed the pipeline
+  //
+  private static final int PHASE = Integer.MIN_VALUE / 2;
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10L);
+  private static final Duration RECONNECT_INTERVAL = Duration.ofSeconds(5L);
+  private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5L);
+
+  // The number of messages requested in advance by each stage of a rail
+  //
+  private static final int RAIL_PREFETCH = 64;
+
+  private final EmptyMessageFilteringService emptyMessageFilteringService;
+  private final MessagePayloadTransformerService messagePayloadTransformerService;
+  private final InvalidMessageFilteringService invalidMessageFilteringService;
+  private final ImplausibleMessageFilteringService implausibleMessageFilteringService;
+  private final RedundantMessageSuppressionService redundantMessageSuppressionService;
+  private final MessageChannel outputChannel;
+  private final Consumer<List<BaseStationMessage>> batchSaver;
+  private final Function<Scheduler, Flux<byte[]>> feed;
+  private final int inboundCapacity;
+  private final int railCount;
+  private final int batchSize;
+  private final Duration batchMaxWait;
+  private final Object inboundLock = new Object();
+  private final AtomicLong readCount = new AtomicLong();
+  private final AtomicLong inboundOverflowCount = new AtomicLong();
+  private final AtomicLong dispatchedCount = new AtomicLong();
+  private final AtomicLong dispatchFailureCount = new AtomicLong();
+  private final AtomicLong persistedCount = new AtomicLong();
+  private final AtomicLong batchCount = new AtomicLong();
+  private final AtomicLong persistFailureCount = new AtomicLong();
+  private volatile boolean persistMessages;
+  private volatile boolean feedEnabled;
+  private volatile boolean running;
+  private Sinks.Many<Boolean> feedSwitch;
+  private Sinks.Many<BaseStationMessage> inboundSink;
+  private Sinks.Empty<Void> stopSignal;
+  private Scheduler readerScheduler;
+  private Scheduler railScheduler;
+  private Scheduler persistenceScheduler;
+  private Disposable subscription;
+  private CountDownLatch terminated;
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>The BaseStation feed is read from the host and port given by the {@code dump1090.host} and
+   * {@code basestation.feed.port} properties, starting only if the
+   * {@code basestation.feed.start.auto} property is true. The number of messages from the other
+   * feeds that can be held can be specified using the {@code pipeline.buffer.capacity} property and
+   * defaults to 10000 if undefined. The number of rails can be specified using the
+   * {@code pipeline.reactive.rails} property and defaults to 4 if undefined. The largest number of
+   * messages saved in one transaction can be specified using the
+   * {@code pipeline.reactive.batch.size} property and defaults to 500 if undefined, and the longest
+   * time a message waits to be saved in a partial batch can be specified using the
+   * {@code pipeline.reactive.batch.max.wait.millis} property and defaults to 1000 if undefined.
+   * Messages are saved to the schema selected by the {@code message.store.schema} property, and
+   * only if the {@code basestation.feed.persist} property is true and the instance is not a cluster
+   * frontend.
+   *
+   * @param emptyMessageFilteringService the service dropping empty lines
+   * @param messagePayloadTransformerService the service parsing lines as messages
+   * @param invalidMessageFilteringService the service dropping invalid messages
+   * @param implausibleMessageFilteringService the service dropping messages implying impossible
+   * aircraft movement
+   * @param redundantMessageSuppressionService the service deciding which messages carry new
+   * information
+   * @param outputChannel the channel to which valid messages are sent
+   * @param messageRepository the repository of BaseStation messages in the single table
+   * @param perTypeMessageRepository the repository of BaseStation messages in the per-type schema
+   * @param journalService a service journalling messages saved to the single table
+   * @param transactionManager the transaction manager used to delimit each batch
+   * @param host the name or address of the host serving the BaseStation feed
+   * @param port the port on which the BaseStation feed is served
+   * @param autoStart whether or not the BaseStation feed should be read from the start
+   * @param inboundCapacity the largest number of messages from the other feeds held
+   * @param railCount the number of rails
+   * @param batchSize the largest number of messages saved in one transaction
+   * @param batchMaxWaitMillis the longest time a message waits in a partial batch
+   * @param schema the name of the schema to which messages are saved
+   * @param persistMessages whether or not messages should be saved
+   * @param clusterRole the role of this instance in a cluster
+   */
+  @Autowired
+  public ReactivePipelineService(
+      EmptyMessageFilteringService emptyMessageFilteringService,
+      MessagePayloadTransformerService messagePayloadTransformerService,
+      InvalidMessageFilteringService invalidMessageFilteringService,
+      ImplausibleMessageFilteringService implausibleMessageFilteringService,
+      RedundantMessageSuppressionService redundantMessageSuppressionService,
+      @Qualifier(BASE_STATION_MESSAGE_CHANNEL_NAME) MessageChannel outputChannel,
+      BaseStationMessageRepository messageRepository,
+      PerTypeMessageRepository perTypeMessageRepository,
+      MessageJournalService journalService,
+      PlatformTransactionManager transactionManager,
+      @Value("${dump1090.host:localhost}") String host,
+      @Value("${basestation.feed.port:30003}") int port,
+      @Value("${basestation.feed.start.auto:true}") boolean autoStart,
+      @Value("${pipeline.buffer.capacity:10000}") int inboundCapacity,
+      @Value("${pipeline.reactive.rails:4}") int railCount,
+      @Value("${pipeline.reactive.batch.size:500}") int batchSize,
+      @Value("${pipeline.reactive.batch.max.wait.millis:1000}") long batchMaxWaitMillis,
+      @Value("${message.store.schema:single-table}") String schema,
+      @Value("${basestation.feed.persist:true}") boolean persistMessages,
+      @Value("${cluster.role:standalone}") String clusterRole) {
+    this(
+        emptyMessageFilteringService,
+        messagePayloadTransformerService,
+        invalidMessageFilteringService,
+        implausibleMessageFilteringService,
+        redundantMessageSuppressionService,
+        outputChannel,
+        "frontend".equals(clusterRole)
+            ? null
+            : batchSaver(
+                messageRepository,
+                perTypeMessageRepository,
+                journalService,
+                new TransactionTemplate(transactionManager),
+                "per-type".equals(schema)),
+        scheduler ->
+            TcpLineFlux.connect(host, port, CONNECT_TIMEOUT, RECONNECT_INTERVAL, scheduler),
+        inboundCapacity,
+        railCount,
+        batchSize,
+        Duration.ofMillis(batchMaxWaitMillis));
+    this.persistMessages = persistMessages;
+    this.feedEnabled = autoStart;
+    LOGGER.info(
+        "ReactivePipelineService: feed {}:{}, auto-start: {}, {} rails, batch size {}, "
+            + "persistence {}",
+        host,
+        port,
+        autoStart,
+        railCount,
+        batchSize,
+        persistMessages && batchSaver != null);
+  }
+
+  ReactivePipelineService(
+      EmptyMessageFilteringService emptyMessageFilteringService,
+      MessagePayloadTransformerService messagePayloadTransformerService,
+      InvalidMessageFilteringService invalidMessageFilteringService,
+      ImplausibleMessageFilteringService implausibleMessageFilteringService,
+      RedundantMessageSuppressionService redundantMessageSuppressionService,
+      MessageChannel outputChannel,
+      Consumer<List<BaseStationMessage>> batchSaver,
+      Function<Scheduler, Flux<byte[]>> feed,
+      int inboundCapacity,
+      int railCount,
+      int batchSize,
+      Duration batchMaxWait) {
+    if (inboundCapacity <= 0 || railCount <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("Capacity, rail count and batch size must be positive");
+    }
+
+    this.emptyMessageFilteringService = emptyMessageFilteringService;
+    this.messagePayloadTransformerService = messagePayloadTransformerService;
+    this.invalidMessageFilteringService = invalidMessageFilteringService;
+    this.implausibleMessageFilteringService = implausibleMessageFilteringService;
+    this.redundantMessageSuppressionService = redundantMessageSuppressionService;
+    this.outputChannel = outputChannel;
+    this.batchSaver = batchSaver;
+    this.feed = feed;
+    this.inboundCapacity = inboundCapacity;
+    this.railCount = railCount;
+    this.batchSize = batchSize;
+    this.batchMaxWait = batchMaxWait;
+    this.persistMessages = true;
+    this.feedEnabled = true;
+  }
+
+  static Consumer<List<BaseStationMessage>> batchSaver(
+      BaseStationMessageRepository messageRepository,
+      PerTypeMessageRepository perTypeMessageRepository,
+      MessageJournalService journalService,
+      TransactionTemplate transactionTemplate,
+      boolean perTypeSchema) {
+    if (perTypeSchema) {
+      return batch -> {
+        final List<MessageRecord> messageRecords =
+            batch.stream().map(MessageRecord::fromMessage).collect(Collectors.toList());
+
+        transactionTemplate.executeWithoutResult(
+            status -> perTypeMessageRepository.saveAll(messageRecords));
+      };
+    }
+
+    return batch -> {
+      final List<BaseStationMessage> unjournalled =
+          batch.stream()
+               .filter(baseStationMessage -> !journalService.append(baseStationMessage))
+               .collect(Collectors.toList());
+
+      if (!unjournalled.isEmpty()) {
+        transactionTemplate.executeWithoutResult(
+            status -> messageRepository.saveAll(unjournalled));
+      }
+    };
+  }
+
+  /**
+   * Offers a message from one of the other feeds to the pipeline, returning immediately.
+   *
+   * @param baseStationMessage a valid BaseStation message
+   *
+   * @return true if the message was accepted, false if the pipeline is not running or its buffer
+   * of messages from the other feeds is full
+   */
+  public boolean accept(BaseStationMessage baseStationMessage) {
+    synchronized (inboundLock) {
+      if (inboundSink == null) {
+        return false;
+      }
+
+      if (inboundSink.tryEmitNext(baseStationMessage).isFailure()) {
+        inboundOverflowCount.incrementAndGet();
+
+        return false;
+      }
+
+      return true;
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    readerScheduler = Schedulers.newSingle("reactive-feed-reader", true);
+    railScheduler = Schedulers.newParallel("reactive-rail", railCount, true);
+    persistenceScheduler =
+        Schedulers.newBoundedElastic(
+            railCount, Integer.MAX_VALUE, "reactive-persistence", 60, true);
+    stopSignal = Sinks.empty();
+    feedSwitch = Sinks.many().replay().latest();
+    feedSwitch.tryEmitNext(feedEnabled);
+    terminated = new CountDownLatch(1);
+
+    synchronized (inboundLock) {
+      inboundSink =
+          Sinks.many()
+              .unicast()
+              .onBackpressureBuffer(Queues.<BaseStationMessage>get(inboundCapacity).get());
+    }
+
+    // Connect to the feed whenever it is switched on, and disconnect whenever it is switched off
+    //
+    final Flux<byte[]> source = feed.apply(readerScheduler);
+    final Flux<byte[]> lines =
+        feedSwitch.asFlux()
+            .distinctUntilChanged()
+            .switchMap(enabled -> enabled ? source : Flux.empty())
+            .takeUntilOther(stopSignal.asMono());
+    final CountDownLatch latch = terminated;
+
+    subscription =
+        pipeline(lines, inboundSink.asFlux())
+            .doFinally(signal -> latch.countDown())
+            .subscribe(
+                null,
+                e -> LOGGER.error(
+                    "Reactive pipeline failed: {}: {}",
+                    e.getClass().getSimpleName(),
+                    e.getMessage()));
+    running = true;
+  }
+
+  /**
+   * Stops reading the feeds, returning once the messages already read have been dispatched and
+   * saved.
+   */
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+
+    synchronized (inboundLock) {
+      inboundSink.tryEmitComplete();
+      inboundSink = null;
+    }
+
+    stopSignal.tryEmitEmpty();
+
+    try {
+      if (!terminated.await(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        LOGGER.warn("Reactive pipeline did not drain within {}ms", STOP_TIMEOUT_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    subscription.dispose();
+    readerScheduler.dispose();
+    railScheduler.dispose();
+    persistenceScheduler.dispose();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  // Assembles the pipeline, whose elements are the numbers of messages in each saved batch
+  //
+  Flux<Integer> pipeline(Flux<byte[]> lines, Flux<BaseStationMessage> inbound) {
+    final Flux<BaseStationMessage> feedMessages =
+        lines
+            .doOnNext(line -> readCount.incrementAndGet())
+            .filter(emptyMessageFilteringService::filterEmptyMessage)
+            .map(messagePayloadTransformerService::transformPayload)
+            .filter(invalidMessageFilteringService::filterInvalidMessage)
+            .filter(implausibleMessageFilteringService::filterImplausibleMessage);
+
+    return Flux.merge(feedMessages, inbound)
+        .groupBy(this::railOf, RAIL_PREFETCH)
+        .flatMap(
+            rail ->
+                rail.publishOn(railScheduler, RAIL_PREFETCH)
+                    .doOnNext(this::dispatch)
+                    // Prevent fusion, which would let the thread requesting a batch, rather than
+                    // the rail thread, dispatch messages
+                    //
+                    .hide()
+                    .filter(this::isPersisted)
+                    .transform(this::batches)
+                    .concatMap(this::save, 1),
+            railCount);
+  }
+
+  private int railOf(BaseStationMessage baseStationMessage) {
+    final long hash = Hashing.hashIcaoAddress(baseStationMessage.getIcaoAddress());
+
+    return (int) Long.remainderUnsigned(hash, railCount);
+  }
+
+  private boolean isPersisted(BaseStationMessage baseStationMessage) {
+    return batchSaver != null
+        && persistMessages
+        && redundantMessageSuppressionService.shouldPersist(baseStationMessage);
+  }
+
+  private void dispatch(BaseStationMessage baseStationMessage) {
+    final QueueHandOffEvent handOffEvent = new QueueHandOffEvent();
+
+    handOffEvent.begin();
+
+    try {
+      outputChannel.send(MessageBuilder.withPayload(baseStationMessage).build());
+      dispatchedCount.incrementAndGet();
+    } catch (RuntimeException e) {
+      dispatchFailureCount.incrementAndGet();
+      LOGGER.error(
+          "Failed to dispatch message: {}: {}", e.getClass().getSimpleName(), e.getMessage());
+    }
+
+    handOffEvent.complete("ReactivePipelineService", baseStationMessage.getIcaoAddress(), -1);
+  }
+
+  // Groups the messages of a rail into batches of at most batchSize messages, cutting a batch
+  // short when batchMaxWait passes without one being cut. Unlike bufferTimeout, this requests
+  // messages only as batches are requested, so a slow save holds back the rail.
+  //
+  private Flux<List<BaseStationMessage>> batches(Flux<BaseStationMessage> messages) {
+    return messages.publish(
+        shared -> {
+          final int[] size = new int[1];
+          final Flux<Optional<BaseStationMessage>> ticks =
+              Flux.interval(batchMaxWait, railScheduler)
+                  .onBackpressureDrop()
+                  .map(tick -> Optional.<BaseStationMessage>empty())
+                  .takeUntilOther(shared.ignoreElements());
+
+          return Flux.merge(shared.map(Optional::of), ticks)
+              .bufferUntil(
+                  item -> {
+                    if (!item.isPresent() || ++size[0] == batchSize) {
+                      size[0] = 0;
+
+                      return true;
+                    }
+
+                    return false;
+                  })
+              .map(
+                  items -> items.stream()
+                      .filter(Optional::isPresent)
+                      .map(Optional::get)
+                      .collect(Collectors.toList()))
+              .filter(batch -> !batch.isEmpty());
+        },
+        RAIL_PREFETCH);
+  }
+
+  private Mono<Integer> save(List<BaseStationMessage> batch) {
+    if (batchSaver == null || !persistMessages) {
+      return Mono.just(0);
+    }
+
+    return Mono.fromCallable(
+            () -> {
+              final BatchFlushEvent flushEvent = new BatchFlushEvent();
+              boolean saved = false;
+
+              flushEvent.begin();
+
+              try {
+                batchSaver.accept(batch);
+                saved = true;
+              } finally {
+                flushEvent.complete("ReactivePipelineService", batch.size(), saved);
+              }
+
+              persistedCount.addAndGet(batch.size());
+              batchCount.incrementAndGet();
+
+              return batch.size();
+            })
+        .subscribeOn(persistenceScheduler)
+        .onErrorResume(
+            e -> {
+              persistFailureCount.addAndGet(batch.size());
+              LOGGER.error(
+                  "Failed to save {} messages: {}: {}",
+                  batch.size(),
+                  e.getClass().getSimpleName(),
+                  e.getMessage());
+
+              return Mono.just(0);
+            });
+  }
+
+  /**
+   * Connects to the BaseStation feed and starts reading lines.
+   *
+   * <p>Has no effect if already started.
+   */
+  @ManagedOperation(description = "Connect to the feed and start reading BaseStation messages")
+  public void startFeed() {
+    switchFeed(true);
+  }
+
+  /**
+   * Stops reading lines and disconnects from the BaseStation feed.
+   *
+   * <p>Has no effect if already stopped.
+   */
+  @ManagedOperation(description = "Stop reading BaseStation messages and disconnect from the feed")
+  public void stopFeed() {
+    switchFeed(false);
+  }
+
+  private synchronized void switchFeed(boolean enabled) {
+    LOGGER.info("'{}' requested for BaseStation message feed", enabled ? "Start" : "Stop");
+    feedEnabled = enabled;
+
+    if (running) {
+      feedSwitch.tryEmitNext(enabled);
+    }
+  }
+
+  @ManagedAttribute(description = "Whether or not the BaseStation feed is being read")
+  public boolean isFeedEnabled() {
+    return feedEnabled;
+  }
+
+  @ManagedAttribute(description = "The number of rails")
+  public int getRailCount() {
+    return railCount;
+  }
+
+  @ManagedAttribute(description = "The largest number of messages saved in one transaction")
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @ManagedAttribute(description = "The number of lines read from the BaseStation feed")
+  public long getReadCount() {
+    return readCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages from other feeds dropped because the buffer was full")
+  public long getInboundOverflowCount() {
+    return inboundOverflowCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages dispatched to consumers")
+  public long getDispatchedCount() {
+    return dispatchedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages that a consumer failed to handle")
+  public long getDispatchFailureCount() {
+    return dispatchFailureCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages saved")
+  public long getPersistedCount() {
+    return persistedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of batches of messages saved")
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of messages that could not be saved")
+  public long getPersistFailureCount() {
+    return persistFailureCount.get();
+  }
+
+  /**
+   * Indicates whether or not messages are persisted to the application's database.
+   *
+   * @return true if messages are persisted to the database, otherwise false
+   */
+  @ManagedOperation(description = "Whether or not messages are saved to persistent storage")
+  public boolean isPersistMessages() {
+    return persistMessages;
+  }
+
+  /**
+   * Controls whether or not messages are persisted to the application's database.
+   *
+   * @param persistMessages true if messages should be persisted, false if not
+   */
+  @ManagedOperation(description = "Control whether or not messages are saved to persistent storage")
+  public void setPersistMessages(boolean persistMessages) {
+    LOGGER.info("Persist messages: {}", persistMessages);
+    this.persistMessages = persistMessages;
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.codebrewer.dump1090processor.basestation.integration.BaseStationIntegrationConfiguration.BASE_STATION_MESSAGE_CHANNEL_NAME;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.geo.ReceiverGeometry;
+import org.codebrewer.dump1090processor.geo.ReceiverRelativePosition;
+import org.geolatte.geom.G2D;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that computes the range, bearing and elevation angle from the receiver of each
+ * aircraft that reports its position.
+ *
+ * <p>The service intercepts every valid message as it is sent to the channel named by
+ * {@code BASE_STATION_MESSAGE_CHANNEL_NAME}, in either pipeline, and attaches the position of the
+ * aircraft relative to the receiver to each message carrying a position, as the header named by
+ * {@link #RECEIVER_RELATIVE_POSITION_HEADER}, so it is computed once however many endpoints
+ * consume the message. The aircraft's state takes it from the header. Nothing is computed unless
+ * the receiver's location is configured.
+ *
+ * <p>The altitudes reported by aircraft are barometric, so elevation angles are approximate,
+ * particularly when the local air pressure is far from the standard.
+ */
+@Service
+@GlobalChannelInterceptor(patterns = BASE_STATION_MESSAGE_CHANNEL_NAME)
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=ReceiverRelativePositionService",
+    description = "Computes the range, bearing and elevation of aircraft from the receiver")
+public class ReceiverRelativePositionService implements ChannelInterceptor {
+  /**
+   * The name of the message header holding the {@link ReceiverRelativePosition} of the aircraft
+   * that sent the message carrying it.
+   */
+  public static final String RECEIVER_RELATIVE_POSITION_HEADER = "receiverRelativePosition";
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(ReceiverRelativePositionService.class);
+  private static final double METRES_PER_FOOT = 0.3048;
+
+  private final ReceiverGeometry receiverGeometry;
+  private final AtomicLong enrichedCount = new AtomicLong();
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The location of the receiver is given by the {@code receiver.latitude} and
+   * {@code receiver.longitude} properties, in degrees, and the altitude of its antenna above mean
+   * sea level by the {@code receiver.altitude.metres} property, which defaults to zero if
+   * undefined. If neither the latitude nor the longitude is defined, messages are not enriched.
+   *
+   * @param latitude the latitude of the receiver, in degrees, or {@code NaN} if unknown
+   * @param longitude the longitude of the receiver, in degrees, or {@code NaN} if unknown
+   * @param altitude the altitude of the receiver's antenna, in metres
+   *
+   * @throws IllegalArgumentException if only one of the latitude and longitude is known, or either
+   * is out of range
+   */
+  @Autowired
+  public ReceiverRelativePositionService(
+      @Value("${receiver.latitude:NaN}") double latitude,
+      @Value("${receiver.longitude:NaN}") double longitude,
+      @Value("${receiver.altitude.metres:0}") double altitude) {
+    if (Double.isNaN(latitude) && Double.isNaN(longitude)) {
+      LOGGER.info("ReceiverRelativePositionService: no receiver location");
+      receiverGeometry = null;
+    } else if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+      throw new IllegalArgumentException(
+          "Both the latitude and the longitude of the receiver must be given");
+    } else {
+      LOGGER.info(
+          "ReceiverRelativePositionService: receiver at {}, {}, {}m",
+          latitude,
+          longitude,
+          altitude);
+      receiverGeometry = new ReceiverGeometry(latitude, longitude, altitude);
+    }
+  }
+
+  /**
+   * Computes the position relative to the receiver of the aircraft that sent a message.
+   *
+   * @param transmissionMessage a valid message, not null
+   *
+   * @return the position of the aircraft relative to the receiver, or null if the message carries
+   * no position or the receiver's location is not configured
+   */
+  public ReceiverRelativePosition locate(TransmissionMessage transmissionMessage) {
+    if (receiverGeometry == null || transmissionMessage.getPosition() == null) {
+      return null;
+    }
+
+    final G2D position = transmissionMessage.getPosition().getPosition();
+    final Float altitude = transmissionMessage.getAltitude();
+
+    enrichedCount.incrementAndGet();
+
+    return receiverGeometry.locate(
+        position.getLat(),
+        position.getLon(),
+        altitude == null ? Double.NaN : altitude * METRES_PER_FOOT);
+  }
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    if (!(message.getPayload() instanceof TransmissionMessage)
+        || message.getHeaders().containsKey(RECEIVER_RELATIVE_POSITION_HEADER)) {
+      return message;
+    }
+
+    final ReceiverRelativePosition receiverRelativePosition =
+        locate((TransmissionMessage) message.getPayload());
+
+    return receiverRelativePosition == null
+        ? message
+        : MessageBuilder.fromMessage(message)
+                        .setHeader(RECEIVER_RELATIVE_POSITION_HEADER, receiverRelativePosition)
+                        .build();
+  }
+
+  @ManagedAttribute(description = "Whether or not the receiver's location is configured")
+  public boolean isEnabled() {
+    return receiverGeometry != null;
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages enriched with the position relative to the receiver")
+  public long getEnrichedCount() {
+    return enrichedCount.get();
+  }
+}
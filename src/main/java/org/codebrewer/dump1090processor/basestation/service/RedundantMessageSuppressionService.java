@@ -0,0 +1,369 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.CallSignMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service deciding which messages carry information worth persisting.
+ *
+ * <p>Aircraft repeat themselves: the same altitude in message after message, the same squawk, the
+ * same call sign. The service keeps the last value seen of each field for each aircraft, and a
+ * message is persisted only if at least one of the fields it populates differs from the last value
+ * seen, or if no message of its kind has been persisted for the aircraft within the heartbeat
+ * interval, so that the stored history of a steady aircraft still shows it was being received.
+ * Messages announcing a new aircraft are always persisted. Intervals are measured by message
+ * timestamps, so the outcome does not depend on how quickly messages are processed.
+ *
+ * <p>Only persistence is affected: every message is still dispatched to the other consumers,
+ * which keep their own view of each aircraft. The service is disabled unless the
+ * {@code message.store.suppress.redundant} property is true, in which case every message is
+ * persisted.
+ */
+@Service
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=RedundantMessageSuppressionService",
+    description = "Decides which messages carry new information worth persisting")
+public class RedundantMessageSuppressionService {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(RedundantMessageSuppressionService.class);
+
+  // Messages of each transmission type, and of each other class, have their own heartbeat
+  //
+  private static final int ID_KIND = TransmissionType.values().length;
+  private static final int STATUS_KIND = ID_KIND + 1;
+  private static final int OTHER_KIND = STATUS_KIND + 1;
+  private static final int KIND_COUNT = OTHER_KIND + 1;
+
+  private final boolean enabled;
+  private final long heartbeatMillis;
+  private final Map<String, LastSeen> lastSeenByAddress = new ConcurrentHashMap<>();
+  private final AtomicLong newestMillis = new AtomicLong(Long.MIN_VALUE);
+  private final AtomicLong forwardedCount = new AtomicLong();
+  private final AtomicLong suppressedCount = new AtomicLong();
+  private final AtomicLong heartbeatCount = new AtomicLong();
+  private final AtomicLong expiredCount = new AtomicLong();
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>Redundant messages are suppressed only if the {@code message.store.suppress.redundant}
+   * property is true. The longest time for which messages of one kind from an aircraft are
+   * suppressed can be specified using the {@code message.store.heartbeat.seconds} property and
+   * defaults to 60 if undefined.
+   *
+   * @param enabled whether or not redundant messages should be suppressed
+   * @param heartbeatSeconds the longest time for which messages of one kind from an aircraft are
+   * suppressed, in seconds
+   *
+   * @throws IllegalArgumentException if the heartbeat interval is not positive
+   */
+  @Autowired
+  public RedundantMessageSuppressionService(
+      @Value("${message.store.suppress.redundant:false}") boolean enabled,
+      @Value("${message.store.heartbeat.seconds:60}") long heartbeatSeconds) {
+    if (heartbeatSeconds <= 0L) {
+      throw new IllegalArgumentException(
+          "Heartbeat interval must be positive: " + heartbeatSeconds);
+    }
+
+    LOGGER.info(
+        "RedundantMessageSuppressionService: enabled: {}, heartbeat {}s",
+        enabled,
+        heartbeatSeconds);
+    this.enabled = enabled;
+    this.heartbeatMillis = TimeUnit.SECONDS.toMillis(heartbeatSeconds);
+  }
+
+  private static int kindOf(BaseStationMessage baseStationMessage) {
+    if (baseStationMessage instanceof TransmissionMessage) {
+      final TransmissionType transmissionType =
+          ((TransmissionMessage) baseStationMessage).getTransmissionType();
+
+      return transmissionType == null ? OTHER_KIND : transmissionType.ordinal();
+    } else if (baseStationMessage instanceof IdMessage) {
+      return ID_KIND;
+    } else if (baseStationMessage instanceof StatusMessage) {
+      return STATUS_KIND;
+    }
+
+    return OTHER_KIND;
+  }
+
+  private static boolean differs(Object value, Object lastValue) {
+    return value != null && !value.equals(lastValue);
+  }
+
+  /**
+   * Decides whether or not a message should be persisted, recording the values of the fields it
+   * populates as the last seen for its aircraft.
+   *
+   * <p>The messages of one aircraft are expected in the order of their timestamps; a message older
+   * than the last persisted of its kind is persisted.
+   *
+   * @param baseStationMessage a valid message, not null
+   *
+   * @return true if the message should be persisted, false if it is redundant
+   */
+  public boolean shouldPersist(BaseStationMessage baseStationMessage) {
+    if (!enabled) {
+      return true;
+    }
+
+    final long timestampMillis = baseStationMessage.getTimestamp().toEpochMilli();
+    final LastSeen lastSeen =
+        lastSeenByAddress.computeIfAbsent(
+            baseStationMessage.getIcaoAddress(), address -> new LastSeen());
+    final boolean persist;
+
+    newestMillis.accumulateAndGet(timestampMillis, Math::max);
+
+    synchronized (lastSeen) {
+      final int kind = kindOf(baseStationMessage);
+      final long sinceLastPersisted = timestampMillis - lastSeen.persistedMillis[kind];
+      final boolean changed = lastSeen.update(baseStationMessage);
+
+      lastSeen.seenMillis = Math.max(lastSeen.seenMillis, timestampMillis);
+      persist = changed || sinceLastPersisted >= heartbeatMillis || sinceLastPersisted < 0L;
+
+      if (persist) {
+        lastSeen.persistedMillis[kind] = timestampMillis;
+
+        if (!changed) {
+          heartbeatCount.incrementAndGet();
+        }
+      }
+    }
+
+    (persist ? forwardedCount : suppressedCount).incrementAndGet();
+
+    return persist;
+  }
+
+  /**
+   * Forgets the aircraft from which no message has been seen within the heartbeat interval before
+   * the newest message seen.
+   *
+   * <p>The next message from a forgotten aircraft is persisted, as it would have been anyway
+   * because the heartbeat interval has passed.
+   */
+  @Scheduled(fixedDelayString = "${message.store.heartbeat.expiry.interval.millis:60000}")
+  public void expireAircraft() {
+    final long oldestMillis = newestMillis.get() - heartbeatMillis;
+
+    for (Map.Entry<String, LastSeen> entry : lastSeenByAddress.entrySet()) {
+      final LastSeen lastSeen = entry.getValue();
+      final boolean expired;
+
+      synchronized (lastSeen) {
+        expired = lastSeen.seenMillis < oldestMillis;
+      }
+
+      if (expired && lastSeenByAddress.remove(entry.getKey(), lastSeen)) {
+        expiredCount.incrementAndGet();
+      }
+    }
+  }
+
+  @ManagedAttribute(description = "Whether or not redundant messages are suppressed")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(
+      description = "The longest time for which messages of one kind from an aircraft are "
+          + "suppressed, in seconds")
+  public long getHeartbeatSeconds() {
+    return TimeUnit.MILLISECONDS.toSeconds(heartbeatMillis);
+  }
+
+  @ManagedAttribute(description = "The number of aircraft whose last-seen values are held")
+  public int getAircraftCount() {
+    return lastSeenByAddress.size();
+  }
+
+  @ManagedAttribute(description = "The number of messages to be persisted")
+  public long getForwardedCount() {
+    return forwardedCount.get();
+  }
+
+  @ManagedAttribute(description = "The number of redundant messages not persisted")
+  public long getSuppressedCount() {
+    return suppressedCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages persisted only because the heartbeat interval passed")
+  public long getHeartbeatCount() {
+    return heartbeatCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of aircraft forgotten after the heartbeat interval passed")
+  public long getExpiredCount() {
+    return expiredCount.get();
+  }
+
+  /**
+   * Gets the fraction of the messages decided upon that are to be persisted.
+   *
+   * @return the number of messages to be persisted divided by the number of messages decided upon,
+   * or 1 if no messages have been decided upon
+   */
+  @ManagedAttribute(
+      description = "The fraction of messages to be persisted, from 0 (none) to 1 (all)")
+  public double getForwardedRatio() {
+    final long forwarded = forwardedCount.get();
+    final long total = forwarded + suppressedCount.get();
+
+    return total == 0L ? 1.0 : (double) forwarded / total;
+  }
+
+  // The last value seen of each field for one aircraft. A changed value is replaced by the
+  // message's own, rather than a copy, so updating allocates nothing
+  //
+  private static final class LastSeen {
+    private final long[] persistedMillis = new long[KIND_COUNT];
+    private long seenMillis = Long.MIN_VALUE;
+    private Float altitude;
+    private Float groundSpeed;
+    private Float track;
+    private Point<G2D> position;
+    private Short verticalRate;
+    private Short squawk;
+    private Boolean alert;
+    private Boolean emergency;
+    private Boolean identActive;
+    private Boolean onGround;
+    private String callSign;
+    private StatusMessageType statusMessageType;
+
+    private LastSeen() {
+      Arrays.fill(persistedMillis, Long.MIN_VALUE / 2L);
+    }
+
+    // Returns true if any field populated by the message differs from its last value seen
+    //
+    private boolean update(BaseStationMessage baseStationMessage) {
+      boolean changed = false;
+
+      if (baseStationMessage instanceof CallSignMessage) {
+        final String messageCallSign = ((CallSignMessage) baseStationMessage).getCallSign();
+
+        if (differs(messageCallSign, callSign)) {
+          callSign = messageCallSign;
+          changed = true;
+        }
+      }
+
+      if (baseStationMessage instanceof TransmissionMessage) {
+        changed |= updateTransmission((TransmissionMessage) baseStationMessage);
+      } else if (baseStationMessage instanceof StatusMessage) {
+        final StatusMessageType messageStatus =
+            ((StatusMessage) baseStationMessage).getStatusMessageType();
+
+        if (differs(messageStatus, statusMessageType)) {
+          statusMessageType = messageStatus;
+          changed = true;
+        }
+      } else if (!(baseStationMessage instanceof IdMessage)) {
+        // A new aircraft, or a message of a kind not compared field by field
+        //
+        changed = true;
+      }
+
+      return changed;
+    }
+
+    private boolean updateTransmission(TransmissionMessage transmissionMessage) {
+      boolean changed = false;
+
+      if (differs(transmissionMessage.getAltitude(), altitude)) {
+        altitude = transmissionMessage.getAltitude();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getGroundSpeed(), groundSpeed)) {
+        groundSpeed = transmissionMessage.getGroundSpeed();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getTrack(), track)) {
+        track = transmissionMessage.getTrack();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getPosition(), position)) {
+        position = transmissionMessage.getPosition();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getVerticalRate(), verticalRate)) {
+        verticalRate = transmissionMessage.getVerticalRate();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getSquawk(), squawk)) {
+        squawk = transmissionMessage.getSquawk();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getAlert(), alert)) {
+        alert = transmissionMessage.getAlert();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getEmergency(), emergency)) {
+        emergency = transmissionMessage.getEmergency();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getIdentActive(), identActive)) {
+        identActive = transmissionMessage.getIdentActive();
+        changed = true;
+      }
+
+      if (differs(transmissionMessage.getOnGround(), onGround)) {
+        onGround = transmissionMessage.getOnGround();
+        changed = true;
+      }
+
+      return changed;
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.sbs.SbsFanOutServer;
+import org.codebrewer.dump1090processor.basestation.sbs.SbsMessageFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A service that re-serves the merged stream of valid messages from every feed, in the "SBS-1
+ * BaseStation" format, to any number of TCP clients.
+ *
+ * <p>Each message is formatted once and published to a {@link SbsFanOutServer}, which writes the
+ * same bytes to every client. A message is not published if the previous message published for
+ * the same aircraft had identical content and a timestamp no more than the de-duplication window
+ * earlier; this drops the copies of a transmission heard by more than one receiver, or read from
+ * more than one feed.
+ *
+ * <p>This service exists only when the {@code sbs.server.enabled} property is set to true.
+ */
+@Service
+@ConditionalOnProperty(name = "sbs.server.enabled", havingValue = "true")
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=SbsFanOutService",
+    description = "A service that re-serves valid messages to SBS-1 clients")
+public class SbsFanOutService implements SmartLifecycle {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SbsFanOutService.class);
+
+  // Start before, and stop after, the message buffer that feeds the clients
+  //
+  private static final int PHASE = Integer.MIN_VALUE / 2 - 1;
+  private static final int MAX_TRACKED_AIRCRAFT = 10_000;
+
+  private final SbsFanOutServer server;
+  private final SbsMessageFormatter formatter;
+  private final long dedupWindowMillis;
+  private final Map<String, long[]> lastPublished =
+      new LinkedHashMap<String, long[]>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+          return size() > MAX_TRACKED_AIRCRAFT;
+        }
+      };
+  private final AtomicLong duplicateCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+
+  /**
+   * Sole public constructor for this class.
+   *
+   * <p>The port on which clients are accepted can be specified using the {@code sbs.server.port}
+   * property and defaults to 33003 if undefined. The number of messages a client may fall behind
+   * before being disconnected can be specified using the {@code sbs.server.client.backlog}
+   * property and defaults to 4096 if undefined. The de-duplication window can be specified using
+   * the {@code sbs.server.dedup.window.millis} property and defaults to 100 if undefined; zero
+   * disables de-duplication.
+   *
+   * @param port the port on which clients are accepted
+   * @param clientBacklog the number of messages a client may fall behind before being disconnected
+   * @param dedupWindowMillis the longest interval between two messages from an aircraft for the
+   * second to be dropped as a duplicate of the first
+   */
+  @Autowired
+  public SbsFanOutService(
+      @Value("${sbs.server.port:33003}") int port,
+      @Value("${sbs.server.client.backlog:4096}") int clientBacklog,
+      @Value("${sbs.server.dedup.window.millis:100}") long dedupWindowMillis) {
+    this(
+        new SbsFanOutServer(port, clientBacklog),
+        new SbsMessageFormatter(ZoneId.systemDefault()),
+        dedupWindowMillis);
+    LOGGER.info(
+        "SbsFanOutService: port {}, client backlog {}, de-duplication window {}ms",
+        port,
+        clientBacklog,
+        dedupWindowMillis);
+  }
+
+  SbsFanOutService(
+      SbsFanOutServer server, SbsMessageFormatter formatter, long dedupWindowMillis) {
+    this.server = server;
+    this.formatter = formatter;
+    this.dedupWindowMillis = dedupWindowMillis;
+  }
+
+  // A hash of every property of a message except its identifier and timestamp
+  //
+  private static long contentHash(MessageRecord messageRecord) {
+    return Objects.hash(
+        messageRecord.getMessageType(),
+        messageRecord.getCallSign(),
+        messageRecord.getTransmissionType(),
+        messageRecord.getStatusMessageType(),
+        messageRecord.getAltitude(),
+        messageRecord.getGroundSpeed(),
+        messageRecord.getTrack(),
+        messageRecord.getLatitude(),
+        messageRecord.getLongitude(),
+        messageRecord.getVerticalRate(),
+        messageRecord.getSquawk(),
+        messageRecord.getAlert(),
+        messageRecord.getEmergency(),
+        messageRecord.getIdentActive(),
+        messageRecord.getOnGround());
+  }
+
+  /**
+   * Publishes a message to every connected client, unless it duplicates the message last
+   * published for the same aircraft.
+   *
+   * @param baseStationMessage a valid message
+   *
+   * @return true if the message was published, otherwise false
+   */
+  public boolean publish(BaseStationMessage baseStationMessage) {
+    final MessageRecord messageRecord = MessageRecord.fromMessage(baseStationMessage);
+
+    if (isDuplicate(messageRecord)) {
+      duplicateCount.incrementAndGet();
+
+      return false;
+    }
+
+    return server.publish(formatter.format(messageRecord));
+  }
+
+  private synchronized boolean isDuplicate(MessageRecord messageRecord) {
+    if (dedupWindowMillis <= 0L) {
+      return false;
+    }
+
+    final long hash = contentHash(messageRecord);
+    final long timestampMillis = messageRecord.getTimestamp().toEpochMilli();
+    final long[] last = lastPublished.get(messageRecord.getIcaoAddress());
+
+    if (last == null) {
+      lastPublished.put(messageRecord.getIcaoAddress(), new long[] { hash, timestampMillis });
+
+      return false;
+    }
+
+    if (last[0] == hash && Math.abs(timestampMillis - last[1]) <= dedupWindowMillis) {
+      return true;
+    }
+
+    last[0] = hash;
+    last[1] = timestampMillis;
+
+    return false;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (server.isRunning()) {
+      return;
+    }
+
+    try {
+      server.start();
+    } catch (IOException e) {
+      failureCount.incrementAndGet();
+      LOGGER.error(
+          "Failed to start SBS-1 server on port {}: {}", server.getPort(), e.getMessage());
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    server.close();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return server.isRunning();
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  @ManagedAttribute(description = "The port on which SBS-1 clients are accepted")
+  public int getPort() {
+    return server.getPort();
+  }
+
+  @ManagedAttribute(description = "The number of SBS-1 clients currently connected")
+  public int getClientCount() {
+    return server.getClientCount();
+  }
+
+  @ManagedAttribute(description = "The number of SBS-1 clients accepted")
+  public long getAcceptedCount() {
+    return server.getAcceptedCount();
+  }
+
+  @ManagedAttribute(description = "The number of SBS-1 clients disconnected for reading too slowly")
+  public long getSlowClientCount() {
+    return server.getSlowClientCount();
+  }
+
+  @ManagedAttribute(description = "The number of messages published to SBS-1 clients")
+  public long getPublishedCount() {
+    return server.getPublishedCount();
+  }
+
+  @ManagedAttribute(description = "The number of messages dropped as duplicates")
+  public long getDuplicateCount() {
+    return duplicateCount.get();
+  }
+
+  @ManagedAttribute(
+      description = "The number of messages dropped because the server had fallen behind")
+  public long getOverflowCount() {
+    return server.getOverflowCount();
+  }
+
+  @ManagedAttribute(description = "The number of bytes written to SBS-1 clients")
+  public long getWrittenBytes() {
+    return server.getWrittenBytes();
+  }
+
+  @ManagedAttribute(description = "The number of times the SBS-1 server failed to start")
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import org.codebrewer.dump1090processor.modes.ModeSFields;
+
+/**
+ * The latest known state of an aircraft, accumulated from the messages received from it.
+ *
+ * <p>Instances are immutable: an update to an aircraft's state replaces its instance, so a reader
+ * always sees a consistent state without locking. Properties that have not been reported are held
+ * as {@code NaN} for floating-point properties and as {@link #NO_SQUAWK} for the squawk code.
+ *
+ * <p>The range, bearing and elevation of the aircraft from the receiver are those computed for
+ * its latest position, and are {@code NaN} if they were not computed.
+ */
+public final class AircraftState {
+  /**
+   * The value of the squawk property when no squawk code has been reported.
+   */
+  public static final int NO_SQUAWK = -1;
+
+  private final int address;
+  private final String callSign;
+  private final int squawk;
+  private final float altitude;
+  private final float groundSpeed;
+  private final float track;
+  private final float verticalRate;
+  private final double latitude;
+  private final double longitude;
+  private final float range;
+  private final float bearing;
+  private final float elevation;
+  private final boolean onGround;
+  private final boolean emergency;
+  private final long lastSeenMillis;
+  private final long positionMillis;
+  private final long messageCount;
+
+  private AircraftState(Builder builder) {
+    address = builder.address;
+    callSign = builder.callSign;
+    squawk = builder.squawk;
+    altitude = builder.altitude;
+    groundSpeed = builder.groundSpeed;
+    track = builder.track;
+    verticalRate = builder.verticalRate;
+    latitude = builder.latitude;
+    longitude = builder.longitude;
+    range = builder.range;
+    bearing = builder.bearing;
+    elevation = builder.elevation;
+    onGround = builder.onGround;
+    emergency = builder.emergency;
+    lastSeenMillis = builder.lastSeenMillis;
+    positionMillis = builder.positionMillis;
+    messageCount = builder.messageCount;
+  }
+
+  /**
+   * Gets the aircraft's 24 bit ICAO address.
+   *
+   * @return the aircraft's 24 bit ICAO address
+   */
+  public int getAddress() {
+    return address;
+  }
+
+  /**
+   * Gets the aircraft's ICAO address in the 6 digit hexadecimal form used by BaseStation messages.
+   *
+   * @return the aircraft's ICAO address as 6 uppercase hexadecimal digits
+   */
+  public String getIcaoAddress() {
+    return ModeSFields.formatAddress(address);
+  }
+
+  public String getCallSign() {
+    return callSign;
+  }
+
+  public int getSquawk() {
+    return squawk;
+  }
+
+  public float getAltitude() {
+    return altitude;
+  }
+
+  public float getGroundSpeed() {
+    return groundSpeed;
+  }
+
+  public float getTrack() {
+    return track;
+  }
+
+  public float getVerticalRate() {
+    return verticalRate;
+  }
+
+  public double getLatitude() {
+    return latitude;
+  }
+
+  public double getLongitude() {
+    return longitude;
+  }
+
+  /**
+   * Gets the distance to the aircraft from the receiver over the surface of the Earth.
+   *
+   * @return the distance to the aircraft, in metres, or {@code NaN} if unknown
+   */
+  public float getRange() {
+    return range;
+  }
+
+  /**
+   * Gets the initial bearing of the aircraft from the receiver.
+   *
+   * @return the bearing of the aircraft from true north, in degrees, or {@code NaN} if unknown
+   */
+  public float getBearing() {
+    return bearing;
+  }
+
+  /**
+   * Gets the angle of the aircraft above the receiver's horizon.
+   *
+   * @return the elevation angle of the aircraft, in degrees, or {@code NaN} if unknown
+   */
+  public float getElevation() {
+    return elevation;
+  }
+
+  public boolean isOnGround() {
+    return onGround;
+  }
+
+  public boolean isEmergency() {
+    return emergency;
+  }
+
+  /**
+   * Gets the time at which a message was last received from the aircraft.
+   *
+   * @return the time at which a message was last received, in milliseconds since the epoch
+   */
+  public long getLastSeenMillis() {
+    return lastSeenMillis;
+  }
+
+  /**
+   * Gets the time at which the aircraft last reported its position.
+   *
+   * @return the time at which the position was last reported, in milliseconds since the epoch, or
+   * zero if the aircraft has not reported its position
+   */
+  public long getPositionMillis() {
+    return positionMillis;
+  }
+
+  /**
+   * Gets the number of messages received from the aircraft.
+   *
+   * @return the number of messages received from the aircraft
+   */
+  public long getMessageCount() {
+    return messageCount;
+  }
+
+  /**
+   * Indicates whether or not the aircraft has reported its position.
+   *
+   * @return true if the aircraft has reported its position, otherwise false
+   */
+  public boolean hasPosition() {
+    return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+  }
+
+  @Override
+  public String toString() {
+    return "AircraftState{"
+           + "icaoAddress=" + getIcaoAddress()
+           + ", callSign=" + callSign
+           + ", lastSeenMillis=" + lastSeenMillis
+           + ", messageCount=" + messageCount
+           + '}';
+  }
+
+  /**
+   * A builder for {@code AircraftState} instances.
+   */
+  public static class Builder {
+    private final int address;
+    private String callSign;
+    private int squawk = NO_SQUAWK;
+    private float altitude = Float.NaN;
+    private float groundSpeed = Float.NaN;
+    private float track = Float.NaN;
+    private float verticalRate = Float.NaN;
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private float range = Float.NaN;
+    private float bearing = Float.NaN;
+    private float elevation = Float.NaN;
+    private boolean onGround;
+    private boolean emergency;
+    private long lastSeenMillis;
+    private long positionMillis;
+    private long messageCount;
+
+    /**
+     * Creates a builder for the state of an aircraft from which nothing has yet been heard.
+     *
+     * @param address the aircraft's 24 bit ICAO address
+     */
+    public Builder(int address) {
+      this.address = address;
+    }
+
+    /**
+     * Creates a builder initialized with the properties of an existing state.
+     *
+     * @param state an aircraft's state, not null
+     */
+    public Builder(AircraftState state) {
+      address = state.address;
+      callSign = state.callSign;
+      squawk = state.squawk;
+      altitude = state.altitude;
+      groundSpeed = state.groundSpeed;
+      track = state.track;
+      verticalRate = state.verticalRate;
+      latitude = state.latitude;
+      longitude = state.longitude;
+      range = state.range;
+      bearing = state.bearing;
+      elevation = state.elevation;
+      onGround = state.onGround;
+      emergency = state.emergency;
+      lastSeenMillis = state.lastSeenMillis;
+      positionMillis = state.positionMillis;
+      messageCount = state.messageCount;
+    }
+
+    public AircraftState build() {
+      return new AircraftState(this);
+    }
+
+    public Builder callSign(String callSign) {
+      this.callSign = callSign;
+
+      return this;
+    }
+
+    public Builder squawk(int squawk) {
+      this.squawk = squawk;
+
+      return this;
+    }
+
+    public Builder altitude(float altitude) {
+      this.altitude = altitude;
+
+      return this;
+    }
+
+    public Builder groundSpeed(float groundSpeed) {
+      this.groundSpeed = groundSpeed;
+
+      return this;
+    }
+
+    public Builder track(float track) {
+      this.track = track;
+
+      return this;
+    }
+
+    public Builder verticalRate(float verticalRate) {
+      this.verticalRate = verticalRate;
+
+      return this;
+    }
+
+    public Builder position(double latitude, double longitude, long positionMillis) {
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.positionMillis = positionMillis;
+
+      return this;
+    }
+
+    /**
+     * Sets the position of the aircraft relative to the receiver.
+     *
+     * @param range the distance to the aircraft, in metres, or {@code NaN} if unknown
+     * @param bearing the bearing of the aircraft, in degrees, or {@code NaN} if unknown
+     * @param elevation the elevation angle of the aircraft, in degrees, or {@code NaN} if unknown
+     *
+     * @return this builder
+     */
+    public Builder receiverRelativePosition(float range, float bearing, float elevation) {
+      this.range = range;
+      this.bearing = bearing;
+      this.elevation = elevation;
+
+      return this;
+    }
+
+    public Builder onGround(boolean onGround) {
+      this.onGround = onGround;
+
+      return this;
+    }
+
+    public Builder emergency(boolean emergency) {
+      this.emergency = emergency;
+
+      return this;
+    }
+
+    public Builder lastSeenMillis(long lastSeenMillis) {
+      this.lastSeenMillis = lastSeenMillis;
+
+      return this;
+    }
+
+    public Builder messageCount(long messageCount) {
+      this.messageCount = messageCount;
+
+      return this;
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An immutable, point-in-time copy of the state of a number of aircraft, which can be written to
+ * and read from a file or encoded as an array of bytes.
+ *
+ * <p>The file format is a fixed-length header, a fixed-length record for each aircraft, and a
+ * trailing CRC-32 checksum of everything preceding it. All values are big-endian. A snapshot is
+ * written to a temporary file that is then moved over the target, so a reader never sees a partly
+ * written snapshot.
+ *
+ * <p>The range, bearing and elevation of an aircraft from the receiver are not recorded, and are
+ * unknown in a state read from a file until the aircraft next reports its position.
+ */
+public final class AircraftStateSnapshot {
+  private static final int MAGIC = 0x41435354; // "ACST"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+  private static final int CALL_SIGN_BYTES = 8;
+  private static final int RECORD_BYTES = 4 + CALL_SIGN_BYTES + 4 + 4 * 4 + 8 * 2 + 1 + 8 * 3;
+  private static final int CHECKSUM_BYTES = 4;
+  private static final byte ON_GROUND = 0x01;
+  private static final byte EMERGENCY = 0x02;
+
+  private final long createdMillis;
+  private final List<AircraftState> states;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param createdMillis the time at which the states were captured
+   * @param states the captured states, not null
+   */
+  public AircraftStateSnapshot(long createdMillis, List<AircraftState> states) {
+    this.createdMillis = createdMillis;
+    this.states = Collections.unmodifiableList(new ArrayList<>(states));
+  }
+
+  /**
+   * Reads a snapshot from a file.
+   *
+   * @param path the file to read, not null
+   *
+   * @return the snapshot held in the file
+   *
+   * @throws IOException if the file cannot be read, or does not hold a valid snapshot
+   */
+  public static AircraftStateSnapshot read(Path path) throws IOException {
+    return decode(Files.readAllBytes(path), path);
+  }
+
+  /**
+   * Decodes a snapshot from the bytes written by {@link #toBytes()}.
+   *
+   * @param bytes the encoded snapshot, not null
+   *
+   * @return the decoded snapshot
+   *
+   * @throws IOException if the bytes do not hold a valid snapshot
+   */
+  public static AircraftStateSnapshot fromBytes(byte[] bytes) throws IOException {
+    return decode(bytes, "byte array");
+  }
+
+  private static AircraftStateSnapshot decode(byte[] bytes, Object source) throws IOException {
+    if (bytes.length < HEADER_BYTES + CHECKSUM_BYTES) {
+      throw new IOException("Snapshot is truncated: " + source);
+    }
+
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    final int checksumOffset = bytes.length - CHECKSUM_BYTES;
+    final CRC32 crc32 = new CRC32();
+
+    crc32.update(bytes, 0, checksumOffset);
+
+    if ((int) crc32.getValue() != buffer.getInt(checksumOffset)) {
+      throw new IOException("Snapshot checksum mismatch: " + source);
+    }
+
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Snapshot has an unsupported format: " + source);
+    }
+
+    final long createdMillis = buffer.getLong();
+    final int count = buffer.getInt();
+
+    if (count < 0 || HEADER_BYTES + (long) count * RECORD_BYTES != checksumOffset) {
+      throw new IOException("Snapshot has an inconsistent length: " + source);
+    }
+
+    final List<AircraftState> states = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      states.add(readRecord(buffer));
+    }
+
+    return new AircraftStateSnapshot(createdMillis, states);
+  }
+
+  private static AircraftState readRecord(ByteBuffer buffer) {
+    final AircraftState.Builder builder = new AircraftState.Builder(buffer.getInt());
+    final byte[] callSign = new byte[CALL_SIGN_BYTES];
+    int callSignLength = 0;
+
+    buffer.get(callSign);
+
+    while (callSignLength < CALL_SIGN_BYTES && callSign[callSignLength] != 0) {
+      callSignLength++;
+    }
+
+    if (callSignLength > 0) {
+      builder.callSign(new String(callSign, 0, callSignLength, StandardCharsets.US_ASCII));
+    }
+
+    builder.squawk(buffer.getInt())
+           .altitude(buffer.getFloat())
+           .groundSpeed(buffer.getFloat())
+           .track(buffer.getFloat())
+           .verticalRate(buffer.getFloat());
+
+    final double latitude = buffer.getDouble();
+    final double longitude = buffer.getDouble();
+    final byte flags = buffer.get();
+    final long lastSeenMillis = buffer.getLong();
+    final long positionMillis = buffer.getLong();
+
+    return builder.position(latitude, longitude, positionMillis)
+                  .onGround((flags & ON_GROUND) != 0)
+                  .emergency((flags & EMERGENCY) != 0)
+                  .lastSeenMillis(lastSeenMillis)
+                  .messageCount(buffer.getLong())
+                  .build();
+  }
+
+  private static void writeRecord(ByteBuffer buffer, AircraftState state) {
+    final String callSign = state.getCallSign();
+    final int callSignLength = callSign == null ? 0 : Math.min(CALL_SIGN_BYTES, callSign.length());
+    final int flags = (state.isOnGround() ? ON_GROUND : 0) | (state.isEmergency() ? EMERGENCY : 0);
+
+    buffer.putInt(state.getAddress());
+
+    for (int i = 0; i < CALL_SIGN_BYTES; i++) {
+      buffer.put(i < callSignLength ? (byte) callSign.charAt(i) : 0);
+    }
+
+    buffer.putInt(state.getSquawk())
+          .putFloat(state.getAltitude())
+          .putFloat(state.getGroundSpeed())
+          .putFloat(state.getTrack())
+          .putFloat(state.getVerticalRate())
+          .putDouble(state.getLatitude())
+          .putDouble(state.getLongitude())
+          .put((byte) flags)
+          .putLong(state.getLastSeenMillis())
+          .putLong(state.getPositionMillis())
+          .putLong(state.getMessageCount());
+  }
+
+  public long getCreatedMillis() {
+    return createdMillis;
+  }
+
+  public List<AircraftState> getStates() {
+    return states;
+  }
+
+  /**
+   * Encodes this snapshot in the same format as is written to a file.
+   *
+   * @return the encoded snapshot
+   */
+  public byte[] toBytes() {
+    final ByteBuffer buffer =
+        ByteBuffer.allocate(HEADER_BYTES + states.size() * RECORD_BYTES + CHECKSUM_BYTES);
+
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(createdMillis).putInt(states.size());
+
+    for (AircraftState state : states) {
+      writeRecord(buffer, state);
+    }
+
+    final CRC32 crc32 = new CRC32();
+
+    crc32.update(buffer.array(), 0, buffer.position());
+    buffer.putInt((int) crc32.getValue());
+
+    return buffer.array();
+  }
+
+  /**
+   * Writes this snapshot to a file, atomically replacing any existing file.
+   *
+   * <p>The snapshot is first written and forced to a temporary file alongside the target, which is
+   * then moved over the target.
+   *
+   * @param path the file to write, not null
+   *
+   * @throws IOException if the snapshot cannot be written
+   */
+  public void write(Path path) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(toBytes());
+    final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+    try (FileChannel channel =
+             FileChannel.open(
+                 temporaryPath,
+                 StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING,
+                 StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+
+      channel.force(true);
+    }
+
+    try {
+      Files.move(
+          temporaryPath,
+          path,
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.util.function.Consumer;
+
+/**
+ * A store holding the latest state of each aircraft, keyed by ICAO address.
+ *
+ * <p>Implementations must allow a single writer to update the store while any number of readers
+ * access it, without readers blocking the writer. Readers must always see each aircraft's state as
+ * a whole, never part-way through an update.
+ */
+public interface AircraftStateStore {
+  /**
+   * Gets the state of an aircraft.
+   *
+   * @param address the aircraft's 24 bit ICAO address
+   *
+   * @return the aircraft's state, or null if the store holds no state for the aircraft
+   */
+  AircraftState get(int address);
+
+  /**
+   * Stores the state of an aircraft, replacing any state already held for it.
+   *
+   * @param state the aircraft's state, not null
+   */
+  void put(AircraftState state);
+
+  /**
+   * Removes the state of an aircraft.
+   *
+   * @param address the aircraft's 24 bit ICAO address
+   *
+   * @return true if the store held state for the aircraft, otherwise false
+   */
+  boolean remove(int address);
+
+  /**
+   * Gets the number of aircraft for which the store holds state.
+   *
+   * @return the number of aircraft for which the store holds state
+   */
+  int size();
+
+  /**
+   * Performs an action for the state of each aircraft in the store.
+   *
+   * <p>Iteration is weakly consistent: it does not block updates, and may or may not reflect
+   * updates made while it is in progress.
+   *
+   * @param action the action to perform, not null
+   */
+  void forEach(Consumer<? super AircraftState> action);
+}
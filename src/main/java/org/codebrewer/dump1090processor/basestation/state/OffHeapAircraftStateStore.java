@@ -0,0 +1,463 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import org.codebrewer.dump1090processor.basestation.domain.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * An aircraft state store that holds the state of each aircraft in a fixed-width slot of a direct
+ * buffer outside the Java heap, selected by setting the {@code aircraft.state.store} property to
+ * {@code off-heap}.
+ *
+ * <p>The store holds at most a fixed number of aircraft, and the state of an aircraft that arrives
+ * when the store is full is not stored. Slots are found through an open-addressing index, using
+ * linear probing, held in two primitive arrays. Neither the slots nor the index hold references,
+ * so the store adds nothing for the garbage collector to trace however many aircraft it holds;
+ * instances of {@link AircraftState} are created only as aircraft are read.
+ *
+ * <p>Readers use seqlock-style optimistic reads: the single writer holds a {@link StampedLock}
+ * while changing a slot or the index, and a reader that finds its read overlapped a change simply
+ * reads again, so readers never block the writer. Slots share a fixed number of locks. Call signs
+ * longer than {@value #CALL_SIGN_LENGTH} characters are truncated.
+ */
+@Component
+@ConditionalOnProperty(name = "aircraft.state.store", havingValue = "off-heap")
+@ManagedResource(
+    objectName = "org.codebrewer.dump1090processor:type=Counter,name=OffHeapAircraftStateStore",
+    description = "Holds the latest state of each aircraft outside the Java heap")
+public class OffHeapAircraftStateStore implements AircraftStateStore {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapAircraftStateStore.class);
+
+  static final int CALL_SIGN_LENGTH = 8;
+
+  // The layout of a slot
+  //
+  private static final int ADDRESS_OFFSET = 0;
+  private static final int SQUAWK_OFFSET = 4;
+  private static final int ALTITUDE_OFFSET = 8;
+  private static final int GROUND_SPEED_OFFSET = 12;
+  private static final int TRACK_OFFSET = 16;
+  private static final int VERTICAL_RATE_OFFSET = 20;
+  private static final int LATITUDE_OFFSET = 24;
+  private static final int LONGITUDE_OFFSET = 32;
+  private static final int LAST_SEEN_OFFSET = 40;
+  private static final int POSITION_TIME_OFFSET = 48;
+  private static final int MESSAGE_COUNT_OFFSET = 56;
+  private static final int FLAGS_OFFSET = 64;
+  private static final int CALL_SIGN_LENGTH_OFFSET = 65;
+  private static final int CALL_SIGN_OFFSET = 66;
+  private static final int RANGE_OFFSET = 76;
+  private static final int BEARING_OFFSET = 80;
+  private static final int ELEVATION_OFFSET = 84;
+  static final int SLOT_SIZE = 88;
+
+  private static final int ON_GROUND_FLAG = 1;
+  private static final int EMERGENCY_FLAG = 2;
+  private static final int CALL_SIGN_FLAG = 4;
+
+  // The address held by a free slot and by an empty index entry
+  //
+  private static final int NO_ADDRESS = -1;
+  private static final int LOCK_COUNT = 64;
+  private static final int MAX_CAPACITY = 1 << 24;
+
+  private final int capacity;
+  private final ByteBuffer slots;
+  private final StampedLock[] slotLocks = new StampedLock[LOCK_COUNT];
+  private final StampedLock indexLock = new StampedLock();
+  private final int[] indexAddresses;
+  private final int[] indexSlots;
+  private final int indexMask;
+  private final int[] freeSlots;
+  private final AtomicLong overflowCount = new AtomicLong();
+  private int freeSlotCount;
+  private boolean full;
+  private volatile int size;
+  private volatile int slotLimit;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * <p>The largest number of aircraft held can be specified using the
+   * {@code aircraft.state.store.capacity} property and defaults to 65536 if undefined.
+   *
+   * @param capacity the largest number of aircraft held
+   */
+  @Autowired
+  public OffHeapAircraftStateStore(
+      @Value("${aircraft.state.store.capacity:65536}") int capacity) {
+    // There can be no more aircraft than there are 24 bit addresses
+    //
+    if (capacity <= 0 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException("Capacity must be positive and at most " + MAX_CAPACITY);
+    }
+
+    LOGGER.info("OffHeapAircraftStateStore: capacity {}", capacity);
+    this.capacity = capacity;
+    this.slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+
+    // Keep the index no more than half full, so probe sequences stay short
+    //
+    final int indexSize = Integer.highestOneBit(capacity) << 2;
+
+    this.indexAddresses = new int[indexSize];
+    this.indexSlots = new int[indexSize];
+    this.indexMask = indexSize - 1;
+    this.freeSlots = new int[capacity];
+    Arrays.fill(indexAddresses, NO_ADDRESS);
+
+    for (int i = 0; i < LOCK_COUNT; i++) {
+      slotLocks[i] = new StampedLock();
+    }
+
+    for (int slot = 0; slot < capacity; slot++) {
+      slots.putInt(slot * SLOT_SIZE + ADDRESS_OFFSET, NO_ADDRESS);
+      freeSlots[capacity - 1 - slot] = slot;
+    }
+
+    freeSlotCount = capacity;
+  }
+
+  @Override
+  public AircraftState get(int address) {
+    final int slot = findSlot(address);
+
+    if (slot < 0) {
+      return null;
+    }
+
+    final AircraftState state = read(slot);
+
+    // The slot may have been freed, or reused for another aircraft, since it was found
+    //
+    return state == null || state.getAddress() != address ? null : state;
+  }
+
+  @Override
+  public void put(AircraftState state) {
+    final int address = state.getAddress();
+
+    if (address < 0) {
+      throw new IllegalArgumentException("Invalid ICAO address: " + address);
+    }
+
+    final int index = probe(address);
+
+    if (indexAddresses[index] == address) {
+      write(indexSlots[index], state);
+
+      return;
+    }
+
+    if (freeSlotCount == 0) {
+      overflowCount.incrementAndGet();
+
+      if (!full) {
+        full = true;
+        LOGGER.warn("Aircraft state store is full: {} aircraft", capacity);
+      }
+
+      return;
+    }
+
+    full = false;
+
+    final int slot = freeSlots[--freeSlotCount];
+
+    // Fill the slot before indexing it, so a reader never finds an empty slot
+    //
+    write(slot, state);
+
+    final long stamp = indexLock.writeLock();
+
+    try {
+      indexAddresses[index] = address;
+      indexSlots[index] = slot;
+    } finally {
+      indexLock.unlockWrite(stamp);
+    }
+
+    if (slot >= slotLimit) {
+      slotLimit = slot + 1;
+    }
+
+    size++;
+  }
+
+  @Override
+  public boolean remove(int address) {
+    final int index = probe(address);
+
+    if (indexAddresses[index] != address) {
+      return false;
+    }
+
+    final int slot = indexSlots[index];
+    final long stamp = indexLock.writeLock();
+
+    try {
+      deleteIndexEntry(index);
+    } finally {
+      indexLock.unlockWrite(stamp);
+    }
+
+    final StampedLock slotLock = slotLocks[slot % LOCK_COUNT];
+    final long slotStamp = slotLock.writeLock();
+
+    try {
+      slots.putInt(slot * SLOT_SIZE + ADDRESS_OFFSET, NO_ADDRESS);
+    } finally {
+      slotLock.unlockWrite(slotStamp);
+    }
+
+    freeSlots[freeSlotCount++] = slot;
+    size--;
+
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void forEach(Consumer<? super AircraftState> action) {
+    final int limit = slotLimit;
+
+    for (int slot = 0; slot < limit; slot++) {
+      final AircraftState state = read(slot);
+
+      if (state != null) {
+        action.accept(state);
+      }
+    }
+  }
+
+  @ManagedAttribute(description = "The largest number of aircraft held")
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @ManagedAttribute(description = "The number of aircraft held")
+  public int getSize() {
+    return size;
+  }
+
+  @ManagedAttribute(description = "The number of updates not stored because the store was full")
+  public long getOverflowCount() {
+    return overflowCount.get();
+  }
+
+  private int home(int address) {
+    return (int) Hashing.mix(address) & indexMask;
+  }
+
+  // Returns the index of the entry holding an address or, if there is none, of the empty entry at
+  // which it would be added; used only by the writer, which never races with itself
+  //
+  private int probe(int address) {
+    int index = home(address);
+
+    while (indexAddresses[index] != NO_ADDRESS && indexAddresses[index] != address) {
+      index = (index + 1) & indexMask;
+    }
+
+    return index;
+  }
+
+  private int findSlot(int address) {
+    while (true) {
+      final long stamp = indexLock.tryOptimisticRead();
+
+      if (stamp != 0L) {
+        int slot = -1;
+        int index = home(address);
+
+        // Bound the probe, as an overlapping change can leave no empty entry in its path
+        //
+        for (int i = 0; i <= indexMask; i++) {
+          final int entryAddress = indexAddresses[index];
+
+          if (entryAddress == NO_ADDRESS) {
+            break;
+          }
+
+          if (entryAddress == address) {
+            slot = indexSlots[index];
+
+            break;
+          }
+
+          index = (index + 1) & indexMask;
+        }
+
+        if (indexLock.validate(stamp)) {
+          return slot;
+        }
+      }
+
+      Thread.yield();
+    }
+  }
+
+  // Removes an index entry, moving later entries of the same probe sequence back into the gap so
+  // that no tombstone is needed
+  //
+  private void deleteIndexEntry(int index) {
+    int gap = index;
+    int next = index;
+
+    while (true) {
+      next = (next + 1) & indexMask;
+
+      final int address = indexAddresses[next];
+
+      if (address == NO_ADDRESS) {
+        break;
+      }
+
+      // An entry can move back only if the gap is not before its home in the probe sequence
+      //
+      if (((next - home(address)) & indexMask) >= ((next - gap) & indexMask)) {
+        indexAddresses[gap] = address;
+        indexSlots[gap] = indexSlots[next];
+        gap = next;
+      }
+    }
+
+    indexAddresses[gap] = NO_ADDRESS;
+  }
+
+  private void write(int slot, AircraftState state) {
+    final int base = slot * SLOT_SIZE;
+    final String callSign = state.getCallSign();
+    final int callSignLength =
+        callSign == null ? 0 : Math.min(callSign.length(), CALL_SIGN_LENGTH);
+    final int flags =
+        (state.isOnGround() ? ON_GROUND_FLAG : 0)
+        | (state.isEmergency() ? EMERGENCY_FLAG : 0)
+        | (callSign == null ? 0 : CALL_SIGN_FLAG);
+    final StampedLock lock = slotLocks[slot % LOCK_COUNT];
+    final long stamp = lock.writeLock();
+
+    try {
+      slots.putInt(base + ADDRESS_OFFSET, state.getAddress());
+      slots.putInt(base + SQUAWK_OFFSET, state.getSquawk());
+      slots.putFloat(base + ALTITUDE_OFFSET, state.getAltitude());
+      slots.putFloat(base + GROUND_SPEED_OFFSET, state.getGroundSpeed());
+      slots.putFloat(base + TRACK_OFFSET, state.getTrack());
+      slots.putFloat(base + VERTICAL_RATE_OFFSET, state.getVerticalRate());
+      slots.putDouble(base + LATITUDE_OFFSET, state.getLatitude());
+      slots.putDouble(base + LONGITUDE_OFFSET, state.getLongitude());
+      slots.putFloat(base + RANGE_OFFSET, state.getRange());
+      slots.putFloat(base + BEARING_OFFSET, state.getBearing());
+      slots.putFloat(base + ELEVATION_OFFSET, state.getElevation());
+      slots.putLong(base + LAST_SEEN_OFFSET, state.getLastSeenMillis());
+      slots.putLong(base + POSITION_TIME_OFFSET, state.getPositionMillis());
+      slots.putLong(base + MESSAGE_COUNT_OFFSET, state.getMessageCount());
+      slots.put(base + FLAGS_OFFSET, (byte) flags);
+      slots.put(base + CALL_SIGN_LENGTH_OFFSET, (byte) callSignLength);
+
+      for (int i = 0; i < callSignLength; i++) {
+        slots.put(base + CALL_SIGN_OFFSET + i, (byte) callSign.charAt(i));
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  // Returns the state held in a slot, or null if the slot is free
+  //
+  private AircraftState read(int slot) {
+    final StampedLock lock = slotLocks[slot % LOCK_COUNT];
+
+    while (true) {
+      final long stamp = lock.tryOptimisticRead();
+
+      if (stamp != 0L) {
+        final AircraftState state = decode(slot * SLOT_SIZE);
+
+        if (lock.validate(stamp)) {
+          return state;
+        }
+      }
+
+      Thread.yield();
+    }
+  }
+
+  // Decodes a slot without assuming that it is consistent, as it may be changing, so that a read
+  // overlapping a change fails validation rather than throwing an exception
+  //
+  private AircraftState decode(int base) {
+    final int address = slots.getInt(base + ADDRESS_OFFSET);
+
+    if (address == NO_ADDRESS) {
+      return null;
+    }
+
+    final int flags = slots.get(base + FLAGS_OFFSET);
+    final int callSignLength =
+        Math.min(slots.get(base + CALL_SIGN_LENGTH_OFFSET) & 0xff, CALL_SIGN_LENGTH);
+    final AircraftState.Builder builder =
+        new AircraftState.Builder(address)
+            .squawk(slots.getInt(base + SQUAWK_OFFSET))
+            .altitude(slots.getFloat(base + ALTITUDE_OFFSET))
+            .groundSpeed(slots.getFloat(base + GROUND_SPEED_OFFSET))
+            .track(slots.getFloat(base + TRACK_OFFSET))
+            .verticalRate(slots.getFloat(base + VERTICAL_RATE_OFFSET))
+            .position(
+                slots.getDouble(base + LATITUDE_OFFSET),
+                slots.getDouble(base + LONGITUDE_OFFSET),
+                slots.getLong(base + POSITION_TIME_OFFSET))
+            .receiverRelativePosition(
+                slots.getFloat(base + RANGE_OFFSET),
+                slots.getFloat(base + BEARING_OFFSET),
+                slots.getFloat(base + ELEVATION_OFFSET))
+            .lastSeenMillis(slots.getLong(base + LAST_SEEN_OFFSET))
+            .messageCount(slots.getLong(base + MESSAGE_COUNT_OFFSET))
+            .onGround((flags & ON_GROUND_FLAG) != 0)
+            .emergency((flags & EMERGENCY_FLAG) != 0);
+
+    if ((flags & CALL_SIGN_FLAG) != 0) {
+      final byte[] callSign = new byte[callSignLength];
+
+      for (int i = 0; i < callSignLength; i++) {
+        callSign[i] = slots.get(base + CALL_SIGN_OFFSET + i);
+      }
+
+      builder.callSign(new String(callSign, StandardCharsets.ISO_8859_1));
+    }
+
+    return builder.build();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * An aircraft state store that holds immutable {@link AircraftState} instances in a concurrent
+ * map on the Java heap.
+ *
+ * <p>This store is used unless the {@code aircraft.state.store} property selects another.
+ */
+@Component
+@ConditionalOnProperty(
+    name = "aircraft.state.store",
+    havingValue = "on-heap",
+    matchIfMissing = true)
+public class OnHeapAircraftStateStore implements AircraftStateStore {
+  private final Map<Integer, AircraftState> states = new ConcurrentHashMap<>();
+
+  @Override
+  public AircraftState get(int address) {
+    return states.get(address);
+  }
+
+  @Override
+  public void put(AircraftState state) {
+    states.put(state.getAddress(), state);
+  }
+
+  @Override
+  public boolean remove(int address) {
+    return states.remove(address) != null;
+  }
+
+  @Override
+  public int size() {
+    return states.size();
+  }
+
+  @Override
+  public void forEach(Consumer<? super AircraftState> action) {
+    states.values().forEach(action);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.time.Instant;
+
+/**
+ * An immutable copy of the predicted positions of every tracked aircraft at an instant, serialised
+ * once, as JSON and in the compact binary wire format, each both as is and compressed with gzip, so
+ * that any number of requests can be answered with the same bytes.
+ *
+ * <p>Each representation has its own entity tag, made from the identifier of the publisher, the
+ * sequence number of the snapshot and the representation, so that a client holding the current
+ * representation can be told that it has not been modified.
+ *
+ * <p>The arrays returned by {@link #getBody(boolean, boolean)} are shared by every caller, and
+ * must not be modified.
+ */
+public final class PositionSnapshot {
+  private final long sequence;
+  private final Instant timestamp;
+  private final int aircraftCount;
+  private final byte[][] bodies;
+  private final String[] entityTags;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param publisherId a string identifying the publisher, which differs each time the
+   * application starts, not null
+   * @param sequence the sequence number of the snapshot, increasing with each snapshot published
+   * @param timestamp the instant for which the positions were predicted, not null
+   * @param aircraftCount the number of aircraft in the snapshot
+   * @param json the positions as JSON, not null
+   * @param jsonGzip the positions as JSON compressed with gzip, not null
+   * @param binary the positions in the compact binary wire format, not null
+   * @param binaryGzip the positions in the compact binary wire format compressed with gzip, not
+   * null
+   */
+  public PositionSnapshot(
+      String publisherId,
+      long sequence,
+      Instant timestamp,
+      int aircraftCount,
+      byte[] json,
+      byte[] jsonGzip,
+      byte[] binary,
+      byte[] binaryGzip) {
+    this.sequence = sequence;
+    this.timestamp = timestamp;
+    this.aircraftCount = aircraftCount;
+    this.bodies = new byte[][] { json, jsonGzip, binary, binaryGzip };
+    this.entityTags = new String[bodies.length];
+
+    for (int i = 0; i < bodies.length; i++) {
+      entityTags[i] =
+          '"' + publisherId + '-' + sequence + ((i & 2) == 0 ? "-j" : "-b")
+          + ((i & 1) == 0 ? "" : "z") + '"';
+    }
+  }
+
+  private static int index(boolean binary, boolean gzip) {
+    return (binary ? 2 : 0) | (gzip ? 1 : 0);
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public int getAircraftCount() {
+    return aircraftCount;
+  }
+
+  /**
+   * Gets one representation of the positions.
+   *
+   * @param binary true for the compact binary wire format, false for JSON
+   * @param gzip true for the representation compressed with gzip
+   *
+   * @return the shared bytes of the representation, which must not be modified
+   */
+  public byte[] getBody(boolean binary, boolean gzip) {
+    return bodies[index(binary, gzip)];
+  }
+
+  /**
+   * Gets the entity tag of one representation of the positions.
+   *
+   * @param binary true for the compact binary wire format, false for JSON
+   * @param gzip true for the representation compressed with gzip
+   *
+   * @return the quoted, strong entity tag of the representation
+   */
+  public String getEntityTag(boolean binary, boolean gzip) {
+    return entityTags[index(binary, gzip)];
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import java.time.Instant;
+
+/**
+ * An immutable prediction of the position of an aircraft at a given time, dead-reckoned from its
+ * last reported position.
+ *
+ * <p>Properties that are unknown are null, so that they are omitted from, rather than written as
+ * non-numbers to, JSON representations.
+ */
+public final class PredictedPosition {
+  private final String icaoAddress;
+  private final String callSign;
+  private final Instant timestamp;
+  private final double latitude;
+  private final double longitude;
+  private final Float altitude;
+  private final Float groundSpeed;
+  private final Float track;
+  private final Float verticalRate;
+  private final boolean onGround;
+  private final Instant positionTimestamp;
+  private final float age;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param state the state of the aircraft from which the position is predicted, not null
+   * @param timestamp the time for which the position is predicted, not null
+   * @param latitude the aircraft's predicted latitude, in degrees
+   * @param longitude the aircraft's predicted longitude, in degrees
+   * @param altitude the aircraft's predicted altitude, in feet, or NaN if unknown
+   * @param age the age of the aircraft's last reported position at the predicted time, in seconds
+   */
+  public PredictedPosition(
+      AircraftState state,
+      Instant timestamp,
+      double latitude,
+      double longitude,
+      double altitude,
+      double age) {
+    this.icaoAddress = state.getIcaoAddress();
+    this.callSign = state.getCallSign();
+    this.timestamp = timestamp;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.altitude = Double.isNaN(altitude) ? null : (float) altitude;
+    this.groundSpeed = Float.isNaN(state.getGroundSpeed()) ? null : state.getGroundSpeed();
+    this.track = Float.isNaN(state.getTrack()) ? null : state.getTrack();
+    this.verticalRate = Float.isNaN(state.getVerticalRate()) ? null : state.getVerticalRate();
+    this.onGround = state.isOnGround();
+    this.positionTimestamp = Instant.ofEpochMilli(state.getPositionMillis());
+    this.age = (float) age;
+  }
+
+  public String getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  public String getCallSign() {
+    return callSign;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public double getLatitude() {
+    return latitude;
+  }
+
+  public double getLongitude() {
+    return longitude;
+  }
+
+  public Float getAltitude() {
+    return altitude;
+  }
+
+  public Float getGroundSpeed() {
+    return groundSpeed;
+  }
+
+  public Float getTrack() {
+    return track;
+  }
+
+  public Float getVerticalRate() {
+    return verticalRate;
+  }
+
+  public boolean isOnGround() {
+    return onGround;
+  }
+
+  /**
+   * Gets the time at which the position from which this prediction was made was reported.
+   *
+   * @return the time of the aircraft's last reported position
+   */
+  public Instant getPositionTimestamp() {
+    return positionTimestamp;
+  }
+
+  /**
+   * Gets the age of the position from which this prediction was made, at the predicted time.
+   *
+   * <p>The older the position, the less confidence can be placed in the prediction.
+   *
+   * @return the age of the aircraft's last reported position, in seconds
+   */
+  public float getAge() {
+    return age;
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+/**
+ * An immutable pairing of an aircraft with the rate at which messages are being received from it.
+ */
+public class AircraftMessageRate {
+  private final String icaoAddress;
+  private final double messageRate;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param icaoAddress the aircraft's ICAO address, not null
+   * @param messageRate the mean number of messages per second received from the aircraft
+   */
+  public AircraftMessageRate(String icaoAddress, double messageRate) {
+    this.icaoAddress = icaoAddress;
+    this.messageRate = messageRate;
+  }
+
+  public String getIcaoAddress() {
+    return icaoAddress;
+  }
+
+  public double getMessageRate() {
+    return messageRate;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+/**
+ * An immutable snapshot of a histogram having bins of equal width.
+ */
+public class Histogram {
+  private final double lowerBound;
+  private final double binWidth;
+  private final long[] counts;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param lowerBound the lower bound of the first bin
+   * @param binWidth the width of each bin
+   * @param counts the number of values in each bin, not null
+   */
+  public Histogram(double lowerBound, double binWidth, long[] counts) {
+    this.lowerBound = lowerBound;
+    this.binWidth = binWidth;
+    this.counts = counts.clone();
+  }
+
+  public double getLowerBound() {
+    return lowerBound;
+  }
+
+  public double getBinWidth() {
+    return binWidth;
+  }
+
+  public long[] getCounts() {
+    return counts.clone();
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+import java.util.Arrays;
+import org.codebrewer.dump1090processor.basestation.domain.Hashing;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct values in a set using a fixed amount
+ * of memory.
+ *
+ * <p>With a precision of {@code p} the sketch uses {@code 2^p} one-byte registers and has a
+ * relative standard error of about {@code 1.04 / sqrt(2^p)}.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class HyperLogLog {
+  private final int precision;
+  private final byte[] registers;
+
+  /**
+   * Hashes a value for adding to a sketch.
+   *
+   * @param value a value
+   *
+   * @return a hash of the value
+   *
+   * @see Hashing#mix(long)
+   */
+  public static long hash(long value) {
+    return Hashing.mix(value);
+  }
+
+  // The bias-correction constant for the given number of registers
+  //
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param precision the number of hash bits used to select a register, from 4 to 16
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 16) {
+      throw new IllegalArgumentException("Precision must be in the range 4 to 16");
+    }
+
+    this.precision = precision;
+    registers = new byte[1 << precision];
+  }
+
+  /**
+   * Adds a hashed value to the set.
+   *
+   * @param hash a well-distributed 64 bit hash of the value, such as one returned by
+   * {@link #hash(long)}
+   */
+  public void add(long hash) {
+    final int index = (int) (hash >>> (Long.SIZE - precision));
+    final long remainder = hash << precision | (1L << (precision - 1));
+    final byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /**
+   * Merges another sketch of the same precision into this one, so that this sketch estimates the
+   * cardinality of the union of both sets.
+   *
+   * @param other another sketch having the same precision as this one, not null
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Cannot merge sketches of differing precision");
+    }
+
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /**
+   * Removes all values from the set.
+   */
+  public void clear() {
+    Arrays.fill(registers, (byte) 0);
+  }
+
+  /**
+   * Estimates the number of distinct values added to the set.
+   *
+   * @return the estimated cardinality of the set
+   */
+  public long estimate() {
+    final int m = registers.length;
+    double sum = 0;
+    int zeroRegisters = 0;
+
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+
+      if (register == 0) {
+        zeroRegisters++;
+      }
+    }
+
+    final double estimate = alpha(m) * m * m / sum;
+
+    // Linear counting gives a better estimate for small cardinalities
+    //
+    if (estimate <= 2.5 * m && zeroRegisters > 0) {
+      return Math.round(m * Math.log((double) m / zeroRegisters));
+    }
+
+    return Math.round(estimate);
+  }
+}
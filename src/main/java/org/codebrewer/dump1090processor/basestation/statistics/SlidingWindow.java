@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+/**
+ * Abstract base class for aggregates maintained over a sliding window of time.
+ *
+ * <p>Time is divided into fixed-width buckets held in a ring, so memory use is fixed by the number
+ * of buckets however many values are recorded. Aggregates over any window up to the length of the
+ * ring are formed from the most recent buckets, including the partially-filled current bucket.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public abstract class SlidingWindow {
+  private final int bucketCount;
+  private final long bucketMillis;
+  private final long startMillis;
+  private long currentBucket;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param bucketCount the number of buckets in the ring
+   * @param bucketMillis the width of each bucket, in milliseconds
+   * @param nowMillis the current time
+   */
+  protected SlidingWindow(int bucketCount, long bucketMillis, long nowMillis) {
+    if (bucketCount < 1 || bucketMillis < 1) {
+      throw new IllegalArgumentException("Bucket count and width must be positive");
+    }
+
+    this.bucketCount = bucketCount;
+    this.bucketMillis = bucketMillis;
+    this.startMillis = nowMillis;
+    this.currentBucket = nowMillis / bucketMillis;
+  }
+
+  /**
+   * Gets the number of buckets in the ring.
+   *
+   * @return the number of buckets in the ring
+   */
+  public int getBucketCount() {
+    return bucketCount;
+  }
+
+  /**
+   * Gets the width of each bucket.
+   *
+   * @return the width of each bucket, in milliseconds
+   */
+  public long getBucketMillis() {
+    return bucketMillis;
+  }
+
+  /**
+   * Gets the length of time actually covered by a window of the given length: this is less than
+   * the window length for a time after creation of this instance, and may exceed the window length
+   * by up to a bucket width because of the bucket granularity.
+   *
+   * @param windowMillis the length of the window, in milliseconds
+   * @param nowMillis the current time
+   *
+   * @return the length of time covered by the window, in milliseconds, at least 1
+   */
+  public long coveredMillis(long windowMillis, long nowMillis) {
+    final long windowStart = (currentBucket - windowBuckets(windowMillis) + 1) * bucketMillis;
+
+    return Math.max(1, nowMillis - Math.max(windowStart, startMillis));
+  }
+
+  /**
+   * Advances the ring to the bucket containing the given time, clearing buckets that have fallen
+   * out of the ring.
+   *
+   * @param nowMillis the current time
+   *
+   * @return the slot index of the current bucket
+   */
+  protected final int advance(long nowMillis) {
+    final long bucket = nowMillis / bucketMillis;
+
+    if (bucket > currentBucket) {
+      final long stale = Math.min(bucket - currentBucket, bucketCount);
+
+      for (long b = bucket - stale + 1; b <= bucket; b++) {
+        clearSlot(slot(b));
+      }
+
+      currentBucket = bucket;
+    }
+
+    return slot(currentBucket);
+  }
+
+  /**
+   * Gets the slot indexes of the buckets making up a window, most recent first.
+   *
+   * @param windowMillis the length of the window, in milliseconds
+   * @param nowMillis the current time
+   *
+   * @return the slot indexes of the buckets in the window
+   */
+  protected final int[] windowSlots(long windowMillis, long nowMillis) {
+    advance(nowMillis);
+
+    final int[] slots = new int[windowBuckets(windowMillis)];
+
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = slot(currentBucket - i);
+    }
+
+    return slots;
+  }
+
+  /**
+   * Clears the aggregate held in a slot, ready for reuse.
+   *
+   * @param slot the index of the slot to clear
+   */
+  protected abstract void clearSlot(int slot);
+
+  private int windowBuckets(long windowMillis) {
+    final long buckets = (windowMillis + bucketMillis - 1) / bucketMillis;
+
+    return (int) Math.min(bucketCount, Math.max(1, buckets));
+  }
+
+  private int slot(long bucket) {
+    return (int) Math.floorMod(bucket, (long) bucketCount);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+/**
+ * Counts events over a sliding window of time.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class SlidingWindowCounter extends SlidingWindow {
+  private final long[] counts;
+  private long lastUpdateMillis;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param bucketCount the number of buckets in the ring
+   * @param bucketMillis the width of each bucket, in milliseconds
+   * @param nowMillis the current time
+   */
+  public SlidingWindowCounter(int bucketCount, long bucketMillis, long nowMillis) {
+    super(bucketCount, bucketMillis, nowMillis);
+    counts = new long[bucketCount];
+    lastUpdateMillis = nowMillis;
+  }
+
+  /**
+   * Records a single event.
+   *
+   * @param nowMillis the current time
+   */
+  public void increment(long nowMillis) {
+    counts[advance(nowMillis)]++;
+    lastUpdateMillis = nowMillis;
+  }
+
+  /**
+   * Gets the number of events recorded within a window.
+   *
+   * @param windowMillis the length of the window, in milliseconds
+   * @param nowMillis the current time
+   *
+   * @return the number of events recorded within the window
+   */
+  public long count(long windowMillis, long nowMillis) {
+    long count = 0;
+
+    for (int slot : windowSlots(windowMillis, nowMillis)) {
+      count += counts[slot];
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the mean rate of events within a window.
+   *
+   * @param windowMillis the length of the window, in milliseconds
+   * @param nowMillis the current time
+   *
+   * @return the mean number of events per second within the window
+   */
+  public double ratePerSecond(long windowMillis, long nowMillis) {
+    return count(windowMillis, nowMillis) * 1000.0 / coveredMillis(windowMillis, nowMillis);
+  }
+
+  /**
+   * Gets the time at which an event was last recorded.
+   *
+   * @return the time at which an event was last recorded, or the time of creation if none has
+   */
+  public long getLastUpdateMillis() {
+    return lastUpdateMillis;
+  }
+
+  @Override
+  protected void clearSlot(int slot) {
+    counts[slot] = 0;
+  }
+}
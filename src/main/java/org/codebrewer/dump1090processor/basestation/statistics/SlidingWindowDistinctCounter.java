@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+/**
+ * Estimates the number of distinct values seen over a sliding window of time, using a
+ * {@link HyperLogLog} sketch per bucket.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class SlidingWindowDistinctCounter extends SlidingWindow {
+  private final HyperLogLog[] sketches;
+  private final HyperLogLog union;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param bucketCount the number of buckets in the ring
+   * @param bucketMillis the width of each bucket, in milliseconds
+   * @param nowMillis the current time
+   * @param precision the precision of each bucket's HyperLogLog sketch
+   */
+  public SlidingWindowDistinctCounter(
+      int bucketCount, long bucketMillis, long nowMillis, int precision) {
+    super(bucketCount, bucketMillis, nowMillis);
+    sketches = new HyperLogLog[bucketCount];
+
+    for (int i = 0; i < bucketCount; i++) {
+      sketches[i] = new HyperLogLog(precision);
+    }
+
+    union = new HyperLogLog(precision);
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param hash a well-distributed 64 bit hash of the value
+   * @param nowMillis the current time
+   */
+  public void add(long hash, long nowMillis) {
+    sketches[advance(nowMillis)].add(hash);
+  }
+
+  /**
+   * Estimates the number of distinct values recorded within a window.
+   *
+   * @param windowMillis the length of the window, in milliseconds
+   * @param nowMillis the current time
+   *
+   * @return the estimated number of distinct values recorded within the window
+   */
+  public long estimate(long windowMillis, long nowMillis) {
+    union.clear();
+
+    for (int slot : windowSlots(windowMillis, nowMillis)) {
+      union.merge(sketches[slot]);
+    }
+
+    return union.estimate();
+  }
+
+  @Override
+  protected void clearSlot(int slot) {
+    sketches[slot].clear();
+  }
+}
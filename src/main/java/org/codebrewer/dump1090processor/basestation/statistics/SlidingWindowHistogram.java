@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+/**
+ * Maintains a histogram of values over a sliding window of time.
+ *
+ * <p>Values below the lower bound of the first bin are counted in the first bin, and values beyond
+ * the upper bound of the last bin are counted in the last bin.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class SlidingWindowHistogram extends SlidingWindow {
+  private final double lowerBound;
+  private final double binWidth;
+  private final int binCount;
+  private final long[] counts;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param bucketCount the number of buckets in the ring
+   * @param bucketMillis the width of each bucket, in milliseconds
+   * @param nowMillis the current time
+   * @param lowerBound the lower bound of the first bin
+   * @param binWidth the width of each bin
+   * @param binCount the number of bins
+   */
+  public SlidingWindowHistogram(
+      int bucketCount,
+      long bucketMillis,
+      long nowMillis,
+      double lowerBound,
+      double binWidth,
+      int binCount) {
+    super(bucketCount, bucketMillis, nowMillis);
+
+    if (binWidth <= 0 || binCount < 1) {
+      throw new IllegalArgumentException("Bin width and count must be positive");
+    }
+
+    this.lowerBound = lowerBound;
+    this.binWidth = binWidth;
+    this.binCount = binCount;
+    counts = new long[bucketCount * binCount];
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param value the value to record
+   * @param nowMillis the current time
+   */
+  public void record(double value, long nowMillis) {
+    final int bin = (int) Math.max(0, Math.min(binCount - 1, (value - lowerBound) / binWidth));
+
+    counts[advance(nowMillis) * binCount + bin]++;
+  }
+
+  /**
+   * Gets the histogram of values recorded within a window.
+   *
+   * @param windowMillis the length of the window, in milliseconds
+   * @param nowMillis the current time
+   *
+   * @return a snapshot of the histogram of values recorded within the window
+   */
+  public Histogram histogram(long windowMillis, long nowMillis) {
+    final long[] binCounts = new long[binCount];
+
+    for (int slot : windowSlots(windowMillis, nowMillis)) {
+      for (int bin = 0, offset = slot * binCount; bin < binCount; bin++) {
+        binCounts[bin] += counts[offset + bin];
+      }
+    }
+
+    return new Histogram(lowerBound, binWidth, binCounts);
+  }
+
+  @Override
+  protected void clearSlot(int slot) {
+    for (int bin = 0, offset = slot * binCount; bin < binCount; bin++) {
+      counts[offset + bin] = 0;
+    }
+  }
+}
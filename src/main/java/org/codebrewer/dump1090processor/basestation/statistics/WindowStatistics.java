@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+
+/**
+ * An immutable snapshot of the statistics for the stream of valid messages over a window of time.
+ */
+public class WindowStatistics {
+  private final int windowMinutes;
+  private final double messageRate;
+  private final long distinctAircraft;
+  private final Map<TransmissionType, Double> transmissionTypeRates;
+  private final Histogram altitudeHistogram;
+  private final Histogram groundSpeedHistogram;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param windowMinutes the length of the window, in minutes
+   * @param messageRate the mean number of messages per second
+   * @param distinctAircraft the estimated number of distinct aircraft
+   * @param transmissionTypeRates the mean number of transmission messages per second, by
+   * transmission type, not null
+   * @param altitudeHistogram a histogram of reported altitudes, in feet, not null
+   * @param groundSpeedHistogram a histogram of reported ground speeds, in knots, not null
+   */
+  public WindowStatistics(
+      int windowMinutes,
+      double messageRate,
+      long distinctAircraft,
+      Map<TransmissionType, Double> transmissionTypeRates,
+      Histogram altitudeHistogram,
+      Histogram groundSpeedHistogram) {
+    this.windowMinutes = windowMinutes;
+    this.messageRate = messageRate;
+    this.distinctAircraft = distinctAircraft;
+    this.transmissionTypeRates = Collections.unmodifiableMap(new EnumMap<>(transmissionTypeRates));
+    this.altitudeHistogram = altitudeHistogram;
+    this.groundSpeedHistogram = groundSpeedHistogram;
+  }
+
+  public int getWindowMinutes() {
+    return windowMinutes;
+  }
+
+  public double getMessageRate() {
+    return messageRate;
+  }
+
+  public long getDistinctAircraft() {
+    return distinctAircraft;
+  }
+
+  public Map<TransmissionType, Double> getTransmissionTypeRates() {
+    return transmissionTypeRates;
+  }
+
+  public Histogram getAltitudeHistogram() {
+    return altitudeHistogram;
+  }
+
+  public Histogram getGroundSpeedHistogram() {
+    return groundSpeedHistogram;
+  }
+}
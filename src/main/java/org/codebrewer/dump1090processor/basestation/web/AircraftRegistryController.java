@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import org.codebrewer.dump1090processor.basestation.registry.AircraftRegistration;
+import org.codebrewer.dump1090processor.basestation.service.AircraftRegistryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * A REST controller providing the registration details of aircraft by ICAO address.
+ *
+ * <p>An address of which nothing is known is reported as not found, and an invalid address as a
+ * bad request.
+ */
+@RestController
+@RequestMapping("/api/registry")
+public class AircraftRegistryController {
+  private final AircraftRegistryService aircraftRegistryService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param aircraftRegistryService a service providing aircraft registration details
+   */
+  @Autowired
+  public AircraftRegistryController(AircraftRegistryService aircraftRegistryService) {
+    this.aircraftRegistryService = aircraftRegistryService;
+  }
+
+  @GetMapping("/{icaoAddress}")
+  public ResponseEntity<AircraftRegistration> getRegistration(@PathVariable String icaoAddress) {
+    final AircraftRegistration registration = aircraftRegistryService.lookup(icaoAddress);
+
+    return registration == null
+        ? ResponseEntity.notFound().build()
+        : ResponseEntity.ok(registration);
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public void handleIllegalArgument() {
+    // Invalid ICAO addresses are reported as bad requests
+    //
+  }
+}
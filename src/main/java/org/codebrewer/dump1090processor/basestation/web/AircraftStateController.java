@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceFrame;
+import org.codebrewer.dump1090processor.basestation.service.PositionExtrapolationService;
+import org.codebrewer.dump1090processor.basestation.service.PositionSnapshotService;
+import org.codebrewer.dump1090processor.basestation.state.PositionSnapshot;
+import org.codebrewer.dump1090processor.basestation.wire.PositionFrameCodec;
+import org.codebrewer.dump1090processor.basestation.wire.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * A REST controller providing the live positions of aircraft.
+ *
+ * <p>Positions are predicted for the time given by the {@code at} parameter, which defaults to the
+ * current time, from each aircraft's last reported position and velocity. Positions are written as
+ * JSON, or as a frame encoded by {@link PositionFrameCodec} if the request's {@code Accept} header
+ * names the {@link WireFormat#MEDIA_TYPE compact binary wire format}.
+ *
+ * <p>Without the {@code at} parameter, the response is the current {@link PositionSnapshot}, so
+ * no positions are predicted or serialised for the request. It is compressed with gzip if the
+ * request accepts that encoding, and carries an entity tag, so a request whose
+ * {@code If-None-Match} header holds the tag of the current snapshot is answered with status 304
+ * (Not Modified) and no body. Only if no snapshot has been published are the positions predicted
+ * for the request.
+ */
+@RestController
+@RequestMapping("/api/aircraft")
+public class AircraftStateController {
+  private static final MediaType BINARY = MediaType.parseMediaType(WireFormat.MEDIA_TYPE);
+  private static final String GZIP = "gzip";
+
+  private final PositionExtrapolationService positionExtrapolationService;
+  private final PositionSnapshotService positionSnapshotService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param positionExtrapolationService a service predicting the positions of aircraft
+   * @param positionSnapshotService a service publishing the serialised positions of aircraft
+   */
+  @Autowired
+  public AircraftStateController(
+      PositionExtrapolationService positionExtrapolationService,
+      PositionSnapshotService positionSnapshotService) {
+    this.positionExtrapolationService = positionExtrapolationService;
+    this.positionSnapshotService = positionSnapshotService;
+  }
+
+  // Whether an Accept-Encoding header accepts gzip, ignoring any preference among the encodings
+  // it accepts
+  //
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    for (String coding : acceptEncoding.split(",")) {
+      final String[] parts = coding.split(";");
+
+      if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+        for (int i = 1; i < parts.length; i++) {
+          final String parameter = parts[i].trim();
+
+          if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+            return false;
+          }
+        }
+
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static ResponseEntity<byte[]> fromSnapshot(
+      PositionSnapshot snapshot, boolean binary, String acceptEncoding) {
+    final boolean gzip = acceptsGzip(acceptEncoding);
+    final ResponseEntity.BodyBuilder builder =
+        ResponseEntity.ok()
+            .contentType(binary ? BINARY : MediaType.APPLICATION_JSON)
+            .eTag(snapshot.getEntityTag(binary, gzip))
+            .cacheControl(CacheControl.noCache())
+            .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+
+    if (gzip) {
+      builder.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+    }
+
+    return builder.body(snapshot.getBody(binary, gzip));
+  }
+
+  @GetMapping
+  public ResponseEntity<?> getPositions(
+      @RequestParam(name = "at", required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+          Instant timestamp,
+      @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    final PositionSnapshot snapshot =
+        timestamp == null ? positionSnapshotService.getSnapshot() : null;
+
+    if (snapshot != null) {
+      return fromSnapshot(snapshot, false, acceptEncoding);
+    }
+
+    return ResponseEntity.ok(positionExtrapolationService.predict(timestamp));
+  }
+
+  @GetMapping(produces = WireFormat.MEDIA_TYPE)
+  public ResponseEntity<byte[]> getPositionFrame(
+      @RequestParam(name = "at", required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+          Instant timestamp,
+      @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    final PositionSnapshot snapshot =
+        timestamp == null ? positionSnapshotService.getSnapshot() : null;
+
+    if (snapshot != null) {
+      return fromSnapshot(snapshot, true, acceptEncoding);
+    }
+
+    final Instant time = timestamp == null ? Instant.now() : timestamp;
+
+    return ResponseEntity.ok(
+        PositionFrameCodec.encode(
+            new AirspaceFrame(time, positionExtrapolationService.predict(time))));
+  }
+}
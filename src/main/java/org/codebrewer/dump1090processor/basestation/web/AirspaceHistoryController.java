@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceFrame;
+import org.codebrewer.dump1090processor.basestation.service.AirspaceHistoryService;
+import org.codebrewer.dump1090processor.basestation.wire.PositionFrameCodec;
+import org.codebrewer.dump1090processor.basestation.wire.WireBuffer;
+import org.codebrewer.dump1090processor.basestation.wire.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * A REST controller providing the past state of the airspace.
+ *
+ * <p>The positions of aircraft at a single instant are given for the instant in the {@code at}
+ * parameter. A playback streams one frame of positions per line, from the instant in the
+ * {@code from} parameter to the one in the {@code to} parameter, at intervals of {@code step}
+ * seconds of history. Frames are paced so that history plays back {@code speed} times faster than
+ * real time; a speed of zero streams frames as fast as they can be reconstructed.
+ *
+ * <p>If the request's {@code Accept} header names the {@link WireFormat#MEDIA_TYPE compact binary
+ * wire format}, frames are encoded by {@link PositionFrameCodec} rather than written as JSON, and
+ * each frame in a playback is preceded by its length as a variable-length quantity.
+ */
+@RestController
+@RequestMapping("/api/history")
+public class AirspaceHistoryController {
+  /**
+   * The media type of responses holding one JSON document per line.
+   */
+  public static final MediaType APPLICATION_NDJSON =
+      MediaType.parseMediaType("application/x-ndjson");
+
+  private static final byte NEWLINE = '\n';
+
+  private final AirspaceHistoryService airspaceHistoryService;
+  private final ObjectMapper objectMapper;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param airspaceHistoryService a service reconstructing the past state of the airspace
+   * @param objectMapper the mapper used to write playback frames
+   */
+  @Autowired
+  public AirspaceHistoryController(
+      AirspaceHistoryService airspaceHistoryService, ObjectMapper objectMapper) {
+    this.airspaceHistoryService = airspaceHistoryService;
+    this.objectMapper = objectMapper;
+  }
+
+  @GetMapping
+  public AirspaceFrame getAirspace(
+      @RequestParam(name = "at") @DateTimeFormat(iso = ISO.DATE_TIME) Instant timestamp)
+      throws IOException {
+    return airspaceHistoryService.getAirspace(timestamp);
+  }
+
+  @GetMapping(produces = WireFormat.MEDIA_TYPE)
+  public byte[] getAirspaceFrame(
+      @RequestParam(name = "at") @DateTimeFormat(iso = ISO.DATE_TIME) Instant timestamp)
+      throws IOException {
+    return PositionFrameCodec.encode(airspaceHistoryService.getAirspace(timestamp));
+  }
+
+  @GetMapping("/playback")
+  public ResponseEntity<StreamingResponseBody> playback(
+      @RequestParam(name = "from") @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
+      @RequestParam(name = "to") @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
+      @RequestParam(name = "step", defaultValue = "10") long stepSeconds,
+      @RequestParam(name = "speed", defaultValue = "10") double speed) {
+    return playback(
+        from,
+        to,
+        stepSeconds,
+        speed,
+        APPLICATION_NDJSON,
+        outputStream -> frame -> writeJson(frame, outputStream));
+  }
+
+  @GetMapping(path = "/playback", produces = WireFormat.MEDIA_TYPE)
+  public ResponseEntity<StreamingResponseBody> playbackFrames(
+      @RequestParam(name = "from") @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
+      @RequestParam(name = "to") @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
+      @RequestParam(name = "step", defaultValue = "10") long stepSeconds,
+      @RequestParam(name = "speed", defaultValue = "10") double speed) {
+    return playback(
+        from,
+        to,
+        stepSeconds,
+        speed,
+        MediaType.parseMediaType(WireFormat.MEDIA_TYPE),
+        outputStream -> {
+          final WireBuffer frameBuffer = new WireBuffer(4096);
+          final WireBuffer buffer = new WireBuffer(4096);
+
+          return frame -> writeFrame(frame, frameBuffer, buffer, outputStream);
+        });
+  }
+
+  private ResponseEntity<StreamingResponseBody> playback(
+      Instant from,
+      Instant to,
+      long stepSeconds,
+      double speed,
+      MediaType mediaType,
+      Function<OutputStream, Consumer<AirspaceFrame>> frameWriterFactory) {
+    final Duration step = Duration.ofSeconds(stepSeconds);
+
+    if (!(speed >= 0.0)) {
+      throw new IllegalArgumentException("Playback speed must not be negative: " + speed);
+    }
+
+    // The playback is checked here, before the response is committed, so that invalid parameters
+    // are reported with an error status rather than an empty body
+    //
+    airspaceHistoryService.checkPlayback(from, to, step);
+
+    final long frameNanos = speed == 0.0 ? 0L : (long) (step.toNanos() / speed);
+
+    return ResponseEntity.ok()
+        .contentType(mediaType)
+        .body(
+            outputStream -> {
+              final Consumer<AirspaceFrame> frameWriter = frameWriterFactory.apply(outputStream);
+              final long startNanos = System.nanoTime();
+              final long[] frames = new long[1];
+
+              try {
+                airspaceHistoryService.playback(
+                    from,
+                    to,
+                    step,
+                    frame -> {
+                      pace(startNanos + frames[0]++ * frameNanos);
+                      frameWriter.accept(frame);
+                    });
+              } catch (UncheckedIOException e) {
+                throw e.getCause();
+              }
+            });
+  }
+
+  private static void pace(long dueNanos) {
+    final long delayNanos = dueNanos - System.nanoTime();
+
+    if (delayNanos > 0L) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(delayNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted during playback", e);
+      }
+    }
+  }
+
+  private void writeJson(AirspaceFrame frame, OutputStream outputStream) {
+    try {
+      outputStream.write(objectMapper.writeValueAsBytes(frame));
+      outputStream.write(NEWLINE);
+      outputStream.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeFrame(
+      AirspaceFrame frame, WireBuffer frameBuffer, WireBuffer buffer, OutputStream outputStream) {
+    frameBuffer.reset();
+    PositionFrameCodec.encode(frame.getTimestamp(), frame.getAircraft(), frameBuffer);
+    buffer.reset();
+    buffer.putVarLong(frameBuffer.size()).put(frameBuffer);
+
+    try {
+      buffer.writeTo(outputStream);
+      outputStream.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public void handleIllegalArgument() {
+    // Invalid playback parameters are reported as bad requests
+    //
+  }
+
+  @ExceptionHandler(UnsupportedOperationException.class)
+  @ResponseStatus(HttpStatus.NOT_IMPLEMENTED)
+  public void handleUnsupportedOperation() {
+    // History is unavailable under the per-type schema
+    //
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import java.time.Instant;
+import java.util.Set;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.BoundingBox;
+import org.codebrewer.dump1090processor.basestation.query.CsvMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.JsonMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.service.MessageQueryService;
+import org.codebrewer.dump1090processor.basestation.wire.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * A REST controller providing read access to persisted BaseStation messages.
+ *
+ * <p>Messages are selected by any combination of aircraft, time range, message type, transmission
+ * type and bounding box, and returned in order of timestamp and then identifier. Large results
+ * are paged by giving a {@code limit} and then resuming with the {@code afterTimestamp} and
+ * {@code afterId} of the last message returned. Without a limit, every matching message is
+ * returned in a single response. Either way, the response is written as messages are read from
+ * the database, so neither the server nor the database holds the whole result in memory.
+ *
+ * <p>The {@code format} parameter selects JSON, CSV or the compact binary wire format written by
+ * {@link BinaryMessageRecordWriter}, in which a track takes a few bytes per position. Without it,
+ * the binary format is written if the request's {@code Accept} header names its media type, and
+ * JSON otherwise.
+ */
+@RestController
+@RequestMapping("/api/messages")
+public class MessageQueryController {
+  /**
+   * The media type of responses in comma-separated values format.
+   */
+  public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+  private static final MediaType BINARY = MediaType.parseMediaType(WireFormat.MEDIA_TYPE);
+
+  private final MessageQueryService messageQueryService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param messageQueryService a service answering queries over persisted messages
+   */
+  @Autowired
+  public MessageQueryController(MessageQueryService messageQueryService) {
+    this.messageQueryService = messageQueryService;
+  }
+
+  @GetMapping
+  public ResponseEntity<StreamingResponseBody> getMessages(
+      @RequestParam(name = "icao", required = false) String icaoAddress,
+      @RequestParam(name = "from", required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+          Instant from,
+      @RequestParam(name = "to", required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+          Instant to,
+      @RequestParam(name = "type", required = false) Set<MessageType> messageTypes,
+      @RequestParam(name = "transmissionType", required = false)
+          Set<TransmissionType> transmissionTypes,
+      @RequestParam(name = "bbox", required = false) String boundingBox,
+      @RequestParam(name = "afterTimestamp", required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+          Instant afterTimestamp,
+      @RequestParam(name = "afterId", defaultValue = "0") long afterId,
+      @RequestParam(name = "limit", defaultValue = "0") int limit,
+      @RequestParam(name = "format", required = false) String format,
+      @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+    final MessageQuery query =
+        new MessageQuery.Builder()
+            .icaoAddress(icaoAddress)
+            .from(from)
+            .to(to)
+            .messageTypes(messageTypes)
+            .transmissionTypes(transmissionTypes)
+            .boundingBox(boundingBox == null ? null : BoundingBox.parse(boundingBox))
+            .after(afterTimestamp, afterId)
+            .limit(limit)
+            .build();
+
+    // The query is validated above, before the response is committed, so that invalid criteria
+    // are reported with an error status rather than a truncated body
+    //
+    switch (format == null ? negotiateFormat(accept) : format.toLowerCase()) {
+      case "json":
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(
+                outputStream ->
+                    messageQueryService.query(query, new JsonMessageRecordWriter(outputStream)));
+      case "csv":
+        return ResponseEntity.ok()
+            .contentType(TEXT_CSV)
+            .body(
+                outputStream ->
+                    messageQueryService.query(query, new CsvMessageRecordWriter(outputStream)));
+      case "binary":
+        return ResponseEntity.ok()
+            .contentType(BINARY)
+            .body(
+                outputStream ->
+                    messageQueryService.query(
+                        query, new BinaryMessageRecordWriter(outputStream)));
+      default:
+        throw new IllegalArgumentException("Unsupported format: " + format);
+    }
+  }
+
+  private static String negotiateFormat(String accept) {
+    if (accept != null) {
+      for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+        if (BINARY.equalsTypeAndSubtype(mediaType)) {
+          return "binary";
+        }
+      }
+    }
+
+    return "json";
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public void handleIllegalArgument() {
+    // Invalid query criteria are reported as bad requests
+    //
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.service.MessageStatisticsService;
+import org.codebrewer.dump1090processor.basestation.statistics.AircraftMessageRate;
+import org.codebrewer.dump1090processor.basestation.statistics.WindowStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * A REST controller providing read access to the rolling message statistics.
+ *
+ * <p>Every request accepts a {@code window} parameter giving the length, in minutes, of the window
+ * over which statistics are reported. It defaults to 1 and must not exceed
+ * {@value MessageStatisticsService#MAX_WINDOW_MINUTES}.
+ */
+@RestController
+@RequestMapping("/api/statistics")
+public class MessageStatisticsController {
+  private final MessageStatisticsService messageStatisticsService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param messageStatisticsService a service maintaining rolling message statistics
+   */
+  @Autowired
+  public MessageStatisticsController(MessageStatisticsService messageStatisticsService) {
+    this.messageStatisticsService = messageStatisticsService;
+  }
+
+  @GetMapping
+  public WindowStatistics getWindowStatistics(
+      @RequestParam(name = "window", defaultValue = "1") int windowMinutes) {
+    return messageStatisticsService.getWindowStatistics(windowMinutes);
+  }
+
+  @GetMapping("/aircraft")
+  public List<AircraftMessageRate> getAircraftMessageRates(
+      @RequestParam(name = "window", defaultValue = "1") int windowMinutes,
+      @RequestParam(name = "limit", defaultValue = "20") int limit) {
+    return messageStatisticsService.getAircraftMessageRates(windowMinutes, limit);
+  }
+
+  @GetMapping("/aircraft/{icaoAddress}")
+  public AircraftMessageRate getAircraftMessageRate(
+      @PathVariable String icaoAddress,
+      @RequestParam(name = "window", defaultValue = "1") int windowMinutes) {
+    return new AircraftMessageRate(
+        icaoAddress.toUpperCase(),
+        messageStatisticsService.getAircraftMessageRate(icaoAddress, windowMinutes));
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public void handleIllegalArgument() {
+    // Out-of-range window lengths are reported as bad requests
+    //
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.proximity.ProximityEvent;
+import org.codebrewer.dump1090processor.basestation.service.ProximityDetectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * A REST controller providing the most recent events raised for aircraft losing separation.
+ */
+@RestController
+@RequestMapping("/api/proximity")
+public class ProximityController {
+  private final ProximityDetectionService proximityDetectionService;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param proximityDetectionService a service detecting aircraft losing separation
+   */
+  @Autowired
+  public ProximityController(ProximityDetectionService proximityDetectionService) {
+    this.proximityDetectionService = proximityDetectionService;
+  }
+
+  @GetMapping("/events")
+  public List<ProximityEvent> getRecentEvents() {
+    return proximityDetectionService.getRecentEvents();
+  }
+}
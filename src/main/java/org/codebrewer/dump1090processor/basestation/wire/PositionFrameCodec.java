@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.wire;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceFrame;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+
+/**
+ * Encodes the positions of aircraft at an instant in the compact binary wire format, and decodes
+ * them again.
+ *
+ * <p>A frame starts with a format version, the instant in milliseconds since the epoch and the
+ * number of aircraft. Each aircraft follows as its 24 bit ICAO address in three bytes, a bit set
+ * recording which optional fields are present, its latitude and longitude as the difference from
+ * those of the previous aircraft in the frame, and the age of its last reported position in
+ * milliseconds. Only the optional fields that are present follow. Aircraft within a frame are
+ * usually near one another, so the differences between their coordinates are small numbers that
+ * take fewer bytes than the coordinates themselves.
+ *
+ * <p>The values written are quantised as described by {@link WireFormat}, so a decoded position
+ * agrees with the encoded one only to within the quanta.
+ */
+public final class PositionFrameCodec {
+  private static final int VERSION = 1;
+  private static final int CALL_SIGN = 1;
+  private static final int ALTITUDE = 1 << 1;
+  private static final int GROUND_SPEED = 1 << 2;
+  private static final int TRACK = 1 << 3;
+  private static final int VERTICAL_RATE = 1 << 4;
+  private static final int ON_GROUND = 1 << 5;
+
+  private PositionFrameCodec() {
+    // Prevent instantiation
+  }
+
+  /**
+   * Encodes the positions of aircraft at an instant, appending them to a buffer.
+   *
+   * @param timestamp the instant for which the positions were predicted, not null
+   * @param positions the positions, not null
+   * @param buffer the buffer to which the frame is appended, not null
+   *
+   * @throws IllegalArgumentException if the ICAO address of an aircraft is not six upper-case
+   * hexadecimal digits
+   */
+  public static void encode(
+      Instant timestamp, List<PredictedPosition> positions, WireBuffer buffer) {
+    final long timeMillis = timestamp.toEpochMilli();
+    long previousLatitude = 0L;
+    long previousLongitude = 0L;
+
+    buffer.putByte(VERSION).putVarLong(timeMillis).putVarLong(positions.size());
+
+    for (PredictedPosition position : positions) {
+      final int address = WireFormat.parseAddress(position.getIcaoAddress());
+
+      if (address < 0) {
+        throw new IllegalArgumentException("Invalid ICAO address: " + position.getIcaoAddress());
+      }
+
+      final long latitude =
+          WireFormat.quantise(position.getLatitude(), WireFormat.COORDINATE_SCALE);
+      final long longitude =
+          WireFormat.quantise(position.getLongitude(), WireFormat.COORDINATE_SCALE);
+      int fields = 0;
+
+      fields |= position.getCallSign() == null ? 0 : CALL_SIGN;
+      fields |= position.getAltitude() == null ? 0 : ALTITUDE;
+      fields |= position.getGroundSpeed() == null ? 0 : GROUND_SPEED;
+      fields |= position.getTrack() == null ? 0 : TRACK;
+      fields |= position.getVerticalRate() == null ? 0 : VERTICAL_RATE;
+      fields |= position.isOnGround() ? ON_GROUND : 0;
+      buffer.putByte(address >>> 16).putByte(address >>> 8).putByte(address)
+            .putVarLong(fields)
+            .putSignedVarLong(latitude - previousLatitude)
+            .putSignedVarLong(longitude - previousLongitude)
+            .putSignedVarLong(timeMillis - position.getPositionTimestamp().toEpochMilli());
+      previousLatitude = latitude;
+      previousLongitude = longitude;
+
+      if ((fields & CALL_SIGN) != 0) {
+        buffer.putString(position.getCallSign());
+      }
+
+      if ((fields & ALTITUDE) != 0) {
+        buffer.putSignedVarLong(Math.round(position.getAltitude()));
+      }
+
+      if ((fields & GROUND_SPEED) != 0) {
+        buffer.putSignedVarLong(
+            WireFormat.quantise(position.getGroundSpeed(), WireFormat.SPEED_SCALE));
+      }
+
+      if ((fields & TRACK) != 0) {
+        buffer.putSignedVarLong(WireFormat.quantise(position.getTrack(), WireFormat.SPEED_SCALE));
+      }
+
+      if ((fields & VERTICAL_RATE) != 0) {
+        buffer.putSignedVarLong(Math.round(position.getVerticalRate()));
+      }
+    }
+  }
+
+  /**
+   * Encodes the positions of aircraft at an instant.
+   *
+   * @param frame the positions to encode, not null
+   *
+   * @return the encoded frame
+   *
+   * @throws IllegalArgumentException if the ICAO address of an aircraft is not six upper-case
+   * hexadecimal digits
+   */
+  public static byte[] encode(AirspaceFrame frame) {
+    final WireBuffer buffer = new WireBuffer(16 + frame.getAircraft().size() * 24);
+
+    encode(frame.getTimestamp(), frame.getAircraft(), buffer);
+
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Decodes the positions of aircraft at an instant.
+   *
+   * @param reader a reader positioned at the start of a frame, not null
+   *
+   * @return the decoded frame, with the reader positioned after it
+   *
+   * @throws IllegalArgumentException if the frame is truncated or of an unsupported version
+   */
+  public static AirspaceFrame decode(WireReader reader) {
+    final int version = reader.getByte();
+
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported frame version: " + version);
+    }
+
+    final long timeMillis = reader.getVarLong();
+    final Instant timestamp = Instant.ofEpochMilli(timeMillis);
+    final long count = reader.getVarLong();
+    final List<PredictedPosition> positions = new ArrayList<>((int) Math.min(count, 4096L));
+    long latitude = 0L;
+    long longitude = 0L;
+
+    for (long i = 0L; i < count; i++) {
+      final int address = reader.getByte() << 16 | reader.getByte() << 8 | reader.getByte();
+      final int fields = (int) reader.getVarLong();
+
+      latitude += reader.getSignedVarLong();
+      longitude += reader.getSignedVarLong();
+
+      final long positionMillis = timeMillis - reader.getSignedVarLong();
+      final AircraftState.Builder builder =
+          new AircraftState.Builder(address)
+              .onGround((fields & ON_GROUND) != 0)
+              .position(
+                  WireFormat.dequantise(latitude, WireFormat.COORDINATE_SCALE),
+                  WireFormat.dequantise(longitude, WireFormat.COORDINATE_SCALE),
+                  positionMillis);
+      double altitude = Double.NaN;
+
+      if ((fields & CALL_SIGN) != 0) {
+        builder.callSign(reader.getString());
+      }
+
+      if ((fields & ALTITUDE) != 0) {
+        altitude = reader.getSignedVarLong();
+      }
+
+      if ((fields & GROUND_SPEED) != 0) {
+        builder.groundSpeed(
+            (float) WireFormat.dequantise(reader.getSignedVarLong(), WireFormat.SPEED_SCALE));
+      }
+
+      if ((fields & TRACK) != 0) {
+        builder.track(
+            (float) WireFormat.dequantise(reader.getSignedVarLong(), WireFormat.SPEED_SCALE));
+      }
+
+      if ((fields & VERTICAL_RATE) != 0) {
+        builder.verticalRate(reader.getSignedVarLong());
+      }
+
+      final AircraftState state = builder.build();
+
+      positions.add(
+          new PredictedPosition(
+              state,
+              timestamp,
+              state.getLatitude(),
+              state.getLongitude(),
+              altitude,
+              (timeMillis - positionMillis) / 1000.0));
+    }
+
+    return new AirspaceFrame(timestamp, positions);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.wire;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable buffer to which values are appended in the compact binary wire format.
+ *
+ * <p>Unsigned integers are written as variable-length quantities of seven bits per byte, least
+ * significant group first, with the top bit of each byte set if another follows. Signed integers
+ * are first zig-zag encoded, so that values near zero in either direction take few bytes. A buffer
+ * can be reset and reused, so that encoding a response allocates nothing once the buffer has grown
+ * to fit.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class WireBuffer {
+  private byte[] bytes;
+  private int size;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param initialCapacity the number of bytes the buffer holds before it must grow
+   */
+  public WireBuffer(int initialCapacity) {
+    bytes = new byte[Math.max(16, initialCapacity)];
+  }
+
+  private void ensureCapacity(int additionalBytes) {
+    if (size + additionalBytes > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additionalBytes));
+    }
+  }
+
+  /**
+   * Appends a single byte.
+   *
+   * @param value the byte to append, in its low eight bits
+   *
+   * @return this buffer
+   */
+  public WireBuffer putByte(int value) {
+    ensureCapacity(1);
+    bytes[size++] = (byte) value;
+
+    return this;
+  }
+
+  /**
+   * Appends an unsigned integer as a variable-length quantity.
+   *
+   * @param value the value to append, treated as unsigned
+   *
+   * @return this buffer
+   */
+  public WireBuffer putVarLong(long value) {
+    ensureCapacity(10);
+
+    long remaining = value;
+
+    while ((remaining & ~0x7FL) != 0L) {
+      bytes[size++] = (byte) (remaining & 0x7F | 0x80);
+      remaining >>>= 7;
+    }
+
+    bytes[size++] = (byte) remaining;
+
+    return this;
+  }
+
+  /**
+   * Appends a signed integer as a zig-zag encoded variable-length quantity.
+   *
+   * @param value the value to append
+   *
+   * @return this buffer
+   */
+  public WireBuffer putSignedVarLong(long value) {
+    return putVarLong(value << 1 ^ value >> 63);
+  }
+
+  /**
+   * Appends a string as its length in bytes followed by its UTF-8 encoding.
+   *
+   * @param value the string to append, not null
+   *
+   * @return this buffer
+   */
+  public WireBuffer putString(String value) {
+    final byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+
+    putVarLong(encoded.length);
+    ensureCapacity(encoded.length);
+    System.arraycopy(encoded, 0, bytes, size, encoded.length);
+    size += encoded.length;
+
+    return this;
+  }
+
+  /**
+   * Appends the contents of another buffer.
+   *
+   * @param buffer the buffer whose contents are appended, not null
+   *
+   * @return this buffer
+   */
+  public WireBuffer put(WireBuffer buffer) {
+    ensureCapacity(buffer.size);
+    System.arraycopy(buffer.bytes, 0, bytes, size, buffer.size);
+    size += buffer.size;
+
+    return this;
+  }
+
+  /**
+   * Gets the number of bytes appended since the buffer was created or last reset.
+   *
+   * @return the number of bytes in the buffer
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Empties the buffer, keeping its capacity.
+   */
+  public void reset() {
+    size = 0;
+  }
+
+  /**
+   * Copies the contents of the buffer.
+   *
+   * @return a copy of the bytes in the buffer
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(bytes, size);
+  }
+
+  /**
+   * Writes the contents of the buffer to a stream.
+   *
+   * @param outputStream the stream to which the bytes in the buffer are written, not null
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  public void writeTo(OutputStream outputStream) throws IOException {
+    outputStream.write(bytes, 0, size);
+  }
+}
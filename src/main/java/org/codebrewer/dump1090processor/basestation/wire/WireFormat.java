@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.wire;
+
+/**
+ * Constants and conversions shared by the encoders and decoders of the compact binary wire format.
+ *
+ * <p>Values are quantised before they are written: coordinates to units of 0.00001 degrees (about
+ * a metre), altitudes to whole feet, ground speeds and tracks to tenths of a knot and of a degree,
+ * and vertical rates to whole feet per minute. The quanta are finer than the precision of the
+ * BaseStation messages the values come from.
+ */
+public final class WireFormat {
+  /**
+   * The media type of responses in the compact binary wire format.
+   */
+  public static final String MEDIA_TYPE = "application/x-dump1090";
+
+  /**
+   * The number of coordinate units per degree.
+   */
+  public static final double COORDINATE_SCALE = 1.0e5;
+
+  /**
+   * The number of speed units per knot and track units per degree.
+   */
+  public static final double SPEED_SCALE = 10.0;
+
+  private WireFormat() {
+    // Prevent instantiation
+  }
+
+  /**
+   * Quantises a value.
+   *
+   * @param value the value to quantise
+   * @param scale the number of units per whole value
+   *
+   * @return the nearest whole number of units
+   */
+  public static long quantise(double value, double scale) {
+    return Math.round(value * scale);
+  }
+
+  /**
+   * Recovers a value from its quantised form.
+   *
+   * @param units the quantised value
+   * @param scale the number of units per whole value
+   *
+   * @return the value
+   */
+  public static double dequantise(long units, double scale) {
+    return units / scale;
+  }
+
+  /**
+   * Parses the representation of an ICAO address used by the rest of the application.
+   *
+   * <p>Unlike {@code DomainUtils.parseIcaoAddress}, only exactly six upper-case digits are
+   * accepted, so that an address that parses is formatted back to the same string.
+   *
+   * @param icaoAddress the six digit hexadecimal representation of an address, not null
+   *
+   * @return the address as an integer in the range 0 to 0xFFFFFF, or -1 if the representation is
+   * not in the canonical form
+   */
+  public static int parseAddress(String icaoAddress) {
+    if (icaoAddress.length() != 6) {
+      return -1;
+    }
+
+    int address = 0;
+
+    for (int i = 0; i < 6; i++) {
+      final char c = icaoAddress.charAt(i);
+      final int digit;
+
+      if (c >= '0' && c <= '9') {
+        digit = c - '0';
+      } else if (c >= 'A' && c <= 'F') {
+        digit = c - 'A' + 10;
+      } else {
+        return -1;
+      }
+
+      address = address << 4 | digit;
+    }
+
+    return address;
+  }
+
+  /**
+   * Formats an ICAO address in the representation used by the rest of the application.
+   *
+   * @param address an address in the range 0 to 0xFFFFFF
+   *
+   * @return the six digit upper-case hexadecimal representation of the address
+   */
+  public static String formatAddress(int address) {
+    final char[] digits = new char[6];
+
+    for (int i = 5; i >= 0; i--) {
+      digits[i] = Character.toUpperCase(Character.forDigit(address >>> (5 - i) * 4 & 0xF, 16));
+    }
+
+    return new String(digits);
+  }
+}
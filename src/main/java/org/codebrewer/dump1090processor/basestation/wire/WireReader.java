@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.wire;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads values written by a {@link WireBuffer} from an array of bytes.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class WireReader {
+  private final byte[] bytes;
+  private final int limit;
+  private int position;
+
+  /**
+   * Creates a reader of a whole array.
+   *
+   * @param bytes the bytes to read, not null
+   */
+  public WireReader(byte[] bytes) {
+    this(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Creates a reader of part of an array.
+   *
+   * @param bytes the array holding the bytes to read, not null
+   * @param offset the index of the first byte to read
+   * @param length the number of bytes to read
+   */
+  public WireReader(byte[] bytes, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException("Invalid range: " + offset + ", " + length);
+    }
+
+    this.bytes = bytes;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  private void require(int count) {
+    if (limit - position < count) {
+      throw new IllegalArgumentException("Wire data is truncated at offset " + position);
+    }
+  }
+
+  /**
+   * Indicates whether any bytes remain to be read.
+   *
+   * @return true if any bytes remain, otherwise false
+   */
+  public boolean hasRemaining() {
+    return position < limit;
+  }
+
+  /**
+   * Gets the index in the array of the next byte to be read.
+   *
+   * @return the index of the next byte
+   */
+  public int position() {
+    return position;
+  }
+
+  /**
+   * Reads a single byte.
+   *
+   * @return the byte read, as an unsigned value
+   *
+   * @throws IllegalArgumentException if no bytes remain
+   */
+  public int getByte() {
+    require(1);
+
+    return bytes[position++] & 0xFF;
+  }
+
+  /**
+   * Reads an unsigned integer written as a variable-length quantity.
+   *
+   * @return the value read
+   *
+   * @throws IllegalArgumentException if the quantity is truncated or longer than ten bytes
+   */
+  public long getVarLong() {
+    long value = 0L;
+
+    for (int shift = 0; shift < 64; shift += 7) {
+      final int b = getByte();
+
+      value |= (long) (b & 0x7F) << shift;
+
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new IllegalArgumentException("Variable-length quantity is too long at " + position);
+  }
+
+  /**
+   * Reads a signed integer written as a zig-zag encoded variable-length quantity.
+   *
+   * @return the value read
+   *
+   * @throws IllegalArgumentException if the quantity is truncated or longer than ten bytes
+   */
+  public long getSignedVarLong() {
+    final long value = getVarLong();
+
+    return value >>> 1 ^ -(value & 1L);
+  }
+
+  /**
+   * Reads a string written as its length in bytes followed by its UTF-8 encoding.
+   *
+   * @return the string read
+   *
+   * @throws IllegalArgumentException if the string is truncated
+   */
+  public String getString() {
+    final long length = getVarLong();
+
+    if (length > limit - position) {
+      throw new IllegalArgumentException("Wire data is truncated at offset " + position);
+    }
+
+    final String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+
+    position += (int) length;
+
+    return value;
+  }
+}
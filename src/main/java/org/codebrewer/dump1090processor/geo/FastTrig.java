@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+/**
+ * Trigonometric functions computed by linear interpolation in precomputed tables.
+ *
+ * <p>The functions trade a small, bounded loss of accuracy for speed: the sine and cosine are
+ * within 3e-7 of the values computed by {@link Math}, and the arc tangent within 1e-8 radians.
+ * That is far finer than the resolution of the positions reported by aircraft, which are
+ * encoded to a few metres.
+ */
+public final class FastTrig {
+  // Sines are tabulated over a full circle, and arc tangents over [0, 1], with a final entry
+  // equal to the first beyond the range so that interpolation never reads past the table
+  //
+  private static final int SIN_TABLE_SIZE = 1 << 12;
+  private static final int ATAN_TABLE_SIZE = 1 << 12;
+  private static final double SIN_SCALE = SIN_TABLE_SIZE / (2.0 * Math.PI);
+  private static final double QUARTER_TURN = Math.PI / 2.0;
+  private static final double[] SIN = new double[SIN_TABLE_SIZE + 1];
+  private static final double[] ATAN = new double[ATAN_TABLE_SIZE + 1];
+
+  static {
+    for (int i = 0; i <= SIN_TABLE_SIZE; i++) {
+      SIN[i] = Math.sin(i / SIN_SCALE);
+    }
+
+    for (int i = 0; i <= ATAN_TABLE_SIZE; i++) {
+      ATAN[i] = Math.atan((double) i / ATAN_TABLE_SIZE);
+    }
+  }
+
+  private FastTrig() {
+    // Utility class
+  }
+
+  /**
+   * Computes the sine of an angle.
+   *
+   * @param radians a finite angle, in radians
+   *
+   * @return the sine of the angle
+   */
+  public static double sin(double radians) {
+    final double index = radians * SIN_SCALE;
+    final double floor = Math.floor(index);
+
+    // The table size is a power of two, so masking reduces any index, including a negative one,
+    // to the first turn
+    //
+    final int i = (int) ((long) floor & (SIN_TABLE_SIZE - 1));
+
+    return SIN[i] + (SIN[i + 1] - SIN[i]) * (index - floor);
+  }
+
+  /**
+   * Computes the cosine of an angle.
+   *
+   * @param radians a finite angle, in radians
+   *
+   * @return the cosine of the angle
+   */
+  public static double cos(double radians) {
+    return sin(radians + QUARTER_TURN);
+  }
+
+  /**
+   * Computes the angle, in radians, of the point {@code (x, y)} from the positive x axis, as
+   * {@link Math#atan2(double, double)} does.
+   *
+   * @param y the ordinate of the point
+   * @param x the abscissa of the point
+   *
+   * @return the angle of the point, in the range -pi to pi, zero if the point is the origin, or
+   * {@code NaN} if either coordinate is {@code NaN}
+   */
+  public static double atan2(double y, double x) {
+    if (Double.isNaN(x) || Double.isNaN(y)) {
+      return Double.NaN;
+    }
+
+    final double absoluteX = Math.abs(x);
+    final double absoluteY = Math.abs(y);
+
+    if (absoluteX == 0.0 && absoluteY == 0.0) {
+      return 0.0;
+    }
+
+    // Reduce the angle to the first octant, where the tangent is at most one
+    //
+    final boolean steep = absoluteY > absoluteX;
+    final double index =
+        (steep ? absoluteX / absoluteY : absoluteY / absoluteX) * ATAN_TABLE_SIZE;
+    final int i = (int) index;
+    final double octantAngle =
+        i == ATAN_TABLE_SIZE ? ATAN[i] : ATAN[i] + (ATAN[i + 1] - ATAN[i]) * (index - i);
+    double angle = steep ? QUARTER_TURN - octantAngle : octantAngle;
+
+    if (x < 0.0) {
+      angle = Math.PI - angle;
+    }
+
+    return y < 0.0 ? -angle : angle;
+  }
+}
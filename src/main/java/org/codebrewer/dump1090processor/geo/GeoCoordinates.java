@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+import org.geolatte.geom.Point;
+
+/**
+ * Helpers for working with geographic coordinates in degrees on hot paths.
+ */
+public final class GeoCoordinates {
+  private GeoCoordinates() {
+    // Utility class
+  }
+
+  /**
+   * Reads the longitude and latitude of a point into an array.
+   *
+   * <p>Unlike {@link Point#getPosition()}, this does not allocate a new position object, so a
+   * caller processing every message can reuse one array.
+   *
+   * @param point a point, not empty
+   * @param coordinates an array of at least two elements, receiving the longitude in the first and
+   * the latitude in the second
+   */
+  public static void readLongitudeLatitude(Point<?> point, double[] coordinates) {
+    point.getPositions().getCoordinates(0, coordinates);
+  }
+
+  /**
+   * Computes the difference between two longitudes, taking the shorter way around the Earth.
+   *
+   * @param longitude a longitude, in degrees from -180 to 180
+   * @param otherLongitude the longitude to subtract, in degrees from -180 to 180
+   *
+   * @return the difference, in degrees from -180 to 180
+   */
+  public static double longitudeDifference(double longitude, double otherLongitude) {
+    final double difference = longitude - otherLongitude;
+
+    if (difference > 180.0) {
+      return difference - 360.0;
+    }
+
+    if (difference < -180.0) {
+      return difference + 360.0;
+    }
+
+    return difference;
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+/**
+ * Computes the range, bearing and elevation angle of aircraft from a fixed receiver.
+ *
+ * <p>The Earth is modelled as a sphere of the mean radius. An aircraft's position is projected
+ * onto the local tangent plane at the receiver, giving its east, north and up coordinates, from
+ * which the range, bearing and elevation follow directly. The projection is exact on the sphere
+ * at any distance, so unlike a flat-Earth approximation its bearings do not drift for distant
+ * aircraft; the trigonometric functions of the receiver's latitude are computed once, and those of
+ * the aircraft's position by {@link FastTrig}. {@link #locateExactly(double, double, double)}
+ * computes the same quantities with haversine formulae and the functions of {@link Math}, for
+ * comparison.
+ *
+ * <p>Instances are immutable.
+ */
+public final class ReceiverGeometry {
+  /**
+   * The mean radius of the Earth, in metres.
+   */
+  public static final double EARTH_RADIUS_METRES = 6_371_008.8;
+
+  private final double latitude;
+  private final double longitude;
+  private final double altitude;
+  private final double latitudeRadians;
+  private final double longitudeRadians;
+  private final double sinLatitude;
+  private final double cosLatitude;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param latitude the latitude of the receiver, in degrees
+   * @param longitude the longitude of the receiver, in degrees
+   * @param altitude the altitude of the receiver's antenna above mean sea level, in metres
+   *
+   * @throws IllegalArgumentException if the latitude or longitude is out of range, or the altitude
+   * is not finite
+   */
+  public ReceiverGeometry(double latitude, double longitude, double altitude) {
+    if (!(latitude >= -90.0 && latitude <= 90.0)) {
+      throw new IllegalArgumentException("Latitude must be in the range [-90, 90]: " + latitude);
+    }
+
+    if (!(longitude >= -180.0 && longitude <= 180.0)) {
+      throw new IllegalArgumentException(
+          "Longitude must be in the range [-180, 180]: " + longitude);
+    }
+
+    if (!Double.isFinite(altitude)) {
+      throw new IllegalArgumentException("Altitude must be finite: " + altitude);
+    }
+
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.altitude = altitude;
+    this.latitudeRadians = Math.toRadians(latitude);
+    this.longitudeRadians = Math.toRadians(longitude);
+    this.sinLatitude = Math.sin(latitudeRadians);
+    this.cosLatitude = Math.cos(latitudeRadians);
+  }
+
+  private static float normalizeBearing(double bearingRadians) {
+    final double degrees = Math.toDegrees(bearingRadians);
+    final float bearing = (float) (degrees < 0.0 ? degrees + 360.0 : degrees);
+
+    // A bearing just short of a full turn can round up to one
+    //
+    return bearing < 360.0f ? bearing : 0.0f;
+  }
+
+  public double getLatitude() {
+    return latitude;
+  }
+
+  public double getLongitude() {
+    return longitude;
+  }
+
+  public double getAltitude() {
+    return altitude;
+  }
+
+  /**
+   * Computes the position of an aircraft relative to the receiver.
+   *
+   * @param aircraftLatitude the latitude of the aircraft, in degrees
+   * @param aircraftLongitude the longitude of the aircraft, in degrees
+   * @param aircraftAltitude the altitude of the aircraft above mean sea level, in metres, or
+   * {@code NaN} if unknown
+   *
+   * @return the position of the aircraft relative to the receiver
+   */
+  public ReceiverRelativePosition locate(
+      double aircraftLatitude, double aircraftLongitude, double aircraftAltitude) {
+    final double phi = Math.toRadians(aircraftLatitude);
+    final double deltaPhi = phi - latitudeRadians;
+    final double deltaLambda = Math.toRadians(aircraftLongitude) - longitudeRadians;
+    final double cosPhi = FastTrig.cos(phi);
+    final double sinHalfDeltaPhi = FastTrig.sin(deltaPhi / 2.0);
+    final double sinHalfDeltaLambda = FastTrig.sin(deltaLambda / 2.0);
+    final double haversineDeltaLambda = 2.0 * sinHalfDeltaLambda * sinHalfDeltaLambda;
+
+    // The direction of the aircraft from the centre of the Earth, in the east, north and up axes
+    // at the receiver. The north and up components are written in terms of the sines of small
+    // angles, rather than as differences of nearly equal products, so that their errors stay
+    // proportional to their size however close the aircraft is
+    //
+    final double east = cosPhi * FastTrig.sin(deltaLambda);
+    final double north = FastTrig.sin(deltaPhi) + sinLatitude * cosPhi * haversineDeltaLambda;
+    final double oneMinusUp =
+        2.0 * sinHalfDeltaPhi * sinHalfDeltaPhi + cosLatitude * cosPhi * haversineDeltaLambda;
+    final double horizontal = Math.sqrt(east * east + north * north);
+    final double centralAngle = FastTrig.atan2(horizontal, 1.0 - oneMinusUp);
+    final float elevation;
+
+    if (Double.isNaN(aircraftAltitude)) {
+      elevation = Float.NaN;
+    } else {
+      final double aircraftRadius = EARTH_RADIUS_METRES + aircraftAltitude;
+
+      elevation =
+          (float) Math.toDegrees(
+              FastTrig.atan2(
+                  aircraftAltitude - altitude - aircraftRadius * oneMinusUp,
+                  aircraftRadius * horizontal));
+    }
+
+    return new ReceiverRelativePosition(
+        (float) (EARTH_RADIUS_METRES * centralAngle),
+        normalizeBearing(FastTrig.atan2(east, north)),
+        elevation);
+  }
+
+  /**
+   * Computes the position of an aircraft relative to the receiver using haversine formulae and the
+   * trigonometric functions of {@link Math}.
+   *
+   * @param aircraftLatitude the latitude of the aircraft, in degrees
+   * @param aircraftLongitude the longitude of the aircraft, in degrees
+   * @param aircraftAltitude the altitude of the aircraft above mean sea level, in metres, or
+   * {@code NaN} if unknown
+   *
+   * @return the position of the aircraft relative to the receiver
+   */
+  public ReceiverRelativePosition locateExactly(
+      double aircraftLatitude, double aircraftLongitude, double aircraftAltitude) {
+    final double phi = Math.toRadians(aircraftLatitude);
+    final double deltaPhi = phi - latitudeRadians;
+    final double deltaLambda = Math.toRadians(aircraftLongitude) - longitudeRadians;
+    final double sinHalfDeltaPhi = Math.sin(deltaPhi / 2.0);
+    final double sinHalfDeltaLambda = Math.sin(deltaLambda / 2.0);
+    final double a =
+        sinHalfDeltaPhi * sinHalfDeltaPhi
+        + cosLatitude * Math.cos(phi) * sinHalfDeltaLambda * sinHalfDeltaLambda;
+    final double centralAngle = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1.0 - a));
+    final double bearing =
+        Math.atan2(
+            Math.sin(deltaLambda) * Math.cos(phi),
+            cosLatitude * Math.sin(phi) - sinLatitude * Math.cos(phi) * Math.cos(deltaLambda));
+    final float elevation;
+
+    if (Double.isNaN(aircraftAltitude)) {
+      elevation = Float.NaN;
+    } else {
+      final double aircraftRadius = EARTH_RADIUS_METRES + aircraftAltitude;
+
+      elevation =
+          (float) Math.toDegrees(
+              Math.atan2(
+                  aircraftRadius * Math.cos(centralAngle) - (EARTH_RADIUS_METRES + altitude),
+                  aircraftRadius * Math.sin(centralAngle)));
+    }
+
+    return new ReceiverRelativePosition(
+        (float) (EARTH_RADIUS_METRES * centralAngle), normalizeBearing(bearing), elevation);
+  }
+}
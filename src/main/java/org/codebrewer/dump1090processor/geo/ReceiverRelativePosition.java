@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+/**
+ * The position of an aircraft relative to the receiver: its range, bearing and elevation angle.
+ *
+ * <p>Instances are immutable.
+ */
+public final class ReceiverRelativePosition {
+  private final float range;
+  private final float bearing;
+  private final float elevation;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param range the distance to the aircraft over the surface of the Earth, in metres
+   * @param bearing the initial bearing of the aircraft from true north, in degrees in the range
+   * [0, 360)
+   * @param elevation the angle of the aircraft above the receiver's horizon, in degrees, or
+   * {@code NaN} if the aircraft's altitude is unknown
+   */
+  public ReceiverRelativePosition(float range, float bearing, float elevation) {
+    this.range = range;
+    this.bearing = bearing;
+    this.elevation = elevation;
+  }
+
+  /**
+   * Gets the distance to the aircraft over the surface of the Earth.
+   *
+   * @return the distance to the aircraft, in metres
+   */
+  public float getRange() {
+    return range;
+  }
+
+  /**
+   * Gets the initial bearing of the aircraft from true north.
+   *
+   * @return the bearing of the aircraft, in degrees in the range [0, 360)
+   */
+  public float getBearing() {
+    return bearing;
+  }
+
+  /**
+   * Gets the angle of the aircraft above the receiver's horizon.
+   *
+   * @return the elevation angle of the aircraft, in degrees, or {@code NaN} if the aircraft's
+   * altitude is unknown
+   */
+  public float getElevation() {
+    return elevation;
+  }
+
+  @Override
+  public String toString() {
+    return "ReceiverRelativePosition{"
+           + "range=" + range
+           + ", bearing=" + bearing
+           + ", elevation=" + elevation
+           + '}';
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+import java.util.Arrays;
+
+/**
+ * Decodes the Compact Position Reporting (CPR) encoded positions carried by extended squitter
+ * airborne position messages.
+ *
+ * <p>An unambiguous ("global") position can only be decoded from a pair of even and odd encoded
+ * positions received within a short interval, so the most recent of each is remembered per
+ * aircraft. State is held in a fixed-capacity open-addressing table of primitive arrays, so no
+ * objects are allocated per decoded position.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class CprDecoder {
+  /**
+   * The maximum interval, in milliseconds, between an even and odd encoded position for the pair
+   * to be used for global decoding.
+   */
+  public static final long MAX_PAIR_INTERVAL_MILLIS = 10_000L;
+
+  private static final int EMPTY = -1;
+  private static final double CPR_SCALE = 131072.0; // 2^17
+  private static final double AIRBORNE_DLAT_EVEN = 360.0 / 60;
+  private static final double AIRBORNE_DLAT_ODD = 360.0 / 59;
+
+  // NL_TRANSITIONS[nl] is the latitude below which the number of longitude zones is at least nl
+  //
+  private static final double[] NL_TRANSITIONS = new double[60];
+
+  static {
+    final double a = 1 - Math.cos(Math.PI / (2 * 15));
+
+    for (int nl = 2; nl < NL_TRANSITIONS.length; nl++) {
+      NL_TRANSITIONS[nl] =
+          Math.toDegrees(Math.acos(Math.sqrt(a / (1 - Math.cos(2 * Math.PI / nl)))));
+    }
+  }
+
+  private final int mask;
+  private final int[] addresses;
+  private final int[] evenLatitudes;
+  private final int[] evenLongitudes;
+  private final long[] evenTimes;
+  private final int[] oddLatitudes;
+  private final int[] oddLongitudes;
+  private final long[] oddTimes;
+
+  static int numberOfLongitudeZones(double latitude) {
+    final double absoluteLatitude = Math.abs(latitude);
+
+    for (int nl = NL_TRANSITIONS.length - 1; nl >= 2; nl--) {
+      if (absoluteLatitude < NL_TRANSITIONS[nl]) {
+        return nl;
+      }
+    }
+
+    return 1;
+  }
+
+  private static double modulo(double a, double b) {
+    return a - b * Math.floor(a / b);
+  }
+
+  /**
+   * Creates a decoder able to track pairs of positions for the given number of aircraft.
+   *
+   * @param capacity the maximum number of aircraft, rounded up to a power of two
+   */
+  public CprDecoder(int capacity) {
+    final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+    mask = size - 1;
+    addresses = new int[size];
+    evenLatitudes = new int[size];
+    evenLongitudes = new int[size];
+    evenTimes = new long[size];
+    oddLatitudes = new int[size];
+    oddLongitudes = new int[size];
+    oddTimes = new long[size];
+    Arrays.fill(addresses, EMPTY);
+  }
+
+  /**
+   * Records an encoded airborne position and, if a pair of recent even and odd positions is now
+   * available, decodes the aircraft's position.
+   *
+   * @param address the aircraft's 24 bit address
+   * @param odd whether the encoded position has the odd (true) or even (false) format
+   * @param encodedLatitude the 17 bit encoded latitude
+   * @param encodedLongitude the 17 bit encoded longitude
+   * @param timeMillis the time at which the encoded position was received
+   * @param position a two-element array into which the decoded latitude and longitude, in
+   * degrees, are written, not null
+   *
+   * @return true if a position was decoded, otherwise false
+   */
+  public boolean decodeAirborne(
+      int address,
+      boolean odd,
+      int encodedLatitude,
+      int encodedLongitude,
+      long timeMillis,
+      double[] position) {
+    final int slot = findSlot(address, timeMillis);
+
+    if (slot < 0) {
+      return false;
+    }
+
+    if (odd) {
+      oddLatitudes[slot] = encodedLatitude;
+      oddLongitudes[slot] = encodedLongitude;
+      oddTimes[slot] = timeMillis;
+    } else {
+      evenLatitudes[slot] = encodedLatitude;
+      evenLongitudes[slot] = encodedLongitude;
+      evenTimes[slot] = timeMillis;
+    }
+
+    if (Math.abs(evenTimes[slot] - oddTimes[slot]) > MAX_PAIR_INTERVAL_MILLIS) {
+      return false;
+    }
+
+    final double lat0 = evenLatitudes[slot];
+    final double lat1 = oddLatitudes[slot];
+    final double lon0 = evenLongitudes[slot];
+    final double lon1 = oddLongitudes[slot];
+    final double j = Math.floor((59 * lat0 - 60 * lat1) / CPR_SCALE + 0.5);
+    double rlat0 = AIRBORNE_DLAT_EVEN * (modulo(j, 60) + lat0 / CPR_SCALE);
+    double rlat1 = AIRBORNE_DLAT_ODD * (modulo(j, 59) + lat1 / CPR_SCALE);
+
+    if (rlat0 >= 270) {
+      rlat0 -= 360;
+    }
+
+    if (rlat1 >= 270) {
+      rlat1 -= 360;
+    }
+
+    if (rlat0 < -90 || rlat0 > 90 || rlat1 < -90 || rlat1 > 90) {
+      return false;
+    }
+
+    final int nl = numberOfLongitudeZones(rlat0);
+
+    if (nl != numberOfLongitudeZones(rlat1)) {
+      return false; // The pair straddles a longitude zone boundary
+    }
+
+    final double m = Math.floor((lon0 * (nl - 1) - lon1 * nl) / CPR_SCALE + 0.5);
+    final double latitude;
+    double longitude;
+
+    if (odd) {
+      final int ni = Math.max(nl - 1, 1);
+
+      latitude = rlat1;
+      longitude = (360.0 / ni) * (modulo(m, ni) + lon1 / CPR_SCALE);
+    } else {
+      final int ni = Math.max(nl, 1);
+
+      latitude = rlat0;
+      longitude = (360.0 / ni) * (modulo(m, ni) + lon0 / CPR_SCALE);
+    }
+
+    longitude -= Math.floor((longitude + 180) / 360) * 360;
+    position[0] = latitude;
+    position[1] = longitude;
+
+    return true;
+  }
+
+  // Finds the slot holding state for the given address, claiming a free or stale slot if none
+  // does, or returns -1 if the table is full of current state for other aircraft
+  //
+  private int findSlot(int address, long timeMillis) {
+    int slot = (address * 0x9E3779B1) >>> 8 & mask;
+    int reusableSlot = -1;
+
+    for (int probe = 0; probe <= mask; probe++, slot = (slot + 1) & mask) {
+      final int slotAddress = addresses[slot];
+
+      if (slotAddress == address) {
+        return slot;
+      }
+
+      if (slotAddress == EMPTY) {
+        return claimSlot(reusableSlot < 0 ? slot : reusableSlot, address);
+      }
+
+      if (reusableSlot < 0 && isStale(slot, timeMillis)) {
+        reusableSlot = slot;
+      }
+    }
+
+    return reusableSlot < 0 ? -1 : claimSlot(reusableSlot, address);
+  }
+
+  private boolean isStale(int slot, long timeMillis) {
+    return timeMillis - Math.max(evenTimes[slot], oddTimes[slot]) > MAX_PAIR_INTERVAL_MILLIS;
+  }
+
+  private int claimSlot(int slot, int address) {
+    addresses[slot] = address;
+    evenTimes[slot] = Long.MIN_VALUE / 2;
+    oddTimes[slot] = Long.MIN_VALUE / 2;
+
+    return slot;
+  }
+}
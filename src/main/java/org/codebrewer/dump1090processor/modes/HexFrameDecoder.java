@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+import java.util.Arrays;
+
+/**
+ * Decodes Mode S frames from the "AVR" hexadecimal text format written by dump1090 to its raw
+ * output port (30002 by default).
+ *
+ * <p>Frames look like {@code *8D4840D6202CC371C32CE0576098;} or, when dump1090 is configured to
+ * include a 12MHz timestamp, {@code @0123456789AB8D4840D6202CC371C32CE0576098;}. Decoding works
+ * directly on the received bytes and writes into a caller-supplied buffer, so no objects are
+ * allocated per frame.
+ */
+public final class HexFrameDecoder {
+  /**
+   * The length in bytes of a long (112 bit) Mode S frame, and so the minimum size of a buffer
+   * passed to {@link #decode}.
+   */
+  public static final int MAX_FRAME_LENGTH = 14;
+
+  // The number of hex digits in the timestamp that follows a leading '@'
+  //
+  private static final int TIMESTAMP_DIGITS = 12;
+
+  // Maps an ASCII character to its hexadecimal value, or -1 if it isn't a hex digit
+  //
+  private static final byte[] HEX_VALUES = new byte[256];
+
+  static {
+    Arrays.fill(HEX_VALUES, (byte) -1);
+
+    for (int c = '0'; c <= '9'; c++) {
+      HEX_VALUES[c] = (byte) (c - '0');
+    }
+
+    for (int c = 'A'; c <= 'F'; c++) {
+      HEX_VALUES[c] = (byte) (c - 'A' + 10);
+      HEX_VALUES[c + ('a' - 'A')] = (byte) (c - 'A' + 10);
+    }
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+  }
+
+  /**
+   * Decodes a single AVR-format frame.
+   *
+   * @param text the bytes of the text representation of a frame, not null
+   * @param offset the index in {@code text} at which the representation starts
+   * @param length the number of bytes in the representation
+   * @param frame a buffer of at least {@link #MAX_FRAME_LENGTH} bytes into which the frame's
+   * bytes are written, not null
+   *
+   * @return the number of bytes written to {@code frame} (7 for a short frame or 14 for a long
+   * frame), or -1 if the text is not a well-formed frame
+   */
+  public static int decode(byte[] text, int offset, int length, byte[] frame) {
+    int i = offset;
+    int end = offset + length;
+
+    while (i < end && isWhitespace(text[i])) {
+      i++;
+    }
+
+    while (end > i && isWhitespace(text[end - 1])) {
+      end--;
+    }
+
+    if (end - i < 2 || text[end - 1] != ';') {
+      return -1;
+    }
+
+    end--;
+
+    if (text[i] == '@') {
+      i++;
+
+      for (int limit = i + TIMESTAMP_DIGITS; i < limit; i++) {
+        if (i >= end || HEX_VALUES[text[i] & 0xFF] < 0) {
+          return -1;
+        }
+      }
+    } else if (text[i] == '*') {
+      i++;
+    } else {
+      return -1;
+    }
+
+    final int digits = end - i;
+
+    if (digits != 2 * MAX_FRAME_LENGTH && digits != MAX_FRAME_LENGTH) {
+      return -1;
+    }
+
+    for (int j = 0; i < end; i += 2, j++) {
+      final int high = HEX_VALUES[text[i] & 0xFF];
+      final int low = HEX_VALUES[text[i + 1] & 0xFF];
+
+      if ((high | low) < 0) {
+        return -1;
+      }
+
+      frame[j] = (byte) (high << 4 | low);
+    }
+
+    return digits >> 1;
+  }
+
+  private HexFrameDecoder() {
+    // Utility class
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the 24 bit addresses recently seen in frames whose CRC could be fully checked.
+ *
+ * <p>Frames in which the parity field is overlaid with the transponder address (such as DF4 and
+ * DF5 surveillance replies) yield an address whatever their content, so the address can only be
+ * trusted if it has recently been seen in a frame that carries its address in the clear, such as
+ * an extended squitter or all-call reply.
+ *
+ * <p>Addresses are held in two bit sets, each covering the full 24 bit address space, which are
+ * rotated at a configured interval so that addresses are forgotten after one to two intervals.
+ * Instances are not thread-safe.
+ */
+public class KnownAddressFilter {
+  private static final int WORDS = (1 << 24) / Long.SIZE;
+
+  private final long generationMillis;
+  private long[] currentGeneration = new long[WORDS];
+  private long[] previousGeneration = new long[WORDS];
+  private long generationStartMillis = Long.MIN_VALUE;
+
+  /**
+   * Sole constructor for this class.
+   *
+   * @param generationMillis the interval, in milliseconds, at which the oldest generation of
+   * addresses is forgotten
+   */
+  public KnownAddressFilter(long generationMillis) {
+    this.generationMillis = generationMillis;
+  }
+
+  /**
+   * Records that an address has been seen.
+   *
+   * @param address a 24 bit address
+   * @param timeMillis the time at which the address was seen
+   */
+  public void markSeen(int address, long timeMillis) {
+    rotateIfRequired(timeMillis);
+    currentGeneration[address >>> 6] |= 1L << address;
+  }
+
+  /**
+   * Indicates whether or not an address has been seen recently.
+   *
+   * @param address a 24 bit address
+   * @param timeMillis the current time
+   *
+   * @return true if the address has been seen recently, otherwise false
+   */
+  public boolean isKnown(int address, long timeMillis) {
+    rotateIfRequired(timeMillis);
+
+    final int word = address >>> 6;
+    final long bit = 1L << address;
+
+    return ((currentGeneration[word] | previousGeneration[word]) & bit) != 0;
+  }
+
+  private void rotateIfRequired(long timeMillis) {
+    if (generationStartMillis == Long.MIN_VALUE) {
+      generationStartMillis = timeMillis;
+    } else if (timeMillis - generationStartMillis >= 2 * generationMillis) {
+      // Nothing has been seen for at least two generations, so both have expired
+      //
+      Arrays.fill(currentGeneration, 0L);
+      Arrays.fill(previousGeneration, 0L);
+      generationStartMillis = timeMillis;
+    } else if (timeMillis - generationStartMillis >= generationMillis) {
+      final long[] recycled = previousGeneration;
+
+      previousGeneration = currentGeneration;
+      currentGeneration = recycled;
+      Arrays.fill(currentGeneration, 0L);
+      generationStartMillis = timeMillis;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+/**
+ * Table-driven implementation of the 24 bit cyclic redundancy check used by Mode S.
+ *
+ * <p>The final 24 bits of every Mode S frame hold a parity field. For some downlink formats the
+ * parity field holds the CRC of the preceding bits, in which case the {@link #residual residual}
+ * is zero for an uncorrupted frame; for others the CRC is overlaid with the transponder's address,
+ * in which case the residual <em>is</em> the address.
+ */
+public final class ModeSCrc {
+  // The Mode S generator polynomial, with the implicit x^24 term omitted
+  //
+  private static final int POLYNOMIAL = 0xFFF409;
+
+  private static final int[] TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < TABLE.length; i++) {
+      int crc = i << 16;
+
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x800000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+      }
+
+      TABLE[i] = crc & 0xFFFFFF;
+    }
+  }
+
+  /**
+   * Calculates the 24 bit Mode S CRC of a range of bytes.
+   *
+   * @param data the bytes over which to calculate the CRC, not null
+   * @param offset the index of the first byte to include
+   * @param length the number of bytes to include
+   *
+   * @return the 24 bit CRC of the given range of bytes
+   */
+  public static int checksum(byte[] data, int offset, int length) {
+    int crc = 0;
+
+    for (int i = offset, end = offset + length; i < end; i++) {
+      crc = ((crc << 8) ^ TABLE[((crc >>> 16) ^ data[i]) & 0xFF]) & 0xFFFFFF;
+    }
+
+    return crc;
+  }
+
+  /**
+   * Calculates the residual of a Mode S frame: the CRC of all bits preceding the parity field,
+   * combined with the parity field.
+   *
+   * @param frame the bytes of a Mode S frame, not null
+   * @param offset the index of the first byte of the frame
+   * @param frameLength the length of the frame in bytes, 7 or 14
+   *
+   * @return the frame's 24 bit residual
+   */
+  public static int residual(byte[] frame, int offset, int frameLength) {
+    final int parityOffset = offset + frameLength - 3;
+    final int parity = (frame[parityOffset] & 0xFF) << 16
+                       | (frame[parityOffset + 1] & 0xFF) << 8
+                       | frame[parityOffset + 2] & 0xFF;
+
+    return checksum(frame, offset, frameLength - 3) ^ parity;
+  }
+
+  private ModeSCrc() {
+    // Utility class
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+/**
+ * Utility methods for decoding the fields of Mode S frames.
+ */
+public final class ModeSFields {
+  /**
+   * The value returned by the altitude-decoding methods when a field holds no valid altitude.
+   */
+  public static final int NO_ALTITUDE = Integer.MIN_VALUE;
+
+  // The 6 bit character set used to encode aircraft identification
+  //
+  private static final String AIS_CHARSET =
+      "#ABCDEFGHIJKLMNOPQRSTUVWXYZ##### ###############0123456789######";
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  // The bits of an ID/AC field, in the order C1 A1 C2 A2 C4 A4 B1 D1 B2 D2 B4 D4 (the X/M bit is
+  // skipped), and the corresponding bits of the ABCD nibble arrangement
+  //
+  private static final int[] ID13_BITS = {
+      0x1000, 0x0800, 0x0400, 0x0200, 0x0100, 0x0080, 0x0020, 0x0010, 0x0008, 0x0004, 0x0002, 0x0001
+  };
+  private static final int[] GILLHAM_BITS = {
+      0x0010, 0x1000, 0x0020, 0x2000, 0x0040, 0x4000, 0x0100, 0x0001, 0x0200, 0x0002, 0x0400, 0x0004
+  };
+
+  // The C1, C2 and C4 bits, which encode hundreds of feet in a reflected (Gray) code
+  //
+  private static final int[] ONE_HUNDREDS_BITS = {0x0010, 0x0020, 0x0040};
+  private static final int[] ONE_HUNDREDS_MASKS = {0x007, 0x003, 0x001};
+
+  // The D2, D4, A1, A2, A4, B1, B2 and B4 bits, which encode 500s of feet in a Gray code
+  //
+  private static final int[] FIVE_HUNDREDS_BITS = {
+      0x0002, 0x0004, 0x1000, 0x2000, 0x4000, 0x0100, 0x0200, 0x0400
+  };
+  private static final int[] FIVE_HUNDREDS_MASKS = {
+      0x0FF, 0x07F, 0x03F, 0x01F, 0x00F, 0x007, 0x003, 0x001
+  };
+
+  /**
+   * Gets the downlink format of a frame.
+   *
+   * @param frame the bytes of a Mode S frame, not null
+   *
+   * @return the frame's downlink format, with all of formats 24 to 31 reported as 24
+   */
+  public static int downlinkFormat(byte[] frame) {
+    final int df = (frame[0] & 0xFF) >>> 3;
+
+    return df >= 24 ? 24 : df;
+  }
+
+  /**
+   * Gets the length in bytes of a frame of the given downlink format.
+   *
+   * @param downlinkFormat a downlink format
+   *
+   * @return 14 for formats 16 and above, otherwise 7
+   */
+  public static int frameLength(int downlinkFormat) {
+    return downlinkFormat >= 16 ? 14 : 7;
+  }
+
+  /**
+   * Gets the 24 bit address held in bytes 1 to 3 of a frame.
+   *
+   * @param frame the bytes of a Mode S frame, not null
+   *
+   * @return the address held in the frame's AA field
+   */
+  public static int announcedAddress(byte[] frame) {
+    return (frame[1] & 0xFF) << 16 | (frame[2] & 0xFF) << 8 | frame[3] & 0xFF;
+  }
+
+  /**
+   * Formats a 24 bit address as the 6 digit, upper case hexadecimal representation used by
+   * BaseStation messages.
+   *
+   * @param address a 24 bit address
+   *
+   * @return the address formatted as 6 hex digits
+   */
+  public static String formatAddress(int address) {
+    final char[] digits = new char[6];
+
+    for (int i = 5; i >= 0; i--, address >>>= 4) {
+      digits[i] = HEX_DIGITS[address & 0xF];
+    }
+
+    return new String(digits);
+  }
+
+  /**
+   * Decodes the 13 bit altitude code field found in surveillance and air-air replies.
+   *
+   * @param ac13 the AC field value
+   *
+   * @return the altitude in feet, or {@link #NO_ALTITUDE} if unavailable or reported in metres
+   */
+  public static int decodeAc13Altitude(int ac13) {
+    if (ac13 == 0 || (ac13 & 0x0040) != 0) {
+      return NO_ALTITUDE;
+    }
+
+    if ((ac13 & 0x0010) != 0) {
+      final int n = (ac13 & 0x1F80) >>> 2 | (ac13 & 0x0020) >>> 1 | ac13 & 0x000F;
+
+      return n * 25 - 1000;
+    }
+
+    final int hundreds = gillhamToHundredsOfFeet(decodeId13(ac13));
+
+    return hundreds < -12 ? NO_ALTITUDE : hundreds * 100;
+  }
+
+  /**
+   * Decodes the 12 bit altitude field found in extended squitter airborne position messages.
+   *
+   * @param ac12 the altitude field value
+   *
+   * @return the altitude in feet, or {@link #NO_ALTITUDE} if unavailable
+   */
+  public static int decodeAc12Altitude(int ac12) {
+    if (ac12 == 0) {
+      return NO_ALTITUDE;
+    }
+
+    if ((ac12 & 0x0010) != 0) {
+      final int n = (ac12 & 0x0FE0) >>> 1 | ac12 & 0x000F;
+
+      return n * 25 - 1000;
+    }
+
+    // Re-insert the M bit, which is always zero in this field, and decode as Gillham code
+    //
+    return decodeAc13Altitude((ac12 & 0x0FC0) << 1 | ac12 & 0x003F);
+  }
+
+  /**
+   * Decodes the 13 bit identity field found in surveillance identity replies.
+   *
+   * @param id13 the ID field value
+   *
+   * @return the squawk code, expressed as a decimal number having the same digits as the octal
+   * code (so code 7700 is returned as 7700)
+   */
+  public static int decodeSquawk(int id13) {
+    final int gillham = decodeId13(id13);
+
+    return ((gillham >>> 12) & 7) * 1000
+           + ((gillham >>> 8) & 7) * 100
+           + ((gillham >>> 4) & 7) * 10
+           + (gillham & 7);
+  }
+
+  /**
+   * Decodes the 8 character aircraft identification held in an extended squitter identification
+   * message.
+   *
+   * @param frame the bytes of a DF17 or DF18 frame, not null
+   *
+   * @return the identification, with any trailing padding removed
+   */
+  public static String decodeCallSign(byte[] frame) {
+    long bits = 0;
+
+    for (int i = 5; i <= 10; i++) {
+      bits = bits << 8 | frame[i] & 0xFF;
+    }
+
+    final char[] chars = new char[8];
+
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = AIS_CHARSET.charAt((int) (bits >>> (42 - 6 * i)) & 0x3F);
+    }
+
+    return new String(chars).trim();
+  }
+
+  /**
+   * Decodes the movement field of an extended squitter surface position message.
+   *
+   * @param movement the 7 bit movement field value
+   *
+   * @return the ground speed in knots, or a negative value if unavailable
+   */
+  public static float decodeMovement(int movement) {
+    if (movement < 1 || movement > 124) {
+      return -1.0f;
+    } else if (movement <= 8) {
+      return 0.125f * (movement - 1);
+    } else if (movement <= 12) {
+      return 1.0f + 0.25f * (movement - 9);
+    } else if (movement <= 38) {
+      return 2.0f + 0.5f * (movement - 13);
+    } else if (movement <= 93) {
+      return 15.0f + (movement - 39);
+    } else if (movement <= 108) {
+      return 70.0f + 2.0f * (movement - 94);
+    } else if (movement <= 123) {
+      return 100.0f + 5.0f * (movement - 109);
+    }
+
+    return 175.0f;
+  }
+
+  // Rearranges the interleaved C1 A1 C2 A2 C4 A4 X B1 D1 B2 D2 B4 D4 bits of an ID or AC field
+  // into four nibbles holding the A, B, C and D octal digits of a Mode A code
+  //
+  private static int decodeId13(int id13) {
+    int gillham = 0;
+
+    for (int i = 0; i < ID13_BITS.length; i++) {
+      if ((id13 & ID13_BITS[i]) != 0) {
+        gillham |= GILLHAM_BITS[i];
+      }
+    }
+
+    return gillham;
+  }
+
+  // Converts a Gillham-coded Mode C altitude, arranged as by decodeId13, to hundreds of feet
+  //
+  private static int gillhamToHundredsOfFeet(int gillham) {
+    if ((gillham & 0xFFFF8889) != 0 || (gillham & 0x00F0) == 0) {
+      return Integer.MIN_VALUE;
+    }
+
+    int oneHundreds = 0;
+    int fiveHundreds = 0;
+
+    for (int i = 0; i < ONE_HUNDREDS_BITS.length; i++) {
+      if ((gillham & ONE_HUNDREDS_BITS[i]) != 0) {
+        oneHundreds ^= ONE_HUNDREDS_MASKS[i];
+      }
+    }
+
+    if ((oneHundreds & 5) == 5) {
+      oneHundreds ^= 2;
+    }
+
+    if (oneHundreds > 5) {
+      return Integer.MIN_VALUE;
+    }
+
+    for (int i = 0; i < FIVE_HUNDREDS_BITS.length; i++) {
+      if ((gillham & FIVE_HUNDREDS_BITS[i]) != 0) {
+        fiveHundreds ^= FIVE_HUNDREDS_MASKS[i];
+      }
+    }
+
+    if ((fiveHundreds & 1) != 0) {
+      oneHundreds = 6 - oneHundreds;
+    }
+
+    return fiveHundreds * 5 + oneHundreds - 13;
+  }
+
+  private ModeSFields() {
+    // Utility class
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.codebrewer.dump1090processor.basestation.integration.BaseStationMessageEndpoint;
+import org.codebrewer.dump1090processor.basestation.service.AircraftStateService;
+import org.codebrewer.dump1090processor.basestation.service.MessageQueryService;
+import org.codebrewer.dump1090processor.basestation.service.MessageRetentionService;
+import org.codebrewer.dump1090processor.basestation.service.ReactivePipelineService;
+import org.codebrewer.dump1090processor.basestation.web.MessageQueryController;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.jmx.export.annotation.AnnotationMBeanExporter;
+
+class FastStartConfigurationTest {
+  @Test
+  void shouldCreateBeansThatWorkUnaskedAtStartup() {
+    assertThat(FastStartConfiguration.isEager(BaseStationMessageEndpoint.class)).isTrue();
+    assertThat(FastStartConfiguration.isEager(ReactivePipelineService.class)).isTrue();
+    assertThat(FastStartConfiguration.isEager(MessageRetentionService.class)).isTrue();
+    assertThat(FastStartConfiguration.isEager(AircraftStateService.class)).isTrue();
+    assertThat(FastStartConfiguration.isEager(IntegrationFlow.class)).isTrue();
+    assertThat(FastStartConfiguration.isEager(AnnotationMBeanExporter.class)).isTrue();
+  }
+
+  @Test
+  void shouldCreateOtherBeansWhenFirstUsed() {
+    assertThat(FastStartConfiguration.isEager(MessageQueryController.class)).isFalse();
+    assertThat(FastStartConfiguration.isEager(MessageQueryService.class)).isFalse();
+    assertThat(FastStartConfiguration.isEager(String.class)).isFalse();
+    assertThat(FastStartConfiguration.isEager(null)).isFalse();
+  }
+}
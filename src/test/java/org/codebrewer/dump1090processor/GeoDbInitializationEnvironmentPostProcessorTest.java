@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.codebrewer.dump1090processor.GeoDbInitializationEnvironmentPostProcessor.INITIALIZATION_MODE_PROPERTY;
+
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.mock.env.MockEnvironment;
+
+class GeoDbInitializationEnvironmentPostProcessorTest {
+  private final GeoDbInitializationEnvironmentPostProcessor postProcessor =
+      new GeoDbInitializationEnvironmentPostProcessor(Supplier::get);
+  private MockEnvironment environment;
+
+  private String postProcess() {
+    postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+    return environment.getProperty(INITIALIZATION_MODE_PROPERTY);
+  }
+
+  @BeforeEach
+  void setUp() {
+    environment =
+        new MockEnvironment()
+            .withProperty("geodb.init.when.persisting", "true")
+            .withProperty("basestation.feed.persist", "false");
+  }
+
+  @Test
+  void shouldSkipInitializationWhenNothingIsPersisted() {
+    assertThat(postProcess()).isEqualTo("never");
+  }
+
+  @Test
+  void shouldInitializeUnlessEnabled() {
+    environment.setProperty("geodb.init.when.persisting", "false");
+
+    assertThat(postProcess()).isNull();
+  }
+
+  @Test
+  void shouldInitializeWhenMessagesArePersisted() {
+    environment.setProperty("basestation.feed.persist", "true");
+
+    assertThat(postProcess()).isNull();
+  }
+
+  @Test
+  void shouldInitializeWhenMessagePersistenceIsNotConfigured() {
+    environment = new MockEnvironment().withProperty("geodb.init.when.persisting", "true");
+
+    assertThat(postProcess()).isNull();
+  }
+
+  @Test
+  void shouldInitializeWhenPositionReportsArePersisted() {
+    environment.setProperty("position.report.persist", "true");
+
+    assertThat(postProcess()).isNull();
+  }
+
+  @Test
+  void shouldInitializeWhenMessagesAreRetainedOrImported() {
+    environment.setProperty("retention.enabled", "true");
+
+    assertThat(postProcess()).isNull();
+
+    setUp();
+    environment.setProperty("bulk.import.files", "/var/log/dump1090");
+
+    assertThat(postProcess()).isNull();
+  }
+
+  @Test
+  void shouldSkipInitializationForClusterFrontEnd() {
+    environment.setProperty("basestation.feed.persist", "true");
+    environment.setProperty("cluster.role", "frontend");
+
+    assertThat(postProcess()).isEqualTo("never");
+  }
+
+  @Test
+  void shouldRespectExplicitInitializationMode() {
+    environment.setProperty(INITIALIZATION_MODE_PROPERTY, "always");
+
+    assertThat(postProcess()).isEqualTo("always");
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.bulk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.service.MessageParsingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SbsLogImporterTest {
+  private static final int AIRCRAFT_COUNT = 50;
+
+  private final MessageParsingService parsingService = new MessageParsingService();
+  private final List<List<BaseStationMessage>> batches =
+      Collections.synchronizedList(new ArrayList<>());
+  private final Map<String, Set<String>> writerThreadsByAircraft = new HashMap<>();
+
+  @TempDir
+  Path directory;
+
+  // A position report whose altitude identifies the line
+  //
+  private static String line(int index) {
+    return String.format(
+        "MSG,3,1,1,%06X,1,2021/01/30,12:%02d:%02d.000,2021/01/30,12:%02d:%02d.000,,%d,,,"
+            + "51.50000,-0.12500,,,0,0,0,0",
+        0x400000 + index % AIRCRAFT_COUNT,
+        index / 60 % 60,
+        index % 60,
+        index / 60 % 60,
+        index % 60,
+        index);
+  }
+
+  private static Set<Integer> altitudes(List<BaseStationMessage> messages) {
+    return messages.stream()
+        .map(message -> ((TransmissionMessage) message).getAltitude().intValue())
+        .collect(Collectors.toSet());
+  }
+
+  private static Set<Integer> range(int count) {
+    return IntStream.range(0, count).boxed().collect(Collectors.toSet());
+  }
+
+  private Path writePlainFile(String name, List<String> lines, String lineEnd) throws IOException {
+    final Path file = directory.resolve(name);
+
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+      for (int i = 0; i < lines.size(); i++) {
+        writer.write(lines.get(i));
+
+        // Leave the last line unterminated
+        //
+        if (i < lines.size() - 1) {
+          writer.write(lineEnd);
+        }
+      }
+    }
+
+    return file;
+  }
+
+  private Path writeCompressedFile(String name, int count) throws IOException {
+    final Path file = directory.resolve(name);
+
+    try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file));
+         Writer writer = new OutputStreamWriter(output, StandardCharsets.US_ASCII)) {
+      for (int i = 0; i < count; i++) {
+        writer.write(line(i));
+        writer.write('\n');
+      }
+    }
+
+    return file;
+  }
+
+  private List<String> lines(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(SbsLogImporterTest::line)
+        .collect(Collectors.toList());
+  }
+
+  private List<BaseStationMessage> written() {
+    return batches.stream().flatMap(List::stream).collect(Collectors.toList());
+  }
+
+  private SbsLogImporter importer(int partitionCount, int batchSize, int chunkBytes) {
+    return new SbsLogImporter(
+        parsingService::parseCsvMessageText,
+        batch -> {
+          final String threadName = Thread.currentThread().getName();
+
+          synchronized (writerThreadsByAircraft) {
+            for (BaseStationMessage message : batch) {
+              writerThreadsByAircraft
+                  .computeIfAbsent(message.getIcaoAddress(), k -> new HashSet<>())
+                  .add(threadName);
+            }
+          }
+
+          batches.add(batch);
+        },
+        2,
+        partitionCount,
+        batchSize,
+        chunkBytes);
+  }
+
+  @Test
+  void shouldRejectNonPositiveSizes() {
+    assertThatThrownBy(() -> importer(0, 1, 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> importer(1, 0, 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> importer(1, 1, 0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldImportEveryLineOfPlainFilesSplitIntoChunks() throws IOException {
+    final Path lfFile = writePlainFile("lf.txt", lines(1000), "\n");
+    final Path crlfFile = writePlainFile("crlf.txt", lines(500), "\r\n");
+    final SbsLogImporter importer = importer(1, 100, 512);
+
+    assertThat(importer.importFiles(Arrays.asList(lfFile, crlfFile))).isEqualTo(1500L);
+    assertThat(importer.getLineCount()).isEqualTo(1500L);
+    assertThat(importer.getInvalidCount()).isZero();
+    assertThat(importer.getWrittenCount()).isEqualTo(1500L);
+    assertThat(importer.getReadBytes())
+        .isEqualTo(importer.getTotalBytes())
+        .isEqualTo(Files.size(lfFile) + Files.size(crlfFile));
+    assertThat(written()).hasSize(1500);
+    assertThat(altitudes(written())).isEqualTo(range(1000));
+  }
+
+  @Test
+  void shouldImportCompressedFileInBlocks() throws IOException {
+    final Path file = writeCompressedFile("messages.txt.gz", 40_000);
+    final SbsLogImporter importer = importer(2, 5000, 512);
+
+    assertThat(importer.importFiles(Arrays.asList(file))).isEqualTo(40_000L);
+    assertThat(importer.getLineCount()).isEqualTo(40_000L);
+    assertThat(importer.getReadBytes()).isEqualTo(Files.size(file));
+    assertThat(altitudes(written())).isEqualTo(range(40_000));
+  }
+
+  @Test
+  void shouldCountAndSkipInvalidLines() throws IOException {
+    final List<String> lines = new ArrayList<>(lines(10));
+
+    lines.add(3, "rubbish");
+    lines.add(5, "");
+    lines.add(7, "MSG,99,1,1,400000,1,2021/01/30,12:00:00.000,2021/01/30,12:00:00.000");
+
+    final SbsLogImporter importer = importer(1, 100, 64);
+
+    assertThat(importer.importFiles(Arrays.asList(writePlainFile("mixed.txt", lines, "\n"))))
+        .isEqualTo(10L);
+    assertThat(importer.getLineCount()).isEqualTo(12L);
+    assertThat(importer.getInvalidCount()).isEqualTo(2L);
+    assertThat(altitudes(written())).isEqualTo(range(10));
+  }
+
+  @Test
+  void shouldWriteEachAircraftFromOnePartitionInFullBatches() throws IOException {
+    final int batchSize = 7;
+    final SbsLogImporter importer = importer(3, batchSize, 256);
+
+    importer.importFiles(Arrays.asList(writePlainFile("messages.txt", lines(2000), "\n")));
+
+    assertThat(writerThreadsByAircraft).hasSize(AIRCRAFT_COUNT);
+    assertThat(writerThreadsByAircraft.values()).allMatch(threadNames -> threadNames.size() == 1);
+    assertThat(
+        writerThreadsByAircraft.values().stream()
+            .flatMap(Set::stream)
+            .collect(Collectors.toSet()))
+        .hasSize(3);
+    assertThat(batches).allMatch(batch -> batch.size() <= batchSize);
+
+    // Only the last batch of each partition may be short
+    //
+    assertThat(batches.stream().filter(batch -> batch.size() < batchSize).count())
+        .isLessThanOrEqualTo(3L);
+    assertThat(altitudes(written())).isEqualTo(range(2000));
+  }
+
+  @Test
+  void shouldCountMessagesThatCannotBeWritten() throws IOException {
+    final SbsLogImporter importer =
+        new SbsLogImporter(
+            parsingService::parseCsvMessageText,
+            batch -> {
+              throw new IllegalStateException("Database unavailable");
+            },
+            2,
+            1,
+            10);
+
+    assertThat(importer.importFiles(Arrays.asList(writePlainFile("messages.txt", lines(95), "\n"))))
+        .isZero();
+    assertThat(importer.getFailedCount()).isEqualTo(95L);
+  }
+
+  @Test
+  void shouldFailForMissingFile() {
+    final SbsLogImporter importer = importer(1, 10, 64);
+
+    assertThatThrownBy(() -> importer.importFiles(Arrays.asList(directory.resolve("none"))))
+        .isInstanceOf(NoSuchFileException.class);
+  }
+
+  @Test
+  void shouldResetCountsForEachImport() throws IOException {
+    final Path file = writePlainFile("messages.txt", lines(20), "\n");
+    final SbsLogImporter importer = importer(1, 10, 64);
+
+    importer.importFiles(Arrays.asList(file));
+    importer.importFiles(Arrays.asList(file));
+
+    assertThat(importer.getLineCount()).isEqualTo(20L);
+    assertThat(importer.getWrittenCount()).isEqualTo(20L);
+    assertThat(importer.getLinesPerSecond()).isPositive();
+    assertThat(written()).hasSize(40);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ShardRouterTest {
+  private static final List<String> WORKERS =
+      Arrays.asList("localhost:31001", "localhost:31002", "localhost:31003");
+  private static final int ADDRESS_COUNT = 3000;
+
+  private static String icaoAddress(int index) {
+    return String.format("%06X", index * 4093);
+  }
+
+  @Test
+  void shouldRejectEmptyWorkers() {
+    final List<String> workers = Collections.emptyList();
+
+    assertThatThrownBy(() -> new ShardRouter(workers))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRouteAddressToSameWorkerEveryTime() {
+    final ShardRouter router = new ShardRouter(WORKERS);
+    final ShardRouter otherRouter = new ShardRouter(WORKERS);
+
+    assertThat(router.getWorkerCount()).isEqualTo(3);
+
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      final int worker = router.route(icaoAddress(i), w -> true);
+
+      assertThat(router.route(icaoAddress(i), w -> true)).isEqualTo(worker);
+      assertThat(otherRouter.route(icaoAddress(i), w -> true)).isEqualTo(worker);
+    }
+  }
+
+  @Test
+  void shouldSpreadAddressesEvenlyOverWorkers() {
+    final ShardRouter router = new ShardRouter(WORKERS);
+    final int[] counts = new int[WORKERS.size()];
+
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      counts[router.route(icaoAddress(i), w -> true)]++;
+    }
+
+    for (int count : counts) {
+      assertThat(count).isBetween(850, 1150);
+    }
+  }
+
+  @Test
+  void shouldOnlyReassignAddressesOfUnavailableWorker() {
+    final ShardRouter router = new ShardRouter(WORKERS);
+    final int[] reassignedCounts = new int[WORKERS.size()];
+
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      final int worker = router.route(icaoAddress(i), w -> true);
+      final int reassigned = router.route(icaoAddress(i), w -> w != 1);
+
+      assertThat(reassigned).isNotEqualTo(1);
+
+      if (worker != 1) {
+        assertThat(reassigned).isEqualTo(worker);
+      } else {
+        reassignedCounts[reassigned]++;
+      }
+    }
+
+    assertThat(reassignedCounts[0]).isBetween(350, 650);
+    assertThat(reassignedCounts[2]).isBetween(350, 650);
+  }
+
+  @Test
+  void shouldRouteAddressToSameWorkerRegardlessOfCase() {
+    final ShardRouter router = new ShardRouter(WORKERS);
+
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      assertThat(router.route(icaoAddress(i).toLowerCase(), w -> true))
+          .isEqualTo(router.route(icaoAddress(i), w -> true));
+    }
+  }
+
+  @Test
+  void shouldNotRouteIfNoWorkerAvailable() {
+    final ShardRouter router = new ShardRouter(WORKERS);
+
+    assertThat(router.route("4840D6", w -> false)).isEqualTo(-1);
+  }
+}
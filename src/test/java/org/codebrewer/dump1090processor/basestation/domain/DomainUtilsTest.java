@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2020 Mark Scott
+ * Copyright 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -115,4 +115,19 @@ class DomainUtilsTest {
   void shouldReturnNullCallSignForNullInput() {
     Assertions.assertThat(DomainUtils.getValidatedCallSign(null)).isNull();
   }
+
+  @Test
+  void shouldParseIcaoAddress() {
+    Assertions.assertThat(DomainUtils.parseIcaoAddress("4840D6")).isEqualTo(0x4840D6);
+    Assertions.assertThat(DomainUtils.parseIcaoAddress("4840d6")).isEqualTo(0x4840D6);
+    Assertions.assertThat(DomainUtils.parseIcaoAddress("000001")).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReturnMinusOneForInvalidIcaoAddress() {
+    Assertions.assertThat(DomainUtils.parseIcaoAddress(null)).isEqualTo(-1);
+    Assertions.assertThat(DomainUtils.parseIcaoAddress("")).isEqualTo(-1);
+    Assertions.assertThat(DomainUtils.parseIcaoAddress("4840D6F")).isEqualTo(-1);
+    Assertions.assertThat(DomainUtils.parseIcaoAddress("4840G6")).isEqualTo(-1);
+  }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class HashingTest {
+  @Test
+  void shouldMixNearbyValuesApart() {
+    assertThat(Hashing.mix(0L)).isZero();
+    assertThat(Long.bitCount(Hashing.mix(1L) ^ Hashing.mix(2L))).isGreaterThan(16);
+  }
+
+  @Test
+  void shouldHashIcaoAddressRegardlessOfCase() {
+    assertThat(Hashing.hashIcaoAddress("4840d6"))
+        .isEqualTo(Hashing.hashIcaoAddress("4840D6"))
+        .isEqualTo(Hashing.mix(0x4840D6));
+    assertThat(Hashing.hashIcaoAddress("~abc"))
+        .isEqualTo(Hashing.hashIcaoAddress("~ABC"))
+        .isNotEqualTo(Hashing.hashIcaoAddress("~ABD"));
+  }
+}
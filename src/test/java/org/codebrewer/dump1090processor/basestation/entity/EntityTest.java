@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2020 Mark Scott
+ * Copyright 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -76,6 +76,11 @@ class EntityTest {
                                 .build();
   }
 
+  @Test
+  void testAircraftRollupPojoStructureAndBehavior() {
+    validator.validate(PojoClassFactory.getPojoClass(AircraftRollup.class));
+  }
+
   @Test
   void testBaseStationMessagePojoStructureAndBehavior() {
     validator.validate(PojoClassFactory.getPojoClass(BaseStationMessage.class));
@@ -96,6 +101,11 @@ class EntityTest {
     validator.validate(PojoClassFactory.getPojoClass(NewAircraftMessage.class));
   }
 
+  @Test
+  void testPositionReportPojoStructureAndBehavior() {
+    validator.validate(PojoClassFactory.getPojoClass(PositionReport.class));
+  }
+
   @Test
   void testStatusMessagePojoStructureAndBehavior() {
     validator.validate(PojoClassFactory.getPojoClass(StatusMessage.class));
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+import org.junit.jupiter.api.Test;
+
+class AirspaceReplayTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final long TTL_MILLIS = 300_000L;
+
+  private static MessageRecord.Builder transmission(String icaoAddress, long offsetSeconds) {
+    return new MessageRecord.Builder(
+        1L, MessageType.MSG, icaoAddress, NOW.plusSeconds(offsetSeconds))
+        .transmissionType(TransmissionType.AIRBORNE_POSITION);
+  }
+
+  @Test
+  void shouldMergeMessagesIntoState() {
+    final AirspaceReplay replay = new AirspaceReplay(TTL_MILLIS);
+
+    replay.apply(
+        new MessageRecord.Builder(1L, MessageType.ID, "4840D6", NOW).callSign("KLM1023").build());
+    replay.apply(transmission("4840D6", 1L).altitude(38000.0f).position(52.25, 3.92).build());
+    replay.apply(transmission("4840D6", 2L).groundSpeed(459.5f).track(182.9f).build());
+    replay.apply(transmission("ZZZZZZ", 3L).altitude(1000.0f).build());
+
+    final List<AircraftState> states = replay.getStates(NOW.plusSeconds(3L).toEpochMilli());
+
+    assertThat(states).hasSize(1);
+
+    final AircraftState state = states.get(0);
+
+    assertThat(state.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(state.getCallSign()).isEqualTo("KLM1023");
+    assertThat(state.getAltitude()).isEqualTo(38000.0f);
+    assertThat(state.getGroundSpeed()).isEqualTo(459.5f);
+    assertThat(state.getLatitude()).isEqualTo(52.25);
+    assertThat(state.getPositionMillis()).isEqualTo(NOW.plusSeconds(1L).toEpochMilli());
+    assertThat(state.getLastSeenMillis()).isEqualTo(NOW.plusSeconds(2L).toEpochMilli());
+    assertThat(state.getMessageCount()).isEqualTo(3L);
+    assertThat(state.getRange()).isNaN();
+  }
+
+  @Test
+  void shouldForgetAircraftNotHeardWithinTimeToLive() {
+    final AirspaceReplay replay = new AirspaceReplay(TTL_MILLIS);
+
+    replay.apply(transmission("4840D6", 0L).altitude(38000.0f).build());
+    replay.apply(transmission("406A3D", 0L).altitude(12000.0f).build());
+
+    assertThat(replay.getStates(NOW.plusSeconds(300L).toEpochMilli())).hasSize(2);
+    assertThat(replay.getStates(NOW.plusSeconds(301L).toEpochMilli())).isEmpty();
+
+    // A message after the time-to-live starts a new state rather than updating the old one
+    //
+    replay.apply(transmission("4840D6", 400L).groundSpeed(250.0f).build());
+    replay.expire(NOW.plusSeconds(400L).toEpochMilli());
+
+    final List<AircraftState> states = replay.getStates(NOW.plusSeconds(400L).toEpochMilli());
+
+    assertThat(states).hasSize(1);
+    assertThat(states.get(0).getAltitude()).isNaN();
+    assertThat(states.get(0).getGroundSpeed()).isEqualTo(250.0f);
+    assertThat(states.get(0).getMessageCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldContinueFromRestoredStates() {
+    final AirspaceReplay replay = new AirspaceReplay(TTL_MILLIS);
+    final AircraftState keyframeState =
+        new AircraftState.Builder(0x4840D6)
+            .callSign("KLM1023")
+            .altitude(38000.0f)
+            .lastSeenMillis(NOW.toEpochMilli())
+            .messageCount(10L)
+            .build();
+
+    replay.apply(transmission("406A3D", 0L).altitude(12000.0f).build());
+    replay.restore(Collections.singletonList(keyframeState));
+    replay.apply(transmission("4840D6", 60L).altitude(37000.0f).build());
+
+    final List<AircraftState> states = replay.getStates(NOW.plusSeconds(60L).toEpochMilli());
+
+    assertThat(states).hasSize(1);
+    assertThat(states.get(0).getCallSign()).isEqualTo("KLM1023");
+    assertThat(states.get(0).getAltitude()).isEqualTo(37000.0f);
+    assertThat(states.get(0).getMessageCount()).isEqualTo(11L);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.codebrewer.dump1090processor.basestation.service.AvrMessagePayloadTransformerService;
+import org.codebrewer.dump1090processor.basestation.service.AvrMessageProducerService;
+import org.codebrewer.dump1090processor.basestation.service.EmptyMessageFilteringService;
+import org.codebrewer.dump1090processor.basestation.service.ImplausibleMessageFilteringService;
+import org.codebrewer.dump1090processor.basestation.service.InvalidMessageFilteringService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+
+class AvrIntegrationConfigurationTest {
+  private AvrMessageProducerService producerService;
+  private EmptyMessageFilteringService emptyMessageFilteringService;
+  private AvrMessagePayloadTransformerService transformerService;
+  private InvalidMessageFilteringService invalidMessageFilteringService;
+  private ImplausibleMessageFilteringService implausibleMessageFilteringService;
+  private TcpReceivingChannelAdapter channelAdapter;
+
+  @BeforeEach
+  void setUp() {
+    producerService = Mockito.mock(AvrMessageProducerService.class);
+    emptyMessageFilteringService = Mockito.mock(EmptyMessageFilteringService.class);
+    transformerService = Mockito.mock(AvrMessagePayloadTransformerService.class);
+    invalidMessageFilteringService = Mockito.mock(InvalidMessageFilteringService.class);
+    implausibleMessageFilteringService = Mockito.mock(ImplausibleMessageFilteringService.class);
+    channelAdapter = Mockito.mock(TcpReceivingChannelAdapter.class);
+  }
+
+  @Test
+  void shouldCreateIntegrationFlow() {
+    final AvrIntegrationConfiguration configuration =
+        new AvrIntegrationConfiguration(
+            producerService,
+            emptyMessageFilteringService,
+            transformerService,
+            invalidMessageFilteringService,
+            implausibleMessageFilteringService);
+
+    when(producerService.tcpMessageClient()).thenReturn(channelAdapter);
+    configuration.avrTcpMessageClient();
+    verify(producerService, Mockito.times(1)).tcpMessageClient();
+  }
+}
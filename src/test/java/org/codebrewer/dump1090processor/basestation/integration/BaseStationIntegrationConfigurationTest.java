@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2020 Mark Scott
+ * Copyright 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,20 @@
 
 package org.codebrewer.dump1090processor.basestation.integration;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.codebrewer.dump1090processor.basestation.service.EmptyMessageFilteringService;
+import org.codebrewer.dump1090processor.basestation.service.ImplausibleMessageFilteringService;
 import org.codebrewer.dump1090processor.basestation.service.InvalidMessageFilteringService;
 import org.codebrewer.dump1090processor.basestation.service.MessagePayloadTransformerService;
 import org.codebrewer.dump1090processor.basestation.service.MessageProducerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 
 class BaseStationIntegrationConfigurationTest {
@@ -33,6 +37,7 @@ class BaseStationIntegrationConfigurationTest {
   private EmptyMessageFilteringService emptyMessageFilteringService;
   private MessagePayloadTransformerService transformerService;
   private InvalidMessageFilteringService invalidMessageFilteringService;
+  private ImplausibleMessageFilteringService implausibleMessageFilteringService;
   private TcpReceivingChannelAdapter channelAdapter;
 
   @BeforeEach
@@ -41,6 +46,7 @@ class BaseStationIntegrationConfigurationTest {
     emptyMessageFilteringService = Mockito.mock(EmptyMessageFilteringService.class);
     transformerService = Mockito.mock(MessagePayloadTransformerService.class);
     invalidMessageFilteringService = Mockito.mock(InvalidMessageFilteringService.class);
+    implausibleMessageFilteringService = Mockito.mock(ImplausibleMessageFilteringService.class);
     channelAdapter = Mockito.mock(TcpReceivingChannelAdapter.class);
   }
 
@@ -51,10 +57,38 @@ class BaseStationIntegrationConfigurationTest {
             producerService,
             emptyMessageFilteringService,
             transformerService,
-            invalidMessageFilteringService);
+            invalidMessageFilteringService,
+            implausibleMessageFilteringService);
 
     when(producerService.tcpMessageClient()).thenReturn(channelAdapter);
     configuration.tcpMessageClient();
     verify(producerService, Mockito.times(1)).tcpMessageClient();
   }
+
+  @Test
+  void shouldCreatePublishSubscribeChannel() {
+    final BaseStationIntegrationConfiguration configuration =
+        new BaseStationIntegrationConfiguration(
+            producerService,
+            emptyMessageFilteringService,
+            transformerService,
+            invalidMessageFilteringService,
+            implausibleMessageFilteringService);
+
+    assertThat(configuration.baseStationMessageChannel())
+        .isInstanceOf(PublishSubscribeChannel.class);
+  }
+
+  @Test
+  void shouldCreateDirectInboundChannel() {
+    final BaseStationIntegrationConfiguration configuration =
+        new BaseStationIntegrationConfiguration(
+            producerService,
+            emptyMessageFilteringService,
+            transformerService,
+            invalidMessageFilteringService,
+            implausibleMessageFilteringService);
+
+    assertThat(configuration.inboundMessageChannel()).isInstanceOf(DirectChannel.class);
+  }
 }
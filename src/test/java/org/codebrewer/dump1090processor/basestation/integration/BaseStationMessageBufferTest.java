@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.service.LoadSheddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.Message;
+
+class BaseStationMessageBufferTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private LoadSheddingService loadSheddingService;
+  private QueueChannel outputChannel;
+  private BaseStationMessageBuffer buffer;
+
+  @BeforeEach
+  void setUp() {
+    loadSheddingService = Mockito.mock(LoadSheddingService.class);
+    outputChannel = new QueueChannel();
+    buffer = new BaseStationMessageBuffer(loadSheddingService, outputChannel, 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    buffer.stop();
+  }
+
+  @Test
+  void shouldNotBufferShedMessages() {
+    when(loadSheddingService.accept(any(), anyInt(), anyInt())).thenReturn(false);
+    buffer.offer(new IdMessage.Builder("4840D6", NOW).build());
+
+    assertThat(buffer.getSize()).isZero();
+  }
+
+  @Test
+  void shouldDropMessagesWhenFullWithoutBlocking() {
+    when(loadSheddingService.accept(any(), anyInt(), anyInt())).thenReturn(true);
+
+    for (int i = 0; i < 3; i++) {
+      buffer.offer(new IdMessage.Builder("4840D6", NOW).build());
+    }
+
+    assertThat(buffer.getSize()).isEqualTo(2);
+    assertThat(buffer.getHighWaterMark()).isEqualTo(2);
+    assertThat(buffer.getOverflowCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldDispatchBufferedMessagesInOrder() {
+    final BaseStationMessage first = new IdMessage.Builder("4840D6", NOW).build();
+    final BaseStationMessage second = new IdMessage.Builder("40621D", NOW).build();
+
+    when(loadSheddingService.accept(any(), anyInt(), anyInt())).thenReturn(true);
+    buffer.offer(first);
+    buffer.offer(second);
+    buffer.start();
+
+    final Message<?> firstMessage = outputChannel.receive(5000L);
+    final Message<?> secondMessage = outputChannel.receive(5000L);
+
+    assertThat(buffer.isRunning()).isTrue();
+    assertThat(firstMessage).isNotNull();
+    assertThat(firstMessage.getPayload()).isSameAs(first);
+    assertThat(secondMessage).isNotNull();
+    assertThat(secondMessage.getPayload()).isSameAs(second);
+    buffer.stop();
+    assertThat(buffer.isRunning()).isFalse();
+    assertThat(buffer.getDispatchedCount()).isEqualTo(2L);
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2020 Mark Scott
+ * Copyright 2019, 2020, 2021 Mark Scott
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,43 +17,92 @@
 package org.codebrewer.dump1090processor.basestation.integration;
 
 import static org.codebrewer.dump1090processor.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
 import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.service.DeferredPersistenceService;
+import org.codebrewer.dump1090processor.basestation.service.MessageJournalService;
+import org.codebrewer.dump1090processor.basestation.service.RedundantMessageSuppressionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 
 class BaseStationMessageEndpointTest {
   private BaseStationMessage baseStationMessage;
   private BaseStationMessageRepository repository;
+  private MessageJournalService journalService;
+  private DeferredPersistenceService deferredPersistenceService;
+  private RedundantMessageSuppressionService redundantMessageSuppressionService;
   private BaseStationMessageEndpoint endpoint;
 
+  private static Object runSave(InvocationOnMock invocation) {
+    invocation.<Runnable>getArgument(0).run();
+
+    return null;
+  }
+
+  private BaseStationMessageEndpoint endpoint(boolean persist) {
+    return new BaseStationMessageEndpoint(
+        repository,
+        journalService,
+        deferredPersistenceService,
+        redundantMessageSuppressionService,
+        persist);
+  }
+
   @BeforeEach
   void setUp() {
     baseStationMessage = Mockito.mock(BaseStationMessage.class);
     repository = Mockito.mock(BaseStationMessageRepository.class);
+    journalService = Mockito.mock(MessageJournalService.class);
+    deferredPersistenceService = Mockito.mock(DeferredPersistenceService.class);
+    redundantMessageSuppressionService = Mockito.mock(RedundantMessageSuppressionService.class);
+    when(redundantMessageSuppressionService.shouldPersist(baseStationMessage)).thenReturn(true);
+    doAnswer(BaseStationMessageEndpointTest::runSave)
+        .when(deferredPersistenceService)
+        .execute(any());
   }
 
   @Test
   void shouldNotPersistBaseStationMessagesIfMessagePersistenceDisabled() {
-    endpoint = new BaseStationMessageEndpoint(repository, false);
+    endpoint = endpoint(false);
     endpoint.consume(baseStationMessage);
     verifyNoInteractions(repository);
   }
 
   @Test
   void shouldPersistBaseStationMessagesIfMessagePersistenceEnabled() {
-    endpoint = new BaseStationMessageEndpoint(repository, true);
+    endpoint = endpoint(true);
     endpoint.consume(baseStationMessage);
     verify(repository, Mockito.times(1)).save(Mockito.eq(baseStationMessage));
   }
 
+  @Test
+  void shouldNotPersistRedundantBaseStationMessages() {
+    endpoint = endpoint(true);
+    when(redundantMessageSuppressionService.shouldPersist(baseStationMessage)).thenReturn(false);
+    endpoint.consume(baseStationMessage);
+    verifyNoInteractions(journalService, repository);
+  }
+
+  @Test
+  void shouldJournalBaseStationMessagesIfJournalRunning() {
+    endpoint = endpoint(true);
+    when(journalService.append(baseStationMessage)).thenReturn(true);
+    endpoint.consume(baseStationMessage);
+    verify(journalService, Mockito.times(1)).append(baseStationMessage);
+    verifyNoInteractions(repository);
+  }
+
   @Test
   void shouldAllowMessagePersistenceToBeDisabled() {
-    endpoint = new BaseStationMessageEndpoint(repository, true);
+    endpoint = endpoint(true);
     assertThat(endpoint).isPersistMessages();
     endpoint.setPersistMessages(false);
     assertThat(endpoint).isNotPersistMessages();
@@ -63,7 +112,7 @@ class BaseStationMessageEndpointTest {
 
   @Test
   void shouldAllowMessagePersistenceToBeEnabled() {
-    endpoint = new BaseStationMessageEndpoint(repository, false);
+    endpoint = endpoint(false);
     assertThat(endpoint).isNotPersistMessages();
     endpoint.setPersistMessages(true);
     assertThat(endpoint).isPersistMessages();
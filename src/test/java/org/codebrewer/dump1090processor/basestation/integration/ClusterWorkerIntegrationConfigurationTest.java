@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.codebrewer.dump1090processor.basestation.service.ClusterWorkerService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+
+class ClusterWorkerIntegrationConfigurationTest {
+  @Test
+  void shouldCreateIntegrationFlow() {
+    final ClusterWorkerService workerService = Mockito.mock(ClusterWorkerService.class);
+    final ClusterWorkerIntegrationConfiguration configuration =
+        new ClusterWorkerIntegrationConfiguration(workerService);
+
+    when(workerService.tcpMessageServer())
+        .thenReturn(Mockito.mock(TcpReceivingChannelAdapter.class));
+    configuration.tcpClusterWorkerServer();
+    verify(workerService, Mockito.times(1)).tcpMessageServer();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.codebrewer.dump1090processor.basestation.service.RedundantMessageSuppressionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+class PerTypeMessageEndpointTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private PerTypeMessageRepository repository;
+  private TransmissionMessage message;
+
+  private PerTypeMessageEndpoint endpoint(boolean suppressRedundantMessages) {
+    return new PerTypeMessageEndpoint(
+        repository, new RedundantMessageSuppressionService(suppressRedundantMessages, 60L), true);
+  }
+
+  @BeforeEach
+  void setUp() {
+    repository = Mockito.mock(PerTypeMessageRepository.class);
+    message =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.SURVEILLANCE_ALTITUDE)
+            .altitude(35000.0f)
+            .build();
+  }
+
+  @Test
+  void shouldPersistMessageRecord() {
+    final PerTypeMessageEndpoint endpoint = endpoint(false);
+    final ArgumentCaptor<MessageRecord> recordCaptor = ArgumentCaptor.forClass(MessageRecord.class);
+
+    when(repository.save(any())).thenReturn(true);
+    endpoint.consume(message);
+    verify(repository).save(recordCaptor.capture());
+
+    final MessageRecord messageRecord = recordCaptor.getValue();
+
+    assertThat(messageRecord.getMessageType()).isEqualTo(MessageType.MSG);
+    assertThat(messageRecord.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(messageRecord.getTimestamp()).isEqualTo(NOW);
+    assertThat(messageRecord.getTransmissionType())
+        .isEqualTo(TransmissionType.SURVEILLANCE_ALTITUDE);
+    assertThat(messageRecord.getAltitude()).isEqualTo(35000.0f);
+    assertThat(endpoint.getPersistedCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldNotCountUnstoredMessages() {
+    final PerTypeMessageEndpoint endpoint = endpoint(false);
+
+    when(repository.save(any())).thenReturn(false);
+    endpoint.consume(message);
+    assertThat(endpoint.getPersistedCount()).isZero();
+  }
+
+  @Test
+  void shouldAllowPersistenceToBeControlled() {
+    final PerTypeMessageEndpoint endpoint = endpoint(false);
+
+    endpoint.setPersistMessages(false);
+    assertThat(endpoint.isPersistMessages()).isFalse();
+    endpoint.consume(message);
+    verifyNoInteractions(repository);
+    endpoint.setPersistMessages(true);
+    endpoint.consume(message);
+    verify(repository, Mockito.times(1)).save(any());
+  }
+
+  @Test
+  void shouldNotPersistRedundantMessages() {
+    final PerTypeMessageEndpoint endpoint = endpoint(true);
+
+    when(repository.save(any())).thenReturn(true);
+    endpoint.consume(message);
+    endpoint.consume(
+        new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(1L))
+            .transmissionType(TransmissionType.SURVEILLANCE_ALTITUDE)
+            .altitude(35000.0f)
+            .build());
+    verify(repository, Mockito.times(1)).save(any());
+    assertThat(endpoint.getPersistedCount()).isEqualTo(1L);
+  }
+}
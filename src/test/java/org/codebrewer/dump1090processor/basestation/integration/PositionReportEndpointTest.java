@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.PositionReport;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.repository.PositionReportRepository;
+import org.codebrewer.dump1090processor.basestation.service.DeferredPersistenceService;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+
+class PositionReportEndpointTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final Point<G2D> POSITION =
+      new Point<>(new G2D(-0.125, 51.5), CoordinateReferenceSystems.WGS84);
+
+  private PositionReportRepository repository;
+  private DeferredPersistenceService deferredPersistenceService;
+
+  private static Object runSave(InvocationOnMock invocation) {
+    invocation.<Runnable>getArgument(0).run();
+
+    return null;
+  }
+
+  private PositionReportEndpoint endpoint(boolean persist) {
+    return new PositionReportEndpoint(repository, deferredPersistenceService, persist);
+  }
+
+  @BeforeEach
+  void setUp() {
+    repository = Mockito.mock(PositionReportRepository.class);
+    deferredPersistenceService = Mockito.mock(DeferredPersistenceService.class);
+    doAnswer(PositionReportEndpointTest::runSave).when(deferredPersistenceService).execute(any());
+  }
+
+  @Test
+  void shouldPersistReportForMessageWithPosition() {
+    final PositionReportEndpoint endpoint = endpoint(true);
+    final ArgumentCaptor<PositionReport> reportCaptor =
+        ArgumentCaptor.forClass(PositionReport.class);
+
+    endpoint.consume(
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(35000.0f)
+            .position(POSITION)
+            .onGround(false)
+            .build());
+    verify(repository).save(reportCaptor.capture());
+
+    final PositionReport positionReport = reportCaptor.getValue();
+
+    assertThat(positionReport.getIcaoAddress()).isEqualTo(0x4840D6);
+    assertThat(positionReport.getTimestamp()).isEqualTo(NOW.toEpochMilli());
+    assertThat(positionReport.getPosition()).isSameAs(POSITION);
+    assertThat(positionReport.getAltitude()).isEqualTo(35000.0f);
+    assertThat(positionReport.getOnGround()).isFalse();
+    assertThat(endpoint.getPersistedCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldIgnoreMessagesWithoutPosition() {
+    final PositionReportEndpoint endpoint = endpoint(true);
+
+    endpoint.consume(new IdMessage.Builder("4840D6", NOW).build());
+    endpoint.consume(
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .build());
+    verifyNoInteractions(repository);
+  }
+
+  @Test
+  void shouldAllowPersistenceToBeControlled() {
+    final PositionReportEndpoint endpoint = endpoint(true);
+    final TransmissionMessage message =
+        new TransmissionMessage.Builder("4840D6", NOW).position(POSITION).build();
+
+    endpoint.setPersistPositions(false);
+    assertThat(endpoint.isPersistPositions()).isFalse();
+    endpoint.consume(message);
+    verifyNoInteractions(repository);
+    endpoint.setPersistPositions(true);
+    endpoint.consume(message);
+    verify(repository, Mockito.times(1)).save(Mockito.any(PositionReport.class));
+  }
+}
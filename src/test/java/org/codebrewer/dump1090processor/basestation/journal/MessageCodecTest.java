@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.journal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.Arrays;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.NewAircraftMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MessageCodecTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00.123456789Z");
+
+  @Test
+  void shouldRoundTripTransmissionMessage() {
+    final TransmissionMessage message =
+        (TransmissionMessage) new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.SURVEILLANCE_ID)
+            .altitude(35000.0f)
+            .groundSpeed(450.5f)
+            .track(271.0f)
+            .position(new Point<>(new G2D(-0.125, 51.5), CoordinateReferenceSystems.WGS84))
+            .verticalRate((short) -64)
+            .squawk((short) 7700)
+            .alert(true)
+            .emergency(false)
+            .onGround(false)
+            .callSign("BAW123")
+            .build();
+    final TransmissionMessage decoded =
+        (TransmissionMessage) MessageCodec.decode(MessageCodec.encode(message));
+
+    assertThat(decoded.getId()).isZero();
+    assertThat(decoded.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(decoded.getTimestamp()).isEqualTo(NOW);
+    assertThat(decoded.getTransmissionType()).isEqualTo(TransmissionType.SURVEILLANCE_ID);
+    assertThat(decoded.getCallSign()).isEqualTo("BAW123");
+    assertThat(decoded.getAltitude()).isEqualTo(35000.0f);
+    assertThat(decoded.getGroundSpeed()).isEqualTo(450.5f);
+    assertThat(decoded.getTrack()).isEqualTo(271.0f);
+    assertThat(decoded.getPosition().getPosition().getLat()).isEqualTo(51.5);
+    assertThat(decoded.getPosition().getPosition().getLon()).isEqualTo(-0.125);
+    assertThat(decoded.getVerticalRate()).isEqualTo((short) -64);
+    assertThat(decoded.getSquawk()).isEqualTo((short) 7700);
+    assertThat(decoded.getAlert()).isTrue();
+    assertThat(decoded.getEmergency()).isFalse();
+    assertThat(decoded.getIdentActive()).isNull();
+    assertThat(decoded.getOnGround()).isFalse();
+  }
+
+  @Test
+  void shouldRoundTripSparseTransmissionMessage() {
+    final BaseStationMessage message =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.ALL_CALL_REPLY)
+            .build();
+    final byte[] payload = MessageCodec.encode(message);
+    final TransmissionMessage decoded = (TransmissionMessage) MessageCodec.decode(payload);
+
+    assertThat(payload).hasSize(24);
+    assertThat(decoded.getTransmissionType()).isEqualTo(TransmissionType.ALL_CALL_REPLY);
+    assertThat(decoded.getCallSign()).isNull();
+    assertThat(decoded.getAltitude()).isNull();
+    assertThat(decoded.getPosition()).isNull();
+    assertThat(decoded.getOnGround()).isNull();
+  }
+
+  @Test
+  void shouldRoundTripOtherMessages() {
+    final IdMessage idMessage =
+        (IdMessage) MessageCodec.decode(
+            MessageCodec.encode(new IdMessage.Builder("4840D6", NOW).callSign("BAW123").build()));
+    final StatusMessage statusMessage =
+        (StatusMessage) MessageCodec.decode(
+            MessageCodec.encode(
+                new StatusMessage.Builder("40621D", NOW)
+                    .statusMessageType(StatusMessageType.RM)
+                    .build()));
+    final BaseStationMessage newAircraftMessage =
+        MessageCodec.decode(
+            MessageCodec.encode(new NewAircraftMessage.Builder("4840D6", NOW).build()));
+
+    assertThat(idMessage.getCallSign()).isEqualTo("BAW123");
+    assertThat(statusMessage.getIcaoAddress()).isEqualTo("40621D");
+    assertThat(statusMessage.getStatusMessageType()).isEqualTo(StatusMessageType.RM);
+    assertThat(newAircraftMessage).isInstanceOf(NewAircraftMessage.class);
+    assertThat(newAircraftMessage.getTimestamp()).isEqualTo(NOW);
+  }
+
+  @Test
+  void shouldRejectUnsupportedMessage() {
+    assertThatThrownBy(() -> MessageCodec.encode(Mockito.mock(BaseStationMessage.class)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectMalformedPayloads() {
+    final byte[] payload =
+        MessageCodec.encode(new IdMessage.Builder("4840D6", NOW).callSign("BAW123").build());
+
+    assertThatThrownBy(() -> MessageCodec.decode(Arrays.copyOf(payload, payload.length - 1)))
+        .isInstanceOf(IllegalArgumentException.class);
+    payload[0] = 2;
+    assertThatThrownBy(() -> MessageCodec.decode(payload))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.journal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MessageJournalTest {
+  private static final int SEGMENT_BYTES = 64;
+
+  @TempDir
+  Path directory;
+
+  private static byte[] payload(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static List<String> readAll(MessageJournal journal, long offset) throws IOException {
+    final List<String> values = new ArrayList<>();
+
+    journal.read(
+        offset,
+        Integer.MAX_VALUE,
+        payload -> values.add(new String(payload, StandardCharsets.US_ASCII)));
+
+    return values;
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths.sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  void shouldRejectTinySegments() {
+    assertThatThrownBy(() -> MessageJournal.open(directory, MessageJournal.RECORD_HEADER_BYTES))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectEmptyAndOversizedRecords() throws IOException {
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      assertThatThrownBy(() -> journal.append(new byte[0]))
+          .isInstanceOf(IllegalArgumentException.class);
+      assertThatThrownBy(() -> journal.append(new byte[SEGMENT_BYTES]))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  void shouldOnlyReadForcedRecords() throws IOException {
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      assertThat(journal.append(payload("one"))).isEqualTo(11L);
+      assertThat(journal.getWriteOffset()).isEqualTo(11L);
+      assertThat(journal.getDurableOffset()).isZero();
+      assertThat(readAll(journal, 0L)).isEmpty();
+      assertThat(journal.force()).isEqualTo(11L);
+      assertThat(journal.getForceCount()).isEqualTo(1L);
+      assertThat(readAll(journal, 0L)).containsExactly("one");
+      journal.force();
+      assertThat(journal.getForceCount()).isEqualTo(1L);
+    }
+  }
+
+  @Test
+  void shouldReadInBatchesAcrossSegments() throws IOException {
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      for (int i = 0; i < 10; i++) {
+        journal.append(payload("record-" + i));
+      }
+
+      journal.force();
+      assertThat(journal.getSegmentCount()).isEqualTo(3);
+
+      final List<String> values = new ArrayList<>();
+      long offset = 0L;
+
+      for (int batch = 0; batch < 4; batch++) {
+        offset = journal.read(offset, 3, payload -> values.add(new String(payload)));
+      }
+
+      assertThat(values).hasSize(10).startsWith("record-0").endsWith("record-9");
+      assertThat(offset).isEqualTo(journal.getWriteOffset());
+      assertThat(journal.read(offset, 3, payload -> values.add("unexpected"))).isEqualTo(offset);
+    }
+  }
+
+  @Test
+  void shouldDeleteSegmentsBeforeOffset() throws IOException {
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      final List<Long> offsets = new ArrayList<>();
+
+      for (int i = 0; i < 10; i++) {
+        offsets.add(journal.append(payload("record-" + i)));
+      }
+
+      journal.force();
+      assertThat(journal.deleteBefore(offsets.get(2))).isZero();
+      assertThat(journal.deleteBefore(offsets.get(3))).isEqualTo(1);
+      assertThat(journal.getStartOffset()).isEqualTo(offsets.get(3));
+      assertThat(segmentFiles()).hasSize(2);
+      assertThat(readAll(journal, journal.getStartOffset())).hasSize(6);
+      assertThat(journal.deleteBefore(journal.getWriteOffset())).isEqualTo(1);
+      assertThat(journal.getSegmentCount()).isEqualTo(1);
+      assertThatThrownBy(() -> journal.read(0L, 1, payload -> {}))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  void shouldRecoverRecordsWhenReopened() throws IOException {
+    final long writeOffset;
+
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      for (int i = 0; i < 5; i++) {
+        journal.append(payload("record-" + i));
+      }
+
+      writeOffset = journal.getWriteOffset();
+    }
+
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      assertThat(journal.getWriteOffset()).isEqualTo(writeOffset);
+      assertThat(journal.getDurableOffset()).isEqualTo(writeOffset);
+      assertThat(readAll(journal, 0L)).hasSize(5).endsWith("record-4");
+      journal.append(payload("record-5"));
+      journal.force();
+      assertThat(readAll(journal, 0L)).hasSize(6).endsWith("record-5");
+    }
+  }
+
+  @Test
+  void shouldDiscardTornRecordWhenReopened() throws IOException {
+    final long tornOffset;
+
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      journal.append(payload("intact"));
+      tornOffset = journal.getWriteOffset();
+      journal.append(payload("torn"));
+    }
+
+    // Corrupt the last byte of the second record's payload
+    //
+    try (FileChannel channel =
+             FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {'X'}), tornOffset + 11);
+    }
+
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      assertThat(journal.getWriteOffset()).isEqualTo(tornOffset);
+      assertThat(readAll(journal, 0L)).containsExactly("intact");
+      journal.append(payload("next"));
+      journal.force();
+      assertThat(readAll(journal, 0L)).containsExactly("intact", "next");
+    }
+  }
+
+  @Test
+  void shouldReportCorruptRecordAndResumePastIt() throws IOException {
+    try (MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES)) {
+      final long corruptOffset = journal.append(payload("record-0"));
+      final long nextOffset = journal.append(payload("record-1"));
+
+      journal.append(payload("record-2"));
+      journal.force();
+
+      // Corrupt the last byte of the second record's payload
+      //
+      try (FileChannel channel =
+               FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.wrap(new byte[] {'X'}), nextOffset - 1);
+      }
+
+      final List<String> values = new ArrayList<>();
+
+      assertThatThrownBy(() -> journal.read(0L, 3, payload -> values.add(new String(payload))))
+          .isInstanceOfSatisfying(
+              CorruptRecordException.class,
+              e -> {
+                assertThat(e.getOffset()).isEqualTo(corruptOffset);
+                assertThat(e.getNextOffset()).isEqualTo(nextOffset);
+              });
+      assertThat(values).containsExactly("record-0");
+      assertThat(readAll(journal, nextOffset)).containsExactly("record-2");
+    }
+  }
+
+  @Test
+  void shouldRejectAppendsWhenClosed() throws IOException {
+    final MessageJournal journal = MessageJournal.open(directory, SEGMENT_BYTES);
+
+    journal.append(payload("one"));
+    journal.close();
+    assertThat(journal.getDurableOffset()).isEqualTo(journal.getWriteOffset());
+    assertThatThrownBy(() -> journal.append(payload("two"))).isInstanceOf(IOException.class);
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.proximity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class ProximityGridTest {
+  private static final long NOW = 1_612_008_000_000L;
+
+  // One nautical mile in degrees of latitude
+  //
+  private static final double NM = 1.0 / 60.0;
+
+  private static ProximityGrid grid() {
+    return new ProximityGrid(3.0, 1000.0, 60L, 1000.0, 15L);
+  }
+
+  @Test
+  void shouldRejectInvalidLimits() {
+    assertThatThrownBy(() -> new ProximityGrid(0.0, 1000.0, 60L, 1000.0, 15L))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ProximityGrid(3.0, -1.0, 60L, 1000.0, 15L))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ProximityGrid(3.0, 1000.0, -1L, 1000.0, 15L))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ProximityGrid(3.0, 1000.0, 60L, 0.0, 15L))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldSizeCellsToCoverLookAheadDistance() {
+    assertThat(grid().getCellSize()).isCloseTo(3.0 + 1000.0 * 75.0 / 3600.0, within(1e-9));
+  }
+
+  @Test
+  void shouldDetectLossOfSeparation() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    grid.updatePosition(0x4840D6, NOW, 52.0, 0.0, 35000.0f, events);
+    assertThat(grid.updatePosition(0x406A3D, NOW, 52.0 + NM, 0.0, 35500.0f, events))
+        .isEqualTo(1);
+
+    assertThat(events).hasSize(1);
+
+    final ProximityEvent event = events.get(0);
+
+    assertThat(event.getIcaoAddress()).isEqualTo("406A3D");
+    assertThat(event.getOtherIcaoAddress()).isEqualTo("4840D6");
+    assertThat(event.getTimestamp().toEpochMilli()).isEqualTo(NOW);
+    assertThat(event.isLossOfSeparation()).isTrue();
+    assertThat(event.getLateralSeparation()).isCloseTo(1.0f, within(1e-3f));
+    assertThat(event.getVerticalSeparation()).isCloseTo(500.0f, within(1e-3f));
+  }
+
+  @Test
+  void shouldIgnoreVerticallySeparatedAircraft() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    grid.updatePosition(0x4840D6, NOW, 52.0, 0.0, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 52.0 + NM, 0.0, 37000.0f, events);
+    grid.updatePosition(0x400001, NOW, 52.0 - NM, 0.0, Float.NaN, events);
+
+    assertThat(events).isEmpty();
+  }
+
+  @Test
+  void shouldPredictLossOfLateralSeparation() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    // Head on, 10nm apart and closing at 800 knots, so 3nm apart after 31.5 seconds
+    //
+    grid.updateVelocity(0x4840D6, 400.0f, 0.0f, 0.0f);
+    grid.updateVelocity(0x406A3D, 400.0f, 180.0f, 0.0f);
+    grid.updatePosition(0x4840D6, NOW, 52.0, 0.0, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 52.0 + 10.0 * NM, 0.0, 35000.0f, events);
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).isLossOfSeparation()).isFalse();
+    assertThat(events.get(0).getSecondsToConflict()).isCloseTo(31.5f, within(0.1f));
+    assertThat(events.get(0).getLateralSeparation()).isCloseTo(10.0f, within(1e-3f));
+  }
+
+  @Test
+  void shouldPredictLossOfVerticalSeparation() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    // 3000ft apart and closing at 3000ft per minute, so 1000ft apart after 40 seconds
+    //
+    grid.updateVelocity(0x4840D6, Float.NaN, Float.NaN, -3000.0f);
+    grid.updatePosition(0x4840D6, NOW, 52.0, 0.0, 38000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 52.0 + NM, 0.0, 35000.0f, events);
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getSecondsToConflict()).isCloseTo(40.0f, within(0.01f));
+  }
+
+  @Test
+  void shouldNotPredictLossOfSeparationBeyondLookAheadTime() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    grid.updateVelocity(0x4840D6, 400.0f, 0.0f, 0.0f);
+    grid.updateVelocity(0x406A3D, 400.0f, 180.0f, 0.0f);
+    grid.updatePosition(0x4840D6, NOW, 52.0, 0.0, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 52.0 + 20.0 * NM, 0.0, 35000.0f, events);
+
+    // Passing abeam 4nm apart
+    //
+    grid.updatePosition(0x400001, NOW, 52.0, 1.0, 35000.0f, events);
+    grid.updateVelocity(0x400002, 400.0f, 180.0f, 0.0f);
+    grid.updatePosition(0x400002, NOW, 52.0 + 5.0 * NM, 1.0 + 4.0 * NM / 0.6157, 35000.0f, events);
+
+    assertThat(events).isEmpty();
+  }
+
+  @Test
+  void shouldDeadReckonOlderPositions() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    // Last reported 10 seconds earlier 2nm to the south, so now alongside
+    //
+    grid.updateVelocity(0x4840D6, 720.0f, 0.0f, 0.0f);
+    grid.updatePosition(0x4840D6, NOW - 10_000L, 52.0 - 2.0 * NM, 0.0, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 52.0, 0.05, 35000.0f, events);
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getLateralSeparation()).isCloseTo(1.85f, within(0.01f));
+  }
+
+  @Test
+  void shouldIgnoreOutdatedPositions() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    grid.updatePosition(0x4840D6, NOW - 16_000L, 52.0, 0.0, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 52.0, 0.0, 35000.0f, events);
+
+    assertThat(events).isEmpty();
+  }
+
+  @Test
+  void shouldCheckOnlyNearbyAircraft() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    grid.updatePosition(0x4840D6, NOW, 52.0, 0.0, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 52.0 + 20.0 * NM, 0.0, 35000.0f, events);
+    grid.updatePosition(0x400001, NOW, 55.0, 0.0, 35000.0f, events);
+
+    assertThat(grid.updatePosition(0x400002, NOW, 58.0, 0.0, 35000.0f, events)).isZero();
+    assertThat(grid.updatePosition(0x400003, NOW, 52.0, 0.0, 0.0f, events)).isEqualTo(2);
+    assertThat(grid.getOccupiedCellCount()).isEqualTo(4);
+  }
+
+  @Test
+  void shouldDetectLossOfSeparationAcrossAntimeridian() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    grid.updatePosition(0x4840D6, NOW, 0.0, 179.99, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW, 0.0, -179.99, 35000.0f, events);
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getLateralSeparation()).isCloseTo(1.2f, within(0.01f));
+  }
+
+  @Test
+  void shouldFindSameEventsAsCheckingEveryPair() {
+    final ProximityGrid grid = grid();
+    final ProximityGrid everyPair = new ProximityGrid(3.0, 1000.0, 60L, 15L, 1_000_000.0);
+    final List<ProximityEvent> gridEvents = new ArrayList<>();
+    final List<ProximityEvent> everyPairEvents = new ArrayList<>();
+    final Random random = new Random(1L);
+
+    for (int i = 0; i < 2000; i++) {
+      final int address = 0x400000 + random.nextInt(1000);
+      final long timeMillis = NOW + i * 10L;
+      final double latitude = 52.0 + random.nextDouble() * 4.0;
+      final double longitude = -2.0 + random.nextDouble() * 6.0;
+      final float altitude = 30000.0f + random.nextInt(8) * 500.0f;
+      final float groundSpeed = random.nextFloat() * 500.0f;
+      final float track = random.nextFloat() * 360.0f;
+      final float verticalRate = (random.nextFloat() - 0.5f) * 4000.0f;
+
+      grid.updateVelocity(address, groundSpeed, track, verticalRate);
+      everyPair.updateVelocity(address, groundSpeed, track, verticalRate);
+      grid.updatePosition(address, timeMillis, latitude, longitude, altitude, gridEvents);
+      everyPair.updatePosition(
+          address, timeMillis, latitude, longitude, altitude, everyPairEvents);
+    }
+
+    assertThat(everyPair.getOccupiedCellCount()).isEqualTo(1);
+    assertThat(gridEvents).hasSizeGreaterThan(10);
+    assertThat(describe(gridEvents)).isEqualTo(describe(everyPairEvents));
+  }
+
+  @Test
+  void shouldStopTrackingRemovedAndExpiredAircraft() {
+    final ProximityGrid grid = grid();
+    final List<ProximityEvent> events = new ArrayList<>();
+
+    grid.updatePosition(0x4840D6, NOW, 52.0, 0.0, 35000.0f, events);
+    grid.updatePosition(0x406A3D, NOW + 10_000L, 55.0, 0.0, 35000.0f, events);
+    grid.updateAltitude(0x400001, NOW + 20_000L, 35000.0f);
+
+    assertThat(grid.expire()).isEqualTo(1);
+    assertThat(grid.size()).isEqualTo(2);
+    assertThat(grid.getOccupiedCellCount()).isEqualTo(1);
+    assertThat(grid.remove(0x406A3D)).isTrue();
+    assertThat(grid.remove(0x406A3D)).isFalse();
+    assertThat(grid.size()).isEqualTo(1);
+    assertThat(grid.getOccupiedCellCount()).isZero();
+  }
+
+  private static Set<String> describe(List<ProximityEvent> events) {
+    final Set<String> descriptions = new TreeSet<>();
+
+    for (ProximityEvent event : events) {
+      descriptions.add(event.toString());
+    }
+
+    return descriptions;
+  }
+}
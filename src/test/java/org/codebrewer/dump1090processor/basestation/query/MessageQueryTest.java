@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.Collections;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.junit.jupiter.api.Test;
+
+class MessageQueryTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  @Test
+  void shouldNormaliseIcaoAddress() {
+    final MessageQuery query = new MessageQuery.Builder().icaoAddress("4840d6").build();
+
+    assertThat(query.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(query.getLimit()).isEqualTo(MessageQuery.NO_LIMIT);
+    assertThat(query.getMessageTypes()).isEmpty();
+  }
+
+  @Test
+  void shouldRejectInvalidIcaoAddress() {
+    assertThatThrownBy(() -> new MessageQuery.Builder().icaoAddress("4840D"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new MessageQuery.Builder().icaoAddress("4840DX"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectEmptyTimeRange() {
+    final MessageQuery.Builder builder = new MessageQuery.Builder().from(NOW).to(NOW);
+
+    assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectNegativeLimit() {
+    assertThatThrownBy(() -> new MessageQuery.Builder().limit(-1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldCopyMessageTypes() {
+    final MessageQuery query =
+        new MessageQuery.Builder()
+            .messageTypes(Collections.singletonList(MessageType.STA))
+            .build();
+
+    assertThat(query.getMessageTypes()).containsExactly(MessageType.STA);
+    assertThatThrownBy(() -> query.getMessageTypes().add(MessageType.MSG))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void shouldParseBoundingBox() {
+    final BoundingBox boundingBox = BoundingBox.parse("-1.5, 51.0, 0.5, 52.0");
+
+    assertThat(boundingBox.contains(-0.1, 51.5)).isTrue();
+    assertThat(boundingBox.contains(0.6, 51.5)).isFalse();
+    assertThat(boundingBox.contains(-0.1, 52.1)).isFalse();
+    assertThatThrownBy(() -> BoundingBox.parse("1,2,3"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> BoundingBox.parse("1,52,0,53"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> BoundingBox.parse("a,b,c,d"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.NewAircraftMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MessageRecordTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  @Test
+  void shouldCreateRecordFromTransmissionMessage() {
+    final BaseStationMessage message =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(35000.0f)
+            .position(new Point<>(new G2D(-0.125, 51.5), CoordinateReferenceSystems.WGS84))
+            .onGround(false)
+            .build();
+    final MessageRecord messageRecord = MessageRecord.fromMessage(message);
+
+    assertThat(messageRecord.getMessageType()).isEqualTo(MessageType.MSG);
+    assertThat(messageRecord.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(messageRecord.getTimestamp()).isEqualTo(NOW);
+    assertThat(messageRecord.getTransmissionType()).isEqualTo(TransmissionType.AIRBORNE_POSITION);
+    assertThat(messageRecord.getAltitude()).isEqualTo(35000.0f);
+    assertThat(messageRecord.getLatitude()).isEqualTo(51.5);
+    assertThat(messageRecord.getLongitude()).isEqualTo(-0.125);
+    assertThat(messageRecord.getOnGround()).isFalse();
+    assertThat(messageRecord.getGroundSpeed()).isNull();
+  }
+
+  @Test
+  void shouldCreateRecordsFromOtherMessages() {
+    assertThat(
+        MessageRecord.fromMessage(new IdMessage.Builder("4840D6", NOW).callSign("BAW123").build()))
+        .satisfies(
+            r -> {
+              assertThat(r.getMessageType()).isEqualTo(MessageType.ID);
+              assertThat(r.getCallSign()).isEqualTo("BAW123");
+            });
+    assertThat(
+        MessageRecord.fromMessage(
+            new StatusMessage.Builder("4840D6", NOW)
+                .statusMessageType(StatusMessageType.OK)
+                .build()))
+        .satisfies(
+            r -> {
+              assertThat(r.getMessageType()).isEqualTo(MessageType.STA);
+              assertThat(r.getStatusMessageType()).isEqualTo(StatusMessageType.OK);
+            });
+    assertThat(
+        MessageRecord.fromMessage(new NewAircraftMessage.Builder("4840D6", NOW).build())
+            .getMessageType())
+        .isEqualTo(MessageType.AIR);
+  }
+
+  @Test
+  void shouldRejectUnsupportedMessage() {
+    assertThatThrownBy(() -> MessageRecord.fromMessage(Mockito.mock(BaseStationMessage.class)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
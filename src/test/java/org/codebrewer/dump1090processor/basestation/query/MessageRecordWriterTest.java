@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MessageRecordWriterTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private ByteArrayOutputStream outputStream;
+  private MessageRecord positionRecord;
+  private MessageRecord idRecord;
+
+  private static void writeAll(
+      MessageRecordWriter writer, boolean truncated, MessageRecord... messageRecords)
+      throws IOException {
+    writer.start();
+
+    for (MessageRecord messageRecord : messageRecords) {
+      writer.write(messageRecord);
+    }
+
+    writer.finish(truncated);
+  }
+
+  @BeforeEach
+  void setUp() {
+    outputStream = new ByteArrayOutputStream();
+    positionRecord =
+        new MessageRecord.Builder(42L, MessageType.MSG, "4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(35000.0f)
+            .position(51.5, -0.125)
+            .onGround(false)
+            .build();
+    idRecord =
+        new MessageRecord.Builder(43L, MessageType.ID, "4840D6", NOW.plusSeconds(1))
+            .callSign("KLM1,\"X\"")
+            .build();
+  }
+
+  @Test
+  void shouldWriteJsonWithoutNextWhenNotTruncated() throws IOException {
+    writeAll(new JsonMessageRecordWriter(outputStream), false, positionRecord);
+
+    assertThat(outputStream.toString(StandardCharsets.UTF_8.name()))
+        .isEqualTo(
+            "{\"messages\":[{\"id\":42,\"messageType\":\"MSG\",\"icaoAddress\":\"4840D6\","
+            + "\"timestamp\":\"2021-01-30T12:00:00Z\",\"transmissionType\":\"AIRBORNE_POSITION\","
+            + "\"altitude\":35000.0,\"latitude\":51.5,\"longitude\":-0.125,\"onGround\":false}],"
+            + "\"next\":null}");
+  }
+
+  @Test
+  void shouldWriteJsonWithNextWhenTruncated() throws IOException {
+    writeAll(new JsonMessageRecordWriter(outputStream), true, positionRecord, idRecord);
+
+    assertThat(outputStream.toString(StandardCharsets.UTF_8.name()))
+        .contains("\"callSign\":\"KLM1,\\\"X\\\"\"")
+        .endsWith(
+            "\"next\":{\"afterTimestamp\":\"2021-01-30T12:00:01Z\",\"afterId\":43}}");
+  }
+
+  @Test
+  void shouldWriteEmptyJson() throws IOException {
+    writeAll(new JsonMessageRecordWriter(outputStream), false);
+
+    assertThat(outputStream.toString(StandardCharsets.UTF_8.name()))
+        .isEqualTo("{\"messages\":[],\"next\":null}");
+  }
+
+  @Test
+  void shouldWriteCsvWithHeaderAndQuoting() throws IOException {
+    writeAll(new CsvMessageRecordWriter(outputStream), true, positionRecord, idRecord);
+
+    assertThat(outputStream.toString(StandardCharsets.UTF_8.name()).split("\r\n"))
+        .containsExactly(
+            CsvMessageRecordWriter.HEADER,
+            "42,MSG,4840D6,2021-01-30T12:00:00Z,,AIRBORNE_POSITION,,35000.0,,,51.5,-0.125,,,,,,"
+            + "false",
+            "43,ID,4840D6,2021-01-30T12:00:01Z,\"KLM1,\"\"X\"\"\",,,,,,,,,,,,,");
+  }
+
+  @Test
+  void shouldWriteBinaryThatReadsBackAsSameRecords() throws IOException {
+    final MessageRecord[] records = {
+        positionRecord,
+        new MessageRecord.Builder(40L, MessageType.STA, "406A3D", NOW.plusNanos(1_500_000L))
+            .statusMessageType(StatusMessageType.SL)
+            .build(),
+        idRecord,
+        new MessageRecord.Builder(44L, MessageType.MSG, "4840D6", NOW.plusSeconds(2L))
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(34975.0f)
+            .position(51.50123, -0.12789)
+            .verticalRate((short) -1088)
+            .squawk((short) 7700)
+            .alert(true)
+            .emergency(false)
+            .identActive(false)
+            .onGround(true)
+            .build(),
+        new MessageRecord.Builder(45L, MessageType.MSG, "abc", NOW.plusSeconds(3L))
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .groundSpeed(459.5f)
+            .track(182.9f)
+            .build()
+    };
+    final ByteArrayOutputStream csv = new ByteArrayOutputStream();
+    final ByteArrayOutputStream decodedCsv = new ByteArrayOutputStream();
+    final List<MessageRecord> decoded = new ArrayList<>();
+
+    writeAll(new BinaryMessageRecordWriter(outputStream), true, records);
+    writeAll(new CsvMessageRecordWriter(csv), true, records);
+
+    final BinaryMessageRecordReader reader =
+        new BinaryMessageRecordReader(outputStream.toByteArray());
+
+    for (MessageRecord record = reader.read(); record != null; record = reader.read()) {
+      decoded.add(record);
+    }
+
+    writeAll(new CsvMessageRecordWriter(decodedCsv), true, decoded.toArray(new MessageRecord[0]));
+
+    assertThat(reader.isTruncated()).isTrue();
+    assertThat(decodedCsv.toString(StandardCharsets.UTF_8.name()))
+        .isEqualTo(csv.toString(StandardCharsets.UTF_8.name()));
+    assertThat(decoded.get(1).getTimestamp()).isEqualTo(NOW.plusNanos(1_500_000L));
+  }
+
+  @Test
+  void shouldWriteTrackInFewBytesPerPosition() throws IOException {
+    final BinaryMessageRecordWriter writer = new BinaryMessageRecordWriter(outputStream);
+
+    writer.start();
+
+    for (int i = 0; i < 100; i++) {
+      writer.write(
+          new MessageRecord.Builder(100L + i, MessageType.MSG, "4840D6", NOW.plusMillis(i * 500L))
+              .transmissionType(TransmissionType.AIRBORNE_POSITION)
+              .altitude(35000.0f + i * 25.0f)
+              .position(51.5 + i * 0.0012, -0.125 + i * 0.0019)
+              .build());
+    }
+
+    writer.finish(false);
+
+    // Each record after the first needs its tag, field set, type, and identifier, timestamp,
+    // altitude, latitude and longitude differences
+    //
+    assertThat(outputStream.size()).isLessThan(100 * 14);
+
+    final BinaryMessageRecordReader reader =
+        new BinaryMessageRecordReader(outputStream.toByteArray());
+    MessageRecord last = null;
+
+    for (MessageRecord record = reader.read(); record != null; record = reader.read()) {
+      last = record;
+    }
+
+    assertThat(reader.isTruncated()).isFalse();
+    assertThat(last).isNotNull();
+    assertThat(last.getId()).isEqualTo(199L);
+    assertThat(last.getAltitude()).isEqualTo(37475.0f);
+    assertThat(last.getLatitude()).isCloseTo(51.5 + 99 * 0.0012, within(0.000005));
+    assertThat(last.getLongitude()).isCloseTo(-0.125 + 99 * 0.0019, within(0.000005));
+  }
+}
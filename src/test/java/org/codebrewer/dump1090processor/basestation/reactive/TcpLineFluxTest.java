@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+
+class TcpLineFluxTest {
+  private ServerSocket serverSocket;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    serverSocket.close();
+  }
+
+  private static String text(byte[] line) {
+    return new String(line, StandardCharsets.US_ASCII);
+  }
+
+  private static InputStream input(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private void serve(String text) throws IOException {
+    try (Socket socket = serverSocket.accept(); OutputStream output = socket.getOutputStream()) {
+      output.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  @Test
+  void shouldReadLinesWithoutTerminators() throws IOException {
+    final InputStream input = input("one\r\ntwo\n\r\nthree");
+    final byte[] buffer = new byte[TcpLineFlux.MAX_LINE_LENGTH];
+    final List<String> lines = new ArrayList<>();
+    byte[] line;
+
+    while ((line = TcpLineFlux.readLine(input, buffer)) != null) {
+      lines.add(text(line));
+    }
+
+    assertThat(lines).containsExactly("one", "two", "");
+  }
+
+  @Test
+  void shouldRejectOverlongLine() {
+    final InputStream input =
+        input(String.join("", Collections.nCopies(TcpLineFlux.MAX_LINE_LENGTH + 1, "x")) + "\n");
+
+    assertThatThrownBy(() -> TcpLineFlux.readLine(input, new byte[TcpLineFlux.MAX_LINE_LENGTH]))
+        .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void shouldEmitOnlyRequestedLines() throws Exception {
+    final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    final BaseSubscriber<byte[]> subscriber =
+        new BaseSubscriber<byte[]>() {
+          @Override
+          protected void hookOnSubscribe(Subscription subscription) {
+            request(2);
+          }
+
+          @Override
+          protected void hookOnNext(byte[] line) {
+            received.add(text(line));
+          }
+        };
+
+    TcpLineFlux.connect(
+            "localhost",
+            serverSocket.getLocalPort(),
+            Duration.ofSeconds(1L),
+            Duration.ofMillis(100L),
+            Schedulers.boundedElastic())
+        .subscribe(subscriber);
+
+    try (Socket socket = serverSocket.accept(); OutputStream output = socket.getOutputStream()) {
+      output.write("a\nb\nc\nd\n".getBytes(StandardCharsets.US_ASCII));
+      output.flush();
+
+      assertThat(received.poll(5L, TimeUnit.SECONDS)).isEqualTo("a");
+      assertThat(received.poll(5L, TimeUnit.SECONDS)).isEqualTo("b");
+      assertThat(received.poll(200L, TimeUnit.MILLISECONDS)).isNull();
+
+      subscriber.request(1);
+
+      assertThat(received.poll(5L, TimeUnit.SECONDS)).isEqualTo("c");
+      assertThat(received.poll(200L, TimeUnit.MILLISECONDS)).isNull();
+    } finally {
+      subscriber.dispose();
+    }
+  }
+
+  @Test
+  void shouldReconnectWhenServerClosesConnection() throws Exception {
+    final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    final Disposable subscription =
+        TcpLineFlux.connect(
+                "localhost",
+                serverSocket.getLocalPort(),
+                Duration.ofSeconds(1L),
+                Duration.ofMillis(100L),
+                Schedulers.boundedElastic())
+            .subscribe(line -> received.add(text(line)));
+
+    try {
+      serve("first\n");
+      serve("second\nthird\n");
+
+      final List<String> lines = new ArrayList<>();
+
+      for (int i = 0; i < 3; i++) {
+        lines.add(received.poll(5L, TimeUnit.SECONDS));
+      }
+
+      assertThat(lines).containsExactly("first", "second", "third");
+    } finally {
+      subscription.dispose();
+    }
+  }
+
+  @Test
+  void shouldCompleteWhenServerClosesConnection() throws Exception {
+    try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+      try (Socket server = serverSocket.accept(); OutputStream output = server.getOutputStream()) {
+        output.write("x\ny\n".getBytes(StandardCharsets.US_ASCII));
+      }
+
+      assertThat(
+          TcpLineFlux.lines(client)
+              .map(TcpLineFluxTest::text)
+              .collect(Collectors.toList())
+              .block(Duration.ofSeconds(5L)))
+          .isEqualTo(Arrays.asList("x", "y"));
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.registry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AircraftRegistryTest {
+  private static final String HEADER =
+      "\"icao24\",\"registration\",\"manufacturericao\",\"typecode\",\"operator\",\"owner\"";
+
+  @TempDir
+  Path directory;
+
+  private AircraftRegistry registry(String... rows) throws IOException {
+    final List<String> lines = new ArrayList<>();
+    final Path source = directory.resolve("aircraft.csv");
+    final Path target = directory.resolve("aircraft.bin");
+
+    lines.add(HEADER);
+    lines.addAll(Arrays.asList(rows));
+    Files.write(source, lines, StandardCharsets.UTF_8);
+    AircraftRegistry.compile(source, target);
+
+    return AircraftRegistry.open(target);
+  }
+
+  @Test
+  void shouldParseQuotedFields() {
+    assertThat(AircraftRegistry.parseLine("a,\"b,c\",\"d \"\"e\"\"\",,f"))
+        .containsExactly("a", "b,c", "d \"e\"", "", "f");
+  }
+
+  @Test
+  void shouldFindRecordsByAddress() throws IOException {
+    final AircraftRegistry registry =
+        registry(
+            "\"4840d6\",\"PH-BXA\",\"BOEING\",\"B738\",\"KLM Royal Dutch Airlines\",\"\"",
+            "\"406a3d\",\"G-EUPJ\",\"AIRBUS\",\"A319\",\"British Airways\",\"\"",
+            "\"a00001\",\"N1\",\"\",\"\",\"\",\"Federal Aviation Administration\"");
+
+    assertThat(registry.size()).isEqualTo(3);
+
+    final AircraftRegistration registration = registry.find(0x4840D6);
+
+    assertThat(registration.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(registration.getRegistration()).isEqualTo("PH-BXA");
+    assertThat(registration.getTypeCode()).isEqualTo("B738");
+    assertThat(registration.getOperator()).isEqualTo("KLM Royal Dutch Airlines");
+    assertThat(registration.getCountry()).isEqualTo("Netherlands");
+    assertThat(registry.find(0x406A3D).getRegistration()).isEqualTo("G-EUPJ");
+
+    final AircraftRegistration unknownType = registry.find(0xA00001);
+
+    assertThat(unknownType.getTypeCode()).isNull();
+    assertThat(unknownType.getOperator()).isNull();
+    assertThat(registry.find(0x4840D7)).isNull();
+    assertThat(registry.contains(0xA00001)).isTrue();
+    assertThat(registry.contains(0x000000)).isFalse();
+  }
+
+  @Test
+  void shouldSkipInvalidAddressesAndKeepLastDuplicate() throws IOException {
+    final AircraftRegistry registry =
+        registry(
+            "\"\",\"X-NONE\",\"\",\"\",\"\",\"\"",
+            "\"zzzzzz\",\"X-BAD\",\"\",\"\",\"\",\"\"",
+            "\"4840d6\",\"PH-OLD\",\"\",\"B737\",\"\",\"\"",
+            "\"4840d6\",\"PH-BXA\",\"\",\"B738\",\"\",\"\"",
+            "\"406a3d\"");
+
+    assertThat(registry.size()).isEqualTo(2);
+    assertThat(registry.find(0x4840D6).getRegistration()).isEqualTo("PH-BXA");
+    assertThat(registry.find(0x406A3D).getRegistration()).isNull();
+  }
+
+  @Test
+  void shouldTruncateLongValuesToWholeCharacters() throws IOException {
+    final String operator =
+        "Compa\u00f1\u00eda de Aviaci\u00f3n de Transporte A\u00e9reo Regional de Espa\u00f1a";
+    final AircraftRegistry registry =
+        registry("\"340001\",\"EC-ABC\",\"\",\"A320\",\"" + operator + "\",\"\"");
+    final String truncated = registry.find(0x340001).getOperator();
+
+    assertThat(operator).startsWith(truncated);
+    assertThat(truncated.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(48);
+  }
+
+  @Test
+  void shouldFindEveryRecordOfLargeRegistry() throws IOException {
+    final String[] rows = new String[10_000];
+
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = String.format("\"%06x\",\"R%d\",\"\",\"\",\"\",\"\"", i * 1_597 % 0x1000000, i);
+    }
+
+    final AircraftRegistry registry = registry(rows);
+
+    assertThat(registry.size()).isEqualTo(rows.length);
+
+    for (int i = 0; i < rows.length; i++) {
+      assertThat(registry.find(i * 1_597 % 0x1000000).getRegistration()).isEqualTo("R" + i);
+    }
+  }
+
+  @Test
+  void shouldRejectSourceWithoutRequiredColumn() throws IOException {
+    final Path source = directory.resolve("aircraft.csv");
+
+    Files.write(source, Arrays.asList("icao24,registration,operator", "4840d6,PH-BXA,KLM"));
+
+    assertThatThrownBy(() -> AircraftRegistry.compile(source, directory.resolve("aircraft.bin")))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("typecode");
+  }
+
+  @Test
+  void shouldRejectFileThatIsNotRegistry() throws IOException {
+    final Path path = directory.resolve("aircraft.bin");
+
+    Files.write(path, new byte[32]);
+
+    assertThatThrownBy(() -> AircraftRegistry.open(path)).isInstanceOf(IOException.class);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.registry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class IcaoAllocationsTest {
+  @Test
+  void shouldHoldBlocksInOrderWithoutOverlap() {
+    for (int i = 0; i < IcaoAllocations.getBlockCount(); i++) {
+      assertThat(IcaoAllocations.getFirstAddress(i))
+          .isLessThanOrEqualTo(IcaoAllocations.getLastAddress(i));
+
+      if (i > 0) {
+        assertThat(IcaoAllocations.getFirstAddress(i))
+            .isGreaterThan(IcaoAllocations.getLastAddress(i - 1));
+      }
+    }
+  }
+
+  @Test
+  void shouldFindCountryOfAddress() {
+    assertThat(IcaoAllocations.countryOf(0x400000)).isEqualTo("United Kingdom");
+    assertThat(IcaoAllocations.countryOf(0x43FFFF)).isEqualTo("United Kingdom");
+    assertThat(IcaoAllocations.countryOf(0x4840D6)).isEqualTo("Netherlands");
+    assertThat(IcaoAllocations.countryOf(0xA835AF)).isEqualTo("United States");
+    assertThat(IcaoAllocations.countryOf(0x004000)).isEqualTo("Zimbabwe");
+    assertThat(IcaoAllocations.countryOf(0xE94FFF)).isEqualTo("Bolivia");
+  }
+
+  @Test
+  void shouldFindCountryOfBlockCarvedOutOfAnother() {
+    assertThat(IcaoAllocations.countryOf(0x788FFF)).isEqualTo("China");
+    assertThat(IcaoAllocations.countryOf(0x789000)).isEqualTo("Hong Kong");
+    assertThat(IcaoAllocations.countryOf(0x78A000)).isEqualTo("China");
+  }
+
+  @Test
+  void shouldFindNoCountryOutsideAllocatedBlocks() {
+    assertThat(IcaoAllocations.countryOf(0x000000)).isNull();
+    assertThat(IcaoAllocations.countryOf(0x0043FF + 1)).isNull();
+    assertThat(IcaoAllocations.countryOf(0xF00000)).isNull();
+    assertThat(IcaoAllocations.countryOf(0xFFFFFF)).isNull();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.query.BoundingBox;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.junit.jupiter.api.Test;
+
+class MessageQueryRepositoryImplTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  @Test
+  void shouldBuildUnrestrictedQuery() {
+    final List<Object> parameters = new ArrayList<>();
+    final String sql =
+        MessageQueryRepositoryImpl.buildSql(new MessageQuery.Builder().build(), parameters);
+
+    assertThat(sql).doesNotContain(" where ").endsWith(" order by timestamp, id");
+    assertThat(parameters).isEmpty();
+  }
+
+  @Test
+  void shouldBuildKeysetQueryForAircraftTrack() {
+    final List<Object> parameters = new ArrayList<>();
+    final MessageQuery query =
+        new MessageQuery.Builder()
+            .icaoAddress("4840D6")
+            .from(NOW)
+            .to(NOW.plusSeconds(3600))
+            .after(NOW.plusSeconds(60), 42L)
+            .limit(100)
+            .build();
+    final String sql = MessageQueryRepositoryImpl.buildSql(query, parameters);
+
+    assertThat(sql)
+        .endsWith(
+            " where icao_address = ? and timestamp >= ? and timestamp < ?"
+            + " and (timestamp > ? or (timestamp = ? and id > ?))"
+            + " order by timestamp, id limit ?");
+    assertThat(parameters)
+        .containsExactly(
+            "4840D6",
+            NOW,
+            NOW.plusSeconds(3600),
+            NOW.plusSeconds(60),
+            NOW.plusSeconds(60),
+            42L,
+            101);
+  }
+
+  @Test
+  void shouldBuildQueryAfterId() {
+    final List<Object> parameters = new ArrayList<>();
+    final String sql = MessageQueryRepositoryImpl.buildSqlAfterId(42L, 100, parameters);
+
+    assertThat(sql).endsWith(" where id > ? order by id limit ?");
+    assertThat(parameters).containsExactly(42L, 101);
+  }
+
+  @Test
+  void shouldBuildQueryByType() {
+    final List<Object> parameters = new ArrayList<>();
+    final MessageQuery query =
+        new MessageQuery.Builder()
+            .messageTypes(Collections.singletonList(MessageType.MSG))
+            .transmissionTypes(
+                Arrays.asList(
+                    TransmissionType.AIRBORNE_POSITION, TransmissionType.SURFACE_POSITION))
+            .build();
+    final String sql = MessageQueryRepositoryImpl.buildSql(query, parameters);
+
+    assertThat(sql)
+        .contains(" where message_type in (?) and transmission_type in (?, ?) order by");
+    assertThat(parameters).containsExactly("MSG", 1, 2);
+  }
+
+  @Test
+  void shouldNotLimitQueryByBoundingBoxInDatabase() {
+    final List<Object> parameters = new ArrayList<>();
+    final MessageQuery query =
+        new MessageQuery.Builder()
+            .boundingBox(new BoundingBox(-1.0, 51.0, 1.0, 52.0))
+            .limit(10)
+            .build();
+    final String sql = MessageQueryRepositoryImpl.buildSql(query, parameters);
+
+    assertThat(sql).contains(" where position is not null ").doesNotContain(" limit ");
+    assertThat(parameters).isEmpty();
+  }
+}
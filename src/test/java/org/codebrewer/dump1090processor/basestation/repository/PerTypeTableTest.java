@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.junit.jupiter.api.Test;
+
+class PerTypeTableTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00.123456789Z");
+
+  private static MessageRecord messageRecord(MessageType messageType) {
+    return new MessageRecord.Builder(1L, messageType, "4840D6", NOW).build();
+  }
+
+  @Test
+  void shouldMapRecordsToTables() {
+    assertThat(PerTypeTable.forRecord(messageRecord(MessageType.AIR)))
+        .isEqualTo(PerTypeTable.NEW_AIRCRAFT);
+    assertThat(PerTypeTable.forRecord(messageRecord(MessageType.ID))).isEqualTo(PerTypeTable.ID);
+    assertThat(PerTypeTable.forRecord(messageRecord(MessageType.STA)))
+        .isEqualTo(PerTypeTable.STATUS);
+    assertThat(PerTypeTable.forRecord(messageRecord(MessageType.SEL))).isNull();
+    assertThat(PerTypeTable.forRecord(messageRecord(MessageType.MSG))).isNull();
+
+    for (TransmissionType transmissionType : TransmissionType.values()) {
+      final MessageRecord messageRecord =
+          new MessageRecord.Builder(1L, MessageType.MSG, "4840D6", NOW)
+              .transmissionType(transmissionType)
+              .build();
+
+      assertThat(PerTypeTable.forRecord(messageRecord).name()).isEqualTo(transmissionType.name());
+    }
+  }
+
+  @Test
+  void shouldBuildCreateStatements() {
+    assertThat(PerTypeTable.STATUS.getCreateStatements())
+        .containsExactly(
+            "create table if not exists status_message (icao_address int not null,"
+            + " timestamp bigint not null, status_message_type varchar(3))",
+            "create index if not exists status_message_timestamp on status_message (timestamp)",
+            "create index if not exists status_message_icao_address_timestamp"
+            + " on status_message (icao_address, timestamp)");
+  }
+
+  @Test
+  void shouldBuildInsertStatement() {
+    assertThat(PerTypeTable.AIRBORNE_VELOCITY.getInsertStatement())
+        .isEqualTo(
+            "insert into transmission_airborne_velocity"
+            + " (icao_address, timestamp, ground_speed, track, vertical_rate)"
+            + " values (?, ?, ?, ?, ?)");
+  }
+
+  @Test
+  void shouldExtractCompactValues() {
+    final MessageRecord statusRecord =
+        new MessageRecord.Builder(1L, MessageType.STA, "4840D6", NOW)
+            .statusMessageType(StatusMessageType.OK)
+            .build();
+    final MessageRecord positionRecord =
+        new MessageRecord.Builder(2L, MessageType.MSG, "4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(35000.0f)
+            .position(51.5, -0.125)
+            .alert(false)
+            .emergency(false)
+            .identActive(true)
+            .onGround(false)
+            .build();
+
+    assertThat(PerTypeTable.STATUS.getValues(statusRecord))
+        .containsExactly(0x4840D6, 1612008000123456L, "OK");
+    assertThat(PerTypeTable.AIRBORNE_POSITION.getValues(positionRecord))
+        .containsExactly(
+            0x4840D6, 1612008000123456L, 35000.0f, 51.5, -0.125, false, false, true, false);
+  }
+
+  @Test
+  void shouldConvertInstantToEpochMicros() {
+    assertThat(PerTypeColumn.epochMicros(Instant.EPOCH)).isZero();
+    assertThat(PerTypeColumn.epochMicros(NOW)).isEqualTo(1612008000123456L);
+    assertThat(PerTypeColumn.epochMicros(Instant.parse("1969-12-31T23:59:59.999999Z")))
+        .isEqualTo(-1L);
+  }
+}
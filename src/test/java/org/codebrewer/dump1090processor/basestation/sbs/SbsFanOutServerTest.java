@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.sbs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SbsFanOutServerTest {
+  private final List<Socket> sockets = new ArrayList<>();
+  private SbsFanOutServer server;
+
+  private static byte[] line(int index) {
+    return String.format("MSG,3,1,1,%06X,1\r\n", index).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+      Thread.sleep(10L);
+    }
+
+    assertThat(condition.getAsBoolean()).isTrue();
+  }
+
+  private Socket connect(int receiveBufferSize) throws IOException {
+    final Socket socket = new Socket();
+
+    if (receiveBufferSize > 0) {
+      socket.setReceiveBufferSize(receiveBufferSize);
+    }
+
+    socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    sockets.add(socket);
+
+    return socket;
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  void shouldRejectInvalidBacklog() {
+    assertThatThrownBy(() -> new SbsFanOutServer(0, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldNotPublishIfNotRunning() {
+    server = new SbsFanOutServer(0, 16);
+
+    assertThat(server.isRunning()).isFalse();
+    assertThat(server.publish(line(0))).isFalse();
+    assertThat(server.getPublishedCount()).isZero();
+  }
+
+  @Test
+  void shouldWriteEveryLineToEveryClient() throws Exception {
+    server = new SbsFanOutServer(0, 1024);
+    server.start();
+
+    final List<BufferedReader> readers = new ArrayList<>();
+
+    for (int i = 0; i < 5; i++) {
+      readers.add(
+          new BufferedReader(
+              new InputStreamReader(connect(0).getInputStream(), StandardCharsets.US_ASCII)));
+    }
+
+    await(() -> server.getClientCount() == 5);
+
+    for (int i = 0; i < 500; i++) {
+      assertThat(server.publish(line(i))).isTrue();
+    }
+
+    for (BufferedReader reader : readers) {
+      for (int i = 0; i < 500; i++) {
+        assertThat(reader.readLine() + "\r\n")
+            .isEqualTo(new String(line(i), StandardCharsets.US_ASCII));
+      }
+    }
+
+    assertThat(server.getAcceptedCount()).isEqualTo(5L);
+    assertThat(server.getPublishedCount()).isEqualTo(500L);
+    assertThat(server.getWrittenBytes()).isEqualTo(5L * 500 * line(0).length);
+    assertThat(server.getSlowClientCount()).isZero();
+  }
+
+  @Test
+  void shouldDisconnectSlowClientWithoutDelayingOthers() throws Exception {
+    server = new SbsFanOutServer(0, 16);
+    server.start();
+
+    final Socket slowClient = connect(1024);
+    final Socket fastClient = connect(0);
+    final byte[] largeLine = new byte[16 * 1024];
+    final long[] fastBytesRead = new long[1];
+    final Thread fastReader =
+        new Thread(() -> {
+          final byte[] buffer = new byte[64 * 1024];
+
+          try {
+            int read;
+
+            while ((read = fastClient.getInputStream().read(buffer)) > 0) {
+              synchronized (fastBytesRead) {
+                fastBytesRead[0] += read;
+              }
+            }
+          } catch (IOException e) {
+            // The test has finished
+          }
+        });
+
+    Arrays.fill(largeLine, (byte) 'x');
+    fastReader.setDaemon(true);
+    fastReader.start();
+    await(() -> server.getClientCount() == 2);
+
+    for (int i = 0; i < 2000 && server.getSlowClientCount() == 0; i++) {
+      server.publish(largeLine);
+      Thread.sleep(1L);
+    }
+
+    assertThat(server.getSlowClientCount()).isEqualTo(1L);
+    await(() -> server.getClientCount() == 1);
+
+    // The slow client is written what had been sent to it, then reaches the end of the stream
+    //
+    final byte[] buffer = new byte[64 * 1024];
+
+    slowClient.setSoTimeout(5000);
+
+    while (slowClient.getInputStream().read(buffer) >= 0) {
+      // Discard
+    }
+
+    final long published = server.getPublishedCount();
+
+    await(() -> {
+      synchronized (fastBytesRead) {
+        return fastBytesRead[0] == published * largeLine.length;
+      }
+    });
+  }
+
+  @Test
+  void shouldForgetClientThatDisconnects() throws Exception {
+    server = new SbsFanOutServer(0, 16);
+    server.start();
+    connect(0).close();
+    await(() -> server.getAcceptedCount() == 1L && server.getClientCount() == 0);
+    assertThat(server.publish(line(0))).isTrue();
+  }
+}
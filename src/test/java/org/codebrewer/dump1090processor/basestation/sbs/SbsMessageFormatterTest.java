@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.sbs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.NewAircraftMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.service.MessageParsingService;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+
+class SbsMessageFormatterTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T09:05:03.042Z");
+  private static final SbsMessageFormatter UTC_FORMATTER = new SbsMessageFormatter(ZoneOffset.UTC);
+
+  private static String format(SbsMessageFormatter formatter, BaseStationMessage message) {
+    return new String(
+        formatter.format(MessageRecord.fromMessage(message)), StandardCharsets.US_ASCII);
+  }
+
+  private static TransmissionMessage airbornePosition() {
+    return (TransmissionMessage) new TransmissionMessage.Builder("4840D6", NOW)
+        .transmissionType(TransmissionType.AIRBORNE_POSITION)
+        .altitude(39000.0f)
+        .position(new Point<>(new G2D(-2.754406, 56.378314), CoordinateReferenceSystems.WGS84))
+        .alert(true)
+        .emergency(false)
+        .identActive(false)
+        .onGround(false)
+        .build();
+  }
+
+  @Test
+  void shouldFormatTransmissionMessage() {
+    assertThat(format(UTC_FORMATTER, airbornePosition()))
+        .isEqualTo(
+            "MSG,3,1,1,4840D6,1,2021/01/30,09:05:03.042,2021/01/30,09:05:03.042,"
+                + ",39000,,,56.37831,-2.75441,,,-1,0,0,0\r\n");
+  }
+
+  @Test
+  void shouldFormatFractionalAndPaddedValues() {
+    final BaseStationMessage message =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.SURVEILLANCE_ID)
+            .altitude(1025.5f)
+            .squawk((short) 123)
+            .build();
+    final BaseStationMessage velocity =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .groundSpeed(451.0f)
+            .track(3.25f)
+            .verticalRate((short) -64)
+            .build();
+
+    assertThat(format(UTC_FORMATTER, message))
+        .endsWith(",1025.5,,,,,,0123,,,,\r\n");
+    assertThat(format(UTC_FORMATTER, velocity))
+        .endsWith(",,451,3.25,,,-64,,,,,\r\n");
+  }
+
+  @Test
+  void shouldFormatOtherMessageTypes() {
+    assertThat(format(UTC_FORMATTER, new NewAircraftMessage.Builder("4840D6", NOW).build()))
+        .isEqualTo("AIR,,1,1,4840D6,1,2021/01/30,09:05:03.042,2021/01/30,09:05:03.042\r\n");
+    assertThat(
+        format(UTC_FORMATTER, new IdMessage.Builder("4840D6", NOW).callSign("BAW123").build()))
+        .isEqualTo(
+            "ID,,1,1,4840D6,1,2021/01/30,09:05:03.042,2021/01/30,09:05:03.042,BAW123\r\n");
+    assertThat(
+        format(
+            UTC_FORMATTER,
+            new StatusMessage.Builder("4840D6", NOW)
+                .statusMessageType(StatusMessageType.PL)
+                .build()))
+        .isEqualTo("STA,,1,1,4840D6,1,2021/01/30,09:05:03.042,2021/01/30,09:05:03.042,PL\r\n");
+  }
+
+  @Test
+  void shouldFormatLinesThatParseToEqualMessages() {
+    final MessageParsingService parsingService = new MessageParsingService();
+    final SbsMessageFormatter formatter = new SbsMessageFormatter(ZoneId.systemDefault());
+    final TransmissionMessage parsed =
+        (TransmissionMessage) parsingService.parseCsvMessageText(
+            format(formatter, airbornePosition()));
+
+    assertThat(parsed.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(parsed.getTimestamp()).isEqualTo(NOW);
+    assertThat(parsed.getTransmissionType()).isEqualTo(TransmissionType.AIRBORNE_POSITION);
+    assertThat(parsed.getAltitude()).isEqualTo(39000.0f);
+    assertThat(parsed.getPosition().getPosition().getLat()).isEqualTo(56.37831);
+    assertThat(parsed.getPosition().getPosition().getLon()).isEqualTo(-2.75441);
+    assertThat(parsed.getAlert()).isTrue();
+    assertThat(parsed.getEmergency()).isFalse();
+    assertThat(parsed.getOnGround()).isFalse();
+    assertThat(
+        parsingService.parseCsvMessageText(
+            format(formatter, new IdMessage.Builder("4840D6", NOW).callSign("BAW123").build())))
+        .isInstanceOfSatisfying(
+            IdMessage.class, idMessage -> assertThat(idMessage.getCallSign()).isEqualTo("BAW123"));
+  }
+}
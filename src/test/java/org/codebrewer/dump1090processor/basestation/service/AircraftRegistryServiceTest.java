@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.codebrewer.dump1090processor.basestation.registry.AircraftRegistration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AircraftRegistryServiceTest {
+  @TempDir
+  Path directory;
+
+  private Path source(String... rows) throws IOException {
+    final Path source = directory.resolve("aircraft.csv");
+
+    Files.write(source, Arrays.asList("icao24,registration,typecode,operator"));
+    Files.write(source, Arrays.asList(rows), StandardOpenOption.APPEND);
+
+    return source;
+  }
+
+  private AircraftRegistryService service(Path source, int cacheSize) {
+    final AircraftRegistryService service =
+        new AircraftRegistryService(source, directory.resolve("aircraft.bin"), cacheSize);
+
+    service.openRegistry();
+
+    return service;
+  }
+
+  @Test
+  void shouldRejectNegativeCacheSize() {
+    assertThatThrownBy(() -> new AircraftRegistryService(null, directory.resolve("x"), -1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldCompileRegistryOnFirstLoad() throws IOException {
+    final AircraftRegistryService service = service(source("4840d6,PH-BXA,B738,KLM"), 16);
+
+    assertThat(Files.exists(directory.resolve("aircraft.bin"))).isTrue();
+    assertThat(service.isRegistryOpen()).isTrue();
+    assertThat(service.getRecordCount()).isEqualTo(1);
+    assertThat(service.lookup("4840d6").getRegistration()).isEqualTo("PH-BXA");
+    assertThat(service.getRegisteredCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldRecompileRegistryOnlyWhenSourceIsNewer() throws IOException {
+    final Path source = source("4840d6,PH-BXA,B738,KLM");
+
+    service(source, 16);
+    Files.write(
+        source, Arrays.asList("icao24,registration,typecode,operator", "4840d6,PH-BXB,B738,KLM"));
+    Files.setLastModifiedTime(
+        source,
+        FileTime.fromMillis(
+            Files.getLastModifiedTime(directory.resolve("aircraft.bin")).toMillis() - 60_000L));
+
+    assertThat(service(source, 16).lookup("4840D6").getRegistration()).isEqualTo("PH-BXA");
+
+    Files.setLastModifiedTime(
+        source,
+        FileTime.fromMillis(
+            Files.getLastModifiedTime(directory.resolve("aircraft.bin")).toMillis() + 60_000L));
+
+    assertThat(service(source, 16).lookup("4840D6").getRegistration()).isEqualTo("PH-BXB");
+  }
+
+  @Test
+  void shouldUseExistingRegistryWithoutSource() throws IOException {
+    service(source("4840d6,PH-BXA,B738,KLM"), 16);
+
+    assertThat(service(null, 16).lookup("4840D6").getTypeCode()).isEqualTo("B738");
+  }
+
+  @Test
+  void shouldKnowCountryOfUnregisteredAircraft() {
+    final AircraftRegistryService service = service(null, 16);
+    final AircraftRegistration registration = service.lookup("406A3D");
+
+    assertThat(service.isRegistryOpen()).isFalse();
+    assertThat(registration.getIcaoAddress()).isEqualTo("406A3D");
+    assertThat(registration.getRegistration()).isNull();
+    assertThat(registration.getCountry()).isEqualTo("United Kingdom");
+    assertThat(service.lookup("F00000")).isNull();
+    assertThat(service.describe("F00000")).isNull();
+  }
+
+  @Test
+  void shouldRejectInvalidAddress() {
+    final AircraftRegistryService service = service(null, 16);
+
+    assertThatThrownBy(() -> service.lookup("4840D6X"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldCacheRecentlyUsedRecords() throws IOException {
+    final AircraftRegistryService service =
+        service(source("4840d6,PH-BXA,B738,KLM", "406a3d,G-EUPJ,A319,BA", "a00001,N1,,"), 2);
+    final AircraftRegistration registration = service.lookup(0x4840D6);
+
+    assertThat(service.lookup(0x4840D6)).isSameAs(registration);
+    service.lookup(0x406A3D);
+    service.lookup(0x4840D6);
+    service.lookup(0xA00001);
+
+    // The least recently used record was evicted to make room
+    //
+    assertThat(service.lookup(0x4840D6)).isSameAs(registration);
+    assertThat(service.getCacheHitCount()).isEqualTo(3L);
+    service.lookup(0x406A3D);
+    assertThat(service.getCacheHitCount()).isEqualTo(3L);
+    assertThat(service.getLookupCount()).isEqualTo(7L);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+import org.codebrewer.dump1090processor.basestation.state.OnHeapAircraftStateStore;
+import org.codebrewer.dump1090processor.geo.ReceiverRelativePosition;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AircraftStateServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final int ADDRESS = 0x4840D6;
+
+  private AircraftStateService aircraftStateService;
+
+  @BeforeEach
+  void setUp() {
+    aircraftStateService =
+        new AircraftStateService(
+            new OnHeapAircraftStateStore(), 300L, Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @Test
+  void shouldIgnoreMessageWithInvalidIcaoAddress() {
+    aircraftStateService.update(new TransmissionMessage.Builder("XYZ", NOW).build());
+
+    assertThat(aircraftStateService.getAircraftCount()).isZero();
+  }
+
+  @Test
+  void shouldMergeMessagesIntoAircraftState() {
+    final TransmissionMessage.Builder identification =
+        new TransmissionMessage.Builder("4840D6", NOW.minusSeconds(2));
+
+    identification.callSign("KLM1023");
+    aircraftStateService.update(identification.build());
+
+    final BaseStationMessage position =
+        new TransmissionMessage.Builder("4840D6", NOW.minusSeconds(1))
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(38000.0f)
+            .position(new Point<>(new G2D(3.91937, 52.2572), CoordinateReferenceSystems.WGS84))
+            .onGround(false)
+            .build();
+
+    aircraftStateService.update(position);
+
+    final BaseStationMessage velocity =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .groundSpeed(159.2f)
+            .track(182.88f)
+            .verticalRate((short) -832)
+            .build();
+
+    aircraftStateService.update(velocity);
+
+    final AircraftState state = aircraftStateService.getAircraft(ADDRESS);
+
+    assertThat(state.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(state.getCallSign()).isEqualTo("KLM1023");
+    assertThat(state.getAltitude()).isEqualTo(38000.0f);
+    assertThat(state.getGroundSpeed()).isEqualTo(159.2f);
+    assertThat(state.getTrack()).isEqualTo(182.88f);
+    assertThat(state.getVerticalRate()).isEqualTo(-832.0f);
+    assertThat(state.getLatitude()).isCloseTo(52.2572, within(1e-9));
+    assertThat(state.getLongitude()).isCloseTo(3.91937, within(1e-9));
+    assertThat(state.getPositionMillis()).isEqualTo(NOW.minusSeconds(1).toEpochMilli());
+    assertThat(state.getLastSeenMillis()).isEqualTo(NOW.toEpochMilli());
+    assertThat(state.getMessageCount()).isEqualTo(3L);
+    assertThat(state.getSquawk()).isEqualTo(AircraftState.NO_SQUAWK);
+    assertThat(aircraftStateService.getUpdateCount()).isEqualTo(3L);
+  }
+
+  @Test
+  void shouldApplyReceiverRelativePosition() {
+    final BaseStationMessage position =
+        new TransmissionMessage.Builder("4840D6", NOW.minusSeconds(1))
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .position(new Point<>(new G2D(3.91937, 52.2572), CoordinateReferenceSystems.WGS84))
+            .build();
+
+    aircraftStateService.update(position, new ReceiverRelativePosition(141_321.5f, 73.25f, 2.5f));
+
+    final AircraftState state = aircraftStateService.getAircraft(ADDRESS);
+
+    assertThat(state.getRange()).isEqualTo(141_321.5f);
+    assertThat(state.getBearing()).isEqualTo(73.25f);
+    assertThat(state.getElevation()).isEqualTo(2.5f);
+
+    aircraftStateService.update(
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .position(new Point<>(new G2D(3.9, 52.26), CoordinateReferenceSystems.WGS84))
+            .build());
+
+    assertThat(aircraftStateService.getAircraft(ADDRESS).getRange()).isNaN();
+  }
+
+  @Test
+  void shouldExpireAircraftNotHeardWithinTtl() {
+    aircraftStateService.update(new TransmissionMessage.Builder("4840D6", NOW).build());
+    aircraftStateService.update(
+        new TransmissionMessage.Builder("40621D", NOW.minusSeconds(301)).build());
+    aircraftStateService.expireAircraft();
+
+    assertThat(aircraftStateService.getAllAircraft())
+        .extracting(AircraftState::getIcaoAddress)
+        .containsExactly("4840D6");
+    assertThat(aircraftStateService.getExpiredCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldRestoreOnlyFreshStates() {
+    final AircraftState fresh =
+        new AircraftState.Builder(ADDRESS).lastSeenMillis(NOW.minusSeconds(10).toEpochMilli())
+                                          .build();
+    final AircraftState stale =
+        new AircraftState.Builder(0x40621D).lastSeenMillis(NOW.minusSeconds(400).toEpochMilli())
+                                           .build();
+
+    assertThat(aircraftStateService.restore(Arrays.asList(fresh, stale))).isEqualTo(1);
+    assertThat(aircraftStateService.getAircraft(ADDRESS)).isSameAs(fresh);
+    assertThat(aircraftStateService.getAircraft(0x40621D)).isNull();
+  }
+
+  @Test
+  void shouldNotRestoreOverNewerState() {
+    aircraftStateService.update(new TransmissionMessage.Builder("4840D6", NOW).build());
+
+    final AircraftState older =
+        new AircraftState.Builder(ADDRESS).lastSeenMillis(NOW.minusSeconds(10).toEpochMilli())
+                                          .build();
+
+    assertThat(aircraftStateService.restore(Arrays.asList(older))).isZero();
+    assertThat(aircraftStateService.getAircraft(ADDRESS).getLastSeenMillis())
+        .isEqualTo(NOW.toEpochMilli());
+  }
+}
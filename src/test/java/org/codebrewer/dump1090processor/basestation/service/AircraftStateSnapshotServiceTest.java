@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.state.OnHeapAircraftStateStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AircraftStateSnapshotServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  @TempDir
+  Path directory;
+
+  private Clock clock;
+  private Path snapshotPath;
+
+  private AircraftStateService newAircraftStateService() {
+    return new AircraftStateService(new OnHeapAircraftStateStore(), 300L, clock);
+  }
+
+  @BeforeEach
+  void setUp() {
+    clock = Clock.fixed(NOW, ZoneOffset.UTC);
+    snapshotPath = directory.resolve("aircraft-state.snapshot");
+  }
+
+  @Test
+  void shouldWriteAndRestoreSnapshot() {
+    final AircraftStateService before = newAircraftStateService();
+
+    before.update(new TransmissionMessage.Builder("4840D6", NOW).build());
+    before.update(new TransmissionMessage.Builder("40621D", NOW).build());
+
+    final AircraftStateSnapshotService writer =
+        new AircraftStateSnapshotService(before, true, snapshotPath, clock);
+
+    assertThat(writer.writeSnapshot()).isTrue();
+    assertThat(writer.getSnapshotCount()).isEqualTo(1L);
+
+    final AircraftStateService after = newAircraftStateService();
+
+    new AircraftStateSnapshotService(after, true, snapshotPath, clock).restoreSnapshot();
+    assertThat(after.getAircraftCount()).isEqualTo(2);
+    assertThat(after.getAircraft(0x4840D6).getMessageCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldNotWriteOrRestoreWhenDisabled() {
+    final AircraftStateService aircraftStateService = newAircraftStateService();
+
+    aircraftStateService.update(new TransmissionMessage.Builder("4840D6", NOW).build());
+    new AircraftStateSnapshotService(aircraftStateService, false, snapshotPath, clock)
+        .scheduledSnapshot();
+
+    assertThat(Files.exists(snapshotPath)).isFalse();
+  }
+
+  @Test
+  void shouldIgnoreCorruptSnapshot() throws IOException {
+    final AircraftStateService aircraftStateService = newAircraftStateService();
+    final AircraftStateSnapshotService snapshotService =
+        new AircraftStateSnapshotService(aircraftStateService, true, snapshotPath, clock);
+
+    Files.write(snapshotPath, new byte[64]);
+    snapshotService.restoreSnapshot();
+
+    assertThat(aircraftStateService.getAircraftCount()).isZero();
+    assertThat(snapshotService.getFailureCount()).isEqualTo(1L);
+  }
+}
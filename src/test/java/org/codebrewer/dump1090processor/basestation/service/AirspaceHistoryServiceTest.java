@@ -0,0 +1,322 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.AirspaceKeyframe;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceFrame;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.repository.AirspaceKeyframeRepository;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class AirspaceHistoryServiceTest {
+  private static final Instant START = Instant.parse("2021-01-30T11:58:30Z");
+  private static final Instant NOW = Instant.parse("2021-01-30T12:12:00Z");
+
+  private final List<MessageRecord> messages = new ArrayList<>();
+  private final List<MessageQuery> queries = new ArrayList<>();
+  private final TreeMap<Instant, AirspaceKeyframe> keyframes = new TreeMap<>();
+  private BaseStationMessageRepository messageRepository;
+  private AirspaceKeyframeRepository keyframeRepository;
+
+  private static Optional<AirspaceKeyframe> value(Map.Entry<Instant, AirspaceKeyframe> entry) {
+    return entry == null ? Optional.empty() : Optional.of(entry.getValue());
+  }
+
+  // Compares positions by their string representation, which is enough to tell whether two
+  // reconstructions of the same instant agree
+  //
+  private static List<String> describe(AirspaceFrame frame) {
+    final List<String> descriptions = new ArrayList<>();
+
+    for (PredictedPosition position : frame.getAircraft()) {
+      descriptions.add(
+          String.format(
+              "%s %s %.6f %.6f %s %s %s",
+              position.getIcaoAddress(),
+              position.getCallSign(),
+              position.getLatitude(),
+              position.getLongitude(),
+              position.getAltitude(),
+              position.getGroundSpeed(),
+              position.getPositionTimestamp()));
+    }
+
+    descriptions.sort(String::compareTo);
+
+    return descriptions;
+  }
+
+  private AirspaceHistoryService newService(AirspaceKeyframeRepository repository) {
+    return new AirspaceHistoryService(
+        messageRepository,
+        repository,
+        Mockito.mock(PlatformTransactionManager.class),
+        true,
+        false,
+        5L,
+        60L,
+        300L,
+        10.0,
+        100,
+        Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @BeforeEach
+  void setUp() {
+    // Three aircraft report every few seconds; the last stops reporting for longer than the
+    // time-to-live, then reappears
+    //
+    long id = 1L;
+
+    for (long seconds = 0L; seconds < 12L * 60L; seconds += 3L) {
+      final Instant timestamp = START.plusSeconds(seconds);
+
+      for (int aircraft = 0; aircraft < 3; aircraft++) {
+        if (aircraft == 2 && seconds > 60L && seconds < 540L) {
+          continue;
+        }
+
+        final String icaoAddress = String.format("40%04X", aircraft);
+
+        messages.add(
+            new MessageRecord.Builder(id++, MessageType.ID, icaoAddress, timestamp)
+                .callSign(seconds < 300L ? "OLD" + aircraft : "NEW" + aircraft)
+                .build());
+        messages.add(
+            new MessageRecord.Builder(id++, MessageType.MSG, icaoAddress, timestamp)
+                .transmissionType(TransmissionType.AIRBORNE_POSITION)
+                .altitude(10000.0f + aircraft * 1000.0f + seconds)
+                .groundSpeed(aircraft == 1 ? null : 300.0f)
+                .track(aircraft == 1 ? null : 90.0f)
+                .position(51.0 + aircraft, seconds / 600.0)
+                .build());
+      }
+    }
+
+    messageRepository = Mockito.mock(BaseStationMessageRepository.class);
+    when(messageRepository.streamMessages(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              final MessageQuery query = invocation.getArgument(0);
+              final Consumer<MessageRecord> consumer = invocation.getArgument(1);
+              int count = 0;
+
+              queries.add(query);
+
+              for (MessageRecord message : messages) {
+                if ((query.getFrom() == null || !message.getTimestamp().isBefore(query.getFrom()))
+                    && (query.getTo() == null || message.getTimestamp().isBefore(query.getTo()))) {
+                  if (count == query.getLimit() && query.getLimit() != MessageQuery.NO_LIMIT) {
+                    return true;
+                  }
+
+                  consumer.accept(message);
+                  count++;
+                }
+              }
+
+              return false;
+            });
+
+    keyframeRepository = Mockito.mock(AirspaceKeyframeRepository.class);
+    when(keyframeRepository.save(any()))
+        .thenAnswer(
+            invocation -> {
+              final AirspaceKeyframe keyframe = invocation.getArgument(0);
+
+              keyframes.put(keyframe.getTimestamp(), keyframe);
+
+              return keyframe;
+            });
+    when(keyframeRepository.findFirstByOrderByTimestampDesc())
+        .thenAnswer(invocation -> value(keyframes.lastEntry()));
+    when(keyframeRepository.findFirstByTimestampLessThanEqualOrderByTimestampDesc(any()))
+        .thenAnswer(invocation -> value(keyframes.floorEntry(invocation.getArgument(0))));
+  }
+
+  @Test
+  void shouldRejectNonPositiveInterval() {
+    assertThatThrownBy(
+        () ->
+            new AirspaceHistoryService(
+                messageRepository,
+                keyframeRepository,
+                Mockito.mock(PlatformTransactionManager.class),
+                true,
+                false,
+                0L,
+                60L,
+                300L,
+                10.0,
+                100,
+                Clock.systemUTC()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldBeUnavailableUnderPerTypeSchema() {
+    final AirspaceHistoryService historyService =
+        new AirspaceHistoryService(
+            messageRepository,
+            keyframeRepository,
+            Mockito.mock(PlatformTransactionManager.class),
+            true,
+            true,
+            5L,
+            60L,
+            300L,
+            10.0,
+            100,
+            Clock.fixed(NOW, ZoneOffset.UTC));
+
+    historyService.scheduledRun();
+    assertThat(historyService.isEnabled()).isFalse();
+    assertThatThrownBy(() -> historyService.getAirspace(NOW))
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(
+        () -> historyService.checkPlayback(START, NOW, Duration.ofSeconds(10L)))
+        .isInstanceOf(UnsupportedOperationException.class);
+    verifyNoInteractions(messageRepository, keyframeRepository);
+  }
+
+  @Test
+  void shouldNotBuildKeyframesWithoutMessages() throws IOException {
+    messages.clear();
+
+    assertThat(newService(keyframeRepository).buildKeyframes()).isZero();
+    assertThat(keyframes).isEmpty();
+  }
+
+  @Test
+  void shouldBuildKeyframesDueSinceEarliestMessage() throws IOException {
+    final AirspaceHistoryService historyService = newService(keyframeRepository);
+
+    assertThat(historyService.buildKeyframes()).isEqualTo(3);
+    assertThat(keyframes.keySet())
+        .containsExactly(
+            Instant.parse("2021-01-30T12:00:00Z"),
+            Instant.parse("2021-01-30T12:05:00Z"),
+            Instant.parse("2021-01-30T12:10:00Z"));
+    assertThat(keyframes.get(Instant.parse("2021-01-30T12:05:00Z")).getAircraftCount())
+        .isEqualTo(2);
+    assertThat(historyService.buildKeyframes()).isZero();
+    assertThat(historyService.getKeyframeCount()).isEqualTo(3L);
+  }
+
+  @Test
+  void shouldReplayOnlyMessagesSinceNearestKeyframe() throws IOException {
+    final AirspaceHistoryService historyService = newService(keyframeRepository);
+    final Instant timestamp = Instant.parse("2021-01-30T12:07:31Z");
+
+    historyService.buildKeyframes();
+    queries.clear();
+
+    final AirspaceFrame frame = historyService.getAirspace(timestamp);
+
+    assertThat(frame.getTimestamp()).isEqualTo(timestamp);
+    assertThat(frame.getAircraft()).hasSize(3);
+    assertThat(queries).hasSize(1);
+    assertThat(queries.get(0).getFrom()).isEqualTo(Instant.parse("2021-01-30T12:05:00Z"));
+    assertThat(queries.get(0).getTo()).isEqualTo(timestamp);
+  }
+
+  @Test
+  void shouldReconstructSameAirspaceWithOrWithoutKeyframes() throws IOException {
+    final AirspaceHistoryService withKeyframes = newService(keyframeRepository);
+    final AirspaceHistoryService withoutKeyframes =
+        newService(Mockito.mock(AirspaceKeyframeRepository.class));
+
+    withKeyframes.buildKeyframes();
+
+    for (long seconds = 0L; seconds <= 13L * 60L; seconds += 37L) {
+      final Instant timestamp = START.plusSeconds(seconds);
+
+      assertThat(describe(withKeyframes.getAirspace(timestamp)))
+          .as("Airspace at %s", timestamp)
+          .isEqualTo(describe(withoutKeyframes.getAirspace(timestamp)));
+    }
+
+    final AirspaceFrame frame = withKeyframes.getAirspace(Instant.parse("2021-01-30T12:05:00Z"));
+
+    // The third aircraft was last heard more than the time-to-live before this instant
+    //
+    assertThat(frame.getAircraft())
+        .extracting(PredictedPosition::getCallSign)
+        .containsExactlyInAnyOrder("NEW0", "NEW1");
+  }
+
+  @Test
+  void shouldPlayBackFramesMatchingReconstructions() throws IOException {
+    final AirspaceHistoryService historyService = newService(keyframeRepository);
+    final Instant from = Instant.parse("2021-01-30T12:04:10Z");
+    final Instant to = Instant.parse("2021-01-30T12:08:00Z");
+    final List<AirspaceFrame> frames = new ArrayList<>();
+
+    historyService.buildKeyframes();
+    historyService.playback(from, to, Duration.ofSeconds(20L), frames::add);
+
+    assertThat(frames).hasSize(12);
+    assertThat(frames.get(11).getTimestamp()).isEqualTo(Instant.parse("2021-01-30T12:07:50Z"));
+
+    for (AirspaceFrame frame : frames) {
+      assertThat(describe(frame))
+          .isEqualTo(describe(historyService.getAirspace(frame.getTimestamp())));
+    }
+
+    assertThat(historyService.getPlaybackCount()).isEqualTo(1L);
+    assertThat(historyService.getFrameCount()).isEqualTo(12L);
+  }
+
+  @Test
+  void shouldRejectInvalidPlayback() {
+    final AirspaceHistoryService historyService = newService(keyframeRepository);
+
+    assertThatThrownBy(() -> historyService.checkPlayback(NOW, NOW.plusSeconds(1L), Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+        () -> historyService.checkPlayback(NOW, NOW.minusSeconds(1L), Duration.ofSeconds(1L)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+        () -> historyService.checkPlayback(NOW, NOW.plusSeconds(100L), Duration.ofSeconds(1L)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage.INVALID_MESSAGE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class AvrMessagePayloadTransformerServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private ModeSFrameDecodingService decodingService;
+  private AvrMessagePayloadTransformerService transformerService;
+
+  @BeforeEach
+  void setUp() {
+    decodingService = Mockito.mock(ModeSFrameDecodingService.class);
+    transformerService =
+        new AvrMessagePayloadTransformerService(
+            decodingService, Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @Test
+  void shouldReturnInvalidMessageConstantForNonByteArrayPayload() {
+    assertThat(transformerService.transformPayload("*5D4840D6F8740F;")).isSameAs(INVALID_MESSAGE);
+    verifyNoInteractions(decodingService);
+  }
+
+  @Test
+  void shouldReturnInvalidMessageConstantForMalformedFrame() {
+    final byte[] payload = "*5D4840D6F87;".getBytes(StandardCharsets.US_ASCII);
+
+    assertThat(transformerService.transformPayload(payload)).isSameAs(INVALID_MESSAGE);
+    assertThat(transformerService.getMalformedFrameCount()).isEqualTo(1L);
+    assertThat(transformerService.getValidMessageCount()).isZero();
+    verifyNoInteractions(decodingService);
+  }
+
+  @Test
+  void shouldReturnInvalidMessageConstantForUndecodableFrame() {
+    final byte[] payload = "*5D4840D6F8740F;".getBytes(StandardCharsets.US_ASCII);
+
+    when(decodingService.decodeFrame(any(), anyInt(), any())).thenReturn(null);
+    assertThat(transformerService.transformPayload(payload)).isSameAs(INVALID_MESSAGE);
+    assertThat(transformerService.getMalformedFrameCount()).isZero();
+    assertThat(transformerService.getValidMessageCount()).isZero();
+  }
+
+  @Test
+  void shouldReturnMessageForDecodableFrame() {
+    final BaseStationMessage message = Mockito.mock(TransmissionMessage.class);
+    final byte[] payload = "*5D4840D6F8740F;".getBytes(StandardCharsets.US_ASCII);
+
+    when(decodingService.decodeFrame(any(), eq(7), eq(NOW))).thenReturn(message);
+    assertThat(transformerService.transformPayload(payload)).isSameAs(message);
+    verify(decodingService, Mockito.times(1)).decodeFrame(any(), eq(7), eq(NOW));
+    assertThat(transformerService.getValidMessageCount()).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class BulkImportServiceTest {
+  private static final List<String> LINES =
+      Arrays.asList(
+          "MSG,3,1,1,4840D6,1,2021/01/30,12:00:00.000,2021/01/30,12:00:00.000,,35000,,,"
+              + "51.50000,-0.12500,,,0,0,0,0",
+          "MSG,1,1,1,4840D6,1,2021/01/30,12:00:01.000,2021/01/30,12:00:01.000,KLM1023,,,,,,,,0,0,"
+              + "0,0",
+          "rubbish",
+          "STA,,1,1,4840D6,1,2021/01/30,12:00:02.000,2021/01/30,12:00:02.000,RM");
+
+  private BaseStationMessageRepository messageRepository;
+  private PerTypeMessageRepository perTypeMessageRepository;
+  private List<BaseStationMessage> savedMessages;
+  private List<MessageRecord> savedRecords;
+
+  @TempDir
+  Path directory;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    messageRepository = Mockito.mock(BaseStationMessageRepository.class);
+    perTypeMessageRepository = Mockito.mock(PerTypeMessageRepository.class);
+    savedMessages = new ArrayList<>();
+    savedRecords = new ArrayList<>();
+    when(messageRepository.saveAll(any()))
+        .thenAnswer(
+            invocation -> {
+              final Iterable<BaseStationMessage> messages = invocation.getArgument(0);
+
+              messages.forEach(savedMessages::add);
+
+              return messages;
+            });
+    when(perTypeMessageRepository.saveAll(any()))
+        .thenAnswer(
+            invocation -> {
+              final Collection<MessageRecord> messageRecords = invocation.getArgument(0);
+
+              savedRecords.addAll(messageRecords);
+
+              return messageRecords.size();
+            });
+  }
+
+  private BulkImportService bulkImportService(String schema, String startupFiles) {
+    return new BulkImportService(
+        new MessageParsingService(),
+        messageRepository,
+        perTypeMessageRepository,
+        Mockito.mock(PlatformTransactionManager.class),
+        schema,
+        startupFiles,
+        0,
+        1,
+        100);
+  }
+
+  private Path writeFile(String name) throws IOException {
+    return Files.write(directory.resolve(name), LINES, StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  void shouldImportFilesToSingleTable() throws IOException {
+    final BulkImportService bulkImportService = bulkImportService("single-table", "");
+    final Path file = writeFile("messages.txt");
+
+    assertThat(bulkImportService.importFiles(file.toString())).isEqualTo(3L);
+    assertThat(savedMessages)
+        .extracting(BaseStationMessage::getIcaoAddress)
+        .containsOnly("4840D6")
+        .hasSize(3);
+    assertThat(bulkImportService.getLineCount()).isEqualTo(4L);
+    assertThat(bulkImportService.getInvalidCount()).isEqualTo(1L);
+    assertThat(bulkImportService.getSavedCount()).isEqualTo(3L);
+    assertThat(bulkImportService.getReadBytes()).isEqualTo(Files.size(file));
+    verifyNoInteractions(perTypeMessageRepository);
+  }
+
+  @Test
+  void shouldImportFilesToPerTypeSchema() throws IOException {
+    final BulkImportService bulkImportService = bulkImportService("per-type", "");
+
+    assertThat(bulkImportService.importFiles(writeFile("messages.txt").toString())).isEqualTo(3L);
+    assertThat(savedRecords).hasSize(3);
+    verify(messageRepository, Mockito.never()).saveAll(any());
+  }
+
+  @Test
+  void shouldImportEveryFileOfDirectories() throws IOException {
+    final BulkImportService bulkImportService = bulkImportService("single-table", "");
+    final Path file = writeFile("one.txt");
+
+    writeFile("two.txt");
+
+    assertThat(bulkImportService.importFiles(directory + ", " + file)).isEqualTo(9L);
+    assertThat(savedMessages).hasSize(9);
+  }
+
+  @Test
+  void shouldRejectMissingFiles() {
+    final BulkImportService bulkImportService = bulkImportService("single-table", "");
+
+    assertThatThrownBy(() -> bulkImportService.importFiles(directory.resolve("none").toString()))
+        .isInstanceOf(IllegalArgumentException.class);
+    verifyNoInteractions(messageRepository);
+  }
+
+  @Test
+  void shouldImportStartupFilesWhenRun() throws IOException {
+    final Path file = writeFile("messages.txt");
+
+    bulkImportService("single-table", file.toString()).run(new DefaultApplicationArguments());
+
+    assertThat(savedMessages).hasSize(3);
+  }
+
+  @Test
+  void shouldImportNothingWhenRunWithoutStartupFiles() throws IOException {
+    bulkImportService("single-table", "").run(new DefaultApplicationArguments());
+
+    verifyNoInteractions(messageRepository);
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import org.codebrewer.dump1090processor.basestation.cluster.WorkerConnection;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.journal.MessageCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ClusterForwardingServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final int AIRCRAFT_COUNT = 20;
+
+  private ClusterForwardingService forwardingService;
+  private FakeWorker firstWorker;
+  private FakeWorker secondWorker;
+
+  // Stands in for a worker instance, recording every message forwarded to it
+  //
+  private static final class FakeWorker implements Runnable {
+    private final ServerSocket serverSocket;
+    private final List<BaseStationMessage> messages = new CopyOnWriteArrayList<>();
+    private volatile Socket socket;
+
+    FakeWorker(int port) throws IOException {
+      serverSocket = new ServerSocket();
+      serverSocket.setReuseAddress(true);
+      serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+      final Thread thread = new Thread(this, "fake-worker-" + getPort());
+
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    Set<String> getIcaoAddresses() {
+      return messages.stream().map(BaseStationMessage::getIcaoAddress).collect(Collectors.toSet());
+    }
+
+    List<BaseStationMessage> getMessages(Instant timestamp) {
+      return messages.stream()
+                     .filter(message -> message.getTimestamp().equals(timestamp))
+                     .collect(Collectors.toList());
+    }
+
+    @Override
+    public void run() {
+      try {
+        socket = serverSocket.accept();
+
+        final DataInputStream input = new DataInputStream(socket.getInputStream());
+
+        while (true) {
+          final byte[] payload = new byte[input.readInt()];
+
+          input.readFully(payload);
+          messages.add(MessageCodec.decode(payload));
+        }
+      } catch (IOException e) {
+        // The worker, or the front-end, has closed the connection
+      }
+    }
+
+    void close() throws IOException {
+      serverSocket.close();
+
+      if (socket != null) {
+        socket.close();
+      }
+    }
+  }
+
+  private static BaseStationMessage message(int aircraft, Instant timestamp) {
+    return new IdMessage.Builder(String.format("%06X", 0x400000 + aircraft * 37), timestamp)
+        .callSign("TEST" + aircraft)
+        .build();
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+      Thread.sleep(10L);
+    }
+
+    assertThat(condition.getAsBoolean()).isTrue();
+  }
+
+  private void forwardRound(Instant timestamp) {
+    for (int i = 0; i < AIRCRAFT_COUNT; i++) {
+      forwardingService.forward(message(i, timestamp));
+    }
+  }
+
+  private ClusterForwardingService startForwardingService(String workers) {
+    forwardingService = new ClusterForwardingService(workers, 100, 1000, 20L);
+    forwardingService.start();
+
+    return forwardingService;
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    if (forwardingService != null) {
+      forwardingService.stop();
+    }
+
+    if (firstWorker != null) {
+      firstWorker.close();
+    }
+
+    if (secondWorker != null) {
+      secondWorker.close();
+    }
+  }
+
+  @Test
+  void shouldRejectMalformedWorkerAddress() {
+    assertThatThrownBy(() -> new ClusterForwardingService("localhost", 100, 1000, 20L))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ClusterForwardingService(" , ", 100, 1000, 20L))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldShardMessagesByIcaoAddress() throws Exception {
+    firstWorker = new FakeWorker(0);
+    secondWorker = new FakeWorker(0);
+    startForwardingService(
+        "127.0.0.1:" + firstWorker.getPort() + ", 127.0.0.1:" + secondWorker.getPort());
+    await(() -> forwardingService.getConnectedWorkerCount() == 2);
+
+    for (int i = 0; i < 5; i++) {
+      forwardRound(NOW.plusSeconds(i));
+    }
+
+    await(() -> firstWorker.messages.size() + secondWorker.messages.size() == 5 * AIRCRAFT_COUNT);
+    assertThat(firstWorker.getIcaoAddresses()).isNotEmpty();
+    assertThat(secondWorker.getIcaoAddresses()).isNotEmpty();
+    assertThat(firstWorker.getIcaoAddresses()).doesNotContainAnyElementsOf(
+        secondWorker.getIcaoAddresses());
+    assertThat(firstWorker.getMessages(NOW.plusSeconds(4)))
+        .extracting(BaseStationMessage::getIcaoAddress)
+        .containsExactlyElementsOf(
+            firstWorker.getMessages(NOW)
+                       .stream()
+                       .map(BaseStationMessage::getIcaoAddress)
+                       .collect(Collectors.toList()));
+    assertThat(forwardingService.getForwardedCount()).isEqualTo(5L * AIRCRAFT_COUNT);
+    assertThat(forwardingService.getDroppedCount()).isZero();
+    assertThat(forwardingService.getRebalanceCount()).isEqualTo(2L);
+    assertThat(forwardingService.getWorkers()).hasSize(2).allMatch(s -> s.contains(" connected"));
+  }
+
+  @Test
+  void shouldRebalanceWhenWorkerLeavesAndRejoins() throws Exception {
+    firstWorker = new FakeWorker(0);
+    secondWorker = new FakeWorker(0);
+
+    final int secondPort = secondWorker.getPort();
+
+    startForwardingService("127.0.0.1:" + firstWorker.getPort() + ",127.0.0.1:" + secondPort);
+    await(() -> forwardingService.getConnectedWorkerCount() == 2);
+    forwardRound(NOW);
+    await(() -> firstWorker.messages.size() + secondWorker.messages.size() == AIRCRAFT_COUNT);
+
+    final Set<String> secondWorkerAddresses = secondWorker.getIcaoAddresses();
+
+    // A closed connection is only noticed when writing to it fails
+    //
+    secondWorker.close();
+
+    for (int i = 1; i < 500 && forwardingService.getConnectedWorkerCount() == 2; i++) {
+      forwardRound(NOW.plusSeconds(i));
+      Thread.sleep(10L);
+    }
+
+    assertThat(forwardingService.getConnectedWorkerCount()).isEqualTo(1);
+    forwardRound(NOW.minusSeconds(1));
+    await(() -> firstWorker.getMessages(NOW.minusSeconds(1)).size() == AIRCRAFT_COUNT);
+
+    secondWorker = new FakeWorker(secondPort);
+    await(() -> forwardingService.getConnectedWorkerCount() == 2);
+    forwardRound(NOW.minusSeconds(2));
+    await(() -> secondWorker.getMessages(NOW.minusSeconds(2)).size()
+        == secondWorkerAddresses.size());
+    assertThat(secondWorker.getIcaoAddresses()).isEqualTo(secondWorkerAddresses);
+    assertThat(forwardingService.getRebalanceCount()).isEqualTo(4L);
+  }
+
+  @Test
+  void shouldNotCountReassignedMessagesAsForwarded() throws Exception {
+    firstWorker = new FakeWorker(0);
+    startForwardingService("127.0.0.1:" + firstWorker.getPort());
+    await(() -> forwardingService.getConnectedWorkerCount() == 1);
+
+    final List<BaseStationMessage> unsent =
+        Arrays.asList(message(0, NOW), message(1, NOW), message(2, NOW));
+
+    forwardingService.onDisconnected(
+        new WorkerConnection("127.0.0.1:1", 1, 1000, 20L, forwardingService), unsent);
+    await(() -> firstWorker.messages.size() == unsent.size());
+    assertThat(forwardingService.getReassignedCount()).isEqualTo(3L);
+    assertThat(forwardingService.getForwardedCount()).isZero();
+  }
+
+  @Test
+  void shouldDropMessagesIfNoWorkerConnected() throws Exception {
+    final int port;
+
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+
+    startForwardingService("127.0.0.1:" + port);
+
+    assertThat(forwardingService.forward(message(0, NOW))).isFalse();
+    assertThat(forwardingService.getDroppedCount()).isEqualTo(1L);
+    assertThat(forwardingService.getForwardedCount()).isZero();
+    assertThat(forwardingService.getWorkers()).containsExactly(
+        "127.0.0.1:" + port
+            + " disconnected, queued: 0, sent: 0, lost: 0, overflowed: 0, disconnects: 0");
+  }
+}
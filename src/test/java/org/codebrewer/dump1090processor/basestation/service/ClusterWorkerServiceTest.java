@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Instant;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.cluster.WorkerConnection;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.journal.MessageCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+class ClusterWorkerServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private static final WorkerConnection.Listener NO_OP_LISTENER =
+      new WorkerConnection.Listener() {
+        @Override
+        public void onConnected(WorkerConnection connection) {
+          // Nothing to do
+        }
+
+        @Override
+        public void onDisconnected(WorkerConnection connection, List<BaseStationMessage> unsent) {
+          // Nothing to do
+        }
+      };
+
+  @Test
+  void shouldDecodeForwardedMessage() {
+    final ClusterWorkerService workerService = new ClusterWorkerService(31003);
+    final BaseStationMessage message =
+        new IdMessage.Builder("4840D6", NOW).callSign("BAW123").build();
+    final BaseStationMessage decoded = workerService.decode(MessageCodec.encode(message));
+
+    assertThat(decoded).isInstanceOf(IdMessage.class);
+    assertThat(((IdMessage) decoded).getCallSign()).isEqualTo("BAW123");
+    assertThat(workerService.getReceivedCount()).isEqualTo(1L);
+    assertThat(workerService.getDecodeFailureCount()).isZero();
+  }
+
+  @Test
+  void shouldDiscardUndecodableMessage() {
+    final ClusterWorkerService workerService = new ClusterWorkerService(31003);
+
+    assertThat(workerService.decode(new byte[] { 1, 'M' })).isNull();
+    assertThat(workerService.getReceivedCount()).isZero();
+    assertThat(workerService.getDecodeFailureCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldReceiveFramesWrittenByWorkerConnection() throws Exception {
+    final int port;
+
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+
+    final ClusterWorkerService workerService = new ClusterWorkerService(port);
+    final TcpReceivingChannelAdapter adapter = workerService.tcpMessageServer();
+    final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+    final QueueChannel outputChannel = new QueueChannel();
+    final WorkerConnection connection =
+        new WorkerConnection("127.0.0.1:" + port, 10, 1000, 20L, NO_OP_LISTENER);
+
+    taskScheduler.setPoolSize(1);
+    taskScheduler.initialize();
+    adapter.setTaskScheduler(taskScheduler);
+    adapter.setOutputChannel(outputChannel);
+    adapter.start();
+
+    try {
+      connection.start();
+
+      for (int i = 0; i < 500 && !connection.isConnected(); i++) {
+        Thread.sleep(10L);
+      }
+
+      assertThat(workerService.isRunning()).isTrue();
+      assertThat(connection.offer(new IdMessage.Builder("4840D6", NOW).callSign("A").build()))
+          .isTrue();
+      assertThat(connection.offer(new IdMessage.Builder("4840D7", NOW).callSign("B").build()))
+          .isTrue();
+
+      for (String callSign : new String[] { "A", "B" }) {
+        final Message<?> message = outputChannel.receive(5000L);
+
+        assertThat(message).isNotNull();
+        assertThat(workerService.decode((byte[]) message.getPayload()))
+            .isInstanceOfSatisfying(
+                IdMessage.class,
+                idMessage -> assertThat(idMessage.getCallSign()).isEqualTo(callSign));
+      }
+
+      assertThat(connection.getSentCount()).isEqualTo(2L);
+    } finally {
+      connection.stop();
+      adapter.stop();
+      taskScheduler.shutdown();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+
+class DeferredPersistenceServiceTest {
+  private final List<Integer> saved = Collections.synchronizedList(new ArrayList<>());
+  private DeferredPersistenceService service;
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(10L);
+    }
+
+    assertThat(condition.getAsBoolean()).isTrue();
+  }
+
+  private void start(int capacity) {
+    service = new DeferredPersistenceService(capacity);
+    service.start();
+  }
+
+  private void applicationStarted() {
+    service.onApplicationEvent(
+        new ApplicationStartedEvent(new SpringApplication(), new String[0], null));
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (service != null) {
+      service.stop();
+    }
+  }
+
+  @Test
+  void shouldRejectNegativeCapacity() {
+    assertThatThrownBy(() -> new DeferredPersistenceService(-1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRunSavesImmediatelyOnceDatabaseReady() throws InterruptedException {
+    start(10);
+
+    applicationStarted();
+    await(service::isDatabaseReady);
+    service.execute(() -> saved.add(1));
+
+    assertThat(saved).containsExactly(1);
+    assertThat(service.getHeldCount()).isZero();
+    assertThat(service.getReadyUptimeMillis()).isPositive();
+  }
+
+  @Test
+  void shouldHoldSavesUntilDatabaseReadyAndRunThemInOrder() throws InterruptedException {
+    start(10);
+
+    for (int i = 0; i < 5; i++) {
+      final int value = i;
+
+      service.execute(() -> saved.add(value));
+    }
+
+    assertThat(service.isDatabaseReady()).isFalse();
+    assertThat(service.getReadyUptimeMillis()).isEqualTo(-1L);
+    assertThat(service.getHeldCount()).isEqualTo(5L);
+    assertThat(saved).isEmpty();
+
+    applicationStarted();
+    await(service::isDatabaseReady);
+    service.execute(() -> saved.add(5));
+
+    assertThat(saved).containsExactly(0, 1, 2, 3, 4, 5);
+  }
+
+  @Test
+  void shouldDropSavesBeyondCapacity() throws InterruptedException {
+    start(2);
+
+    for (int i = 0; i < 5; i++) {
+      final int value = i;
+
+      service.execute(() -> saved.add(value));
+    }
+
+    applicationStarted();
+    await(service::isDatabaseReady);
+
+    assertThat(service.getHeldCount()).isEqualTo(2L);
+    assertThat(service.getOverflowCount()).isEqualTo(3L);
+    assertThat(saved).containsExactly(0, 1);
+  }
+
+  @Test
+  void shouldCountHeldSavesThatFailAndRunTheRest() throws InterruptedException {
+    start(10);
+
+    service.execute(() -> saved.add(0));
+    service.execute(
+        () -> {
+          throw new IllegalStateException("Constraint violation");
+        });
+    service.execute(() -> saved.add(2));
+    applicationStarted();
+    await(service::isDatabaseReady);
+
+    assertThat(service.getFailureCount()).isEqualTo(1L);
+    assertThat(saved).containsExactly(0, 2);
+  }
+
+  @Test
+  void shouldPropagateFailureOfSaveRunImmediately() throws InterruptedException {
+    start(10);
+
+    applicationStarted();
+    await(service::isDatabaseReady);
+
+    assertThatThrownBy(
+        () -> service.execute(
+            () -> {
+              throw new IllegalStateException("Constraint violation");
+            }))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(service.getFailureCount()).isZero();
+  }
+
+  @Test
+  void shouldHoldSavesMadeBeforeStart() throws InterruptedException {
+    service = new DeferredPersistenceService(10);
+    service.execute(() -> saved.add(0));
+    service.start();
+    applicationStarted();
+    await(service::isDatabaseReady);
+
+    assertThat(saved).containsExactly(0);
+  }
+
+  @Test
+  void shouldDiscardHeldSavesWhenStopped() {
+    start(10);
+
+    service.execute(() -> saved.add(0));
+    service.stop();
+    applicationStarted();
+
+    assertThat(service.isRunning()).isFalse();
+    assertThat(service.isDatabaseReady()).isFalse();
+    assertThat(saved).isEmpty();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.jfr.PipelineEvents;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FlightRecordingServiceTest {
+  private static final Clock CLOCK =
+      Clock.fixed(Instant.parse("2021-01-30T12:00:00Z"), ZoneOffset.UTC);
+
+  @TempDir
+  Path directory;
+
+  private FlightRecordingService service;
+
+  private static List<RecordedEvent> pipelineEvents(String file, String name)
+      throws IOException {
+    return RecordingFile.readAllEvents(Paths.get(file))
+        .stream()
+        .filter(e -> e.getEventType().getName().equals(PipelineEvents.NAME_PREFIX + name))
+        .collect(Collectors.toList());
+  }
+
+  private static void emitEvents() {
+    final MessagePayloadTransformerService transformerService =
+        new MessagePayloadTransformerService(new MessageParsingService());
+
+    new EmptyMessageFilteringService().filterEmptyMessage(new byte[0]);
+    new InvalidMessageFilteringService().filterInvalidMessage(BaseStationMessage.INVALID_MESSAGE);
+    transformerService.transformPayload(
+        ("MSG,3,1,1,4840D6,1,2021/01/30,12:00:00.000,2021/01/30,12:00:00.000,,38000,,,"
+            + "51.50000,-0.12500,,,0,0,0,0").getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (service != null) {
+      service.close();
+    }
+  }
+
+  @Test
+  void shouldRejectOutOfRangeDuration() {
+    service = new FlightRecordingService(directory, 60L, CLOCK);
+
+    assertThatThrownBy(() -> service.startRecording(0L, false))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> service.startRecording(61L, false))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(service.isRecording()).isFalse();
+  }
+
+  @Test
+  void shouldRecordPipelineEventsToFile() throws IOException {
+    service = new FlightRecordingService(directory, 60L, CLOCK);
+
+    final String file = service.startRecording(60L, false);
+
+    assertThat(file).endsWith("dump1090-processor-20210130T120000Z.jfr");
+    assertThat(service.isRecording()).isTrue();
+    assertThatThrownBy(() -> service.startRecording(60L, false))
+        .isInstanceOf(IllegalStateException.class);
+
+    emitEvents();
+
+    assertThat(service.stopRecording()).isEqualTo(file);
+    assertThat(service.isRecording()).isFalse();
+    assertThat(service.getRecordingFile()).isEqualTo(file);
+
+    assertThat(pipelineEvents(file, "MessageFilter"))
+        .extracting(e -> e.getString("reason"))
+        .containsExactly("empty", "invalid");
+    assertThat(pipelineEvents(file, "FrameReceived")).isEmpty();
+  }
+
+  @Test
+  void shouldRecordFramesOnlyWhenRequested() throws IOException {
+    service = new FlightRecordingService(directory, 60L, CLOCK);
+
+    final String file = service.startRecording(60L, true);
+
+    emitEvents();
+    service.stopRecording();
+
+    assertThat(pipelineEvents(file, "FrameReceived"))
+        .extracting(e -> e.getInt("length"))
+        .containsExactly(103);
+    assertThat(service.getRecordingCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldReturnNullWhenStoppingWithoutRecording() {
+    service = new FlightRecordingService(directory, 60L, CLOCK);
+
+    assertThat(service.stopRecording()).isNull();
+    assertThat(service.getRecordingFile()).isNull();
+  }
+}
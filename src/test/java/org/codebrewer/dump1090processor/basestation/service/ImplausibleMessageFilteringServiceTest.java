@@ -0,0 +1,255 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class ImplausibleMessageFilteringServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private static ImplausibleMessageFilteringService service(boolean enabled, int capacity) {
+    return new ImplausibleMessageFilteringService(
+        enabled, 600.0, 6000.0, -1500.0, 60000.0, 1000.0, 60L, 2, capacity);
+  }
+
+  private static ImplausibleMessageFilteringService service() {
+    return service(true, 16);
+  }
+
+  private static TransmissionMessage position(
+      String icaoAddress, long seconds, double latitude, double longitude, Float altitude) {
+    return new TransmissionMessage.Builder(icaoAddress, NOW.plusSeconds(seconds))
+        .transmissionType(TransmissionType.AIRBORNE_POSITION)
+        .altitude(altitude)
+        .position(
+            new Point<>(new G2D(longitude, latitude), CoordinateReferenceSystems.WGS84))
+        .build();
+  }
+
+  private static TransmissionMessage position(long seconds, double latitude, double longitude) {
+    return position("4840D6", seconds, latitude, longitude, 38000.0f);
+  }
+
+  private static TransmissionMessage altitude(long seconds, float altitude) {
+    return new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(seconds))
+        .transmissionType(TransmissionType.AIR_TO_AIR)
+        .altitude(altitude)
+        .build();
+  }
+
+  @Test
+  void shouldRejectInconsistentLimits() {
+    assertThatThrownBy(
+        () -> new ImplausibleMessageFilteringService(
+            true, -1.0, 6000.0, -1500.0, 60000.0, 1000.0, 60L, 2, 16))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+        () -> new ImplausibleMessageFilteringService(
+            true, 600.0, 6000.0, 60000.0, -1500.0, 1000.0, 60L, 2, 16))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldPassMessagesWithoutAltitudeOrPosition() {
+    final ImplausibleMessageFilteringService service = service();
+
+    assertThat(service.filterImplausibleMessage(Mockito.mock(BaseStationMessage.class))).isTrue();
+    assertThat(
+        service.filterImplausibleMessage(
+            new TransmissionMessage.Builder("4840D6", NOW)
+                .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+                .groundSpeed(450.0f)
+                .build()))
+        .isTrue();
+    assertThat(service.getCheckedMessageCount()).isZero();
+  }
+
+  @Test
+  void shouldRejectOutOfRangeAltitudeAndPosition() {
+    final ImplausibleMessageFilteringService service = service();
+
+    assertThat(service.filterImplausibleMessage(altitude(0L, 95000.0f))).isFalse();
+    assertThat(service.filterImplausibleMessage(altitude(0L, -3000.0f))).isFalse();
+    assertThat(service.filterImplausibleMessage(position(0L, 95.0, 0.0))).isFalse();
+    assertThat(service.getAltitudeOutOfRangeCount()).isEqualTo(2L);
+    assertThat(service.getPositionOutOfRangeCount()).isEqualTo(1L);
+    assertThat(service.getImplausibleMessageCount()).isEqualTo(3L);
+  }
+
+  @Test
+  void shouldAcceptPlausibleMovement() {
+    final ImplausibleMessageFilteringService service = service();
+
+    // 0.05 degrees of latitude is about 5.6km, which takes about 18 seconds at 600 knots
+    //
+    assertThat(service.filterImplausibleMessage(position(0L, 52.0, -1.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(position(20L, 52.05, -1.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(position(40L, 52.1, -1.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(altitude(45L, 38500.0f))).isTrue();
+    assertThat(service.getCheckedMessageCount()).isEqualTo(4L);
+    assertThat(service.getImplausibleMessageCount()).isZero();
+  }
+
+  @Test
+  void shouldRejectExcessiveSpeed() {
+    final ImplausibleMessageFilteringService service = service();
+
+    assertThat(service.filterImplausibleMessage(position(0L, 52.0, -1.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(position(10L, 52.05, -1.0))).isFalse();
+    assertThat(service.filterImplausibleMessage(position(10L, 52.0, 2.0))).isFalse();
+    assertThat(service.getExcessiveSpeedCount()).isEqualTo(2L);
+
+    // Other aircraft are unaffected
+    //
+    assertThat(service.filterImplausibleMessage(position("4CA2BF", 10L, 52.05, -1.0, null)))
+        .isTrue();
+  }
+
+  @Test
+  void shouldMeasureMovementAcrossAntimeridian() {
+    final ImplausibleMessageFilteringService service = service();
+
+    assertThat(service.filterImplausibleMessage(position(0L, 10.0, 179.99))).isTrue();
+    assertThat(service.filterImplausibleMessage(position(10L, 10.0, -179.99))).isTrue();
+    assertThat(service.getExcessiveSpeedCount()).isZero();
+  }
+
+  @Test
+  void shouldRejectExcessiveClimbRate() {
+    final ImplausibleMessageFilteringService service = service();
+
+    // 6000 feet per minute is 100 feet per second, and altitudes may differ by 200 feet more
+    //
+    assertThat(service.filterImplausibleMessage(altitude(0L, 10000.0f))).isTrue();
+    assertThat(service.filterImplausibleMessage(altitude(10L, 11200.0f))).isTrue();
+    assertThat(service.filterImplausibleMessage(altitude(11L, 21200.0f))).isFalse();
+    assertThat(service.filterImplausibleMessage(altitude(12L, 1200.0f))).isFalse();
+    assertThat(service.getExcessiveClimbRateCount()).isEqualTo(2L);
+  }
+
+  @Test
+  void shouldIgnoreFixesOlderThanMaximumAge() {
+    final ImplausibleMessageFilteringService service = service();
+
+    assertThat(service.filterImplausibleMessage(position(0L, 52.0, -1.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(position(61L, 55.0, -1.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(altitude(122L, 5000.0f))).isTrue();
+    assertThat(service.getImplausibleMessageCount()).isZero();
+  }
+
+  @Test
+  void shouldReplaceFixAfterConsecutiveRejections() {
+    final ImplausibleMessageFilteringService service = service();
+
+    // A corrupt first fix must not cause every later position to be rejected
+    //
+    assertThat(service.filterImplausibleMessage(position(0L, 10.0, 10.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(position(1L, 52.0, -1.0))).isFalse();
+    assertThat(service.filterImplausibleMessage(position(2L, 52.0, -1.0))).isFalse();
+    assertThat(service.filterImplausibleMessage(position(3L, 52.0, -1.0))).isTrue();
+    assertThat(service.filterImplausibleMessage(position(4L, 52.0, -1.0))).isTrue();
+    assertThat(service.getExcessiveSpeedCount()).isEqualTo(2L);
+    assertThat(service.getFixReplacedCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldPassMessagesUncheckedWhenTableFull() {
+    final ImplausibleMessageFilteringService service = service(true, 4);
+
+    for (int i = 1; i <= 5; i++) {
+      assertThat(
+          service.filterImplausibleMessage(position("00000" + i, 0L, 52.0, -1.0, null)))
+          .isTrue();
+    }
+
+    assertThat(service.filterImplausibleMessage(position("000005", 1L, 10.0, 10.0, null)))
+        .isTrue();
+    assertThat(service.getUntrackedMessageCount()).isEqualTo(2L);
+
+    // Once a fix is stale its slot can be reused
+    //
+    assertThat(service.filterImplausibleMessage(position("000005", 61L, 52.0, -1.0, null)))
+        .isTrue();
+    assertThat(service.filterImplausibleMessage(position("000005", 62L, 10.0, 10.0, null)))
+        .isFalse();
+    assertThat(service.getUntrackedMessageCount()).isEqualTo(2L);
+  }
+
+  @Test
+  void shouldPassEverythingWhenDisabled() {
+    final ImplausibleMessageFilteringService service = service(false, 16);
+
+    assertThat(service.isEnabled()).isFalse();
+    assertThat(service.filterImplausibleMessage(altitude(0L, 95000.0f))).isTrue();
+    assertThat(service.getCheckedMessageCount()).isZero();
+  }
+
+  @Test
+  void shouldNotAllocateWhenCheckingMessages() {
+    final java.lang.management.ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+
+    assumeTrue(threadMxBean instanceof com.sun.management.ThreadMXBean);
+
+    final com.sun.management.ThreadMXBean allocationMxBean =
+        (com.sun.management.ThreadMXBean) threadMxBean;
+
+    assumeTrue(allocationMxBean.isThreadAllocatedMemorySupported());
+    allocationMxBean.setThreadAllocatedMemoryEnabled(true);
+
+    final ImplausibleMessageFilteringService service = service();
+    final TransmissionMessage[] messages = new TransmissionMessage[1000];
+
+    for (int i = 0; i < messages.length; i++) {
+      messages[i] =
+          i % 10 == 9
+              ? position(i, 10.0, 10.0)
+              : position(i, 52.0 + i * 0.001, -1.0);
+    }
+
+    for (TransmissionMessage message : messages) {
+      service.filterImplausibleMessage(message);
+    }
+
+    final long threadId = Thread.currentThread().getId();
+    final long allocatedBefore = allocationMxBean.getThreadAllocatedBytes(threadId);
+
+    for (int pass = 0; pass < 10; pass++) {
+      for (TransmissionMessage message : messages) {
+        service.filterImplausibleMessage(message);
+      }
+    }
+
+    // Allocating even the smallest object per message would allocate at least 16 bytes for each of
+    // the ten thousand checked, but deoptimization by the compiler can allocate a little
+    //
+    assertThat(allocationMxBean.getThreadAllocatedBytes(threadId) - allocatedBefore)
+        .isLessThan(1_000L);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.service.LoadSheddingService.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LoadSheddingServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final int CAPACITY = 100;
+
+  private LoadSheddingService loadSheddingService;
+
+  private static BaseStationMessage transmission(
+      String icaoAddress, TransmissionType transmissionType, Instant timestamp) {
+    return new TransmissionMessage.Builder(icaoAddress, timestamp)
+        .transmissionType(transmissionType)
+        .build();
+  }
+
+  @BeforeEach
+  void setUp() {
+    loadSheddingService = new LoadSheddingService(0.5, 0.75, 0.9, 1000L);
+  }
+
+  @Test
+  void shouldRejectUnorderedWatermarks() {
+    assertThatThrownBy(() -> new LoadSheddingService(0.8, 0.75, 0.9, 1000L))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldClassifyMessagesByPriority() {
+    final BaseStationMessage emergency =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .emergency(true)
+            .build();
+
+    assertThat(LoadSheddingService.priority(new IdMessage.Builder("4840D6", NOW).build()))
+        .isEqualTo(Priority.ESSENTIAL);
+    assertThat(
+        LoadSheddingService.priority(
+            new StatusMessage.Builder("4840D6", NOW)
+                .statusMessageType(StatusMessageType.OK)
+                .build()))
+        .isEqualTo(Priority.ESSENTIAL);
+    assertThat(LoadSheddingService.priority(emergency)).isEqualTo(Priority.ESSENTIAL);
+    assertThat(
+        LoadSheddingService.priority(
+            transmission("4840D6", TransmissionType.SURVEILLANCE_ALTITUDE, NOW)))
+        .isEqualTo(Priority.REDUNDANT);
+    assertThat(
+        LoadSheddingService.priority(
+            transmission("4840D6", TransmissionType.AIRBORNE_POSITION, NOW)))
+        .isEqualTo(Priority.NORMAL);
+  }
+
+  @Test
+  void shouldAcceptEverythingBelowFirstWatermark() {
+    for (int i = 0; i < 5; i++) {
+      assertThat(
+          loadSheddingService.accept(
+              transmission("4840D6", TransmissionType.AIRBORNE_VELOCITY, NOW), 49, CAPACITY))
+          .isTrue();
+    }
+
+    assertThat(loadSheddingService.getCurrentLevel()).isEqualTo(LoadSheddingService.LEVEL_NONE);
+    assertThat(loadSheddingService.getAcceptedCount()).isEqualTo(5L);
+  }
+
+  @Test
+  void shouldSampleRedundantMessagesPerAircraft() {
+    final TransmissionType velocity = TransmissionType.AIRBORNE_VELOCITY;
+
+    assertThat(loadSheddingService.accept(transmission("4840D6", velocity, NOW), 50, CAPACITY))
+        .isTrue();
+    assertThat(
+        loadSheddingService.accept(
+            transmission("4840D6", velocity, NOW.plusMillis(500)), 50, CAPACITY))
+        .isFalse();
+    assertThat(
+        loadSheddingService.accept(
+            transmission("40621D", velocity, NOW.plusMillis(500)), 50, CAPACITY))
+        .isTrue();
+    assertThat(
+        loadSheddingService.accept(
+            transmission("4840D6", TransmissionType.SURVEILLANCE_ALTITUDE, NOW.plusMillis(500)),
+            50,
+            CAPACITY))
+        .isTrue();
+    assertThat(
+        loadSheddingService.accept(
+            transmission("4840D6", velocity, NOW.plusMillis(1000)), 50, CAPACITY))
+        .isTrue();
+    assertThat(loadSheddingService.getCurrentLevelName()).isEqualTo("SAMPLE_REDUNDANT");
+    assertThat(loadSheddingService.getSampledOutCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldSampleRedundantMessagesRegardlessOfAddressCase() {
+    final TransmissionType velocity = TransmissionType.AIRBORNE_VELOCITY;
+
+    assertThat(loadSheddingService.accept(transmission("4840d6", velocity, NOW), 50, CAPACITY))
+        .isTrue();
+    assertThat(
+        loadSheddingService.accept(
+            transmission("4840D6", velocity, NOW.plusMillis(500)), 50, CAPACITY))
+        .isFalse();
+    assertThat(loadSheddingService.getSampledOutCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldDropRedundantThenNormalMessagesAsBufferFills() {
+    final BaseStationMessage redundant =
+        transmission("4840D6", TransmissionType.SURVEILLANCE_ALTITUDE, NOW);
+    final BaseStationMessage normal =
+        transmission("4840D6", TransmissionType.AIRBORNE_POSITION, NOW);
+    final BaseStationMessage essential = new IdMessage.Builder("4840D6", NOW).build();
+
+    assertThat(loadSheddingService.accept(redundant, 75, CAPACITY)).isFalse();
+    assertThat(loadSheddingService.accept(normal, 75, CAPACITY)).isTrue();
+    assertThat(loadSheddingService.accept(normal, 90, CAPACITY)).isFalse();
+    assertThat(loadSheddingService.accept(essential, 99, CAPACITY)).isTrue();
+    assertThat(loadSheddingService.getRedundantShedCount()).isEqualTo(1L);
+    assertThat(loadSheddingService.getNormalShedCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldApplyMinimumLevelRegardlessOfBufferFill() {
+    loadSheddingService.setMinimumLevel(LoadSheddingService.LEVEL_DROP_REDUNDANT);
+
+    assertThat(
+        loadSheddingService.accept(
+            transmission("4840D6", TransmissionType.AIRBORNE_VELOCITY, NOW), 0, CAPACITY))
+        .isFalse();
+    assertThatThrownBy(() -> loadSheddingService.setMinimumLevel(4))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.JournalCheckpoint;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.journal.MessageCodec;
+import org.codebrewer.dump1090processor.basestation.journal.MessageJournal;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.JournalCheckpointRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class MessageJournalServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  @TempDir
+  Path directory;
+
+  private BaseStationMessageRepository messageRepository;
+  private JournalCheckpointRepository checkpointRepository;
+  private List<BaseStationMessage> savedMessages;
+  private List<Long> checkpoints;
+  private MessageJournalService journalService;
+
+  @BeforeEach
+  void setUp() {
+    messageRepository = Mockito.mock(BaseStationMessageRepository.class);
+    checkpointRepository = Mockito.mock(JournalCheckpointRepository.class);
+    savedMessages = new ArrayList<>();
+    checkpoints = new ArrayList<>();
+    doAnswer(this::saveMessages).when(messageRepository).saveAll(any());
+    when(checkpointRepository.save(any()))
+        .thenAnswer(
+            invocation -> {
+              final JournalCheckpoint checkpoint = invocation.getArgument(0);
+
+              checkpoints.add(checkpoint.getAppliedOffset());
+
+              return checkpoint;
+            });
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (journalService != null) {
+      journalService.stop();
+    }
+  }
+
+  private MessageJournalService journalService(boolean enabled) {
+    return new MessageJournalService(
+        messageRepository,
+        checkpointRepository,
+        Mockito.mock(PlatformTransactionManager.class),
+        enabled,
+        directory.toString(),
+        4096,
+        1L,
+        2,
+        1L);
+  }
+
+  private Object saveMessages(InvocationOnMock invocation) {
+    invocation.<Iterable<BaseStationMessage>>getArgument(0).forEach(savedMessages::add);
+
+    return null;
+  }
+
+  private static BaseStationMessage message(int index) {
+    return new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(index))
+        .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+        .groundSpeed(400.0f + index)
+        .build();
+  }
+
+  private void awaitAppliedCount(long count) throws InterruptedException {
+    for (int i = 0; i < 500 && journalService.getAppliedCount() < count; i++) {
+      Thread.sleep(10L);
+    }
+
+    assertThat(journalService.getAppliedCount()).isEqualTo(count);
+  }
+
+  @Test
+  void shouldRejectNonPositiveBatchSize() {
+    assertThatThrownBy(
+        () ->
+            new MessageJournalService(
+                messageRepository,
+                checkpointRepository,
+                Mockito.mock(PlatformTransactionManager.class),
+                true,
+                directory.toString(),
+                4096,
+                1L,
+                0,
+                1L))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldNotAppendWhenDisabled() {
+    journalService = journalService(false);
+    journalService.start();
+    assertThat(journalService.isRunning()).isFalse();
+    assertThat(journalService.append(message(0))).isFalse();
+    verifyNoInteractions(checkpointRepository);
+  }
+
+  @Test
+  void shouldApplyAppendedMessagesInBatchesWithCheckpoints() throws InterruptedException {
+    journalService = journalService(true);
+    journalService.start();
+    assertThat(journalService.isRunning()).isTrue();
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(journalService.append(message(i))).isTrue();
+    }
+
+    awaitAppliedCount(5L);
+    assertThat(savedMessages)
+        .extracting(BaseStationMessage::getTimestamp)
+        .containsExactly(
+            NOW, NOW.plusSeconds(1), NOW.plusSeconds(2), NOW.plusSeconds(3), NOW.plusSeconds(4));
+    assertThat(checkpoints).isSorted().last().isEqualTo(journalService.getAppliedOffset());
+    assertThat(journalService.getAppendedCount()).isEqualTo(5L);
+    assertThat(journalService.getBacklogBytes()).isZero();
+    assertThat(journalService.getForceCount()).isPositive();
+  }
+
+  @Test
+  void shouldRetryFailedBatchesAndResumeFromCheckpoint() throws InterruptedException {
+    doThrow(new IllegalStateException("Database down")).when(messageRepository).saveAll(any());
+    journalService = journalService(true);
+    journalService.start();
+    journalService.append(message(0));
+    journalService.append(new IdMessage.Builder("4840D6", NOW).callSign("BAW123").build());
+    journalService.stop();
+    assertThat(journalService.getApplyFailureCount()).isPositive();
+    assertThat(journalService.getAppliedCount()).isZero();
+
+    // Restart with a working database and a checkpoint following the first message, as if it had
+    // been applied before a failure
+    //
+    final long firstMessageOffset =
+        MessageJournal.RECORD_HEADER_BYTES + MessageCodec.encode(message(0)).length;
+
+    Mockito.reset(messageRepository);
+    doAnswer(this::saveMessages).when(messageRepository).saveAll(any());
+    when(checkpointRepository.findById(anyString()))
+        .thenReturn(
+            Optional.of(
+                new JournalCheckpoint(
+                    MessageJournalService.CHECKPOINT_NAME, firstMessageOffset)));
+    journalService = journalService(true);
+    journalService.start();
+    awaitAppliedCount(1L);
+    assertThat(savedMessages).hasSize(1);
+    assertThat(savedMessages.get(0)).isInstanceOf(IdMessage.class);
+  }
+
+  @Test
+  void shouldSkipCorruptRecordInMiddleOfJournal() throws Exception {
+    final int recordBytes =
+        MessageJournal.RECORD_HEADER_BYTES + MessageCodec.encode(message(0)).length;
+
+    // Write one record to each segment, so that the corrupt record is not in the last segment and
+    // is not discarded as torn when the journal is opened
+    //
+    try (MessageJournal journal = MessageJournal.open(directory, recordBytes)) {
+      for (int i = 0; i < 3; i++) {
+        journal.append(MessageCodec.encode(message(i)));
+      }
+    }
+
+    final List<Path> segmentFiles;
+
+    try (Stream<Path> paths = Files.list(directory)) {
+      segmentFiles = paths.sorted().collect(Collectors.toList());
+    }
+
+    try (FileChannel channel = FileChannel.open(segmentFiles.get(1), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xff}), recordBytes - 1);
+    }
+
+    journalService = journalService(true);
+    journalService.start();
+    awaitAppliedCount(2L);
+    assertThat(savedMessages)
+        .extracting(BaseStationMessage::getTimestamp)
+        .containsExactly(NOW, NOW.plusSeconds(2));
+    assertThat(journalService.getSkippedCount()).isEqualTo(1L);
+    assertThat(journalService.getBacklogBytes()).isZero();
+    assertThat(journalService.isStalled()).isFalse();
+  }
+
+  @Test
+  void shouldSkipMessageRejectedByDatabase() throws InterruptedException {
+    final float rejectedGroundSpeed = 401.0f;
+
+    Mockito.reset(messageRepository);
+    doAnswer(
+        invocation -> {
+          for (BaseStationMessage baseStationMessage :
+              invocation.<Iterable<BaseStationMessage>>getArgument(0)) {
+            if (Float.valueOf(rejectedGroundSpeed)
+                     .equals(((TransmissionMessage) baseStationMessage).getGroundSpeed())) {
+              throw new DataIntegrityViolationException("Constraint violation");
+            }
+          }
+
+          return saveMessages(invocation);
+        })
+        .when(messageRepository)
+        .saveAll(any());
+    journalService = journalService(true);
+    journalService.start();
+
+    for (int i = 0; i < 3; i++) {
+      journalService.append(message(i));
+    }
+
+    awaitAppliedCount(2L);
+    assertThat(savedMessages)
+        .extracting(BaseStationMessage::getTimestamp)
+        .containsExactly(NOW, NOW.plusSeconds(2));
+    assertThat(journalService.getRejectedMessageCount()).isEqualTo(1L);
+    assertThat(journalService.getApplyFailureCount()).isPositive();
+    assertThat(journalService.getBacklogBytes()).isZero();
+    assertThat(journalService.isStalled()).isFalse();
+  }
+
+  @Test
+  void shouldNotSkipMessagesThatFailedWhileDatabaseWasUnavailable() throws Exception {
+    final AtomicInteger failuresRemaining = new AtomicInteger(4);
+
+    // Fail each batch attempt and the first message saved singly, as if the database came back
+    // partway through the first single-message pass
+    //
+    try (MessageJournal journal = MessageJournal.open(directory, 4096)) {
+      for (int i = 0; i < 3; i++) {
+        journal.append(MessageCodec.encode(message(i)));
+      }
+    }
+
+    Mockito.reset(messageRepository);
+    doAnswer(
+        invocation -> {
+          if (failuresRemaining.getAndDecrement() > 0) {
+            throw new TransientDataAccessResourceException("Database down");
+          }
+
+          return saveMessages(invocation);
+        })
+        .when(messageRepository)
+        .saveAll(any());
+    journalService = journalService(true);
+    journalService.start();
+    awaitAppliedCount(3L);
+    assertThat(savedMessages)
+        .extracting(BaseStationMessage::getTimestamp)
+        .containsExactly(NOW, NOW.plusSeconds(1), NOW.plusSeconds(2));
+    assertThat(journalService.getRejectedMessageCount()).isZero();
+    assertThat(journalService.getSkippedCount()).isZero();
+  }
+
+  @Test
+  void shouldReportStallWithoutSkippingWhenDatabaseIsDown() throws InterruptedException {
+    doThrow(new IllegalStateException("Database down")).when(messageRepository).saveAll(any());
+    journalService = journalService(true);
+    journalService.start();
+    journalService.append(message(0));
+    journalService.append(message(1));
+
+    for (int i = 0; i < 500 && !journalService.isStalled(); i++) {
+      Thread.sleep(10L);
+    }
+
+    assertThat(journalService.isStalled()).isTrue();
+    Thread.sleep(50L);
+    assertThat(journalService.getAppliedCount()).isZero();
+    assertThat(journalService.getRejectedMessageCount()).isZero();
+    assertThat(journalService.getAppliedOffset()).isZero();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.function.Consumer;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class MessageQueryServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private BaseStationMessageRepository messageRepository;
+  private MessageRecordWriter writer;
+  private MessageQueryService messageQueryService;
+  private MessageRecord messageRecord;
+
+  @BeforeEach
+  void setUp() {
+    messageRepository = Mockito.mock(BaseStationMessageRepository.class);
+    writer = Mockito.mock(MessageRecordWriter.class);
+    messageQueryService =
+        new MessageQueryService(
+            messageRepository, Mockito.mock(PlatformTransactionManager.class));
+    messageRecord = new MessageRecord.Builder(1L, MessageType.ID, "4840D6", NOW).build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void streamRecordAndReturn(MessageQuery query, boolean truncated) {
+    when(messageRepository.streamMessages(eq(query), any()))
+        .thenAnswer(
+            invocation -> {
+              ((Consumer<MessageRecord>) invocation.getArgument(1)).accept(messageRecord);
+
+              return truncated;
+            });
+  }
+
+  @Test
+  void shouldWriteStreamedRecords() throws IOException {
+    final MessageQuery query = new MessageQuery.Builder().limit(1).build();
+    final InOrder inOrder = Mockito.inOrder(writer);
+
+    streamRecordAndReturn(query, true);
+    messageQueryService.query(query, writer);
+    inOrder.verify(writer).start();
+    inOrder.verify(writer).write(messageRecord);
+    inOrder.verify(writer).finish(true);
+    assertThat(messageQueryService.getQueryCount()).isEqualTo(1L);
+    assertThat(messageQueryService.getMessageCount()).isEqualTo(1L);
+    assertThat(messageQueryService.getFailedQueryCount()).isZero();
+  }
+
+  @Test
+  void shouldRethrowWriterFailure() throws IOException {
+    final MessageQuery query = new MessageQuery.Builder().build();
+    final IOException failure = new IOException("Broken pipe");
+
+    streamRecordAndReturn(query, false);
+    doThrow(failure).when(writer).write(messageRecord);
+    assertThatThrownBy(() -> messageQueryService.query(query, writer)).isSameAs(failure);
+    verify(writer, Mockito.never()).finish(any(Boolean.class));
+    assertThat(messageQueryService.getFailedQueryCount()).isEqualTo(1L);
+    assertThat(messageQueryService.getMessageCount()).isZero();
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.codebrewer.dump1090processor.basestation.entity.AircraftRollup;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.repository.AircraftRollupRepository;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PositionReportRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class MessageRetentionServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final Instant CUTOFF = NOW.minus(7, ChronoUnit.DAYS);
+  private static final Instant OLD = CUTOFF.minus(1, ChronoUnit.DAYS);
+
+  private BaseStationMessageRepository messageRepository;
+  private AircraftRollupRepository rollupRepository;
+  private PositionReportRepository positionReportRepository;
+  private PerTypeMessageRepository perTypeMessageRepository;
+  private PlatformTransactionManager transactionManager;
+
+  private static BaseStationMessage message(
+      long id, String icaoAddress, Instant timestamp, float altitude) {
+    final TransmissionMessage message = Mockito.mock(TransmissionMessage.class);
+
+    when(message.getId()).thenReturn(id);
+    when(message.getIcaoAddress()).thenReturn(icaoAddress);
+    when(message.getTimestamp()).thenReturn(timestamp);
+    when(message.getAltitude()).thenReturn(altitude);
+
+    return message;
+  }
+
+  private MessageRetentionService newService(boolean enabled, int chunkSize) {
+    return newService(false, enabled, chunkSize);
+  }
+
+  private MessageRetentionService newService(
+      boolean perTypeSchema, boolean enabled, int chunkSize) {
+    return new MessageRetentionService(
+        messageRepository,
+        rollupRepository,
+        positionReportRepository,
+        perTypeMessageRepository,
+        transactionManager,
+        perTypeSchema,
+        enabled,
+        7L,
+        chunkSize,
+        Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @BeforeEach
+  void setUp() {
+    messageRepository = Mockito.mock(BaseStationMessageRepository.class);
+    rollupRepository = Mockito.mock(AircraftRollupRepository.class);
+    positionReportRepository = Mockito.mock(PositionReportRepository.class);
+    perTypeMessageRepository = Mockito.mock(PerTypeMessageRepository.class);
+    transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    when(rollupRepository.findByIcaoAddressAndPeriodStart(anyString(), any()))
+        .thenReturn(Optional.empty());
+    when(messageRepository.deleteByIds(anyCollection()))
+        .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+  }
+
+  @Test
+  void shouldRejectNonPositiveChunkSize() {
+    assertThatThrownBy(() -> newService(true, 0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldNotRunScheduledJobWhenDisabled() {
+    newService(false, 10).scheduledRun();
+
+    verifyNoInteractions(
+        messageRepository,
+        rollupRepository,
+        positionReportRepository,
+        perTypeMessageRepository,
+        transactionManager);
+  }
+
+  @Test
+  void shouldRollUpAndPurgeInChunks() {
+    final List<BaseStationMessage> firstChunk =
+        Arrays.asList(
+            message(1L, "4840D6", OLD.plusSeconds(1), 1000.0f),
+            message(2L, "4840D6", OLD.plusSeconds(30), 2000.0f));
+    final List<BaseStationMessage> secondChunk =
+        Collections.singletonList(message(3L, "4840D6", OLD.plusSeconds(61), 5000.0f));
+
+    when(messageRepository.findByTimestampBefore(eq(CUTOFF), any(Pageable.class)))
+        .thenReturn(firstChunk, secondChunk);
+
+    final MessageRetentionService retentionService = newService(true, 2);
+
+    assertThat(retentionService.run()).isEqualTo(3L);
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<Iterable<AircraftRollup>> rollups =
+        ArgumentCaptor.forClass(Iterable.class);
+
+    verify(rollupRepository, Mockito.times(2)).saveAll(rollups.capture());
+    verify(transactionManager, Mockito.times(2)).commit(any());
+
+    final List<AircraftRollup> written = new ArrayList<>();
+
+    rollups.getAllValues().forEach(chunk -> chunk.forEach(written::add));
+    assertThat(written).hasSize(2);
+    assertThat(written.get(0).getPeriodStart()).isEqualTo(OLD);
+    assertThat(written.get(0).getMessageCount()).isEqualTo(2L);
+    assertThat(written.get(0).getAverageAltitude()).isCloseTo(1500.0f, within(1e-3f));
+    assertThat(written.get(1).getPeriodStart()).isEqualTo(OLD.plusSeconds(60));
+    assertThat(retentionService.getLastRunMessagesPurged()).isEqualTo(3L);
+    assertThat(retentionService.getLastRunRollupsWritten()).isEqualTo(2L);
+    assertThat(retentionService.getLastRunChunkCount()).isEqualTo(2L);
+    assertThat(retentionService.getRunCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldAddToExistingRollup() {
+    final AircraftRollup existing = new AircraftRollup("4840D6", OLD);
+    final BaseStationMessage message = message(2L, "4840D6", OLD.plusSeconds(5), 3000.0f);
+
+    existing.add(message(1L, "4840D6", OLD, 1000.0f));
+    when(rollupRepository.findByIcaoAddressAndPeriodStart("4840D6", OLD))
+        .thenReturn(Optional.of(existing));
+    when(messageRepository.findByTimestampBefore(eq(CUTOFF), any(Pageable.class)))
+        .thenReturn(Collections.singletonList(message));
+
+    newService(true, 10).run();
+
+    assertThat(existing.getMessageCount()).isEqualTo(2L);
+    assertThat(existing.getAverageAltitude()).isCloseTo(2000.0f, within(1e-3f));
+  }
+
+  @Test
+  void shouldNotDeleteWhenNothingToPurge() {
+    when(messageRepository.findByTimestampBefore(eq(CUTOFF), any(Pageable.class)))
+        .thenReturn(Collections.emptyList());
+
+    assertThat(newService(true, 10).run()).isZero();
+    verify(messageRepository, never()).deleteByIds(anyCollection());
+  }
+
+  @Test
+  void shouldPurgePositionReportsInChunks() {
+    when(messageRepository.findByTimestampBefore(eq(CUTOFF), any(Pageable.class)))
+        .thenReturn(Collections.emptyList());
+    when(positionReportRepository.deleteOldest(anyLong(), anyInt())).thenReturn(10, 10, 3);
+
+    final MessageRetentionService retentionService = newService(true, 10);
+
+    assertThat(retentionService.run()).isZero();
+    verify(positionReportRepository, Mockito.times(3)).deleteOldest(CUTOFF.toEpochMilli(), 10);
+    assertThat(retentionService.getLastRunPositionReportsPurged()).isEqualTo(23L);
+    assertThat(retentionService.getTotalPositionReportsPurged()).isEqualTo(23L);
+    assertThat(retentionService.getLastRunChunkCount()).isEqualTo(3L);
+  }
+
+  @Test
+  void shouldPurgePerTypeMessagesInChunksUnderPerTypeSchema() {
+    when(messageRepository.findByTimestampBefore(eq(CUTOFF), any(Pageable.class)))
+        .thenReturn(Collections.emptyList());
+    when(perTypeMessageRepository.deleteBefore(any(), anyInt())).thenReturn(10, 4);
+
+    final MessageRetentionService retentionService = newService(true, true, 10);
+
+    retentionService.run();
+    verify(perTypeMessageRepository, Mockito.times(2)).deleteBefore(CUTOFF, 10);
+    assertThat(retentionService.getLastRunPerTypeMessagesPurged()).isEqualTo(14L);
+    assertThat(retentionService.getTotalPerTypeMessagesPurged()).isEqualTo(14L);
+    assertThat(retentionService.getLastRunChunkCount()).isEqualTo(2L);
+  }
+
+  @Test
+  void shouldNotPurgePerTypeMessagesUnderSingleTableSchema() {
+    when(messageRepository.findByTimestampBefore(eq(CUTOFF), any(Pageable.class)))
+        .thenReturn(Collections.emptyList());
+
+    newService(true, 10).run();
+    verifyNoInteractions(perTypeMessageRepository);
+  }
+}
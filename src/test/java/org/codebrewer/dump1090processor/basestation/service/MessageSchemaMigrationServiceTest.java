@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.entity.MigrationProgress;
+import org.codebrewer.dump1090processor.basestation.query.MessageRecord;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.MigrationProgressRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class MessageSchemaMigrationServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private BaseStationMessageRepository messageRepository;
+  private PerTypeMessageRepository perTypeMessageRepository;
+  private MigrationProgressRepository progressRepository;
+  private Map<String, MigrationProgress> progress;
+  private MessageSchemaMigrationService migrationService;
+  private List<MessageRecord> messageRecords;
+  private List<Long> queriedAfterIds;
+  private List<MessageRecord> savedRecords;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    messageRepository = Mockito.mock(BaseStationMessageRepository.class);
+    perTypeMessageRepository = Mockito.mock(PerTypeMessageRepository.class);
+    progressRepository = Mockito.mock(MigrationProgressRepository.class);
+    progress = new HashMap<>();
+    migrationService = migrationService();
+    messageRecords = new ArrayList<>();
+    queriedAfterIds = new ArrayList<>();
+    savedRecords = new ArrayList<>();
+
+    // Mimics the paging by identifier of the repository over the records held by the test, which
+    // are held in order of identifier
+    //
+    when(messageRepository.streamMessagesAfterId(anyLong(), anyInt(), any()))
+        .thenAnswer(
+            invocation -> {
+              final long afterId = invocation.getArgument(0);
+              final int limit = invocation.getArgument(1);
+              final Consumer<MessageRecord> consumer = invocation.getArgument(2);
+              int count = 0;
+
+              queriedAfterIds.add(afterId);
+
+              for (MessageRecord messageRecord : messageRecords) {
+                if (messageRecord.getId() > afterId) {
+                  if (count == limit) {
+                    return true;
+                  }
+
+                  consumer.accept(messageRecord);
+                  count++;
+                }
+              }
+
+              return false;
+            });
+    when(perTypeMessageRepository.saveAll(any()))
+        .thenAnswer(
+            invocation -> {
+              final Collection<MessageRecord> chunk = invocation.getArgument(0);
+
+              savedRecords.addAll(chunk);
+
+              return chunk.size();
+            });
+    when(progressRepository.findById(any()))
+        .thenAnswer(invocation -> Optional.ofNullable(progress.get(invocation.getArgument(0))));
+    when(progressRepository.save(any()))
+        .thenAnswer(
+            invocation -> {
+              final MigrationProgress migrationProgress = invocation.getArgument(0);
+
+              progress.put(migrationProgress.getName(), migrationProgress);
+
+              return migrationProgress;
+            });
+  }
+
+  private MessageSchemaMigrationService migrationService() {
+    return new MessageSchemaMigrationService(
+        messageRepository,
+        perTypeMessageRepository,
+        progressRepository,
+        Mockito.mock(PlatformTransactionManager.class),
+        2);
+  }
+
+  private void addRecords(int count) {
+    for (int i = 0; i < count; i++) {
+      final long id = messageRecords.size() + 1;
+
+      messageRecords.add(
+          new MessageRecord.Builder(id, MessageType.ID, "4840D6", NOW.plusSeconds(id)).build());
+    }
+  }
+
+  @Test
+  void shouldRejectNonPositiveChunkSize() {
+    assertThatThrownBy(
+        () ->
+            new MessageSchemaMigrationService(
+                messageRepository,
+                perTypeMessageRepository,
+                progressRepository,
+                Mockito.mock(PlatformTransactionManager.class),
+                0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRefuseFirstMigrationIfPerTypeTablesHoldMessages() {
+    when(perTypeMessageRepository.count()).thenReturn(1L);
+    assertThatThrownBy(() -> migrationService.migrate()).isInstanceOf(IllegalStateException.class);
+    verifyNoInteractions(messageRepository);
+  }
+
+  @Test
+  void shouldMigrateAllMessagesInChunks() {
+    addRecords(5);
+    assertThat(migrationService.migrate()).isEqualTo(5L);
+    assertThat(savedRecords).containsExactlyElementsOf(messageRecords);
+    assertThat(queriedAfterIds).containsExactly(0L, 2L, 4L);
+    assertThat(migrationService.getMigratedCount()).isEqualTo(5L);
+    assertThat(migrationService.getLastMigratedTimestamp())
+        .isEqualTo(NOW.plusSeconds(5L).toString());
+    assertThat(migrationService.getLastMigratedId()).isEqualTo(5L);
+  }
+
+  @Test
+  void shouldResumeFromLastMigratedMessage() {
+    addRecords(3);
+    migrationService.migrate();
+    addRecords(2);
+
+    // The per-type tables now hold messages, but only a first migration checks
+    //
+    when(perTypeMessageRepository.count()).thenReturn(3L);
+    assertThat(migrationService.migrate()).isEqualTo(2L);
+    assertThat(savedRecords).containsExactlyElementsOf(messageRecords);
+    assertThat(migrationService.getMigratedCount()).isEqualTo(5L);
+  }
+
+  @Test
+  void shouldMigrateMessagesSavedLateWithEarlierTimestamps() {
+    addRecords(3);
+    migrationService.migrate();
+
+    // Saved after the first migration, as a held save or an imported log might be, but with a
+    // timestamp before that of the last message copied
+    //
+    messageRecords.add(new MessageRecord.Builder(4L, MessageType.ID, "4840D6", NOW).build());
+    assertThat(migrationService.migrate()).isEqualTo(1L);
+    assertThat(savedRecords).containsExactlyElementsOf(messageRecords);
+    assertThat(migrationService.getLastMigratedId()).isEqualTo(4L);
+  }
+
+  @Test
+  void shouldResumeFromSavedProgressAfterRestart() {
+    addRecords(3);
+    migrationService.migrate();
+    assertThat(progress.get(MessageSchemaMigrationService.PROGRESS_NAME).getLastMigratedId())
+        .isEqualTo(3L);
+    addRecords(2);
+
+    // A new instance, as after a restart, with live messages in the per-type tables
+    //
+    migrationService = migrationService();
+    when(perTypeMessageRepository.count()).thenReturn(10L);
+    assertThat(migrationService.migrate()).isEqualTo(2L);
+    assertThat(savedRecords).containsExactlyElementsOf(messageRecords);
+    assertThat(queriedAfterIds.get(queriedAfterIds.size() - 1)).isEqualTo(3L);
+    assertThat(migrationService.getLastMigratedTimestamp())
+        .isEqualTo(NOW.plusSeconds(5L).toString());
+  }
+
+  @Test
+  void shouldMigrateNothingFromEmptyTable() {
+    assertThat(migrationService.migrate()).isZero();
+    assertThat(migrationService.getLastMigratedTimestamp()).isNull();
+    verify(perTypeMessageRepository).saveAll(any());
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.statistics.AircraftMessageRate;
+import org.codebrewer.dump1090processor.basestation.statistics.WindowStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MessageStatisticsServiceTest {
+  private static final Instant START = Instant.parse("2021-01-30T12:00:00Z");
+
+  private MutableClock clock;
+  private MessageStatisticsService statisticsService;
+
+  private static BaseStationMessage velocity(String icaoAddress, float groundSpeed) {
+    return new TransmissionMessage.Builder(icaoAddress, START)
+        .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+        .groundSpeed(groundSpeed)
+        .build();
+  }
+
+  private static BaseStationMessage altitude(String icaoAddress, float altitude) {
+    return new TransmissionMessage.Builder(icaoAddress, START)
+        .transmissionType(TransmissionType.SURVEILLANCE_ALTITUDE)
+        .altitude(altitude)
+        .build();
+  }
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(START);
+    statisticsService = new MessageStatisticsService(clock);
+  }
+
+  @Test
+  void shouldRejectOutOfRangeWindow() {
+    assertThatThrownBy(() -> statisticsService.getWindowStatistics(0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> statisticsService.getWindowStatistics(16))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRecordTimeOfFirstMessage() {
+    assertThat(statisticsService.getFirstMessageUptimeMillis()).isEqualTo(-1L);
+
+    statisticsService.record(velocity("4840D6", 160.0f));
+
+    final long firstMessageUptimeMillis = statisticsService.getFirstMessageUptimeMillis();
+
+    assertThat(firstMessageUptimeMillis).isPositive();
+
+    statisticsService.record(velocity("4840D6", 160.0f));
+
+    assertThat(statisticsService.getFirstMessageUptimeMillis()).isEqualTo(firstMessageUptimeMillis);
+  }
+
+  @Test
+  void shouldReportGlobalStatistics() {
+    statisticsService.record(velocity("4840D6", 160.0f));
+    statisticsService.record(velocity("40621D", 460.0f));
+    statisticsService.record(altitude("4840D6", 38000.0f));
+    statisticsService.record(new IdMessage.Builder("4840D6", START).build());
+    clock.advance(Duration.ofSeconds(2));
+
+    final WindowStatistics statistics = statisticsService.getWindowStatistics(1);
+
+    assertThat(statistics.getWindowMinutes()).isEqualTo(1);
+    assertThat(statistics.getMessageRate()).isCloseTo(2.0, within(1e-9));
+    assertThat(statistics.getDistinctAircraft()).isEqualTo(2L);
+    assertThat(statistics.getTransmissionTypeRates().get(TransmissionType.AIRBORNE_VELOCITY))
+        .isCloseTo(1.0, within(1e-9));
+    assertThat(statistics.getTransmissionTypeRates().get(TransmissionType.AIRBORNE_POSITION))
+        .isZero();
+    assertThat(statistics.getAltitudeHistogram().getCounts()[38]).isEqualTo(1L);
+    assertThat(statistics.getGroundSpeedHistogram().getCounts()[6]).isEqualTo(1L);
+    assertThat(statistics.getGroundSpeedHistogram().getCounts()[18]).isEqualTo(1L);
+    assertThat(statisticsService.getMessageRateOneMinute()).isCloseTo(2.0, within(1e-9));
+    assertThat(statisticsService.getDistinctAircraftFifteenMinutes()).isEqualTo(2L);
+    assertThat(statisticsService.getTransmissionTypeRate("SURVEILLANCE_ALTITUDE", 5))
+        .isCloseTo(0.5, within(1e-9));
+  }
+
+  @Test
+  void shouldDropMessagesOutsideWindow() {
+    statisticsService.record(velocity("4840D6", 160.0f));
+    clock.advance(Duration.ofMinutes(3));
+    statisticsService.record(velocity("40621D", 460.0f));
+
+    assertThat(statisticsService.getWindowStatistics(1).getDistinctAircraft()).isEqualTo(1L);
+    assertThat(statisticsService.getWindowStatistics(5).getDistinctAircraft()).isEqualTo(2L);
+  }
+
+  @Test
+  void shouldReportAircraftMessageRatesInDescendingOrder() {
+    for (int i = 0; i < 3; i++) {
+      statisticsService.record(velocity("4840D6", 160.0f));
+    }
+
+    statisticsService.record(velocity("40621D", 460.0f));
+    clock.advance(Duration.ofSeconds(1));
+
+    final List<AircraftMessageRate> rates = statisticsService.getAircraftMessageRates(1, 10);
+
+    assertThat(rates).extracting(AircraftMessageRate::getIcaoAddress)
+                     .containsExactly("4840D6", "40621D");
+    assertThat(rates.get(0).getMessageRate()).isCloseTo(3.0, within(1e-9));
+    assertThat(statisticsService.getAircraftMessageRates(1, 1)).hasSize(1);
+    assertThat(statisticsService.getAircraftMessageRate("4840d6", 1)).isCloseTo(3.0, within(1e-9));
+    assertThat(statisticsService.getAircraftMessageRate("ABCDEF", 1)).isZero();
+  }
+
+  @Test
+  void shouldCountAircraftMessagesRegardlessOfAddressCase() {
+    statisticsService.record(velocity("4840d6", 160.0f));
+    statisticsService.record(velocity("4840D6", 160.0f));
+    clock.advance(Duration.ofSeconds(1));
+
+    assertThat(statisticsService.getAircraftMessageRates(1, 10))
+        .extracting(AircraftMessageRate::getIcaoAddress)
+        .containsExactly("4840D6");
+    assertThat(statisticsService.getAircraftMessageRate("4840d6", 1)).isCloseTo(2.0, within(1e-9));
+    assertThat(statisticsService.getAircraftMessageRate("4840D6", 1)).isCloseTo(2.0, within(1e-9));
+  }
+
+  @Test
+  void shouldEvictIdleAircraft() {
+    statisticsService.record(velocity("4840D6", 160.0f));
+    clock.advance(Duration.ofMinutes(10));
+    statisticsService.record(velocity("40621D", 460.0f));
+    assertThat(statisticsService.getTrackedAircraftCount()).isEqualTo(2);
+    clock.advance(Duration.ofMinutes(6));
+    statisticsService.record(velocity("40621D", 460.0f));
+    assertThat(statisticsService.getTrackedAircraftCount()).isEqualTo(1);
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.modes.HexFrameDecoder;
+import org.codebrewer.dump1090processor.modes.ModeSCrc;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ModeSFrameDecodingServiceTest {
+  private static final Instant TIMESTAMP = Instant.parse("2021-01-30T12:00:00Z");
+
+  private ModeSFrameDecodingService decodingService;
+
+  private static byte[] frame(String text) {
+    final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+    final byte[] frame = new byte[HexFrameDecoder.MAX_FRAME_LENGTH];
+
+    HexFrameDecoder.decode(bytes, 0, bytes.length, frame);
+
+    return frame;
+  }
+
+  // Creates a short surveillance reply whose parity field is overlaid with the given address
+  //
+  private static byte[] surveillanceReply(int downlinkFormat, int code13, int address) {
+    final byte[] frame = new byte[HexFrameDecoder.MAX_FRAME_LENGTH];
+
+    frame[0] = (byte) (downlinkFormat << 3);
+    frame[2] = (byte) (code13 >>> 8);
+    frame[3] = (byte) code13;
+
+    final int parity = ModeSCrc.checksum(frame, 0, 4) ^ address;
+
+    frame[4] = (byte) (parity >>> 16);
+    frame[5] = (byte) (parity >>> 8);
+    frame[6] = (byte) parity;
+
+    return frame;
+  }
+
+  private TransmissionMessage decode(byte[] frame, int length, Instant timestamp) {
+    final BaseStationMessage message = decodingService.decodeFrame(frame, length, timestamp);
+
+    assertThat(message).isInstanceOf(TransmissionMessage.class);
+
+    return (TransmissionMessage) message;
+  }
+
+  @BeforeEach
+  void setUp() {
+    decodingService = new ModeSFrameDecodingService();
+  }
+
+  @Test
+  void shouldDecodeIdentification() {
+    final TransmissionMessage message =
+        decode(frame("*8D4840D6202CC371C32CE0576098;"), 14, TIMESTAMP);
+
+    assertThat(message.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(message.getTimestamp()).isEqualTo(TIMESTAMP);
+    assertThat(message.getTransmissionType())
+        .isEqualTo(TransmissionType.IDENTIFICATION_AND_CATEGORY);
+    assertThat(message.getCallSign()).isEqualTo("KLM1023");
+    assertThat(decodingService.getDecodedFrameCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldDecodeAirbornePositionFromEvenAndOddPair() {
+    final TransmissionMessage oddMessage =
+        decode(frame("*8D40621D58C386435CC412692AD6;"), 14, TIMESTAMP);
+
+    assertThat(oddMessage.getTransmissionType()).isEqualTo(TransmissionType.AIRBORNE_POSITION);
+    assertThat(oddMessage.getAltitude()).isEqualTo(38000.0f);
+    assertThat(oddMessage.getPosition()).isNull();
+
+    final TransmissionMessage evenMessage =
+        decode(frame("*8D40621D58C382D690C8AC2863A7;"), 14, TIMESTAMP.plusSeconds(2));
+
+    assertThat(evenMessage.getIcaoAddress()).isEqualTo("40621D");
+    assertThat(evenMessage.getAltitude()).isEqualTo(38000.0f);
+    assertThat(evenMessage.getOnGround()).isFalse();
+    assertThat(evenMessage.getPosition()).isNotNull();
+    assertThat(evenMessage.getPosition().getPosition().getLat()).isCloseTo(52.2572, within(1e-4));
+    assertThat(evenMessage.getPosition().getPosition().getLon()).isCloseTo(3.91937, within(1e-4));
+  }
+
+  @Test
+  void shouldNotDecodeAirbornePositionFromStalePair() {
+    decode(frame("*8D40621D58C386435CC412692AD6;"), 14, TIMESTAMP);
+
+    final TransmissionMessage evenMessage =
+        decode(frame("*8D40621D58C382D690C8AC2863A7;"), 14, TIMESTAMP.plusSeconds(30));
+
+    assertThat(evenMessage.getPosition()).isNull();
+  }
+
+  @Test
+  void shouldDecodeAirborneVelocity() {
+    final TransmissionMessage message =
+        decode(frame("*8D485020994409940838175B284F;"), 14, TIMESTAMP);
+
+    assertThat(message.getTransmissionType()).isEqualTo(TransmissionType.AIRBORNE_VELOCITY);
+    assertThat(message.getGroundSpeed()).isCloseTo(159.2f, within(0.1f));
+    assertThat(message.getTrack()).isCloseTo(182.88f, within(0.01f));
+    assertThat(message.getVerticalRate()).isEqualTo((short) -832);
+  }
+
+  @Test
+  void shouldDecodeAllCallReply() {
+    final TransmissionMessage message = decode(frame("*5D4840D6F8740F;"), 7, TIMESTAMP);
+
+    assertThat(message.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(message.getTransmissionType()).isEqualTo(TransmissionType.ALL_CALL_REPLY);
+    assertThat(message.getOnGround()).isFalse();
+  }
+
+  @Test
+  void shouldRejectFrameWithFailedCrc() {
+    assertThat(decodingService.decodeFrame(frame("*8D4840D6202CC371C32CE0576099;"), 14, TIMESTAMP))
+        .isNull();
+    assertThat(decodingService.getCrcFailureCount()).isEqualTo(1L);
+    assertThat(decodingService.getDecodedFrameCount()).isZero();
+  }
+
+  @Test
+  void shouldRejectFrameWithUnexpectedLength() {
+    assertThat(decodingService.decodeFrame(frame("*8D4840D6F8740F;"), 7, TIMESTAMP)).isNull();
+    assertThat(decodingService.getUnsupportedFrameCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldRejectSurveillanceReplyFromUnknownAddress() {
+    final byte[] frame = surveillanceReply(5, 0x0AAA, 0x4840D6);
+
+    assertThat(decodingService.decodeFrame(frame, 7, TIMESTAMP)).isNull();
+    assertThat(decodingService.getUnknownAddressCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldDecodeSurveillanceIdentityReplyFromKnownAddress() {
+    decode(frame("*5D4840D6F8740F;"), 7, TIMESTAMP);
+
+    // An ID field of 0x0AAA sets the A1, A2, A4, B1, B2 and B4 bits, so encodes squawk 7700
+    //
+    final TransmissionMessage message =
+        decode(surveillanceReply(5, 0x0AAA, 0x4840D6), 7, TIMESTAMP.plusSeconds(1));
+
+    assertThat(message.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(message.getTransmissionType()).isEqualTo(TransmissionType.SURVEILLANCE_ID);
+    assertThat(message.getSquawk()).isEqualTo((short) 7700);
+    assertThat(message.getEmergency()).isTrue();
+    assertThat(message.getOnGround()).isFalse();
+  }
+
+  @Test
+  void shouldDecodeSurveillanceAltitudeReplyFromKnownAddress() {
+    decode(frame("*5D4840D6F8740F;"), 7, TIMESTAMP);
+
+    // 25ft-resolution altitude code for 38000 ft: n = 1560 = 0x618, Q bit set
+    //
+    final int n = (38000 + 1000) / 25;
+    final int ac13 = (n & 0x7E0) << 2 | (n & 0x010) << 1 | n & 0x00F | 0x0010;
+    final TransmissionMessage message =
+        decode(surveillanceReply(4, ac13, 0x4840D6), 7, TIMESTAMP.plusSeconds(1));
+
+    assertThat(message.getTransmissionType()).isEqualTo(TransmissionType.SURVEILLANCE_ALTITUDE);
+    assertThat(message.getAltitude()).isEqualTo(38000.0f);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.state.OnHeapAircraftStateStore;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PositionExtrapolationServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final Clock CLOCK = Clock.fixed(NOW, ZoneOffset.UTC);
+
+  private AircraftStateService aircraftStateService;
+  private PositionExtrapolationService positionExtrapolationService;
+
+  @BeforeEach
+  void setUp() {
+    aircraftStateService = new AircraftStateService(new OnHeapAircraftStateStore(), 300L, CLOCK);
+    positionExtrapolationService =
+        new PositionExtrapolationService(aircraftStateService, 10.0, CLOCK);
+  }
+
+  @Test
+  void shouldRejectNegativeExtrapolationTime() {
+    assertThatThrownBy(() -> new PositionExtrapolationService(aircraftStateService, -1.0, CLOCK))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldPredictPositionsFromSeparatePositionAndVelocityMessages() {
+    aircraftStateService.update(
+        new TransmissionMessage.Builder("4840D6", NOW.minusSeconds(4L))
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(35000.0f)
+            .position(new Point<>(new G2D(0.0, 52.0), CoordinateReferenceSystems.WGS84))
+            .build());
+    aircraftStateService.update(
+        new TransmissionMessage.Builder("4840D6", NOW.minusSeconds(3L))
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .groundSpeed(360.0f)
+            .track(0.0f)
+            .verticalRate((short) 600)
+            .build());
+    aircraftStateService.update(
+        new TransmissionMessage.Builder("406A3D", NOW)
+            .transmissionType(TransmissionType.AIR_TO_AIR)
+            .altitude(1000.0f)
+            .build());
+
+    final List<PredictedPosition> predictions = positionExtrapolationService.predict(null);
+
+    assertThat(predictions).hasSize(1);
+
+    final PredictedPosition prediction = predictions.get(0);
+
+    assertThat(prediction.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(prediction.getTimestamp()).isEqualTo(NOW);
+    assertThat(prediction.getLatitude()).isCloseTo(52.0 + 4.0 / 600.0, within(1e-6));
+    assertThat(prediction.getLongitude()).isCloseTo(0.0, within(1e-6));
+    assertThat(prediction.getAltitude()).isCloseTo(35040.0f, within(1e-3f));
+    assertThat(prediction.getGroundSpeed()).isEqualTo(360.0f);
+    assertThat(prediction.getPositionTimestamp()).isEqualTo(NOW.minusSeconds(4L));
+    assertThat(prediction.getAge()).isEqualTo(4.0f);
+    assertThat(positionExtrapolationService.getRequestCount()).isEqualTo(1L);
+    assertThat(positionExtrapolationService.getPredictionCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldPredictPositionsAtGivenTime() {
+    aircraftStateService.update(
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .position(new Point<>(new G2D(0.0, 52.0), CoordinateReferenceSystems.WGS84))
+            .build());
+
+    final PredictedPosition prediction =
+        positionExtrapolationService.predict(NOW.plusMillis(100L)).get(0);
+
+    assertThat(prediction.getTimestamp()).isEqualTo(NOW.plusMillis(100L));
+    assertThat(prediction.getAge()).isCloseTo(0.1f, within(1e-6f));
+    assertThat(prediction.getAltitude()).isNull();
+    assertThat(prediction.getGroundSpeed()).isNull();
+    assertThat(prediction.getTrack()).isNull();
+    assertThat(prediction.getVerticalRate()).isNull();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.zip.GZIPInputStream;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceFrame;
+import org.codebrewer.dump1090processor.basestation.state.OnHeapAircraftStateStore;
+import org.codebrewer.dump1090processor.basestation.state.PositionSnapshot;
+import org.codebrewer.dump1090processor.basestation.wire.PositionFrameCodec;
+import org.codebrewer.dump1090processor.basestation.wire.WireReader;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PositionSnapshotServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+  private static final Clock CLOCK = Clock.fixed(NOW, ZoneOffset.UTC);
+
+  private final ObjectMapper objectMapper =
+      new ObjectMapper()
+          .registerModule(new JavaTimeModule())
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  private AircraftStateService aircraftStateService;
+  private PositionExtrapolationService positionExtrapolationService;
+
+  private static byte[] gunzip(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+
+    try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      int count;
+
+      while ((count = inputStream.read(buffer)) != -1) {
+        decompressed.write(buffer, 0, count);
+      }
+    }
+
+    return decompressed.toByteArray();
+  }
+
+  private void report(String icaoAddress, double latitude) {
+    aircraftStateService.update(
+        new TransmissionMessage.Builder(icaoAddress, NOW.minusSeconds(2L))
+            .transmissionType(TransmissionType.AIRBORNE_POSITION)
+            .altitude(35000.0f)
+            .position(new Point<>(new G2D(0.0, latitude), CoordinateReferenceSystems.WGS84))
+            .build());
+  }
+
+  private PositionSnapshotService newService(boolean enabled) {
+    return new PositionSnapshotService(positionExtrapolationService, objectMapper, enabled, CLOCK);
+  }
+
+  @BeforeEach
+  void setUp() {
+    aircraftStateService = new AircraftStateService(new OnHeapAircraftStateStore(), 300L, CLOCK);
+    positionExtrapolationService =
+        new PositionExtrapolationService(aircraftStateService, 10.0, CLOCK);
+  }
+
+  @Test
+  void shouldSerialiseEveryRepresentationOnce() throws IOException {
+    report("4840D6", 52.0);
+    report("406A3D", 51.0);
+
+    final PositionSnapshotService snapshotService = newService(true);
+    final PositionSnapshot snapshot = snapshotService.publish();
+
+    assertThat(snapshot.getSequence()).isEqualTo(1L);
+    assertThat(snapshot.getTimestamp()).isEqualTo(NOW);
+    assertThat(snapshot.getAircraftCount()).isEqualTo(2);
+    assertThat(snapshot.getBody(false, false))
+        .isEqualTo(objectMapper.writeValueAsBytes(positionExtrapolationService.predict(NOW)));
+    assertThat(gunzip(snapshot.getBody(false, true))).isEqualTo(snapshot.getBody(false, false));
+    assertThat(gunzip(snapshot.getBody(true, true))).isEqualTo(snapshot.getBody(true, false));
+
+    final AirspaceFrame frame =
+        PositionFrameCodec.decode(new WireReader(snapshot.getBody(true, false)));
+
+    assertThat(frame.getTimestamp()).isEqualTo(NOW);
+    assertThat(frame.getAircraft()).hasSize(2);
+    assertThat(snapshotService.getSnapshot()).isSameAs(snapshot);
+    assertThat(snapshotService.getSnapshotBytes())
+        .isEqualTo(snapshot.getBody(false, false).length);
+  }
+
+  @Test
+  void shouldGiveEachRepresentationItsOwnEntityTag() throws IOException {
+    final PositionSnapshot snapshot = newService(true).publish();
+
+    assertThat(snapshot.getEntityTag(false, false))
+        .startsWith("\"")
+        .endsWith("-1-j\"");
+    assertThat(snapshot.getEntityTag(false, true)).endsWith("-1-jz\"");
+    assertThat(snapshot.getEntityTag(true, false)).endsWith("-1-b\"");
+    assertThat(snapshot.getEntityTag(true, true)).endsWith("-1-bz\"");
+  }
+
+  @Test
+  void shouldKeepSnapshotWhileNoAircraftHasPosition() throws IOException {
+    final PositionSnapshotService snapshotService = newService(true);
+    final PositionSnapshot first = snapshotService.publish();
+
+    assertThat(snapshotService.publish()).isSameAs(first);
+
+    report("4840D6", 52.0);
+
+    final PositionSnapshot second = snapshotService.publish();
+
+    assertThat(second.getSequence()).isEqualTo(2L);
+    assertThat(second.getEntityTag(false, false)).isNotEqualTo(first.getEntityTag(false, false));
+    assertThat(snapshotService.getTickCount()).isEqualTo(3L);
+    assertThat(snapshotService.getPublishedCount()).isEqualTo(2L);
+    assertThat(snapshotService.getUnchangedCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldPublishOnEveryTickWhileAircraftHavePositions() throws IOException {
+    final PositionSnapshotService snapshotService = newService(true);
+
+    report("4840D6", 52.0);
+
+    final PositionSnapshot first = snapshotService.publish();
+    final PositionSnapshot second = snapshotService.publish();
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.getSequence()).isEqualTo(2L);
+    assertThat(snapshotService.getUnchangedCount()).isZero();
+  }
+
+  @Test
+  void shouldNotPublishWhenDisabled() {
+    final PositionSnapshotService snapshotService = newService(false);
+
+    snapshotService.scheduledRun();
+
+    assertThat(snapshotService.getSnapshot()).isNull();
+    assertThat(snapshotService.getTickCount()).isZero();
+  }
+}
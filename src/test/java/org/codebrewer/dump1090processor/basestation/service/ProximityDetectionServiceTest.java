@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.List;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.proximity.ProximityEvent;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+
+class ProximityDetectionServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  // One nautical mile in degrees of latitude
+  //
+  private static final double NM = 1.0 / 60.0;
+
+  // The latitude of an aircraft that was a distance north of 52 degrees and has since flown north
+  // at 400 knots for a number of seconds
+  //
+  private static double north(double distance, long seconds) {
+    return 52.0 + (distance + seconds * 400.0 / 3600.0) * NM;
+  }
+
+  private static ProximityDetectionService service(boolean enabled, int retainedEventCount) {
+    return new ProximityDetectionService(
+        enabled, 3.0, 1000.0, 60L, 1000.0, 15L, 120L, retainedEventCount);
+  }
+
+  private static ProximityDetectionService service() {
+    return service(true, 100);
+  }
+
+  private static TransmissionMessage position(
+      String icaoAddress, long seconds, double latitude, float altitude) {
+    return new TransmissionMessage.Builder(icaoAddress, NOW.plusSeconds(seconds))
+        .transmissionType(TransmissionType.AIRBORNE_POSITION)
+        .altitude(altitude)
+        .position(new Point<>(new G2D(0.0, latitude), CoordinateReferenceSystems.WGS84))
+        .onGround(false)
+        .build();
+  }
+
+  private static TransmissionMessage velocity(
+      String icaoAddress, long seconds, float groundSpeed, float track) {
+    return new TransmissionMessage.Builder(icaoAddress, NOW.plusSeconds(seconds))
+        .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+        .groundSpeed(groundSpeed)
+        .track(track)
+        .verticalRate((short) 0)
+        .build();
+  }
+
+  @Test
+  void shouldRejectInvalidLimits() {
+    assertThatThrownBy(
+        () -> new ProximityDetectionService(true, 3.0, 1000.0, 60L, 1000.0, 15L, -1L, 100))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+        () -> new ProximityDetectionService(true, -3.0, 1000.0, 60L, 1000.0, 15L, 120L, 100))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldIgnoreMessagesWhenDisabled() {
+    final ProximityDetectionService service = service(false, 100);
+
+    service.update(position("4840D6", 0L, 52.0, 35000.0f));
+
+    assertThat(service.update(position("406A3D", 0L, 52.0 + NM, 35000.0f))).isEmpty();
+    assertThat(service.getAircraftCount()).isZero();
+    assertThat(service.getPositionUpdateCount()).isZero();
+  }
+
+  @Test
+  void shouldRaiseEventForLossOfSeparation() {
+    final ProximityDetectionService service = service();
+
+    service.update(new IdMessage.Builder("4840D6", NOW).callSign("KLM1234").build());
+    assertThat(service.update(position("4840D6", 0L, 52.0, 35000.0f))).isEmpty();
+
+    final List<ProximityEvent> events = service.update(position("406A3D", 0L, 52.0 + NM, 35000.0f));
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).isLossOfSeparation()).isTrue();
+    assertThat(service.getRecentEvents()).isEqualTo(events);
+    assertThat(service.getAircraftCount()).isEqualTo(2);
+    assertThat(service.getPositionUpdateCount()).isEqualTo(2L);
+    assertThat(service.getPairCheckCount()).isEqualTo(1L);
+    assertThat(service.getLossOfSeparationCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldDeduplicateEventsForSamePair() {
+    final ProximityDetectionService service = service();
+
+    service.update(velocity("4840D6", 0L, 400.0f, 0.0f));
+    service.update(velocity("406A3D", 0L, 400.0f, 180.0f));
+    service.update(position("4840D6", 0L, 52.0, 35000.0f));
+
+    // Head on and closing at 800 knots: predicted, repeatedly detected by both aircraft, and then
+    // lost
+    //
+    assertThat(service.update(position("406A3D", 0L, north(10.0, 0L), 35000.0f))).hasSize(1);
+    assertThat(service.update(position("4840D6", 1L, north(0.0, 1L), 35000.0f))).isEmpty();
+    assertThat(service.update(position("406A3D", 14L, north(10.0, -14L), 35000.0f))).isEmpty();
+    assertThat(service.update(position("4840D6", 28L, north(0.0, 28L), 35000.0f))).isEmpty();
+    assertThat(service.update(position("406A3D", 32L, north(10.0, -32L), 35000.0f))).hasSize(1);
+    assertThat(service.update(position("4840D6", 33L, north(0.0, 33L), 35000.0f))).isEmpty();
+
+    // Detected again after the de-duplication interval
+    //
+    assertThat(service.update(position("4840D6", 153L, north(3.5, 0L), 35000.0f))).isEmpty();
+    assertThat(service.update(position("406A3D", 154L, north(5.0, 0L), 35000.0f))).hasSize(1);
+    assertThat(service.getDetectedCount()).isEqualTo(7L);
+    assertThat(service.getRaisedCount()).isEqualTo(3L);
+    assertThat(service.getLossOfSeparationCount()).isEqualTo(2L);
+  }
+
+  @Test
+  void shouldNotTrackAircraftOnGround() {
+    final ProximityDetectionService service = service();
+
+    service.update(position("4840D6", 0L, 52.0, 35000.0f));
+    service.update(
+        new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(1L))
+            .transmissionType(TransmissionType.SURFACE_POSITION)
+            .onGround(true)
+            .build());
+
+    assertThat(service.getAircraftCount()).isZero();
+    assertThat(service.update(position("406A3D", 2L, 52.0 + NM, 35000.0f))).isEmpty();
+  }
+
+  @Test
+  void shouldUseAltitudeReportedWithoutPosition() {
+    final ProximityDetectionService service = service();
+
+    service.update(position("4840D6", 0L, 52.0, 35000.0f));
+    service.update(
+        new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(1L))
+            .transmissionType(TransmissionType.AIR_TO_AIR)
+            .altitude(38000.0f)
+            .build());
+
+    assertThat(service.update(position("406A3D", 2L, 52.0 + NM, 35000.0f))).isEmpty();
+  }
+
+  @Test
+  void shouldRetainOnlyMostRecentEvents() {
+    final ProximityDetectionService service = service(true, 2);
+
+    for (int i = 0; i < 4; i++) {
+      service.update(position(String.format("40000%d", i), 0L, 52.0 + i * 0.5 * NM, 35000.0f));
+    }
+
+    final List<ProximityEvent> events = service.getRecentEvents();
+
+    assertThat(service.getRaisedCount()).isEqualTo(6L);
+    assertThat(events).hasSize(2);
+    assertThat(events).allMatch(event -> "400003".equals(event.getIcaoAddress()));
+  }
+
+  @Test
+  void shouldExpireAircraftAndPairs() {
+    final ProximityDetectionService service = service();
+
+    service.update(position("4840D6", 0L, 52.0, 35000.0f));
+    service.update(position("406A3D", 0L, 52.0 + NM, 35000.0f));
+    service.update(position("400001", 130L, 56.0, 35000.0f));
+    service.expireAircraft();
+
+    assertThat(service.getAircraftCount()).isEqualTo(1);
+    assertThat(service.getExpiredCount()).isEqualTo(2L);
+
+    service.update(position("4840D6", 131L, 52.0, 35000.0f));
+    assertThat(service.update(position("406A3D", 131L, 52.0 + NM, 35000.0f))).hasSize(1);
+  }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.repository.BaseStationMessageRepository;
+import org.codebrewer.dump1090processor.basestation.repository.PerTypeMessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+
+class ReactivePipelineServiceTest {
+  private static final int AIRCRAFT_COUNT = 20;
+
+  private final MessageParsingService parsingService = new MessageParsingService();
+  private final EmptyMessageFilteringService emptyMessageFilteringService =
+      new EmptyMessageFilteringService();
+  private final InvalidMessageFilteringService invalidMessageFilteringService =
+      new InvalidMessageFilteringService();
+  // Altitudes identify lines rather than being realistic, so the highest allowed is raised
+  //
+  private final ImplausibleMessageFilteringService implausibleMessageFilteringService =
+      new ImplausibleMessageFilteringService(
+          true, 1200.0, 15000.0, -1500.0, 200000.0, 1000.0, 60L, 3, 1024);
+  private final List<BaseStationMessage> dispatched =
+      Collections.synchronizedList(new ArrayList<>());
+  private final Map<String, Set<String>> railThreadsByAircraft = new ConcurrentHashMap<>();
+  private final List<List<BaseStationMessage>> batches =
+      Collections.synchronizedList(new ArrayList<>());
+  private RedundantMessageSuppressionService redundantMessageSuppressionService =
+      new RedundantMessageSuppressionService(false, 60L);
+  private ReactivePipelineService service;
+
+  @AfterEach
+  void tearDown() {
+    if (service != null) {
+      service.stop();
+    }
+  }
+
+  // A position report whose altitude identifies the line
+  //
+  private static String line(int index) {
+    return String.format(
+        "MSG,3,1,1,%06X,1,2021/01/30,12:%02d:%02d.000,2021/01/30,12:%02d:%02d.000,,%d,,,"
+            + "51.50000,-0.12500,,,0,0,0,0",
+        0x400000 + index % AIRCRAFT_COUNT,
+        index / 60 % 60,
+        index % 60,
+        index / 60 % 60,
+        index % 60,
+        index);
+  }
+
+  private static Flux<byte[]> feed(List<String> lines) {
+    return Flux.fromIterable(lines).map(line -> line.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static List<String> lines(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(ReactivePipelineServiceTest::line)
+        .collect(Collectors.toList());
+  }
+
+  private static Set<Integer> altitudes(List<BaseStationMessage> messages) {
+    synchronized (messages) {
+      return messages.stream()
+          .map(message -> ((TransmissionMessage) message).getAltitude().intValue())
+          .collect(Collectors.toSet());
+    }
+  }
+
+  private static Set<Integer> range(int count) {
+    return IntStream.range(0, count).boxed().collect(Collectors.toSet());
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(10L);
+    }
+
+    assertThat(condition.getAsBoolean()).isTrue();
+  }
+
+  private MessageChannel channel() {
+    return (message, timeout) -> {
+      final BaseStationMessage baseStationMessage = (BaseStationMessage) message.getPayload();
+
+      railThreadsByAircraft
+          .computeIfAbsent(baseStationMessage.getIcaoAddress(), k -> ConcurrentHashMap.newKeySet())
+          .add(Thread.currentThread().getName());
+      dispatched.add(baseStationMessage);
+
+      return true;
+    };
+  }
+
+  private ReactivePipelineService service(
+      Flux<byte[]> feed,
+      Consumer<List<BaseStationMessage>> batchSaver,
+      int inboundCapacity,
+      int batchSize,
+      Duration batchMaxWait) {
+    return new ReactivePipelineService(
+        emptyMessageFilteringService,
+        new MessagePayloadTransformerService(parsingService),
+        invalidMessageFilteringService,
+        implausibleMessageFilteringService,
+        redundantMessageSuppressionService,
+        channel(),
+        batchSaver,
+        scheduler -> feed.subscribeOn(scheduler),
+        inboundCapacity,
+        3,
+        batchSize,
+        batchMaxWait);
+  }
+
+  @Test
+  void shouldRejectNonPositiveSizes() {
+    assertThatThrownBy(() -> service(Flux.empty(), batches::add, 0, 1, Duration.ofSeconds(1L)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> service(Flux.empty(), batches::add, 1, 0, Duration.ofSeconds(1L)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldFilterTransformDispatchAndPersistFeedMessages() throws InterruptedException {
+    final List<String> lines = new ArrayList<>(lines(100));
+
+    lines.add(10, "");
+    lines.add(20, "rubbish");
+
+    service = service(feed(lines), batches::add, 10, 16, Duration.ofHours(1L));
+    service.start();
+
+    await(() -> service.getDispatchedCount() == 100L);
+    service.stop();
+
+    assertThat(altitudes(dispatched)).isEqualTo(range(100));
+    assertThat(altitudes(batches.stream().flatMap(List::stream).collect(Collectors.toList())))
+        .isEqualTo(range(100));
+    assertThat(batches).allMatch(batch -> batch.size() <= 16);
+    assertThat(service.getReadCount()).isEqualTo(102L);
+    assertThat(service.getPersistedCount()).isEqualTo(100L);
+    assertThat(service.getBatchCount()).isEqualTo(batches.size());
+    assertThat(emptyMessageFilteringService.getEmptyMessageCount()).isEqualTo(1L);
+    assertThat(invalidMessageFilteringService.getInvalidMessageCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldHandleEachAircraftOnOneRailInOrder() throws InterruptedException {
+    service = service(feed(lines(3000)), batches::add, 10, 50, Duration.ofHours(1L));
+    service.start();
+
+    await(() -> service.getDispatchedCount() == 3000L);
+
+    assertThat(railThreadsByAircraft).hasSize(AIRCRAFT_COUNT);
+    assertThat(railThreadsByAircraft.values()).allMatch(threadNames -> threadNames.size() == 1);
+
+    final Map<String, List<Integer>> altitudesByAircraft = new ConcurrentHashMap<>();
+
+    synchronized (dispatched) {
+      for (BaseStationMessage message : dispatched) {
+        altitudesByAircraft
+            .computeIfAbsent(message.getIcaoAddress(), k -> new ArrayList<>())
+            .add(((TransmissionMessage) message).getAltitude().intValue());
+      }
+    }
+
+    assertThat(altitudesByAircraft.values())
+        .allMatch(
+            altitudes -> altitudes.equals(
+                altitudes.stream().sorted().collect(Collectors.toList())));
+  }
+
+  @Test
+  void shouldSavePartialBatchWhenMaxWaitPasses() throws InterruptedException {
+    service = service(feed(lines(5)), batches::add, 10, 100, Duration.ofMillis(100L));
+    service.start();
+
+    await(() -> service.getPersistedCount() == 5L);
+
+    assertThat(service.isRunning()).isTrue();
+    assertThat(altitudes(batches.stream().flatMap(List::stream).collect(Collectors.toList())))
+        .isEqualTo(range(5));
+  }
+
+  @Test
+  void shouldDispatchButNotSaveRedundantMessages() throws InterruptedException {
+    final List<String> lines = new ArrayList<>();
+
+    for (String line : lines(20)) {
+      lines.add(line);
+      lines.add(line);
+    }
+
+    redundantMessageSuppressionService = new RedundantMessageSuppressionService(true, 60L);
+    service = service(feed(lines), batches::add, 10, 100, Duration.ofMillis(100L));
+    service.start();
+
+    await(
+        () -> service.getPersistedCount() == 20L
+            && redundantMessageSuppressionService.getSuppressedCount() == 20L);
+
+    assertThat(service.getDispatchedCount()).isEqualTo(40L);
+    assertThat(altitudes(batches.stream().flatMap(List::stream).collect(Collectors.toList())))
+        .isEqualTo(range(20));
+  }
+
+  @Test
+  void shouldReadFeedOnlyAsFastAsMessagesAreSaved() throws InterruptedException {
+    final AtomicLong requested = new AtomicLong();
+    final CountDownLatch saving = new CountDownLatch(1);
+    final Flux<byte[]> feed =
+        Flux.range(0, 100_000)
+            .map(i -> line(i).getBytes(StandardCharsets.US_ASCII))
+            .doOnRequest(requested::addAndGet);
+
+    service =
+        service(
+            feed,
+            batch -> {
+              try {
+                saving.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+
+              batches.add(batch);
+            },
+            10,
+            10,
+            Duration.ofHours(1L));
+    service.start();
+
+    // While every save is blocked, only a bounded number of lines are requested from the feed
+    //
+    Thread.sleep(500L);
+
+    final long requestedWhileBlocked = requested.get();
+
+    Thread.sleep(200L);
+
+    assertThat(requested.get()).isEqualTo(requestedWhileBlocked).isLessThan(5_000L);
+    assertThat(service.getReadCount()).isLessThanOrEqualTo(requestedWhileBlocked);
+
+    saving.countDown();
+
+    await(() -> service.getPersistedCount() == 100_000L);
+  }
+
+  @Test
+  void shouldPassMessagesFromOtherFeedsThroughRails() throws InterruptedException {
+    final BaseStationMessage message = parsingService.parseCsvMessageText(line(7));
+
+    service = service(Flux.empty(), batches::add, 10, 10, Duration.ofMillis(50L));
+
+    assertThat(service.accept(message)).isFalse();
+
+    service.start();
+
+    assertThat(service.accept(message)).isTrue();
+
+    await(() -> service.getPersistedCount() == 1L);
+
+    assertThat(dispatched).containsExactly(message);
+  }
+
+  @Test
+  void shouldSaveRemainingMessagesWhenStopped() {
+    service = service(Flux.empty(), batches::add, 10, 10, Duration.ofHours(1L));
+    service.start();
+
+    for (int i = 0; i < 3; i++) {
+      service.accept(parsingService.parseCsvMessageText(line(i)));
+    }
+
+    service.stop();
+
+    assertThat(service.isRunning()).isFalse();
+    assertThat(altitudes(batches.stream().flatMap(List::stream).collect(Collectors.toList())))
+        .isEqualTo(range(3));
+  }
+
+  @Test
+  void shouldCountMessagesThatCannotBeSaved() throws InterruptedException {
+    service =
+        service(
+            feed(lines(20)),
+            batch -> {
+              throw new IllegalStateException("Database unavailable");
+            },
+            10,
+            5,
+            Duration.ofHours(1L));
+    service.start();
+
+    await(() -> service.getDispatchedCount() == 20L);
+    service.stop();
+
+    assertThat(service.getPersistFailureCount()).isEqualTo(20L);
+    assertThat(service.getPersistedCount()).isZero();
+  }
+
+  @Test
+  void shouldReadFeedOnlyWhileSwitchedOn() throws InterruptedException {
+    final AtomicLong subscriptions = new AtomicLong();
+    final Flux<byte[]> feed =
+        Flux.defer(
+            () -> {
+              subscriptions.incrementAndGet();
+
+              return feed(lines(10));
+            });
+
+    service = service(feed, batches::add, 10, 5, Duration.ofMillis(50L));
+    service.stopFeed();
+    service.start();
+
+    Thread.sleep(100L);
+
+    assertThat(service.isFeedEnabled()).isFalse();
+    assertThat(subscriptions).hasValue(0L);
+
+    service.startFeed();
+
+    await(() -> service.getDispatchedCount() == 10L);
+
+    service.stopFeed();
+    service.startFeed();
+
+    await(() -> service.getDispatchedCount() == 20L);
+
+    assertThat(subscriptions).hasValue(2L);
+  }
+
+  @Test
+  void shouldNotSaveMessagesWhenPersistenceIsDisabled() throws InterruptedException {
+    service = service(feed(lines(20)), batches::add, 10, 5, Duration.ofHours(1L));
+    service.setPersistMessages(false);
+    service.start();
+
+    await(() -> service.getDispatchedCount() == 20L);
+    service.stop();
+
+    assertThat(batches).isEmpty();
+    assertThat(new HashSet<>(Arrays.asList(service.getPersistedCount(), service.getBatchCount())))
+        .containsOnly(0L);
+  }
+
+  @Test
+  void shouldJournalMessagesSavedToSingleTable() {
+    final BaseStationMessageRepository messageRepository =
+        Mockito.mock(BaseStationMessageRepository.class);
+    final MessageJournalService journalService = Mockito.mock(MessageJournalService.class);
+    final BaseStationMessage journalled = parsingService.parseCsvMessageText(line(0));
+    final BaseStationMessage unjournalled = parsingService.parseCsvMessageText(line(1));
+
+    when(journalService.append(any()))
+        .thenAnswer(invocation -> invocation.getArgument(0) == journalled);
+    ReactivePipelineService.batchSaver(
+        messageRepository,
+        Mockito.mock(PerTypeMessageRepository.class),
+        journalService,
+        new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)),
+        false)
+        .accept(Arrays.asList(journalled, unjournalled));
+    verify(messageRepository).saveAll(Collections.singletonList(unjournalled));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.codebrewer.dump1090processor.basestation.service.ReceiverRelativePositionService.RECEIVER_RELATIVE_POSITION_HEADER;
+import static org.mockito.Mockito.mock;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.geo.ReceiverRelativePosition;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+class ReceiverRelativePositionServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private final MessageChannel channel = mock(MessageChannel.class);
+
+  private static TransmissionMessage position(double latitude, double longitude, Float altitude) {
+    return new TransmissionMessage.Builder("4840D6", NOW)
+        .transmissionType(TransmissionType.AIRBORNE_POSITION)
+        .altitude(altitude)
+        .position(
+            new Point<>(new G2D(longitude, latitude), CoordinateReferenceSystems.WGS84))
+        .build();
+  }
+
+  private static ReceiverRelativePositionService service() {
+    return new ReceiverRelativePositionService(52.0, -1.0, 100.0);
+  }
+
+  @Test
+  void shouldRejectIncompleteReceiverLocation() {
+    assertThatThrownBy(() -> new ReceiverRelativePositionService(52.0, Double.NaN, 0.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ReceiverRelativePositionService(Double.NaN, -1.0, 0.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ReceiverRelativePositionService(91.0, -1.0, 0.0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldNotLocateWithoutReceiverLocation() {
+    final ReceiverRelativePositionService service =
+        new ReceiverRelativePositionService(Double.NaN, Double.NaN, 0.0);
+
+    assertThat(service.isEnabled()).isFalse();
+    assertThat(service.locate(position(52.5, -1.0, 38000.0f))).isNull();
+    assertThat(service.getEnrichedCount()).isZero();
+  }
+
+  @Test
+  void shouldLocateAircraftReportingPosition() {
+    final ReceiverRelativePositionService service = service();
+    final ReceiverRelativePosition receiverRelativePosition =
+        service.locate(position(52.5, -1.0, 38000.0f));
+
+    assertThat(service.isEnabled()).isTrue();
+    assertThat(receiverRelativePosition.getRange()).isCloseTo(55_597.5f, within(1.0f));
+    assertThat(receiverRelativePosition.getBearing()).isCloseTo(0.0f, within(1e-3f));
+
+    // 38000 ft is 11582.4 m, of which 100 m is the height of the receiver and about 243 m is
+    // lost to the curvature of the Earth
+    //
+    assertThat(receiverRelativePosition.getElevation()).isCloseTo(11.41f, within(0.01f));
+    assertThat(service.getEnrichedCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldLocateAircraftWithoutAltitude() {
+    final ReceiverRelativePosition receiverRelativePosition =
+        service().locate(position(52.0, -0.5, null));
+
+    assertThat(receiverRelativePosition.getBearing()).isCloseTo(90.0f, within(0.2f));
+    assertThat(receiverRelativePosition.getElevation()).isNaN();
+  }
+
+  @Test
+  void shouldNotLocateAircraftWithoutPosition() {
+    final ReceiverRelativePositionService service = service();
+    final TransmissionMessage velocity =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .groundSpeed(459.5f)
+            .build();
+
+    assertThat(service.locate(velocity)).isNull();
+    assertThat(service.getEnrichedCount()).isZero();
+  }
+
+  @Test
+  void shouldAddHeaderToMessageCarryingPosition() {
+    final ReceiverRelativePositionService service = service();
+    final Message<?> message =
+        service.preSend(
+            MessageBuilder.withPayload(position(52.5, -1.0, 38000.0f)).build(), channel);
+
+    assertThat(message.getHeaders().get(RECEIVER_RELATIVE_POSITION_HEADER))
+        .isInstanceOfSatisfying(
+            ReceiverRelativePosition.class,
+            receiverRelativePosition ->
+                assertThat(receiverRelativePosition.getRange())
+                    .isCloseTo(55_597.5f, within(1.0f)));
+
+    // A message that already carries the header is not located again
+    //
+    assertThat(service.preSend(message, channel)).isSameAs(message);
+    assertThat(service.getEnrichedCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldPassOnMessageWithoutPosition() {
+    final TransmissionMessage velocity =
+        new TransmissionMessage.Builder("4840D6", NOW)
+            .transmissionType(TransmissionType.AIRBORNE_VELOCITY)
+            .build();
+    final Message<?> message = MessageBuilder.withPayload(velocity).build();
+
+    assertThat(service().preSend(message, channel)).isSameAs(message);
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import org.codebrewer.dump1090processor.basestation.domain.StatusMessageType;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.IdMessage;
+import org.codebrewer.dump1090processor.basestation.entity.NewAircraftMessage;
+import org.codebrewer.dump1090processor.basestation.entity.StatusMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+
+class RedundantMessageSuppressionServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private final RedundantMessageSuppressionService service =
+      new RedundantMessageSuppressionService(true, 60L);
+
+  private static TransmissionMessage altitude(String icaoAddress, long seconds, float altitude) {
+    return new TransmissionMessage.Builder(icaoAddress, NOW.plusSeconds(seconds))
+        .transmissionType(TransmissionType.SURVEILLANCE_ALTITUDE)
+        .altitude(altitude)
+        .build();
+  }
+
+  private static TransmissionMessage altitude(long seconds, float altitude) {
+    return altitude("4840D6", seconds, altitude);
+  }
+
+  private static TransmissionMessage squawk(long seconds, short squawk) {
+    return new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(seconds))
+        .transmissionType(TransmissionType.SURVEILLANCE_ID)
+        .squawk(squawk)
+        .build();
+  }
+
+  private static TransmissionMessage position(long seconds, double latitude, double longitude) {
+    return new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(seconds))
+        .transmissionType(TransmissionType.AIRBORNE_POSITION)
+        .altitude(38000.0f)
+        .position(
+            new Point<>(new G2D(longitude, latitude), CoordinateReferenceSystems.WGS84))
+        .build();
+  }
+
+  @Test
+  void shouldRejectNonPositiveHeartbeat() {
+    assertThatThrownBy(() -> new RedundantMessageSuppressionService(true, 0L))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldPersistEveryMessageIfDisabled() {
+    final RedundantMessageSuppressionService disabled =
+        new RedundantMessageSuppressionService(false, 60L);
+
+    assertThat(disabled.shouldPersist(altitude(0L, 38000.0f))).isTrue();
+    assertThat(disabled.shouldPersist(altitude(1L, 38000.0f))).isTrue();
+    assertThat(disabled.getAircraftCount()).isZero();
+    assertThat(disabled.getForwardedCount()).isZero();
+  }
+
+  @Test
+  void shouldSuppressMessagesRepeatingLastSeenValues() {
+    assertThat(service.shouldPersist(altitude(0L, 38000.0f))).isTrue();
+    assertThat(service.shouldPersist(altitude(1L, 38000.0f))).isFalse();
+    assertThat(service.shouldPersist(altitude(2L, 38025.0f))).isTrue();
+    assertThat(service.shouldPersist(squawk(3L, (short) 7000))).isTrue();
+    assertThat(service.shouldPersist(squawk(4L, (short) 7000))).isFalse();
+    assertThat(service.shouldPersist(squawk(5L, (short) 7700))).isTrue();
+
+    assertThat(service.getForwardedCount()).isEqualTo(4L);
+    assertThat(service.getSuppressedCount()).isEqualTo(2L);
+    assertThat(service.getForwardedRatio()).isEqualTo(4.0 / 6.0);
+  }
+
+  @Test
+  void shouldCompareFieldsAcrossTransmissionTypes() {
+    // The position report carries the altitude, so an altitude report repeating it adds nothing
+    //
+    assertThat(service.shouldPersist(altitude(0L, 37000.0f))).isTrue();
+    assertThat(service.shouldPersist(position(1L, 51.5, -0.125))).isTrue();
+    assertThat(service.shouldPersist(altitude(2L, 38000.0f))).isFalse();
+    assertThat(service.shouldPersist(position(3L, 51.5, -0.125))).isFalse();
+    assertThat(service.shouldPersist(position(4L, 51.51, -0.125))).isTrue();
+  }
+
+  @Test
+  void shouldTrackAircraftSeparately() {
+    assertThat(service.shouldPersist(altitude("4840D6", 0L, 38000.0f))).isTrue();
+    assertThat(service.shouldPersist(altitude("406A3D", 1L, 38000.0f))).isTrue();
+    assertThat(service.shouldPersist(altitude("406A3D", 2L, 38000.0f))).isFalse();
+    assertThat(service.getAircraftCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldPersistRedundantMessageOnceHeartbeatIntervalPasses() {
+    assertThat(service.shouldPersist(altitude(0L, 38000.0f))).isTrue();
+    assertThat(service.shouldPersist(altitude(30L, 38000.0f))).isFalse();
+    assertThat(service.shouldPersist(altitude(60L, 38000.0f))).isTrue();
+    assertThat(service.shouldPersist(altitude(61L, 38000.0f))).isFalse();
+
+    // Each kind of message has its own heartbeat
+    //
+    assertThat(service.shouldPersist(squawk(62L, (short) 7000))).isTrue();
+    assertThat(service.shouldPersist(squawk(100L, (short) 7000))).isFalse();
+    assertThat(service.shouldPersist(altitude(120L, 38000.0f))).isTrue();
+    assertThat(service.getHeartbeatCount()).isEqualTo(2L);
+  }
+
+  @Test
+  void shouldCompareCallSignsAndStatuses() {
+    assertThat(service.shouldPersist(new NewAircraftMessage.Builder("4840D6", NOW).build()))
+        .isTrue();
+    assertThat(
+        service.shouldPersist(
+            new IdMessage.Builder("4840D6", NOW.plusSeconds(1L)).callSign("BAW12").build()))
+        .isTrue();
+    assertThat(
+        service.shouldPersist(
+            new TransmissionMessage.Builder("4840D6", NOW.plusSeconds(2L))
+                .transmissionType(TransmissionType.IDENTIFICATION_AND_CATEGORY)
+                .callSign("BAW123")
+                .build()))
+        .isTrue();
+    assertThat(
+        service.shouldPersist(
+            new IdMessage.Builder("4840D6", NOW.plusSeconds(3L)).callSign("BAW123").build()))
+        .isFalse();
+    assertThat(
+        service.shouldPersist(
+            new StatusMessage.Builder("4840D6", NOW.plusSeconds(4L))
+                .statusMessageType(StatusMessageType.OK)
+                .build()))
+        .isTrue();
+    assertThat(
+        service.shouldPersist(
+            new StatusMessage.Builder("4840D6", NOW.plusSeconds(5L))
+                .statusMessageType(StatusMessageType.OK)
+                .build()))
+        .isFalse();
+  }
+
+  @Test
+  void shouldForgetAircraftNotSeenWithinHeartbeatInterval() {
+    service.shouldPersist(altitude("4840D6", 0L, 38000.0f));
+    service.shouldPersist(altitude("406A3D", 90L, 38000.0f));
+    service.expireAircraft();
+
+    assertThat(service.getAircraftCount()).isEqualTo(1);
+    assertThat(service.getExpiredCount()).isEqualTo(1L);
+    assertThat(service.shouldPersist(altitude("4840D6", 91L, 38000.0f))).isTrue();
+  }
+}
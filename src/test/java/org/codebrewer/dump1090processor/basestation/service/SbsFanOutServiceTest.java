@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.codebrewer.dump1090processor.basestation.domain.TransmissionType;
+import org.codebrewer.dump1090processor.basestation.entity.BaseStationMessage;
+import org.codebrewer.dump1090processor.basestation.entity.TransmissionMessage;
+import org.codebrewer.dump1090processor.basestation.sbs.SbsFanOutServer;
+import org.codebrewer.dump1090processor.basestation.sbs.SbsMessageFormatter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class SbsFanOutServiceTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private SbsFanOutServer server;
+
+  private static BaseStationMessage altitude(String icaoAddress, long millis, float altitude) {
+    return new TransmissionMessage.Builder(icaoAddress, NOW.plusMillis(millis))
+        .transmissionType(TransmissionType.SURVEILLANCE_ALTITUDE)
+        .altitude(altitude)
+        .build();
+  }
+
+  private SbsFanOutService service(long dedupWindowMillis) {
+    return new SbsFanOutService(
+        server, new SbsMessageFormatter(ZoneOffset.UTC), dedupWindowMillis);
+  }
+
+  @BeforeEach
+  void setUp() {
+    server = Mockito.mock(SbsFanOutServer.class);
+    when(server.publish(any())).thenReturn(true);
+  }
+
+  @Test
+  void shouldPublishFormattedMessage() {
+    final SbsFanOutService service = service(100L);
+
+    assertThat(service.publish(altitude("4840D6", 0L, 39000.0f))).isTrue();
+    verify(server).publish(
+        "MSG,5,1,1,4840D6,1,2021/01/30,12:00:00.000,2021/01/30,12:00:00.000,,39000,,,,,,,,,,\r\n"
+            .getBytes());
+  }
+
+  @Test
+  void shouldDropDuplicateWithinWindow() {
+    final SbsFanOutService service = service(100L);
+
+    assertThat(service.publish(altitude("4840D6", 0L, 39000.0f))).isTrue();
+    assertThat(service.publish(altitude("4840D6", 40L, 39000.0f))).isFalse();
+    assertThat(service.publish(altitude("4840D6", 100L, 39000.0f))).isFalse();
+    assertThat(service.getDuplicateCount()).isEqualTo(2L);
+    verify(server, times(1)).publish(any());
+  }
+
+  @Test
+  void shouldPublishChangedOrLaterOrOtherAircraftMessages() {
+    final SbsFanOutService service = service(100L);
+
+    assertThat(service.publish(altitude("4840D6", 0L, 39000.0f))).isTrue();
+    assertThat(service.publish(altitude("4840D6", 10L, 39025.0f))).isTrue();
+    assertThat(service.publish(altitude("4840D7", 20L, 39025.0f))).isTrue();
+    assertThat(service.publish(altitude("4840D6", 200L, 39025.0f))).isTrue();
+    assertThat(service.getDuplicateCount()).isZero();
+    verify(server, times(4)).publish(any());
+  }
+
+  @Test
+  void shouldNotDropDuplicatesIfWindowIsZero() {
+    final SbsFanOutService service = service(0L);
+
+    assertThat(service.publish(altitude("4840D6", 0L, 39000.0f))).isTrue();
+    assertThat(service.publish(altitude("4840D6", 0L, 39000.0f))).isTrue();
+    assertThat(service.getDuplicateCount()).isZero();
+  }
+
+  @Test
+  void shouldStartAndStopServer() throws IOException {
+    final SbsFanOutService service = service(100L);
+
+    service.start();
+    verify(server).start();
+    when(server.isRunning()).thenReturn(true);
+    assertThat(service.isRunning()).isTrue();
+    service.start();
+    verify(server, times(1)).start();
+    service.stop();
+    verify(server).close();
+  }
+
+  @Test
+  void shouldCountFailureToStartServer() throws IOException {
+    final SbsFanOutService service = service(100L);
+
+    Mockito.doThrow(new IOException("Address already in use")).when(server).start();
+    service.start();
+    assertThat(service.getFailureCount()).isEqualTo(1L);
+    assertThat(service.isRunning()).isFalse();
+    verify(server, never()).close();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AircraftStateSnapshotTest {
+  @TempDir
+  Path directory;
+
+  private static AircraftState state(int address, String callSign) {
+    return new AircraftState.Builder(address)
+        .callSign(callSign)
+        .squawk(7700)
+        .altitude(38000.0f)
+        .groundSpeed(459.5f)
+        .track(182.88f)
+        .verticalRate(-832.0f)
+        .position(52.2572, 3.91937, 1_611_999_998_000L)
+        .emergency(true)
+        .lastSeenMillis(1_612_000_000_000L)
+        .messageCount(42L)
+        .build();
+  }
+
+  // Compares field by field, treating NaN (an unreported property) as equal to itself
+  //
+  private static void assertSameState(AircraftState actual, AircraftState expected) {
+    assertThat(actual).usingRecursiveComparison()
+                      .withComparatorForType(Float::compare, Float.class)
+                      .withComparatorForType(Double::compare, Double.class)
+                      .isEqualTo(expected);
+  }
+
+  @Test
+  void shouldRoundTripStates() throws IOException {
+    final Path path = directory.resolve("aircraft.snapshot");
+    final AircraftState withCallSign = state(0x4840D6, "KLM1023");
+    final AircraftState withoutCallSign = new AircraftState.Builder(0x40621D).onGround(true).build();
+
+    new AircraftStateSnapshot(1_612_000_001_000L, Arrays.asList(withCallSign, withoutCallSign))
+        .write(path);
+
+    final AircraftStateSnapshot snapshot = AircraftStateSnapshot.read(path);
+
+    assertThat(snapshot.getCreatedMillis()).isEqualTo(1_612_000_001_000L);
+    assertThat(snapshot.getStates()).hasSize(2);
+    assertSameState(snapshot.getStates().get(0), withCallSign);
+    assertSameState(snapshot.getStates().get(1), withoutCallSign);
+    assertThat(snapshot.getStates().get(1).hasPosition()).isFalse();
+    assertThat(Files.exists(directory.resolve("aircraft.snapshot.tmp"))).isFalse();
+  }
+
+  @Test
+  void shouldRoundTripStatesThroughBytes() throws IOException {
+    final AircraftState state = state(0x4840D6, "KLM1023");
+    final AircraftStateSnapshot snapshot =
+        AircraftStateSnapshot.fromBytes(
+            new AircraftStateSnapshot(3L, Collections.singletonList(state)).toBytes());
+
+    assertThat(snapshot.getCreatedMillis()).isEqualTo(3L);
+    assertThat(snapshot.getStates()).hasSize(1);
+    assertSameState(snapshot.getStates().get(0), state);
+  }
+
+  @Test
+  void shouldReplaceExistingSnapshot() throws IOException {
+    final Path path = directory.resolve("aircraft.snapshot");
+
+    new AircraftStateSnapshot(1L, Collections.singletonList(state(0x4840D6, "KLM1023")))
+        .write(path);
+    new AircraftStateSnapshot(2L, Collections.emptyList()).write(path);
+
+    assertThat(AircraftStateSnapshot.read(path).getStates()).isEmpty();
+  }
+
+  @Test
+  void shouldRejectCorruptSnapshot() throws IOException {
+    final Path path = directory.resolve("aircraft.snapshot");
+
+    new AircraftStateSnapshot(1L, Collections.singletonList(state(0x4840D6, "KLM1023")))
+        .write(path);
+
+    final byte[] bytes = Files.readAllBytes(path);
+
+    bytes[30] ^= 0x01;
+    Files.write(path, bytes);
+
+    assertThatThrownBy(() -> AircraftStateSnapshot.read(path))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("checksum");
+  }
+
+  @Test
+  void shouldRejectTruncatedSnapshot() throws IOException {
+    final Path path = directory.resolve("aircraft.snapshot");
+
+    Files.write(path, new byte[] {0x41, 0x43});
+
+    assertThatThrownBy(() -> AircraftStateSnapshot.read(path)).isInstanceOf(IOException.class);
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class OffHeapAircraftStateStoreTest {
+  private static AircraftState state(int address, String callSign) {
+    return new AircraftState.Builder(address)
+        .callSign(callSign)
+        .squawk(7700)
+        .altitude(38000.0f)
+        .groundSpeed(459.5f)
+        .track(182.88f)
+        .verticalRate(-832.0f)
+        .position(52.2572, 3.91937, 1_611_999_998_000L)
+        .receiverRelativePosition(141_321.5f, 73.25f, 2.125f)
+        .emergency(true)
+        .lastSeenMillis(1_612_000_000_000L)
+        .messageCount(42L)
+        .build();
+  }
+
+  // A state whose every property is derived from one value, so a torn read is detectable
+  //
+  private static AircraftState state(int address, long value) {
+    return new AircraftState.Builder(address)
+        .callSign(Long.toString(value % 100_000_000L))
+        .squawk((int) value)
+        .altitude(value)
+        .groundSpeed(value)
+        .track(value)
+        .verticalRate(value)
+        .position(value, value, value)
+        .onGround(value % 2L == 0L)
+        .lastSeenMillis(value)
+        .messageCount(value)
+        .build();
+  }
+
+  private static boolean isConsistent(AircraftState state) {
+    final long value = state.getMessageCount();
+
+    return state.getSquawk() == (int) value
+           && state.getAltitude() == (float) value
+           && state.getVerticalRate() == (float) value
+           && state.getLatitude() == (double) value
+           && state.getLongitude() == (double) value
+           && state.getPositionMillis() == value
+           && state.getLastSeenMillis() == value
+           && state.isOnGround() == (value % 2L == 0L)
+           && state.getCallSign().equals(Long.toString(value % 100_000_000L));
+  }
+
+  // Compares field by field, treating NaN (an unreported property) as equal to itself
+  //
+  private static void assertSameState(AircraftState actual, AircraftState expected) {
+    assertThat(actual).usingRecursiveComparison()
+                      .withComparatorForType(Float::compare, Float.class)
+                      .withComparatorForType(Double::compare, Double.class)
+                      .isEqualTo(expected);
+  }
+
+  @Test
+  void shouldRejectInvalidCapacity() {
+    assertThatThrownBy(() -> new OffHeapAircraftStateStore(0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new OffHeapAircraftStateStore((1 << 24) + 1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRoundTripEveryProperty() {
+    final OffHeapAircraftStateStore store = new OffHeapAircraftStateStore(16);
+    final AircraftState withCallSign = state(0x4840D6, "KLM1023");
+    final AircraftState withoutCallSign =
+        new AircraftState.Builder(0x40621D).onGround(true).build();
+    final AircraftState withEmptyCallSign = new AircraftState.Builder(0).callSign("").build();
+
+    store.put(withCallSign);
+    store.put(withoutCallSign);
+    store.put(withEmptyCallSign);
+
+    assertThat(store.size()).isEqualTo(3);
+    assertSameState(store.get(0x4840D6), withCallSign);
+    assertSameState(store.get(0x40621D), withoutCallSign);
+    assertSameState(store.get(0), withEmptyCallSign);
+    assertThat(store.get(0x40621D).hasPosition()).isFalse();
+    assertThat(store.get(0x123456)).isNull();
+  }
+
+  @Test
+  void shouldTruncateLongCallSign() {
+    final OffHeapAircraftStateStore store = new OffHeapAircraftStateStore(16);
+
+    store.put(state(0x4840D6, "ABCDEFGHIJ"));
+
+    assertThat(store.get(0x4840D6).getCallSign()).isEqualTo("ABCDEFGH");
+  }
+
+  @Test
+  void shouldReplaceAndRemoveStates() {
+    final OffHeapAircraftStateStore store = new OffHeapAircraftStateStore(16);
+
+    store.put(state(0x4840D6, "KLM1023"));
+    store.put(state(0x4840D6, "KLM1024"));
+
+    assertThat(store.size()).isEqualTo(1);
+    assertThat(store.get(0x4840D6).getCallSign()).isEqualTo("KLM1024");
+    assertThat(store.remove(0x4840D6)).isTrue();
+    assertThat(store.remove(0x4840D6)).isFalse();
+    assertThat(store.get(0x4840D6)).isNull();
+    assertThat(store.size()).isZero();
+  }
+
+  @Test
+  void shouldFindEveryStateAfterRemovalsFromSharedProbeSequences() {
+    final int count = 3000;
+    final OffHeapAircraftStateStore store = new OffHeapAircraftStateStore(count);
+    final Map<Integer, Long> expected = new HashMap<>();
+
+    for (int i = 0; i < count; i++) {
+      store.put(state(i * 7, i));
+      expected.put(i * 7, (long) i);
+    }
+
+    for (int i = 0; i < count; i += 3) {
+      assertThat(store.remove(i * 7)).isTrue();
+      expected.remove(i * 7);
+    }
+
+    // Reuse the freed slots for aircraft not seen before
+    //
+    for (int i = 0; i < count / 3; i++) {
+      store.put(state(0x800000 + i, i));
+      expected.put(0x800000 + i, (long) i);
+    }
+
+    assertThat(store.size()).isEqualTo(expected.size());
+    expected.forEach(
+        (address, value) -> assertThat(store.get(address).getMessageCount()).isEqualTo(value));
+
+    final List<Integer> addresses = new ArrayList<>();
+
+    store.forEach(state -> addresses.add(state.getAddress()));
+
+    assertThat(addresses).containsExactlyInAnyOrderElementsOf(expected.keySet());
+  }
+
+  @Test
+  void shouldCountStatesNotStoredWhenFull() {
+    final OffHeapAircraftStateStore store = new OffHeapAircraftStateStore(2);
+
+    store.put(state(1, "ONE"));
+    store.put(state(2, "TWO"));
+    store.put(state(3, "THREE"));
+    store.put(state(2, "TWO2"));
+
+    assertThat(store.get(3)).isNull();
+    assertThat(store.get(2).getCallSign()).isEqualTo("TWO2");
+    assertThat(store.getOverflowCount()).isEqualTo(1L);
+
+    store.remove(1);
+    store.put(state(3, "THREE"));
+
+    assertThat(store.get(3).getCallSign()).isEqualTo("THREE");
+    assertThat(store.getSize()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldRejectNegativeAddress() {
+    final OffHeapAircraftStateStore store = new OffHeapAircraftStateStore(2);
+
+    assertThatThrownBy(() -> store.put(state(-1, "NONE")))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldNeverLetReadersSeePartialUpdates() throws InterruptedException {
+    final int aircraftCount = 8;
+    final OffHeapAircraftStateStore store = new OffHeapAircraftStateStore(aircraftCount);
+    final AtomicBoolean writing = new AtomicBoolean(true);
+    final AtomicReference<AircraftState> inconsistent = new AtomicReference<>();
+    final AtomicLong reads = new AtomicLong();
+    final List<Thread> readers = new ArrayList<>();
+
+    for (int i = 0; i < 2; i++) {
+      final Thread reader =
+          new Thread(
+              () -> {
+                while (writing.get()) {
+                  for (int address = 0; address < aircraftCount; address++) {
+                    final AircraftState state = store.get(address);
+
+                    if (state != null) {
+                      reads.incrementAndGet();
+
+                      if (!isConsistent(state)) {
+                        inconsistent.set(state);
+                      }
+                    }
+                  }
+
+                  store.forEach(
+                      state -> {
+                        if (!isConsistent(state)) {
+                          inconsistent.set(state);
+                        }
+                      });
+                }
+              });
+
+      reader.start();
+      readers.add(reader);
+    }
+
+    for (long value = 0; value < 200_000L; value++) {
+      final int address = (int) (value % aircraftCount);
+
+      // Free and reuse slots as well as overwriting them
+      //
+      if (value % 1000L == 999L) {
+        store.remove(address);
+      } else {
+        store.put(state(address, value));
+      }
+    }
+
+    writing.set(false);
+
+    for (Thread reader : readers) {
+      reader.join();
+    }
+
+    assertThat(reads.get()).isPositive();
+    assertThat(inconsistent.get()).isNull();
+  }
+}
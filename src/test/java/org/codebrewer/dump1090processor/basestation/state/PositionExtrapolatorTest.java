@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class PositionExtrapolatorTest {
+  private static final long NOW = 1_612_008_000_000L;
+
+  private final double[] latitudes = new double[4];
+  private final double[] longitudes = new double[4];
+  private final double[] altitudes = new double[4];
+  private final double[] ages = new double[4];
+
+  private static AircraftState.Builder aircraft(int address, double latitude, double longitude) {
+    return new AircraftState.Builder(address)
+        .altitude(35000.0f)
+        .position(latitude, longitude, NOW)
+        .lastSeenMillis(NOW);
+  }
+
+  private void predict(PositionExtrapolator extrapolator, long timeMillis) {
+    extrapolator.predict(timeMillis, 10.0, latitudes, longitudes, altitudes, ages);
+  }
+
+  @Test
+  void shouldIgnoreAircraftWithoutPosition() {
+    final AircraftState positioned = aircraft(0x4840D6, 52.0, 0.0).build();
+    final PositionExtrapolator extrapolator =
+        new PositionExtrapolator(
+            Arrays.asList(
+                new AircraftState.Builder(0x406A3D).altitude(1000.0f).build(), positioned));
+
+    assertThat(extrapolator.size()).isEqualTo(1);
+    assertThat(extrapolator.getState(0)).isSameAs(positioned);
+  }
+
+  @Test
+  void shouldExtrapolateFromVelocity() {
+    // 360 knots is a tenth of a nautical mile, or a six-hundredth of a degree of latitude, per
+    // second
+    //
+    final PositionExtrapolator extrapolator =
+        new PositionExtrapolator(
+            Arrays.asList(
+                aircraft(0x4840D6, 52.0, 0.0)
+                    .groundSpeed(360.0f)
+                    .track(0.0f)
+                    .verticalRate(-1200.0f)
+                    .build(),
+                aircraft(0x406A3D, 60.0, 0.0).groundSpeed(360.0f).track(90.0f).build()));
+
+    predict(extrapolator, NOW + 6_000L);
+
+    assertThat(latitudes[0]).isCloseTo(52.01, within(1e-6));
+    assertThat(longitudes[0]).isCloseTo(0.0, within(1e-6));
+    assertThat(altitudes[0]).isCloseTo(34880.0, within(1e-3));
+    assertThat(latitudes[1]).isCloseTo(60.0, within(1e-6));
+    assertThat(longitudes[1]).isCloseTo(0.02, within(1e-5));
+    assertThat(altitudes[1]).isEqualTo(35000.0);
+    assertThat(ages).startsWith(6.0, 6.0);
+  }
+
+  @Test
+  void shouldNotMoveAircraftWithoutVelocity() {
+    final PositionExtrapolator extrapolator =
+        new PositionExtrapolator(
+            Arrays.asList(
+                aircraft(0x4840D6, 52.0, 0.0).track(45.0f).build(),
+                new AircraftState.Builder(0x406A3D).position(51.5, -0.5, NOW).build()));
+
+    predict(extrapolator, NOW + 6_000L);
+
+    assertThat(latitudes).startsWith(52.0, 51.5);
+    assertThat(longitudes).startsWith(0.0, -0.5);
+    assertThat(altitudes[0]).isEqualTo(35000.0);
+    assertThat(altitudes[1]).isNaN();
+  }
+
+  @Test
+  void shouldLimitExtrapolation() {
+    final PositionExtrapolator extrapolator =
+        new PositionExtrapolator(
+            Arrays.asList(aircraft(0x4840D6, 52.0, 0.0).groundSpeed(360.0f).track(0.0f).build()));
+
+    predict(extrapolator, NOW + 60_000L);
+
+    assertThat(latitudes[0]).isCloseTo(52.0 + 10.0 / 600.0, within(1e-6));
+    assertThat(ages[0]).isEqualTo(60.0);
+
+    predict(extrapolator, NOW - 2_000L);
+
+    assertThat(latitudes[0]).isEqualTo(52.0);
+    assertThat(ages[0]).isEqualTo(-2.0);
+  }
+
+  @Test
+  void shouldWrapLongitudeAtAntimeridian() {
+    final PositionExtrapolator extrapolator =
+        new PositionExtrapolator(
+            Arrays.asList(
+                aircraft(0x4840D6, 0.0, 179.99).groundSpeed(360.0f).track(90.0f).build(),
+                aircraft(0x406A3D, 0.0, -179.99).groundSpeed(360.0f).track(270.0f).build()));
+
+    predict(extrapolator, NOW + 10_000L);
+
+    assertThat(longitudes[0]).isCloseTo(179.99 + 1.0 / 60.0 - 360.0, within(1e-5));
+    assertThat(longitudes[1]).isCloseTo(-179.99 - 1.0 / 60.0 + 360.0, within(1e-5));
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+  @Test
+  void shouldRejectOutOfRangePrecision() {
+    assertThatThrownBy(() -> new HyperLogLog(3)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new HyperLogLog(17)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldEstimateZeroWhenEmpty() {
+    assertThat(new HyperLogLog(10).estimate()).isZero();
+  }
+
+  @Test
+  void shouldCountSmallCardinalitiesExactlyEnough() {
+    final HyperLogLog hyperLogLog = new HyperLogLog(10);
+
+    for (int i = 0; i < 3; i++) {
+      for (int address = 0x400000; address < 0x400020; address++) {
+        hyperLogLog.add(HyperLogLog.hash(address));
+      }
+    }
+
+    assertThat(hyperLogLog.estimate()).isBetween(31L, 33L);
+  }
+
+  @Test
+  void shouldEstimateLargeCardinalities() {
+    final HyperLogLog hyperLogLog = new HyperLogLog(10);
+
+    for (int address = 0; address < 100_000; address++) {
+      hyperLogLog.add(HyperLogLog.hash(address));
+    }
+
+    // Standard error at precision 10 is about 3.25%
+    //
+    assertThat((double) hyperLogLog.estimate()).isCloseTo(100_000.0, withinPercentage(10));
+  }
+
+  @Test
+  void shouldMergeAndClear() {
+    final HyperLogLog first = new HyperLogLog(10);
+    final HyperLogLog second = new HyperLogLog(10);
+
+    for (int address = 0; address < 500; address++) {
+      first.add(HyperLogLog.hash(address));
+      second.add(HyperLogLog.hash(address + 250));
+    }
+
+    first.merge(second);
+    assertThat((double) first.estimate()).isCloseTo(750.0, withinPercentage(10));
+    first.clear();
+    assertThat(first.estimate()).isZero();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.statistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCounterTest {
+  private static final long START = 1_000_000_000L;
+  private static final long MINUTE = 60_000L;
+
+  private SlidingWindowCounter counter;
+
+  @BeforeEach
+  void setUp() {
+    counter = new SlidingWindowCounter(60, 15_000L, START);
+  }
+
+  @Test
+  void shouldCountEventsWithinWindow() {
+    counter.increment(START + 1_000L);
+    counter.increment(START + 2 * MINUTE);
+    counter.increment(START + 4 * MINUTE);
+
+    final long now = START + 4 * MINUTE + 1_000L;
+
+    assertThat(counter.count(MINUTE, now)).isEqualTo(1L);
+    assertThat(counter.count(5 * MINUTE, now)).isEqualTo(3L);
+    assertThat(counter.getLastUpdateMillis()).isEqualTo(START + 4 * MINUTE);
+  }
+
+  @Test
+  void shouldForgetEventsOlderThanRing() {
+    counter.increment(START + 1_000L);
+    counter.increment(START + 20 * MINUTE);
+
+    assertThat(counter.count(15 * MINUTE, START + 20 * MINUTE)).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldReuseSlotsAfterWrappingRing() {
+    counter.increment(START);
+    assertThat(counter.count(15 * MINUTE, START + 15 * MINUTE)).isZero();
+    counter.increment(START + 15 * MINUTE);
+    assertThat(counter.count(MINUTE, START + 15 * MINUTE)).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldComputeRateOverElapsedTimeSinceCreation() {
+    for (int i = 0; i < 20; i++) {
+      counter.increment(START + i * 500L);
+    }
+
+    // Only ten seconds have elapsed, so the rate is not diluted over the whole window
+    //
+    assertThat(counter.ratePerSecond(15 * MINUTE, START + 10_000L)).isCloseTo(2.0, within(1e-9));
+  }
+}
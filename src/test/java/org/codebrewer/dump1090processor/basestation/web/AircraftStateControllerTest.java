@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Collections;
+import org.codebrewer.dump1090processor.basestation.service.PositionExtrapolationService;
+import org.codebrewer.dump1090processor.basestation.service.PositionSnapshotService;
+import org.codebrewer.dump1090processor.basestation.state.PositionSnapshot;
+import org.codebrewer.dump1090processor.basestation.wire.WireFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+class AircraftStateControllerTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private final byte[] json = "[]".getBytes();
+  private final byte[] jsonGzip = {1};
+  private final byte[] binary = {2};
+  private final byte[] binaryGzip = {3};
+  private PositionExtrapolationService positionExtrapolationService;
+  private PositionSnapshotService positionSnapshotService;
+  private AircraftStateController controller;
+
+  @BeforeEach
+  void setUp() {
+    positionExtrapolationService = Mockito.mock(PositionExtrapolationService.class);
+    positionSnapshotService = Mockito.mock(PositionSnapshotService.class);
+    controller = new AircraftStateController(positionExtrapolationService, positionSnapshotService);
+    when(positionExtrapolationService.predict(any())).thenReturn(Collections.emptyList());
+    when(positionSnapshotService.getSnapshot())
+        .thenReturn(new PositionSnapshot("p", 7L, NOW, 0, json, jsonGzip, binary, binaryGzip));
+  }
+
+  @Test
+  void shouldServeSharedSnapshotWithEntityTag() {
+    final ResponseEntity<?> response = controller.getPositions(null, null);
+    final HttpHeaders headers = response.getHeaders();
+
+    assertThat(response.getBody()).isSameAs(json);
+    assertThat(headers.getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    assertThat(headers.getETag()).isEqualTo("\"p-7-j\"");
+    assertThat(headers.getCacheControl()).isEqualTo("no-cache");
+    assertThat(headers.getVary()).containsExactly(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+    assertThat(headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+    verify(positionExtrapolationService, never()).predict(any());
+  }
+
+  @Test
+  void shouldServeCompressedSnapshotWhenAccepted() {
+    final ResponseEntity<?> jsonResponse = controller.getPositions(null, "deflate, gzip;q=0.8");
+    final ResponseEntity<byte[]> binaryResponse = controller.getPositionFrame(null, "gzip");
+
+    assertThat(jsonResponse.getBody()).isSameAs(jsonGzip);
+    assertThat(jsonResponse.getHeaders().getETag()).isEqualTo("\"p-7-jz\"");
+    assertThat(jsonResponse.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))
+        .isEqualTo("gzip");
+    assertThat(binaryResponse.getBody()).isSameAs(binaryGzip);
+    assertThat(binaryResponse.getHeaders().getContentType())
+        .isEqualTo(MediaType.parseMediaType(WireFormat.MEDIA_TYPE));
+    assertThat(binaryResponse.getHeaders().getETag()).isEqualTo("\"p-7-bz\"");
+  }
+
+  @Test
+  void shouldPredictPositionsForGivenTimeOrWithoutSnapshot() {
+    assertThat(controller.getPositions(NOW, "gzip").getBody())
+        .isEqualTo(Collections.emptyList());
+    verify(positionExtrapolationService).predict(NOW);
+
+    when(positionSnapshotService.getSnapshot()).thenReturn(null);
+
+    final ResponseEntity<byte[]> response = controller.getPositionFrame(null, null);
+
+    assertThat(response.getBody()).isNotEmpty();
+    assertThat(response.getHeaders().getETag()).isNull();
+  }
+
+  @Test
+  void shouldRecogniseGzipInAcceptEncoding() {
+    assertThat(AircraftStateController.acceptsGzip(null)).isFalse();
+    assertThat(AircraftStateController.acceptsGzip("identity")).isFalse();
+    assertThat(AircraftStateController.acceptsGzip("gzip, deflate, br")).isTrue();
+    assertThat(AircraftStateController.acceptsGzip("br;q=1.0, GZIP ; q=0.5")).isTrue();
+    assertThat(AircraftStateController.acceptsGzip("gzip;q=0")).isFalse();
+    assertThat(AircraftStateController.acceptsGzip("gzip;q=0.000")).isFalse();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import org.codebrewer.dump1090processor.basestation.domain.MessageType;
+import org.codebrewer.dump1090processor.basestation.query.BinaryMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.CsvMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.JsonMessageRecordWriter;
+import org.codebrewer.dump1090processor.basestation.query.MessageQuery;
+import org.codebrewer.dump1090processor.basestation.service.MessageQueryService;
+import org.codebrewer.dump1090processor.basestation.wire.WireFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+class MessageQueryControllerTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00Z");
+
+  private MessageQueryService messageQueryService;
+  private MessageQueryController controller;
+
+  @BeforeEach
+  void setUp() {
+    messageQueryService = Mockito.mock(MessageQueryService.class);
+    controller = new MessageQueryController(messageQueryService);
+  }
+
+  private ResponseEntity<StreamingResponseBody> getMessages(String bbox, String format) {
+    return getMessages(bbox, format, null);
+  }
+
+  private ResponseEntity<StreamingResponseBody> getMessages(
+      String bbox, String format, String accept) {
+    return controller.getMessages(
+        "4840d6",
+        NOW,
+        NOW.plusSeconds(60),
+        Collections.singleton(MessageType.MSG),
+        null,
+        bbox,
+        NOW.plusSeconds(30),
+        42L,
+        100,
+        format,
+        accept);
+  }
+
+  @Test
+  void shouldStreamJsonForQuery() throws IOException {
+    final ResponseEntity<StreamingResponseBody> response = getMessages("-1,51,1,52", "json");
+    final ArgumentCaptor<MessageQuery> queryCaptor = ArgumentCaptor.forClass(MessageQuery.class);
+
+    assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    verifyNoInteractions(messageQueryService);
+    response.getBody().writeTo(new ByteArrayOutputStream());
+    verify(messageQueryService)
+        .query(queryCaptor.capture(), any(JsonMessageRecordWriter.class));
+
+    final MessageQuery query = queryCaptor.getValue();
+
+    assertThat(query.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(query.getFrom()).isEqualTo(NOW);
+    assertThat(query.getTo()).isEqualTo(NOW.plusSeconds(60));
+    assertThat(query.getMessageTypes()).containsExactly(MessageType.MSG);
+    assertThat(query.getTransmissionTypes()).isEmpty();
+    assertThat(query.getBoundingBox().getMaxLatitude()).isEqualTo(52.0);
+    assertThat(query.getAfterTimestamp()).isEqualTo(NOW.plusSeconds(30));
+    assertThat(query.getAfterId()).isEqualTo(42L);
+    assertThat(query.getLimit()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldStreamCsvForQuery() throws IOException {
+    final ResponseEntity<StreamingResponseBody> response = getMessages(null, "CSV");
+
+    assertThat(response.getHeaders().getContentType())
+        .isEqualTo(MessageQueryController.TEXT_CSV);
+    response.getBody().writeTo(new ByteArrayOutputStream());
+    verify(messageQueryService).query(any(), any(CsvMessageRecordWriter.class));
+  }
+
+  @Test
+  void shouldStreamBinaryForFormatOrAcceptHeader() throws IOException {
+    final ResponseEntity<StreamingResponseBody> response = getMessages(null, "binary");
+
+    assertThat(response.getHeaders().getContentType())
+        .isEqualTo(MediaType.parseMediaType(WireFormat.MEDIA_TYPE));
+    response.getBody().writeTo(new ByteArrayOutputStream());
+    verify(messageQueryService).query(any(), any(BinaryMessageRecordWriter.class));
+    assertThat(
+        getMessages(null, null, "application/json;q=0.5, application/x-dump1090")
+            .getHeaders()
+            .getContentType())
+        .isEqualTo(MediaType.parseMediaType(WireFormat.MEDIA_TYPE));
+    assertThat(getMessages(null, null, "*/*").getHeaders().getContentType())
+        .isEqualTo(MediaType.APPLICATION_JSON);
+    assertThat(getMessages(null, "json", WireFormat.MEDIA_TYPE).getHeaders().getContentType())
+        .isEqualTo(MediaType.APPLICATION_JSON);
+  }
+
+  @Test
+  void shouldRejectInvalidCriteriaBeforeStreaming() {
+    assertThatThrownBy(() -> getMessages("1,2,3", "json"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> getMessages(null, "xml"))
+        .isInstanceOf(IllegalArgumentException.class);
+    verifyNoInteractions(messageQueryService);
+  }
+}
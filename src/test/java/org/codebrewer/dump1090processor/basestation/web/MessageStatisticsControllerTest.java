@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import org.codebrewer.dump1090processor.basestation.service.MessageStatisticsService;
+import org.codebrewer.dump1090processor.basestation.statistics.AircraftMessageRate;
+import org.codebrewer.dump1090processor.basestation.statistics.WindowStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MessageStatisticsControllerTest {
+  private MessageStatisticsService statisticsService;
+  private MessageStatisticsController controller;
+
+  @BeforeEach
+  void setUp() {
+    statisticsService = Mockito.mock(MessageStatisticsService.class);
+    controller = new MessageStatisticsController(statisticsService);
+  }
+
+  @Test
+  void shouldDelegateWindowStatistics() {
+    final WindowStatistics statistics = Mockito.mock(WindowStatistics.class);
+
+    when(statisticsService.getWindowStatistics(5)).thenReturn(statistics);
+    assertThat(controller.getWindowStatistics(5)).isSameAs(statistics);
+  }
+
+  @Test
+  void shouldDelegateAircraftMessageRates() {
+    final AircraftMessageRate rate = new AircraftMessageRate("4840D6", 2.5);
+
+    when(statisticsService.getAircraftMessageRates(1, 20))
+        .thenReturn(Collections.singletonList(rate));
+    assertThat(controller.getAircraftMessageRates(1, 20)).containsExactly(rate);
+  }
+
+  @Test
+  void shouldNormaliseIcaoAddressOfAircraftMessageRate() {
+    when(statisticsService.getAircraftMessageRate("4840d6", 1)).thenReturn(2.5);
+
+    final AircraftMessageRate rate = controller.getAircraftMessageRate("4840d6", 1);
+
+    assertThat(rate.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(rate.getMessageRate()).isEqualTo(2.5);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.wire;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import org.codebrewer.dump1090processor.basestation.history.AirspaceFrame;
+import org.codebrewer.dump1090processor.basestation.state.AircraftState;
+import org.codebrewer.dump1090processor.basestation.state.PredictedPosition;
+import org.junit.jupiter.api.Test;
+
+class PositionFrameCodecTest {
+  private static final Instant NOW = Instant.parse("2021-01-30T12:00:00.250Z");
+
+  @Test
+  void shouldRoundTripPositionsWithinQuanta() {
+    final AircraftState klm =
+        new AircraftState.Builder(0x4840D6)
+            .callSign("KLM1023")
+            .groundSpeed(459.5f)
+            .track(182.94f)
+            .verticalRate(-1088.0f)
+            .position(52.25, 3.92, NOW.toEpochMilli() - 2_500L)
+            .build();
+    final AircraftState ground =
+        new AircraftState.Builder(0x000001)
+            .onGround(true)
+            .position(51.47, -0.4543, NOW.toEpochMilli())
+            .build();
+    final AirspaceFrame frame =
+        new AirspaceFrame(
+            NOW,
+            Arrays.asList(
+                new PredictedPosition(klm, NOW, 52.234567, 3.9187654, 37123.4, 2.5),
+                new PredictedPosition(ground, NOW, 51.47, -0.4543, Double.NaN, 0.0)));
+    final byte[] bytes = PositionFrameCodec.encode(frame);
+    final WireReader reader = new WireReader(bytes);
+    final AirspaceFrame decoded = PositionFrameCodec.decode(reader);
+
+    assertThat(reader.hasRemaining()).isFalse();
+    assertThat(decoded.getTimestamp()).isEqualTo(NOW);
+    assertThat(decoded.getAircraft()).hasSize(2);
+
+    final PredictedPosition first = decoded.getAircraft().get(0);
+
+    assertThat(first.getIcaoAddress()).isEqualTo("4840D6");
+    assertThat(first.getCallSign()).isEqualTo("KLM1023");
+    assertThat(first.getTimestamp()).isEqualTo(NOW);
+    assertThat(first.getLatitude()).isCloseTo(52.234567, within(0.000005));
+    assertThat(first.getLongitude()).isCloseTo(3.9187654, within(0.000005));
+    assertThat(first.getAltitude()).isEqualTo(37123.0f);
+    assertThat(first.getGroundSpeed()).isEqualTo(459.5f);
+    assertThat(first.getTrack()).isEqualTo(182.9f);
+    assertThat(first.getVerticalRate()).isEqualTo(-1088.0f);
+    assertThat(first.isOnGround()).isFalse();
+    assertThat(first.getPositionTimestamp()).isEqualTo(NOW.minusMillis(2_500L));
+    assertThat(first.getAge()).isEqualTo(2.5f);
+
+    final PredictedPosition second = decoded.getAircraft().get(1);
+
+    assertThat(second.getIcaoAddress()).isEqualTo("000001");
+    assertThat(second.getCallSign()).isNull();
+    assertThat(second.getAltitude()).isNull();
+    assertThat(second.getGroundSpeed()).isNull();
+    assertThat(second.getLongitude()).isEqualTo(-0.4543);
+    assertThat(second.isOnGround()).isTrue();
+  }
+
+  @Test
+  void shouldEncodeNeighbouringAircraftCompactly() {
+    final AircraftState state =
+        new AircraftState.Builder(0x4840D6)
+            .callSign("KLM1023")
+            .groundSpeed(459.5f)
+            .track(182.9f)
+            .verticalRate(0.0f)
+            .position(52.25, 3.92, NOW.toEpochMilli())
+            .build();
+    final PredictedPosition[] positions = new PredictedPosition[100];
+
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] =
+          new PredictedPosition(
+              new AircraftState.Builder(state).build(),
+              NOW,
+              52.25 + i * 0.01,
+              3.92 - i * 0.01,
+              35000.0,
+              0.0);
+    }
+
+    // The address, field set, coordinate differences, position age, call sign, altitude and
+    // velocity of each aircraft take 25 bytes, of which 8 are the call sign, against some 250
+    // characters of JSON
+    //
+    final byte[] bytes =
+        PositionFrameCodec.encode(new AirspaceFrame(NOW, Arrays.asList(positions)));
+
+    assertThat(bytes.length).isLessThanOrEqualTo(12 + 100 * 25);
+  }
+
+  @Test
+  void shouldRejectUnsupportedVersion() {
+    final byte[] bytes =
+        PositionFrameCodec.encode(new AirspaceFrame(NOW, Collections.emptyList()));
+
+    bytes[0] = 2;
+
+    assertThatThrownBy(() -> PositionFrameCodec.decode(new WireReader(bytes)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.basestation.wire;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+class WireBufferTest {
+  private static final long[] VALUES = {
+      0L, 1L, -1L, 63L, -64L, 64L, 127L, 128L, 300L, -300L, 5_150_000L, -18_000_000L,
+      1_612_008_000_000L, Long.MAX_VALUE, Long.MIN_VALUE
+  };
+
+  @Test
+  void shouldWriteSmallValuesInFewBytes() {
+    final WireBuffer buffer = new WireBuffer(0);
+
+    assertThat(buffer.putVarLong(127L).size()).isEqualTo(1);
+    assertThat(buffer.putVarLong(128L).size()).isEqualTo(3);
+    assertThat(buffer.putSignedVarLong(-64L).size()).isEqualTo(4);
+    assertThat(buffer.putSignedVarLong(64L).size()).isEqualTo(6);
+    assertThat(buffer.toByteArray()).containsExactly(0x7F, 0x80, 0x01, 0x7F, 0x80, 0x01);
+  }
+
+  @Test
+  void shouldReadBackWhatWasWritten() throws IOException {
+    final WireBuffer buffer = new WireBuffer(0);
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    for (long value : VALUES) {
+      buffer.putVarLong(value).putSignedVarLong(value);
+    }
+
+    buffer.putString("KLM1023 é").putByte(0xFE);
+    buffer.writeTo(outputStream);
+
+    final WireReader reader = new WireReader(outputStream.toByteArray());
+
+    for (long value : VALUES) {
+      assertThat(reader.getVarLong()).isEqualTo(value);
+      assertThat(reader.getSignedVarLong()).isEqualTo(value);
+    }
+
+    assertThat(reader.getString()).isEqualTo("KLM1023 é");
+    assertThat(reader.getByte()).isEqualTo(0xFE);
+    assertThat(reader.hasRemaining()).isFalse();
+  }
+
+  @Test
+  void shouldReuseBufferAfterReset() {
+    final WireBuffer buffer = new WireBuffer(16);
+
+    for (int i = 0; i < 100; i++) {
+      buffer.putVarLong(Long.MAX_VALUE);
+    }
+
+    buffer.reset();
+    buffer.put(new WireBuffer(0).putByte(1).putByte(2));
+
+    assertThat(buffer.toByteArray()).containsExactly(1, 2);
+  }
+
+  @Test
+  void shouldRejectTruncatedData() {
+    final byte[] bytes = new WireBuffer(0).putVarLong(300L).putString("KLM").toByteArray();
+
+    assertThatThrownBy(() -> new WireReader(bytes, 0, 1).getVarLong())
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+        () -> {
+          final WireReader reader = new WireReader(bytes, 0, bytes.length - 1);
+
+          reader.getVarLong();
+          reader.getString();
+        })
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
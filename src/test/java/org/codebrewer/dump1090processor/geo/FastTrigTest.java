@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FastTrigTest {
+  @Test
+  void shouldComputeSineAndCosineWithinTolerance() {
+    for (double radians = -10.0; radians <= 10.0; radians += 1e-3) {
+      assertThat(FastTrig.sin(radians)).isCloseTo(Math.sin(radians), within(3e-7));
+      assertThat(FastTrig.cos(radians)).isCloseTo(Math.cos(radians), within(3e-7));
+    }
+  }
+
+  @Test
+  void shouldComputeArcTangentWithinTolerance() {
+    final Random random = new Random(1L);
+
+    for (int i = 0; i < 100_000; i++) {
+      final double y = random.nextGaussian();
+      final double x = random.nextGaussian();
+
+      assertThat(FastTrig.atan2(y, x)).isCloseTo(Math.atan2(y, x), within(1e-8));
+    }
+  }
+
+  @Test
+  void shouldComputeArcTangentOnAxes() {
+    assertThat(FastTrig.atan2(0.0, 0.0)).isZero();
+    assertThat(FastTrig.atan2(0.0, 2.0)).isZero();
+    assertThat(FastTrig.atan2(2.0, 0.0)).isEqualTo(Math.PI / 2.0);
+    assertThat(FastTrig.atan2(0.0, -2.0)).isEqualTo(Math.PI);
+    assertThat(FastTrig.atan2(-2.0, 0.0)).isEqualTo(-Math.PI / 2.0);
+    assertThat(FastTrig.atan2(1.0, 1.0)).isCloseTo(Math.PI / 4.0, within(1e-15));
+  }
+
+  @Test
+  void shouldReturnNaNForNaNArcTangentArgument() {
+    assertThat(FastTrig.atan2(Double.NaN, 1.0)).isNaN();
+    assertThat(FastTrig.atan2(1.0, Double.NaN)).isNaN();
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.geolatte.geom.G2D;
+import org.geolatte.geom.Point;
+import org.geolatte.geom.crs.CoordinateReferenceSystems;
+import org.junit.jupiter.api.Test;
+
+class GeoCoordinatesTest {
+  @Test
+  void shouldReadLongitudeThenLatitude() {
+    final double[] coordinates = new double[2];
+
+    GeoCoordinates.readLongitudeLatitude(
+        new Point<>(new G2D(-1.5, 52.25), CoordinateReferenceSystems.WGS84), coordinates);
+
+    assertThat(coordinates).containsExactly(-1.5, 52.25);
+  }
+
+  @Test
+  void shouldTakeShorterWayAroundEarth() {
+    assertThat(GeoCoordinates.longitudeDifference(10.0, -20.0)).isCloseTo(30.0, within(1e-9));
+    assertThat(GeoCoordinates.longitudeDifference(179.0, -179.0)).isCloseTo(-2.0, within(1e-9));
+    assertThat(GeoCoordinates.longitudeDifference(-179.0, 179.0)).isCloseTo(2.0, within(1e-9));
+  }
+}
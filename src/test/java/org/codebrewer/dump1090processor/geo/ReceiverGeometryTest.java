@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ReceiverGeometryTest {
+  private static final double METRES_PER_DEGREE =
+      ReceiverGeometry.EARTH_RADIUS_METRES * Math.PI / 180.0;
+
+  private static double bearingDifference(float a, float b) {
+    final double difference = Math.abs(a - b) % 360.0;
+
+    return Math.min(difference, 360.0 - difference);
+  }
+
+  @Test
+  void shouldRejectInvalidLocation() {
+    assertThatThrownBy(() -> new ReceiverGeometry(90.5, 0.0, 0.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ReceiverGeometry(0.0, -180.5, 0.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ReceiverGeometry(Double.NaN, 0.0, 0.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ReceiverGeometry(0.0, 0.0, Double.POSITIVE_INFINITY))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldLocateAircraftAtCardinalPoints() {
+    final ReceiverGeometry geometry = new ReceiverGeometry(0.0, 0.0, 0.0);
+    final ReceiverRelativePosition north = geometry.locate(1.0, 0.0, 0.0);
+    final ReceiverRelativePosition east = geometry.locate(0.0, 1.0, 0.0);
+    final ReceiverRelativePosition south = geometry.locate(-1.0, 0.0, 0.0);
+    final ReceiverRelativePosition west = geometry.locate(0.0, -1.0, 0.0);
+
+    assertThat(north.getRange()).isCloseTo((float) METRES_PER_DEGREE, within(1.0f));
+    assertThat(north.getBearing()).isCloseTo(0.0f, within(1e-4f));
+    assertThat(east.getBearing()).isCloseTo(90.0f, within(1e-4f));
+    assertThat(south.getBearing()).isCloseTo(180.0f, within(1e-4f));
+    assertThat(west.getBearing()).isCloseTo(270.0f, within(1e-4f));
+
+    // An aircraft on the surface one degree away is half a degree below the horizon
+    //
+    assertThat(east.getElevation()).isCloseTo(-0.5f, within(1e-4f));
+  }
+
+  @Test
+  void shouldLocateAircraftOverhead() {
+    final ReceiverRelativePosition overhead =
+        new ReceiverGeometry(52.0, -1.0, 100.0).locate(52.0, -1.0, 10_000.0);
+
+    assertThat(overhead.getRange()).isCloseTo(0.0f, within(1.0f));
+    assertThat(overhead.getElevation()).isCloseTo(90.0f, within(1e-4f));
+  }
+
+  @Test
+  void shouldLocateAircraftAcrossAntimeridian() {
+    final ReceiverRelativePosition position =
+        new ReceiverGeometry(0.0, 179.5, 0.0).locate(0.0, -179.5, 0.0);
+
+    assertThat(position.getRange()).isCloseTo((float) METRES_PER_DEGREE, within(1.0f));
+    assertThat(position.getBearing()).isCloseTo(90.0f, within(1e-4f));
+  }
+
+  @Test
+  void shouldNotComputeElevationWithoutAltitude() {
+    final ReceiverGeometry geometry = new ReceiverGeometry(52.0, -1.0, 100.0);
+
+    assertThat(geometry.locate(52.5, -1.5, Double.NaN).getElevation()).isNaN();
+    assertThat(geometry.locateExactly(52.5, -1.5, Double.NaN).getElevation()).isNaN();
+  }
+
+  @Test
+  void shouldAgreeWithHaversineFormulae() {
+    final Random random = new Random(1L);
+
+    for (double latitude : new double[] { -33.9, 0.0, 51.5, 69.7 }) {
+      final ReceiverGeometry geometry = new ReceiverGeometry(latitude, 10.0, 50.0);
+
+      for (int i = 0; i < 10_000; i++) {
+        // Aircraft from 1 km to 600 km away, in any direction
+        //
+        final double distance = (1.0 + random.nextDouble() * 599.0) * 1000.0;
+        final double direction = random.nextDouble() * 2.0 * Math.PI;
+        final double aircraftLatitude =
+            latitude + Math.cos(direction) * distance / METRES_PER_DEGREE;
+        final double aircraftLongitude =
+            10.0 + Math.sin(direction) * distance
+                   / (METRES_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+        final double altitude = random.nextDouble() * 13_000.0;
+        final ReceiverRelativePosition fast =
+            geometry.locate(aircraftLatitude, aircraftLongitude, altitude);
+        final ReceiverRelativePosition exact =
+            geometry.locateExactly(aircraftLatitude, aircraftLongitude, altitude);
+
+        assertThat(fast.getRange()).isCloseTo(exact.getRange(), within(1.0f));
+        assertThat(bearingDifference(fast.getBearing(), exact.getBearing())).isLessThan(0.001);
+        assertThat(fast.getElevation()).isCloseTo(exact.getElevation(), within(0.001f));
+      }
+    }
+  }
+}
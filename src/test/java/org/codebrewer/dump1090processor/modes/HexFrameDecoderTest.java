@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HexFrameDecoderTest {
+  private byte[] frame;
+
+  private int decode(String text) {
+    final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+
+    return HexFrameDecoder.decode(bytes, 0, bytes.length, frame);
+  }
+
+  @BeforeEach
+  void setUp() {
+    frame = new byte[HexFrameDecoder.MAX_FRAME_LENGTH];
+  }
+
+  @Test
+  void shouldDecodeLongFrame() {
+    assertThat(decode("*8D4840D6202CC371C32CE0576098;")).isEqualTo(14);
+    assertThat(frame).containsExactly(
+        0x8D, 0x48, 0x40, 0xD6, 0x20, 0x2C, 0xC3, 0x71, 0xC3, 0x2C, 0xE0, 0x57, 0x60, 0x98);
+  }
+
+  @Test
+  void shouldDecodeShortFrame() {
+    assertThat(decode("*5d4840d6f8740f;")).isEqualTo(7);
+    assertThat(frame).startsWith(0x5D, 0x48, 0x40, 0xD6, 0xF8, 0x74, 0x0F);
+  }
+
+  @Test
+  void shouldDecodeFrameWithTimestampAndSurroundingWhitespace() {
+    assertThat(decode(" @0123456789AB5D4840D6F8740F;\r\n")).isEqualTo(7);
+    assertThat(frame).startsWith(0x5D, 0x48, 0x40, 0xD6, 0xF8, 0x74, 0x0F);
+  }
+
+  @Test
+  void shouldRejectMalformedFrames() {
+    assertThat(decode("")).isEqualTo(-1);
+    assertThat(decode(";")).isEqualTo(-1);
+    assertThat(decode("8D4840D6202CC371C32CE0576098;")).isEqualTo(-1);
+    assertThat(decode("*8D4840D6202CC371C32CE0576098")).isEqualTo(-1);
+    assertThat(decode("*8D4840D6202CC371C32CE057609;")).isEqualTo(-1);
+    assertThat(decode("*8D4840D6202CC371C32CE05760X8;")).isEqualTo(-1);
+    assertThat(decode("@01234567895D4840D6F8740F;")).isEqualTo(-1);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class KnownAddressFilterTest {
+  private static final long GENERATION_MILLIS = 60_000L;
+  private static final int ADDRESS = 0x4840D6;
+
+  @Test
+  void shouldKnowAddressSeenInCurrentGeneration() {
+    final KnownAddressFilter filter = new KnownAddressFilter(GENERATION_MILLIS);
+
+    filter.markSeen(ADDRESS, 0L);
+
+    assertThat(filter.isKnown(ADDRESS, 1_000L)).isTrue();
+    assertThat(filter.isKnown(ADDRESS + 1, 1_000L)).isFalse();
+  }
+
+  @Test
+  void shouldKnowAddressSeenInPreviousGeneration() {
+    final KnownAddressFilter filter = new KnownAddressFilter(GENERATION_MILLIS);
+
+    filter.markSeen(ADDRESS, 0L);
+
+    assertThat(filter.isKnown(ADDRESS, GENERATION_MILLIS)).isTrue();
+    assertThat(filter.isKnown(ADDRESS, 2 * GENERATION_MILLIS)).isFalse();
+  }
+
+  @Test
+  void shouldForgetBothGenerationsAfterLongGap() {
+    final KnownAddressFilter filter = new KnownAddressFilter(GENERATION_MILLIS);
+
+    filter.markSeen(ADDRESS, 0L);
+    filter.markSeen(ADDRESS + 1, GENERATION_MILLIS);
+
+    assertThat(filter.isKnown(ADDRESS + 1, 3 * GENERATION_MILLIS)).isFalse();
+    assertThat(filter.isKnown(ADDRESS, 3 * GENERATION_MILLIS)).isFalse();
+  }
+}
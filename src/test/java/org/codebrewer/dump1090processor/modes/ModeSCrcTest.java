@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Mark Scott
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codebrewer.dump1090processor.modes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ModeSCrcTest {
+  private static byte[] decode(String text) {
+    final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+    final byte[] frame = new byte[HexFrameDecoder.MAX_FRAME_LENGTH];
+
+    assertThat(HexFrameDecoder.decode(bytes, 0, bytes.length, frame)).isPositive();
+
+    return frame;
+  }
+
+  @Test
+  void shouldHaveZeroResidualForValidExtendedSquitter() {
+    assertThat(ModeSCrc.residual(decode("*8D4840D6202CC371C32CE0576098;"), 0, 14)).isZero();
+  }
+
+  @Test
+  void shouldHaveNonZeroResidualForCorruptedExtendedSquitter() {
+    assertThat(ModeSCrc.residual(decode("*8D4840D6202CC371C32CE0576099;"), 0, 14)).isNotZero();
+    assertThat(ModeSCrc.residual(decode("*8D4840D6212CC371C32CE0576098;"), 0, 14)).isNotZero();
+  }
+
+  @Test
+  void shouldHaveZeroResidualForValidAllCallReply() {
+    assertThat(ModeSCrc.residual(decode("*5D4840D6F8740F;"), 0, 7)).isZero();
+  }
+
+  @Test
+  void shouldRecoverAddressFromAddressParityField() {
+    final byte[] frame = {0x20, 0x00, 0x17, 0x18, 0, 0, 0};
+    final int address = 0x4840D6;
+    final int parity = ModeSCrc.checksum(frame, 0, 4) ^ address;
+
+    frame[4] = (byte) (parity >>> 16);
+    frame[5] = (byte) (parity >>> 8);
+    frame[6] = (byte) parity;
+
+    assertThat(ModeSCrc.residual(frame, 0, 7)).isEqualTo(address);
+  }
+}